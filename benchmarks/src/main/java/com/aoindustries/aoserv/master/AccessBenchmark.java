@@ -0,0 +1,94 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoindustries.aoserv.client.account.Account;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AccountHandler#canAccessAccount(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.RequestSource, com.aoindustries.aoserv.client.account.Account.Name)}
+ * for an account administrator that may access one in ten accounts.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AccessBenchmark {
+
+	@Param({"100", "10000"})
+	public int accounts;
+
+	private EmbeddedDatabase database;
+	private DatabaseAccess db;
+	private RequestSource source;
+	private Account.Name allowed;
+	private Account.Name denied;
+
+	@Setup
+	public void setup() throws Exception {
+		database = new EmbeddedDatabase(accounts, 10, 10, 1);
+		db = database.getDatabase();
+		List<Account.Name> names = database.getAccounts();
+		source = BenchmarkSource.getSources(new Random(0), 1).get(0);
+		allowed = names.get(accounts - 10);
+		denied = names.get(accounts - 1);
+		// Load the caches
+		AccountHandler.canAccessAccount(db, source, allowed);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		database.close();
+	}
+
+	@Benchmark
+	public boolean allowed() throws IOException, SQLException {
+		return AccountHandler.canAccessAccount(db, source, allowed);
+	}
+
+	@Benchmark
+	public boolean denied() throws IOException, SQLException {
+		return AccountHandler.canAccessAccount(db, source, denied);
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoindustries.aoserv.client.account.Account;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares finding the accounts an administrator may access through
+ * {@link TableHandler#ACCOUNT_TREE} against the fixed-depth self-joins it
+ * replaced.  Both are run, planning included, on an embedded PostgreSQL with a
+ * generated account tree.
+ * <p>
+ * The fixed-depth joins only follow {@link Account#MAXIMUM_BUSINESS_TREE_DEPTH}
+ * levels, so the tree depth is kept within this limit for the results to match.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AccountTreeBenchmark {
+
+	/**
+	 * The self-joins used before {@link TableHandler#ACCOUNT_TREE}.
+	 */
+	private static final String FIXED_DEPTH_JOIN =
+		  "  account.\"Account\" bu1\n"
+		+ "  left join account.\"Account\" bu2 on bu1.parent=bu2.accounting\n"
+		+ "  left join account.\"Account\" bu3 on bu2.parent=bu3.accounting\n"
+		+ "  left join account.\"Account\" bu4 on bu3.parent=bu4.accounting\n"
+		+ "  left join account.\"Account\" bu5 on bu4.parent=bu5.accounting\n"
+		+ "  left join account.\"Account\" bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+" on bu5.parent=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".accounting\n";
+
+	/**
+	 * The where clause used before {@link TableHandler#ACCOUNT_TREE}.
+	 */
+	private static final String FIXED_DEPTH_WHERE =
+		  "    pk.accounting=bu1.accounting\n"
+		+ "    or pk.accounting=bu1.parent\n"
+		+ "    or pk.accounting=bu2.parent\n"
+		+ "    or pk.accounting=bu3.parent\n"
+		+ "    or pk.accounting=bu4.parent\n"
+		+ "    or pk.accounting=bu5.parent\n"
+		+ "    or pk.accounting=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".parent\n";
+
+	private static String getQuery(String join, String where) {
+		return
+			"select\n"
+			+ "  bu1.accounting\n"
+			+ "from\n"
+			+ "  account.\"User\" un,\n"
+			+ "  billing.\"Package\" pk,\n"
+			+ join
+			+ "where\n"
+			+ "  un.username='admin'\n"
+			+ "  and un.package=pk.name\n"
+			+ "  and (\n"
+			+ where
+			+ "  )";
+	}
+
+	/**
+	 * The number of children of each account.
+	 */
+	@Param({"4", "10"})
+	public int fanout;
+
+	/**
+	 * The number of levels below the root account.
+	 */
+	@Param({"3", "5"})
+	public int depth;
+
+	private EmbeddedPostgres postgres;
+	private Connection conn;
+	private Statement stmt;
+	private String fixedDepth;
+	private String accountTree;
+
+	private int addChildren(PreparedStatement insert, String parent, int level, int count) throws SQLException {
+		if(level <= depth) {
+			for(int i = 0; i < fanout; i++) {
+				String accounting = "ACCOUNT" + (++count);
+				insert.setString(1, accounting);
+				insert.setString(2, parent);
+				insert.addBatch();
+				count = addChildren(insert, accounting, level + 1, count);
+			}
+		}
+		return count;
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		postgres = EmbeddedPostgres.start();
+		conn = postgres.getPostgresDatabase().getConnection();
+		try (Statement ddl = conn.createStatement()) {
+			ddl.executeUpdate("create schema account");
+			ddl.executeUpdate("create schema billing");
+			ddl.executeUpdate("create table account.\"Account\" (accounting text primary key, parent text references account.\"Account\")");
+			ddl.executeUpdate("create index on account.\"Account\" (parent)");
+			ddl.executeUpdate("create table billing.\"Package\" (name text primary key, accounting text not null references account.\"Account\")");
+			ddl.executeUpdate("create table account.\"User\" (username text primary key, package text not null references billing.\"Package\")");
+			ddl.executeUpdate("insert into account.\"Account\" values ('ROOT', null)");
+		}
+		try (PreparedStatement insert = conn.prepareStatement("insert into account.\"Account\" values (?, ?)")) {
+			addChildren(insert, "ROOT", 1, 0);
+			insert.executeBatch();
+		}
+		try (Statement ddl = conn.createStatement()) {
+			// The administrator of the first account below the root
+			ddl.executeUpdate("insert into billing.\"Package\" values ('package', 'ACCOUNT1')");
+			ddl.executeUpdate("insert into account.\"User\" values ('admin', 'package')");
+			ddl.executeUpdate("analyze");
+		}
+		// Not prepared, so each execution is planned like the first request for a table
+		stmt = conn.createStatement();
+		fixedDepth = getQuery(FIXED_DEPTH_JOIN, FIXED_DEPTH_WHERE);
+		accountTree = getQuery(TableHandler.BU1_PARENTS_JOIN_NO_COMMA, TableHandler.PK_BU1_PARENTS_WHERE);
+		int fixedDepthCount = count(fixedDepth);
+		int accountTreeCount = count(accountTree);
+		if(fixedDepthCount != accountTreeCount) {
+			throw new AssertionError("Mismatched results: fixedDepth=" + fixedDepthCount + ", accountTree=" + accountTreeCount);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		try {
+			stmt.close();
+			conn.close();
+		} finally {
+			postgres.close();
+		}
+	}
+
+	private int count(String sql) throws SQLException {
+		int count = 0;
+		try (ResultSet results = stmt.executeQuery(sql)) {
+			while(results.next()) count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int fixedDepth() throws SQLException {
+		return count(fixedDepth);
+	}
+
+	@Benchmark
+	public int accountTree() throws SQLException {
+		return count(accountTree);
+	}
+}
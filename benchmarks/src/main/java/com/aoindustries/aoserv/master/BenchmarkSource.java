@@ -0,0 +1,106 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.IntList;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.security.Identifier;
+import com.aoindustries.aoserv.client.account.User;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A connected client, without a connection.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class BenchmarkSource implements RequestSource {
+
+	/**
+	 * Generates connected clients for the administrators of {@link EmbeddedDatabase}.
+	 */
+	static List<RequestSource> getSources(Random random, int count) throws ValidationException {
+		List<RequestSource> sources = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			sources.add(new BenchmarkSource(random, User.Name.valueOf("admin" + i), AoservProtocol.Version.CURRENT_VERSION));
+		}
+		return sources;
+	}
+
+	private final Identifier connectorId;
+	private final User.Name administrator;
+	private final AoservProtocol.Version version;
+
+	BenchmarkSource(Random random, User.Name administrator, AoservProtocol.Version version) {
+		this.connectorId = new Identifier(random);
+		this.administrator = administrator;
+		this.version = version;
+	}
+
+	@Override
+	public void cachesInvalidated(IntList tableList) {
+		// Discarded
+	}
+
+	@Override
+	public Identifier getConnectorId() {
+		return connectorId;
+	}
+
+	@Override
+	public InvalidateCacheEntry getNextInvalidatedTables() {
+		return null;
+	}
+
+	@Override
+	public String getSecurityMessageHeader() {
+		return "Benchmark";
+	}
+
+	@Override
+	public User.Name getCurrentAdministrator() {
+		return administrator;
+	}
+
+	@Override
+	public boolean isSecure() {
+		return true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return false;
+	}
+
+	@Override
+	public int getDaemonServer() {
+		return -1;
+	}
+
+	@Override
+	public AoservProtocol.Version getProtocolVersion() {
+		return version;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.Database;
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * An embedded PostgreSQL holding the tables read when the master caches are
+ * loaded, so the benchmarks fill the caches through the same queries as the
+ * master.  Only the columns used by these queries are created.
+ * <p>
+ * There are no master users, so every administrator is an account
+ * administrator.  The administrators share a package in the account
+ * {@link #ADMIN_ACCOUNT}, which is the parent of every <code>step</code>
+ * account and has access to every <code>step</code> host.
+ * </p>
+ * <p>
+ * The master caches are static, and JMH runs each benchmark in its own fork.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class EmbeddedDatabase implements Closeable {
+
+	private static final Logger logger = Logger.getLogger(EmbeddedDatabase.class.getName());
+
+	/**
+	 * The account of the administrators.
+	 */
+	static final String ADMIN_ACCOUNT = "ADMIN";
+
+	private static final String[] DDL = {
+		"create schema \"schema\"",
+		"create schema account",
+		"create schema billing",
+		"create schema linux",
+		"create schema master",
+		"create schema net",
+		"create table \"schema\".\"AoservProtocol\" (version text primary key, created date not null)",
+		"create table \"schema\".\"Table\" (id integer primary key, \"sinceVersion\" text not null references \"schema\".\"AoservProtocol\", \"lastVersion\" text references \"schema\".\"AoservProtocol\")",
+		"create table account.\"Account\" (accounting text primary key, parent text references account.\"Account\")",
+		"create index on account.\"Account\" (parent)",
+		"create table billing.\"Package\" (name text primary key, accounting text not null references account.\"Account\")",
+		"create table account.\"User\" (username text primary key, package text references billing.\"Package\")",
+		"create table net.\"Host\" (id integer primary key)",
+		"create table account.\"AccountHost\" (accounting text not null references account.\"Account\", server integer not null references net.\"Host\")",
+		"create table linux.\"Server\" (server integer primary key references net.\"Host\", failover_server integer references net.\"Host\")",
+		"create table master.\"User\" (username text primary key, is_active boolean not null)",
+		"create table master.\"UserHost\" (username text not null references master.\"User\", server integer not null references net.\"Host\")",
+		"create table master.\"UserAcl\" (username text not null references master.\"User\", host text not null)"
+	};
+
+	private final EmbeddedPostgres postgres;
+	private final Database database;
+	private final List<Account.Name> accounts;
+
+	/**
+	 * Starts the database and fills it with generated accounts, hosts, and administrators.
+	 *
+	 * @param  accountCount  the number of accounts, named <code>ACCOUNT0</code> and up
+	 * @param  hostCount  the number of hosts, with ids starting at <code>1</code>
+	 * @param  step  the administrators may access every <code>step</code> account and host
+	 * @param  administratorCount  the number of administrators, named <code>admin0</code> and up
+	 */
+	EmbeddedDatabase(int accountCount, int hostCount, int step, int administratorCount) throws IOException, SQLException, ValidationException {
+		List<Account.Name> names = new ArrayList<>(accountCount);
+		for(int i = 0; i < accountCount; i++) {
+			names.add(Account.Name.valueOf("ACCOUNT" + i));
+		}
+		accounts = Collections.unmodifiableList(names);
+		postgres = EmbeddedPostgres.start();
+		DataSource dataSource = postgres.getPostgresDatabase();
+		try (
+			Connection conn = dataSource.getConnection();
+			Statement stmt = conn.createStatement()
+		) {
+			for(String ddl : DDL) stmt.executeUpdate(ddl);
+			// Every table exists in the current protocol, so client table IDs match the ordinals
+			String version = AoservProtocol.Version.CURRENT_VERSION.getVersion();
+			try (PreparedStatement insert = conn.prepareStatement("insert into \"schema\".\"AoservProtocol\" values (?, current_date)")) {
+				insert.setString(1, version);
+				insert.executeUpdate();
+			}
+			try (PreparedStatement insert = conn.prepareStatement("insert into \"schema\".\"Table\" values (?, ?, null)")) {
+				for(Table.TableID tableID : Table.TableID.values()) {
+					insert.setInt(1, tableID.ordinal());
+					insert.setString(2, version);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			try (PreparedStatement insert = conn.prepareStatement("insert into account.\"Account\" values (?, ?)")) {
+				insert.setString(1, ADMIN_ACCOUNT);
+				insert.setString(2, null);
+				insert.addBatch();
+				for(int i = 0; i < accountCount; i++) {
+					insert.setString(1, names.get(i).toString());
+					insert.setString(2, (i % step) == 0 ? ADMIN_ACCOUNT : null);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			try (PreparedStatement insert = conn.prepareStatement("insert into net.\"Host\" values (?)")) {
+				for(int host = 1; host <= hostCount; host++) {
+					insert.setInt(1, host);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			try (PreparedStatement insert = conn.prepareStatement("insert into account.\"AccountHost\" values (?, ?)")) {
+				for(int host = 1; host <= hostCount; host += step) {
+					insert.setString(1, ADMIN_ACCOUNT);
+					insert.setInt(2, host);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			try (PreparedStatement insert = conn.prepareStatement("insert into billing.\"Package\" values (?, ?)")) {
+				insert.setString(1, "admin");
+				insert.setString(2, ADMIN_ACCOUNT);
+				insert.executeUpdate();
+			}
+			try (PreparedStatement insert = conn.prepareStatement("insert into account.\"User\" values (?, 'admin')")) {
+				for(int i = 0; i < administratorCount; i++) {
+					insert.setString(1, "admin" + i);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			stmt.executeUpdate("analyze");
+		}
+		database = new Database(dataSource, logger);
+	}
+
+	/**
+	 * Gets the database accessor used by the measured code.
+	 */
+	DatabaseAccess getDatabase() {
+		return database;
+	}
+
+	/**
+	 * Gets the names of the generated accounts, not including {@link #ADMIN_ACCOUNT}.
+	 */
+	List<Account.Name> getAccounts() {
+		return accounts;
+	}
+
+	@Override
+	public void close() throws IOException {
+		postgres.close();
+	}
+}
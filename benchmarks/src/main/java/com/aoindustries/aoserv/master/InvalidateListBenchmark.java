@@ -0,0 +1,87 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building an {@link InvalidateList}, including the recursion into
+ * dependent tables.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InvalidateListBenchmark {
+
+	private EmbeddedDatabase database;
+	private DatabaseAccess db;
+	private List<Account.Name> accounts;
+
+	@Setup
+	public void setup() throws Exception {
+		database = new EmbeddedDatabase(100, 10, 1, 1);
+		db = database.getDatabase();
+		accounts = database.getAccounts();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		database.close();
+	}
+
+	/**
+	 * The tables invalidated by adding a web site.
+	 */
+	@Benchmark
+	public InvalidateList addTable() throws IOException, SQLException {
+		InvalidateList invalidateList = new InvalidateList();
+		invalidateList.addTable(db, Table.TableID.HTTPD_SITES, accounts.get(1), 5, false);
+		invalidateList.addTable(db, Table.TableID.HTTPD_TOMCAT_SITES, accounts.get(1), 5, true);
+		invalidateList.addTable(db, Table.TableID.HTTPD_SITE_BINDS, accounts.get(1), 5, true);
+		invalidateList.addTable(db, Table.TableID.LINUX_SERVER_ACCOUNTS, accounts.get(1), 5, true);
+		invalidateList.addTable(db, Table.TableID.EMAIL_DOMAINS, accounts.get(1), InvalidateList.allHosts, true);
+		return invalidateList;
+	}
+}
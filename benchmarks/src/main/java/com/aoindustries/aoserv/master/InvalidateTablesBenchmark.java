@@ -0,0 +1,108 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.IntArrayList;
+import com.aoapps.collections.IntList;
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the fan-out of {@link MasterServer#invalidateTables(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.InvalidateList, com.aoindustries.aoserv.master.RequestSource)}:
+ * resolving the invalidated tables once, then the tables visible to each
+ * listening client.
+ * <p>
+ * The master caches cleared at the start of <code>invalidateTables</code> are
+ * not included, since clearing them would measure the reload from the
+ * embedded database instead.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InvalidateTablesBenchmark {
+
+	@Param({"10", "100", "1000"})
+	public int listeners;
+
+	private EmbeddedDatabase database;
+	private DatabaseAccess db;
+	private List<RequestSource> sources;
+	private InvalidateList invalidateList;
+	private final IntList tableList = new IntArrayList();
+
+	@Setup
+	public void setup() throws Exception {
+		database = new EmbeddedDatabase(1000, 100, 10, listeners);
+		db = database.getDatabase();
+		List<Account.Name> accounts = database.getAccounts();
+		sources = BenchmarkSource.getSources(new Random(0), listeners);
+		invalidateList = new InvalidateList();
+		invalidateList.addTable(db, Table.TableID.HTTPD_SITE_BINDS, accounts.get(10), 11, true);
+		invalidateList.addTable(db, Table.TableID.LINUX_SERVER_ACCOUNTS, accounts.get(15), 11, true);
+		invalidateList.addTable(db, Table.TableID.EMAIL_DOMAINS, accounts.get(20), InvalidateList.allHosts, true);
+		// Load the caches
+		List<InvalidationIndex.AffectedTable> affectedTables = InvalidationIndex.getAffectedTables(db, invalidateList);
+		for(RequestSource source : sources) {
+			InvalidationIndex.getClientTableList(db, source, affectedTables, tableList);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		database.close();
+	}
+
+	@Benchmark
+	public void fanOut(Blackhole blackhole) throws IOException, SQLException {
+		List<InvalidationIndex.AffectedTable> affectedTables = InvalidationIndex.getAffectedTables(db, invalidateList);
+		for(RequestSource source : sources) {
+			InvalidationIndex.getClientTableList(db, source, affectedTables, tableList);
+			blackhole.consume(tableList.size());
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoindustries.aoserv.client.AOServWritable;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MasterServer#writeObjects(com.aoindustries.aoserv.master.RequestSource, com.aoapps.hodgepodge.io.stream.StreamableOutput, boolean, java.util.Collection)}
+ * for rows shaped like a typical table: an id, a few strings, a timestamp, and a flag.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WriteObjectsBenchmark {
+
+	@Param({"100", "10000"})
+	public int rows;
+
+	private RequestSource source;
+	private List<AOServWritable> objs;
+	private StreamableOutput out;
+
+	@Setup
+	public void setup() throws Exception {
+		source = BenchmarkSource.getSources(new Random(0), 1).get(0);
+		objs = new ArrayList<>(rows);
+		for(int i = 0; i < rows; i++) {
+			int id = i;
+			String name = "name" + i;
+			String description = "The description of row " + i;
+			long created = 1600000000000L + i;
+			boolean isActive = (i % 10) != 0;
+			objs.add((out, clientVersion) -> {
+				out.writeCompressedInt(id);
+				out.writeUTF(name);
+				out.writeNullUTF(description);
+				out.writeLong(created);
+				out.writeBoolean(isActive);
+			});
+		}
+		out = new StreamableOutput(new BufferedOutputStream(OutputStream.nullOutputStream()));
+	}
+
+	@Benchmark
+	public long writeObjects() throws IOException {
+		long count = MasterServer.writeObjects(source, out, true, objs);
+		out.flush();
+		return count;
+	}
+}
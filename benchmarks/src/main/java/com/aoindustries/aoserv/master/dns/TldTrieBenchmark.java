@@ -0,0 +1,105 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master.dns;
+
+import com.aoapps.net.DomainName;
+import com.aoindustries.aoserv.client.dns.ZoneTable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the lookups in {@link TldTrie}, with the scan of
+ * {@link ZoneTable#getDNSZoneForHostname(java.lang.String, java.util.List)}
+ * it replaced as the baseline.  The top-level domains are those of
+ * {@link ZoneBenchmark#getTlds()}.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TldTrieBenchmark {
+
+	/**
+	 * The hostname to resolve: under a single-label top-level domain, under
+	 * a two-label top-level domain, and with many labels before the zone.
+	 */
+	@Param({"www.example.com", "www.example.yy.zz", "a.b.c.d.e.f.www.example.yy.zz"})
+	public String hostname;
+
+	private List<DomainName> tlds;
+	private TldTrie trie;
+	private DomainName domainName;
+
+	@Setup
+	public void setup() throws Exception {
+		tlds = ZoneBenchmark.getTlds();
+		trie = new TldTrie(tlds);
+		domainName = DomainName.valueOf(hostname);
+		String scan = ZoneTable.getDNSZoneForHostname(hostname, tlds);
+		String lookup = trie.getDNSZoneForHostname(hostname);
+		if(!scan.equals(lookup)) {
+			throw new AssertionError("Mismatched zones: scan=" + scan + ", trie=" + lookup);
+		}
+	}
+
+	@Benchmark
+	public String getDNSZoneForHostname() {
+		return trie.getDNSZoneForHostname(hostname);
+	}
+
+	@Benchmark
+	public DomainName getHostTLD() {
+		return trie.getHostTLD(domainName);
+	}
+
+	/**
+	 * The linear scan used before the trie.
+	 */
+	@Benchmark
+	public String scan() {
+		return ZoneTable.getDNSZoneForHostname(hostname, tlds);
+	}
+
+	/**
+	 * Builds the trie, as done once after each invalidation of the top-level domains.
+	 */
+	@Benchmark
+	public TldTrie build() {
+		return new TldTrie(tlds);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master.dns;
+
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.DomainName;
+import com.aoindustries.aoserv.client.dns.ZoneTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures resolving the zone of a hostname from the top-level domains.
+ *
+ * @author  AO Industries, Inc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ZoneBenchmark {
+
+	/**
+	 * The hostname to resolve, matching a top-level domain near the start or
+	 * the end of the list.
+	 */
+	@Param({"www.example.com", "www.example.yy.zz"})
+	public String hostname;
+
+	private List<DomainName> tlds;
+
+	/**
+	 * Generates about as many top-level domains as the public suffix list:
+	 * the common ones first, then single-label and two-label suffixes from
+	 * <code>aa</code> through <code>zz</code>.
+	 */
+	static List<DomainName> getTlds() throws ValidationException {
+		List<DomainName> tlds = new ArrayList<>();
+		tlds.add(DomainName.valueOf("com"));
+		tlds.add(DomainName.valueOf("net"));
+		tlds.add(DomainName.valueOf("org"));
+		List<String> labels = new ArrayList<>();
+		for(char c1 = 'a'; c1 <= 'z'; c1++) {
+			for(char c2 = 'a'; c2 <= 'z'; c2++) {
+				labels.add(new String(new char[] {c1, c2}));
+			}
+		}
+		for(String label : labels) {
+			tlds.add(DomainName.valueOf(label));
+		}
+		// Second-level suffixes under a subset of the labels
+		for(int i = labels.size() - 1; i >= labels.size() - 300; i--) {
+			String parent = labels.get(i);
+			for(int j = 0; j < 25; j++) {
+				tlds.add(DomainName.valueOf(labels.get(j * 27) + '.' + parent));
+			}
+		}
+		return tlds;
+	}
+
+	@Setup
+	public void setup() throws Exception {
+		tlds = getTlds();
+	}
+
+	@Benchmark
+	public String scan() {
+		return ZoneTable.getDNSZoneForHostname(hostname, tlds);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.master.User;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Answers {@link AccountHandler#canAccessAccount(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.RequestSource, com.aoindustries.aoserv.client.account.Account.Name)}
+ * and {@link NetHostHandler#canAccessHost(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.RequestSource, int)}
+ * without locking.
+ * <p>
+ * Each account and host is given a dense ordinal, and each administrator a
+ * bitmap of the accounts and hosts they may access.  The index is immutable
+ * once published, and is replaced as a whole, by compare-and-set, when loaded,
+ * when an administrator is added, and when any of its tables are invalidated.
+ * An index or access built from data that was invalidated while it was being
+ * built is never published.
+ * </p>
+ * <p>
+ * Accounts and hosts not known to the index, such as those added within the
+ * current transaction, fall back to {@link AccountHandler#getAllowedAccounts(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.RequestSource)}
+ * and {@link NetHostHandler#getAllowedHosts(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.RequestSource)}.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class AccessIndex {
+
+	private AccessIndex() {
+	}
+
+	/**
+	 * The accounts and hosts accessible by one administrator.
+	 */
+	private static class Access {
+
+		/**
+		 * Unrestricted master users may access all accounts and hosts.
+		 */
+		private final boolean all;
+
+		private final BitSet accounts;
+		private final BitSet hosts;
+
+		private Access(boolean all, BitSet accounts, BitSet hosts) {
+			this.all = all;
+			this.accounts = accounts;
+			this.hosts = hosts;
+		}
+	}
+
+	/**
+	 * The dense ordinals of the accounts and hosts, loaded together.
+	 */
+	private static class Ordinals {
+
+		private final Map<Account.Name, Integer> accountOrdinals;
+		private final Map<Integer, Integer> hostOrdinals;
+
+		private Ordinals(Map<Account.Name, Integer> accountOrdinals, Map<Integer, Integer> hostOrdinals) {
+			this.accountOrdinals = accountOrdinals;
+			this.hostOrdinals = hostOrdinals;
+		}
+	}
+
+	/**
+	 * One immutable state of the index, replaced as a whole with
+	 * {@link AtomicReference#compareAndSet(java.lang.Object, java.lang.Object)}.
+	 */
+	private static class Index {
+
+		/**
+		 * The ordinals or {@code null} when not yet loaded.
+		 */
+		private final Ordinals ordinals;
+
+		private final Map<com.aoindustries.aoserv.client.account.User.Name, Access> administrators;
+
+		private Index(Ordinals ordinals, Map<com.aoindustries.aoserv.client.account.User.Name, Access> administrators) {
+			this.ordinals = ordinals;
+			this.administrators = administrators;
+		}
+
+		private Index withAccess(com.aoindustries.aoserv.client.account.User.Name administrator, Access access) {
+			Map<com.aoindustries.aoserv.client.account.User.Name, Access> newAdministrators = new HashMap<>(administrators);
+			newAdministrators.put(administrator, access);
+			return new Index(ordinals, Collections.unmodifiableMap(newAdministrators));
+		}
+	}
+
+	/**
+	 * A new, unloaded index is published on each invalidation.  An index or
+	 * access built from the state before the invalidation then fails its
+	 * compare-and-set, so it is used by the request that built it but never
+	 * published.
+	 */
+	private static final AtomicReference<Index> index = new AtomicReference<>(new Index(null, Collections.emptyMap()));
+
+	/**
+	 * Gets a loaded index, loading it when needed.
+	 */
+	private static Index getIndex(DatabaseAccess db) throws IOException, SQLException {
+		Index current = index.get();
+		if(current.ordinals != null) return current;
+		List<Account.Name> accounts = db.queryList(
+			ObjectFactories.accountNameFactory,
+			"select accounting from account.\"Account\""
+		);
+		Map<Account.Name, Integer> accountOrdinals = new HashMap<>(accounts.size() * 4 / 3 + 1);
+		for(Account.Name account : accounts) accountOrdinals.put(account, accountOrdinals.size());
+		List<Integer> hosts = db.queryIntList("select id from net.\"Host\"");
+		Map<Integer, Integer> hostOrdinals = new HashMap<>(hosts.size() * 4 / 3 + 1);
+		for(Integer host : hosts) hostOrdinals.put(host, hostOrdinals.size());
+		Index loaded = new Index(new Ordinals(accountOrdinals, hostOrdinals), Collections.emptyMap());
+		if(!index.compareAndSet(current, loaded)) {
+			// Use the index loaded concurrently, if still current
+			Index other = index.get();
+			if(other.ordinals != null) return other;
+		}
+		return loaded;
+	}
+
+	private static Access getAccess(DatabaseAccess db, RequestSource source, Index i) throws IOException, SQLException {
+		com.aoindustries.aoserv.client.account.User.Name currentAdministrator = source.getCurrentAdministrator();
+		Access access = i.administrators.get(currentAdministrator);
+		if(access == null) {
+			User mu = MasterServer.getUser(db, currentAdministrator);
+			if(mu != null && MasterServer.getUserHosts(db, currentAdministrator).length == 0) {
+				access = new Access(true, null, null);
+			} else {
+				Ordinals ordinals = i.ordinals;
+				BitSet accounts = new BitSet(ordinals.accountOrdinals.size());
+				for(Account.Name account : AccountHandler.getAllowedAccounts(db, source)) {
+					Integer ordinal = ordinals.accountOrdinals.get(account);
+					if(ordinal != null) accounts.set(ordinal);
+				}
+				BitSet hosts = new BitSet(ordinals.hostOrdinals.size());
+				for(Integer host : NetHostHandler.getAllowedHosts(db, source)) {
+					Integer ordinal = ordinals.hostOrdinals.get(host);
+					if(ordinal != null) hosts.set(ordinal);
+				}
+				access = new Access(false, accounts, hosts);
+			}
+			// Only published while the ordinals it was built from are current
+			Index current = index.get();
+			while(
+				current.ordinals == i.ordinals
+				&& !current.administrators.containsKey(currentAdministrator)
+				&& !index.compareAndSet(current, current.withAccess(currentAdministrator, access))
+			) {
+				current = index.get();
+			}
+		}
+		return access;
+	}
+
+	static boolean canAccessAccount(DatabaseAccess db, RequestSource source, Account.Name account) throws IOException, SQLException {
+		Index i = getIndex(db);
+		Access access = getAccess(db, source, i);
+		Integer ordinal = i.ordinals.accountOrdinals.get(account);
+		if(ordinal != null) return access.all || access.accounts.get(ordinal);
+		return AccountHandler.getAllowedAccounts(db, source).contains(account);
+	}
+
+	static boolean canAccessHost(DatabaseAccess db, RequestSource source, int host) throws IOException, SQLException {
+		Index i = getIndex(db);
+		Access access = getAccess(db, source, i);
+		Integer ordinal = i.ordinals.hostOrdinals.get(host);
+		if(ordinal != null) return access.all || access.hosts.get(ordinal);
+		return NetHostHandler.getAllowedHosts(db, source).contains(host);
+	}
+
+	static void invalidateTable(Table.TableID tableID) {
+		if(
+			tableID==Table.TableID.BUSINESSES
+			|| tableID==Table.TableID.BUSINESS_SERVERS
+			|| tableID==Table.TableID.MASTER_SERVERS
+			|| tableID==Table.TableID.MASTER_USERS
+			|| tableID==Table.TableID.SERVERS
+		) {
+			index.set(new Index(null, Collections.emptyMap()));
+		}
+	}
+}
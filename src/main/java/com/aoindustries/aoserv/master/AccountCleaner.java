@@ -22,23 +22,24 @@
  */
 package com.aoindustries.aoserv.master;
 
-import com.aoapps.collections.IntList;
 import com.aoapps.cron.CronDaemon;
 import com.aoapps.cron.CronJob;
 import com.aoapps.cron.Schedule;
+import com.aoapps.dbc.DatabaseAccess;
 import com.aoapps.dbc.DatabaseConnection;
 import com.aoapps.hodgepodge.logging.ProcessTimer;
 import com.aoapps.lang.SysExits;
-import com.aoapps.lang.i18n.Money;
 import com.aoapps.lang.util.ErrorPrinter;
-import com.aoapps.lang.validation.ValidationException;
 import com.aoindustries.aoserv.client.account.Account;
 import com.aoindustries.aoserv.client.backup.BackupReport;
-import com.aoindustries.aoserv.client.linux.Group;
 import com.aoindustries.aoserv.client.schema.Table;
 import com.aoindustries.aoserv.master.dns.DnsService;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.logging.Level;
@@ -46,6 +47,17 @@ import java.util.logging.Logger;
 
 /**
  * Automatically cleans out old account resources.  The resources are left in tact for one month before cleaning.
+ * <p>
+ * Cleaning is performed in phases, one per type of resource.  Each phase selects all of its rows in a single
+ * query then removes them in batches, committing each batch, so locks are not held against interactive
+ * requests for the duration of the cleaning.  Run {@link #main(java.lang.String[])} with <code>--dry-run</code>
+ * to list the rows each phase would remove.  As a dry run removes nothing, phases that depend on the removals
+ * of earlier phases may list fewer rows than a real cleaning would remove.
+ * </p>
+ * <p>
+ * Only the <code>backup.BackupReport</code> phase is set-based.  The other phases remove each row through its
+ * resource handler, along with its dependent resources, so their time grows with the number of rows.
+ * </p>
  *
  * @author  AO Industries, Inc.
  */
@@ -115,12 +127,22 @@ final public class AccountCleaner implements CronJob {
 					TIMER_REMINDER_INTERVAL
 				)
 			) {
-				MasterServer.executorService.submit(timer);
+				MasterExecutors.timers.submit(timer);
 
-				// Start the transaction
+				// Each batch is committed separately, so invalidate even when a later phase fails
 				final InvalidateList invalidateList=new InvalidateList();
-				cleanNow(invalidateList);
-				MasterServer.invalidateTables(MasterDatabase.getDatabase(), invalidateList, null);
+				try {
+					List<PhaseReport> reports = cleanNow(invalidateList, false);
+					if(logger.isLoggable(Level.INFO)) {
+						StringBuilder message = new StringBuilder("Account cleaning completed:");
+						for(PhaseReport report : reports) {
+							message.append('\n').append(report);
+						}
+						logger.info(message.toString());
+					}
+				} finally {
+					MasterServer.invalidateTables(MasterDatabase.getDatabase(), invalidateList, null);
+				}
 			}
 		} catch(ThreadDeath td) {
 			throw td;
@@ -129,740 +151,869 @@ final public class AccountCleaner implements CronJob {
 		}
 	}
 
-	private static void cleanNow(InvalidateList invalidateList) throws IOException, SQLException, ValidationException {
-		try (final DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
-			StringBuilder message=new StringBuilder();
+	/**
+	 * The maximum number of rows removed per transaction.  Each batch is
+	 * committed separately so locks are not held for the whole cleaning.
+	 */
+	private static final int BATCH_SIZE = 100;
 
-			// backup.BackupReport
-			{
-				// Those that are part of canceled accounts
-				if(
-					conn.queryBoolean(
-						"select\n"
-						+ "  (\n"
-						+ "    select\n"
-						+ "      br.id\n"
-						+ "    from\n"
-						+ "      backup.\"BackupReport\" br,\n"
-						+ "      billing.\"Package\" pk,\n"
-						+ "      account.\"Account\" bu\n"
-						+ "    where\n"
-						+ "      br.package=pk.id\n"
-						+ "      and pk.accounting=bu.accounting\n"
-						+ "      and bu.canceled is not null\n"
-						+ "      and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
-						+ "    limit 1\n"
-						+ "  ) is not null"
-					)
-				) {
-					conn.update(
-						"delete from\n"
-						+ "  backup.\"BackupReport\"\n"
-						+ "where\n"
-						+ "  id in (\n"
-						+ "    select\n"
-						+ "      br.id\n"
-						+ "    from\n"
-						+ "      backup.\"BackupReport\" br,\n"
-						+ "      billing.\"Package\" pk,\n"
-						+ "      account.\"Account\" bu\n"
-						+ "    where\n"
-						+ "      br.package=pk.id\n"
-						+ "      and pk.accounting=bu.accounting\n"
-						+ "      and bu.canceled is not null\n"
-						+ "      and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
-						+ "  )"
-					);
-					invalidateList.addTable(conn, Table.TableID.BACKUP_REPORTS, InvalidateList.allAccounts, InvalidateList.allHosts, false);
-				}
+	/**
+	 * Selects the keys of all rows to be removed by one phase, in the order
+	 * they are to be removed.
+	 */
+	@FunctionalInterface
+	private static interface Keys<K> {
+		List<K> get(DatabaseAccess db) throws IOException, SQLException;
+	}
 
-				// Those that are older than BackupReport.SendmailSmtpStat.MAX_REPORT_AGE
-				if(
-					conn.queryBoolean(
-						"select\n"
-						+ "  (\n"
-						+ "    select\n"
-						+ "      id\n"
-						+ "    from\n"
-						+ "      backup.\"BackupReport\"\n"
-						+ "    where\n"
-						+ "      (CURRENT_DATE - date)>"+BackupReport.MAX_REPORT_AGE+"\n" // Convert to interval?
-						+ "    limit 1\n"
-						+ "  ) is not null"
-					)
-				) {
-					conn.update(
-						"delete from\n"
-						+ "  backup.\"BackupReport\"\n"
-						+ "where\n"
-						+ "  (CURRENT_DATE - date)>"+BackupReport.MAX_REPORT_AGE // Convert to interval?
-					);
-					invalidateList.addTable(conn, Table.TableID.BACKUP_REPORTS, InvalidateList.allAccounts, InvalidateList.allHosts, false);
-				}
-			}
+	/**
+	 * Removes one batch of keys within a single transaction.
+	 */
+	@FunctionalInterface
+	private static interface BatchRemover<K> {
+		void remove(DatabaseConnection conn, InvalidateList invalidateList, List<K> keys) throws IOException, SQLException;
+	}
 
-			// account.Account
-			{
-				{
-					// look for any accounts that have been canceled but not disabled
-					List<Account.Name> bus = conn.queryList(
-						ObjectFactories.accountNameFactory,
-						"select accounting from account.\"Account\" where parent=? and canceled is not null and disable_log is null",
-						AccountHandler.getRootAccount()
-					);
-					if(!bus.isEmpty()) {
-						message
-							.append("The following account.Account ")
-							.append(bus.size()==1?"has":"have")
-							.append(" been canceled but not disabled:\n");
-						for (Account.Name bu : bus) {
-							message.append(bu).append('\n');
-						}
-						message.append('\n');
-					}
-				}
+	/**
+	 * Removes a single key, along with its dependent resources.
+	 */
+	@FunctionalInterface
+	private static interface Remover<K> {
+		void remove(DatabaseConnection conn, InvalidateList invalidateList, K key) throws IOException, SQLException;
+	}
 
-				{
-					// look for any accounts that have been disabled for over two months but not canceled
-					List<Account.Name> bus = conn.queryList(
-						ObjectFactories.accountNameFactory,
-						"select\n"
-						+ "  bu.accounting\n"
-						+ "from\n"
-						+ "  account.\"Account\" bu,\n"
-						+ "  account.\"DisableLog\" dl\n"
-						+ "where\n"
-						+ "  bu.canceled is null\n"
-						+ "  and bu.disable_log=dl.id\n"
-						+ "  and (CURRENT_DATE - dl.time::date)>60"
-					);
-					if(bus.size()>0) {
-						message
-							.append("The following account.Account ")
-							.append(bus.size()==1?"has":"have")
-							.append(" been disabled for over 60 days but not canceled:\n");
-						for (Account.Name bu : bus) {
-							message.append(bu).append('\n');
-						}
-						message.append('\n');
-					}
-				}
-			}
+	/**
+	 * Removes each key of a batch in turn, for those resources that must be
+	 * removed by their handlers.  The handlers remove one row at a time, along
+	 * with their dependent resources, so these phases are much slower per row
+	 * than a set-based removal.
+	 */
+	private static final class Each<K> implements BatchRemover<K> {
 
-			// payment.CreditCard
-			{
-				IntList ccs=conn.queryIntList(
-					"select\n"
-					+ "  cc.id\n"
-					+ "from\n"
-					+ "  payment.\"CreditCard\" cc,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  cc.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<ccs.size();c++) {
-					PaymentHandler.removeCreditCard(conn, invalidateList, ccs.getInt(c));
-				}
-			}
+		private final Remover<K> remover;
 
-			// account.Administrator over CANCELED_KEEP_DAYS days
-			// remove if balance is zero and has not been used in ticket.Action or billing.Transaction
-			{
-				List<com.aoindustries.aoserv.client.account.User.Name> administrators=conn.queryList(
-					ObjectFactories.userNameFactory,
-					"select\n"
-					+ "  ba.username\n"
-					+ "from\n"
-					+ "  account.\"Administrator\"      ba\n"
-					+ "  inner join account.\"User\"    un on ba.username   = un.username\n"
-					+ "  inner join billing.\"Package\" pk on un.package    = pk.name\n"
-					+ "  inner join account.\"Account\" bu on pk.accounting = bu.accounting\n"
-					+ "where\n"
-					+ "  bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS + "\n"
-					// payment.Payment
-					// PostgresSQL 8.3 doing sequential scan on "or":
-					// + "  and (select cct.id from payment.\"Payment\" cct where cct.credit_card_created_by=ba.username or cct.authorization_username=ba.username or cct.capture_username=ba.username or cct.void_username=ba.username limit 1) is null\n"
-					+ "  and (select cct1.id from payment.\"Payment\" cct1 where cct1.credit_card_created_by = ba.username limit 1) is null\n"
-					+ "  and (select cct2.id from payment.\"Payment\" cct2 where cct2.authorization_username = ba.username limit 1) is null\n"
-					+ "  and (select cct3.id from payment.\"Payment\" cct3 where cct3.capture_username       = ba.username limit 1) is null\n"
-					+ "  and (select cct4.id from payment.\"Payment\" cct4 where cct4.void_username          = ba.username limit 1) is null\n"
-					// payment.CreditCard
-					+ "  and (select cc.id from payment.\"CreditCard\" cc where cc.created_by=ba.username limit 1) is null\n"
-					// account.DisableLog
-					+ "  and (select dl.id from account.\"DisableLog\" dl where dl.disabled_by=ba.username limit 1) is null\n"
-					// billing.MonthlyCharge
-					+ "  and (select mc.id from billing.\"MonthlyCharge\" mc where mc.created_by=ba.username limit 1) is null\n"
-					// billing.Package
-					+ "  and (select pk2.id from billing.\"Package\" pk2 where pk2.created_by=ba.username limit 1) is null\n"
-					// signup.Request
-					+ "  and (select sr.id from signup.\"Request\" sr where sr.completed_by=ba.username limit 1) is null\n"
-					// ticket.Action
-					// PostgresSQL 8.3 doing sequential scan on "or":
-					// + "  and (select ta.id from ticket.Action ta where ta.administrator=ba.username or ta.old_assigned_to=ba.username or ta.new_assigned_to=ba.username limit 1) is null\n"
-					+ "  and (select ta1.id from ticket.\"Action\" ta1 where ta1.administrator   = ba.username limit 1) is null\n"
-					+ "  and (select ta2.id from ticket.\"Action\" ta2 where ta2.old_assigned_to = ba.username limit 1) is null\n"
-					+ "  and (select ta3.id from ticket.\"Action\" ta3 where ta3.new_assigned_to = ba.username limit 1) is null\n"
-					// ticket.Assignment
-					+ "  and (select ta4.id from ticket.\"Assignment\" ta4 where ta4.administrator=ba.username limit 1) is null\n"
-					// ticket.Ticket
-					+ "  and (select ti.id from ticket.\"Ticket\" ti where ti.created_by=ba.username limit 1) is null\n"
-					// billing.Transaction
-					+ "  and (select tr.transid from billing.\"Transaction\" tr where tr.username=ba.username limit 1) is null"
-				);
-				for (com.aoindustries.aoserv.client.account.User.Name administrator : administrators) {
-					Account.Name account = AccountUserHandler.getAccountForUser(conn, administrator);
-					boolean hasBalance = false;
-					for(Money balance : BillingTransactionHandler.getConfirmedAccountBalance(conn, account)) {
-						if(balance.getUnscaledValue() > 0) {
-							hasBalance = true;
-						}
-					}
-					if(!hasBalance) AccountHandler.removeAdministrator(conn, invalidateList, administrator);
-				}
-			}
+		private Each(Remover<K> remover) {
+			this.remover = remover;
+		}
 
-			// scm.CvsRepository
-			{
-				IntList crs=conn.queryIntList(
-					"select\n"
-					+ "  cr.id\n"
-					+ "from\n"
-					+ "  scm.\"CvsRepository\" cr,\n"
-					+ "  linux.\"UserServer\" lsa,\n"
-					+ "  account.\"User\" un,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  cr.linux_server_account=lsa.id\n"
-					+ "  and lsa.username=un.username\n"
-					+ "  and un.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<crs.size();c++) {
-					CvsHandler.removeCvsRepository(conn, invalidateList, crs.getInt(c));
-				}
-			}
+		@Override
+		public void remove(DatabaseConnection conn, InvalidateList invalidateList, List<K> keys) throws IOException, SQLException {
+			for(K key : keys) remover.remove(conn, invalidateList, key);
+		}
+	}
 
-			// dns.Zone
-			{
-				DnsService dnsService = MasterServer.getService(DnsService.class);
-				List<String> dzs=conn.queryStringList(
-					"select\n"
-					+ "  dz.zone\n"
-					+ "from\n"
-					+ "  dns.\"Zone\" dz,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  dz.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for (String dz : dzs) {
-					dnsService.removeDNSZone(conn, invalidateList, dz);
-				}
-			}
+	private static <K> BatchRemover<K> each(Remover<K> remover) {
+		return new Each<>(remover);
+	}
 
-			// email.List
-			{
-				IntList els=conn.queryIntList(
-					"select\n"
-					+ "  el.id\n"
-					+ "from\n"
-					+ "  email.\"List\" el,\n"
-					+ "  linux.\"GroupServer\" lsg,\n"
-					+ "  linux.\"Group\" lg,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  el.linux_server_group=lsg.id\n"
-					+ "  and lsg.name=lg.name\n"
-					+ "  and lg.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<els.size();c++) {
-					EmailHandler.removeList(conn, invalidateList, els.getInt(c));
-				}
-			}
+	/**
+	 * The rows removed and the time spent by one phase of cleaning.
+	 */
+	public static final class PhaseReport {
 
-			// email.Domain
-			{
-				IntList eds=conn.queryIntList(
-					"select\n"
-					+ "  ed.id\n"
-					+ "from\n"
-					+ "  email.\"Domain\" ed,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  ed.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<eds.size();c++) {
-					EmailHandler.removeDomain(conn, invalidateList, eds.getInt(c));
-				}
-			}
+		private final String phase;
+		private final int rows;
+		private final List<?> keys;
+		private final boolean rowByRow;
+		private final long time;
+		private final boolean dryRun;
 
-			// email.Pipe
-			{
-				IntList eps=conn.queryIntList(
-					"select\n"
-					+ "  ep.id\n"
-					+ "from\n"
-					+ "  email.\"Pipe\" ep,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  ep.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<eps.size();c++) {
-					EmailHandler.removePipe(conn, invalidateList, eps.getInt(c));
-				}
-			}
+		/**
+		 * @param  keys  Only kept on a dry run, where they are listed
+		 */
+		private PhaseReport(String phase, List<?> keys, boolean rowByRow, long time, boolean dryRun) {
+			this.phase = phase;
+			this.rows = keys.size();
+			this.keys = dryRun ? Collections.unmodifiableList(keys) : null;
+			this.rowByRow = rowByRow;
+			this.time = time;
+			this.dryRun = dryRun;
+		}
 
-			// email.SmtpRelay
-			{
-				IntList esrs=conn.queryIntList(
-					"select\n"
-					+ "  esr.id\n"
-					+ "from\n"
-					+ "  email.\"SmtpRelay\" esr,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  esr.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<esrs.size();c++) {
-					EmailHandler.removeSmtpRelay(conn, invalidateList, esrs.getInt(c));
-				}
-			}
+		public String getPhase() {
+			return phase;
+		}
 
-			/*
-			// backup.FileReplicationSetting
-			{
-				IntList fbss=conn.queryIntList(
-					"select\n"
-					+ "  fbs.id\n"
-					+ "from\n"
-					+ "  account.\"Account\" bu,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  backup."FileReplicationSetting" fbs\n"
-					+ "where\n"
-					+ "  bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
-					+ "  and bu.accounting=pk.accounting\n"
-					+ "  and pk.id=fbs.package"
-				);
-				for(int c=0;c<fbss.size();c++) {
-					BackupHandler.removeFileBackupSetting(conn, invalidateList, fbss.getInt(c));
-				}
-			}*/
-			// TODO: Should also remove backup servers
+		/**
+		 * Gets the number of rows removed, or that would be removed on a dry run.
+		 */
+		public int getRows() {
+			return rows;
+		}
 
-			// web.Site
-			{
-				IntList hss=conn.queryIntList(
-					"select\n"
-					+ "  hs.id\n"
-					+ "from\n"
-					+ "  web.\"Site\" hs,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  hs.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<hss.size();c++) {
-					WebHandler.removeSite(conn, invalidateList, hss.getInt(c));
-				}
-			}
+		/**
+		 * Gets the keys of the rows that would be removed, in the order they would
+		 * be removed.
+		 *
+		 * @return  the keys on a dry run or {@code null} when rows were removed,
+		 *          since only the count is kept for a real cleaning
+		 */
+		public List<?> getKeys() {
+			return keys;
+		}
 
-			// web.tomcat.SharedTomcat
-			{
-				IntList hsts=conn.queryIntList(
-					"select\n"
-					+ "  hst.id\n"
-					+ "from\n"
-					+ "  \"web.tomcat\".\"SharedTomcat\" hst,\n"
-					+ "  linux.\"GroupServer\" lsg,\n"
-					+ "  linux.\"Group\" lg,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  hst.linux_server_group=lsg.id\n"
-					+ "  and lsg.name=lg.name\n"
-					+ "  and lg.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<hsts.size();c++) {
-					WebHandler.removeSharedTomcat(conn, invalidateList, hsts.getInt(c));
-				}
-			}
+		/**
+		 * Is this phase removed one row at a time by the resource handlers instead
+		 * of set-based?
+		 */
+		public boolean isRowByRow() {
+			return rowByRow;
+		}
 
-			// ftp.PrivateServer
-			{
-				IntList pfss=conn.queryIntList(
-					"select\n"
-					+ "  pfs.net_bind\n"
-					+ "from\n"
-					+ "  ftp.\"PrivateServer\" pfs,\n"
-					+ "  net.\"Bind\" nb,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  pfs.net_bind=nb.id\n"
-					+ "  and nb.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<pfss.size();c++) {
-					FTPHandler.removePrivateServer(conn, invalidateList, pfss.getInt(c));
-				}
-			}
+		/**
+		 * Gets the time spent in milliseconds.
+		 */
+		public long getTime() {
+			return time;
+		}
 
-			// net.Bind
-			{
-				IntList nbs=conn.queryIntList(
-					"select\n"
-					+ "  nb.id\n"
-					+ "from\n"
-					+ "  net.\"Bind\" nb,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  nb.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<nbs.size();c++) {
-					NetBindHandler.removeBind(conn, invalidateList, nbs.getInt(c));
-				}
+		public boolean isDryRun() {
+			return dryRun;
+		}
 
-			}
+		@Override
+		public String toString() {
+			return phase + ": " + rows + (dryRun ? " would be removed" : " removed") + (rowByRow ? " row by row" : "") + " in " + time + " ms";
+		}
+	}
 
-			// net.IpAddress
-			{
-				IntList ias=conn.queryIntList(
-					"select\n"
-					+ "  ia.id\n"
-					+ "from\n"
-					+ "  net.\"IpAddress\" ia,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  ia.package=pk.id\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<ias.size();c++) {
-					int ia=ias.getInt(c);
-					IpAddressHandler.setIpAddressPackage(conn, invalidateList, ia, AccountHandler.getRootAccount());
-					IpAddressHandler.releaseIpAddress(conn, invalidateList, ia);
+	/**
+	 * Runs one phase of cleaning.  The keys are selected in a single query then
+	 * removed in batches of up to {@link #BATCH_SIZE}, each in its own
+	 * transaction.
+	 *
+	 * @param  invalidateList  Collects the invalidations of all committed batches
+	 * @param  dryRun  When {@code true}, only reports the number of rows that would be removed
+	 */
+	private static <K> void clean(
+		List<PhaseReport> reports,
+		InvalidateList invalidateList,
+		boolean dryRun,
+		String phase,
+		Keys<K> keys,
+		BatchRemover<K> remover
+	) throws IOException, SQLException {
+		long startTime = System.currentTimeMillis();
+		List<K> toRemove = keys.get(MasterDatabase.getDatabase());
+		if(!dryRun) {
+			int size = toRemove.size();
+			for(int from = 0; from < size; from += BATCH_SIZE) {
+				List<K> batch = toRemove.subList(from, Math.min(from + BATCH_SIZE, size));
+				try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
+					remover.remove(conn, invalidateList, batch);
+					conn.commit();
 				}
 			}
+		}
+		PhaseReport report = new PhaseReport(phase, toRemove, remover instanceof Each, System.currentTimeMillis() - startTime, dryRun);
+		if(logger.isLoggable(Level.FINE)) logger.fine(report.toString());
+		reports.add(report);
+	}
 
-			// web.HttpdServer
-			{
-				IntList hss=conn.queryIntList(
-					"select\n"
-					+ "  hs.id\n"
-					+ "from\n"
-					+ "  web.\"HttpdServer\" hs,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  hs.package=pk.id\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<hss.size();c++) {
-					int hs=hss.getInt(c);
-					WebHandler.removeHttpdServer(conn, invalidateList, hs);
-				}
-			}
+	/**
+	 * Cleans all old account resources.
+	 *
+	 * @param  invalidateList  Collects the invalidations of all committed batches,
+	 *                         including those committed before any exception
+	 * @param  dryRun  When {@code true}, nothing is removed and the number of rows
+	 *                 that would be removed is reported.  Since nothing is removed,
+	 *                 later phases still see the rows that earlier phases would have
+	 *                 removed, and may under-report the rows they would remove once
+	 *                 those are gone.
+	 *
+	 * @return  the report of each phase, in the order run
+	 */
+	private static List<PhaseReport> cleanNow(InvalidateList invalidateList, boolean dryRun) throws IOException, SQLException {
+		DatabaseAccess db = MasterDatabase.getDatabase();
+		List<PhaseReport> reports = new ArrayList<>();
+		StringBuilder message=new StringBuilder();
 
-			// linux.User
-			{
-				List<com.aoindustries.aoserv.client.linux.User.Name> las=conn.queryList(
-					ObjectFactories.linuxUserNameFactory,
-					"select\n"
-					+ "  la.username\n"
-					+ "from\n"
-					+ "  linux.\"User\" la,\n"
-					+ "  account.\"User\" un,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  la.username=un.username\n"
-					+ "  and un.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for (com.aoindustries.aoserv.client.linux.User.Name la : las) {
+		// backup.BackupReport
+		// Those that are part of canceled accounts and those that are older than BackupReport.MAX_REPORT_AGE
+		clean(
+			reports, invalidateList, dryRun, "backup.BackupReport",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  br.id\n"
+				+ "from\n"
+				+ "  backup.\"BackupReport\" br,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  br.package=pk.id\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
+				+ "union\n"
+				+ "select\n"
+				+ "  id\n"
+				+ "from\n"
+				+ "  backup.\"BackupReport\"\n"
+				+ "where\n"
+				+ "  (CURRENT_DATE - date)>"+BackupReport.MAX_REPORT_AGE+"\n" // Convert to interval?
+				+ "order by\n"
+				+ "  1"
+			),
+			(conn, invList, ids) -> {
+				Connection dbConn = conn.getConnection();
+				String sql = "delete from backup.\"BackupReport\" where id = ANY(?)";
+				try (PreparedStatement pstmt = dbConn.prepareStatement(sql)) {
 					try {
-						LinuxAccountHandler.removeUser(conn, invalidateList, la);
-					} catch (SQLException err) {
-						System.err.println("SQLException trying to remove User: " + la);
-						throw err;
+						pstmt.setArray(1, dbConn.createArrayOf("int4", ids.toArray()));
+						pstmt.executeUpdate();
+					} catch(Error | RuntimeException | SQLException e) {
+						ErrorPrinter.addSQL(e, pstmt);
+						throw e;
 					}
 				}
+				invList.addTable(conn, Table.TableID.BACKUP_REPORTS, InvalidateList.allAccounts, InvalidateList.allHosts, false);
 			}
+		);
 
-			// linux.Group
+		// account.Account
+		{
 			{
-				List<Group.Name> lgs=conn.queryList(
-					ObjectFactories.groupNameFactory,
-					"select\n"
-					+ "  lg.name\n"
-					+ "from\n"
-					+ "  linux.\"Group\" lg,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  lg.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+				// look for any accounts that have been canceled but not disabled
+				List<Account.Name> bus = db.queryList(
+					ObjectFactories.accountNameFactory,
+					"select accounting from account.\"Account\" where parent=? and canceled is not null and disable_log is null",
+					AccountHandler.getRootAccount()
 				);
-				for (Group.Name lg : lgs) {
-					try {
-						LinuxAccountHandler.removeGroup(conn, invalidateList, lg);
-					} catch (SQLException err) {
-						System.err.println("SQLException trying to remove Group: " + lg);
-						throw err;
+				if(!bus.isEmpty()) {
+					message
+						.append("The following account.Account ")
+						.append(bus.size()==1?"has":"have")
+						.append(" been canceled but not disabled:\n");
+					for (Account.Name bu : bus) {
+						message.append(bu).append('\n');
 					}
+					message.append('\n');
 				}
 			}
 
-			// mysql.Database
 			{
-				IntList mds=conn.queryIntList(
+				// look for any accounts that have been disabled for over two months but not canceled
+				List<Account.Name> bus = db.queryList(
+					ObjectFactories.accountNameFactory,
 					"select\n"
-					+ "  md.id\n"
+					+ "  bu.accounting\n"
 					+ "from\n"
-					+ "  mysql.\"Database\" md,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
+					+ "  account.\"Account\" bu,\n"
+					+ "  account.\"DisableLog\" dl\n"
 					+ "where\n"
-					+ "  md.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+					+ "  bu.canceled is null\n"
+					+ "  and bu.disable_log=dl.id\n"
+					+ "  and (CURRENT_DATE - dl.time::date)>60"
 				);
-				for(int c=0;c<mds.size();c++) {
-					MysqlHandler.removeDatabase(conn, invalidateList, mds.getInt(c));
+				if(bus.size()>0) {
+					message
+						.append("The following account.Account ")
+						.append(bus.size()==1?"has":"have")
+						.append(" been disabled for over 60 days but not canceled:\n");
+					for (Account.Name bu : bus) {
+						message.append(bu).append('\n');
+					}
+					message.append('\n');
 				}
 			}
+		}
 
-			// mysql.User
-			{
-				List<com.aoindustries.aoserv.client.mysql.User.Name> mus=conn.queryList(
-					ObjectFactories.mysqlUserNameFactory,
-					"select\n"
-					+ "  mu.username\n"
-					+ "from\n"
-					+ "  mysql.\"User\" mu,\n"
-					+ "  account.\"User\" un,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  mu.username=un.username\n"
-					+ "  and un.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for (com.aoindustries.aoserv.client.mysql.User.Name mu : mus) {
-					MysqlHandler.removeUser(conn, invalidateList, mu);
-				}
-			}
+		// payment.CreditCard
+		clean(
+			reports, invalidateList, dryRun, "payment.CreditCard",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  cc.id\n"
+				+ "from\n"
+				+ "  payment.\"CreditCard\" cc,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  cc.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(PaymentHandler::removeCreditCard)
+		);
 
-			// postgresql.Database
-			{
-				IntList pds=conn.queryIntList(
-					"select\n"
-					+ "  pd.id\n"
-					+ "from\n"
-					+ "  postgresql.\"Database\" pd,\n"
-					+ "  postgresql.\"UserServer\" psu,\n"
-					+ "  account.\"User\" un,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  pd.datdba=psu.id\n"
-					+ "  and psu.username=un.username\n"
-					+ "  and un.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for(int c=0;c<pds.size();c++) {
-					PostgresqlHandler.removeDatabase(conn, invalidateList, pds.getInt(c));
-				}
-			}
+		// account.Administrator over CANCELED_KEEP_DAYS days
+		// remove if confirmed balance is not positive and has not been used in ticket.Action or billing.Transaction
+		clean(
+			reports, invalidateList, dryRun, "account.Administrator",
+			database -> database.queryList(
+				ObjectFactories.userNameFactory,
+				"select\n"
+				+ "  ba.username\n"
+				+ "from\n"
+				+ "  account.\"Administrator\"      ba\n"
+				+ "  inner join account.\"User\"    un on ba.username   = un.username\n"
+				+ "  inner join billing.\"Package\" pk on un.package    = pk.name\n"
+				+ "  inner join account.\"Account\" bu on pk.accounting = bu.accounting\n"
+				+ "where\n"
+				+ "  bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS + "\n"
+				// billing.AccountBalance
+				+ "  and not exists (select 1 from billing.\"AccountBalance\" ab where ab.accounting = bu.accounting and ab.confirmed > 0)\n"
+				// payment.Payment
+				// PostgresSQL 8.3 doing sequential scan on "or":
+				// + "  and (select cct.id from payment.\"Payment\" cct where cct.credit_card_created_by=ba.username or cct.authorization_username=ba.username or cct.capture_username=ba.username or cct.void_username=ba.username limit 1) is null\n"
+				+ "  and not exists (select 1 from payment.\"Payment\" cct1 where cct1.credit_card_created_by = ba.username)\n"
+				+ "  and not exists (select 1 from payment.\"Payment\" cct2 where cct2.authorization_username = ba.username)\n"
+				+ "  and not exists (select 1 from payment.\"Payment\" cct3 where cct3.capture_username       = ba.username)\n"
+				+ "  and not exists (select 1 from payment.\"Payment\" cct4 where cct4.void_username          = ba.username)\n"
+				// payment.CreditCard
+				+ "  and not exists (select 1 from payment.\"CreditCard\" cc where cc.created_by=ba.username)\n"
+				// account.DisableLog
+				+ "  and not exists (select 1 from account.\"DisableLog\" dl where dl.disabled_by=ba.username)\n"
+				// billing.MonthlyCharge
+				+ "  and not exists (select 1 from billing.\"MonthlyCharge\" mc where mc.created_by=ba.username)\n"
+				// billing.Package
+				+ "  and not exists (select 1 from billing.\"Package\" pk2 where pk2.created_by=ba.username)\n"
+				// signup.Request
+				+ "  and not exists (select 1 from signup.\"Request\" sr where sr.completed_by=ba.username)\n"
+				// ticket.Action
+				// PostgresSQL 8.3 doing sequential scan on "or":
+				// + "  and (select ta.id from ticket.Action ta where ta.administrator=ba.username or ta.old_assigned_to=ba.username or ta.new_assigned_to=ba.username limit 1) is null\n"
+				+ "  and not exists (select 1 from ticket.\"Action\" ta1 where ta1.administrator   = ba.username)\n"
+				+ "  and not exists (select 1 from ticket.\"Action\" ta2 where ta2.old_assigned_to = ba.username)\n"
+				+ "  and not exists (select 1 from ticket.\"Action\" ta3 where ta3.new_assigned_to = ba.username)\n"
+				// ticket.Assignment
+				+ "  and not exists (select 1 from ticket.\"Assignment\" ta4 where ta4.administrator=ba.username)\n"
+				// ticket.Ticket
+				+ "  and not exists (select 1 from ticket.\"Ticket\" ti where ti.created_by=ba.username)\n"
+				// billing.Transaction
+				+ "  and not exists (select 1 from billing.\"Transaction\" tr where tr.username=ba.username)"
+			),
+			each(AccountHandler::removeAdministrator)
+		);
 
-			// postgresql.User
-			{
-				List<com.aoindustries.aoserv.client.postgresql.User.Name> pus=conn.queryList(
-					ObjectFactories.postgresqlUserNameFactory,
-					"select\n"
-					+ "  pu.username\n"
-					+ "from\n"
-					+ "  postgresql.\"User\" pu,\n"
-					+ "  account.\"User\" un,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  pu.username=un.username\n"
-					+ "  and un.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-				);
-				for (com.aoindustries.aoserv.client.postgresql.User.Name pu : pus) {
-					PostgresqlHandler.removeUser(conn, invalidateList, pu);
-				}
+		// scm.CvsRepository
+		clean(
+			reports, invalidateList, dryRun, "scm.CvsRepository",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  cr.id\n"
+				+ "from\n"
+				+ "  scm.\"CvsRepository\" cr,\n"
+				+ "  linux.\"UserServer\" lsa,\n"
+				+ "  account.\"User\" un,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  cr.linux_server_account=lsa.id\n"
+				+ "  and lsa.username=un.username\n"
+				+ "  and un.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(CvsHandler::removeCvsRepository)
+		);
+
+		// dns.Zone
+		DnsService dnsService = MasterServer.getService(DnsService.class);
+		clean(
+			reports, invalidateList, dryRun, "dns.Zone",
+			database -> database.queryStringList(
+				"select\n"
+				+ "  dz.zone\n"
+				+ "from\n"
+				+ "  dns.\"Zone\" dz,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  dz.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(dnsService::removeDNSZone)
+		);
+
+		// email.List
+		clean(
+			reports, invalidateList, dryRun, "email.List",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  el.id\n"
+				+ "from\n"
+				+ "  email.\"List\" el,\n"
+				+ "  linux.\"GroupServer\" lsg,\n"
+				+ "  linux.\"Group\" lg,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  el.linux_server_group=lsg.id\n"
+				+ "  and lsg.name=lg.name\n"
+				+ "  and lg.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(EmailHandler::removeList)
+		);
+
+		// email.Domain
+		clean(
+			reports, invalidateList, dryRun, "email.Domain",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  ed.id\n"
+				+ "from\n"
+				+ "  email.\"Domain\" ed,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  ed.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(EmailHandler::removeDomain)
+		);
+
+		// email.Pipe
+		clean(
+			reports, invalidateList, dryRun, "email.Pipe",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  ep.id\n"
+				+ "from\n"
+				+ "  email.\"Pipe\" ep,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  ep.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(EmailHandler::removePipe)
+		);
+
+		// email.SmtpRelay
+		clean(
+			reports, invalidateList, dryRun, "email.SmtpRelay",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  esr.id\n"
+				+ "from\n"
+				+ "  email.\"SmtpRelay\" esr,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  esr.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(EmailHandler::removeSmtpRelay)
+		);
+
+		/*
+		// backup.FileReplicationSetting
+		{
+			IntList fbss=conn.queryIntList(
+				"select\n"
+				+ "  fbs.id\n"
+				+ "from\n"
+				+ "  account.\"Account\" bu,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  backup."FileReplicationSetting" fbs\n"
+				+ "where\n"
+				+ "  bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
+				+ "  and bu.accounting=pk.accounting\n"
+				+ "  and pk.id=fbs.package"
+			);
+			for(int c=0;c<fbss.size();c++) {
+				BackupHandler.removeFileBackupSetting(conn, invalidateList, fbss.getInt(c));
 			}
+		}*/
+		// TODO: Should also remove backup servers
 
-			// account.User
-			// delete all closed account.User, unless used by a business_administrator that was left behind
-			{
-				List<com.aoindustries.aoserv.client.account.User.Name> uns=conn.queryList(
-					ObjectFactories.userNameFactory,
-					"select\n"
-					+ "  un.username\n"
-					+ "from\n"
-					+ "  account.\"User\" un,\n"
-					+ "  billing.\"Package\" pk,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  un.package=pk.name\n"
-					+ "  and pk.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
-					+ "  and (select ba.username from account.\"Administrator\" ba where ba.username=un.username) is null"
-				);
-				for (com.aoindustries.aoserv.client.account.User.Name un : uns) {
-					AccountUserHandler.removeUser(conn, invalidateList, un);
+		// web.Site
+		clean(
+			reports, invalidateList, dryRun, "web.Site",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  hs.id\n"
+				+ "from\n"
+				+ "  web.\"Site\" hs,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  hs.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(WebHandler::removeSite)
+		);
+
+		// web.tomcat.SharedTomcat
+		clean(
+			reports, invalidateList, dryRun, "web.tomcat.SharedTomcat",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  hst.id\n"
+				+ "from\n"
+				+ "  \"web.tomcat\".\"SharedTomcat\" hst,\n"
+				+ "  linux.\"GroupServer\" lsg,\n"
+				+ "  linux.\"Group\" lg,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  hst.linux_server_group=lsg.id\n"
+				+ "  and lsg.name=lg.name\n"
+				+ "  and lg.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(WebHandler::removeSharedTomcat)
+		);
+
+		// ftp.PrivateServer
+		clean(
+			reports, invalidateList, dryRun, "ftp.PrivateServer",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  pfs.net_bind\n"
+				+ "from\n"
+				+ "  ftp.\"PrivateServer\" pfs,\n"
+				+ "  net.\"Bind\" nb,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  pfs.net_bind=nb.id\n"
+				+ "  and nb.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(FTPHandler::removePrivateServer)
+		);
+
+		// net.Bind
+		clean(
+			reports, invalidateList, dryRun, "net.Bind",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  nb.id\n"
+				+ "from\n"
+				+ "  net.\"Bind\" nb,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  nb.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(NetBindHandler::removeBind)
+		);
+
+		// net.IpAddress
+		clean(
+			reports, invalidateList, dryRun, "net.IpAddress",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  ia.id\n"
+				+ "from\n"
+				+ "  net.\"IpAddress\" ia,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  ia.package=pk.id\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each((conn, invList, ia) -> {
+				IpAddressHandler.setIpAddressPackage(conn, invList, ia, AccountHandler.getRootAccount());
+				IpAddressHandler.releaseIpAddress(conn, invList, ia);
+			})
+		);
+
+		// web.HttpdServer
+		clean(
+			reports, invalidateList, dryRun, "web.HttpdServer",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  hs.id\n"
+				+ "from\n"
+				+ "  web.\"HttpdServer\" hs,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  hs.package=pk.id\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(WebHandler::removeHttpdServer)
+		);
+
+		// linux.User
+		clean(
+			reports, invalidateList, dryRun, "linux.User",
+			database -> database.queryList(
+				ObjectFactories.linuxUserNameFactory,
+				"select\n"
+				+ "  la.username\n"
+				+ "from\n"
+				+ "  linux.\"User\" la,\n"
+				+ "  account.\"User\" un,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  la.username=un.username\n"
+				+ "  and un.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each((conn, invList, la) -> {
+				try {
+					LinuxAccountHandler.removeUser(conn, invList, la);
+				} catch (SQLException err) {
+					System.err.println("SQLException trying to remove User: " + la);
+					throw err;
 				}
-			}
+			})
+		);
 
-			// account.DisableLog
-			{
-				IntList dls=conn.queryIntList(
-					"select\n"
-					+ "  dl.id\n"
-					+ "from\n"
-					+ "  account.\"DisableLog\" dl,\n"
-					+ "  account.\"Account\" bu\n"
-					+ "where\n"
-					+ "  dl.accounting=bu.accounting\n"
-					+ "  and bu.canceled is not null\n"
-					+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
-					+ "  and (select ba.username from account.\"Administrator\" ba where ba.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select bu2.accounting from account.\"Account\" bu2 where bu2.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select cr.id from scm.\"CvsRepository\" cr where cr.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select el.id from email.\"List\" el where el.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select ep.id from email.\"Pipe\" ep where ep.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select esr.id from email.\"SmtpRelay\" esr where esr.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select hst.id from \"web.tomcat\".\"SharedTomcat\" hst where hst.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select hsb.id from web.\"VirtualHost\" hsb where hsb.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select hs.id from web.\"Site\" hs where hs.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select la.username from linux.\"User\" la where la.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select lsa.id from linux.\"UserServer\" lsa where lsa.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select msu.id from mysql.\"UserServer\" msu where msu.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select mu.username from mysql.\"User\" mu where mu.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select pk.name from billing.\"Package\" pk where pk.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select psu.id from postgresql.\"UserServer\" psu where psu.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select pu.username from postgresql.\"User\" pu where pu.disable_log=dl.id limit 1) is null\n"
-					+ "  and (select un.username from account.\"User\" un where un.disable_log=dl.id limit 1) is null"
-				);
-				for(int c = 0; c < dls.size(); c++) {
-					AccountHandler.removeDisableLog(conn, invalidateList, dls.getInt(c));
+		// linux.Group
+		clean(
+			reports, invalidateList, dryRun, "linux.Group",
+			database -> database.queryList(
+				ObjectFactories.groupNameFactory,
+				"select\n"
+				+ "  lg.name\n"
+				+ "from\n"
+				+ "  linux.\"Group\" lg,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  lg.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each((conn, invList, lg) -> {
+				try {
+					LinuxAccountHandler.removeGroup(conn, invList, lg);
+				} catch (SQLException err) {
+					System.err.println("SQLException trying to remove Group: " + lg);
+					throw err;
 				}
-			}
+			})
+		);
 
-			// account.AccountHost
-			// delete all account.AccountHost for canceled account.Account
-			{
-				for(int depth = Account.MAXIMUM_BUSINESS_TREE_DEPTH; depth>=1; depth--) {
-					// non-default
-					IntList bss=conn.queryIntList(
-						"select\n"
-						+ "  bs.id\n"
-						+ "from\n"
-						+ "  account.\"AccountHost\" bs,\n"
-						+ "  account.\"Account\" bu\n"
-						+ "where\n"
-						+ "  not bs.is_default\n"
-						+ "  and bs.accounting=bu.accounting\n"
-						+ "  and bu.canceled is not null\n"
-						+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-					);
-					for(int c=0;c<bss.size();c++) {
-						int bs = bss.getInt(c);
-						Account.Name account = conn.queryObject(ObjectFactories.accountNameFactory, "select accounting from account.\"AccountHost\" where id=?", bs);
-						int bsDepth = AccountHandler.getDepthInAccountTree(conn, account);
-						if(bsDepth==depth) AccountHandler.removeAccountHost(conn, invalidateList, bs);
-					}
+		// mysql.Database
+		clean(
+			reports, invalidateList, dryRun, "mysql.Database",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  md.id\n"
+				+ "from\n"
+				+ "  mysql.\"Database\" md,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  md.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(MysqlHandler::removeDatabase)
+		);
 
-					// default
-					bss=conn.queryIntList(
-						"select\n"
-						+ "  bs.id\n"
-						+ "from\n"
-						+ "  account.\"AccountHost\" bs,\n"
-						+ "  account.\"Account\" bu\n"
-						+ "where\n"
-						+ "  bs.accounting=bu.accounting\n"
-						+ "  and bu.canceled is not null\n"
-						+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
-					);
-					for(int c=0;c<bss.size();c++) {
-						int bs = bss.getInt(c);
-						Account.Name account = conn.queryObject(ObjectFactories.accountNameFactory, "select accounting from account.\"AccountHost\" where id=?", bs);
-						int bsDepth = AccountHandler.getDepthInAccountTree(conn, account);
-						if(bsDepth==depth) AccountHandler.removeAccountHost(conn, invalidateList, bs);
-					}
-				}
-			}
-			if(message.length()>0) {
-				logger.log(Level.WARNING, message.toString());
-			}
-			conn.commit();
+		// mysql.User
+		clean(
+			reports, invalidateList, dryRun, "mysql.User",
+			database -> database.queryList(
+				ObjectFactories.mysqlUserNameFactory,
+				"select\n"
+				+ "  mu.username\n"
+				+ "from\n"
+				+ "  mysql.\"User\" mu,\n"
+				+ "  account.\"User\" un,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  mu.username=un.username\n"
+				+ "  and un.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(MysqlHandler::removeUser)
+		);
+
+		// postgresql.Database
+		clean(
+			reports, invalidateList, dryRun, "postgresql.Database",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  pd.id\n"
+				+ "from\n"
+				+ "  postgresql.\"Database\" pd,\n"
+				+ "  postgresql.\"UserServer\" psu,\n"
+				+ "  account.\"User\" un,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  pd.datdba=psu.id\n"
+				+ "  and psu.username=un.username\n"
+				+ "  and un.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(PostgresqlHandler::removeDatabase)
+		);
+
+		// postgresql.User
+		clean(
+			reports, invalidateList, dryRun, "postgresql.User",
+			database -> database.queryList(
+				ObjectFactories.postgresqlUserNameFactory,
+				"select\n"
+				+ "  pu.username\n"
+				+ "from\n"
+				+ "  postgresql.\"User\" pu,\n"
+				+ "  account.\"User\" un,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  pu.username=un.username\n"
+				+ "  and un.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS
+			),
+			each(PostgresqlHandler::removeUser)
+		);
+
+		// account.User
+		// delete all closed account.User, unless used by a business_administrator that was left behind
+		clean(
+			reports, invalidateList, dryRun, "account.User",
+			database -> database.queryList(
+				ObjectFactories.userNameFactory,
+				"select\n"
+				+ "  un.username\n"
+				+ "from\n"
+				+ "  account.\"User\" un,\n"
+				+ "  billing.\"Package\" pk,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  un.package=pk.name\n"
+				+ "  and pk.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
+				+ "  and not exists (select 1 from account.\"Administrator\" ba where ba.username=un.username)"
+			),
+			each(AccountUserHandler::removeUser)
+		);
+
+		// account.DisableLog
+		clean(
+			reports, invalidateList, dryRun, "account.DisableLog",
+			database -> database.queryIntList(
+				"select\n"
+				+ "  dl.id\n"
+				+ "from\n"
+				+ "  account.\"DisableLog\" dl,\n"
+				+ "  account.\"Account\" bu\n"
+				+ "where\n"
+				+ "  dl.accounting=bu.accounting\n"
+				+ "  and bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
+				+ "  and not exists (select 1 from account.\"Administrator\" ba where ba.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from account.\"Account\" bu2 where bu2.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from scm.\"CvsRepository\" cr where cr.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from email.\"List\" el where el.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from email.\"Pipe\" ep where ep.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from email.\"SmtpRelay\" esr where esr.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from \"web.tomcat\".\"SharedTomcat\" hst where hst.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from web.\"VirtualHost\" hsb where hsb.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from web.\"Site\" hs where hs.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from linux.\"User\" la where la.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from linux.\"UserServer\" lsa where lsa.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from mysql.\"UserServer\" msu where msu.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from mysql.\"User\" mu where mu.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from billing.\"Package\" pk where pk.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from postgresql.\"UserServer\" psu where psu.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from postgresql.\"User\" pu where pu.disable_log=dl.id)\n"
+				+ "  and not exists (select 1 from account.\"User\" un where un.disable_log=dl.id)"
+			),
+			each(AccountHandler::removeDisableLog)
+		);
+
+		// account.AccountHost
+		// delete all account.AccountHost for canceled account.Account, deepest in the account tree first
+		// and the default host of each account last
+		clean(
+			reports, invalidateList, dryRun, "account.AccountHost",
+			database -> database.queryIntList(
+				"with recursive tree(accounting, depth) as (\n"
+				+ "  select accounting, 1 from account.\"Account\" where parent is null\n"
+				+ "  union all\n"
+				+ "  select bu.accounting, tree.depth + 1 from account.\"Account\" bu inner join tree on bu.parent = tree.accounting\n"
+				+ ")\n"
+				+ "select\n"
+				+ "  bs.id\n"
+				+ "from\n"
+				+ "  account.\"AccountHost\" bs\n"
+				+ "  inner join account.\"Account\" bu on bs.accounting = bu.accounting\n"
+				+ "  inner join tree on bs.accounting = tree.accounting\n"
+				+ "where\n"
+				+ "  bu.canceled is not null\n"
+				+ "  and (CURRENT_DATE - bu.canceled::date)>"+CANCELED_KEEP_DAYS+"\n"
+				+ "order by\n"
+				+ "  tree.depth desc,\n"
+				+ "  bs.is_default,\n"
+				+ "  bs.id"
+			),
+			each(AccountHandler::removeAccountHost)
+		);
+
+		if(message.length()>0) {
+			logger.log(Level.WARNING, message.toString());
 		}
+		return reports;
 	}
 
 	@SuppressWarnings({"UseOfSystemOutOrSystemErr", "UseSpecificCatch", "TooBroadCatch"})
 	public static void main(String[] args) {
 		try {
+			boolean dryRun = args.length == 1 && "--dry-run".equals(args[0]);
+			if(args.length > (dryRun ? 1 : 0)) {
+				System.err.println("usage: " + AccountCleaner.class.getName() + " [--dry-run]");
+				System.err.println();
+				System.err.println("        --dry-run  lists the rows each phase would remove, without removing any.  Later");
+				System.err.println("                   phases may under-report, since the rows of earlier phases remain.");
+				System.err.println();
+				System.err.println("Phases reported as \"row by row\" remove each row through its resource handler, one");
+				System.err.println("at a time along with its dependent resources, in transactions of up to " + BATCH_SIZE + " rows.");
+				System.err.println("These are limited by the per-row handler cost and are not set-based.");
+				System.exit(SysExits.EX_USAGE);
+			}
+			if(dryRun) {
+				System.out.println("Dry run: nothing is removed, so phases that depend on the removals of earlier phases");
+				System.out.println("may report fewer rows than a real cleaning would remove.");
+			}
 			InvalidateList invalidateList = new InvalidateList();
-			cleanNow(invalidateList);
+			for(PhaseReport report : cleanNow(invalidateList, dryRun)) {
+				System.out.println(report);
+				if(dryRun) {
+					for(Object key : report.getKeys()) {
+						System.out.println("    " + key);
+					}
+				}
+			}
 			for(Table.TableID tableId : Table.TableID.values()) {
 				List<Integer> affectedHosts = invalidateList.getAffectedHosts(tableId);
 				if(affectedHosts != null) {
@@ -0,0 +1,354 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.i18n.Money;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.security.Password;
+import com.aoapps.security.UnprotectedPassword;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.billing.Currency;
+import com.aoindustries.aoserv.client.billing.MoneyUtil;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify accounts, administrators, and packages.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class AccountCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.CANCEL_BUSINESS,
+			AoservProtocol.CommandID.COPY_PACKAGE_DEFINITION,
+			AoservProtocol.CommandID.SET_BUSINESS_ACCOUNTING,
+			AoservProtocol.CommandID.SET_BUSINESS_ADMINISTRATOR_PASSWORD,
+			AoservProtocol.CommandID.SET_BUSINESS_ADMINISTRATOR_PROFILE,
+			AoservProtocol.CommandID.SET_DEFAULT_BUSINESS_SERVER,
+			AoservProtocol.CommandID.SET_PACKAGE_DEFINITION_ACTIVE,
+			AoservProtocol.CommandID.SET_PACKAGE_DEFINITION_LIMITS,
+			AoservProtocol.CommandID.UPDATE_PACKAGE_DEFINITION
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case CANCEL_BUSINESS :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String cancelReason = in.readNullUTF();
+					process.setCommand(Command.CANCEL_BUSINESS, account, cancelReason);
+					AccountHandler.cancelAccount(conn, source, invalidateList, account, cancelReason);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case COPY_PACKAGE_DEFINITION :
+				{
+					int packageDefinition = in.readCompressedInt();
+					process.setCommand(
+						"copy_package_definition",
+						packageDefinition
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PackageHandler.copyPackageDefinition(
+							conn,
+							source,
+							invalidateList,
+							packageDefinition
+						)
+					);
+				}
+				break;
+			case SET_BUSINESS_ACCOUNTING :
+				{
+					Account.Name oldAccounting = Account.Name.valueOf(in.readUTF());
+					Account.Name newAccounting = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.SET_BUSINESS_ACCOUNTING,
+						oldAccounting,
+						newAccounting
+					);
+					AccountHandler.setAccountName(
+						conn,
+						source,
+						invalidateList,
+						oldAccounting,
+						newAccounting
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_BUSINESS_ADMINISTRATOR_PASSWORD :
+				{
+					com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					char[] chars = in.readUTF().toCharArray(); // TODO: Write as char[] so can be zeroed
+					try (UnprotectedPassword password = (chars.length == 0) ? null : new UnprotectedPassword(chars)) {
+						process.setCommand(
+							Command.SET_BUSINESS_ADMINISTRATOR_PASSWORD,
+							administrator,
+							Password.MASKED_PASSWORD
+						);
+						AccountHandler.setAdministratorPassword(
+							conn,
+							source,
+							invalidateList,
+							administrator,
+							password
+						);
+					}
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_BUSINESS_ADMINISTRATOR_PROFILE :
+				{
+					com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					String name=in.readUTF().trim();
+					String title=in.readNullUTF();
+					long birthdayLong=in.readLong();
+					Date birthday = birthdayLong==-1 ? null : new Date(birthdayLong);
+					boolean isPrivate=in.readBoolean();
+					String workPhone=in.readUTF().trim();
+					String homePhone=in.readNullUTF();
+					String cellPhone=in.readNullUTF();
+					String fax=in.readNullUTF();
+					String email=in.readUTF().trim();
+					String address1=in.readNullUTF();
+					String address2=in.readNullUTF();
+					String city=in.readNullUTF();
+					String state=in.readNullUTF();
+					String country=in.readNullUTF();
+					String zip=in.readNullUTF();
+					process.setCommand(
+						Command.SET_BUSINESS_ADMINISTRATOR_PROFILE,
+						administrator,
+						name,
+						title,
+						birthday,
+						isPrivate,
+						workPhone,
+						homePhone,
+						cellPhone,
+						fax,
+						email,
+						address1,
+						address2,
+						city,
+						state,
+						country,
+						zip
+					);
+					AccountHandler.setAdministratorProfile(
+						conn,
+						source,
+						invalidateList,
+						administrator,
+						name,
+						title,
+						birthday,
+						isPrivate,
+						workPhone,
+						homePhone,
+						cellPhone,
+						fax,
+						email,
+						address1,
+						address2,
+						city,
+						state,
+						country,
+						zip
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_DEFAULT_BUSINESS_SERVER :
+				{
+					int accountHost = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_DEFAULT_BUSINESS_SERVER,
+						accountHost
+					);
+					AccountHandler.setDefaultAccountHost(
+						conn,
+						source,
+						invalidateList,
+						accountHost
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_PACKAGE_DEFINITION_ACTIVE :
+				{
+					int packageDefinition = in.readCompressedInt();
+					boolean isActive = in.readBoolean();
+					process.setCommand(
+						"set_package_definition_active",
+						packageDefinition,
+						isActive
+					);
+					PackageHandler.setPackageDefinitionActive(
+						conn,
+						source,
+						invalidateList,
+						packageDefinition,
+						isActive
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_PACKAGE_DEFINITION_LIMITS :
+				{
+					int packageDefinition = in.readCompressedInt();
+					int count = in.readCompressedInt();
+					String[] resources = new String[count];
+					int[] soft_limits = new int[count];
+					int[] hard_limits = new int[count];
+					Money[] additionalRates = new Money[count];
+					String[] additional_transaction_types = new String[count];
+					for(int c = 0; c < count; c++) {
+						resources[c] = in.readUTF().trim();
+						soft_limits[c] = in.readCompressedInt();
+						hard_limits[c] = in.readCompressedInt();
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+							int pennies = in.readCompressedInt();
+							additionalRates[c] = pennies == -1 || pennies == 0 ? null : new Money(Currency.USD, pennies, 2);
+						} else {
+							additionalRates[c] = MoneyUtil.readNullMoney(in);
+						}
+						additional_transaction_types[c] = in.readNullUTF();
+					}
+					process.setCommand(
+						"set_package_definition_limits",
+						packageDefinition,
+						count,
+						resources,
+						soft_limits,
+						hard_limits,
+						additionalRates,
+						additional_transaction_types
+					);
+					PackageHandler.setPackageDefinitionLimits(
+						conn,
+						source,
+						invalidateList,
+						packageDefinition,
+						resources,
+						soft_limits,
+						hard_limits,
+						additionalRates,
+						additional_transaction_types
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case UPDATE_PACKAGE_DEFINITION :
+				{
+					int packageDefinition = in.readCompressedInt();
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String category=in.readUTF();
+					String name=in.readUTF().trim();
+					String version=in.readUTF().trim();
+					String display=in.readUTF().trim();
+					String description=in.readUTF().trim();
+					Money setupFee;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						int pennies = in.readCompressedInt();
+						setupFee = pennies == -1 || pennies == 0 ? null : new Money(Currency.USD, pennies, 2);
+					} else {
+						setupFee = MoneyUtil.readNullMoney(in);
+					}
+					String setupFeeTransactionType=in.readNullUTF();
+					Money monthlyRate;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						monthlyRate = new Money(Currency.USD, in.readCompressedInt(), 2);
+					} else {
+						monthlyRate = MoneyUtil.readMoney(in);
+					}
+					String monthlyRateTransactionType=in.readUTF();
+					process.setCommand(
+						"update_package_definition",
+						packageDefinition,
+						account,
+						category,
+						name,
+						version,
+						display,
+						description,
+						setupFee,
+						setupFeeTransactionType,
+						monthlyRate,
+						monthlyRateTransactionType
+					);
+					PackageHandler.updatePackageDefinition(
+						conn,
+						source,
+						invalidateList,
+						packageDefinition,
+						account,
+						category,
+						name,
+						version,
+						display,
+						description,
+						setupFee,
+						setupFeeTransactionType,
+						monthlyRate,
+						monthlyRateTransactionType
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -79,13 +79,7 @@ final public class AccountHandler {
 	private final static Map<Account.Name, Boolean> disabledAccounts = new HashMap<>();
 
 	public static boolean canAccessAccount(DatabaseAccess db, RequestSource source, Account.Name account) throws IOException, SQLException {
-		//com.aoindustries.aoserv.client.account.User.Name administrator = source.getAdministrator();
-		return
-			getAllowedAccounts(db, source)
-			.contains(
-				account //UsernameHandler.getAccountForUser(conn, administrator)
-			)
-		;
+		return AccessIndex.canAccessAccount(db, source, account);
 	}
 
 	public static boolean canAccessDisableLog(DatabaseConnection conn, RequestSource source, int disableLog, boolean enabling) throws IOException, SQLException {
@@ -1390,6 +1384,8 @@ final public class AccountHandler {
 		checkAccessAccount(conn, source, "setAccountName", account);
 
 		conn.update("update account.\"Account\" set accounting=? where accounting=?", name, account);
+		// Keep the balances with the renamed account, in case not cascaded
+		conn.update("update billing.\"AccountBalance\" set accounting=? where accounting=?", name, account);
 
 		// TODO: Update stored cards since they have "group_name" meta data matching the account name.
 
@@ -0,0 +1,2728 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.AoCollections;
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.Strings;
+import com.aoapps.lang.i18n.Money;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.DomainName;
+import com.aoapps.net.Email;
+import com.aoapps.net.HostAddress;
+import com.aoapps.net.InetAddress;
+import com.aoapps.net.Port;
+import com.aoapps.net.Protocol;
+import com.aoapps.sql.SQLStreamables;
+import com.aoapps.sql.SQLUtility;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.account.Profile;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.billing.Currency;
+import com.aoindustries.aoserv.client.billing.MoneyUtil;
+import com.aoindustries.aoserv.client.billing.Transaction;
+import com.aoindustries.aoserv.client.dns.Record;
+import com.aoindustries.aoserv.client.linux.Group;
+import com.aoindustries.aoserv.client.linux.PosixPath;
+import com.aoindustries.aoserv.client.linux.User.Gecos;
+import com.aoindustries.aoserv.client.mysql.Database;
+import com.aoindustries.aoserv.client.net.FirewallZone;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import com.aoindustries.aoserv.client.schema.Type;
+import com.aoindustries.aoserv.client.ticket.Language;
+import com.aoindustries.aoserv.client.web.tomcat.Context;
+import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles {@link AoservProtocol.CommandID#ADD}: adds a row to the table given by the client.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class AddCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(AoservProtocol.CommandID.ADD);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		int clientTableID = in.readCompressedInt();
+		Table.TableID tableID=TableHandler.convertFromClientTableID(conn, source, clientTableID);
+		if(tableID==null) throw new IOException("Client table not supported: #"+clientTableID);
+		switch(tableID) {
+			case BUSINESS_ADMINISTRATORS :
+				{
+					com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					String name=in.readUTF().trim();
+					String title=in.readNullUTF();
+					long birthdayLong=in.readLong();
+					Date birthday = birthdayLong==-1 ? null : new Date(birthdayLong);
+					boolean isPrivate=in.readBoolean();
+					String workPhone=in.readUTF().trim();
+					String homePhone=in.readNullUTF();
+					String cellPhone=in.readNullUTF();
+					String fax=in.readNullUTF();
+					String email=in.readUTF().trim();
+					String address1=in.readNullUTF();
+					String address2=in.readNullUTF();
+					String city=in.readNullUTF();
+					String state=in.readNullUTF();
+					String country=in.readNullUTF();
+					String zip=in.readNullUTF();
+					boolean enableEmailSupport=
+						source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0
+						? in.readBoolean()
+						: false
+					;
+					process.setCommand(
+						Command.ADD_BUSINESS_ADMINISTRATOR,
+						user,
+						name,
+						title,
+						birthday,
+						isPrivate,
+						workPhone,
+						homePhone,
+						cellPhone,
+						fax,
+						email,
+						address1,
+						address2,
+						city,
+						state,
+						country,
+						zip,
+						enableEmailSupport
+					);
+					AccountHandler.addAdministrator(
+						conn,
+						source,
+						invalidateList,
+						user,
+						name,
+						title,
+						birthday,
+						isPrivate,
+						workPhone,
+						homePhone,
+						cellPhone,
+						fax,
+						email,
+						address1,
+						address2,
+						city,
+						state,
+						country,
+						zip,
+						enableEmailSupport
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case BUSINESS_PROFILES :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String name=in.readUTF().trim();
+					boolean isPrivate=in.readBoolean();
+					String phone=in.readUTF().trim();
+					String fax=in.readNullUTF();
+					String address1=in.readUTF().trim();
+					String address2=in.readNullUTF();
+					String city=in.readUTF().trim();
+					String state=in.readNullUTF();
+					String country=in.readUTF();
+					String zip=in.readNullUTF();
+					boolean sendInvoice=in.readBoolean();
+					String billingContact=in.readUTF().trim();
+					Set<Email> billingEmail;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
+						int size = in.readCompressedInt();
+						billingEmail = AoCollections.newLinkedHashSet(size);
+						for(int i = 0; i < size; i++) {
+							billingEmail.add(Email.valueOf(in.readUTF()));
+						}
+					} else {
+						billingEmail = Profile.splitEmails(in.readUTF().trim());
+					}
+					Profile.EmailFormat billingEmailFormat;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_20) >= 0) {
+						billingEmailFormat = in.readEnum(Profile.EmailFormat.class);
+					} else {
+						billingEmailFormat = Profile.EmailFormat.HTML;
+					}
+					String technicalContact=in.readUTF().trim();
+					Set<Email> technicalEmail;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
+						int size = in.readCompressedInt();
+						technicalEmail = AoCollections.newLinkedHashSet(size);
+						for(int i = 0; i < size; i++) {
+							technicalEmail.add(Email.valueOf(in.readUTF()));
+						}
+					} else {
+						technicalEmail = Profile.splitEmails(in.readUTF().trim());
+					}
+					Profile.EmailFormat technicalEmailFormat;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_20) >= 0) {
+						technicalEmailFormat = in.readEnum(Profile.EmailFormat.class);
+					} else {
+						technicalEmailFormat = Profile.EmailFormat.HTML;
+					}
+					process.setCommand(
+						Command.ADD_BUSINESS_PROFILE,
+						account,
+						name,
+						isPrivate,
+						phone,
+						fax,
+						address1,
+						address2,
+						city,
+						state,
+						country,
+						zip,
+						sendInvoice,
+						billingContact,
+						billingEmail,
+						billingEmailFormat,
+						technicalContact,
+						technicalEmail,
+						technicalEmailFormat
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						AccountHandler.addProfile(
+							conn,
+							source,
+							invalidateList,
+							account,
+							name,
+							isPrivate,
+							phone,
+							fax,
+							address1,
+							address2,
+							city,
+							state,
+							country,
+							zip,
+							sendInvoice,
+							billingContact,
+							billingEmail,
+							billingEmailFormat,
+							technicalContact,
+							technicalEmail,
+							technicalEmailFormat
+						)
+					);
+				}
+				break;
+			case BUSINESS_SERVERS :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					int host = in.readCompressedInt();
+					if(
+						source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_102)>=0
+						&& source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0
+					) {
+						boolean can_configure_backup=in.readBoolean();
+					}
+					process.setCommand(
+						Command.ADD_BUSINESS_SERVER,
+						account,
+						host
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						AccountHandler.addAccountHost(
+							conn,
+							source,
+							invalidateList,
+							account,
+							host
+						)
+					);
+				}
+				break;
+			case BUSINESSES :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String contractVersion=in.readNullUTF();
+					int defaultServer;
+					DomainName hostname;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						defaultServer = -1;
+						hostname = DomainName.valueOf(in.readUTF());
+					} else {
+						defaultServer = in.readCompressedInt();
+						hostname = null;
+					}
+					Account.Name parent = Account.Name.valueOf(in.readUTF());
+					boolean can_add_backup_servers=
+						source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_102)>=0
+						?in.readBoolean()
+						:false
+					;
+					boolean can_add_businesses=in.readBoolean();
+					boolean can_see_prices=
+						source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_103)>=0
+						?in.readBoolean()
+						:true
+					;
+					boolean billParent=in.readBoolean();
+					// Convert old hostname to net.Host.id
+					if(defaultServer==-1) {
+						defaultServer = NetHostHandler.getHostForLinuxServerHostname(conn, hostname);
+					}
+					process.setCommand(
+						Command.ADD_BUSINESS,
+						account,
+						contractVersion,
+						defaultServer,
+						parent,
+						can_add_backup_servers,
+						can_add_businesses,
+						can_see_prices,
+						billParent
+					);
+					AccountHandler.addAccount(
+						conn,
+						source,
+						invalidateList,
+						account,
+						contractVersion,
+						defaultServer,
+						parent,
+						can_add_backup_servers,
+						can_add_businesses,
+						can_see_prices,
+						billParent
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case CREDIT_CARDS :
+				{
+					// If before version 1.29, do not support add call but read the old values anyway
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_28)<=0) {
+						String accounting=in.readUTF();
+						byte[] cardNumber=new byte[in.readCompressedInt()]; in.readFully(cardNumber);
+						String cardInfo=in.readUTF().trim();
+						byte[] expirationMonth=new byte[in.readCompressedInt()]; in.readFully(expirationMonth);
+						byte[] expirationYear=new byte[in.readCompressedInt()]; in.readFully(expirationYear);
+						byte[] cardholderName=new byte[in.readCompressedInt()]; in.readFully(cardholderName);
+						byte[] streetAddress=new byte[in.readCompressedInt()]; in.readFully(streetAddress);
+						byte[] city=new byte[in.readCompressedInt()]; in.readFully(city);
+						int len=in.readCompressedInt(); if(len >= 0) in.readFully(new byte[len]); // state
+						len=in.readCompressedInt(); if(len >= 0) in.readFully(new byte[len]); // zip
+						boolean useMonthly=in.readBoolean();
+						String description=in.readNullUTF();
+						throw new SQLException("add_credit_card for protocol version "+AoservProtocol.Version.VERSION_1_28+" or older is no longer supported.");
+					}
+					String processorName = in.readUTF();
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String groupName = in.readNullUTF();
+					String cardInfo = in.readUTF().trim();
+					Byte expirationMonth;
+					Short expirationYear;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						expirationMonth = in.readByte();
+						expirationYear = in.readShort();
+					} else {
+						expirationMonth = null;
+						expirationYear = null;
+					}
+					String providerUniqueId = in.readUTF();
+					String firstName = in.readUTF().trim();
+					String lastName = in.readUTF().trim();
+					String companyName = in.readNullUTF();
+					String email = in.readNullUTF();
+					String phone = in.readNullUTF();
+					String fax = in.readNullUTF();
+					String customerId;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_1) >= 0) {
+						customerId = in.readNullUTF();
+					} else {
+						customerId = null;
+					}
+					String customerTaxId = in.readNullUTF();
+					String streetAddress1 = in.readUTF();
+					String streetAddress2 = in.readNullUTF();
+					String city = in.readUTF();
+					String state = in.readNullUTF();
+					String postalCode = in.readNullUTF();
+					String countryCode = in.readUTF();
+					String principalName = in.readNullUTF();
+					String description = in.readNullUTF();
+					String encryptedCardNumber;
+					int encryptionFrom;
+					int encryptionRecipient;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						encryptedCardNumber = null;
+						encryptionFrom = -1;
+						encryptionRecipient = -1;
+					} else {
+						encryptedCardNumber = in.readNullUTF();
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) < 0) {
+							String encryptedExpiration = in.readNullUTF();
+						}
+						encryptionFrom = in.readCompressedInt();
+						encryptionRecipient = in.readCompressedInt();
+					}
+
+					process.setCommand(
+						"add_credit_card",
+						processorName,
+						account,
+						groupName,
+						cardInfo,
+						expirationMonth==null ? null : AoservProtocol.FILTERED,
+						expirationYear==null ? null : AoservProtocol.FILTERED,
+						providerUniqueId,
+						firstName,
+						lastName,
+						companyName,
+						email,
+						phone,
+						fax,
+						customerId,
+						customerTaxId,
+						streetAddress1,
+						streetAddress2,
+						city,
+						state,
+						postalCode,
+						countryCode,
+						principalName,
+						description,
+						encryptedCardNumber==null ? null : AoservProtocol.FILTERED,
+						encryptionFrom==-1 ? null : encryptionFrom,
+						encryptionRecipient==-1 ? null : encryptionRecipient
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PaymentHandler.addCreditCard(
+							conn,
+							source,
+							invalidateList,
+							processorName,
+							account,
+							groupName,
+							cardInfo,
+							expirationMonth,
+							expirationYear,
+							providerUniqueId,
+							firstName,
+							lastName,
+							companyName,
+							email,
+							phone,
+							fax,
+							customerId,
+							customerTaxId,
+							streetAddress1,
+							streetAddress2,
+							city,
+							state,
+							postalCode,
+							countryCode,
+							principalName,
+							description,
+							encryptedCardNumber,
+							encryptionFrom,
+							encryptionRecipient
+						)
+					);
+				}
+				break;
+			case CREDIT_CARD_TRANSACTIONS :
+				{
+					String processor = in.readUTF();
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String groupName = in.readNullUTF();
+					boolean testMode = in.readBoolean();
+					int duplicateWindow = in.readCompressedInt();
+					String orderNumber = in.readNullUTF();
+					java.util.Currency currency = java.util.Currency.getInstance(in.readUTF());
+					Money amount;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						amount = new Money(currency, new BigDecimal(in.readUTF()));
+					} else {
+						amount = new Money(currency, in.readLong(), in.readCompressedInt());
+					}
+					Money taxAmount;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						String value = in.readNullUTF();
+						taxAmount = value == null ? null : new Money(currency, new BigDecimal(value));
+					} else {
+						if(in.readBoolean()) {
+							taxAmount = new Money(currency, in.readLong(), in.readCompressedInt());
+						} else {
+							taxAmount = null;
+						}
+					}
+					boolean taxExempt = in.readBoolean();
+					Money shippingAmount;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						String value = in.readNullUTF();
+						shippingAmount = value == null ? null : new Money(currency, new BigDecimal(value));
+					} else {
+						if(in.readBoolean()) {
+							shippingAmount = new Money(currency, in.readLong(), in.readCompressedInt());
+						} else {
+							shippingAmount = null;
+						}
+					}
+					Money dutyAmount;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						String value = in.readNullUTF();
+						dutyAmount = value == null ? null : new Money(currency, new BigDecimal(value));
+					} else {
+						if(in.readBoolean()) {
+							dutyAmount = new Money(currency, in.readLong(), in.readCompressedInt());
+						} else {
+							dutyAmount = null;
+						}
+					}
+					String shippingFirstName = in.readNullUTF();
+					String shippingLastName = in.readNullUTF();
+					String shippingCompanyName = in.readNullUTF();
+					String shippingStreetAddress1 = in.readNullUTF();
+					String shippingStreetAddress2 = in.readNullUTF();
+					String shippingCity = in.readNullUTF();
+					String shippingState = in.readNullUTF();
+					String shippingPostalCode = in.readNullUTF();
+					String shippingCountryCode = in.readNullUTF();
+					boolean emailCustomer = in.readBoolean();
+					String merchantEmail = in.readNullUTF();
+					String invoiceNumber = in.readNullUTF();
+					String purchaseOrderNumber = in.readNullUTF();
+					String description = in.readNullUTF();
+					com.aoindustries.aoserv.client.account.User.Name creditCardCreatedBy = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					String creditCardPrincipalName = in.readNullUTF();
+					Account.Name creditCardAccounting = Account.Name.valueOf(in.readUTF());
+					String creditCardGroupName = in.readNullUTF();
+					String creditCardProviderUniqueId = in.readNullUTF();
+					String creditCardMaskedCardNumber = in.readUTF();
+					Byte creditCard_expirationMonth;
+					Short creditCard_expirationYear;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						creditCard_expirationMonth = in.readNullByte();
+						creditCard_expirationYear = in.readNullShort();
+					} else {
+						creditCard_expirationMonth = null;
+						creditCard_expirationYear = null;
+					}
+					String creditCardFirstName = in.readUTF();
+					String creditCardLastName = in.readUTF();
+					String creditCardCompanyName = in.readNullUTF();
+					String creditCardEmail = in.readNullUTF();
+					String creditCardPhone = in.readNullUTF();
+					String creditCardFax = in.readNullUTF();
+					String creditCardCustomerId;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_1) >= 0) {
+						creditCardCustomerId = in.readNullUTF();
+					} else {
+						creditCardCustomerId = null;
+					}
+					String creditCardCustomerTaxId = in.readNullUTF();
+					String creditCardStreetAddress1 = in.readUTF();
+					String creditCardStreetAddress2 = in.readNullUTF();
+					String creditCardCity = in.readUTF();
+					String creditCardState = in.readNullUTF();
+					String creditCardPostalCode = in.readNullUTF();
+					String creditCardCountryCode = in.readUTF();
+					String creditCardComments = in.readNullUTF();
+					long authorizationTime = in.readLong();
+					String authorizationPrincipalName = in.readNullUTF();
+
+					process.setCommand(
+						"add_credit_card_transaction",
+						processor,
+						account,
+						groupName,
+						testMode,
+						duplicateWindow,
+						orderNumber,
+						amount,
+						taxAmount,
+						taxExempt,
+						shippingAmount,
+						dutyAmount,
+						shippingFirstName,
+						shippingLastName,
+						shippingCompanyName,
+						shippingStreetAddress1,
+						shippingStreetAddress2,
+						shippingCity,
+						shippingState,
+						shippingPostalCode,
+						shippingCountryCode,
+						emailCustomer,
+						merchantEmail,
+						invoiceNumber,
+						purchaseOrderNumber,
+						description,
+						creditCardCreatedBy,
+						creditCardPrincipalName,
+						creditCardAccounting,
+						creditCardGroupName,
+						creditCardProviderUniqueId,
+						creditCardMaskedCardNumber,
+						creditCard_expirationMonth==null ? null : AoservProtocol.FILTERED,
+						creditCard_expirationYear==null ? null : AoservProtocol.FILTERED,
+						creditCardFirstName,
+						creditCardLastName,
+						creditCardCompanyName,
+						creditCardEmail,
+						creditCardPhone,
+						creditCardFax,
+						creditCardCustomerId,
+						creditCardCustomerTaxId,
+						creditCardStreetAddress1,
+						creditCardStreetAddress2,
+						creditCardCity,
+						creditCardState,
+						creditCardPostalCode,
+						creditCardCountryCode,
+						creditCardComments,
+						new java.util.Date(authorizationTime),
+						authorizationPrincipalName
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PaymentHandler.addPayment(
+							conn,
+							source,
+							invalidateList,
+							processor,
+							account,
+							groupName,
+							testMode,
+							duplicateWindow,
+							orderNumber,
+							amount,
+							taxAmount,
+							taxExempt,
+							shippingAmount,
+							dutyAmount,
+							shippingFirstName,
+							shippingLastName,
+							shippingCompanyName,
+							shippingStreetAddress1,
+							shippingStreetAddress2,
+							shippingCity,
+							shippingState,
+							shippingPostalCode,
+							shippingCountryCode,
+							emailCustomer,
+							merchantEmail,
+							invoiceNumber,
+							purchaseOrderNumber,
+							description,
+							creditCardCreatedBy,
+							creditCardPrincipalName,
+							creditCardAccounting,
+							creditCardGroupName,
+							creditCardProviderUniqueId,
+							creditCardMaskedCardNumber,
+							creditCard_expirationMonth,
+							creditCard_expirationYear,
+							creditCardFirstName,
+							creditCardLastName,
+							creditCardCompanyName,
+							creditCardEmail,
+							creditCardPhone,
+							creditCardFax,
+							creditCardCustomerId,
+							creditCardCustomerTaxId,
+							creditCardStreetAddress1,
+							creditCardStreetAddress2,
+							creditCardCity,
+							creditCardState,
+							creditCardPostalCode,
+							creditCardCountryCode,
+							creditCardComments,
+							authorizationTime,
+							authorizationPrincipalName
+						)
+					);
+				}
+				break;
+			case CVS_REPOSITORIES :
+				{
+					int linuxServer = in.readCompressedInt();
+					PosixPath path = PosixPath.valueOf(in.readUTF());
+					int lsa = in.readCompressedInt();
+					int lsg = in.readCompressedInt();
+					long mode = in.readLong();
+					process.setCommand(
+						Command.ADD_CVS_REPOSITORY,
+						linuxServer,
+						path,
+						lsa,
+						lsg,
+						Long.toOctalString(mode)
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						CvsHandler.addCvsRepository(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							path,
+							lsa,
+							lsg,
+							mode
+						)
+					);
+				}
+				break;
+			case DISABLE_LOG :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String disableReason = in.readNullUTF();
+					process.setCommand(
+						"add_disable_log",
+						account,
+						disableReason
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						AccountHandler.addDisableLog(
+							conn,
+							source,
+							invalidateList,
+							account,
+							disableReason
+						)
+					);
+				}
+				break;
+			case DNS_RECORDS :
+				{
+					String zone        = in.readUTF();
+					String domain      = in.readUTF().trim();
+					String type        = in.readUTF();
+					int priority       = in.readCompressedInt();
+					int weight;
+					int port;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_72)>=0) {
+						weight         = in.readCompressedInt();
+						port           = in.readCompressedInt();
+					} else {
+						weight         = Record.NO_WEIGHT;
+						port           = Record.NO_PORT;
+					}
+					String destination = in.readUTF().trim();
+					int ttl;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_127)>=0) {
+						ttl            = in.readCompressedInt();
+					} else {
+						ttl            = Record.NO_TTL;
+					}
+					process.setCommand(
+						Command.ADD_DNS_RECORD,
+						zone,
+						domain,
+						type,
+						priority==Record.NO_PRIORITY ? null : priority,
+						weight==Record.NO_WEIGHT ? null : weight,
+						port==Record.NO_PORT ? null : port,
+						destination,
+						ttl==Record.NO_TTL ? null : ttl
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						MasterServer.getService(DnsService.class).addRecord(
+							conn,
+							source,
+							invalidateList,
+							zone,
+							domain,
+							type,
+							priority,
+							weight,
+							port,
+							destination,
+							ttl
+						)
+					);
+				}
+				break;
+			case DNS_ZONES :
+				{
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					String zone = in.readUTF().trim();
+					InetAddress ip = InetAddress.valueOf(in.readUTF());
+					int ttl = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_DNS_ZONE,
+						packageName,
+						zone,
+						ip,
+						ttl
+					);
+					MasterServer.getService(DnsService.class).addDNSZone(
+						conn,
+						source,
+						invalidateList,
+						packageName,
+						zone,
+						ip,
+						ttl
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_ADDRESSES :
+				{
+					String address = in.readUTF().trim();
+					int domain = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_EMAIL_ADDRESS,
+						address,
+						domain
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addAddress(
+							conn,
+							source,
+							invalidateList,
+							address,
+							domain
+						)
+					);
+				}
+				break;
+			case EMAIL_DOMAINS :
+				{
+					DomainName domain = DomainName.valueOf(in.readUTF());
+					int linuxServer = in.readCompressedInt();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_EMAIL_DOMAIN,
+						domain,
+						linuxServer,
+						packageName
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addDomain(
+							conn,
+							source,
+							invalidateList,
+							domain,
+							linuxServer,
+							packageName
+						)
+					);
+				}
+				break;
+			case EMAIL_FORWARDING :
+				{
+					int address = in.readCompressedInt();
+					Email destination = Email.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_EMAIL_FORWARDING,
+						address,
+						destination
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addForwarding(
+							conn,
+							source,
+							invalidateList,
+							address,
+							destination
+						)
+					);
+				}
+				break;
+			case EMAIL_LIST_ADDRESSES :
+				{
+					int address=in.readCompressedInt();
+					int list=in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_EMAIL_LIST_ADDRESS,
+						address,
+						list
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addListAddress(
+							conn,
+							source,
+							invalidateList,
+							address,
+							list
+						)
+					);
+				}
+				break;
+			case EMAIL_LISTS :
+				{
+					PosixPath path = PosixPath.valueOf(in.readUTF());
+					int userServer = in.readCompressedInt();
+					int groupServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_EMAIL_LIST,
+						path,
+						userServer,
+						groupServer
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addList(
+							conn,
+							source,
+							invalidateList,
+							path,
+							userServer,
+							groupServer
+						)
+					);
+				}
+				break;
+			case EMAIL_PIPE_ADDRESSES :
+				{
+					int address=in.readCompressedInt();
+					int pipe=in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_EMAIL_PIPE_ADDRESS,
+						address,
+						pipe
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addPipeAddress(
+							conn,
+							source,
+							invalidateList,
+							address,
+							pipe
+						)
+					);
+				}
+				break;
+			case EMAIL_PIPES :
+				{
+					int linuxServer = in.readCompressedInt();
+					String command = in.readUTF();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_EMAIL_PIPE,
+						linuxServer,
+						command,
+						packageName
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addPipe(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							command,
+							packageName
+						)
+					);
+				}
+				break;
+			case EMAIL_SMTP_RELAYS :
+				{
+					process.setPriority(Thread.NORM_PRIORITY+1);
+					Thread.currentThread().setPriority(Thread.NORM_PRIORITY+1);
+
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					int linuxServer= in.readCompressedInt();
+					HostAddress host = HostAddress.valueOf(in.readUTF());
+					String type=in.readUTF();
+					long duration=in.readLong();
+					process.setCommand(
+						Command.ADD_EMAIL_SMTP_RELAY,
+						packageName,
+						linuxServer==-1?null:linuxServer,
+						host,
+						type,
+						duration
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addSmtpRelay(
+							conn,
+							source,
+							invalidateList,
+							packageName,
+							linuxServer,
+							host,
+							type,
+							duration
+						)
+					);
+				}
+				break;
+			case FAILOVER_FILE_LOG :
+				{
+					int fileReplication=in.readCompressedInt();
+					long fflStartTime=in.readLong();
+					long endTime=in.readLong();
+					int scanned=in.readCompressedInt();
+					int updated=in.readCompressedInt();
+					long bytes=in.readLong();
+					boolean isSuccessful=in.readBoolean();
+					process.setCommand(
+						"add_failover_file_log",
+						fileReplication,
+						new java.util.Date(fflStartTime),
+						new java.util.Date(endTime),
+						scanned,
+						updated,
+						bytes,
+						isSuccessful
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						FailoverHandler.addFileReplicationLog(
+							conn,
+							source,
+							invalidateList,
+							fileReplication,
+							fflStartTime,
+							endTime,
+							scanned,
+							updated,
+							bytes,
+							isSuccessful
+						)
+					);
+				}
+				break;
+			case FILE_BACKUP_SETTINGS :
+				{
+					int fileReplication=in.readCompressedInt();
+					String path=in.readUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						int packageNum=in.readCompressedInt();
+					}
+					boolean backupEnabled;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						short backupLevel=in.readShort();
+						short backupRetention=in.readShort();
+						boolean recurse=in.readBoolean();
+						backupEnabled = backupLevel>0;
+					} else {
+						backupEnabled = in.readBoolean();
+					}
+					boolean required;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_62)>=0) {
+						required = in.readBoolean();
+					} else {
+						required = false;
+					}
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_31)<0) {
+						throw new IOException(Command.ADD_FILE_BACKUP_SETTING+" call not supported for AoservProtocol < "+AoservProtocol.Version.VERSION_1_31+", please upgrade AOServ Client.");
+					}
+					process.setCommand(
+						Command.ADD_FILE_BACKUP_SETTING,
+						fileReplication,
+						path,
+						backupEnabled,
+						required
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						BackupHandler.addFileReplicationSetting(
+							conn,
+							source,
+							invalidateList,
+							fileReplication,
+							path,
+							backupEnabled,
+							required
+						)
+					);
+				}
+				break;
+			case FTP_GUEST_USERS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name linuxUser = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_FTP_GUEST_USER,
+						linuxUser
+					);
+					FTPHandler.addGuestUser(
+						conn,
+						source,
+						invalidateList,
+						linuxUser
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_SHARED_TOMCATS :
+				{
+					String name=in.readUTF().trim();
+					int linuxServer=in.readCompressedInt();
+					int version=in.readCompressedInt();
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
+						boolean isSecure = in.readBoolean();
+						boolean isOverflow = in.readBoolean();
+						if(isSecure) throw new IOException(Command.ADD_HTTPD_SHARED_TOMCAT + " call no longer supports is_secure=true");
+						if(isOverflow) throw new IOException(Command.ADD_HTTPD_SHARED_TOMCAT + " call no longer supports isOverflow=true");
+					}
+					process.setCommand(
+						Command.ADD_HTTPD_SHARED_TOMCAT,
+						name,
+						linuxServer,
+						version,
+						user,
+						group
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addSharedTomcat(
+							conn,
+							source,
+							invalidateList,
+							name,
+							linuxServer,
+							version,
+							user,
+							group,
+							false
+						)
+					);
+				}
+				break;
+			case HTTPD_JBOSS_SITES :
+				{
+					int linuxServer=in.readCompressedInt();
+					String siteName=in.readUTF().trim();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					Email serverAdmin = Email.valueOf(in.readUTF());
+					boolean useApache=in.readBoolean();
+					int ipAddress=in.readCompressedInt();
+					DomainName primaryHttpHostname = DomainName.valueOf(in.readUTF());
+					int len = in.readCompressedInt();
+					DomainName[] altHttpHostnames = new DomainName[len];
+					for(int c = 0; c < len; c++) {
+						altHttpHostnames[c] = DomainName.valueOf(in.readUTF());
+					}
+					int jBossVersion = in.readCompressedInt();
+					PosixPath contentSrc;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
+						contentSrc = PosixPath.valueOf(in.readNullUTF());
+					} else {
+						contentSrc = null;
+					}
+					int phpVersion;
+					boolean enableCgi;
+					boolean enableSsi;
+					boolean enableHtaccess;
+					boolean enableIndexes;
+					boolean enableFollowSymlinks;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
+						phpVersion = -1;
+						enableCgi = true;
+						enableSsi = true;
+						enableHtaccess = true;
+						enableIndexes = true;
+						enableFollowSymlinks = false;
+					} else if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_6) < 0) {
+						phpVersion = in.readCompressedInt();
+						enableCgi = in.readBoolean();
+						enableSsi = in.readBoolean();
+						enableHtaccess = in.readBoolean();
+						enableIndexes = in.readBoolean();
+						enableFollowSymlinks = in.readBoolean();
+					} else {
+						phpVersion = -1;
+						enableCgi = false;
+						enableSsi = false;
+						enableHtaccess = false;
+						enableIndexes = false;
+						enableFollowSymlinks = false;
+					}
+					process.setCommand(
+						Command.ADD_HTTPD_JBOSS_SITE,
+						linuxServer,
+						siteName,
+						packageName,
+						user,
+						group,
+						serverAdmin,
+						useApache,
+						ipAddress==-1?null:ipAddress,
+						primaryHttpHostname,
+						altHttpHostnames,
+						jBossVersion,
+						phpVersion,
+						enableCgi,
+						enableSsi,
+						enableHtaccess,
+						enableIndexes,
+						enableFollowSymlinks
+					);
+					if(contentSrc != null) throw new IOException(Command.ADD_HTTPD_JBOSS_SITE + " call no longer supports non-null content_source");
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addJbossSite(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							siteName,
+							packageName,
+							user,
+							group,
+							serverAdmin,
+							useApache,
+							ipAddress,
+							primaryHttpHostname,
+							altHttpHostnames,
+							jBossVersion,
+							phpVersion,
+							enableCgi,
+							enableSsi,
+							enableHtaccess,
+							enableIndexes,
+							enableFollowSymlinks
+						)
+					);
+				}
+				break;
+			case HTTPD_SITE_AUTHENTICATED_LOCATIONS :
+				{
+					int httpd_site = in.readCompressedInt();
+					String path = in.readUTF();
+					boolean isRegularExpression = in.readBoolean();
+					String authName = in.readUTF();
+					PosixPath authGroupFile;
+					{
+						String s = in.readUTF();
+						authGroupFile = s.isEmpty() ? null : PosixPath.valueOf(s);
+					}
+					PosixPath authUserFile;
+					{
+						String s = in.readUTF();
+						authUserFile = s.isEmpty() ? null : PosixPath.valueOf(s);
+					}
+					String require = in.readUTF();
+					String handler;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_13) >= 0) {
+						String s = in.readUTF();
+						handler = s.isEmpty() ? null : s;
+					} else {
+						handler = null;
+					}
+
+					process.setCommand(
+						Command.ADD_HTTPD_SITE_AUTHENTICATED_LOCATION,
+						httpd_site,
+						path,
+						isRegularExpression,
+						authName,
+						authGroupFile,
+						authUserFile,
+						require,
+						handler
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addLocation(
+							conn,
+							source,
+							invalidateList,
+							httpd_site,
+							path,
+							isRegularExpression,
+							authName,
+							authGroupFile,
+							authUserFile,
+							require,
+							handler
+						)
+					);
+				}
+				break;							
+			case HTTPD_SITE_URLS :
+				{
+					int virtualHost = in.readCompressedInt();
+					DomainName hostname = DomainName.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_HTTPD_SITE_URL,
+						virtualHost,
+						hostname
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addVirtualHostName(
+							conn,
+							source,
+							invalidateList,
+							virtualHost,
+							hostname
+						)
+					);
+				}
+				break;
+			case HTTPD_TOMCAT_CONTEXTS :
+				{
+					int tomcatSite = in.readCompressedInt();
+					String className = in.readNullUTF();
+					boolean cookies = in.readBoolean();
+					boolean crossContext = in.readBoolean();
+					PosixPath docBase = PosixPath.valueOf(in.readUTF());
+					boolean override = in.readBoolean();
+					String path = in.readUTF().trim();
+					boolean privileged = in.readBoolean();
+					boolean reloadable = in.readBoolean();
+					boolean useNaming = in.readBoolean();
+					String wrapperClass = in.readNullUTF();
+					int debug = in.readCompressedInt();
+					PosixPath workDir = PosixPath.valueOf(in.readNullUTF());
+					boolean serverXmlConfigured;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_2) <= 0) {
+						serverXmlConfigured = Context.DEFAULT_SERVER_XML_CONFIGURED;
+					} else {
+						serverXmlConfigured = in.readBoolean();
+					}
+					process.setCommand(
+						Command.ADD_HTTPD_TOMCAT_CONTEXT,
+						tomcatSite,
+						className,
+						cookies,
+						crossContext,
+						docBase,
+						override,
+						path,
+						privileged,
+						reloadable,
+						useNaming,
+						wrapperClass,
+						debug,
+						workDir,
+						serverXmlConfigured
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addContext(
+							conn,
+							source,
+							invalidateList,
+							tomcatSite,
+							className,
+							cookies,
+							crossContext,
+							docBase,
+							override,
+							path,
+							privileged,
+							reloadable,
+							useNaming,
+							wrapperClass,
+							debug,
+							workDir,
+							serverXmlConfigured
+						)
+					);
+				}
+				break;							
+			case HTTPD_TOMCAT_DATA_SOURCES :
+				{
+					int context=in.readCompressedInt();
+					String name=in.readUTF();
+					String driverClassName=in.readUTF();
+					String url=in.readUTF();
+					String username=in.readUTF();
+					String password=in.readUTF();
+					int maxActive=in.readCompressedInt();
+					int maxIdle=in.readCompressedInt();
+					int maxWait=in.readCompressedInt();
+					String validationQuery=in.readUTF();
+					if(validationQuery.length() == 0) validationQuery=null;
+					process.setCommand(
+						Command.ADD_HTTPD_TOMCAT_DATA_SOURCE,
+						context,
+						name,
+						driverClassName,
+						url,
+						username,
+						AoservProtocol.FILTERED,
+						maxActive,
+						maxIdle,
+						maxWait,
+						validationQuery
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addContextDataSource(
+							conn,
+							source,
+							invalidateList,
+							context,
+							name,
+							driverClassName,
+							url,
+							username,
+							password,
+							maxActive,
+							maxIdle,
+							maxWait,
+							validationQuery
+						)
+					);
+				}
+				break;							
+			case HTTPD_TOMCAT_PARAMETERS :
+				{
+					int context=in.readCompressedInt();
+					String name=in.readUTF();
+					String value=in.readUTF();
+					boolean override=in.readBoolean();
+					String description=in.readUTF();
+					if(description.length() == 0) description=null;
+					process.setCommand(
+						Command.ADD_HTTPD_TOMCAT_PARAMETER,
+						context,
+						name,
+						value,
+						override,
+						description
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addContextParameter(
+							conn,
+							source,
+							invalidateList,
+							context,
+							name,
+							value,
+							override,
+							description
+						)
+					);
+				}
+				break;							
+			case HTTPD_TOMCAT_SITE_JK_MOUNTS :
+				{
+					int tomcatSite = in.readCompressedInt();
+					String path = in.readUTF();
+					boolean mount = in.readBoolean();
+					process.setCommand(
+						Command.ADD_HTTPD_TOMCAT_SITE_JK_MOUNT,
+						tomcatSite,
+						path,
+						mount
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addJkMount(
+							conn,
+							source,
+							invalidateList,
+							tomcatSite,
+							path,
+							mount
+						)
+					);
+				}
+				break;							
+			case HTTPD_TOMCAT_SHARED_SITES :
+				{
+					int linuxServer = in.readCompressedInt();
+					String siteName=in.readUTF().trim();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					Email serverAdmin = Email.valueOf(in.readUTF());
+					boolean useApache = in.readBoolean();
+					int ipAddress = in.readCompressedInt();
+					DomainName primaryHttpHostname = DomainName.valueOf(in.readUTF());
+					int len = in.readCompressedInt();
+					DomainName[] altHttpHostnames = new DomainName[len];
+					for(int c = 0; c < len; c++) {
+						altHttpHostnames[c] = DomainName.valueOf(in.readUTF());
+					}
+					String sharedTomcatName;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
+						sharedTomcatName = in.readNullUTF();
+						int version = in.readCompressedInt();
+					} else {
+						sharedTomcatName = in.readUTF();
+					}
+					PosixPath contentSrc;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
+						contentSrc = PosixPath.valueOf(in.readNullUTF());
+					} else {
+						contentSrc = null;
+					}
+					int phpVersion;
+					boolean enableCgi;
+					boolean enableSsi;
+					boolean enableHtaccess;
+					boolean enableIndexes;
+					boolean enableFollowSymlinks;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
+						phpVersion = -1;
+						enableCgi = true;
+						enableSsi = true;
+						enableHtaccess = true;
+						enableIndexes = true;
+						enableFollowSymlinks = false;
+					} else if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_6) < 0) {
+						phpVersion = in.readCompressedInt();
+						enableCgi = in.readBoolean();
+						enableSsi = in.readBoolean();
+						enableHtaccess = in.readBoolean();
+						enableIndexes = in.readBoolean();
+						enableFollowSymlinks = in.readBoolean();
+					} else {
+						phpVersion = -1;
+						enableCgi = false;
+						enableSsi = false;
+						enableHtaccess = false;
+						enableIndexes = false;
+						enableFollowSymlinks = false;
+					}
+					process.setCommand(
+						Command.ADD_HTTPD_TOMCAT_SHARED_SITE,
+						linuxServer,
+						siteName,
+						packageName,
+						user,
+						group,
+						serverAdmin,
+						useApache,
+						ipAddress==-1?null:ipAddress,
+						primaryHttpHostname,
+						altHttpHostnames,
+						sharedTomcatName,
+						phpVersion,
+						enableCgi,
+						enableSsi,
+						enableHtaccess,
+						enableIndexes,
+						enableFollowSymlinks
+					);
+					if(sharedTomcatName == null) throw new IOException(Command.ADD_HTTPD_TOMCAT_SHARED_SITE + " call now requires non-null shared_tomcat_name");
+					if(contentSrc != null) throw new IOException(Command.ADD_HTTPD_TOMCAT_SHARED_SITE + " call no longer supports non-null content_source");
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addSharedTomcatSite(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							siteName,
+							packageName,
+							user,
+							group,
+							serverAdmin,
+							useApache,
+							ipAddress,
+							primaryHttpHostname,
+							altHttpHostnames,
+							sharedTomcatName,
+							phpVersion,
+							enableCgi,
+							enableSsi,
+							enableHtaccess,
+							enableIndexes,
+							enableFollowSymlinks
+						)
+					);
+				}
+				break;
+			case HTTPD_TOMCAT_STD_SITES :
+				{
+					int linuxServer = in.readCompressedInt();
+					String siteName = in.readUTF().trim();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					Email serverAdmin = Email.valueOf(in.readUTF());
+					boolean useApache = in.readBoolean();
+					int ipAddress = in.readCompressedInt();
+					DomainName primaryHttpHostname = DomainName.valueOf(in.readUTF());
+					int len = in.readCompressedInt();
+					DomainName[] altHttpHostnames = new DomainName[len];
+					for(int c = 0; c < len; c++) {
+						altHttpHostnames[c] = DomainName.valueOf(in.readUTF());
+					}
+					int tomcatVersion = in.readCompressedInt();
+					PosixPath contentSrc;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
+						contentSrc = PosixPath.valueOf(in.readNullUTF());
+					} else {
+						contentSrc = null;
+					}
+					int phpVersion;
+					boolean enableCgi;
+					boolean enableSsi;
+					boolean enableHtaccess;
+					boolean enableIndexes;
+					boolean enableFollowSymlinks;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
+						phpVersion = -1;
+						enableCgi = true;
+						enableSsi = true;
+						enableHtaccess = true;
+						enableIndexes = true;
+						enableFollowSymlinks = false;
+					} else if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_6) < 0) {
+						phpVersion = in.readCompressedInt();
+						enableCgi = in.readBoolean();
+						enableSsi = in.readBoolean();
+						enableHtaccess = in.readBoolean();
+						enableIndexes = in.readBoolean();
+						enableFollowSymlinks = in.readBoolean();
+					} else {
+						phpVersion = -1;
+						enableCgi = false;
+						enableSsi = false;
+						enableHtaccess = false;
+						enableIndexes = false;
+						enableFollowSymlinks = false;
+					}
+					process.setCommand(
+						Command.ADD_HTTPD_TOMCAT_STD_SITE,
+						linuxServer,
+						siteName,
+						packageName,
+						user,
+						group,
+						serverAdmin,
+						useApache,
+						ipAddress==-1?null:ipAddress,
+						primaryHttpHostname,
+						altHttpHostnames,
+						tomcatVersion,
+						phpVersion,
+						enableCgi,
+						enableSsi,
+						enableHtaccess,
+						enableIndexes,
+						enableFollowSymlinks
+					);
+					if(contentSrc != null) throw new IOException(Command.ADD_HTTPD_TOMCAT_STD_SITE + " call no longer supports non-null content_source");
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						WebHandler.addPrivateTomcatSite(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							siteName,
+							packageName,
+							user,
+							group,
+							serverAdmin,
+							useApache,
+							ipAddress,
+							primaryHttpHostname,
+							altHttpHostnames,
+							tomcatVersion,
+							phpVersion,
+							enableCgi,
+							enableSsi,
+							enableHtaccess,
+							enableIndexes,
+							enableFollowSymlinks
+						)
+					);
+				}
+				break;
+			case LINUX_ACC_ADDRESSES :
+				{
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_31)<0) {
+						int address = in.readCompressedInt();
+						String username = in.readUTF().trim();
+						throw new IOException(Command.ADD_LINUX_ACC_ADDRESS+" call not supported for AoservProtocol < "+AoservProtocol.Version.VERSION_1_31+", please upgrade AOServ Client.");
+					}
+					int address = in.readCompressedInt();
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_LINUX_ACC_ADDRESS,
+						address,
+						userServer
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addInboxAddress(
+							conn,
+							source,
+							invalidateList,
+							address,
+							userServer
+						)
+					);
+				}
+				break;
+			case LINUX_ACCOUNTS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Group.Name primary_group = Group.Name.valueOf(in.readUTF());
+					Gecos name;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
+						name = Gecos.valueOf(in.readUTF());
+					} else {
+						name = Gecos.valueOf(in.readNullUTF());
+					}
+					Gecos office_location = Gecos.valueOf(in.readNullUTF());
+					Gecos office_phone = Gecos.valueOf(in.readNullUTF());
+					Gecos home_phone = Gecos.valueOf(in.readNullUTF());
+					String type = in.readUTF().trim();
+					PosixPath shell = PosixPath.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_LINUX_ACCOUNT,
+						user,
+						primary_group,
+						name,
+						office_location,
+						office_phone,
+						home_phone,
+						type,
+						shell
+					);
+					LinuxAccountHandler.addUser(
+						conn,
+						source,
+						invalidateList,
+						user,
+						primary_group,
+						name,
+						office_location,
+						office_phone,
+						home_phone,
+						type,
+						shell,
+						false
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_GROUP_ACCOUNTS :
+				{
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_LINUX_GROUP_ACCOUNT,
+						group,
+						user
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						LinuxAccountHandler.addGroupUser(
+							conn,
+							source,
+							invalidateList,
+							group,
+							user,
+							false,
+							false
+						)
+					);
+				}
+				break;
+			case LINUX_GROUPS :
+				{
+					Group.Name name = Group.Name.valueOf(in.readUTF());
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					String type = in.readUTF().trim();
+					process.setCommand(
+						Command.ADD_LINUX_GROUP,
+						name,
+						packageName,
+						type
+					);
+					LinuxAccountHandler.addGroup(
+						conn,
+						source,
+						invalidateList,
+						name,
+						packageName,
+						type,
+						false
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_SERVER_ACCOUNTS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					int linuxServer = in.readCompressedInt();
+					PosixPath home = PosixPath.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_LINUX_SERVER_ACCOUNT,
+						user,
+						linuxServer,
+						home
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						LinuxAccountHandler.addUserServer(
+							conn,
+							source,
+							invalidateList,
+							user,
+							linuxServer,
+							home,
+							false
+						)
+					);
+				}
+				break;
+			case LINUX_SERVER_GROUPS :
+				{
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					int linuxServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_LINUX_SERVER_GROUP,
+						group,
+						linuxServer
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						LinuxAccountHandler.addGroupServer(
+							conn,
+							source,
+							invalidateList,
+							group,
+							linuxServer,
+							false
+						)
+					);
+				}
+				break;
+			case MAJORDOMO_LISTS :
+				{
+					int majordomoServer = in.readCompressedInt();
+					String listName = in.readUTF().trim();
+					process.setCommand(
+						Command.ADD_MAJORDOMO_LIST,
+						majordomoServer,
+						listName
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addMajordomoList(
+							conn,
+							source,
+							invalidateList,
+							majordomoServer,
+							listName
+						)
+					);
+				}
+				break;
+			case MAJORDOMO_SERVERS :
+				{
+					int emailDomain = in.readCompressedInt();
+					int lsa = in.readCompressedInt();
+					int lsg = in.readCompressedInt();
+					String version = in.readUTF().trim();
+					process.setCommand(
+						Command.ADD_MAJORDOMO_SERVER,
+						emailDomain,
+						lsa,
+						lsg,
+						version
+					);
+					EmailHandler.addMajordomoServer(
+						conn,
+						source,
+						invalidateList,
+						emailDomain,
+						lsa,
+						lsg,
+						version
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case MYSQL_DATABASES :
+				{
+					Database.Name name = Database.Name.valueOf(in.readUTF());
+					int mysqlServer = in.readCompressedInt();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_MYSQL_DATABASE,
+						name,
+						mysqlServer,
+						packageName
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						MysqlHandler.addDatabase(
+							conn,
+							source,
+							invalidateList,
+							name,
+							mysqlServer,
+							packageName
+						)
+					);
+				}
+				break;
+			case MYSQL_DB_USERS :
+				{
+					int database = in.readCompressedInt();
+					int userServer = in.readCompressedInt();
+					boolean canSelect=in.readBoolean();
+					boolean canInsert=in.readBoolean();
+					boolean canUpdate=in.readBoolean();
+					boolean canDelete=in.readBoolean();
+					boolean canCreate=in.readBoolean();
+					boolean canDrop=in.readBoolean();
+					boolean canReference;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_2) >= 0) {
+						canReference = in.readBoolean();
+					} else {
+						// Default to copying drop_priv for older clients
+						canReference = canDrop;
+					}
+					boolean canIndex=in.readBoolean();
+					boolean canAlter=in.readBoolean();
+					boolean canCreateTempTable;
+					boolean canLockTables;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_111)>=0) {
+						canCreateTempTable=in.readBoolean();
+						canLockTables=in.readBoolean();
+					} else {
+						canCreateTempTable=false;
+						canLockTables=false;
+					}
+					boolean canCreateView;
+					boolean canShowView;
+					boolean canCreateRoutine;
+					boolean canAlterRoutine;
+					boolean canExecute;
+					boolean canEvent;
+					boolean canTrigger;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4)>=0) {
+						canCreateView=in.readBoolean();
+						canShowView=in.readBoolean();
+						canCreateRoutine=in.readBoolean();
+						canAlterRoutine=in.readBoolean();
+						canExecute=in.readBoolean();
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_54)>=0) {
+							canEvent=in.readBoolean();
+							canTrigger=in.readBoolean();
+						} else {
+							canEvent=false;
+							canTrigger=false;
+						}
+					} else {
+						canCreateView=false;
+						canShowView=false;
+						canCreateRoutine=false;
+						canAlterRoutine=false;
+						canExecute=false;
+						canEvent=false;
+						canTrigger=false;
+					}
+					process.setCommand(
+						Command.ADD_MYSQL_DB_USER,
+						database,
+						userServer,
+						canSelect,
+						canInsert,
+						canUpdate,
+						canDelete,
+						canCreate,
+						canDrop,
+						canReference,
+						canIndex,
+						canAlter,
+						canCreateTempTable,
+						canLockTables,
+						canCreateView,
+						canShowView,
+						canCreateRoutine,
+						canAlterRoutine,
+						canExecute,
+						canEvent,
+						canTrigger
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						MysqlHandler.addDatabaseUser(
+							conn,
+							source,
+							invalidateList,
+							database,
+							userServer,
+							canSelect,
+							canInsert,
+							canUpdate,
+							canDelete,
+							canCreate,
+							canDrop,
+							canReference,
+							canIndex,
+							canAlter,
+							canCreateTempTable,
+							canLockTables,
+							canCreateView,
+							canShowView,
+							canCreateRoutine,
+							canAlterRoutine,
+							canExecute,
+							canEvent,
+							canTrigger
+						)
+					);
+				}
+				break;
+			case MYSQL_SERVER_USERS :
+				{
+					com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
+					int mysqlServer = in.readCompressedInt();
+					String host = in.readNullUTF();
+					process.setCommand(
+						Command.ADD_MYSQL_SERVER_USER,
+						user,
+						mysqlServer,
+						host
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						MysqlHandler.addUserServer(
+							conn,
+							source,
+							invalidateList,
+							user,
+							mysqlServer,
+							host
+						)
+					);
+				}
+				break;
+			case MYSQL_USERS :
+				{
+					com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_MYSQL_USER,
+						user
+					);
+					MysqlHandler.addUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case NET_BINDS :
+				{
+					int host = in.readCompressedInt();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					int ipAddress = in.readCompressedInt();
+					Port port;
+					{
+						int portNum = in.readCompressedInt();
+						Protocol protocol;
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) < 0) {
+							protocol = Protocol.valueOf(in.readUTF().toUpperCase(Locale.ROOT));
+						} else {
+							protocol = in.readEnum(Protocol.class);
+						}
+						port = Port.valueOf(portNum, protocol);
+					}
+					String appProtocol = in.readUTF().trim();
+					boolean monitoringEnabled;
+					int numZones;
+					Set<FirewallZone.Name> firewalldZones;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_2) <= 0) {
+						boolean openFirewall = in.readBoolean();
+						if(openFirewall) {
+							numZones = 1;
+							firewalldZones = Collections.singleton(FirewallZone.PUBLIC);
+						} else {
+							numZones = 0;
+							firewalldZones = Collections.emptySet();
+						}
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_103) <= 0) {
+							monitoringEnabled = in.readCompressedInt() != -1;
+							in.readNullUTF();
+							in.readNullUTF();
+							in.readNullUTF();
+						} else {
+							monitoringEnabled = in.readBoolean();
+						}
+					} else {
+						monitoringEnabled = in.readBoolean();
+						numZones = in.readCompressedInt();
+						firewalldZones = AoCollections.newLinkedHashSet(numZones);
+						for(int i = 0; i < numZones; i++) {
+							FirewallZone.Name name = FirewallZone.Name.valueOf(in.readUTF());
+							if(!firewalldZones.add(name)) {
+								throw new IOException("Duplicate firewalld name: " + name);
+							}
+						}
+					}
+					Object[] command = new Object[7 + numZones];
+					command[0] = Command.ADD_NET_BIND;
+					command[1] = host;
+					command[2] = packageName;
+					command[3] = ipAddress;
+					command[4] = port;
+					command[5] = appProtocol;
+					command[6] = monitoringEnabled;
+					System.arraycopy(
+						firewalldZones.toArray(new FirewallZone.Name[numZones]),
+						0,
+						command,
+						7,
+						numZones
+					);
+					process.setCommand(command);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						NetBindHandler.addBind(
+							conn,
+							source,
+							invalidateList,
+							host,
+							packageName,
+							ipAddress,
+							port,
+							appProtocol,
+							monitoringEnabled,
+							firewalldZones
+						)
+					);
+				}
+				break;
+			case NOTICE_LOG :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String billingContact = in.readUTF().trim();
+					String emailAddress = in.readUTF().trim();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						in.readCompressedInt(); // balance ignored, current balance queried
+					}
+					String type = in.readUTF().trim();
+					int transid = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_NOTICE_LOG,
+						account,
+						billingContact,
+						emailAddress,
+						type,
+						transid
+					);
+					int id = AccountHandler.addNoticeLog(
+						conn,
+						source,
+						invalidateList,
+						account,
+						billingContact,
+						emailAddress,
+						type,
+						transid
+					);
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						resp = MasterServer.Response.DONE;
+					} else {
+						resp = MasterServer.Response.of(
+							AoservProtocol.DONE,
+							id
+						);
+					}
+				}
+				break;
+			case PACKAGES :
+				{
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					int packageDefinition;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_122)<=0) {
+						// Try to find a package definition owned by the source accounting with matching rates and limits
+						String level=in.readUTF().trim();
+						Money rate = new Money(Currency.USD, in.readCompressedInt(), 2);
+						int userLimit=in.readCompressedInt();
+						int additionalUserRate=in.readCompressedInt();
+						int popLimit=in.readCompressedInt();
+						int additionalPopRate=in.readCompressedInt();
+						Account.Name baAccounting = AccountUserHandler.getAccountForUser(conn, source.getCurrentAdministrator());
+						packageDefinition = PackageHandler.findActivePackageDefinition(
+							conn,
+							baAccounting,
+							rate,
+							userLimit,
+							popLimit
+						);
+						if(packageDefinition==-1) {
+							throw new SQLException(
+								"Unable to find PackageDefinition: accounting="
+								+ baAccounting
+								+ ", rate="
+								+ rate
+								+ ", userLimit="
+								+ (userLimit==-1?"unlimited":Integer.toString(userLimit))
+								+ ", popLimit="
+								+ (popLimit==-1?"unlimited":Integer.toString(popLimit))
+							);
+						}
+					} else {
+						packageDefinition = in.readCompressedInt();
+					}
+					process.setCommand(
+						Command.ADD_PACKAGE,
+						packageName,
+						account,
+						packageDefinition
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PackageHandler.addPackage(
+							conn,
+							source,
+							invalidateList,
+							packageName,
+							account,
+							packageDefinition
+						)
+					);
+				}
+				break;
+			case PACKAGE_DEFINITIONS :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					String category = in.readUTF().trim();
+					String name = in.readUTF().trim();
+					String version = in.readUTF().trim();
+					String display = in.readUTF().trim();
+					String description = in.readUTF().trim();
+					Money setupFee;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						int pennies = in.readCompressedInt();
+						setupFee = pennies == -1 || pennies == 0 ? null : new Money(Currency.USD, pennies, 2);
+					} else {
+						setupFee = MoneyUtil.readNullMoney(in);
+					}
+					String setupFeeTransactionType = in.readNullUTF();
+					Money monthlyRate;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						monthlyRate = new Money(Currency.USD, in.readCompressedInt(), 2);
+					} else {
+						monthlyRate = MoneyUtil.readMoney(in);
+					}
+					String monthlyRateTransactionType = in.readUTF();
+					process.setCommand(
+						"add_package_definition",
+						account,
+						category,
+						name,
+						version,
+						display,
+						description,
+						setupFee,
+						setupFeeTransactionType,
+						monthlyRate,
+						monthlyRateTransactionType
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PackageHandler.addPackageDefinition(
+							conn,
+							source,
+							invalidateList,
+							account,
+							category,
+							name,
+							version,
+							display,
+							description,
+							setupFee,
+							setupFeeTransactionType,
+							monthlyRate,
+							monthlyRateTransactionType
+						)
+					);
+				}
+				break;
+			case POSTGRES_DATABASES :
+				{
+					com.aoindustries.aoserv.client.postgresql.Database.Name name = com.aoindustries.aoserv.client.postgresql.Database.Name.valueOf(in.readUTF());
+					int postgresqlServer = in.readCompressedInt();
+					int datdba = in.readCompressedInt();
+					int encoding = in.readCompressedInt();
+					boolean enable_postgis = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_27)>=0?in.readBoolean():false;
+					process.setCommand(
+						Command.ADD_POSTGRES_DATABASE,
+						name,
+						postgresqlServer,
+						datdba,
+						encoding,
+						enable_postgis
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PostgresqlHandler.addDatabase(
+							conn,
+							source,
+							invalidateList,
+							name,
+							postgresqlServer,
+							datdba,
+							encoding,
+							enable_postgis
+						)
+					);
+				}
+				break;
+			case POSTGRES_SERVER_USERS :
+				{
+					com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
+					int postgresqlServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ADD_POSTGRES_SERVER_USER,
+						user,
+						postgresqlServer
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						PostgresqlHandler.addUserServer(
+							conn,
+							source,
+							invalidateList,
+							user,
+							postgresqlServer
+						)
+					);
+				}
+				break;
+			case POSTGRES_USERS :
+				{
+					com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_POSTGRES_USER,
+						user
+					);
+					PostgresqlHandler.addUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SIGNUP_REQUESTS :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					InetAddress ip_address = InetAddress.valueOf(in.readUTF());
+					int package_definition = in.readCompressedInt();
+					String business_name = in.readUTF();
+					String business_phone = in.readUTF();
+					String business_fax = in.readNullUTF();
+					String business_address1 = in.readUTF();
+					String business_address2 = in.readNullUTF();
+					String business_city = in.readUTF();
+					String business_state = in.readNullUTF();
+					String business_country = in.readUTF();
+					String business_zip = in.readNullUTF();
+					String ba_name = in.readUTF();
+					String ba_title = in.readNullUTF();
+					String ba_work_phone = in.readUTF();
+					String ba_cell_phone = in.readNullUTF();
+					String ba_home_phone = in.readNullUTF();
+					String ba_fax = in.readNullUTF();
+					String ba_email = in.readUTF();
+					String ba_address1 = in.readNullUTF();
+					String ba_address2 = in.readNullUTF();
+					String ba_city = in.readNullUTF();
+					String ba_state = in.readNullUTF();
+					String ba_country = in.readNullUTF();
+					String ba_zip = in.readNullUTF();
+					com.aoindustries.aoserv.client.account.User.Name administrator_user_name = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					String billing_contact = in.readUTF();
+					String billing_email = in.readUTF();
+					boolean billing_use_monthly = in.readBoolean();
+					boolean billing_pay_one_year = in.readBoolean();
+					// Encrypted values
+					int from;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) from = 2; // Hard-coded value from AO website key
+					else from = in.readCompressedInt();
+					int recipient = in.readCompressedInt();
+					String ciphertext = in.readUTF();
+					// options
+					int numOptions = in.readCompressedInt();
+					Map<String, String> options = AoCollections.newHashMap(numOptions);
+					for(int c=0;c<numOptions;c++) {
+						String name = in.readUTF();
+						String value = in.readNullUTF();
+						options.put(name, value);
+					}
+					process.setCommand(
+						"add_signup_request",
+						account,
+						ip_address,
+						package_definition,
+						business_name,
+						business_phone,
+						business_fax,
+						business_address1,
+						business_address2,
+						business_city,
+						business_state,
+						business_country,
+						business_zip,
+						ba_name,
+						ba_title,
+						ba_work_phone,
+						ba_cell_phone,
+						ba_home_phone,
+						ba_fax,
+						ba_email,
+						ba_address1,
+						ba_address2,
+						ba_city,
+						ba_state,
+						ba_country,
+						ba_zip,
+						administrator_user_name,
+						billing_contact,
+						billing_email,
+						billing_use_monthly,
+						billing_pay_one_year,
+						// Encrypted values
+						from,
+						recipient,
+						ciphertext,
+						// options
+						numOptions
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						SignupHandler.addRequest(
+							conn,
+							source,
+							invalidateList,
+							account,
+							ip_address,
+							package_definition,
+							business_name,
+							business_phone,
+							business_fax,
+							business_address1,
+							business_address2,
+							business_city,
+							business_state,
+							business_country,
+							business_zip,
+							ba_name,
+							ba_title,
+							ba_work_phone,
+							ba_cell_phone,
+							ba_home_phone,
+							ba_fax,
+							ba_email,
+							ba_address1,
+							ba_address2,
+							ba_city,
+							ba_state,
+							ba_country,
+							ba_zip,
+							administrator_user_name,
+							billing_contact,
+							billing_email,
+							billing_use_monthly,
+							billing_pay_one_year,
+							// Encrypted values
+							from,
+							recipient,
+							ciphertext,
+							// options
+							options
+						)
+					);
+				}
+				break;
+			case SPAM_EMAIL_MESSAGES :
+				{
+					int smtpRelay = in.readCompressedInt();
+					String message = in.readUTF().trim();
+					process.setCommand(
+						Command.ADD_SPAM_EMAIL_MESSAGE,
+						smtpRelay,
+						message
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						EmailHandler.addSpamMessage(
+							conn,
+							source,
+							invalidateList,
+							smtpRelay,
+							message
+						)
+					);
+				}
+				break;
+			case TICKETS :
+				{
+					Account.Name brand;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_46)>=0) {
+						brand = Account.Name.valueOf(in.readUTF());
+					} else {
+						brand = AccountHandler.getRootAccount();
+					}
+					Account.Name account;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_126)>=0) {
+						account = Account.Name.valueOf(in.readNullUTF());
+					} else {
+						Account.Name packageName = Account.Name.valueOf(in.readUTF());
+						account = PackageHandler.getAccountForPackage(conn, packageName);
+					}
+					String language = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readUTF() : Language.EN;
+					int category = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readCompressedInt() : -1;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readUTF(); // username
+					String type = in.readUTF();
+					Email fromAddress;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)>=0) fromAddress = Email.valueOf(in.readNullUTF());
+					else fromAddress = null;
+					String summary = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readUTF() : "(No summary)";
+					String details = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readNullLongUTF() : in.readUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readLong(); // deadline
+					String clientPriority=in.readUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readUTF(); // adminPriority
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readNullUTF(); // technology
+					Set<Email> contactEmails;
+					String contactPhoneNumbers;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_125)>=0) {
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readNullUTF(); // assignedTo
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
+							int size = in.readCompressedInt();
+							contactEmails = AoCollections.newLinkedHashSet(size);
+							for(int i = 0; i < size; i++) {
+								contactEmails.add(Email.valueOf(in.readUTF()));
+							}
+						} else {
+							contactEmails = Profile.splitEmails(in.readUTF().trim());
+						}
+						contactPhoneNumbers=in.readUTF();
+					} else {
+						contactEmails = Collections.emptySet();
+						contactPhoneNumbers="";
+					}
+					process.setCommand(
+						"add_ticket",
+						brand,
+						account,
+						language,
+						category,
+						type,
+						fromAddress,
+						summary,
+						Strings.firstLineOnly(details, 60),
+						clientPriority,
+						contactEmails,
+						contactPhoneNumbers
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						TicketHandler.addTicket(
+							conn,
+							source,
+							invalidateList,
+							brand,
+							account,
+							language,
+							category,
+							type,
+							fromAddress,
+							summary,
+							details,
+							clientPriority,
+							contactEmails,
+							contactPhoneNumbers
+						)
+					);
+				}
+				break;
+			case TRANSACTIONS :
+				{
+					char timeType;
+					Timestamp time;
+					String commandArg;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						timeType = 'T';
+						time = null;
+						commandArg = "now";
+					} else {
+						timeType = (char)in.readByte();
+						if(timeType == 'D') {
+							Long millis = in.readNullLong();
+							if(millis == null) {
+								time = null;
+								commandArg = "today";
+							} else {
+								time = new Timestamp(millis);
+								commandArg = SQLUtility.formatDate(millis, Type.DATE_TIME_ZONE);
+							}
+						} else if(timeType == 'T') {
+							time = SQLStreamables.readNullTimestamp(in);
+							if(time == null) {
+								commandArg = "now";
+							} else {
+								int nanos = time.getNanos();
+								if(nanos == 0) {
+									commandArg = SQLUtility.formatDateTime(time);
+								} else {
+									// TODO: Make a SQLUtility.formatDateTimeNanos?
+									StringBuilder nanoStr = new StringBuilder();
+									nanoStr.append(nanos);
+									while(nanoStr.length() < 9) {
+										nanoStr.insert(0, '0');
+									}
+									commandArg = SQLUtility.formatDateTime(time) + '.' + nanoStr;
+								}
+							}
+						} else {
+							throw new IOException("Unexpected value for timeType: " + timeType);
+						}
+					}
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					Account.Name sourceAccount = Account.Name.valueOf(in.readUTF());
+					com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					String type = in.readUTF().trim();
+					String description = in.readUTF().trim();
+					int quantity = in.readCompressedInt();
+					Money rate;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						rate = new Money(Currency.USD, in.readCompressedInt(), 2);
+					} else {
+						rate = MoneyUtil.readMoney(in);
+					}
+					String paymentType = in.readNullUTF();
+					String paymentInfo = in.readNullUTF();
+					String processor = in.readNullUTF();
+					byte payment_confirmed = in.readByte();
+					process.setCommand(
+						Command.BILLING_TRANSACTION_ADD,
+						commandArg,
+						account,
+						sourceAccount,
+						administrator,
+						type,
+						description,
+						SQLUtility.formatDecimal3(quantity),
+						rate,
+						paymentType,
+						paymentInfo,
+						processor,
+						payment_confirmed == Transaction.CONFIRMED ? "Y"
+						: payment_confirmed == Transaction.NOT_CONFIRMED ? "N"
+						: "W"
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						BillingTransactionHandler.addTransaction(
+							conn,
+							source,
+							invalidateList,
+							timeType,
+							time,
+							account,
+							sourceAccount,
+							administrator,
+							type,
+							description,
+							quantity,
+							rate,
+							paymentType,
+							paymentInfo,
+							processor,
+							payment_confirmed
+						)
+					);
+				}
+				break;
+			case USERNAMES :
+				{
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					com.aoindustries.aoserv.client.account.User.Name name = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ADD_USERNAME,
+						packageName,
+						name
+					);
+					AccountUserHandler.addUser(
+						conn,
+						source,
+						invalidateList,
+						packageName,
+						name,
+						false
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new IOException("Unknown table ID for add: clientTableID="+clientTableID+", tableID="+tableID);
+		}
+		return resp;
+	}
+}
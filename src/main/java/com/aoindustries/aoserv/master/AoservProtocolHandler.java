@@ -0,0 +1,169 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.cron.CronDaemon;
+import com.aoapps.cron.CronJob;
+import com.aoapps.cron.Schedule;
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.lang.util.ErrorPrinter;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the last day each protocol version was used.
+ * <p>
+ * Rather than updating <code>schema.AoservProtocol</code> on every connection,
+ * the versions used are collected in memory and written once per minute in a
+ * single statement.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class AoservProtocolHandler {
+
+	private static final Logger logger = Logger.getLogger(AoservProtocolHandler.class.getName());
+
+	private AoservProtocolHandler() {
+	}
+
+	/**
+	 * The versions used since the last flush.
+	 */
+	private static final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	private static final AtomicLong recorded = new AtomicLong();
+	private static final AtomicLong flushes = new AtomicLong();
+
+	/**
+	 * Records that the given protocol version has been used.  The database is
+	 * updated in the background.
+	 */
+	public static void updateLastUsed(AoservProtocol.Version protocolVersion) {
+		recorded.incrementAndGet();
+		pending.add(protocolVersion.getVersion());
+	}
+
+	/**
+	 * Writes all pending versions to the database.  Versions that fail to be
+	 * written are kept for the next flush.
+	 */
+	private static void flush() throws IOException, SQLException {
+		if(pending.isEmpty()) return;
+		Set<String> versions = new HashSet<>();
+		Iterator<String> iter = pending.iterator();
+		while(iter.hasNext()) {
+			versions.add(iter.next());
+			iter.remove();
+		}
+		if(versions.isEmpty()) return;
+		try {
+			try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
+				Connection dbConn = conn.getConnection();
+				String sql = "update schema.\"AoservProtocol\" set \"lastUsed\" = now()::date where version = ANY(?) and (\"lastUsed\" is null or \"lastUsed\" < now()::date)";
+				try (PreparedStatement pstmt = dbConn.prepareStatement(sql)) {
+					try {
+						pstmt.setArray(1, dbConn.createArrayOf("text", versions.toArray(new String[versions.size()])));
+						pstmt.executeUpdate();
+					} catch(Error | RuntimeException | SQLException e) {
+						ErrorPrinter.addSQL(e, pstmt);
+						throw e;
+					}
+				}
+				conn.commit();
+			}
+			flushes.incrementAndGet();
+		} catch(Error | RuntimeException | IOException | SQLException e) {
+			pending.addAll(versions);
+			throw e;
+		}
+	}
+
+	public static long getRecorded() {
+		return recorded.get();
+	}
+
+	public static long getFlushes() {
+		return flushes.get();
+	}
+
+	public static int getPending() {
+		return pending.size();
+	}
+
+	private static boolean cronDaemonAdded = false;
+
+	private static final Schedule schedule = (minute, hour, dayOfMonth, month, dayOfWeek, year) -> true;
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void start() {
+		synchronized(System.out) {
+			if(!cronDaemonAdded) {
+				System.out.print("Starting " + AoservProtocolHandler.class.getSimpleName() + ": ");
+				CronDaemon.addCronJob(
+					new CronJob() {
+						@Override
+						public Schedule getSchedule() {
+							return schedule;
+						}
+
+						@Override
+						public String getName() {
+							return "Update protocol versions last used";
+						}
+
+						@Override
+						@SuppressWarnings("UseSpecificCatch")
+						public void run(int minute, int hour, int dayOfMonth, int month, int dayOfWeek, int year) {
+							try {
+								flush();
+							} catch(ThreadDeath td) {
+								throw td;
+							} catch(Throwable t) {
+								logger.log(Level.SEVERE, null, t);
+							}
+						}
+
+						@Override
+						public int getThreadPriority() {
+							return Thread.NORM_PRIORITY-2;
+						}
+					},
+					logger
+				);
+				cronDaemonAdded = true;
+				System.out.println("Done");
+			}
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.security.HashedPassword;
+import com.aoapps.security.UnprotectedPassword;
+import com.aoindustries.aoserv.client.account.User;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers recently verified credentials, so reconnecting clients do not
+ * verify the password hash on every connection.
+ * <p>
+ * Entries are keyed by administrator, remote address, and a salted digest of
+ * the password; the password itself is never stored.  The salt is random per
+ * process.  An entry is only used while the administrator still has the same
+ * {@link HashedPassword} it was verified against, and for at most
+ * {@link #MAX_AGE} milliseconds.  All entries are discarded when
+ * <code>account.Administrator</code> is invalidated, which includes password
+ * changes and disabling.  Disabled administrators and allowed hosts are still
+ * checked on every connection.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class AuthenticationCache {
+
+	private AuthenticationCache() {
+	}
+
+	/**
+	 * The maximum number of credentials remembered.
+	 */
+	private static final int MAX_SIZE = 1000;
+
+	/**
+	 * The maximum time a verified credential is remembered.
+	 */
+	private static final long MAX_AGE = TimeUnit.MINUTES.toMillis(5);
+
+	private static final byte[] salt = new byte[32];
+	static {
+		MasterServer.getSecureRandom().nextBytes(salt);
+	}
+
+	private static class Entry {
+
+		private final HashedPassword verifiedAgainst;
+		private final long expires;
+
+		private Entry(HashedPassword verifiedAgainst, long expires) {
+			this.verifiedAgainst = verifiedAgainst;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Least-recently used first.
+	 */
+	private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(MAX_SIZE * 4 / 3 + 1, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Gets the cache key for the given credentials.
+	 *
+	 * @param  password  Is not destroyed
+	 */
+	static String getKey(User.Name user, String remoteHost, UnprotectedPassword password) {
+		char[] chars = password.getPassword();
+		ByteBuffer bytes = null;
+		try {
+			bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars));
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			digest.update(bytes);
+			return user + "\0" + remoteHost + "\0" + Base64.getEncoder().encodeToString(digest.digest());
+		} catch(NoSuchAlgorithmException e) {
+			throw new AssertionError("SHA-256 is required", e);
+		} finally {
+			Arrays.fill(chars, (char)0);
+			if(bytes != null && bytes.hasArray()) Arrays.fill(bytes.array(), (byte)0);
+		}
+	}
+
+	/**
+	 * Checks if the credentials have been recently verified against the
+	 * administrator's current password.
+	 */
+	static boolean isVerified(String key, HashedPassword password) {
+		long currentTime = System.currentTimeMillis();
+		synchronized(entries) {
+			Entry entry = entries.get(key);
+			if(entry != null) {
+				if(
+					currentTime < entry.expires
+					// Detect system time set back
+					&& currentTime >= (entry.expires - MAX_AGE)
+					&& entry.verifiedAgainst.equals(password)
+				) {
+					hits.incrementAndGet();
+					return true;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Remembers credentials that have been verified against the given password.
+	 */
+	static void setVerified(String key, HashedPassword password) {
+		Entry entry = new Entry(password, System.currentTimeMillis() + MAX_AGE);
+		synchronized(entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	public static int getSize() {
+		synchronized(entries) {
+			return entries.size();
+		}
+	}
+
+	public static long getHits() {
+		return hits.get();
+	}
+
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	public static void invalidateTable(Table.TableID tableID) {
+		if(tableID == Table.TableID.BUSINESS_ADMINISTRATORS) {
+			synchronized(entries) {
+				entries.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify backup and failover settings.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class BackupCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.SET_FILE_BACKUP_SETTINGS,
+			AoservProtocol.CommandID.SET_FILE_BACKUP_SETTINGS_ALL_AT_ONCE,
+			AoservProtocol.CommandID.SET_FAILOVER_FILE_REPLICATION_BIT_RATE,
+			AoservProtocol.CommandID.SET_FAILOVER_FILE_SCHEDULES
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case SET_FILE_BACKUP_SETTINGS :
+				{
+					int fileReplicationSetting = in.readCompressedInt();
+					String path = in.readUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						in.readCompressedInt(); // package
+					}
+					boolean backupEnabled;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						short backupLevel=in.readShort();
+						in.readShort(); // backup_retention
+						in.readBoolean(); // recurse
+						backupEnabled = backupLevel>0;
+					} else {
+						backupEnabled = in.readBoolean();
+					}
+					boolean required;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_62)>=0) {
+						required = in.readBoolean();
+					} else {
+						required = false;
+					}
+					process.setCommand(
+						Command.SET_FILE_BACKUP_SETTING,
+						fileReplicationSetting,
+						path,
+						backupEnabled,
+						required
+					);
+					BackupHandler.setFileReplicationSettings(
+						conn,
+						source,
+						invalidateList,
+						fileReplicationSetting,
+						path,
+						backupEnabled,
+						required
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_FILE_BACKUP_SETTINGS_ALL_AT_ONCE :
+				{
+					int replication = in.readCompressedInt();
+					int size = in.readCompressedInt();
+					List<String> paths = new ArrayList<>(size);
+					List<Boolean> backupEnableds = new ArrayList<>(size);
+					List<Boolean> requireds = new ArrayList<>(size);
+					for(int c=0;c<size;c++) {
+						paths.add(in.readUTF());
+						backupEnableds.add(in.readBoolean());
+						boolean required;
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_62)>=0) {
+							required = in.readBoolean();
+						} else {
+							required = false;
+						}
+						requireds.add(required);
+					}
+
+					process.setCommand(
+						"set_file_backup_settings_all_at_once",
+						replication,
+						size
+					);
+					FailoverHandler.setFileReplicationSettings(
+						conn,
+						source,
+						invalidateList,
+						replication,
+						paths,
+						backupEnableds,
+						requireds
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_FAILOVER_FILE_REPLICATION_BIT_RATE :
+				{
+					int fileReplication = in.readCompressedInt();
+					final Long bitRate;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_61)<=0) {
+						int bitRateInt = in.readCompressedInt();
+						bitRate = bitRateInt==-1 ? null : (long)bitRateInt;
+					} else {
+						long bitRateLong = in.readLong();
+						bitRate = bitRateLong==-1 ? null : bitRateLong;
+					}
+					process.setCommand(
+						"set_failover_file_replication_bit_rate",
+						fileReplication,
+						bitRate==null ? "unlimited" : bitRate.toString()
+					);
+					FailoverHandler.setFileReplicationBitRate(
+						conn,
+						source,
+						invalidateList,
+						fileReplication,
+						bitRate
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_FAILOVER_FILE_SCHEDULES :
+				{
+					int replication = in.readCompressedInt();
+					int size = in.readCompressedInt();
+					List<Short> hours = new ArrayList<>(size);
+					List<Short> minutes = new ArrayList<>(size);
+					for(int c=0;c<size;c++) {
+						hours.add(in.readShort());
+						minutes.add(in.readShort());
+					}
+					process.setCommand(
+						"set_failover_file_schedules",
+						replication,
+						size
+					);
+					FailoverHandler.setFileReplicationSchedules(
+						conn,
+						source,
+						invalidateList,
+						replication,
+						hours,
+						minutes
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			 case UPDATE_CREDIT_CARD :
+				{
+					int creditCard = in.readCompressedInt();
+					String cardInfo;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						cardInfo = in.readUTF().trim();
+					} else {
+						cardInfo = null;
+					}
+					String firstName=in.readUTF().trim();
+					String lastName=in.readUTF().trim();
+					String companyName=in.readUTF().trim();
+					if(companyName.length() == 0) companyName=null;
+					String email=in.readUTF().trim();
+					if(email.length() == 0) email=null;
+					String phone=in.readUTF().trim();
+					if(phone.length() == 0) phone=null;
+					String fax=in.readUTF().trim();
+					if(fax.length() == 0) fax=null;
+					String customerId;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_1) >= 0) {
+						customerId = in.readUTF().trim();
+						if(customerId.length() == 0) customerId = null;
+					} else {
+						customerId = null;
+					}
+					String customerTaxId=in.readUTF().trim();
+					if(customerTaxId.length() == 0) customerTaxId=null;
+					String streetAddress1=in.readUTF().trim();
+					String streetAddress2=in.readUTF().trim();
+					if(streetAddress2.length() == 0) streetAddress2=null;
+					String city=in.readUTF().trim();
+					String state=in.readUTF().trim();
+					if(state.length() == 0) state=null;
+					String postalCode=in.readUTF().trim();
+					if(postalCode.length() == 0) postalCode=null;
+					String countryCode=in.readUTF().trim();
+					String description=in.readUTF().trim();
+					if(description.length() == 0) description=null;
+					process.setCommand(
+						"update_credit_card",
+						creditCard,
+						cardInfo,
+						firstName,
+						lastName,
+						companyName,
+						email,
+						phone,
+						fax,
+						customerId,
+						customerTaxId,
+						streetAddress1,
+						streetAddress2,
+						city,
+						state,
+						postalCode,
+						countryCode,
+						description
+					);
+					PaymentHandler.updateCreditCard(
+						conn,
+						source,
+						invalidateList,
+						creditCard,
+						cardInfo,
+						firstName,
+						lastName,
+						companyName,
+						email,
+						phone,
+						fax,
+						customerId,
+						customerTaxId,
+						streetAddress1,
+						streetAddress2,
+						city,
+						state,
+						postalCode,
+						countryCode,
+						description
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -185,7 +185,9 @@ public final class BackupHandler {
 			try {
 				AOServDaemonConnector daemonConnector = DaemonHandler.getDaemonConnector(conn, linuxServer);
 				conn.close(); // Don't hold database connection while connecting to the daemon
-				return daemonConnector.getDiskDeviceTotalSize(path);
+				long size = daemonConnector.getDiskDeviceTotalSize(path);
+				DaemonHandler.flagDaemonAsUp(linuxServer);
+				return size;
 			} catch(IOException | SQLException err) {
 				DaemonHandler.flagDaemonAsDown(linuxServer);
 				logger.log(Level.SEVERE, "id="+backupPartition+", path="+path+", linuxServer="+linuxServer, err);
@@ -206,7 +208,9 @@ public final class BackupHandler {
 			try {
 				AOServDaemonConnector daemonConnector = DaemonHandler.getDaemonConnector(conn, linuxServer);
 				conn.close(); // Don't hold database connection while connecting to the daemon
-				return daemonConnector.getDiskDeviceUsedSize(path);
+				long size = daemonConnector.getDiskDeviceUsedSize(path);
+				DaemonHandler.flagDaemonAsUp(linuxServer);
+				return size;
 			} catch(IOException | SQLException err) {
 				DaemonHandler.flagDaemonAsDown(linuxServer);
 				logger.log(Level.SEVERE, "id="+backupPartition+", path="+path+", linuxServer="+linuxServer, err);
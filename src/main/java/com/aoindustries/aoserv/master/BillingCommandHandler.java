@@ -0,0 +1,532 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.sql.SQLStreamables;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify payments and transactions.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class BillingCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.CREDIT_CARD_DECLINED,
+			AoservProtocol.CommandID.CREDIT_CARD_TRANSACTION_SALE_COMPLETED,
+			AoservProtocol.CommandID.CREDIT_CARD_TRANSACTION_AUTHORIZE_COMPLETED,
+			AoservProtocol.CommandID.TRANSACTION_APPROVED,
+			AoservProtocol.CommandID.TRANSACTION_DECLINED,
+			AoservProtocol.CommandID.TRANSACTION_HELD,
+			AoservProtocol.CommandID.REACTIVATE_CREDIT_CARD,
+			AoservProtocol.CommandID.SET_CREDIT_CARD_USE_MONTHLY,
+			AoservProtocol.CommandID.UPDATE_CREDIT_CARD_NUMBER_AND_EXPIRATION,
+			AoservProtocol.CommandID.UPDATE_CREDIT_CARD_EXPIRATION
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case CREDIT_CARD_DECLINED :
+				{
+					int transid = in.readCompressedInt();
+					String reason = in.readUTF().trim();
+					process.setCommand(
+						Command.DECLINE_CREDIT_CARD,
+						transid,
+						reason
+					);
+					PaymentHandler.creditCardDeclined(
+						conn,
+						source,
+						invalidateList,
+						transid,
+						reason
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case CREDIT_CARD_TRANSACTION_SALE_COMPLETED :
+				{
+					int payment = in.readCompressedInt();
+					String authorizationCommunicationResult = in.readNullUTF();
+					String authorizationProviderErrorCode = in.readNullUTF();
+					String authorizationErrorCode = in.readNullUTF();
+					String authorizationProviderErrorMessage = in.readNullUTF();
+					String authorizationProviderUniqueId = in.readNullUTF();
+					String authorizationResult_providerReplacementMaskedCardNumber;
+					String authorizationResult_replacementMaskedCardNumber;
+					String authorizationResult_providerReplacementExpiration;
+					Byte authorizationResult_replacementExpirationMonth;
+					Short authorizationResult_replacementExpirationYear;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						authorizationResult_providerReplacementMaskedCardNumber = in.readNullUTF();
+						authorizationResult_replacementMaskedCardNumber = in.readNullUTF();
+						authorizationResult_providerReplacementExpiration = in.readNullUTF();
+						authorizationResult_replacementExpirationMonth = in.readNullByte();
+						authorizationResult_replacementExpirationYear = in.readNullShort();
+					} else {
+						authorizationResult_providerReplacementMaskedCardNumber = null;
+						authorizationResult_replacementMaskedCardNumber = null;
+						authorizationResult_providerReplacementExpiration = null;
+						authorizationResult_replacementExpirationMonth = null;
+						authorizationResult_replacementExpirationYear = null;
+					}
+					String providerApprovalResult = in.readNullUTF();
+					String approvalResult = in.readNullUTF();
+					String providerDeclineReason = in.readNullUTF();
+					String declineReason = in.readNullUTF();
+					String providerReviewReason = in.readNullUTF();
+					String reviewReason = in.readNullUTF();
+					String providerCvvResult = in.readNullUTF();
+					String cvvResult = in.readNullUTF();
+					String providerAvsResult = in.readNullUTF();
+					String avsResult = in.readNullUTF();
+					String approvalCode = in.readNullUTF();
+					Timestamp captureTime;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						long l = in.readLong();
+						captureTime = l == -1 ? null : new Timestamp(l);
+					} else {
+						captureTime = SQLStreamables.readNullTimestamp(in);
+					}
+					String capturePrincipalName = in.readNullUTF();
+					String captureCommunicationResult = in.readNullUTF();
+					String captureProviderErrorCode = in.readNullUTF();
+					String captureErrorCode = in.readNullUTF();
+					String captureProviderErrorMessage = in.readNullUTF();
+					String captureProviderUniqueId = in.readNullUTF();
+					String status = in.readNullUTF();
+					process.setCommand(
+						"credit_card_transaction_sale_completed",
+						payment,
+						authorizationCommunicationResult,
+						authorizationProviderErrorCode,
+						authorizationErrorCode,
+						authorizationProviderErrorMessage,
+						authorizationProviderUniqueId,
+						authorizationResult_providerReplacementMaskedCardNumber,
+						authorizationResult_replacementMaskedCardNumber,
+						authorizationResult_providerReplacementExpiration==null ? null : AoservProtocol.FILTERED,
+						authorizationResult_replacementExpirationMonth==null ? null : AoservProtocol.FILTERED,
+						authorizationResult_replacementExpirationYear==null ? null : AoservProtocol.FILTERED,
+						providerApprovalResult,
+						approvalResult,
+						providerDeclineReason,
+						declineReason,
+						providerReviewReason,
+						reviewReason,
+						providerCvvResult,
+						cvvResult,
+						providerAvsResult,
+						avsResult,
+						approvalCode,
+						captureTime,
+						capturePrincipalName,
+						captureCommunicationResult,
+						captureProviderErrorCode,
+						captureErrorCode,
+						captureProviderErrorMessage,
+						captureProviderUniqueId,
+						status
+					);
+					PaymentHandler.paymentSaleCompleted(
+						conn,
+						source,
+						invalidateList,
+						payment,
+						authorizationCommunicationResult,
+						authorizationProviderErrorCode,
+						authorizationErrorCode,
+						authorizationProviderErrorMessage,
+						authorizationProviderUniqueId,
+						authorizationResult_providerReplacementMaskedCardNumber,
+						authorizationResult_replacementMaskedCardNumber,
+						authorizationResult_providerReplacementExpiration,
+						authorizationResult_replacementExpirationMonth,
+						authorizationResult_replacementExpirationYear,
+						providerApprovalResult,
+						approvalResult,
+						providerDeclineReason,
+						declineReason,
+						providerReviewReason,
+						reviewReason,
+						providerCvvResult,
+						cvvResult,
+						providerAvsResult,
+						avsResult,
+						approvalCode,
+						captureTime,
+						capturePrincipalName,
+						captureCommunicationResult,
+						captureProviderErrorCode,
+						captureErrorCode,
+						captureProviderErrorMessage,
+						captureProviderUniqueId,
+						status
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case CREDIT_CARD_TRANSACTION_AUTHORIZE_COMPLETED :
+				{
+					int payment = in.readCompressedInt();
+					String authorizationCommunicationResult = in.readNullUTF();
+					String authorizationProviderErrorCode = in.readNullUTF();
+					String authorizationErrorCode = in.readNullUTF();
+					String authorizationProviderErrorMessage = in.readNullUTF();
+					String authorizationProviderUniqueId = in.readNullUTF();
+					String authorizationResult_providerReplacementMaskedCardNumber;
+					String authorizationResult_replacementMaskedCardNumber;
+					String authorizationResult_providerReplacementExpiration;
+					Byte authorizationResult_replacementExpirationMonth;
+					Short authorizationResult_replacementExpirationYear;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						authorizationResult_providerReplacementMaskedCardNumber = in.readNullUTF();
+						authorizationResult_replacementMaskedCardNumber = in.readNullUTF();
+						authorizationResult_providerReplacementExpiration = in.readNullUTF();
+						authorizationResult_replacementExpirationMonth = in.readNullByte();
+						authorizationResult_replacementExpirationYear = in.readNullShort();
+					} else {
+						authorizationResult_providerReplacementMaskedCardNumber = null;
+						authorizationResult_replacementMaskedCardNumber = null;
+						authorizationResult_providerReplacementExpiration = null;
+						authorizationResult_replacementExpirationMonth = null;
+						authorizationResult_replacementExpirationYear = null;
+					}
+					String providerApprovalResult = in.readNullUTF();
+					String approvalResult = in.readNullUTF();
+					String providerDeclineReason = in.readNullUTF();
+					String declineReason = in.readNullUTF();
+					String providerReviewReason = in.readNullUTF();
+					String reviewReason = in.readNullUTF();
+					String providerCvvResult = in.readNullUTF();
+					String cvvResult = in.readNullUTF();
+					String providerAvsResult = in.readNullUTF();
+					String avsResult = in.readNullUTF();
+					String approvalCode = in.readNullUTF();
+					String status = in.readNullUTF();
+					process.setCommand(
+						"credit_card_transaction_authorize_completed",
+						payment,
+						authorizationCommunicationResult,
+						authorizationProviderErrorCode,
+						authorizationErrorCode,
+						authorizationProviderErrorMessage,
+						authorizationProviderUniqueId,
+						authorizationResult_providerReplacementMaskedCardNumber,
+						authorizationResult_replacementMaskedCardNumber,
+						authorizationResult_providerReplacementExpiration==null ? null : AoservProtocol.FILTERED,
+						authorizationResult_replacementExpirationMonth==null ? null : AoservProtocol.FILTERED,
+						authorizationResult_replacementExpirationYear==null ? null : AoservProtocol.FILTERED,
+						providerApprovalResult,
+						approvalResult,
+						providerDeclineReason,
+						declineReason,
+						providerReviewReason,
+						reviewReason,
+						providerCvvResult,
+						cvvResult,
+						providerAvsResult,
+						avsResult,
+						approvalCode,
+						status
+					);
+					PaymentHandler.paymentAuthorizeCompleted(
+						conn,
+						source,
+						invalidateList,
+						payment,
+						authorizationCommunicationResult,
+						authorizationProviderErrorCode,
+						authorizationErrorCode,
+						authorizationProviderErrorMessage,
+						authorizationProviderUniqueId,
+						authorizationResult_providerReplacementMaskedCardNumber,
+						authorizationResult_replacementMaskedCardNumber,
+						authorizationResult_providerReplacementExpiration,
+						authorizationResult_replacementExpirationMonth,
+						authorizationResult_replacementExpirationYear,
+						providerApprovalResult,
+						approvalResult,
+						providerDeclineReason,
+						declineReason,
+						providerReviewReason,
+						reviewReason,
+						providerCvvResult,
+						cvvResult,
+						providerAvsResult,
+						avsResult,
+						approvalCode,
+						status
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case TRANSACTION_APPROVED :
+				{
+					int transid = in.readCompressedInt();
+					int creditCardTransaction;
+					String paymentInfo;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_28)<=0) {
+						String paymentType=in.readUTF();
+						paymentInfo = in.readNullUTF();
+						String merchant=in.readNullUTF();
+						String apr_num;
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_128)<0) apr_num=Integer.toString(in.readCompressedInt());
+						else apr_num=in.readUTF();
+						throw new SQLException("approve_transaction for protocol version "+AoservProtocol.Version.VERSION_1_28+" or older is no longer supported.");
+					} else {
+						creditCardTransaction = in.readCompressedInt();
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+							paymentInfo = in.readNullUTF();
+						} else {
+							paymentInfo = null;
+						}
+					}
+					process.setCommand(
+						"approve_transaction",
+						transid,
+						creditCardTransaction,
+						paymentInfo
+					);
+					BillingTransactionHandler.transactionApproved(
+						conn,
+						source,
+						invalidateList,
+						transid,
+						creditCardTransaction,
+						paymentInfo
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case TRANSACTION_DECLINED :
+				{
+					int transid = in.readCompressedInt();
+					int creditCardTransaction;
+					String paymentInfo;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_28)<=0) {
+						String paymentType=in.readUTF().trim();
+						paymentInfo = in.readNullUTF();
+						String merchant=in.readNullUTF();
+						throw new SQLException("decline_transaction for protocol version "+AoservProtocol.Version.VERSION_1_28+" or older is no longer supported.");
+					} else {
+						creditCardTransaction = in.readCompressedInt();
+						if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+							paymentInfo = in.readNullUTF();
+						} else {
+							paymentInfo = null;
+						}
+					}
+					process.setCommand(
+						"decline_transaction",
+						transid,
+						creditCardTransaction,
+						paymentInfo
+					);
+					BillingTransactionHandler.transactionDeclined(
+						conn,
+						source,
+						invalidateList,
+						transid,
+						creditCardTransaction,
+						paymentInfo
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case TRANSACTION_HELD :
+				{
+					int transid = in.readCompressedInt();
+					int creditCardTransaction = in.readCompressedInt();
+					String paymentInfo;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						paymentInfo = in.readNullUTF();
+					} else {
+						paymentInfo = null;
+					}
+					process.setCommand(
+						"hold_transaction",
+						transid,
+						creditCardTransaction,
+						paymentInfo
+					);
+					BillingTransactionHandler.transactionHeld(
+						conn,
+						source,
+						invalidateList,
+						transid,
+						creditCardTransaction,
+						paymentInfo
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case REACTIVATE_CREDIT_CARD :
+				{
+					int creditCard = in.readCompressedInt();
+					process.setCommand(
+						"reactivate_credit_card",
+						creditCard
+					);
+					PaymentHandler.reactivateCreditCard(
+						conn,
+						source,
+						invalidateList,
+						creditCard
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_CREDIT_CARD_USE_MONTHLY :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					int creditCard = in.readCompressedInt();
+					process.setCommand(
+						"set_credit_card_use_monthly",
+						account,
+						creditCard
+					);
+					PaymentHandler.setCreditCardUseMonthly(
+						conn,
+						source,
+						invalidateList,
+						account,
+						creditCard
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case UPDATE_CREDIT_CARD_NUMBER_AND_EXPIRATION :
+				{
+					int creditCard = in.readCompressedInt();
+					String maskedCardNumber = in.readUTF();
+					Byte expirationMonth;
+					Short expirationYear;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						expirationMonth = in.readByte();
+						expirationYear = in.readShort();
+					} else {
+						expirationMonth = null;
+						expirationYear = null;
+					}
+					String encryptedCardNumber = in.readNullUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) < 0) {
+						String encryptedExpiration = in.readNullUTF();
+					}
+					int encryptionFrom = in.readCompressedInt();
+					int encryptionRecipient = in.readCompressedInt();
+					process.setCommand(
+						"update_credit_card_number_and_expiration",
+						creditCard,
+						maskedCardNumber,
+						expirationMonth==null ? null : AoservProtocol.FILTERED,
+						expirationYear==null ? null : AoservProtocol.FILTERED,
+						encryptedCardNumber==null ? null : AoservProtocol.FILTERED,
+						encryptionFrom==-1 ? null : encryptionFrom,
+						encryptionRecipient==-1 ? null : encryptionRecipient
+					);
+					PaymentHandler.updateCreditCardNumberAndExpiration(
+						conn,
+						source,
+						invalidateList,
+						creditCard,
+						maskedCardNumber,
+						expirationMonth,
+						expirationYear,
+						encryptedCardNumber,
+						encryptionFrom,
+						encryptionRecipient
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case UPDATE_CREDIT_CARD_EXPIRATION :
+				{
+					int creditCard = in.readCompressedInt();
+					Byte expirationMonth;
+					Short expirationYear;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
+						expirationMonth = in.readByte();
+						expirationYear = in.readShort();
+					} else {
+						expirationMonth = null;
+						expirationYear = null;
+						String encryptedExpiration = in.readUTF();
+						int encryptionFrom = in.readCompressedInt();
+						int encryptionRecipient = in.readCompressedInt();
+					}
+					process.setCommand(
+						"update_credit_card_expiration",
+						creditCard,
+						expirationMonth==null ? null : AoservProtocol.FILTERED,
+						expirationYear==null ? null : AoservProtocol.FILTERED
+					);
+					PaymentHandler.updateCreditCardExpiration(
+						conn,
+						source,
+						invalidateList,
+						creditCard,
+						expirationMonth,
+						expirationYear
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
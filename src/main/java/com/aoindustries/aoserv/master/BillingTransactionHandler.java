@@ -22,9 +22,13 @@
  */
 package com.aoindustries.aoserv.master;
 
+import com.aoapps.cron.CronDaemon;
+import com.aoapps.cron.CronJob;
+import com.aoapps.cron.Schedule;
 import com.aoapps.dbc.DatabaseConnection;
 import com.aoapps.hodgepodge.io.stream.StreamableOutput;
 import com.aoapps.lang.Strings;
+import com.aoapps.lang.SysExits;
 import com.aoapps.lang.i18n.Money;
 import com.aoapps.lang.i18n.Monies;
 import com.aoapps.lang.util.ErrorPrinter;
@@ -46,6 +50,8 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The <code>TransactionHandler</code> handles all the accesses to the transaction tables.
@@ -54,6 +60,8 @@ import java.util.List;
  */
 final public class BillingTransactionHandler {
 
+	private static final Logger logger = Logger.getLogger(BillingTransactionHandler.class.getName());
+
 	private BillingTransactionHandler() {
 	}
 
@@ -185,6 +193,8 @@ final public class BillingTransactionHandler {
 			);
 		}
 
+		updateAccountBalance(conn, transaction, Transaction.NOT_CONFIRMED);
+
 		// Notify all clients of the updates
 		invalidateList.addTable(conn, Table.TableID.TRANSACTIONS, account, AccountHandler.getHostsForAccount(conn, account), false);
 		return transaction;
@@ -207,9 +217,7 @@ final public class BillingTransactionHandler {
 				"getAccountBalance",
 				account,
 				out,
-				"SELECT coalesce(sum(cast((quantity * \"rate.value\") as numeric(9,2))), 0)\n"
-				+ "FROM billing.\"Transaction\"\n"
-				+ "WHERE accounting=? AND \"rate.currency\"=? AND payment_confirmed!='N'",
+				"SELECT coalesce((SELECT confirmed + pending FROM billing.\"AccountBalance\" WHERE accounting=? AND currency=?), 0)",
 				account.toString(),
 				Currency.USD.getCurrencyCode()
 			);
@@ -265,9 +273,7 @@ final public class BillingTransactionHandler {
 				"getConfirmedAccountBalance",
 				account,
 				out,
-				"SELECT coalesce(sum(cast((quantity * \"rate.value\") as numeric(9,2))), 0)\n"
-				+ "FROM billing.\"Transaction\"\n"
-				+ "WHERE accounting=? AND \"rate.currency\"=? AND payment_confirmed='Y'",
+				"SELECT coalesce((SELECT confirmed FROM billing.\"AccountBalance\" WHERE accounting=? AND currency=?), 0)",
 				account.toString(),
 				Currency.USD.getCurrencyCode()
 			);
@@ -277,7 +283,10 @@ final public class BillingTransactionHandler {
 	}
 
 	/**
-	 * Gets the confirmed balance for one account.
+	 * Gets the confirmed balance for one account.  As with the sum over the
+	 * transactions, each currency with a confirmed transaction is included,
+	 * even when its balance is zero.  Only zero balances check for a confirmed
+	 * transaction.
 	 */
 	public static Monies getConfirmedAccountBalance(
 		DatabaseConnection conn,
@@ -287,20 +296,19 @@ final public class BillingTransactionHandler {
 			conn.queryList(
 				ObjectFactories.moneyFactory,
 				"SELECT\n"
-				+ "  t.\"rate.currency\"\n"
-				+ "  sum(\n"
-				+ "    round(\n"
-				+ "      t.quantity * t.\"rate.value\",\n"
-				+ "      c.\"fractionDigits\"\n"
-				+ "    )\n"
-				+ "  )\n"
+				+ "  b.currency,\n"
+				+ "  b.confirmed\n"
 				+ "FROM\n"
-				+ "  billing.\"Transaction\" t\n"
-				+ "  INNER JOIN billing.\"Currency\" c ON t.\"rate.currency\" = c.\"currencyCode\"\n"
+				+ "  billing.\"AccountBalance\" b\n"
 				+ "WHERE\n"
-				+ "  t.accounting=?\n"
-				+ "  AND t.payment_confirmed='Y'\n"
-				+ "GROUP BY t.\"rate.currency\"",
+				+ "  b.accounting=?\n"
+				+ "  AND (\n"
+				+ "    b.confirmed != 0\n"
+				+ "    OR EXISTS (\n"
+				+ "      SELECT * FROM billing.\"Transaction\" t\n"
+				+ "      WHERE (t.accounting, t.\"rate.currency\", t.payment_confirmed) = (b.accounting, b.currency, 'Y')\n"
+				+ "    )\n"
+				+ "  )",
 				account.toString()
 			)
 		);
@@ -559,8 +567,8 @@ final public class BillingTransactionHandler {
 			Connection dbConn = conn.getConnection(true);
 			try (
 				PreparedStatement pstmt = dbConn.prepareStatement(
-					sql.toString(),
-					provideProgress ? ResultSet.TYPE_SCROLL_SENSITIVE : ResultSet.TYPE_FORWARD_ONLY,
+					provideProgress ? MasterServer.getProgressSql(sql.toString()) : sql.toString(),
+					ResultSet.TYPE_FORWARD_ONLY,
 					ResultSet.CONCUR_READ_ONLY
 				)
 			) {
@@ -620,6 +628,7 @@ final public class BillingTransactionHandler {
 			);
 		}
 		if(updateCount==0) throw new SQLException("Unable to find transaction with transid="+transaction+" and payment_confirmed='W'");
+		updateAccountBalance(conn, transaction, Transaction.WAITING_CONFIRMATION);
 
 		// Notify all clients of the update
 		invalidateList.addTable(conn, Table.TableID.TRANSACTIONS, account, InvalidateList.allHosts, false);
@@ -665,6 +674,7 @@ final public class BillingTransactionHandler {
 			);
 		}
 		if(updateCount==0) throw new SQLException("Unable to find transaction with transid="+transaction+" and payment_confirmed='W'");
+		updateAccountBalance(conn, transaction, Transaction.WAITING_CONFIRMATION);
 
 		// Notify all clients of the update
 		invalidateList.addTable(conn, Table.TableID.TRANSACTIONS, account, InvalidateList.allHosts, false);
@@ -715,6 +725,209 @@ final public class BillingTransactionHandler {
 		invalidateList.addTable(conn, Table.TableID.TRANSACTIONS, account, InvalidateList.allHosts, false);
 	}
 
+	/**
+	 * The amount of a transaction, rounded to its currency, as used for all balances.
+	 * Requires <code>billing."Transaction" t</code> joined with <code>billing."Currency" c</code>.
+	 */
+	private static final String AMOUNT = "round(t.quantity * t.\"rate.value\", c.\"fractionDigits\")";
+
+	/**
+	 * Applies a new or changed transaction to <code>billing."AccountBalance"</code>,
+	 * which holds the confirmed (<code>'Y'</code>) and pending
+	 * (<code>'W'</code>) balance per account and currency.  This must be called
+	 * in the same database transaction that adds the transaction or changes its
+	 * <code>payment_confirmed</code>, so balance lookups are a single row
+	 * instead of a sum over all transactions.
+	 * <p>
+	 * Every writer of <code>billing."Transaction"</code> in the master calls this.
+	 * Changes made outside the master, such as by hand, are repaired by the
+	 * nightly verification.
+	 * </p>
+	 *
+	 * @param  oldConfirmed  the previous value of <code>payment_confirmed</code>,
+	 *                       or {@link Transaction#NOT_CONFIRMED} for a new transaction
+	 *                       since it contributes nothing to the balance
+	 *
+	 * @see  #verifyAccountBalances(com.aoapps.dbc.DatabaseConnection, boolean)
+	 */
+	private static void updateAccountBalance(DatabaseConnection conn, int transaction, byte oldConfirmed) throws SQLException {
+		String old = oldConfirmed==Transaction.CONFIRMED?"Y":oldConfirmed==Transaction.NOT_CONFIRMED?"N":"W";
+		int updateCount = conn.update(
+			"INSERT INTO billing.\"AccountBalance\" (accounting, currency, confirmed, pending)\n"
+			+ "SELECT\n"
+			+ "  t.accounting,\n"
+			+ "  t.\"rate.currency\",\n"
+			+ "  (CASE WHEN t.payment_confirmed='Y' THEN a.amount ELSE 0 END) - (CASE WHEN ?='Y' THEN a.amount ELSE 0 END),\n"
+			+ "  (CASE WHEN t.payment_confirmed='W' THEN a.amount ELSE 0 END) - (CASE WHEN ?='W' THEN a.amount ELSE 0 END)\n"
+			+ "FROM\n"
+			+ "  billing.\"Transaction\" t\n"
+			+ "  INNER JOIN billing.\"Currency\" c ON t.\"rate.currency\" = c.\"currencyCode\"\n"
+			+ "  CROSS JOIN LATERAL (SELECT " + AMOUNT + " AS amount) a\n"
+			+ "WHERE\n"
+			+ "  t.transid=?\n"
+			+ "ON CONFLICT (accounting, currency) DO UPDATE SET\n"
+			+ "  confirmed = \"AccountBalance\".confirmed + EXCLUDED.confirmed,\n"
+			+ "  pending = \"AccountBalance\".pending + EXCLUDED.pending",
+			old,
+			old,
+			transaction
+		);
+		if(updateCount!=1) throw new SQLException("Unable to update account balance for transid="+transaction);
+	}
+
+	/**
+	 * The sums of all transactions, in the same form as <code>billing."AccountBalance"</code>.
+	 */
+	private static final String SUMS =
+		"SELECT\n"
+		+ "  t.accounting,\n"
+		+ "  t.\"rate.currency\" AS currency,\n"
+		+ "  coalesce(sum(" + AMOUNT + ") FILTER (WHERE t.payment_confirmed='Y'), 0) AS confirmed,\n"
+		+ "  coalesce(sum(" + AMOUNT + ") FILTER (WHERE t.payment_confirmed='W'), 0) AS pending\n"
+		+ "FROM\n"
+		+ "  billing.\"Transaction\" t\n"
+		+ "  INNER JOIN billing.\"Currency\" c ON t.\"rate.currency\" = c.\"currencyCode\"\n"
+		+ "GROUP BY\n"
+		+ "  t.accounting,\n"
+		+ "  t.\"rate.currency\"";
+
+	/**
+	 * Verifies <code>billing."AccountBalance"</code> against the sums of
+	 * <code>billing."Transaction"</code>, logging each difference.  When
+	 * {@code repair}, the transactions table is locked against updates and
+	 * the balances are rebuilt from the sums.
+	 *
+	 * @return  the number of account and currency balances that did not match
+	 */
+	public static int verifyAccountBalances(DatabaseConnection conn, boolean repair) throws IOException, SQLException {
+		// Only block updates when repairing, a single query already sees a consistent snapshot of both tables
+		if(repair) conn.update("LOCK TABLE billing.\"Transaction\", billing.\"AccountBalance\" IN SHARE ROW EXCLUSIVE MODE");
+		int mismatches = conn.queryCall(
+			results -> {
+				int count = 0;
+				while(results.next()) {
+					count++;
+					logger.log(
+						Level.WARNING,
+						"Account balance mismatch: accounting={0}, currency={1}, confirmed={2}, expected confirmed={3}, pending={4}, expected pending={5}",
+						new Object[] {
+							results.getString(1),
+							results.getString(2),
+							results.getBigDecimal(3),
+							results.getBigDecimal(4),
+							results.getBigDecimal(5),
+							results.getBigDecimal(6)
+						}
+					);
+				}
+				return count;
+			},
+			"SELECT\n"
+			+ "  coalesce(b.accounting, s.accounting),\n"
+			+ "  coalesce(b.currency, s.currency),\n"
+			+ "  b.confirmed,\n"
+			+ "  s.confirmed,\n"
+			+ "  b.pending,\n"
+			+ "  s.pending\n"
+			+ "FROM\n"
+			+ "  billing.\"AccountBalance\" b\n"
+			+ "  FULL OUTER JOIN (\n" + SUMS + "\n) s ON (b.accounting, b.currency) = (s.accounting, s.currency)\n"
+			+ "WHERE\n"
+			+ "  coalesce(b.confirmed, 0) != coalesce(s.confirmed, 0)\n"
+			+ "  OR coalesce(b.pending, 0) != coalesce(s.pending, 0)\n"
+			+ "ORDER BY 1, 2"
+		);
+		if(repair && mismatches > 0) {
+			conn.update("DELETE FROM billing.\"AccountBalance\"");
+			conn.update("INSERT INTO billing.\"AccountBalance\" (accounting, currency, confirmed, pending)\n" + SUMS);
+			logger.log(Level.INFO, "Rebuilt account balances, {0} did not match", mismatches);
+		}
+		return mismatches;
+	}
+
+	private static boolean cronDaemonAdded = false;
+
+	private static final Schedule schedule = (minute, hour, dayOfMonth, month, dayOfWeek, year) -> minute==15 && hour==5;
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void start() {
+		synchronized(System.out) {
+			if(!cronDaemonAdded) {
+				System.out.print("Starting " + BillingTransactionHandler.class.getSimpleName() + ": ");
+				CronDaemon.addCronJob(
+					new CronJob() {
+						@Override
+						public Schedule getSchedule() {
+							return schedule;
+						}
+
+						@Override
+						public String getName() {
+							return "Verify and repair account balances";
+						}
+
+						@Override
+						@SuppressWarnings("UseSpecificCatch")
+						public void run(int minute, int hour, int dayOfMonth, int month, int dayOfWeek, int year) {
+							try {
+								try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
+									// Verify without locking first, only blocking updates while repairing
+									int mismatches = verifyAccountBalances(conn, false);
+									if(mismatches > 0) {
+										logger.log(Level.SEVERE, "{0} account balances do not match their transactions, repairing", mismatches);
+										verifyAccountBalances(conn, true);
+									}
+									conn.commit();
+								}
+							} catch(ThreadDeath td) {
+								throw td;
+							} catch(Throwable t) {
+								logger.log(Level.SEVERE, null, t);
+							}
+						}
+
+						@Override
+						public int getThreadPriority() {
+							return Thread.NORM_PRIORITY-2;
+						}
+					},
+					logger
+				);
+				cronDaemonAdded = true;
+				System.out.println("Done");
+			}
+		}
+	}
+
+	/**
+	 * Verifies the account balances from the command line.  With
+	 * <code>--repair</code>, any differences are corrected by rebuilding the
+	 * balances from the transactions.  Exits non-zero when any balance did
+	 * not match.
+	 */
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void main(String[] args) {
+		try {
+			boolean repair = args.length == 1 && "--repair".equals(args[0]);
+			if(args.length > (repair ? 1 : 0)) {
+				System.err.println("usage: " + BillingTransactionHandler.class.getName() + " [--repair]");
+				System.exit(SysExits.EX_USAGE);
+			}
+			int mismatches;
+			try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
+				mismatches = verifyAccountBalances(conn, repair);
+				conn.commit();
+			}
+			System.out.println(mismatches + " account balances did not match" + (repair && mismatches > 0 ? ", rebuilt" : ""));
+			if(mismatches > 0 && !repair) System.exit(SysExits.EX_DATAERR);
+		} catch(ThreadDeath td) {
+			throw td;
+		} catch(Throwable t) {
+			ErrorPrinter.printStackTraces(t, System.err);
+			System.exit(SysExits.getSysExit(t));
+		}
+	}
+
 	public static Account.Name getAccountForTransaction(DatabaseConnection conn, int transaction) throws IOException, SQLException {
 		return conn.queryObject(
 			ObjectFactories.accountNameFactory,
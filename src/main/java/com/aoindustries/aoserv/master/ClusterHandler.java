@@ -78,7 +78,7 @@ final public class ClusterHandler implements CronJob {
 				started=true;
 				System.out.println("Done");
 				// Run immediately to populate mapping on start-up
-				MasterServer.executorService.submit(() -> {
+				MasterExecutors.background.submit(() -> {
 					updateMappings();
 				});
 			}
@@ -293,7 +293,7 @@ final public class ClusterHandler implements CronJob {
 						TIMER_REMINDER_INTERVAL
 					)
 				) {
-					MasterServer.executorService.submit(timer);
+					MasterExecutors.timers.submit(timer);
 
 					// Query the servers in parallel
 					final MasterDatabase database = MasterDatabase.getDatabase();
@@ -302,7 +302,7 @@ final public class ClusterHandler implements CronJob {
 					for(final Integer xenPhysicalServer : xenPhysicalServers) {
 						futures.put(
 							xenPhysicalServer,
-							MasterServer.executorService.submit(() -> {
+							MasterExecutors.daemons.submit(() -> {
 								// Try up to ten times
 								for(int c=0;c<10;c++) {
 									try {
@@ -0,0 +1,89 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ServiceLoader;
+
+/**
+ * Handles one or more commands, as an alternative to the cases in
+ * {@link MasterServer#handleRequest(com.aoindustries.aoserv.master.RequestSource, long, com.aoapps.hodgepodge.io.stream.StreamableInput, com.aoapps.hodgepodge.io.stream.StreamableOutput, com.aoindustries.aoserv.master.master.Process)}.
+ * <p>
+ * Handlers are called within the same pipeline as the built-in commands: the
+ * database connection is obtained, the administrator is verified as not
+ * disabled, and the transaction is committed and the {@link InvalidateList}
+ * applied after the handler returns.  Exceptions are reported to the client
+ * in the same way.
+ * </p>
+ * <p>
+ * Handlers are registered via {@link ServiceLoader} or by a {@link MasterService}.
+ * A registered handler takes precedence over the built-in implementation of
+ * the same command.
+ * </p>
+ * <p>
+ * Every command that modifies data is implemented as a handler, grouped by area,
+ * such as {@link WebCommandHandler}, or by command for the generic table
+ * commands, such as {@link AddCommandHandler}.  Only
+ * queries and daemon controls remain in the cases of
+ * {@link MasterServer#handleRequest(com.aoindustries.aoserv.master.RequestSource, long, com.aoapps.hodgepodge.io.stream.StreamableInput, com.aoapps.hodgepodge.io.stream.StreamableOutput, com.aoindustries.aoserv.master.master.Process)}.
+ * </p>
+ *
+ * @see  MasterServer#addCommandHandler(com.aoindustries.aoserv.master.CommandHandler)
+ *
+ * @author  AO Industries, Inc.
+ */
+public interface CommandHandler {
+
+	/**
+	 * Gets the set of commands handled.
+	 */
+	java.util.Set<AoservProtocol.CommandID> getCommandIDs();
+
+	/**
+	 * Checks if the client is sent the list of invalidated tables after the response.
+	 */
+	boolean isSendInvalidateList(AoservProtocol.CommandID commandID);
+
+	/**
+	 * Reads the parameters of the command from the client and performs the command.
+	 *
+	 * @return  The response to write once the transaction is committed, or
+	 *          {@code null} when the response has already been written to {@code out}.
+	 */
+	MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException;
+}
@@ -46,26 +46,22 @@ public enum CursorMode {
 	FETCH,
 
 	/**
-	 * Automatic mode currently simply uses {@link #FETCH} when {@code !provideProgress}, otherwise
-	 * uses {@link #SELECT}.  This matches the old behavior, but much more crafty ideas follow.
+	 * Automatic mode selects between {@link #SELECT} and {@link #FETCH} based
+	 * on the expected number of rows.
 	 * <p>
-	 * TODO: In automatic mode, the first query for a given table and user is performed
-	 * with {@link #FETCH}, while subsequent queries will only use {@link #FETCH}
-	 * if the previous query returned more than {@link #AUTO_CURSOR_ABOVE} rows.
+	 * The first query for a given table and user is performed with {@link #FETCH},
+	 * unless the PostgreSQL statistics (<code>pg_class.reltuples</code>) show the
+	 * entire table has no more than {@link #AUTO_CURSOR_ABOVE} rows.  Subsequent
+	 * queries will only use {@link #FETCH} if the previous query returned more than
+	 * {@link #AUTO_CURSOR_ABOVE} rows.
 	 * </p>
 	 * <p>
-	 * TODO: The per-(table, user) cache is cleaned in the background when unused for
-	 * {@link TableHandler#MAX_ROW_COUNT_CACHE_AGE} milliseconds.
-	 * </p>
-	 * <p>
-	 * TODO: Invalidating schema_tables clears these caches?
-	 * </p>
-	 * <p>
-	 * TODO: Should we query PostgreSQL statistics instead, or in addition (pg_class.reltuples)?
-	 * At least as an upper bound for the first query, where if total rows is low enough,
-	 * skip cursor on the first query.  Hint: cache rultuples to bigint.
+	 * The per-(table, user) history is cleaned when unused for
+	 * {@link TableHandler#MAX_ROW_COUNT_CACHE_AGE} milliseconds, and is cleared
+	 * when <code>schema.Table</code> is invalidated.
 	 * </p>
 	 *
+	 * @see  CursorPlanner
 	 * @see  MasterServer#writeObjects(com.aoapps.dbc.DatabaseConnection, com.aoindustries.aoserv.master.RequestSource, com.aoapps.hodgepodge.io.stream.StreamableOutput, boolean, com.aoindustries.aoserv.master.CursorMode, com.aoindustries.aoserv.client.AOServObject, java.lang.String, java.lang.Object...)
 	 */
 	AUTO;
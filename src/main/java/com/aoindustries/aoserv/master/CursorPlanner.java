@@ -0,0 +1,272 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoindustries.aoserv.client.account.User;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selects between {@link CursorMode#SELECT} and {@link CursorMode#FETCH} for
+ * {@link CursorMode#AUTO}, based on the expected number of rows.
+ * <p>
+ * The number of rows returned by the previous query for a given table and user
+ * is the best predictor of the next.  When there is no recent history, the
+ * PostgreSQL planner statistics (<code>pg_class.reltuples</code>) are used as an
+ * upper bound.  When neither is available, {@link CursorMode#FETCH} is used,
+ * since it is safe for any size of result.
+ * </p>
+ * <p>
+ * Results that are expected to be larger than {@link CursorMode#AUTO_CURSOR_ABOVE}
+ * rows, or that are expected to consume too large a share of the heap for a
+ * single database connection, use {@link CursorMode#FETCH}.
+ * </p>
+ *
+ * @see  CursorMode#AUTO
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class CursorPlanner {
+
+	private CursorPlanner() {
+	}
+
+	/**
+	 * A rough estimate of the heap used by each row of a fully materialized result.
+	 */
+	private static final int ESTIMATED_ROW_SIZE = 1024;
+
+	/**
+	 * The fraction of the per-connection share of the heap that a fully
+	 * materialized result may use.
+	 */
+	private static final int MEMORY_SHARE_DIVISOR = 4;
+
+	/** Copy used to avoid multiple array copies on each access. */
+	private static final Table.TableID[] tableIDs = Table.TableID.values();
+	private static final int numTables = tableIDs.length;
+
+	/**
+	 * The row counts observed for a single user.
+	 */
+	private static class History {
+		private final long[] rowCounts = new long[numTables];
+		private final long[] expireTimes = new long[numTables];
+		private volatile long lastUsed;
+	}
+
+	private static final ConcurrentMap<User.Name, History> histories = new ConcurrentHashMap<>();
+
+	private static final AtomicLong lastCleanup = new AtomicLong(System.currentTimeMillis());
+
+	/**
+	 * Cached <code>pg_class.reltuples</code> per table, {@code -1} when unknown.
+	 */
+	private static final long[] reltuples = new long[numTables];
+	private static final long[] reltuplesExpireTimes = new long[numTables];
+
+	private static final AtomicLong selects = new AtomicLong();
+	private static final AtomicLong fetches = new AtomicLong();
+	private static final AtomicLong historyHits = new AtomicLong();
+	private static final AtomicLong reltuplesHits = new AtomicLong();
+	private static final AtomicLong mispredictions = new AtomicLong();
+
+	/**
+	 * Chooses the cursor mode for a query of the given table by the current administrator.
+	 *
+	 * @return  Either {@link CursorMode#SELECT} or {@link CursorMode#FETCH}
+	 */
+	public static CursorMode plan(DatabaseAccess db, RequestSource source, Table.TableID tableID) throws IOException, SQLException {
+		long expectedRows = getHistory(source.getCurrentAdministrator(), tableID);
+		if(expectedRows != -1) {
+			historyHits.incrementAndGet();
+		} else {
+			expectedRows = getReltuples(db, tableID);
+			if(expectedRows != -1) reltuplesHits.incrementAndGet();
+		}
+		CursorMode cursorMode;
+		if(
+			expectedRows == -1
+			|| expectedRows > CursorMode.AUTO_CURSOR_ABOVE
+			|| expectedRows * ESTIMATED_ROW_SIZE > getMemoryPerConnection() / MEMORY_SHARE_DIVISOR
+		) {
+			cursorMode = CursorMode.FETCH;
+			fetches.incrementAndGet();
+		} else {
+			cursorMode = CursorMode.SELECT;
+			selects.incrementAndGet();
+		}
+		return cursorMode;
+	}
+
+	/**
+	 * Records the number of rows actually returned by a query planned by
+	 * {@link #plan(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.RequestSource, com.aoindustries.aoserv.client.schema.Table.TableID)}.
+	 */
+	public static void record(RequestSource source, Table.TableID tableID, CursorMode cursorMode, long rowCount) {
+		if((cursorMode == CursorMode.SELECT) != (rowCount <= CursorMode.AUTO_CURSOR_ABOVE)) {
+			mispredictions.incrementAndGet();
+		}
+		long currentTime = System.currentTimeMillis();
+		History history = histories.computeIfAbsent(source.getCurrentAdministrator(), user -> new History());
+		history.lastUsed = currentTime;
+		synchronized(history) {
+			history.rowCounts[tableID.ordinal()] = rowCount;
+			history.expireTimes[tableID.ordinal()] = currentTime + TableHandler.MAX_ROW_COUNT_CACHE_AGE;
+		}
+		cleanup(currentTime);
+	}
+
+	/**
+	 * Gets the row count of the most recent query for the given table and user.
+	 *
+	 * @return  the number of rows or {@code -1} when no recent history
+	 */
+	private static long getHistory(User.Name user, Table.TableID tableID) {
+		History history = histories.get(user);
+		if(history == null) return -1;
+		long currentTime = System.currentTimeMillis();
+		history.lastUsed = currentTime;
+		synchronized(history) {
+			long expireTime = history.expireTimes[tableID.ordinal()];
+			if(
+				expireTime == 0
+				|| expireTime <= currentTime
+				|| expireTime > (currentTime + TableHandler.MAX_ROW_COUNT_CACHE_AGE)
+			) return -1;
+			return history.rowCounts[tableID.ordinal()];
+		}
+	}
+
+	/**
+	 * Removes the history of users that have not queried for
+	 * {@link TableHandler#MAX_ROW_COUNT_CACHE_AGE} milliseconds.  This is
+	 * performed at most once per interval.
+	 */
+	private static void cleanup(long currentTime) {
+		long last = lastCleanup.get();
+		long timeSince = currentTime - last;
+		if(
+			(timeSince >= TableHandler.MAX_ROW_COUNT_CACHE_AGE || timeSince <= -TableHandler.MAX_ROW_COUNT_CACHE_AGE)
+			&& lastCleanup.compareAndSet(last, currentTime)
+		) {
+			Iterator<History> iter = histories.values().iterator();
+			while(iter.hasNext()) {
+				long unused = currentTime - iter.next().lastUsed;
+				if(unused >= TableHandler.MAX_ROW_COUNT_CACHE_AGE || unused <= -TableHandler.MAX_ROW_COUNT_CACHE_AGE) {
+					iter.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the planner estimate of the number of rows in the given table.
+	 *
+	 * @return  the estimated number of rows or {@code -1} when unknown
+	 */
+	private static long getReltuples(DatabaseAccess db, Table.TableID tableID) throws IOException, SQLException {
+		int index = tableID.ordinal();
+		long currentTime = System.currentTimeMillis();
+		synchronized(reltuples) {
+			long expireTime = reltuplesExpireTimes[index];
+			if(
+				expireTime != 0
+				&& expireTime > currentTime
+				&& expireTime <= (currentTime + TableHandler.MAX_ROW_COUNT_CACHE_AGE)
+			) return reltuples[index];
+		}
+		long estimate = -1;
+		String tableName = TableHandler.getTableName(db, tableID);
+		if(tableName != null) {
+			int dotPos = tableName.lastIndexOf('.');
+			if(dotPos != -1) {
+				// Any failure is propagated, since it aborts the current transaction
+				Long value = db.queryCall(
+					results -> results.next() ? results.getLong(1) : null,
+					"select\n"
+					+ "  c.reltuples::int8\n"
+					+ "from\n"
+					+ "  pg_catalog.pg_class c\n"
+					+ "  inner join pg_catalog.pg_namespace n on c.relnamespace = n.oid\n"
+					+ "where\n"
+					+ "  n.nspname = ?\n"
+					+ "  and c.relname = ?",
+					tableName.substring(0, dotPos),
+					tableName.substring(dotPos + 1)
+				);
+				// Never analyzed tables report -1 (or 0 in older PostgreSQL versions)
+				if(value != null && value > 0) estimate = value;
+			}
+		}
+		synchronized(reltuples) {
+			reltuples[index] = estimate;
+			reltuplesExpireTimes[index] = System.currentTimeMillis() + TableHandler.MAX_ROW_COUNT_CACHE_AGE;
+		}
+		return estimate;
+	}
+
+	/**
+	 * Gets the share of the maximum heap available to each database connection.
+	 */
+	private static long getMemoryPerConnection() throws IOException {
+		int poolSize = MasterDatabase.getDatabase().getConnectionPool().getPoolSize();
+		return Runtime.getRuntime().maxMemory() / Math.max(1, poolSize);
+	}
+
+	public static long getSelects() {
+		return selects.get();
+	}
+
+	public static long getFetches() {
+		return fetches.get();
+	}
+
+	public static long getHistoryHits() {
+		return historyHits.get();
+	}
+
+	public static long getReltuplesHits() {
+		return reltuplesHits.get();
+	}
+
+	public static long getMispredictions() {
+		return mispredictions.get();
+	}
+
+	public static void invalidateTable(Table.TableID tableID) {
+		if(tableID == Table.TableID.SCHEMA_TABLES) {
+			// Table names may have changed
+			synchronized(reltuples) {
+				for(int i = 0; i < numTables; i++) reltuplesExpireTimes[i] = 0;
+			}
+			histories.clear();
+		}
+	}
+}
@@ -22,6 +22,9 @@
  */
 package com.aoindustries.aoserv.master;
 
+import com.aoapps.cron.CronDaemon;
+import com.aoapps.cron.CronJob;
+import com.aoapps.cron.Schedule;
 import com.aoapps.dbc.DatabaseAccess;
 import com.aoapps.dbc.DatabaseConnection;
 import com.aoapps.hodgepodge.io.AOPool;
@@ -36,7 +39,13 @@ import java.security.SecureRandom;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The <code>AOServDaemonHandler</code> handles all the accesses to the daemons.
@@ -45,33 +54,71 @@ import java.util.Map;
  */
 final public class DaemonHandler {
 
+	private static final Logger logger = Logger.getLogger(DaemonHandler.class.getName());
+
 	private DaemonHandler() {
 	}
 
 	/**
 	 * The amount of time before a daemon will be accessed again once
-	 * flagged as unavailable.
+	 * flagged as unavailable.  This doubles with each consecutive failure,
+	 * up to {@link #MAX_DAEMON_RETRY_DELAY}.
 	 */
 	public static final int DAEMON_RETRY_DELAY=5*1000; // Used to be 60*1000
 
-	private static final Map<Integer, AOServDaemonConnector> connectors = new HashMap<>();
+	/**
+	 * The maximum amount of time before a daemon will be accessed again once
+	 * flagged as unavailable.
+	 */
+	public static final int MAX_DAEMON_RETRY_DELAY=5*60*1000;
+
+	/**
+	 * A connector along with the hosts its configuration was resolved from.
+	 */
+	private static class DaemonConnector {
+
+		private final AOServDaemonConnector connector;
+
+		/**
+		 * The server of the daemon and the server of its daemon_connect_bind.
+		 */
+		private final int linuxServer;
+		private final int bindServer;
+
+		private DaemonConnector(AOServDaemonConnector connector, int linuxServer, int bindServer) {
+			this.connector = connector;
+			this.linuxServer = linuxServer;
+			this.bindServer = bindServer;
+		}
+
+		private boolean isAffected(List<Integer> hosts) {
+			return
+				hosts == InvalidateList.allHosts
+				|| hosts.contains(linuxServer)
+				|| (bindServer != linuxServer && hosts.contains(bindServer));
+		}
+	}
+
+	private static final ConcurrentMap<Integer, DaemonConnector> connectors = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented on each invalidation, so that a connector resolved
+	 * concurrently with an invalidation is not cached.
+	 */
+	private static final AtomicLong connectorsVersion = new AtomicLong();
 
 	public static int getDaemonConcurrency() {
 		int total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getConcurrency();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getConcurrency();
 		}
 		return total;
 	}
 
 	public static int getDaemonConnections() {
 		int total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getConnectionCount();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getConnectionCount();
 		}
 		return total;
 	}
@@ -167,33 +214,52 @@ final public class DaemonHandler {
 		);
 	}
 
+	/**
+	 * Gets the server of the bind used to connect to the daemon.
+	 */
+	private static int getDaemonConnectorBindServer(DatabaseAccess database, int linuxServer) throws IOException, SQLException {
+		return database.queryInt(
+			"select\n"
+			+ "  nb.server\n"
+			+ "from\n"
+			+ "  linux.\"Server\" ao,\n"
+			+ "  net.\"Bind\" nb\n"
+			+ "where\n"
+			+ "  ao.server=?\n"
+			+ "  and ao.daemon_connect_bind=nb.id",
+			linuxServer
+		);
+	}
+
 	public static AOServDaemonConnector getDaemonConnector(DatabaseAccess database, int linuxServer) throws IOException, SQLException {
 		Integer I = linuxServer;
-		synchronized(DaemonHandler.class) {
-			AOServDaemonConnector O=connectors.get(I);
-			if(O!=null) return O;
-			AOServDaemonConnector conn = AOServDaemonConnector.getConnector(
-				getDaemonConnectAddress(database, linuxServer),
-				MasterConfiguration.getLocalIp(),
-				getDaemonConnectorPort(database, linuxServer),
-				getDaemonConnectorProtocol(database, linuxServer),
-				MasterConfiguration.getDaemonKey(database, linuxServer),
-				getDaemonConnectorPoolSize(database, linuxServer),
-				AOPool.DEFAULT_MAX_CONNECTION_AGE,
-				MasterConfiguration.getSSLTruststorePath(),
-				MasterConfiguration.getSSLTruststorePassword()
-			);
-			connectors.put(I, conn);
-			return conn;
+		DaemonConnector O=connectors.get(I);
+		if(O!=null) return O.connector;
+		long version = connectorsVersion.get();
+		AOServDaemonConnector conn = AOServDaemonConnector.getConnector(
+			getDaemonConnectAddress(database, linuxServer),
+			MasterConfiguration.getLocalIp(),
+			getDaemonConnectorPort(database, linuxServer),
+			getDaemonConnectorProtocol(database, linuxServer),
+			MasterConfiguration.getDaemonKey(database, linuxServer),
+			getDaemonConnectorPoolSize(database, linuxServer),
+			AOPool.DEFAULT_MAX_CONNECTION_AGE,
+			MasterConfiguration.getSSLTruststorePath(),
+			MasterConfiguration.getSSLTruststorePassword()
+		);
+		DaemonConnector daemonConnector = new DaemonConnector(conn, linuxServer, getDaemonConnectorBindServer(database, linuxServer));
+		// Only cache when not invalidated while resolving
+		if(connectorsVersion.get() == version) {
+			connectors.put(I, daemonConnector);
+			if(connectorsVersion.get() != version) connectors.remove(I, daemonConnector);
 		}
+		return conn;
 	}
 
 	public static int getDaemonConnects() {
 		int total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getConnects();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getConnects();
 		}
 		return total;
 	}
@@ -204,89 +270,200 @@ final public class DaemonHandler {
 
 	public static int getDaemonMaxConcurrency() {
 		int total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getMaxConcurrency();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getMaxConcurrency();
 		}
 		return total;
 	}
 
 	public static int getDaemonPoolSize() {
 		int total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getPoolSize();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getPoolSize();
 		}
 		return total;
 	}
 
 	public static long getDaemonTotalTime() {
 		long total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getTotalTime();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getTotalTime();
 		}
 		return total;
 	}
 
 	public static long getDaemonTransactions() {
 		long total=0;
-		Iterator<Integer> I=connectors.keySet().iterator();
-		while(I.hasNext()) {
-			Integer key=I.next();
-			total+=connectors.get(key).getTransactionCount();
+		for(DaemonConnector daemonConnector : connectors.values()) {
+			total+=daemonConnector.connector.getTransactionCount();
 		}
 		return total;
 	}
 
-	private static final Map<Integer, Long> downDaemons = new HashMap<>();
-
-	public static void invalidateTable(Table.TableID tableID) {
+	/**
+	 * Removes the connectors resolved from any of the affected hosts.
+	 *
+	 * @param  hosts  The affected hosts, or {@link InvalidateList#allHosts}
+	 */
+	public static void invalidateTable(Table.TableID tableID, List<Integer> hosts) {
 		if(
 			tableID==Table.TableID.AO_SERVERS
 			|| tableID==Table.TableID.IP_ADDRESSES
 			|| tableID==Table.TableID.NET_BINDS
 		) {
-			synchronized(DaemonHandler.class) {
-				connectors.clear();
-			}
+			connectorsVersion.incrementAndGet();
+			connectors.values().removeIf(daemonConnector -> daemonConnector.isAffected(hosts));
+		}
+	}
+
+	/**
+	 * A daemon that has been flagged as unavailable.
+	 */
+	private static class DownDaemon {
+
+		/**
+		 * The number of consecutive failures.
+		 */
+		private final int failures;
+
+		private final long downTime;
+
+		/**
+		 * The time the daemon may be accessed again.
+		 */
+		private final long retryTime;
+
+		private DownDaemon(int failures, long downTime) {
+			this.failures = failures;
+			this.downTime = downTime;
+			this.retryTime = downTime + Math.min((long)DAEMON_RETRY_DELAY << Math.min(failures - 1, 16), MAX_DAEMON_RETRY_DELAY);
 		}
 	}
 
+	private static final ConcurrentMap<Integer, DownDaemon> downDaemons = new ConcurrentHashMap<>();
+
 	/**
 	 * The availability of daemons is maintained to avoid repeatedly trying to access
 	 * a daemon that is not responding while other daemons could be used.
 	 */
 	public static boolean isDaemonAvailable(int linuxServer) {
-		Integer I = linuxServer;
-		synchronized(downDaemons) {
-			Long O=downDaemons.get(I);
-			if(O!=null) {
-				long downTime=System.currentTimeMillis() - O;
-				if(downTime<0) {
-					downDaemons.remove(I);
-					return true;
-				}
-				if(downTime<DAEMON_RETRY_DELAY) return false;
-				downDaemons.remove(I);
+		DownDaemon downDaemon = downDaemons.get(linuxServer);
+		if(downDaemon != null) {
+			long currentTime = System.currentTimeMillis();
+			// Handle system time set to the past
+			if(currentTime < downDaemon.downTime) {
+				downDaemons.remove(linuxServer, downDaemon);
+				return true;
 			}
+			return currentTime >= downDaemon.retryTime;
 		}
 		return true;
 	}
 
 	public static void flagDaemonAsDown(int linuxServer) throws IOException {
-		Integer I = linuxServer;
-		synchronized(downDaemons) {
-			downDaemons.put(I, System.currentTimeMillis());
-		}
+		long currentTime = System.currentTimeMillis();
+		downDaemons.compute(
+			linuxServer,
+			(key, downDaemon) -> new DownDaemon(
+				// Consecutive when failed again soon after the last retry
+				downDaemon == null
+					|| currentTime < downDaemon.downTime
+					|| (currentTime - downDaemon.retryTime) >= MAX_DAEMON_RETRY_DELAY
+					? 1
+					: downDaemon.failures + 1,
+				currentTime
+			)
+		);
+	}
+
+	/**
+	 * Removes a daemon from the down daemons once it has been accessed successfully,
+	 * so it is no longer counted as down nor delayed after its next failure.
+	 */
+	public static void flagDaemonAsUp(int linuxServer) {
+		if(!downDaemons.isEmpty()) downDaemons.remove(linuxServer);
 	}
 
 	public static int getDownDaemonCount() {
-		synchronized(downDaemons) {
-			return downDaemons.size();
+		return downDaemons.size();
+	}
+
+	/**
+	 * Probes each down daemon once its retry delay has passed, removing it from
+	 * the down daemons on success.  Only daemons with a cached connector are
+	 * probed; others are retried by the next request.
+	 */
+	private static void probeDownDaemons() {
+		long currentTime = System.currentTimeMillis();
+		for(Map.Entry<Integer, DownDaemon> entry : downDaemons.entrySet()) {
+			Integer linuxServer = entry.getKey();
+			DownDaemon downDaemon = entry.getValue();
+			DaemonConnector daemonConnector = connectors.get(linuxServer);
+			if(daemonConnector != null && currentTime >= downDaemon.retryTime) {
+				MasterExecutors.daemons.submit(() -> {
+					try {
+						daemonConnector.connector.getSystemTimeMillis();
+						downDaemons.remove(linuxServer, downDaemon);
+					} catch(ThreadDeath TD) {
+						throw TD;
+					} catch(Throwable T) {
+						logger.log(Level.FINE, "linuxServer=" + linuxServer, T);
+						try {
+							flagDaemonAsDown(linuxServer);
+						} catch(IOException err2) {
+							logger.log(Level.SEVERE, null, err2);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	private static boolean cronDaemonAdded = false;
+
+	/**
+	 * Runs once per minute
+	 */
+	private static final Schedule schedule = (minute, hour, dayOfMonth, month, dayOfWeek, year) -> true;
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void start() {
+		synchronized(System.out) {
+			if(!cronDaemonAdded) {
+				System.out.print("Starting " + DaemonHandler.class.getSimpleName() + ": ");
+				CronDaemon.addCronJob(
+					new CronJob() {
+						@Override
+						public Schedule getSchedule() {
+							return schedule;
+						}
+
+						@Override
+						public String getName() {
+							return "Probe down daemons";
+						}
+
+						@Override
+						public void run(int minute, int hour, int dayOfMonth, int month, int dayOfWeek, int year) {
+							try {
+								probeDownDaemons();
+							} catch(ThreadDeath TD) {
+								throw TD;
+							} catch(Throwable T) {
+								logger.log(Level.SEVERE, null, T);
+							}
+						}
+
+						@Override
+						public int getThreadPriority() {
+							return Thread.NORM_PRIORITY-1;
+						}
+					},
+					logger
+				);
+				cronDaemonAdded = true;
+				System.out.println("Done");
+			}
 		}
 	}
 
@@ -0,0 +1,156 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify MySQL and PostgreSQL users.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class DatabaseCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.SET_MYSQL_SERVER_USER_PASSWORD,
+			AoservProtocol.CommandID.SET_MYSQL_SERVER_USER_PREDISABLE_PASSWORD,
+			AoservProtocol.CommandID.SET_POSTGRES_SERVER_USER_PASSWORD,
+			AoservProtocol.CommandID.SET_POSTGRES_SERVER_USER_PREDISABLE_PASSWORD
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		switch(commandID) {
+			case SET_MYSQL_SERVER_USER_PASSWORD :
+			case SET_POSTGRES_SERVER_USER_PASSWORD :
+				return false;
+			default :
+				return true;
+		}
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case SET_MYSQL_SERVER_USER_PASSWORD :
+				{
+					int userServer = in.readCompressedInt();
+					String password = in.readNullUTF();
+					process.setCommand(
+						Command.SET_MYSQL_SERVER_USER_PASSWORD,
+						userServer,
+						AoservProtocol.FILTERED
+					);
+					MysqlHandler.setUserServerPassword(
+						conn,
+						source,
+						userServer,
+						password
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_MYSQL_SERVER_USER_PREDISABLE_PASSWORD :
+				{
+					int userServer = in.readCompressedInt();
+					String password = in.readNullUTF();
+					process.setCommand(
+						"set_mysql_server_user_predisable_password",
+						userServer,
+						AoservProtocol.FILTERED
+					);
+					MysqlHandler.setUserServerPredisablePassword(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						password
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_POSTGRES_SERVER_USER_PASSWORD :
+				{
+					int userServer = in.readCompressedInt();
+					String password = in.readNullUTF();
+					process.setCommand(
+						Command.SET_POSTGRES_SERVER_USER_PASSWORD,
+						userServer,
+						password
+					);
+					PostgresqlHandler.setUserServerPassword(
+						conn,
+						source,
+						userServer,
+						password
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_POSTGRES_SERVER_USER_PREDISABLE_PASSWORD :
+				{
+					int userServer = in.readCompressedInt();
+					String password = in.readNullUTF();
+					process.setCommand(
+						"set_postgres_server_user_predisable_password",
+						userServer,
+						AoservProtocol.FILTERED
+					);
+					PostgresqlHandler.setUserServerPredisablePassword(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						password
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
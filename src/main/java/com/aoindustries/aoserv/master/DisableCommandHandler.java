@@ -0,0 +1,367 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles {@link AoservProtocol.CommandID#DISABLE}: disables a row of the table given by the client, recording the disable log.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class DisableCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(AoservProtocol.CommandID.DISABLE);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		int clientTableID = in.readCompressedInt();
+		Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
+		if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
+		int disableLog = in.readCompressedInt();
+		switch(tableID) {
+			case BUSINESSES :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_BUSINESS,
+						disableLog,
+						account
+					);
+					AccountHandler.disableAccount(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						account
+					);
+				}
+				break;
+			case BUSINESS_ADMINISTRATORS :
+				{
+					com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_BUSINESS_ADMINISTRATOR,
+						disableLog,
+						administrator
+					);
+					AccountHandler.disableAdministrator(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						administrator
+					);
+				}
+				break;
+			case CVS_REPOSITORIES :
+				{
+					int cvsRepository = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_CVS_REPOSITORY,
+						disableLog,
+						cvsRepository
+					);
+					CvsHandler.disableCvsRepository(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						cvsRepository
+					);
+				}
+				break;
+			case EMAIL_LISTS :
+				{
+					int list = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_EMAIL_LIST,
+						disableLog,
+						list
+					);
+					EmailHandler.disableList(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						list
+					);
+				}
+				break;
+			case EMAIL_PIPES :
+				{
+					int pipe = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_EMAIL_PIPE,
+						disableLog,
+						pipe
+					);
+					EmailHandler.disablePipe(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						pipe
+					);
+				}
+				break;
+			case EMAIL_SMTP_RELAYS :
+				{
+					int smtpRelay = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_EMAIL_SMTP_RELAY,
+						disableLog,
+						smtpRelay
+					);
+					EmailHandler.disableSmtpRelay(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						smtpRelay
+					);
+				}
+				break;
+			case HTTPD_SHARED_TOMCATS :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_HTTPD_SHARED_TOMCAT,
+						disableLog,
+						sharedTomcat
+					);
+					WebHandler.disableSharedTomcat(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						sharedTomcat
+					);
+				}
+				break;
+			case HTTPD_SITES :
+				{
+					int site = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_HTTPD_SITE,
+						disableLog,
+						site
+					);
+					WebHandler.disableSite(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						site
+					);
+				}
+				break;
+			case HTTPD_SITE_BINDS :
+				{
+					int virtualHost = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_HTTPD_SITE_BIND,
+						disableLog,
+						virtualHost
+					);
+					WebHandler.disableVirtualHost(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						virtualHost
+					);
+				}
+				break;
+			case LINUX_ACCOUNTS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_LINUX_ACCOUNT,
+						disableLog,
+						user
+					);
+					LinuxAccountHandler.disableUser(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						user
+					);
+				}
+				break;
+			case LINUX_SERVER_ACCOUNTS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_LINUX_SERVER_ACCOUNT,
+						disableLog,
+						userServer
+					);
+					LinuxAccountHandler.disableUserServer(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						userServer
+					);
+				}
+				break;
+			case MYSQL_SERVER_USERS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_MYSQL_SERVER_USER,
+						disableLog,
+						userServer
+					);
+					MysqlHandler.disableUserServer(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						userServer
+					);
+				}
+				break;
+			case MYSQL_USERS :
+				{
+					com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_MYSQL_USER,
+						disableLog,
+						user
+					);
+					MysqlHandler.disableUser(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						user
+					);
+				}
+				break;
+			case PACKAGES :
+				{
+					Account.Name name = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_PACKAGE,
+						disableLog,
+						name
+					);
+					PackageHandler.disablePackage(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						name
+					);
+				}
+				break;
+			case POSTGRES_SERVER_USERS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.DISABLE_POSTGRES_SERVER_USER,
+						disableLog,
+						userServer
+					);
+					PostgresqlHandler.disableUserServer(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						userServer
+					);
+				}
+				break;
+			case POSTGRES_USERS :
+				{
+					com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_POSTGRES_USER,
+						disableLog,
+						user
+					);
+					PostgresqlHandler.disableUser(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						user
+					);
+				}
+				break;
+			case USERNAMES :
+				{
+					com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.DISABLE_USERNAME,
+						disableLog,
+						user
+					);
+					AccountUserHandler.disableUser(
+						conn,
+						source,
+						invalidateList,
+						disableLog,
+						user
+					);
+				}
+				break;
+			default :
+				throw new IOException("Unknown table ID for disable: clientTableID="+clientTableID+", tableID="+tableID);
+		}
+		resp = MasterServer.Response.DONE;
+		return resp;
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify email lists and relays.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class EmailCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.REFRESH_EMAIL_SMTP_RELAY,
+			AoservProtocol.CommandID.SET_EMAIL_LIST_ADDRESS_LIST,
+			AoservProtocol.CommandID.SET_MAJORDOMO_INFO_FILE,
+			AoservProtocol.CommandID.SET_MAJORDOMO_INTRO_FILE
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		switch(commandID) {
+			case SET_EMAIL_LIST_ADDRESS_LIST :
+			case SET_MAJORDOMO_INFO_FILE :
+			case SET_MAJORDOMO_INTRO_FILE :
+				return false;
+			default :
+				return true;
+		}
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case REFRESH_EMAIL_SMTP_RELAY :
+				{
+					process.setPriority(Thread.NORM_PRIORITY + 1);
+					Thread.currentThread().setPriority(Thread.NORM_PRIORITY + 1);
+
+					int smtpRelay = in.readCompressedInt();
+					long minDuration = in.readLong();
+					process.setCommand(
+						Command.REFRESH_EMAIL_SMTP_RELAY,
+						smtpRelay,
+						minDuration
+					);
+					EmailHandler.refreshSmtpRelay(
+						conn,
+						source,
+						invalidateList,
+						smtpRelay,
+						minDuration
+
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_EMAIL_LIST_ADDRESS_LIST :
+				{
+					int list = in.readCompressedInt();
+					String addresses = in.readUTF();
+					process.setCommand(
+						Command.SET_EMAIL_LIST,
+						list,
+						addresses
+					);
+					EmailHandler.setListFile(
+						conn,
+						source,
+						list,
+						addresses
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_MAJORDOMO_INFO_FILE :
+				{
+					int majordomoList = in.readCompressedInt();
+					String file = in.readUTF();
+					process.setCommand(
+						Command.SET_MAJORDOMO_INFO_FILE,
+						majordomoList,
+						file
+					);
+					EmailHandler.setMajordomoInfoFile(
+						conn,
+						source,
+						majordomoList,
+						file
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_MAJORDOMO_INTRO_FILE :
+				{
+					int majordomoList = in.readCompressedInt();
+					String file = in.readUTF();
+					process.setCommand(
+						Command.SET_MAJORDOMO_INTRO_FILE,
+						majordomoList,
+						file
+					);
+					EmailHandler.setMajordomoIntroFile(
+						conn,
+						source,
+						majordomoList,
+						file
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -1067,7 +1067,9 @@ final public class EmailHandler {
 			try {
 				AOServDaemonConnector daemonConnector = DaemonHandler.getDaemonConnector(conn, linuxServer);
 				conn.close(); // Don't hold database connection while connecting to the daemon
-				return daemonConnector.getImapFolderSizes(user, folderNames);
+				long[] folderSizes = daemonConnector.getImapFolderSizes(user, folderNames);
+				DaemonHandler.flagDaemonAsUp(linuxServer);
+				return folderSizes;
 			} catch(IOException err) {
 				logger.log(Level.SEVERE, "userServer="+userServer+", linuxServer="+linuxServer+", username="+user+", folderNames="+Arrays.asList(folderNames), err);
 				DaemonHandler.flagDaemonAsDown(linuxServer);
@@ -1090,7 +1092,9 @@ final public class EmailHandler {
 			try {
 				AOServDaemonConnector daemonConnector = DaemonHandler.getDaemonConnector(conn, linuxServer);
 				conn.close(); // Don't hold database connection while connecting to the daemon
-				return daemonConnector.getInboxAttributes(user);
+				InboxAttributes attributes = daemonConnector.getInboxAttributes(user);
+				DaemonHandler.flagDaemonAsUp(linuxServer);
+				return attributes;
 			} catch(IOException err) {
 				logger.log(Level.SEVERE, "linux_server_account="+userServer+", linuxServer="+linuxServer+", username="+user, err);
 				DaemonHandler.flagDaemonAsDown(linuxServer);
@@ -0,0 +1,332 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles {@link AoservProtocol.CommandID#ENABLE}: enables a row of the table given by the client.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class EnableCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(AoservProtocol.CommandID.ENABLE);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		int clientTableID = in.readCompressedInt();
+		Table.TableID tableID=TableHandler.convertFromClientTableID(conn, source, clientTableID);
+		if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
+		switch(tableID) {
+			case BUSINESSES :
+				{
+					Account.Name account = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_BUSINESS,
+						account
+					);
+					AccountHandler.enableAccount(
+						conn,
+						source,
+						invalidateList,
+						account
+					);
+				}
+				break;
+			case BUSINESS_ADMINISTRATORS :
+				{
+					com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_BUSINESS_ADMINISTRATOR,
+						administrator
+					);
+					AccountHandler.enableAdministrator(
+						conn,
+						source,
+						invalidateList,
+						administrator
+					);
+				}
+				break;
+			case CVS_REPOSITORIES :
+				{
+					int cvsRepository = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_CVS_REPOSITORY,
+						cvsRepository
+					);
+					CvsHandler.enableCvsRepository(
+						conn,
+						source,
+						invalidateList,
+						cvsRepository
+					);
+				}
+				break;
+			case EMAIL_LISTS :
+				{
+					int list = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_EMAIL_LIST,
+						list
+					);
+					EmailHandler.enableList(
+						conn,
+						source,
+						invalidateList,
+						list
+					);
+				}
+				break;
+			case EMAIL_PIPES :
+				{
+					int pipe = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_EMAIL_PIPE,
+						pipe
+					);
+					EmailHandler.enablePipe(
+						conn,
+						source,
+						invalidateList,
+						pipe
+					);
+				}
+				break;
+			case EMAIL_SMTP_RELAYS :
+				{
+					int smtpRelay = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_EMAIL_SMTP_RELAY,
+						smtpRelay
+					);
+					EmailHandler.enableSmtpRelay(
+						conn,
+						source,
+						invalidateList,
+						smtpRelay
+					);
+				}
+				break;
+			case HTTPD_SHARED_TOMCATS :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_HTTPD_SHARED_TOMCAT,
+						sharedTomcat
+					);
+					WebHandler.enableSharedTomcat(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat
+					);
+				}
+				break;
+			case HTTPD_SITES :
+				{
+					int site = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_HTTPD_SITE,
+						site
+					);
+					WebHandler.enableSite(
+						conn,
+						source,
+						invalidateList,
+						site
+					);
+				}
+				break;
+			case HTTPD_SITE_BINDS :
+				{
+					int virtualHost = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_HTTPD_SITE_BIND,
+						virtualHost
+					);
+					WebHandler.enableVirtualHost(
+						conn,
+						source,
+						invalidateList,
+						virtualHost
+					);
+				}
+				break;
+			case LINUX_ACCOUNTS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_LINUX_ACCOUNT,
+						user
+					);
+					LinuxAccountHandler.enableUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+				}
+				break;
+			case LINUX_SERVER_ACCOUNTS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_LINUX_SERVER_ACCOUNT,
+						userServer
+					);
+					LinuxAccountHandler.enableUserServer(
+						conn,
+						source,
+						invalidateList,
+						userServer
+					);
+				}
+				break;
+			case MYSQL_SERVER_USERS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_MYSQL_SERVER_USER,
+						userServer
+					);
+					MysqlHandler.enableUserServer(
+						conn,
+						source,
+						invalidateList,
+						userServer
+					);
+				}
+				break;
+			case MYSQL_USERS :
+				{
+					com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_MYSQL_USER,
+						user
+					);
+					MysqlHandler.enableUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+				}
+				break;
+			case PACKAGES :
+				{
+					Account.Name name = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_PACKAGE,
+						name
+					);
+					PackageHandler.enablePackage(
+						conn,
+						source,
+						invalidateList,
+						name
+					);
+				}
+				break;
+			case POSTGRES_SERVER_USERS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.ENABLE_POSTGRES_SERVER_USER,
+						userServer
+					);
+					PostgresqlHandler.enableUserServer(
+						conn,
+						source,
+						invalidateList,
+						userServer
+					);
+				}
+				break;
+			case POSTGRES_USERS :
+				{
+					com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_POSTGRES_USER,
+						user
+					);
+					PostgresqlHandler.enableUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+				}
+				break;
+			case USERNAMES :
+				{
+					com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.ENABLE_USERNAME,
+						user
+					);
+					AccountUserHandler.enableUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+				}
+				break;
+			default :
+				throw new IOException("Unknown table ID for enable: clientTableID="+clientTableID+", tableID="+tableID);
+		}
+		resp = MasterServer.Response.DONE;
+		return resp;
+	}
+}
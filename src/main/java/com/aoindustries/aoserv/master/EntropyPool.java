@@ -0,0 +1,219 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory pool of entropy, divided into independently locked stripes so
+ * concurrent adds and gets do not contend on a single lock.
+ * <p>
+ * Each thread starts at the stripe selected by its thread ID and continues
+ * through the remaining stripes until the request is satisfied, so the pool
+ * behaves as a single pool of {@link #getMaximumLength()} bytes.  The order in
+ * which bytes are returned is not significant for entropy.
+ * </p>
+ * <p>
+ * Bytes are zeroed as they are removed from the pool.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class EntropyPool {
+
+	/**
+	 * Each stripe is a ring buffer.
+	 */
+	private static final class Stripe {
+
+		private final byte[] buffer;
+		private int head;
+		private int length;
+
+		private Stripe(int capacity) {
+			buffer = new byte[capacity];
+		}
+
+		private synchronized int add(byte[] b, int off, int len) {
+			int capacity = buffer.length;
+			int count = Math.min(len, capacity - length);
+			if(count > 0) {
+				int tail = (head + length) % capacity;
+				int first = Math.min(count, capacity - tail);
+				System.arraycopy(b, off, buffer, tail, first);
+				System.arraycopy(b, off + first, buffer, 0, count - first);
+				length += count;
+			}
+			return count;
+		}
+
+		private synchronized int get(byte[] b, int off, int len) {
+			int capacity = buffer.length;
+			int count = Math.min(len, length);
+			if(count > 0) {
+				int first = Math.min(count, capacity - head);
+				System.arraycopy(buffer, head, b, off, first);
+				Arrays.fill(buffer, head, head + first, (byte)0);
+				System.arraycopy(buffer, 0, b, off + first, count - first);
+				Arrays.fill(buffer, 0, count - first, (byte)0);
+				head = (head + count) % capacity;
+				length -= count;
+			}
+			return count;
+		}
+
+		private synchronized int copyTo(byte[] b, int off) {
+			int capacity = buffer.length;
+			int first = Math.min(length, capacity - head);
+			System.arraycopy(buffer, head, b, off, first);
+			System.arraycopy(buffer, 0, b, off + first, length - first);
+			return length;
+		}
+	}
+
+	private final Stripe[] stripes;
+	private final int mask;
+	private final long maximumLength;
+
+	private final AtomicLong length = new AtomicLong();
+	private final AtomicLong modifications = new AtomicLong();
+
+	private final AtomicLong readBytes = new AtomicLong();
+	private final AtomicLong readCount = new AtomicLong();
+	private final AtomicLong writeBytes = new AtomicLong();
+	private final AtomicLong writeCount = new AtomicLong();
+
+	/**
+	 * @param  maximumLength  The total number of bytes the pool may hold
+	 * @param  numStripes  The requested number of stripes, rounded down to a power of two
+	 */
+	EntropyPool(int maximumLength, int numStripes) {
+		if(maximumLength < 1) throw new IllegalArgumentException("maximumLength < 1: " + maximumLength);
+		numStripes = Integer.highestOneBit(Math.max(1, Math.min(numStripes, maximumLength)));
+		stripes = new Stripe[numStripes];
+		int stripeLength = maximumLength / numStripes;
+		int remainder = maximumLength % numStripes;
+		for(int i = 0; i < numStripes; i++) {
+			stripes[i] = new Stripe(stripeLength + (i < remainder ? 1 : 0));
+		}
+		mask = numStripes - 1;
+		this.maximumLength = maximumLength;
+	}
+
+	private int getFirstStripe() {
+		return (int)Thread.currentThread().getId() & mask;
+	}
+
+	/**
+	 * Adds up to <code>len</code> bytes, limited by the space available.
+	 *
+	 * @return  the number of bytes added
+	 */
+	int add(byte[] b, int off, int len) {
+		int added = 0;
+		int start = getFirstStripe();
+		for(int i = 0; i < stripes.length && added < len; i++) {
+			added += stripes[(start + i) & mask].add(b, off + added, len - added);
+		}
+		if(added > 0) {
+			length.addAndGet(added);
+			modifications.incrementAndGet();
+			writeBytes.addAndGet(added);
+			writeCount.incrementAndGet();
+		}
+		return added;
+	}
+
+	/**
+	 * Gets up to <code>len</code> bytes, limited by the bytes available.
+	 *
+	 * @return  the number of bytes read
+	 */
+	int get(byte[] b, int off, int len) {
+		int read = 0;
+		int start = getFirstStripe();
+		for(int i = 0; i < stripes.length && read < len; i++) {
+			read += stripes[(start + i) & mask].get(b, off + read, len - read);
+		}
+		if(read > 0) {
+			length.addAndGet(-read);
+			modifications.incrementAndGet();
+			readBytes.addAndGet(read);
+			readCount.incrementAndGet();
+		}
+		return read;
+	}
+
+	/**
+	 * Copies the current contents of the pool.  Each stripe is copied
+	 * atomically, but concurrent modifications of other stripes may or may not
+	 * be included.
+	 */
+	byte[] snapshot() {
+		byte[] copy = new byte[(int)maximumLength];
+		int pos = 0;
+		for(Stripe stripe : stripes) {
+			pos += stripe.copyTo(copy, pos);
+		}
+		if(pos == copy.length) return copy;
+		byte[] trimmed = Arrays.copyOf(copy, pos);
+		Arrays.fill(copy, 0, pos, (byte)0);
+		return trimmed;
+	}
+
+	/**
+	 * Gets a value that changes whenever the contents of the pool change.
+	 */
+	long getModifications() {
+		return modifications.get();
+	}
+
+	public long getLength() {
+		return length.get();
+	}
+
+	public long getMaximumLength() {
+		return maximumLength;
+	}
+
+	long getAvailable() {
+		return maximumLength - length.get();
+	}
+
+	public long getReadBytes() {
+		return readBytes.get();
+	}
+
+	public long getReadCount() {
+		return readCount.get();
+	}
+
+	public long getWriteBytes() {
+		return writeBytes.get();
+	}
+
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caches the resolved addresses of the hosts in <code>master.UserAcl</code>,
+ * so {@link MasterServer#isHostAllowed(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.client.account.User.Name, java.lang.String)}
+ * does not resolve each host on every login.
+ * <p>
+ * Entries expire after the same <code>networkaddress.cache.ttl</code> and
+ * <code>networkaddress.cache.negative.ttl</code> used by {@link InetAddress},
+ * since the resolver does not expose the DNS record TTLs.  Once expired, the
+ * previous result continues to be used while it is refreshed in the background,
+ * so a slow resolver only delays the first lookup of a host.  Hosts are
+ * resolved in the background as soon as they are configured.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class HostAddressCache {
+
+	private static final Logger logger = Logger.getLogger(HostAddressCache.class.getName());
+
+	private HostAddressCache() {
+	}
+
+	/**
+	 * The default time to cache a resolved address, in seconds.
+	 */
+	private static final int DEFAULT_TTL = 60;
+
+	/**
+	 * The default time to cache a failed resolution, in seconds.
+	 */
+	private static final int DEFAULT_NEGATIVE_TTL = 10;
+
+	private static class Entry {
+
+		/**
+		 * The address or {@code null} when the host could not be resolved.
+		 */
+		private final String address;
+		private final long expires;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private Entry(String address, long expires) {
+			this.address = address;
+			this.expires = expires;
+		}
+	}
+
+	private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong refreshes = new AtomicLong();
+	private static final AtomicLong failures = new AtomicLong();
+	private static final AtomicLong resolveTime = new AtomicLong();
+
+	/**
+	 * Gets a TTL in milliseconds from a security property, as also used by {@link InetAddress}.
+	 */
+	private static long getTtl(String property, int defaultSeconds) {
+		String value = Security.getProperty(property);
+		int seconds = defaultSeconds;
+		if(value != null) {
+			try {
+				seconds = Integer.parseInt(value.trim());
+			} catch(NumberFormatException e) {
+				logger.log(Level.WARNING, property + "=" + value, e);
+			}
+		}
+		// Negative means forever in InetAddress, but still refresh occasionally
+		if(seconds < 0) seconds = Integer.MAX_VALUE;
+		return TimeUnit.SECONDS.toMillis(seconds);
+	}
+
+	/**
+	 * Resolves a host, updating its entry.
+	 */
+	private static Entry resolve(String host) {
+		long startNanos = System.nanoTime();
+		String address;
+		long ttl;
+		try {
+			address = InetAddress.getByName(host).getHostAddress();
+			ttl = getTtl("networkaddress.cache.ttl", DEFAULT_TTL);
+		} catch(UnknownHostException e) {
+			failures.incrementAndGet();
+			logger.log(Level.FINE, "Unable to resolve host: " + host, e);
+			address = null;
+			ttl = getTtl("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL);
+		}
+		resolveTime.addAndGet(System.nanoTime() - startNanos);
+		long currentTime = System.currentTimeMillis();
+		long expires = currentTime + ttl;
+		// Overflow
+		if(expires < currentTime) expires = Long.MAX_VALUE;
+		Entry entry = new Entry(address, expires);
+		entries.put(host, entry);
+		return entry;
+	}
+
+	/**
+	 * Refreshes an entry in the background, at most once concurrently.  When the
+	 * background pool is full, the expired address continues to be used and the
+	 * refresh is tried again on the next lookup.
+	 */
+	private static void refresh(String host, Entry entry) {
+		if(entry.refreshing.compareAndSet(false, true)) {
+			refreshes.incrementAndGet();
+			try {
+				MasterExecutors.background.submit(() -> {
+					try {
+						resolve(host);
+					} finally {
+						entry.refreshing.set(false);
+					}
+				});
+			} catch(RejectedExecutionException e) {
+				entry.refreshing.set(false);
+				logger.log(Level.WARNING, "Unable to refresh host: " + host, e);
+			}
+		}
+	}
+
+	/**
+	 * Gets the address of a host.  Only blocks when the host has never been
+	 * resolved; otherwise an expired address is returned while it is refreshed in
+	 * the background.
+	 *
+	 * @return  The address or {@code null} when unable to resolve the host
+	 */
+	public static String getHostAddress(String host) {
+		Entry entry = entries.get(host);
+		if(entry == null) {
+			misses.incrementAndGet();
+			entry = resolve(host);
+		} else {
+			hits.incrementAndGet();
+			long currentTime = System.currentTimeMillis();
+			if(currentTime >= entry.expires) refresh(host, entry);
+		}
+		return entry.address;
+	}
+
+	/**
+	 * Removes any hosts not in the given set, and resolves any new hosts in the
+	 * background.  Called whenever the configured hosts are reloaded.
+	 */
+	public static void setHosts(Collection<String> hosts) {
+		Set<String> hostSet = new HashSet<>(hosts);
+		entries.keySet().retainAll(hostSet);
+		for(String host : hostSet) {
+			if(!entries.containsKey(host)) {
+				try {
+					MasterExecutors.background.submit(() -> {
+						if(!entries.containsKey(host)) resolve(host);
+					});
+				} catch(RejectedExecutionException e) {
+					// Resolved on first use instead
+					logger.log(Level.WARNING, "Unable to resolve host in the background: " + host, e);
+				}
+			}
+		}
+	}
+
+	public static int getSize() {
+		return entries.size();
+	}
+
+	public static long getHits() {
+		return hits.get();
+	}
+
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	public static long getRefreshes() {
+		return refreshes.get();
+	}
+
+	public static long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Gets the total time spent resolving hosts, in milliseconds.
+	 */
+	public static long getResolveTime() {
+		return TimeUnit.NANOSECONDS.toMillis(resolveTime.get());
+	}
+}
@@ -327,8 +327,10 @@ final public class InvalidateList {
 		for(Table.TableID tableID : tableIDs) {
 			if(hostLists.containsKey(tableID) || accountLists.containsKey(tableID)) {
 				AccountHandler.invalidateTable(tableID);
+				AuthenticationCache.invalidateTable(tableID);
+				CursorPlanner.invalidateTable(tableID);
 				CvsHandler.invalidateTable(tableID);
-				DaemonHandler.invalidateTable(tableID);
+				DaemonHandler.invalidateTable(tableID, getAffectedHosts(tableID));
 				// TODO: Have each service register to receive invalidation signals
 				try {
 					MasterServer.getService(DnsService.class).invalidateTable(tableID);
@@ -342,7 +344,10 @@ final public class InvalidateList {
 				MysqlHandler.invalidateTable(tableID);
 				PackageHandler.invalidateTable(tableID);
 				PostgresqlHandler.invalidateTable(tableID);
+				InvalidationIndex.invalidateTable(tableID);
+				TableSnapshotCache.invalidateTable(tableID);
 				NetHostHandler.invalidateTable(tableID);
+				AccessIndex.invalidateTable(tableID);
 				TableHandler.invalidateTable(tableID);
 				AccountUserHandler.invalidateTable(tableID);
 			}
@@ -0,0 +1,190 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.IntList;
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputes the information needed to deliver invalidations to cache
+ * listeners, so that {@link MasterServer#invalidateTables(com.aoapps.dbc.DatabaseAccess, com.aoindustries.aoserv.master.InvalidateList, com.aoindustries.aoserv.master.RequestSource)}
+ * only considers the tables actually invalidated, and matches each listener
+ * with constant-time lookups.
+ * <ul>
+ * <li>The client table IDs are resolved once per protocol version.</li>
+ * <li>The accounts and hosts accessible are checked through {@link AccessIndex}.</li>
+ * <li>The affected hosts, including failover parents, are resolved once per invalidation.</li>
+ * </ul>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class InvalidationIndex {
+
+	private InvalidationIndex() {
+	}
+
+	/** Copy used to avoid multiple array copies on each access. */
+	private static final Table.TableID[] tableIDs = Table.TableID.values();
+
+	/**
+	 * The tables whose invalidations are also sent to the servers failover parent.
+	 */
+	private static boolean isSentToFailover(Table.TableID tableID) {
+		return
+			tableID==Table.TableID.AO_SERVERS
+			|| tableID==Table.TableID.IP_ADDRESSES
+			|| tableID==Table.TableID.LINUX_ACCOUNTS
+			|| tableID==Table.TableID.LINUX_SERVER_ACCOUNTS
+			|| tableID==Table.TableID.NET_DEVICES
+			|| tableID==Table.TableID.SERVERS
+			|| tableID==Table.TableID.USERNAMES;
+	}
+
+	/**
+	 * The client table IDs indexed by {@link Table.TableID#ordinal()}, {@code -1} when not supported.
+	 */
+	private static final Map<AoservProtocol.Version, int[]> clientTableIDs = new EnumMap<>(AoservProtocol.Version.class);
+
+	private static int[] getClientTableIDs(DatabaseAccess db, RequestSource source) throws IOException, SQLException {
+		AoservProtocol.Version version = source.getProtocolVersion();
+		synchronized(clientTableIDs) {
+			int[] ids = clientTableIDs.get(version);
+			if(ids == null) {
+				ids = new int[tableIDs.length];
+				for(Table.TableID tableID : tableIDs) {
+					ids[tableID.ordinal()] = TableHandler.convertToClientTableID(db, source, tableID);
+				}
+				clientTableIDs.put(version, ids);
+			}
+			return ids;
+		}
+	}
+
+	/**
+	 * One invalidated table, with its affected accounts and hosts.
+	 */
+	static class AffectedTable {
+
+		private final Table.TableID tableID;
+		private final List<Account.Name> accounts;
+
+		/**
+		 * The affected hosts, including failover parents when applicable.
+		 */
+		private final int[] hosts;
+
+		private AffectedTable(Table.TableID tableID, List<Account.Name> accounts, int[] hosts) {
+			this.tableID = tableID;
+			this.accounts = accounts;
+			this.hosts = hosts;
+		}
+	}
+
+	/**
+	 * Resolves the invalidated tables once for delivery to all listeners.
+	 */
+	static List<AffectedTable> getAffectedTables(DatabaseAccess db, InvalidateList invalidateList) throws IOException, SQLException {
+		List<AffectedTable> affectedTables = new ArrayList<>();
+		for(Table.TableID tableID : tableIDs) {
+			List<Account.Name> affectedAccounts = invalidateList.getAffectedAccounts(tableID);
+			List<Integer> affectedHosts = invalidateList.getAffectedHosts(tableID);
+			if(affectedAccounts != null && affectedHosts != null) {
+				int size = affectedHosts.size();
+				int[] hosts;
+				if(size == 0) {
+					hosts = new int[0];
+				} else if(isSentToFailover(tableID)) {
+					hosts = new int[size * 2];
+					int count = 0;
+					for(int c = 0; c < size; c++) {
+						int host = affectedHosts.get(c);
+						hosts[count++] = host;
+						int failoverServer = NetHostHandler.getFailoverServer(db, host);
+						if(failoverServer != -1) hosts[count++] = failoverServer;
+					}
+					if(count < hosts.length) hosts = Arrays.copyOf(hosts, count);
+				} else {
+					hosts = new int[size];
+					for(int c = 0; c < size; c++) hosts[c] = affectedHosts.get(c);
+				}
+				affectedTables.add(new AffectedTable(tableID, affectedAccounts, hosts));
+			}
+		}
+		return affectedTables;
+	}
+
+	/**
+	 * Gets the client table IDs of the invalidated tables that are visible to the given listener.
+	 *
+	 * @param  tableList  the list that is cleared and populated
+	 */
+	static void getClientTableList(DatabaseAccess db, RequestSource source, List<AffectedTable> affectedTables, IntList tableList) throws IOException, SQLException {
+		tableList.clear();
+		int[] ids = getClientTableIDs(db, source);
+		for(AffectedTable affected : affectedTables) {
+			int clientTableID = ids[affected.tableID.ordinal()];
+			if(
+				clientTableID != -1
+				&& matchesAccounts(db, source, affected.accounts)
+				&& matchesHosts(db, source, affected.hosts)
+			) {
+				tableList.add(clientTableID);
+			}
+		}
+	}
+
+	private static boolean matchesAccounts(DatabaseAccess db, RequestSource source, List<Account.Name> affectedAccounts) throws IOException, SQLException {
+		int size = affectedAccounts.size();
+		if(size == 0) return true;
+		for(int c = 0; c < size; c++) {
+			if(AccountHandler.canAccessAccount(db, source, affectedAccounts.get(c))) return true;
+		}
+		return false;
+	}
+
+	private static boolean matchesHosts(DatabaseAccess db, RequestSource source, int[] affectedHosts) throws IOException, SQLException {
+		if(affectedHosts.length == 0) return true;
+		for(int host : affectedHosts) {
+			if(NetHostHandler.canAccessHost(db, source, host)) return true;
+		}
+		return false;
+	}
+
+	static void invalidateTable(Table.TableID tableID) {
+		if(tableID==Table.TableID.AOSERV_PROTOCOLS || tableID==Table.TableID.SCHEMA_TABLES) {
+			synchronized(clientTableIDs) {
+				clientTableIDs.clear();
+			}
+		}
+	}
+}
@@ -1375,7 +1375,9 @@ final public class LinuxAccountHandler {
 			try {
 				AOServDaemonConnector daemonConnector = DaemonHandler.getDaemonConnector(conn, linuxServer);
 				conn.close(); // Don't hold database connection while connecting to the daemon
-				return daemonConnector.isProcmailManual(userServer) ? AoservProtocol.TRUE : AoservProtocol.FALSE;
+				boolean isManual = daemonConnector.isProcmailManual(userServer);
+				DaemonHandler.flagDaemonAsUp(linuxServer);
+				return isManual ? AoservProtocol.TRUE : AoservProtocol.FALSE;
 			} catch(IOException err) {
 				DaemonHandler.flagDaemonAsDown(linuxServer);
 				return AoservProtocol.SERVER_DOWN;
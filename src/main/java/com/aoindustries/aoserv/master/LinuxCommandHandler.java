@@ -0,0 +1,603 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.sql.SQLStreamables;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.linux.Group;
+import com.aoindustries.aoserv.client.linux.PosixPath;
+import com.aoindustries.aoserv.client.linux.User.Gecos;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify Linux accounts, groups, and servers.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class LinuxCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.ADD_SYSTEM_GROUP,
+			AoservProtocol.CommandID.ADD_SYSTEM_USER,
+			AoservProtocol.CommandID.COPY_HOME_DIRECTORY,
+			AoservProtocol.CommandID.COPY_LINUX_SERVER_ACCOUNT_PASSWORD,
+			AoservProtocol.CommandID.SET_AUTORESPONDER,
+			AoservProtocol.CommandID.SET_CRON_TABLE,
+			AoservProtocol.CommandID.SET_CVS_REPOSITORY_MODE,
+			AoservProtocol.CommandID.SET_LAST_DISTRO_TIME,
+			AoservProtocol.CommandID.SET_LINUX_ACCOUNT_HOME_PHONE,
+			AoservProtocol.CommandID.SET_LINUX_ACCOUNT_NAME,
+			AoservProtocol.CommandID.SET_LINUX_ACCOUNT_OFFICE_LOCATION,
+			AoservProtocol.CommandID.SET_LINUX_ACCOUNT_OFFICE_PHONE,
+			AoservProtocol.CommandID.SET_LINUX_ACCOUNT_SHELL,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_JUNK_EMAIL_RETENTION,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_PASSWORD,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_PREDISABLE_PASSWORD,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_EMAIL_SPAMASSASSIN_INTEGRATION_MODE,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_REQUIRED_SCORE,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_DISCARD_SCORE,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_TRASH_EMAIL_RETENTION,
+			AoservProtocol.CommandID.SET_LINUX_SERVER_ACCOUNT_USE_INBOX,
+			AoservProtocol.CommandID.SET_PRIMARY_LINUX_GROUP_ACCOUNT
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		switch(commandID) {
+			case COPY_HOME_DIRECTORY :
+			case SET_CRON_TABLE :
+				return false;
+			default :
+				return true;
+		}
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case ADD_SYSTEM_GROUP :
+				{
+					int linuxServer = in.readCompressedInt();
+					Group.Name group = Group.Name.valueOf(in.readUTF());
+					int gid = in.readCompressedInt();
+					process.setCommand(
+						"add_system_group",
+						linuxServer,
+						group,
+						gid
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						LinuxAccountHandler.addSystemGroup(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							group,
+							gid
+						)
+					);
+				}
+				break;
+			case ADD_SYSTEM_USER:
+				{
+					int linuxServer = in.readCompressedInt();
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					int uid = in.readCompressedInt();
+					int gid = in.readCompressedInt();
+					Gecos fullName;
+					{
+						String s = in.readUTF();
+						fullName = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					Gecos officeLocation;
+					{
+						String s = in.readUTF();
+						officeLocation = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					Gecos officePhone;
+					{
+						String s = in.readUTF();
+						officePhone = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					Gecos homePhone;
+					{
+						String s = in.readUTF();
+						homePhone = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					PosixPath home = PosixPath.valueOf(in.readUTF());
+					PosixPath shell = PosixPath.valueOf(in.readUTF());
+					process.setCommand(
+						"add_system_user",
+						linuxServer,
+						user,
+						uid,
+						gid,
+						fullName,
+						officeLocation,
+						officePhone,
+						homePhone,
+						home,
+						shell
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						LinuxAccountHandler.addSystemUser(
+							conn,
+							source,
+							invalidateList,
+							linuxServer,
+							user,
+							uid,
+							gid,
+							fullName,
+							officeLocation,
+							officePhone,
+							homePhone,
+							home,
+							shell
+						)
+					);
+				}
+				break;
+			case COPY_HOME_DIRECTORY :
+				{
+					int from_lsa = in.readCompressedInt();
+					int to_server = in.readCompressedInt();
+					process.setCommand(
+						Command.COPY_HOME_DIRECTORY,
+						from_lsa,
+						to_server
+					);
+					long byteCount = LinuxAccountHandler.copyHomeDirectory(
+						conn,
+						source,
+						from_lsa,
+						to_server
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						byteCount
+					);
+				}
+				break;
+			case COPY_LINUX_SERVER_ACCOUNT_PASSWORD :
+				{
+					int from_lsa = in.readCompressedInt();
+					int to_lsa = in.readCompressedInt();
+					process.setCommand(
+						Command.COPY_LINUX_SERVER_ACCOUNT_PASSWORD,
+						from_lsa,
+						to_lsa
+					);
+					LinuxAccountHandler.copyUserServerPassword(
+						conn,
+						source,
+						invalidateList,
+						from_lsa,
+						to_lsa
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_AUTORESPONDER :
+				{
+					int userServer = in.readCompressedInt();
+					int from = in.readCompressedInt();
+					String subject = in.readNullUTF();
+					String content = in.readNullUTF();
+					boolean enabled = in.readBoolean();
+					process.setCommand(
+						Command.SET_AUTORESPONDER,
+						userServer,
+						from==-1?null:from,
+						subject,
+						content,
+						enabled
+					);
+					LinuxAccountHandler.setAutoresponder(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						from,
+						subject,
+						content,
+						enabled
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_CRON_TABLE :
+				{
+					int userServer = in.readCompressedInt();
+					String crontab = in.readUTF();
+					process.setCommand(
+						Command.SET_CRON_TABLE,
+						userServer,
+						crontab
+					);
+					LinuxAccountHandler.setCronTable(
+						conn,
+						source,
+						userServer,
+						crontab
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_CVS_REPOSITORY_MODE :
+				{
+					int cvsRepository = in.readCompressedInt();
+					long mode = in.readLong();
+					process.setCommand(
+						Command.SET_CVS_REPOSITORY_MODE,
+						cvsRepository,
+						Long.toOctalString(mode)
+					);
+					CvsHandler.setMode(
+						conn,
+						source,
+						invalidateList,
+						cvsRepository,
+						mode
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LAST_DISTRO_TIME :
+				{
+					process.setPriority(Thread.MIN_PRIORITY+1);
+					Thread.currentThread().setPriority(Thread.MIN_PRIORITY+1);
+
+					int linuxServer = in.readCompressedInt();
+					Timestamp time;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+						time = new Timestamp(in.readLong());
+					} else {
+						time = SQLStreamables.readTimestamp(in);
+					}
+					process.setCommand(
+						"set_last_distro_time",
+						linuxServer,
+						time
+					);
+					LinuxServerHandler.setLastDistroTime(
+						conn,
+						source,
+						invalidateList,
+						linuxServer,
+						time
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_ACCOUNT_HOME_PHONE :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Gecos phone;
+					{
+						String s = in.readUTF();
+						phone = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					process.setCommand(
+						Command.SET_LINUX_ACCOUNT_HOME_PHONE,
+						user,
+						phone
+					);
+					LinuxAccountHandler.setUserHomePhone(
+						conn,
+						source,
+						invalidateList,
+						user,
+						phone
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_ACCOUNT_NAME :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Gecos fullName;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
+						fullName = Gecos.valueOf(in.readUTF());
+					} else {
+						String s = in.readUTF();
+						fullName = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					process.setCommand(
+						Command.SET_LINUX_ACCOUNT_NAME,
+						user,
+						fullName
+					);
+					LinuxAccountHandler.setUserFullName(
+						conn,
+						source,
+						invalidateList,
+						user,
+						fullName
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_ACCOUNT_OFFICE_LOCATION :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Gecos location;
+					{
+						String s = in.readUTF();
+						location = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					process.setCommand(
+						Command.SET_LINUX_ACCOUNT_OFFICE_LOCATION,
+						user,
+						location
+					);
+					LinuxAccountHandler.setUserOfficeLocation(
+						conn,
+						source,
+						invalidateList,
+						user,
+						location
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_ACCOUNT_OFFICE_PHONE :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					Gecos phone;
+					{
+						String s = in.readUTF();
+						phone = s.isEmpty() ? null : Gecos.valueOf(s);
+					}
+					process.setCommand(
+						Command.SET_LINUX_ACCOUNT_OFFICE_PHONE,
+						user,
+						phone
+					);
+					LinuxAccountHandler.setUserOfficePhone(
+						conn,
+						source,
+						invalidateList,
+						user,
+						phone
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_ACCOUNT_SHELL :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					PosixPath shell = PosixPath.valueOf(in.readUTF());
+					process.setCommand(
+						Command.SET_LINUX_ACCOUNT_SHELL,
+						user,
+						shell
+					);
+					LinuxAccountHandler.setUserShell(
+						conn,
+						source,
+						invalidateList,
+						user,
+						shell
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_JUNK_EMAIL_RETENTION :
+				{
+					int userServer = in.readCompressedInt();
+					int days = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_LINUX_SERVER_ACCOUNT_JUNK_EMAIL_RETENTION,
+						userServer,
+						days
+					);
+					LinuxAccountHandler.setUserServerJunkEmailRetention(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						days
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_PASSWORD :
+				{
+					int userServer = in.readCompressedInt();
+					String password = in.readUTF();
+					process.setCommand(
+						Command.SET_LINUX_ACCOUNT_PASSWORD,
+						userServer,
+						AoservProtocol.FILTERED
+					);
+					LinuxAccountHandler.setUserServerPassword(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						password
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_PREDISABLE_PASSWORD :
+				{
+					int userServer = in.readCompressedInt();
+					String password = in.readNullUTF();
+					process.setCommand(
+						"set_linux_server_account_predisable_password",
+						userServer,
+						AoservProtocol.FILTERED
+					);
+					LinuxAccountHandler.setUserServerPredisablePassword(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						password
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_EMAIL_SPAMASSASSIN_INTEGRATION_MODE:
+				{
+					int userServer = in.readCompressedInt();
+					String mode = in.readUTF();
+					process.setCommand(
+						Command.SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_INTEGRATION_MODE,
+						userServer,
+						mode
+					);
+					LinuxAccountHandler.setUserServerSpamAssassinIntegrationMode(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						mode
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_REQUIRED_SCORE:
+				{
+					int userServer = in.readCompressedInt();
+					float required_score = in.readFloat();
+					process.setCommand(
+						Command.SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_REQUIRED_SCORE,
+						userServer,
+						required_score
+					);
+					LinuxAccountHandler.setUserServerSpamAssassinRequiredScore(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						required_score
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_DISCARD_SCORE:
+				{
+					int userServer = in.readCompressedInt();
+					int discardScore = in.readCompressedInt();
+					process.setCommand(
+						"set_linux_server_account_spamassassin_discard_score",
+						userServer,
+						discardScore==-1 ? "\"\"" : Integer.toString(discardScore)
+					);
+					LinuxAccountHandler.setUserServerSpamAssassinDiscardScore(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						discardScore
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_TRASH_EMAIL_RETENTION :
+				{
+					int userServer = in.readCompressedInt();
+					int days = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_LINUX_SERVER_ACCOUNT_TRASH_EMAIL_RETENTION,
+						userServer,
+						days
+					);
+					LinuxAccountHandler.setUserServerTrashEmailRetention(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						days
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_LINUX_SERVER_ACCOUNT_USE_INBOX :
+				{
+					int userServer = in.readCompressedInt();
+					boolean useInbox = in.readBoolean();
+					process.setCommand(
+						Command.SET_LINUX_SERVER_ACCOUNT_USE_INBOX,
+						userServer,
+						useInbox
+					);
+					LinuxAccountHandler.setUserServerUseInbox(
+						conn,
+						source,
+						invalidateList,
+						userServer,
+						useInbox
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_PRIMARY_LINUX_GROUP_ACCOUNT :
+				{
+					int groupUser = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_PRIMARY_LINUX_GROUP_ACCOUNT,
+						groupUser
+					);
+					LinuxAccountHandler.setPrimaryGroupUser(
+						conn,
+						source,
+						invalidateList,
+						groupUser
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -110,6 +110,7 @@ final public class LinuxServerHandler {
 					AOServDaemonConnector daemonConnector = DaemonHandler.getDaemonConnector(conn, linuxServer);
 					conn.close(); // Don't hold database connection while connecting to the daemon
 					daemonConnector.getMrtgFile(filename, out);
+					DaemonHandler.flagDaemonAsUp(linuxServer);
 				} catch(IOException err) {
 					DaemonHandler.flagDaemonAsDown(linuxServer);
 					throw new IOException("Host Unavailable", err);
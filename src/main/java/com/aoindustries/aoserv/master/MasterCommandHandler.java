@@ -0,0 +1,139 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.io.IoUtils;
+import com.aoapps.lang.util.BufferManager;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.DomainName;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that operate on the master server itself.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class MasterCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.INVALIDATE_TABLE,
+			AoservProtocol.CommandID.ADD_MASTER_ENTROPY
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		switch(commandID) {
+			case ADD_MASTER_ENTROPY :
+				return false;
+			default :
+				return true;
+		}
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case INVALIDATE_TABLE :
+				{
+					int clientTableID = in.readCompressedInt();
+					Table.TableID tableID=TableHandler.convertFromClientTableID(conn, source, clientTableID);
+					if(tableID==null) throw new IOException("Client table not supported: #"+clientTableID);
+					int host;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
+						DomainName hostname = DomainName.valueOf(in.readNullUTF());
+						host = hostname==null ? -1 : NetHostHandler.getHostForLinuxServerHostname(conn, hostname);
+					} else {
+						host = in.readCompressedInt();
+					}
+					process.setCommand(
+						Command.INVALIDATE,
+						TableHandler.getTableName(
+							conn,
+							tableID
+						),
+						host==-1 ? null : host
+					);
+					TableHandler.invalidate(
+						conn,
+						source,
+						invalidateList,
+						tableID,
+						host
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case ADD_MASTER_ENTROPY :
+				{
+					int numBytes = in.readCompressedInt();
+					boolean useBufferManager = numBytes <= BufferManager.BUFFER_SIZE;
+					byte[] entropy = useBufferManager ? BufferManager.getBytes() : new byte[numBytes];
+					long entropyNeeded;
+					try {
+						IoUtils.readFully(in, entropy, 0, numBytes);
+						process.setCommand(
+							"add_master_entropy",
+							numBytes
+						);
+						entropyNeeded = RandomHandler.addMasterEntropy(conn, source, entropy, numBytes);
+					} finally {
+						if(useBufferManager) BufferManager.release(entropy, true);
+					}
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_1) < 0) {
+						resp = MasterServer.Response.DONE;
+					} else {
+						resp = MasterServer.Response.of(
+							AoservProtocol.DONE,
+							entropyNeeded
+						);
+					}
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -106,6 +106,27 @@ public final class MasterConfiguration {
 		return ints;
 	}
 
+	/**
+	 * Gets the connection engine for the given protocol and bind address.
+	 * A per-bind <code>aoserv.master.<i>protocol</i>.bind.<i>bind</i>.engine</code>
+	 * takes precedence over the per-protocol <code>aoserv.master.<i>protocol</i>.engine</code>.
+	 *
+	 * @return  The engine, defaulting to {@link TCPServer#ENGINE_THREAD}
+	 *
+	 * @see  TCPServer#ENGINE_THREAD
+	 * @see  SelectorTCPServer#ENGINE_SELECTOR
+	 */
+	public static String getEngine(String protocol, String bind) throws IOException {
+		String engine = getProperty("aoserv.master."+protocol+".bind."+bind+".engine");
+		if(engine == null || (engine = engine.trim()).isEmpty()) {
+			engine = getProperty("aoserv.master."+protocol+".engine");
+			if(engine == null || (engine = engine.trim()).isEmpty()) {
+				engine = TCPServer.ENGINE_THREAD;
+			}
+		}
+		return engine;
+	}
+
 	public static Account.Name getRootAccount() throws IOException {
 		try {
 			// TODO: Rename this property
@@ -140,6 +161,79 @@ public final class MasterConfiguration {
 		return S==null || S.length()==0 ? AOPool.DEFAULT_MAX_CONNECTION_AGE : Long.parseLong(S);
 	}
 
+	/**
+	 * Gets whether table and object responses are buffered, allowing the
+	 * database connection to be released before writing to the client.
+	 *
+	 * @return  The setting, defaulting to {@code true}
+	 */
+	public static boolean getResponseBuffer() throws IOException {
+		String S=getProperty("aoserv.master.response.buffer");
+		return S==null || S.length()==0 || Boolean.parseBoolean(S);
+	}
+
+	/**
+	 * Gets whether responses for public tables are cached in memory.
+	 *
+	 * @return  The setting, defaulting to {@code true}
+	 *
+	 * @see  TableSnapshotCache
+	 */
+	public static boolean getTableSnapshotCache() throws IOException {
+		String S=getProperty("aoserv.master.table.snapshot.cache");
+		return S==null || S.length()==0 || Boolean.parseBoolean(S);
+	}
+
+	/**
+	 * The default number of bytes of a buffered response kept in memory.
+	 */
+	private static final long DEFAULT_RESPONSE_BUFFER_MEMORY = 1024L * 1024L;
+
+	/**
+	 * Gets the number of bytes of a buffered response kept in memory before
+	 * overflowing to a temporary file.
+	 */
+	public static long getResponseBufferMemory() throws IOException {
+		String S=getProperty("aoserv.master.response.buffer.memory");
+		return S==null || S.length()==0 ? DEFAULT_RESPONSE_BUFFER_MEMORY : Long.parseLong(S);
+	}
+
+	/**
+	 * Gets the path the request statistics are periodically written to.
+	 *
+	 * @return  The path or {@code null} when not written
+	 *
+	 * @see  RequestStatistics
+	 */
+	public static String getStatsFile() throws IOException {
+		String S=getProperty("aoserv.master.stats.file");
+		return S==null || S.length()==0 ? null : S;
+	}
+
+	/**
+	 * Gets the maximum number of automatic payments processed concurrently.
+	 *
+	 * @return  The concurrency, defaulting to {@code 8}
+	 */
+	public static int getPaymentConcurrency() throws IOException {
+		String S=getProperty("aoserv.master.payment.concurrency");
+		return S==null || S.length()==0 ? 8 : Integer.parseInt(S);
+	}
+
+	/**
+	 * Gets the maximum number of automatic payments processed concurrently by
+	 * one payment processor.  A per-processor
+	 * <code>aoserv.master.payment.processor.<i>providerId</i>.concurrency</code>
+	 * takes precedence over <code>aoserv.master.payment.processor.concurrency</code>.
+	 *
+	 * @return  The concurrency, defaulting to {@code 2}
+	 */
+	public static int getPaymentProcessorConcurrency(String providerId) throws IOException {
+		String S=getProperty("aoserv.master.payment.processor."+providerId+".concurrency");
+		if(S==null || S.length()==0) S=getProperty("aoserv.master.payment.processor.concurrency");
+		return S==null || S.length()==0 ? 2 : Integer.parseInt(S);
+	}
+
 	public static String getBackupDBDriver() throws IOException {
 		return getProperty("aoserv.master.backup.db.driver");
 	}
@@ -203,7 +297,37 @@ public final class MasterConfiguration {
 		return getProperty("aoserv.master.blacklist.dsbl.script.path");
 	}
 
+	/**
+	 * Gets the maximum number of threads for the given executor pool.
+	 *
+	 * @see  MasterExecutors
+	 */
+	public static int getExecutorThreads(String pool, int defaultThreads) throws IOException {
+		String S=getProperty("aoserv.master.executor."+pool+".threads");
+		return S==null || S.length()==0 ? defaultThreads : Integer.parseInt(S);
+	}
+
+	/**
+	 * Gets the maximum number of tasks waiting for a thread in the given executor
+	 * pool, where {@code 0} is no queue.
+	 *
+	 * @see  MasterExecutors
+	 */
+	public static int getExecutorQueue(String pool, int defaultQueue) throws IOException {
+		String S=getProperty("aoserv.master.executor."+pool+".queue");
+		return S==null || S.length()==0 ? defaultQueue : Integer.parseInt(S);
+	}
+
 	public static String getEntropyPoolFilePath() throws IOException {
 		return getProperty("aoserv.master.entropy.file.path");
 	}
+
+	/**
+	 * Gets the number of milliseconds between writes of the entropy pool to
+	 * {@link #getEntropyPoolFilePath()}, defaults to five seconds.
+	 */
+	public static long getEntropyPoolFlushInterval() throws IOException {
+		String S=getProperty("aoserv.master.entropy.flush.interval");
+		return S==null || S.length()==0 ? 5000 : Long.parseLong(S);
+	}
 }
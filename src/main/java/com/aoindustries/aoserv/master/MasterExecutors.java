@@ -0,0 +1,219 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The executors for master-wide tasks.  Each kind of work has its own bounded
+ * pool, so background work cannot consume the threads needed by client
+ * requests.
+ * <p>
+ * The number of threads and queue size of each pool may be configured with
+ * <code>aoserv.master.executor.&lt;name&gt;.threads</code> and
+ * <code>aoserv.master.executor.&lt;name&gt;.queue</code>.
+ * </p>
+ *
+ * @see  MasterConfiguration#getExecutorThreads(java.lang.String, int)
+ * @see  MasterConfiguration#getExecutorQueue(java.lang.String, int)
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class MasterExecutors {
+
+	private static final Logger logger = Logger.getLogger(MasterExecutors.class.getName());
+
+	private MasterExecutors() {
+	}
+
+	/**
+	 * What to do when a pool has no thread available and its queue is full.
+	 */
+	private enum Overflow {
+		/**
+		 * Throws {@link RejectedExecutionException}, for callers that must not
+		 * perform the task themselves.
+		 */
+		ABORT,
+
+		/**
+		 * Runs the task in the submitting thread, slowing the submitter.
+		 */
+		CALLER_RUNS,
+
+		/**
+		 * Logs a warning and does not run the task, for tasks that are only
+		 * informative.
+		 */
+		DISCARD
+	}
+
+	/**
+	 * A named, bounded pool of daemon threads.
+	 */
+	public static final class Pool extends ThreadPoolExecutor {
+
+		private final String name;
+		private final AtomicLong rejected = new AtomicLong();
+
+		private Pool(String name, int threads, BlockingQueue<Runnable> queue, int priority, Overflow overflow) {
+			super(
+				queue instanceof SynchronousQueue ? 0 : threads,
+				threads,
+				60,
+				TimeUnit.SECONDS,
+				queue,
+				new ThreadFactory() {
+					private final AtomicInteger threadNum = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, MasterExecutors.class.getSimpleName() + "-" + name + "-" + threadNum.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(priority);
+						return thread;
+					}
+				}
+			);
+			this.name = name;
+			allowCoreThreadTimeOut(true);
+			setRejectedExecutionHandler((r, executor) -> {
+				rejected.incrementAndGet();
+				if(executor.isShutdown()) throw new RejectedExecutionException("Executor is shutdown: " + name);
+				switch(overflow) {
+					case ABORT :
+						throw new RejectedExecutionException("Executor is full: " + name);
+					case CALLER_RUNS :
+						r.run();
+						break;
+					case DISCARD :
+						logger.log(Level.WARNING, "Executor is full, task discarded: {0}", name);
+						break;
+					default :
+						throw new AssertionError("Unexpected overflow: " + overflow);
+				}
+			});
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the number of tasks waiting for a thread.
+		 */
+		public int getQueueDepth() {
+			return getQueue().size();
+		}
+
+		/**
+		 * Gets the number of tasks that could not be queued, whether then
+		 * aborted, run by the caller, or discarded.
+		 */
+		public long getRejected() {
+			return rejected.get();
+		}
+	}
+
+	private static Pool newPool(String name, int defaultThreads, int defaultQueue, int priority, Overflow overflow) {
+		int threads;
+		int queue;
+		try {
+			threads = MasterConfiguration.getExecutorThreads(name, defaultThreads);
+			queue = MasterConfiguration.getExecutorQueue(name, defaultQueue);
+		} catch(IOException e) {
+			logger.log(Level.WARNING, "Unable to load configuration, using defaults for executor: " + name, e);
+			threads = defaultThreads;
+			queue = defaultQueue;
+		}
+		return new Pool(
+			name,
+			threads,
+			queue == 0 ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(queue),
+			priority,
+			overflow
+		);
+	}
+
+	/**
+	 * Creates a pool for a single run of work, such as the monthly automatic
+	 * payments.  The caller submits a known number of tasks, so the queue is
+	 * not bounded.  The pool is not included in {@link #getPools()}, and must
+	 * be shut down by the caller.
+	 */
+	static Pool newRunPool(String name, int threads) {
+		return new Pool(name, threads, new LinkedBlockingQueue<>(), Thread.NORM_PRIORITY, Overflow.ABORT);
+	}
+
+	/**
+	 * Processes client requests.  Requests are rejected when full, so the caller
+	 * may close the connection instead of blocking.  Connections listening for
+	 * cache invalidations each occupy a thread, so this must be larger than the
+	 * number of such connections.
+	 *
+	 * @see  SelectorTCPServer
+	 */
+	public static final Pool requests = newPool("requests", 1000, 1024, Thread.NORM_PRIORITY, Overflow.ABORT);
+
+	/**
+	 * Queries the daemons in parallel.  When full, the daemon is queried by the
+	 * submitting thread.
+	 */
+	public static final Pool daemons = newPool("daemons", 32, 1024, Thread.NORM_PRIORITY - 1, Overflow.CALLER_RUNS);
+
+	/**
+	 * Work started by cron jobs and caches, such as refreshing cached values.
+	 * When full, the task is rejected.  The submitting thread may be processing
+	 * a client request, so it must not perform the work itself, such as a DNS
+	 * lookup; callers log the rejection and skip or defer the work.
+	 */
+	public static final Pool background = newPool("background", 8, 1024, Thread.NORM_PRIORITY - 2, Overflow.ABORT);
+
+	/**
+	 * Runs the {@link com.aoapps.hodgepodge.logging.ProcessTimer} that watch
+	 * long-running tasks.  Each timer occupies a thread for the duration of its
+	 * task, so there is no queue.  When full, the timer is discarded and the
+	 * task continues unwatched.
+	 */
+	public static final Pool timers = newPool("timers", 32, 0, Thread.NORM_PRIORITY - 2, Overflow.DISCARD);
+
+	/**
+	 * All pools, in the order reported.
+	 */
+	private static final Pool[] pools = {requests, daemons, background, timers};
+
+	public static Pool[] getPools() {
+		return pools.clone();
+	}
+}
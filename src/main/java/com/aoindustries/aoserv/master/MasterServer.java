@@ -22,7 +22,6 @@
  */
 package com.aoindustries.aoserv.master;
 
-import com.aoapps.collections.AoCollections;
 import com.aoapps.collections.IntArrayList;
 import com.aoapps.collections.IntList;
 import com.aoapps.collections.MinimalList;
@@ -34,65 +33,43 @@ import com.aoapps.dbc.NoRowException;
 import com.aoapps.hodgepodge.io.stream.StreamableInput;
 import com.aoapps.hodgepodge.io.stream.StreamableOutput;
 import com.aoapps.hodgepodge.util.Tuple2;
-import com.aoapps.lang.Strings;
-import com.aoapps.lang.i18n.Money;
 import com.aoapps.lang.io.IoUtils;
 import com.aoapps.lang.util.BufferManager;
 import com.aoapps.lang.util.ErrorPrinter;
 import com.aoapps.lang.validation.ValidationException;
 import com.aoapps.net.DomainName;
-import com.aoapps.net.Email;
 import com.aoapps.net.HostAddress;
 import com.aoapps.net.InetAddress;
 import com.aoapps.net.Port;
 import com.aoapps.net.Protocol;
 import com.aoapps.security.HashedPassword;
 import com.aoapps.security.Identifier;
-import com.aoapps.security.Password;
 import com.aoapps.security.UnprotectedPassword;
 import com.aoapps.sql.Connections;
-import com.aoapps.sql.SQLStreamables;
 import com.aoapps.sql.SQLUtility;
 import com.aoindustries.aoserv.client.AOServObject;
 import com.aoindustries.aoserv.client.AOServWritable;
 import com.aoindustries.aoserv.client.account.Account;
-import com.aoindustries.aoserv.client.account.Profile;
 import com.aoindustries.aoserv.client.aosh.Command;
-import com.aoindustries.aoserv.client.billing.Currency;
-import com.aoindustries.aoserv.client.billing.MoneyUtil;
-import com.aoindustries.aoserv.client.billing.Transaction;
 import com.aoindustries.aoserv.client.billing.TransactionSearchCriteria;
-import com.aoindustries.aoserv.client.dns.Record;
-import com.aoindustries.aoserv.client.dns.ZoneTable;
 import com.aoindustries.aoserv.client.email.InboxAttributes;
 import com.aoindustries.aoserv.client.linux.Group;
-import com.aoindustries.aoserv.client.linux.PosixPath;
 import com.aoindustries.aoserv.client.linux.Server;
-import com.aoindustries.aoserv.client.linux.User.Gecos;
 import com.aoindustries.aoserv.client.master.User;
 import com.aoindustries.aoserv.client.master.UserHost;
 import com.aoindustries.aoserv.client.mysql.Database;
 import com.aoindustries.aoserv.client.mysql.Table_Name;
-import com.aoindustries.aoserv.client.net.FirewallZone;
-import com.aoindustries.aoserv.client.net.reputation.Set.AddReputation;
-import com.aoindustries.aoserv.client.net.reputation.Set.ConfidenceType;
-import com.aoindustries.aoserv.client.net.reputation.Set.ReputationType;
 import com.aoindustries.aoserv.client.pki.Certificate;
 import com.aoindustries.aoserv.client.schema.AoservProtocol;
 import com.aoindustries.aoserv.client.schema.Table;
-import com.aoindustries.aoserv.client.schema.Type;
-import com.aoindustries.aoserv.client.ticket.Language;
-import com.aoindustries.aoserv.client.web.Location;
-import com.aoindustries.aoserv.client.web.tomcat.Context;
 import com.aoindustries.aoserv.master.billing.WhoisHistoryService;
 import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.dns.TldTrie;
 import com.aoindustries.aoserv.master.master.Process;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.math.BigDecimal;
 import java.security.SecureRandom;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -103,6 +80,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -112,6 +90,8 @@ import java.util.Map;
 import java.util.Random;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -136,8 +116,14 @@ public abstract class MasterServer {
 	private static final int SERVICE_RETRY_INTERVAL = 60 * 1000; // One minute
 
 	/**
-	 * An unbounded executor for master-wide tasks.
+	 * An unbounded executor for master-wide tasks.  It remains unbounded so
+	 * existing callers are never rejected, but it is not included in
+	 * {@link MasterExecutors#getPools()}.
+	 *
+	 * @deprecated  Use the pool of {@link MasterExecutors} matching the kind of
+	 *              work instead.
 	 */
+	@Deprecated
 	public final static ExecutorService executorService = Executors.newCachedThreadPool();
 
 	/**
@@ -178,6 +164,16 @@ public abstract class MasterServer {
 
 	private static final AtomicLong requestCount = new AtomicLong();
 
+	/**
+	 * The number of invalidations merged into an already queued signal.
+	 */
+	static final AtomicLong invalidationsMerged = new AtomicLong();
+
+	/**
+	 * The number of invalidation signals sent to cache listeners.
+	 */
+	private static final AtomicLong invalidationsSent = new AtomicLong();
+
 	private static final AtomicLong totalTime = new AtomicLong();
 
 	/**
@@ -203,6 +199,75 @@ public abstract class MasterServer {
 		}
 	}
 
+	private static final ConcurrentMap<AoservProtocol.CommandID, CommandHandler> commandHandlers = new ConcurrentHashMap<>();
+
+	/**
+	 * This is available, but recommend registering via {@link ServiceLoader}.
+	 */
+	public static int addCommandHandler(CommandHandler handler) {
+		int numCommands = 0;
+		{
+			boolean successful = false;
+			Set<AoservProtocol.CommandID> added = EnumSet.noneOf(AoservProtocol.CommandID.class);
+			try {
+				for(AoservProtocol.CommandID commandID : handler.getCommandIDs()) {
+					CommandHandler existing = commandHandlers.putIfAbsent(commandID, handler);
+					if(existing != null) throw new IllegalStateException("Handler already registered for command " + commandID + ": " + existing);
+					added.add(commandID);
+					numCommands++;
+				}
+				successful = true;
+			} finally {
+				if(!successful) {
+					// Rollback partial
+					for(AoservProtocol.CommandID id : added) {
+						commandHandlers.remove(id);
+					}
+				}
+			}
+		}
+		if(numCommands == 0 && logger.isLoggable(Level.WARNING)) {
+			logger.log(Level.WARNING, CommandHandler.class.getSimpleName() + " did not specify any commands: " + handler);
+		}
+		return numCommands;
+	}
+
+	static void initCommandHandlers(Iterator<CommandHandler> handlers, PrintStream out, boolean hideIfZero) {
+		int commandCount = 0;
+		int handlerCount = 0;
+		while(handlers.hasNext()) {
+			commandCount += addCommandHandler(handlers.next());
+			handlerCount++;
+		}
+		if(!hideIfZero || handlerCount != 0) {
+			out.print(": ");
+			out.print(CommandHandler.class.getSimpleName());
+			out.print(" (");
+			out.print(handlerCount);
+			out.print(' ');
+			out.print(handlerCount == 1 ? "handler" : "handlers");
+			out.print(" for ");
+			out.print(commandCount);
+			out.print(' ');
+			out.print(commandCount == 1 ? "command" : "commands");
+			out.print(')');
+		}
+	}
+
+	private static boolean commandHandlersStarted = false;
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	private static void startCommandHandlers() {
+		synchronized(System.out) {
+			if(!commandHandlersStarted) {
+				System.out.print("Starting " + CommandHandler.class.getSimpleName() + "s");
+				initCommandHandlers(ServiceLoader.load(CommandHandler.class).iterator(), System.out, false);
+				commandHandlersStarted = true;
+				System.out.println(": Done");
+			}
+		}
+	}
+
 	/*
 	private static void appendParam(String S, StringBuilder SB) {
 		if(S==null) SB.append("null");
@@ -311,6 +376,14 @@ public abstract class MasterServer {
 		return requestCount.get();
 	}
 
+	public static long getInvalidationsMerged() {
+		return invalidationsMerged.get();
+	}
+
+	public static long getInvalidationsSent() {
+		return invalidationsSent.get();
+	}
+
 	public static long getStartTime() {
 		return START_TIME;
 	}
@@ -322,13 +395,16 @@ public abstract class MasterServer {
 	private static final Table.TableID[] tableIDs = Table.TableID.values();
 
 	// TODO: Make this an interface to leverage lambdas
-	static abstract class Response {
+	/**
+	 * A response to a command, written once the transaction has been committed.
+	 */
+	public static abstract class Response {
 
 		abstract void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException;
 
-		static final Response DONE = Response.of(AoservProtocol.DONE);
+		public static final Response DONE = Response.of(AoservProtocol.DONE);
 
-		static Response of(byte resp1) {
+		public static Response of(byte resp1) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -337,7 +413,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, int resp2) {
+		public static Response of(byte resp1, int resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -347,7 +423,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, long resp2) {
+		public static Response of(byte resp1, long resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -357,7 +433,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, boolean resp2) {
+		public static Response of(byte resp1, boolean resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -367,7 +443,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, String resp2) {
+		public static Response of(byte resp1, String resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -377,7 +453,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, String resp2, String resp3) {
+		public static Response of(byte resp1, String resp2, String resp3) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -388,19 +464,19 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, Account.Name resp2) {
+		public static Response of(byte resp1, Account.Name resp2) {
 			return of(resp1, resp2.toString());
 		}
 
-		static Response of(byte resp1, Database.Name resp2) {
+		public static Response of(byte resp1, Database.Name resp2) {
 			return of(resp1, resp2.toString());
 		}
 
-		static Response of(byte resp1, com.aoindustries.aoserv.client.postgresql.Database.Name resp2) {
+		public static Response of(byte resp1, com.aoindustries.aoserv.client.postgresql.Database.Name resp2) {
 			return of(resp1, resp2.toString());
 		}
 
-		static Response of(byte resp1, long resp2, String resp3) {
+		public static Response of(byte resp1, long resp2, String resp3) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -411,7 +487,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, long[] resp2) {
+		public static Response of(byte resp1, long[] resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -423,7 +499,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, InboxAttributes resp2) {
+		public static Response of(byte resp1, InboxAttributes resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -434,7 +510,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(byte resp1, String resp2, String resp3, String resp4) {
+		public static Response of(byte resp1, String resp2, String resp3, String resp4) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -446,7 +522,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response ofNullLongString(byte resp1, String resp2) {
+		public static Response ofNullLongString(byte resp1, String resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -456,7 +532,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response ofLongString(byte resp1, String resp2) {
+		public static Response ofLongString(byte resp1, String resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -466,7 +542,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response of(
+		public static Response of(
 			byte resp1,
 			String resp2,
 			HostAddress resp3,
@@ -485,7 +561,7 @@ public abstract class MasterServer {
 			};
 		}
 
-		static Response ofNullString(byte resp1, String resp2) {
+		public static Response ofNullString(byte resp1, String resp2) {
 			return new Response() {
 				@Override
 				void writeResponse(StreamableOutput out, AoservProtocol.Version protocolVersion) throws IOException {
@@ -601,6 +677,7 @@ public abstract class MasterServer {
 										for(int c=0;c<size;c++) {
 											out.writeCompressedInt(clientTableIDs.getInt(c));
 										}
+										invalidationsSent.incrementAndGet();
 									} else {
 										if(protocolVersion.compareTo(AoservProtocol.Version.VERSION_1_47)>=0) out.writeBoolean(true);
 										out.writeCompressedInt(-1);
@@ -651,6 +728,8 @@ public abstract class MasterServer {
 					boolean logIOException = true;
 					boolean logSQLException = true;
 					Thread currentThread=Thread.currentThread();
+					long commandStartNanos = System.nanoTime();
+					boolean commandSuccessful = false;
 					try {
 						IntArrayList clientInvalidateList=null;
 
@@ -662,8629 +741,1886 @@ public abstract class MasterServer {
 							// Stop processing if the account is disabled
 							if(AccountHandler.isAdministratorDisabled(conn, source.getCurrentAdministrator())) throw new IOException("Administrator disabled: "+source.getCurrentAdministrator());
 
-							switch(taskCode) {
-								case INVALIDATE_TABLE :
+							// All commands that modify data are registered handlers, only queries and daemon controls remain below
+							CommandHandler commandHandler = commandHandlers.get(taskCode);
+							if(commandHandler != null) {
+								resp = commandHandler.handleCommand(conn, source, in, out, process, taskCode, invalidateList);
+								sendInvalidateList = commandHandler.isSendInvalidateList(taskCode);
+							} else switch(taskCode) {
+								case ADD_BACKUP_SERVER :
 									{
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID=TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										if(tableID==null) throw new IOException("Client table not supported: #"+clientTableID);
-										int host;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-											DomainName hostname = DomainName.valueOf(in.readNullUTF());
-											host = hostname==null ? -1 : NetHostHandler.getHostForLinuxServerHostname(conn, hostname);
-										} else {
-											host = in.readCompressedInt();
-										}
+										throw new RuntimeException("TODO: Update add_backup_server");
+										/*
+										String hostname=in.readUTF();
+										String farm=in.readUTF();
+										int owner=in.readCompressedInt();
+										String description=in.readUTF();
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_107)<=0) in.readUTF();
+										int os_version=in.readCompressedInt();
+										String username=in.readUTF();
+										String password=in.readUTF();
+										String contact_phone=in.readUTF();
+										String contact_email=in.readUTF();
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_107)<=0) throw new IOException("addBackupServer call not supported for AOServ Client version <= "+AoservProtocol.VERSION_1_0_A_107+", please upgrade AOServ Client.");
 										process.setCommand(
-											Command.INVALIDATE,
-											TableHandler.getTableName(
-												conn,
-												tableID
-											),
-											host==-1 ? null : host
+											Command.ADD_BACKUP_SERVER,
+											hostname,
+											farm,
+											owner,
+											description,
+											os_version,
+											username,
+											AoservProtocol.FILTERED,
+											contact_phone,
+											contact_email
 										);
-										TableHandler.invalidate(
+										resp1=AoservProtocol.DONE;
+										resp2Int = ServerHandler.addBackupServer(
 											conn,
 											source,
 											invalidateList,
-											tableID,
-											host
+											hostname,
+											farm,
+											owner,
+											description,
+											os_version,
+											username,
+											password,
+											contact_phone,
+											contact_email
 										);
-										resp = Response.DONE;
+										hasResp2Int=true;
+										sendInvalidateList=true;
+										break;
+										 */
+									}
+								/*case BOUNCE_TICKET :
+									{
+										int ticketID=in.readCompressedInt();
+										String username=in.readUTF().trim();
+										String comments=in.readUTF().trim();
+										process.setCommand(Command.BOUNCE_TICKET);
+										TicketHandler.bounceTicket(
+											conn,
+											source,
+											invalidateList,
+											ticketID,
+											username,
+											comments
+										);
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=true;
+									}
+									break;*/
+								/*case CHANGE_TICKET_ADMIN_PRIORITY :
+									{
+										int ticketID=in.readCompressedInt(); 
+										String priority=in.readUTF().trim();
+										if(priority.length() == 0) priority=null;
+										String username=in.readUTF().trim();
+										String comments=in.readUTF().trim();
+										process.setCommand(
+											Command.CHANGE_TICKET_ADMIN_PRIORITY,
+											ticketID,
+											priority,
+											username,
+											comments
+										);
+										TicketHandler.changeTicketAdminPriority(
+											conn,
+											source,
+											invalidateList,
+											ticketID,
+											priority,
+											username,
+											comments
+										);
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=true;
+									}
+									break;*/
+								/*case COMPLETE_TICKET :
+									{
+										int ticketID=in.readCompressedInt();
+										String username=in.readUTF().trim();
+										String comments=in.readUTF().trim();
+										process.setCommand(
+											Command.COMPLETE_TICKET,
+											ticketID,
+											username,
+											comments
+										);
+										TicketHandler.completeTicket(
+											conn,
+											source,
+											invalidateList,
+											ticketID,
+											username,
+											comments
+										);
+										resp1=AoservProtocol.DONE;
 										sendInvalidateList=true;
 									}
+									break;*/
+								case CHECK_SSL_CERTIFICATE :
+									{
+										int sslCertificate = in.readCompressedInt();
+										boolean allowCached;
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+											allowCached = true;
+										} else {
+											allowCached = in.readBoolean();
+										}
+										process.setCommand(
+											Command.PKI_CERTIFICATE_CHECK,
+											sslCertificate,
+											allowCached
+										);
+										List<Certificate.Check> results = PkiCertificateHandler.check(
+											conn,
+											source,
+											sslCertificate,
+											allowCached
+										);
+										conn.close(); // Don't hold database connection while writing response
+										out.writeByte(AoservProtocol.NEXT);
+										int size = results.size();
+										out.writeCompressedInt(size);
+										for(int c = 0; c < size; c++) {
+											Certificate.Check check = results.get(c);
+											out.writeUTF(check.getCheck());
+											out.writeUTF(check.getValue());
+											out.writeUTF(check.getAlertLevel().name());
+											out.writeNullUTF(check.getMessage());
+										}
+										resp = null;
+										sendInvalidateList = false;
+									}
 									break;
-								case ADD : {
-									int clientTableID = in.readCompressedInt();
-									Table.TableID tableID=TableHandler.convertFromClientTableID(conn, source, clientTableID);
-									if(tableID==null) throw new IOException("Client table not supported: #"+clientTableID);
-									switch(tableID) {
-										case BUSINESS_ADMINISTRATORS :
-											{
-												com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												String name=in.readUTF().trim();
-												String title=in.readNullUTF();
-												long birthdayLong=in.readLong();
-												Date birthday = birthdayLong==-1 ? null : new Date(birthdayLong);
-												boolean isPrivate=in.readBoolean();
-												String workPhone=in.readUTF().trim();
-												String homePhone=in.readNullUTF();
-												String cellPhone=in.readNullUTF();
-												String fax=in.readNullUTF();
-												String email=in.readUTF().trim();
-												String address1=in.readNullUTF();
-												String address2=in.readNullUTF();
-												String city=in.readNullUTF();
-												String state=in.readNullUTF();
-												String country=in.readNullUTF();
-												String zip=in.readNullUTF();
-												boolean enableEmailSupport=
-													source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0
-													? in.readBoolean()
-													: false
-												;
-												process.setCommand(
-													Command.ADD_BUSINESS_ADMINISTRATOR,
-													user,
-													name,
-													title,
-													birthday,
-													isPrivate,
-													workPhone,
-													homePhone,
-													cellPhone,
-													fax,
-													email,
-													address1,
-													address2,
-													city,
-													state,
-													country,
-													zip,
-													enableEmailSupport
-												);
-												AccountHandler.addAdministrator(
-													conn,
-													source,
-													invalidateList,
-													user,
-													name,
-													title,
-													birthday,
-													isPrivate,
-													workPhone,
-													homePhone,
-													cellPhone,
-													fax,
-													email,
-													address1,
-													address2,
-													city,
-													state,
-													country,
-													zip,
-													enableEmailSupport
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case BUSINESS_PROFILES :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String name=in.readUTF().trim();
-												boolean isPrivate=in.readBoolean();
-												String phone=in.readUTF().trim();
-												String fax=in.readNullUTF();
-												String address1=in.readUTF().trim();
-												String address2=in.readNullUTF();
-												String city=in.readUTF().trim();
-												String state=in.readNullUTF();
-												String country=in.readUTF();
-												String zip=in.readNullUTF();
-												boolean sendInvoice=in.readBoolean();
-												String billingContact=in.readUTF().trim();
-												Set<Email> billingEmail;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
-													int size = in.readCompressedInt();
-													billingEmail = AoCollections.newLinkedHashSet(size);
-													for(int i = 0; i < size; i++) {
-														billingEmail.add(Email.valueOf(in.readUTF()));
-													}
-												} else {
-													billingEmail = Profile.splitEmails(in.readUTF().trim());
-												}
-												Profile.EmailFormat billingEmailFormat;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_20) >= 0) {
-													billingEmailFormat = in.readEnum(Profile.EmailFormat.class);
-												} else {
-													billingEmailFormat = Profile.EmailFormat.HTML;
-												}
-												String technicalContact=in.readUTF().trim();
-												Set<Email> technicalEmail;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
-													int size = in.readCompressedInt();
-													technicalEmail = AoCollections.newLinkedHashSet(size);
-													for(int i = 0; i < size; i++) {
-														technicalEmail.add(Email.valueOf(in.readUTF()));
-													}
-												} else {
-													technicalEmail = Profile.splitEmails(in.readUTF().trim());
-												}
-												Profile.EmailFormat technicalEmailFormat;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_20) >= 0) {
-													technicalEmailFormat = in.readEnum(Profile.EmailFormat.class);
-												} else {
-													technicalEmailFormat = Profile.EmailFormat.HTML;
-												}
-												process.setCommand(
-													Command.ADD_BUSINESS_PROFILE,
-													account,
-													name,
-													isPrivate,
-													phone,
-													fax,
-													address1,
-													address2,
-													city,
-													state,
-													country,
-													zip,
-													sendInvoice,
-													billingContact,
-													billingEmail,
-													billingEmailFormat,
-													technicalContact,
-													technicalEmail,
-													technicalEmailFormat
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													AccountHandler.addProfile(
-														conn,
-														source,
-														invalidateList,
-														account,
-														name,
-														isPrivate,
-														phone,
-														fax,
-														address1,
-														address2,
-														city,
-														state,
-														country,
-														zip,
-														sendInvoice,
-														billingContact,
-														billingEmail,
-														billingEmailFormat,
-														technicalContact,
-														technicalEmail,
-														technicalEmailFormat
-													)
-												);
-											}
-											break;
-										case BUSINESS_SERVERS :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												int host = in.readCompressedInt();
-												if(
-													source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_102)>=0
-													&& source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0
-												) {
-													boolean can_configure_backup=in.readBoolean();
-												}
-												process.setCommand(
-													Command.ADD_BUSINESS_SERVER,
-													account,
-													host
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													AccountHandler.addAccountHost(
-														conn,
-														source,
-														invalidateList,
-														account,
-														host
-													)
-												);
-											}
-											break;
-										case BUSINESSES :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String contractVersion=in.readNullUTF();
-												int defaultServer;
-												DomainName hostname;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-													defaultServer = -1;
-													hostname = DomainName.valueOf(in.readUTF());
-												} else {
-													defaultServer = in.readCompressedInt();
-													hostname = null;
-												}
-												Account.Name parent = Account.Name.valueOf(in.readUTF());
-												boolean can_add_backup_servers=
-													source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_102)>=0
-													?in.readBoolean()
-													:false
-												;
-												boolean can_add_businesses=in.readBoolean();
-												boolean can_see_prices=
-													source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_103)>=0
-													?in.readBoolean()
-													:true
-												;
-												boolean billParent=in.readBoolean();
-												// Convert old hostname to net.Host.id
-												if(defaultServer==-1) {
-													defaultServer = NetHostHandler.getHostForLinuxServerHostname(conn, hostname);
-												}
-												process.setCommand(
-													Command.ADD_BUSINESS,
-													account,
-													contractVersion,
-													defaultServer,
-													parent,
-													can_add_backup_servers,
-													can_add_businesses,
-													can_see_prices,
-													billParent
-												);
-												AccountHandler.addAccount(
-													conn,
-													source,
-													invalidateList,
-													account,
-													contractVersion,
-													defaultServer,
-													parent,
-													can_add_backup_servers,
-													can_add_businesses,
-													can_see_prices,
-													billParent
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case CREDIT_CARDS :
-											{
-												// If before version 1.29, do not support add call but read the old values anyway
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_28)<=0) {
-													String accounting=in.readUTF();
-													byte[] cardNumber=new byte[in.readCompressedInt()]; in.readFully(cardNumber);
-													String cardInfo=in.readUTF().trim();
-													byte[] expirationMonth=new byte[in.readCompressedInt()]; in.readFully(expirationMonth);
-													byte[] expirationYear=new byte[in.readCompressedInt()]; in.readFully(expirationYear);
-													byte[] cardholderName=new byte[in.readCompressedInt()]; in.readFully(cardholderName);
-													byte[] streetAddress=new byte[in.readCompressedInt()]; in.readFully(streetAddress);
-													byte[] city=new byte[in.readCompressedInt()]; in.readFully(city);
-													int len=in.readCompressedInt(); if(len >= 0) in.readFully(new byte[len]); // state
-													len=in.readCompressedInt(); if(len >= 0) in.readFully(new byte[len]); // zip
-													boolean useMonthly=in.readBoolean();
-													String description=in.readNullUTF();
-													throw new SQLException("add_credit_card for protocol version "+AoservProtocol.Version.VERSION_1_28+" or older is no longer supported.");
-												}
-												String processorName = in.readUTF();
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String groupName = in.readNullUTF();
-												String cardInfo = in.readUTF().trim();
-												Byte expirationMonth;
-												Short expirationYear;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-													expirationMonth = in.readByte();
-													expirationYear = in.readShort();
-												} else {
-													expirationMonth = null;
-													expirationYear = null;
-												}
-												String providerUniqueId = in.readUTF();
-												String firstName = in.readUTF().trim();
-												String lastName = in.readUTF().trim();
-												String companyName = in.readNullUTF();
-												String email = in.readNullUTF();
-												String phone = in.readNullUTF();
-												String fax = in.readNullUTF();
-												String customerId;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_1) >= 0) {
-													customerId = in.readNullUTF();
-												} else {
-													customerId = null;
-												}
-												String customerTaxId = in.readNullUTF();
-												String streetAddress1 = in.readUTF();
-												String streetAddress2 = in.readNullUTF();
-												String city = in.readUTF();
-												String state = in.readNullUTF();
-												String postalCode = in.readNullUTF();
-												String countryCode = in.readUTF();
-												String principalName = in.readNullUTF();
-												String description = in.readNullUTF();
-												String encryptedCardNumber;
-												int encryptionFrom;
-												int encryptionRecipient;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-													encryptedCardNumber = null;
-													encryptionFrom = -1;
-													encryptionRecipient = -1;
-												} else {
-													encryptedCardNumber = in.readNullUTF();
-													if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) < 0) {
-														String encryptedExpiration = in.readNullUTF();
-													}
-													encryptionFrom = in.readCompressedInt();
-													encryptionRecipient = in.readCompressedInt();
-												}
+								case COMPARE_LINUX_SERVER_ACCOUNT_PASSWORD :
+									{
+										int userServer = in.readCompressedInt();
+										String password = in.readUTF();
+										process.setCommand(
+											Command.COMPARE_LINUX_SERVER_ACCOUNT_PASSWORD,
+											userServer,
+											AoservProtocol.FILTERED
+										);
+										boolean result = LinuxAccountHandler.comparePassword(
+											conn,
+											source,
+											userServer,
+											password
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											result
+										);
+										sendInvalidateList = false;
+									}
+									break;
+								case DUMP_MYSQL_DATABASE :
+									{
+										process.setPriority(Thread.NORM_PRIORITY-1);
+										currentThread.setPriority(Thread.NORM_PRIORITY-1);
 
-												process.setCommand(
-													"add_credit_card",
-													processorName,
-													account,
-													groupName,
-													cardInfo,
-													expirationMonth==null ? null : AoservProtocol.FILTERED,
-													expirationYear==null ? null : AoservProtocol.FILTERED,
-													providerUniqueId,
-													firstName,
-													lastName,
-													companyName,
-													email,
-													phone,
-													fax,
-													customerId,
-													customerTaxId,
-													streetAddress1,
-													streetAddress2,
-													city,
-													state,
-													postalCode,
-													countryCode,
-													principalName,
-													description,
-													encryptedCardNumber==null ? null : AoservProtocol.FILTERED,
-													encryptionFrom==-1 ? null : encryptionFrom,
-													encryptionRecipient==-1 ? null : encryptionRecipient
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													PaymentHandler.addCreditCard(
-														conn,
-														source,
-														invalidateList,
-														processorName,
-														account,
-														groupName,
-														cardInfo,
-														expirationMonth,
-														expirationYear,
-														providerUniqueId,
-														firstName,
-														lastName,
-														companyName,
-														email,
-														phone,
-														fax,
-														customerId,
-														customerTaxId,
-														streetAddress1,
-														streetAddress2,
-														city,
-														state,
-														postalCode,
-														countryCode,
-														principalName,
-														description,
-														encryptedCardNumber,
-														encryptionFrom,
-														encryptionRecipient
-													)
-												);
-											}
-											break;
-										case CREDIT_CARD_TRANSACTIONS :
-											{
-												String processor = in.readUTF();
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String groupName = in.readNullUTF();
-												boolean testMode = in.readBoolean();
-												int duplicateWindow = in.readCompressedInt();
-												String orderNumber = in.readNullUTF();
-												java.util.Currency currency = java.util.Currency.getInstance(in.readUTF());
-												Money amount;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													amount = new Money(currency, new BigDecimal(in.readUTF()));
-												} else {
-													amount = new Money(currency, in.readLong(), in.readCompressedInt());
-												}
-												Money taxAmount;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													String value = in.readNullUTF();
-													taxAmount = value == null ? null : new Money(currency, new BigDecimal(value));
-												} else {
-													if(in.readBoolean()) {
-														taxAmount = new Money(currency, in.readLong(), in.readCompressedInt());
-													} else {
-														taxAmount = null;
-													}
-												}
-												boolean taxExempt = in.readBoolean();
-												Money shippingAmount;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													String value = in.readNullUTF();
-													shippingAmount = value == null ? null : new Money(currency, new BigDecimal(value));
-												} else {
-													if(in.readBoolean()) {
-														shippingAmount = new Money(currency, in.readLong(), in.readCompressedInt());
-													} else {
-														shippingAmount = null;
-													}
-												}
-												Money dutyAmount;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													String value = in.readNullUTF();
-													dutyAmount = value == null ? null : new Money(currency, new BigDecimal(value));
-												} else {
-													if(in.readBoolean()) {
-														dutyAmount = new Money(currency, in.readLong(), in.readCompressedInt());
-													} else {
-														dutyAmount = null;
-													}
-												}
-												String shippingFirstName = in.readNullUTF();
-												String shippingLastName = in.readNullUTF();
-												String shippingCompanyName = in.readNullUTF();
-												String shippingStreetAddress1 = in.readNullUTF();
-												String shippingStreetAddress2 = in.readNullUTF();
-												String shippingCity = in.readNullUTF();
-												String shippingState = in.readNullUTF();
-												String shippingPostalCode = in.readNullUTF();
-												String shippingCountryCode = in.readNullUTF();
-												boolean emailCustomer = in.readBoolean();
-												String merchantEmail = in.readNullUTF();
-												String invoiceNumber = in.readNullUTF();
-												String purchaseOrderNumber = in.readNullUTF();
-												String description = in.readNullUTF();
-												com.aoindustries.aoserv.client.account.User.Name creditCardCreatedBy = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												String creditCardPrincipalName = in.readNullUTF();
-												Account.Name creditCardAccounting = Account.Name.valueOf(in.readUTF());
-												String creditCardGroupName = in.readNullUTF();
-												String creditCardProviderUniqueId = in.readNullUTF();
-												String creditCardMaskedCardNumber = in.readUTF();
-												Byte creditCard_expirationMonth;
-												Short creditCard_expirationYear;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-													creditCard_expirationMonth = in.readNullByte();
-													creditCard_expirationYear = in.readNullShort();
-												} else {
-													creditCard_expirationMonth = null;
-													creditCard_expirationYear = null;
-												}
-												String creditCardFirstName = in.readUTF();
-												String creditCardLastName = in.readUTF();
-												String creditCardCompanyName = in.readNullUTF();
-												String creditCardEmail = in.readNullUTF();
-												String creditCardPhone = in.readNullUTF();
-												String creditCardFax = in.readNullUTF();
-												String creditCardCustomerId;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_1) >= 0) {
-													creditCardCustomerId = in.readNullUTF();
-												} else {
-													creditCardCustomerId = null;
-												}
-												String creditCardCustomerTaxId = in.readNullUTF();
-												String creditCardStreetAddress1 = in.readUTF();
-												String creditCardStreetAddress2 = in.readNullUTF();
-												String creditCardCity = in.readUTF();
-												String creditCardState = in.readNullUTF();
-												String creditCardPostalCode = in.readNullUTF();
-												String creditCardCountryCode = in.readUTF();
-												String creditCardComments = in.readNullUTF();
-												long authorizationTime = in.readLong();
-												String authorizationPrincipalName = in.readNullUTF();
-
-												process.setCommand(
-													"add_credit_card_transaction",
-													processor,
-													account,
-													groupName,
-													testMode,
-													duplicateWindow,
-													orderNumber,
-													amount,
-													taxAmount,
-													taxExempt,
-													shippingAmount,
-													dutyAmount,
-													shippingFirstName,
-													shippingLastName,
-													shippingCompanyName,
-													shippingStreetAddress1,
-													shippingStreetAddress2,
-													shippingCity,
-													shippingState,
-													shippingPostalCode,
-													shippingCountryCode,
-													emailCustomer,
-													merchantEmail,
-													invoiceNumber,
-													purchaseOrderNumber,
-													description,
-													creditCardCreatedBy,
-													creditCardPrincipalName,
-													creditCardAccounting,
-													creditCardGroupName,
-													creditCardProviderUniqueId,
-													creditCardMaskedCardNumber,
-													creditCard_expirationMonth==null ? null : AoservProtocol.FILTERED,
-													creditCard_expirationYear==null ? null : AoservProtocol.FILTERED,
-													creditCardFirstName,
-													creditCardLastName,
-													creditCardCompanyName,
-													creditCardEmail,
-													creditCardPhone,
-													creditCardFax,
-													creditCardCustomerId,
-													creditCardCustomerTaxId,
-													creditCardStreetAddress1,
-													creditCardStreetAddress2,
-													creditCardCity,
-													creditCardState,
-													creditCardPostalCode,
-													creditCardCountryCode,
-													creditCardComments,
-													new java.util.Date(authorizationTime),
-													authorizationPrincipalName
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													PaymentHandler.addPayment(
-														conn,
-														source,
-														invalidateList,
-														processor,
-														account,
-														groupName,
-														testMode,
-														duplicateWindow,
-														orderNumber,
-														amount,
-														taxAmount,
-														taxExempt,
-														shippingAmount,
-														dutyAmount,
-														shippingFirstName,
-														shippingLastName,
-														shippingCompanyName,
-														shippingStreetAddress1,
-														shippingStreetAddress2,
-														shippingCity,
-														shippingState,
-														shippingPostalCode,
-														shippingCountryCode,
-														emailCustomer,
-														merchantEmail,
-														invoiceNumber,
-														purchaseOrderNumber,
-														description,
-														creditCardCreatedBy,
-														creditCardPrincipalName,
-														creditCardAccounting,
-														creditCardGroupName,
-														creditCardProviderUniqueId,
-														creditCardMaskedCardNumber,
-														creditCard_expirationMonth,
-														creditCard_expirationYear,
-														creditCardFirstName,
-														creditCardLastName,
-														creditCardCompanyName,
-														creditCardEmail,
-														creditCardPhone,
-														creditCardFax,
-														creditCardCustomerId,
-														creditCardCustomerTaxId,
-														creditCardStreetAddress1,
-														creditCardStreetAddress2,
-														creditCardCity,
-														creditCardState,
-														creditCardPostalCode,
-														creditCardCountryCode,
-														creditCardComments,
-														authorizationTime,
-														authorizationPrincipalName
-													)
-												);
-											}
-											break;
-										case CVS_REPOSITORIES :
-											{
-												int linuxServer = in.readCompressedInt();
-												PosixPath path = PosixPath.valueOf(in.readUTF());
-												int lsa = in.readCompressedInt();
-												int lsg = in.readCompressedInt();
-												long mode = in.readLong();
-												process.setCommand(
-													Command.ADD_CVS_REPOSITORY,
-													linuxServer,
-													path,
-													lsa,
-													lsg,
-													Long.toOctalString(mode)
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													CvsHandler.addCvsRepository(
-														conn,
-														source,
-														invalidateList,
-														linuxServer,
-														path,
-														lsa,
-														lsg,
-														mode
-													)
-												);
-											}
-											break;
-										case DISABLE_LOG :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String disableReason = in.readNullUTF();
-												process.setCommand(
-													"add_disable_log",
-													account,
-													disableReason
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													AccountHandler.addDisableLog(
-														conn,
-														source,
-														invalidateList,
-														account,
-														disableReason
-													)
-												);
-											}
-											break;
-										case DNS_RECORDS :
-											{
-												String zone        = in.readUTF();
-												String domain      = in.readUTF().trim();
-												String type        = in.readUTF();
-												int priority       = in.readCompressedInt();
-												int weight;
-												int port;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_72)>=0) {
-													weight         = in.readCompressedInt();
-													port           = in.readCompressedInt();
-												} else {
-													weight         = Record.NO_WEIGHT;
-													port           = Record.NO_PORT;
-												}
-												String destination = in.readUTF().trim();
-												int ttl;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_127)>=0) {
-													ttl            = in.readCompressedInt();
-												} else {
-													ttl            = Record.NO_TTL;
-												}
-												process.setCommand(
-													Command.ADD_DNS_RECORD,
-													zone,
-													domain,
-													type,
-													priority==Record.NO_PRIORITY ? null : priority,
-													weight==Record.NO_WEIGHT ? null : weight,
-													port==Record.NO_PORT ? null : port,
-													destination,
-													ttl==Record.NO_TTL ? null : ttl
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													MasterServer.getService(DnsService.class).addRecord(
-														conn,
-														source,
-														invalidateList,
-														zone,
-														domain,
-														type,
-														priority,
-														weight,
-														port,
-														destination,
-														ttl
-													)
-												);
-											}
-											break;
-										case DNS_ZONES :
-											{
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												String zone = in.readUTF().trim();
-												InetAddress ip = InetAddress.valueOf(in.readUTF());
-												int ttl = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_DNS_ZONE,
-													packageName,
-													zone,
-													ip,
-													ttl
-												);
-												MasterServer.getService(DnsService.class).addDNSZone(
-													conn,
-													source,
-													invalidateList,
-													packageName,
-													zone,
-													ip,
-													ttl
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_ADDRESSES :
-											{
-												String address = in.readUTF().trim();
-												int domain = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_EMAIL_ADDRESS,
-													address,
-													domain
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addAddress(
-														conn,
-														source,
-														invalidateList,
-														address,
-														domain
-													)
-												);
-											}
-											break;
-										case EMAIL_DOMAINS :
-											{
-												DomainName domain = DomainName.valueOf(in.readUTF());
-												int linuxServer = in.readCompressedInt();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_EMAIL_DOMAIN,
-													domain,
-													linuxServer,
-													packageName
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addDomain(
-														conn,
-														source,
-														invalidateList,
-														domain,
-														linuxServer,
-														packageName
-													)
-												);
-											}
-											break;
-										case EMAIL_FORWARDING :
-											{
-												int address = in.readCompressedInt();
-												Email destination = Email.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_EMAIL_FORWARDING,
-													address,
-													destination
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addForwarding(
-														conn,
-														source,
-														invalidateList,
-														address,
-														destination
-													)
-												);
-											}
-											break;
-										case EMAIL_LIST_ADDRESSES :
-											{
-												int address=in.readCompressedInt();
-												int list=in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_EMAIL_LIST_ADDRESS,
-													address,
-													list
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addListAddress(
-														conn,
-														source,
-														invalidateList,
-														address,
-														list
-													)
-												);
-											}
-											break;
-										case EMAIL_LISTS :
-											{
-												PosixPath path = PosixPath.valueOf(in.readUTF());
-												int userServer = in.readCompressedInt();
-												int groupServer = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_EMAIL_LIST,
-													path,
-													userServer,
-													groupServer
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addList(
-														conn,
-														source,
-														invalidateList,
-														path,
-														userServer,
-														groupServer
-													)
-												);
-											}
-											break;
-										case EMAIL_PIPE_ADDRESSES :
-											{
-												int address=in.readCompressedInt();
-												int pipe=in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_EMAIL_PIPE_ADDRESS,
-													address,
-													pipe
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addPipeAddress(
-														conn,
-														source,
-														invalidateList,
-														address,
-														pipe
-													)
-												);
-											}
-											break;
-										case EMAIL_PIPES :
-											{
-												int linuxServer = in.readCompressedInt();
-												String command = in.readUTF();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_EMAIL_PIPE,
-													linuxServer,
-													command,
-													packageName
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addPipe(
-														conn,
-														source,
-														invalidateList,
-														linuxServer,
-														command,
-														packageName
-													)
-												);
-											}
-											break;
-										case EMAIL_SMTP_RELAYS :
-											{
-												process.setPriority(Thread.NORM_PRIORITY+1);
-												currentThread.setPriority(Thread.NORM_PRIORITY+1);
-
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												int linuxServer= in.readCompressedInt();
-												HostAddress host = HostAddress.valueOf(in.readUTF());
-												String type=in.readUTF();
-												long duration=in.readLong();
-												process.setCommand(
-													Command.ADD_EMAIL_SMTP_RELAY,
-													packageName,
-													linuxServer==-1?null:linuxServer,
-													host,
-													type,
-													duration
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addSmtpRelay(
-														conn,
-														source,
-														invalidateList,
-														packageName,
-														linuxServer,
-														host,
-														type,
-														duration
-													)
-												);
-											}
-											break;
-										case FAILOVER_FILE_LOG :
-											{
-												int fileReplication=in.readCompressedInt();
-												long fflStartTime=in.readLong();
-												long endTime=in.readLong();
-												int scanned=in.readCompressedInt();
-												int updated=in.readCompressedInt();
-												long bytes=in.readLong();
-												boolean isSuccessful=in.readBoolean();
-												process.setCommand(
-													"add_failover_file_log",
-													fileReplication,
-													new java.util.Date(fflStartTime),
-													new java.util.Date(endTime),
-													scanned,
-													updated,
-													bytes,
-													isSuccessful
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													FailoverHandler.addFileReplicationLog(
-														conn,
-														source,
-														invalidateList,
-														fileReplication,
-														fflStartTime,
-														endTime,
-														scanned,
-														updated,
-														bytes,
-														isSuccessful
-													)
-												);
-											}
-											break;
-										case FILE_BACKUP_SETTINGS :
-											{
-												int fileReplication=in.readCompressedInt();
-												String path=in.readUTF();
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-													int packageNum=in.readCompressedInt();
-												}
-												boolean backupEnabled;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-													short backupLevel=in.readShort();
-													short backupRetention=in.readShort();
-													boolean recurse=in.readBoolean();
-													backupEnabled = backupLevel>0;
-												} else {
-													backupEnabled = in.readBoolean();
-												}
-												boolean required;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_62)>=0) {
-													required = in.readBoolean();
-												} else {
-													required = false;
-												}
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_31)<0) {
-													throw new IOException(Command.ADD_FILE_BACKUP_SETTING+" call not supported for AoservProtocol < "+AoservProtocol.Version.VERSION_1_31+", please upgrade AOServ Client.");
-												}
-												process.setCommand(
-													Command.ADD_FILE_BACKUP_SETTING,
-													fileReplication,
-													path,
-													backupEnabled,
-													required
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													BackupHandler.addFileReplicationSetting(
-														conn,
-														source,
-														invalidateList,
-														fileReplication,
-														path,
-														backupEnabled,
-														required
-													)
-												);
-											}
-											break;
-										case FTP_GUEST_USERS :
-											{
-												com.aoindustries.aoserv.client.linux.User.Name linuxUser = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_FTP_GUEST_USER,
-													linuxUser
-												);
-												FTPHandler.addGuestUser(
-													conn,
-													source,
-													invalidateList,
-													linuxUser
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_SHARED_TOMCATS :
-											{
-												String name=in.readUTF().trim();
-												int linuxServer=in.readCompressedInt();
-												int version=in.readCompressedInt();
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												Group.Name group = Group.Name.valueOf(in.readUTF());
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
-													boolean isSecure = in.readBoolean();
-													boolean isOverflow = in.readBoolean();
-													if(isSecure) throw new IOException(Command.ADD_HTTPD_SHARED_TOMCAT + " call no longer supports is_secure=true");
-													if(isOverflow) throw new IOException(Command.ADD_HTTPD_SHARED_TOMCAT + " call no longer supports isOverflow=true");
-												}
-												process.setCommand(
-													Command.ADD_HTTPD_SHARED_TOMCAT,
-													name,
-													linuxServer,
-													version,
-													user,
-													group
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addSharedTomcat(
-														conn,
-														source,
-														invalidateList,
-														name,
-														linuxServer,
-														version,
-														user,
-														group,
-														false
-													)
-												);
-											}
-											break;
-										case HTTPD_JBOSS_SITES :
-											{
-												int linuxServer=in.readCompressedInt();
-												String siteName=in.readUTF().trim();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												Group.Name group = Group.Name.valueOf(in.readUTF());
-												Email serverAdmin = Email.valueOf(in.readUTF());
-												boolean useApache=in.readBoolean();
-												int ipAddress=in.readCompressedInt();
-												DomainName primaryHttpHostname = DomainName.valueOf(in.readUTF());
-												int len = in.readCompressedInt();
-												DomainName[] altHttpHostnames = new DomainName[len];
-												for(int c = 0; c < len; c++) {
-													altHttpHostnames[c] = DomainName.valueOf(in.readUTF());
-												}
-												int jBossVersion = in.readCompressedInt();
-												PosixPath contentSrc;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
-													contentSrc = PosixPath.valueOf(in.readNullUTF());
-												} else {
-													contentSrc = null;
-												}
-												int phpVersion;
-												boolean enableCgi;
-												boolean enableSsi;
-												boolean enableHtaccess;
-												boolean enableIndexes;
-												boolean enableFollowSymlinks;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
-													phpVersion = -1;
-													enableCgi = true;
-													enableSsi = true;
-													enableHtaccess = true;
-													enableIndexes = true;
-													enableFollowSymlinks = false;
-												} else if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_6) < 0) {
-													phpVersion = in.readCompressedInt();
-													enableCgi = in.readBoolean();
-													enableSsi = in.readBoolean();
-													enableHtaccess = in.readBoolean();
-													enableIndexes = in.readBoolean();
-													enableFollowSymlinks = in.readBoolean();
-												} else {
-													phpVersion = -1;
-													enableCgi = false;
-													enableSsi = false;
-													enableHtaccess = false;
-													enableIndexes = false;
-													enableFollowSymlinks = false;
-												}
-												process.setCommand(
-													Command.ADD_HTTPD_JBOSS_SITE,
-													linuxServer,
-													siteName,
-													packageName,
-													user,
-													group,
-													serverAdmin,
-													useApache,
-													ipAddress==-1?null:ipAddress,
-													primaryHttpHostname,
-													altHttpHostnames,
-													jBossVersion,
-													phpVersion,
-													enableCgi,
-													enableSsi,
-													enableHtaccess,
-													enableIndexes,
-													enableFollowSymlinks
-												);
-												if(contentSrc != null) throw new IOException(Command.ADD_HTTPD_JBOSS_SITE + " call no longer supports non-null content_source");
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addJbossSite(
-														conn,
-														source,
-														invalidateList,
-														linuxServer,
-														siteName,
-														packageName,
-														user,
-														group,
-														serverAdmin,
-														useApache,
-														ipAddress,
-														primaryHttpHostname,
-														altHttpHostnames,
-														jBossVersion,
-														phpVersion,
-														enableCgi,
-														enableSsi,
-														enableHtaccess,
-														enableIndexes,
-														enableFollowSymlinks
-													)
-												);
-											}
-											break;
-										case HTTPD_SITE_AUTHENTICATED_LOCATIONS :
-											{
-												int httpd_site = in.readCompressedInt();
-												String path = in.readUTF();
-												boolean isRegularExpression = in.readBoolean();
-												String authName = in.readUTF();
-												PosixPath authGroupFile;
-												{
-													String s = in.readUTF();
-													authGroupFile = s.isEmpty() ? null : PosixPath.valueOf(s);
-												}
-												PosixPath authUserFile;
-												{
-													String s = in.readUTF();
-													authUserFile = s.isEmpty() ? null : PosixPath.valueOf(s);
-												}
-												String require = in.readUTF();
-												String handler;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_13) >= 0) {
-													String s = in.readUTF();
-													handler = s.isEmpty() ? null : s;
-												} else {
-													handler = null;
-												}
-
-												process.setCommand(
-													Command.ADD_HTTPD_SITE_AUTHENTICATED_LOCATION,
-													httpd_site,
-													path,
-													isRegularExpression,
-													authName,
-													authGroupFile,
-													authUserFile,
-													require,
-													handler
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addLocation(
-														conn,
-														source,
-														invalidateList,
-														httpd_site,
-														path,
-														isRegularExpression,
-														authName,
-														authGroupFile,
-														authUserFile,
-														require,
-														handler
-													)
-												);
-											}
-											break;							
-										case HTTPD_SITE_URLS :
-											{
-												int virtualHost = in.readCompressedInt();
-												DomainName hostname = DomainName.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_HTTPD_SITE_URL,
-													virtualHost,
-													hostname
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addVirtualHostName(
-														conn,
-														source,
-														invalidateList,
-														virtualHost,
-														hostname
-													)
-												);
-											}
-											break;
-										case HTTPD_TOMCAT_CONTEXTS :
-											{
-												int tomcatSite = in.readCompressedInt();
-												String className = in.readNullUTF();
-												boolean cookies = in.readBoolean();
-												boolean crossContext = in.readBoolean();
-												PosixPath docBase = PosixPath.valueOf(in.readUTF());
-												boolean override = in.readBoolean();
-												String path = in.readUTF().trim();
-												boolean privileged = in.readBoolean();
-												boolean reloadable = in.readBoolean();
-												boolean useNaming = in.readBoolean();
-												String wrapperClass = in.readNullUTF();
-												int debug = in.readCompressedInt();
-												PosixPath workDir = PosixPath.valueOf(in.readNullUTF());
-												boolean serverXmlConfigured;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_2) <= 0) {
-													serverXmlConfigured = Context.DEFAULT_SERVER_XML_CONFIGURED;
-												} else {
-													serverXmlConfigured = in.readBoolean();
-												}
-												process.setCommand(
-													Command.ADD_HTTPD_TOMCAT_CONTEXT,
-													tomcatSite,
-													className,
-													cookies,
-													crossContext,
-													docBase,
-													override,
-													path,
-													privileged,
-													reloadable,
-													useNaming,
-													wrapperClass,
-													debug,
-													workDir,
-													serverXmlConfigured
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addContext(
-														conn,
-														source,
-														invalidateList,
-														tomcatSite,
-														className,
-														cookies,
-														crossContext,
-														docBase,
-														override,
-														path,
-														privileged,
-														reloadable,
-														useNaming,
-														wrapperClass,
-														debug,
-														workDir,
-														serverXmlConfigured
-													)
-												);
-											}
-											break;							
-										case HTTPD_TOMCAT_DATA_SOURCES :
-											{
-												int context=in.readCompressedInt();
-												String name=in.readUTF();
-												String driverClassName=in.readUTF();
-												String url=in.readUTF();
-												String username=in.readUTF();
-												String password=in.readUTF();
-												int maxActive=in.readCompressedInt();
-												int maxIdle=in.readCompressedInt();
-												int maxWait=in.readCompressedInt();
-												String validationQuery=in.readUTF();
-												if(validationQuery.length() == 0) validationQuery=null;
-												process.setCommand(
-													Command.ADD_HTTPD_TOMCAT_DATA_SOURCE,
-													context,
-													name,
-													driverClassName,
-													url,
-													username,
-													AoservProtocol.FILTERED,
-													maxActive,
-													maxIdle,
-													maxWait,
-													validationQuery
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addContextDataSource(
-														conn,
-														source,
-														invalidateList,
-														context,
-														name,
-														driverClassName,
-														url,
-														username,
-														password,
-														maxActive,
-														maxIdle,
-														maxWait,
-														validationQuery
-													)
-												);
-											}
-											break;							
-										case HTTPD_TOMCAT_PARAMETERS :
-											{
-												int context=in.readCompressedInt();
-												String name=in.readUTF();
-												String value=in.readUTF();
-												boolean override=in.readBoolean();
-												String description=in.readUTF();
-												if(description.length() == 0) description=null;
-												process.setCommand(
-													Command.ADD_HTTPD_TOMCAT_PARAMETER,
-													context,
-													name,
-													value,
-													override,
-													description
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addContextParameter(
-														conn,
-														source,
-														invalidateList,
-														context,
-														name,
-														value,
-														override,
-														description
-													)
-												);
-											}
-											break;							
-										case HTTPD_TOMCAT_SITE_JK_MOUNTS :
-											{
-												int tomcatSite = in.readCompressedInt();
-												String path = in.readUTF();
-												boolean mount = in.readBoolean();
-												process.setCommand(
-													Command.ADD_HTTPD_TOMCAT_SITE_JK_MOUNT,
-													tomcatSite,
-													path,
-													mount
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addJkMount(
-														conn,
-														source,
-														invalidateList,
-														tomcatSite,
-														path,
-														mount
-													)
-												);
-											}
-											break;							
-										case HTTPD_TOMCAT_SHARED_SITES :
-											{
-												int linuxServer = in.readCompressedInt();
-												String siteName=in.readUTF().trim();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												Group.Name group = Group.Name.valueOf(in.readUTF());
-												Email serverAdmin = Email.valueOf(in.readUTF());
-												boolean useApache = in.readBoolean();
-												int ipAddress = in.readCompressedInt();
-												DomainName primaryHttpHostname = DomainName.valueOf(in.readUTF());
-												int len = in.readCompressedInt();
-												DomainName[] altHttpHostnames = new DomainName[len];
-												for(int c = 0; c < len; c++) {
-													altHttpHostnames[c] = DomainName.valueOf(in.readUTF());
-												}
-												String sharedTomcatName;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
-													sharedTomcatName = in.readNullUTF();
-													int version = in.readCompressedInt();
-												} else {
-													sharedTomcatName = in.readUTF();
-												}
-												PosixPath contentSrc;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
-													contentSrc = PosixPath.valueOf(in.readNullUTF());
-												} else {
-													contentSrc = null;
-												}
-												int phpVersion;
-												boolean enableCgi;
-												boolean enableSsi;
-												boolean enableHtaccess;
-												boolean enableIndexes;
-												boolean enableFollowSymlinks;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
-													phpVersion = -1;
-													enableCgi = true;
-													enableSsi = true;
-													enableHtaccess = true;
-													enableIndexes = true;
-													enableFollowSymlinks = false;
-												} else if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_6) < 0) {
-													phpVersion = in.readCompressedInt();
-													enableCgi = in.readBoolean();
-													enableSsi = in.readBoolean();
-													enableHtaccess = in.readBoolean();
-													enableIndexes = in.readBoolean();
-													enableFollowSymlinks = in.readBoolean();
-												} else {
-													phpVersion = -1;
-													enableCgi = false;
-													enableSsi = false;
-													enableHtaccess = false;
-													enableIndexes = false;
-													enableFollowSymlinks = false;
-												}
-												process.setCommand(
-													Command.ADD_HTTPD_TOMCAT_SHARED_SITE,
-													linuxServer,
-													siteName,
-													packageName,
-													user,
-													group,
-													serverAdmin,
-													useApache,
-													ipAddress==-1?null:ipAddress,
-													primaryHttpHostname,
-													altHttpHostnames,
-													sharedTomcatName,
-													phpVersion,
-													enableCgi,
-													enableSsi,
-													enableHtaccess,
-													enableIndexes,
-													enableFollowSymlinks
-												);
-												if(sharedTomcatName == null) throw new IOException(Command.ADD_HTTPD_TOMCAT_SHARED_SITE + " call now requires non-null shared_tomcat_name");
-												if(contentSrc != null) throw new IOException(Command.ADD_HTTPD_TOMCAT_SHARED_SITE + " call no longer supports non-null content_source");
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addSharedTomcatSite(
-														conn,
-														source,
-														invalidateList,
-														linuxServer,
-														siteName,
-														packageName,
-														user,
-														group,
-														serverAdmin,
-														useApache,
-														ipAddress,
-														primaryHttpHostname,
-														altHttpHostnames,
-														sharedTomcatName,
-														phpVersion,
-														enableCgi,
-														enableSsi,
-														enableHtaccess,
-														enableIndexes,
-														enableFollowSymlinks
-													)
-												);
-											}
-											break;
-										case HTTPD_TOMCAT_STD_SITES :
-											{
-												int linuxServer = in.readCompressedInt();
-												String siteName = in.readUTF().trim();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												Group.Name group = Group.Name.valueOf(in.readUTF());
-												Email serverAdmin = Email.valueOf(in.readUTF());
-												boolean useApache = in.readBoolean();
-												int ipAddress = in.readCompressedInt();
-												DomainName primaryHttpHostname = DomainName.valueOf(in.readUTF());
-												int len = in.readCompressedInt();
-												DomainName[] altHttpHostnames = new DomainName[len];
-												for(int c = 0; c < len; c++) {
-													altHttpHostnames[c] = DomainName.valueOf(in.readUTF());
-												}
-												int tomcatVersion = in.readCompressedInt();
-												PosixPath contentSrc;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_9) <= 0) {
-													contentSrc = PosixPath.valueOf(in.readNullUTF());
-												} else {
-													contentSrc = null;
-												}
-												int phpVersion;
-												boolean enableCgi;
-												boolean enableSsi;
-												boolean enableHtaccess;
-												boolean enableIndexes;
-												boolean enableFollowSymlinks;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
-													phpVersion = -1;
-													enableCgi = true;
-													enableSsi = true;
-													enableHtaccess = true;
-													enableIndexes = true;
-													enableFollowSymlinks = false;
-												} else if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_6) < 0) {
-													phpVersion = in.readCompressedInt();
-													enableCgi = in.readBoolean();
-													enableSsi = in.readBoolean();
-													enableHtaccess = in.readBoolean();
-													enableIndexes = in.readBoolean();
-													enableFollowSymlinks = in.readBoolean();
-												} else {
-													phpVersion = -1;
-													enableCgi = false;
-													enableSsi = false;
-													enableHtaccess = false;
-													enableIndexes = false;
-													enableFollowSymlinks = false;
-												}
-												process.setCommand(
-													Command.ADD_HTTPD_TOMCAT_STD_SITE,
-													linuxServer,
-													siteName,
-													packageName,
-													user,
-													group,
-													serverAdmin,
-													useApache,
-													ipAddress==-1?null:ipAddress,
-													primaryHttpHostname,
-													altHttpHostnames,
-													tomcatVersion,
-													phpVersion,
-													enableCgi,
-													enableSsi,
-													enableHtaccess,
-													enableIndexes,
-													enableFollowSymlinks
-												);
-												if(contentSrc != null) throw new IOException(Command.ADD_HTTPD_TOMCAT_STD_SITE + " call no longer supports non-null content_source");
-												resp = Response.of(
-													AoservProtocol.DONE,
-													WebHandler.addPrivateTomcatSite(
-														conn,
-														source,
-														invalidateList,
-														linuxServer,
-														siteName,
-														packageName,
-														user,
-														group,
-														serverAdmin,
-														useApache,
-														ipAddress,
-														primaryHttpHostname,
-														altHttpHostnames,
-														tomcatVersion,
-														phpVersion,
-														enableCgi,
-														enableSsi,
-														enableHtaccess,
-														enableIndexes,
-														enableFollowSymlinks
-													)
-												);
-											}
-											break;
-										case LINUX_ACC_ADDRESSES :
-											{
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_31)<0) {
-													int address = in.readCompressedInt();
-													String username = in.readUTF().trim();
-													throw new IOException(Command.ADD_LINUX_ACC_ADDRESS+" call not supported for AoservProtocol < "+AoservProtocol.Version.VERSION_1_31+", please upgrade AOServ Client.");
-												}
-												int address = in.readCompressedInt();
-												int userServer = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_LINUX_ACC_ADDRESS,
-													address,
-													userServer
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addInboxAddress(
-														conn,
-														source,
-														invalidateList,
-														address,
-														userServer
-													)
-												);
-											}
-											break;
-										case LINUX_ACCOUNTS :
-											{
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												Group.Name primary_group = Group.Name.valueOf(in.readUTF());
-												Gecos name;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
-													name = Gecos.valueOf(in.readUTF());
-												} else {
-													name = Gecos.valueOf(in.readNullUTF());
-												}
-												Gecos office_location = Gecos.valueOf(in.readNullUTF());
-												Gecos office_phone = Gecos.valueOf(in.readNullUTF());
-												Gecos home_phone = Gecos.valueOf(in.readNullUTF());
-												String type = in.readUTF().trim();
-												PosixPath shell = PosixPath.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_LINUX_ACCOUNT,
-													user,
-													primary_group,
-													name,
-													office_location,
-													office_phone,
-													home_phone,
-													type,
-													shell
-												);
-												LinuxAccountHandler.addUser(
-													conn,
-													source,
-													invalidateList,
-													user,
-													primary_group,
-													name,
-													office_location,
-													office_phone,
-													home_phone,
-													type,
-													shell,
-													false
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_GROUP_ACCOUNTS :
-											{
-												Group.Name group = Group.Name.valueOf(in.readUTF());
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_LINUX_GROUP_ACCOUNT,
-													group,
-													user
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													LinuxAccountHandler.addGroupUser(
-														conn,
-														source,
-														invalidateList,
-														group,
-														user,
-														false,
-														false
-													)
-												);
-											}
-											break;
-										case LINUX_GROUPS :
-											{
-												Group.Name name = Group.Name.valueOf(in.readUTF());
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												String type = in.readUTF().trim();
-												process.setCommand(
-													Command.ADD_LINUX_GROUP,
-													name,
-													packageName,
-													type
-												);
-												LinuxAccountHandler.addGroup(
-													conn,
-													source,
-													invalidateList,
-													name,
-													packageName,
-													type,
-													false
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_SERVER_ACCOUNTS :
-											{
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												int linuxServer = in.readCompressedInt();
-												PosixPath home = PosixPath.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_LINUX_SERVER_ACCOUNT,
-													user,
-													linuxServer,
-													home
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													LinuxAccountHandler.addUserServer(
-														conn,
-														source,
-														invalidateList,
-														user,
-														linuxServer,
-														home,
-														false
-													)
-												);
-											}
-											break;
-										case LINUX_SERVER_GROUPS :
-											{
-												Group.Name group = Group.Name.valueOf(in.readUTF());
-												int linuxServer = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_LINUX_SERVER_GROUP,
-													group,
-													linuxServer
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													LinuxAccountHandler.addGroupServer(
-														conn,
-														source,
-														invalidateList,
-														group,
-														linuxServer,
-														false
-													)
-												);
-											}
-											break;
-										case MAJORDOMO_LISTS :
-											{
-												int majordomoServer = in.readCompressedInt();
-												String listName = in.readUTF().trim();
-												process.setCommand(
-													Command.ADD_MAJORDOMO_LIST,
-													majordomoServer,
-													listName
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addMajordomoList(
-														conn,
-														source,
-														invalidateList,
-														majordomoServer,
-														listName
-													)
-												);
-											}
-											break;
-										case MAJORDOMO_SERVERS :
-											{
-												int emailDomain = in.readCompressedInt();
-												int lsa = in.readCompressedInt();
-												int lsg = in.readCompressedInt();
-												String version = in.readUTF().trim();
-												process.setCommand(
-													Command.ADD_MAJORDOMO_SERVER,
-													emailDomain,
-													lsa,
-													lsg,
-													version
-												);
-												EmailHandler.addMajordomoServer(
-													conn,
-													source,
-													invalidateList,
-													emailDomain,
-													lsa,
-													lsg,
-													version
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case MYSQL_DATABASES :
-											{
-												Database.Name name = Database.Name.valueOf(in.readUTF());
-												int mysqlServer = in.readCompressedInt();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_MYSQL_DATABASE,
-													name,
-													mysqlServer,
-													packageName
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													MysqlHandler.addDatabase(
-														conn,
-														source,
-														invalidateList,
-														name,
-														mysqlServer,
-														packageName
-													)
-												);
-											}
-											break;
-										case MYSQL_DB_USERS :
-											{
-												int database = in.readCompressedInt();
-												int userServer = in.readCompressedInt();
-												boolean canSelect=in.readBoolean();
-												boolean canInsert=in.readBoolean();
-												boolean canUpdate=in.readBoolean();
-												boolean canDelete=in.readBoolean();
-												boolean canCreate=in.readBoolean();
-												boolean canDrop=in.readBoolean();
-												boolean canReference;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_2) >= 0) {
-													canReference = in.readBoolean();
-												} else {
-													// Default to copying drop_priv for older clients
-													canReference = canDrop;
-												}
-												boolean canIndex=in.readBoolean();
-												boolean canAlter=in.readBoolean();
-												boolean canCreateTempTable;
-												boolean canLockTables;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_111)>=0) {
-													canCreateTempTable=in.readBoolean();
-													canLockTables=in.readBoolean();
-												} else {
-													canCreateTempTable=false;
-													canLockTables=false;
-												}
-												boolean canCreateView;
-												boolean canShowView;
-												boolean canCreateRoutine;
-												boolean canAlterRoutine;
-												boolean canExecute;
-												boolean canEvent;
-												boolean canTrigger;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4)>=0) {
-													canCreateView=in.readBoolean();
-													canShowView=in.readBoolean();
-													canCreateRoutine=in.readBoolean();
-													canAlterRoutine=in.readBoolean();
-													canExecute=in.readBoolean();
-													if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_54)>=0) {
-														canEvent=in.readBoolean();
-														canTrigger=in.readBoolean();
-													} else {
-														canEvent=false;
-														canTrigger=false;
-													}
-												} else {
-													canCreateView=false;
-													canShowView=false;
-													canCreateRoutine=false;
-													canAlterRoutine=false;
-													canExecute=false;
-													canEvent=false;
-													canTrigger=false;
-												}
-												process.setCommand(
-													Command.ADD_MYSQL_DB_USER,
-													database,
-													userServer,
-													canSelect,
-													canInsert,
-													canUpdate,
-													canDelete,
-													canCreate,
-													canDrop,
-													canReference,
-													canIndex,
-													canAlter,
-													canCreateTempTable,
-													canLockTables,
-													canCreateView,
-													canShowView,
-													canCreateRoutine,
-													canAlterRoutine,
-													canExecute,
-													canEvent,
-													canTrigger
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													MysqlHandler.addDatabaseUser(
-														conn,
-														source,
-														invalidateList,
-														database,
-														userServer,
-														canSelect,
-														canInsert,
-														canUpdate,
-														canDelete,
-														canCreate,
-														canDrop,
-														canReference,
-														canIndex,
-														canAlter,
-														canCreateTempTable,
-														canLockTables,
-														canCreateView,
-														canShowView,
-														canCreateRoutine,
-														canAlterRoutine,
-														canExecute,
-														canEvent,
-														canTrigger
-													)
-												);
-											}
-											break;
-										case MYSQL_SERVER_USERS :
-											{
-												com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
-												int mysqlServer = in.readCompressedInt();
-												String host = in.readNullUTF();
-												process.setCommand(
-													Command.ADD_MYSQL_SERVER_USER,
-													user,
-													mysqlServer,
-													host
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													MysqlHandler.addUserServer(
-														conn,
-														source,
-														invalidateList,
-														user,
-														mysqlServer,
-														host
-													)
-												);
-											}
-											break;
-										case MYSQL_USERS :
-											{
-												com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_MYSQL_USER,
-													user
-												);
-												MysqlHandler.addUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case NET_BINDS :
-											{
-												int host = in.readCompressedInt();
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												int ipAddress = in.readCompressedInt();
-												Port port;
-												{
-													int portNum = in.readCompressedInt();
-													Protocol protocol;
-													if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) < 0) {
-														protocol = Protocol.valueOf(in.readUTF().toUpperCase(Locale.ROOT));
-													} else {
-														protocol = in.readEnum(Protocol.class);
-													}
-													port = Port.valueOf(portNum, protocol);
-												}
-												String appProtocol = in.readUTF().trim();
-												boolean monitoringEnabled;
-												int numZones;
-												Set<FirewallZone.Name> firewalldZones;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_2) <= 0) {
-													boolean openFirewall = in.readBoolean();
-													if(openFirewall) {
-														numZones = 1;
-														firewalldZones = Collections.singleton(FirewallZone.PUBLIC);
-													} else {
-														numZones = 0;
-														firewalldZones = Collections.emptySet();
-													}
-													if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_103) <= 0) {
-														monitoringEnabled = in.readCompressedInt() != -1;
-														in.readNullUTF();
-														in.readNullUTF();
-														in.readNullUTF();
-													} else {
-														monitoringEnabled = in.readBoolean();
-													}
-												} else {
-													monitoringEnabled = in.readBoolean();
-													numZones = in.readCompressedInt();
-													firewalldZones = AoCollections.newLinkedHashSet(numZones);
-													for(int i = 0; i < numZones; i++) {
-														FirewallZone.Name name = FirewallZone.Name.valueOf(in.readUTF());
-														if(!firewalldZones.add(name)) {
-															throw new IOException("Duplicate firewalld name: " + name);
-														}
-													}
-												}
-												Object[] command = new Object[7 + numZones];
-												command[0] = Command.ADD_NET_BIND;
-												command[1] = host;
-												command[2] = packageName;
-												command[3] = ipAddress;
-												command[4] = port;
-												command[5] = appProtocol;
-												command[6] = monitoringEnabled;
-												System.arraycopy(
-													firewalldZones.toArray(new FirewallZone.Name[numZones]),
-													0,
-													command,
-													7,
-													numZones
-												);
-												process.setCommand(command);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													NetBindHandler.addBind(
-														conn,
-														source,
-														invalidateList,
-														host,
-														packageName,
-														ipAddress,
-														port,
-														appProtocol,
-														monitoringEnabled,
-														firewalldZones
-													)
-												);
-											}
-											break;
-										case NOTICE_LOG :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String billingContact = in.readUTF().trim();
-												String emailAddress = in.readUTF().trim();
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													in.readCompressedInt(); // balance ignored, current balance queried
-												}
-												String type = in.readUTF().trim();
-												int transid = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_NOTICE_LOG,
-													account,
-													billingContact,
-													emailAddress,
-													type,
-													transid
-												);
-												int id = AccountHandler.addNoticeLog(
-													conn,
-													source,
-													invalidateList,
-													account,
-													billingContact,
-													emailAddress,
-													type,
-													transid
-												);
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													resp = Response.DONE;
-												} else {
-													resp = Response.of(
-														AoservProtocol.DONE,
-														id
-													);
-												}
-											}
-											break;
-										case PACKAGES :
-											{
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												int packageDefinition;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_122)<=0) {
-													// Try to find a package definition owned by the source accounting with matching rates and limits
-													String level=in.readUTF().trim();
-													Money rate = new Money(Currency.USD, in.readCompressedInt(), 2);
-													int userLimit=in.readCompressedInt();
-													int additionalUserRate=in.readCompressedInt();
-													int popLimit=in.readCompressedInt();
-													int additionalPopRate=in.readCompressedInt();
-													Account.Name baAccounting = AccountUserHandler.getAccountForUser(conn, source.getCurrentAdministrator());
-													packageDefinition = PackageHandler.findActivePackageDefinition(
-														conn,
-														baAccounting,
-														rate,
-														userLimit,
-														popLimit
-													);
-													if(packageDefinition==-1) {
-														throw new SQLException(
-															"Unable to find PackageDefinition: accounting="
-															+ baAccounting
-															+ ", rate="
-															+ rate
-															+ ", userLimit="
-															+ (userLimit==-1?"unlimited":Integer.toString(userLimit))
-															+ ", popLimit="
-															+ (popLimit==-1?"unlimited":Integer.toString(popLimit))
-														);
-													}
-												} else {
-													packageDefinition = in.readCompressedInt();
-												}
-												process.setCommand(
-													Command.ADD_PACKAGE,
-													packageName,
-													account,
-													packageDefinition
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													PackageHandler.addPackage(
-														conn,
-														source,
-														invalidateList,
-														packageName,
-														account,
-														packageDefinition
-													)
-												);
-											}
-											break;
-										case PACKAGE_DEFINITIONS :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												String category = in.readUTF().trim();
-												String name = in.readUTF().trim();
-												String version = in.readUTF().trim();
-												String display = in.readUTF().trim();
-												String description = in.readUTF().trim();
-												Money setupFee;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													int pennies = in.readCompressedInt();
-													setupFee = pennies == -1 || pennies == 0 ? null : new Money(Currency.USD, pennies, 2);
-												} else {
-													setupFee = MoneyUtil.readNullMoney(in);
-												}
-												String setupFeeTransactionType = in.readNullUTF();
-												Money monthlyRate;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													monthlyRate = new Money(Currency.USD, in.readCompressedInt(), 2);
-												} else {
-													monthlyRate = MoneyUtil.readMoney(in);
-												}
-												String monthlyRateTransactionType = in.readUTF();
-												process.setCommand(
-													"add_package_definition",
-													account,
-													category,
-													name,
-													version,
-													display,
-													description,
-													setupFee,
-													setupFeeTransactionType,
-													monthlyRate,
-													monthlyRateTransactionType
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													PackageHandler.addPackageDefinition(
-														conn,
-														source,
-														invalidateList,
-														account,
-														category,
-														name,
-														version,
-														display,
-														description,
-														setupFee,
-														setupFeeTransactionType,
-														monthlyRate,
-														monthlyRateTransactionType
-													)
-												);
-											}
-											break;
-										case POSTGRES_DATABASES :
-											{
-												com.aoindustries.aoserv.client.postgresql.Database.Name name = com.aoindustries.aoserv.client.postgresql.Database.Name.valueOf(in.readUTF());
-												int postgresqlServer = in.readCompressedInt();
-												int datdba = in.readCompressedInt();
-												int encoding = in.readCompressedInt();
-												boolean enable_postgis = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_27)>=0?in.readBoolean():false;
-												process.setCommand(
-													Command.ADD_POSTGRES_DATABASE,
-													name,
-													postgresqlServer,
-													datdba,
-													encoding,
-													enable_postgis
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													PostgresqlHandler.addDatabase(
-														conn,
-														source,
-														invalidateList,
-														name,
-														postgresqlServer,
-														datdba,
-														encoding,
-														enable_postgis
-													)
-												);
-											}
-											break;
-										case POSTGRES_SERVER_USERS :
-											{
-												com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
-												int postgresqlServer = in.readCompressedInt();
-												process.setCommand(
-													Command.ADD_POSTGRES_SERVER_USER,
-													user,
-													postgresqlServer
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													PostgresqlHandler.addUserServer(
-														conn,
-														source,
-														invalidateList,
-														user,
-														postgresqlServer
-													)
-												);
-											}
-											break;
-										case POSTGRES_USERS :
-											{
-												com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_POSTGRES_USER,
-													user
-												);
-												PostgresqlHandler.addUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case SIGNUP_REQUESTS :
-											{
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												InetAddress ip_address = InetAddress.valueOf(in.readUTF());
-												int package_definition = in.readCompressedInt();
-												String business_name = in.readUTF();
-												String business_phone = in.readUTF();
-												String business_fax = in.readNullUTF();
-												String business_address1 = in.readUTF();
-												String business_address2 = in.readNullUTF();
-												String business_city = in.readUTF();
-												String business_state = in.readNullUTF();
-												String business_country = in.readUTF();
-												String business_zip = in.readNullUTF();
-												String ba_name = in.readUTF();
-												String ba_title = in.readNullUTF();
-												String ba_work_phone = in.readUTF();
-												String ba_cell_phone = in.readNullUTF();
-												String ba_home_phone = in.readNullUTF();
-												String ba_fax = in.readNullUTF();
-												String ba_email = in.readUTF();
-												String ba_address1 = in.readNullUTF();
-												String ba_address2 = in.readNullUTF();
-												String ba_city = in.readNullUTF();
-												String ba_state = in.readNullUTF();
-												String ba_country = in.readNullUTF();
-												String ba_zip = in.readNullUTF();
-												com.aoindustries.aoserv.client.account.User.Name administrator_user_name = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												String billing_contact = in.readUTF();
-												String billing_email = in.readUTF();
-												boolean billing_use_monthly = in.readBoolean();
-												boolean billing_pay_one_year = in.readBoolean();
-												// Encrypted values
-												int from;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) from = 2; // Hard-coded value from AO website key
-												else from = in.readCompressedInt();
-												int recipient = in.readCompressedInt();
-												String ciphertext = in.readUTF();
-												// options
-												int numOptions = in.readCompressedInt();
-												Map<String, String> options = AoCollections.newHashMap(numOptions);
-												for(int c=0;c<numOptions;c++) {
-													String name = in.readUTF();
-													String value = in.readNullUTF();
-													options.put(name, value);
-												}
-												process.setCommand(
-													"add_signup_request",
-													account,
-													ip_address,
-													package_definition,
-													business_name,
-													business_phone,
-													business_fax,
-													business_address1,
-													business_address2,
-													business_city,
-													business_state,
-													business_country,
-													business_zip,
-													ba_name,
-													ba_title,
-													ba_work_phone,
-													ba_cell_phone,
-													ba_home_phone,
-													ba_fax,
-													ba_email,
-													ba_address1,
-													ba_address2,
-													ba_city,
-													ba_state,
-													ba_country,
-													ba_zip,
-													administrator_user_name,
-													billing_contact,
-													billing_email,
-													billing_use_monthly,
-													billing_pay_one_year,
-													// Encrypted values
-													from,
-													recipient,
-													ciphertext,
-													// options
-													numOptions
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													SignupHandler.addRequest(
-														conn,
-														source,
-														invalidateList,
-														account,
-														ip_address,
-														package_definition,
-														business_name,
-														business_phone,
-														business_fax,
-														business_address1,
-														business_address2,
-														business_city,
-														business_state,
-														business_country,
-														business_zip,
-														ba_name,
-														ba_title,
-														ba_work_phone,
-														ba_cell_phone,
-														ba_home_phone,
-														ba_fax,
-														ba_email,
-														ba_address1,
-														ba_address2,
-														ba_city,
-														ba_state,
-														ba_country,
-														ba_zip,
-														administrator_user_name,
-														billing_contact,
-														billing_email,
-														billing_use_monthly,
-														billing_pay_one_year,
-														// Encrypted values
-														from,
-														recipient,
-														ciphertext,
-														// options
-														options
-													)
-												);
-											}
-											break;
-										case SPAM_EMAIL_MESSAGES :
-											{
-												int smtpRelay = in.readCompressedInt();
-												String message = in.readUTF().trim();
-												process.setCommand(
-													Command.ADD_SPAM_EMAIL_MESSAGE,
-													smtpRelay,
-													message
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													EmailHandler.addSpamMessage(
-														conn,
-														source,
-														invalidateList,
-														smtpRelay,
-														message
-													)
-												);
-											}
-											break;
-										case TICKETS :
-											{
-												Account.Name brand;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_46)>=0) {
-													brand = Account.Name.valueOf(in.readUTF());
-												} else {
-													brand = AccountHandler.getRootAccount();
-												}
-												Account.Name account;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_126)>=0) {
-													account = Account.Name.valueOf(in.readNullUTF());
-												} else {
-													Account.Name packageName = Account.Name.valueOf(in.readUTF());
-													account = PackageHandler.getAccountForPackage(conn, packageName);
-												}
-												String language = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readUTF() : Language.EN;
-												int category = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readCompressedInt() : -1;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readUTF(); // username
-												String type = in.readUTF();
-												Email fromAddress;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)>=0) fromAddress = Email.valueOf(in.readNullUTF());
-												else fromAddress = null;
-												String summary = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readUTF() : "(No summary)";
-												String details = source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_44)>=0 ? in.readNullLongUTF() : in.readUTF();
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readLong(); // deadline
-												String clientPriority=in.readUTF();
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readUTF(); // adminPriority
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readNullUTF(); // technology
-												Set<Email> contactEmails;
-												String contactPhoneNumbers;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_125)>=0) {
-													if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) in.readNullUTF(); // assignedTo
-													if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
-														int size = in.readCompressedInt();
-														contactEmails = AoCollections.newLinkedHashSet(size);
-														for(int i = 0; i < size; i++) {
-															contactEmails.add(Email.valueOf(in.readUTF()));
-														}
-													} else {
-														contactEmails = Profile.splitEmails(in.readUTF().trim());
-													}
-													contactPhoneNumbers=in.readUTF();
-												} else {
-													contactEmails = Collections.emptySet();
-													contactPhoneNumbers="";
-												}
-												process.setCommand(
-													"add_ticket",
-													brand,
-													account,
-													language,
-													category,
-													type,
-													fromAddress,
-													summary,
-													Strings.firstLineOnly(details, 60),
-													clientPriority,
-													contactEmails,
-													contactPhoneNumbers
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													TicketHandler.addTicket(
-														conn,
-														source,
-														invalidateList,
-														brand,
-														account,
-														language,
-														category,
-														type,
-														fromAddress,
-														summary,
-														details,
-														clientPriority,
-														contactEmails,
-														contactPhoneNumbers
-													)
-												);
-											}
-											break;
-										case TRANSACTIONS :
-											{
-												char timeType;
-												Timestamp time;
-												String commandArg;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													timeType = 'T';
-													time = null;
-													commandArg = "now";
-												} else {
-													timeType = (char)in.readByte();
-													if(timeType == 'D') {
-														Long millis = in.readNullLong();
-														if(millis == null) {
-															time = null;
-															commandArg = "today";
-														} else {
-															time = new Timestamp(millis);
-															commandArg = SQLUtility.formatDate(millis, Type.DATE_TIME_ZONE);
-														}
-													} else if(timeType == 'T') {
-														time = SQLStreamables.readNullTimestamp(in);
-														if(time == null) {
-															commandArg = "now";
-														} else {
-															int nanos = time.getNanos();
-															if(nanos == 0) {
-																commandArg = SQLUtility.formatDateTime(time);
-															} else {
-																// TODO: Make a SQLUtility.formatDateTimeNanos?
-																StringBuilder nanoStr = new StringBuilder();
-																nanoStr.append(nanos);
-																while(nanoStr.length() < 9) {
-																	nanoStr.insert(0, '0');
-																}
-																commandArg = SQLUtility.formatDateTime(time) + '.' + nanoStr;
-															}
-														}
-													} else {
-														throw new IOException("Unexpected value for timeType: " + timeType);
-													}
-												}
-												Account.Name account = Account.Name.valueOf(in.readUTF());
-												Account.Name sourceAccount = Account.Name.valueOf(in.readUTF());
-												com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												String type = in.readUTF().trim();
-												String description = in.readUTF().trim();
-												int quantity = in.readCompressedInt();
-												Money rate;
-												if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-													rate = new Money(Currency.USD, in.readCompressedInt(), 2);
-												} else {
-													rate = MoneyUtil.readMoney(in);
-												}
-												String paymentType = in.readNullUTF();
-												String paymentInfo = in.readNullUTF();
-												String processor = in.readNullUTF();
-												byte payment_confirmed = in.readByte();
-												process.setCommand(
-													Command.BILLING_TRANSACTION_ADD,
-													commandArg,
-													account,
-													sourceAccount,
-													administrator,
-													type,
-													description,
-													SQLUtility.formatDecimal3(quantity),
-													rate,
-													paymentType,
-													paymentInfo,
-													processor,
-													payment_confirmed == Transaction.CONFIRMED ? "Y"
-													: payment_confirmed == Transaction.NOT_CONFIRMED ? "N"
-													: "W"
-												);
-												resp = Response.of(
-													AoservProtocol.DONE,
-													BillingTransactionHandler.addTransaction(
-														conn,
-														source,
-														invalidateList,
-														timeType,
-														time,
-														account,
-														sourceAccount,
-														administrator,
-														type,
-														description,
-														quantity,
-														rate,
-														paymentType,
-														paymentInfo,
-														processor,
-														payment_confirmed
-													)
-												);
-											}
-											break;
-										case USERNAMES :
-											{
-												Account.Name packageName = Account.Name.valueOf(in.readUTF());
-												com.aoindustries.aoserv.client.account.User.Name name = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.ADD_USERNAME,
-													packageName,
-													name
-												);
-												AccountUserHandler.addUser(
-													conn,
-													source,
-													invalidateList,
-													packageName,
-													name,
-													false
-												);
-												resp = Response.DONE;
-											}
-											break;
-										default :
-											throw new IOException("Unknown table ID for add: clientTableID="+clientTableID+", tableID="+tableID);
-									}
-									sendInvalidateList=true;
-									break;
-								}
-								case ADD_BACKUP_SERVER :
-									{
-										throw new RuntimeException("TODO: Update add_backup_server");
-										/*
-										String hostname=in.readUTF();
-										String farm=in.readUTF();
-										int owner=in.readCompressedInt();
-										String description=in.readUTF();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_107)<=0) in.readUTF();
-										int os_version=in.readCompressedInt();
-										String username=in.readUTF();
-										String password=in.readUTF();
-										String contact_phone=in.readUTF();
-										String contact_email=in.readUTF();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_107)<=0) throw new IOException("addBackupServer call not supported for AOServ Client version <= "+AoservProtocol.VERSION_1_0_A_107+", please upgrade AOServ Client.");
-										process.setCommand(
-											Command.ADD_BACKUP_SERVER,
-											hostname,
-											farm,
-											owner,
-											description,
-											os_version,
-											username,
-											AoservProtocol.FILTERED,
-											contact_phone,
-											contact_email
-										);
-										resp1=AoservProtocol.DONE;
-										resp2Int = ServerHandler.addBackupServer(
-											conn,
-											source,
-											invalidateList,
-											hostname,
-											farm,
-											owner,
-											description,
-											os_version,
-											username,
-											password,
-											contact_phone,
-											contact_email
-										);
-										hasResp2Int=true;
-										sendInvalidateList=true;
-										break;
-										 */
-									}
-								case ADD_MASTER_ENTROPY :
-									{
-										int numBytes = in.readCompressedInt();
-										boolean useBufferManager = numBytes <= BufferManager.BUFFER_SIZE;
-										byte[] entropy = useBufferManager ? BufferManager.getBytes() : new byte[numBytes];
-										long entropyNeeded;
-										try {
-											IoUtils.readFully(in, entropy, 0, numBytes);
-											process.setCommand(
-												"add_master_entropy",
-												numBytes
-											);
-											entropyNeeded = RandomHandler.addMasterEntropy(conn, source, entropy, numBytes);
-										} finally {
-											if(useBufferManager) BufferManager.release(entropy, true);
-										}
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_1) < 0) {
-											resp = Response.DONE;
-										} else {
-											resp = Response.of(
-												AoservProtocol.DONE,
-												entropyNeeded
-											);
-										}
-										sendInvalidateList=false;
-									}
-									break;
-								/*case BOUNCE_TICKET :
-									{
-										int ticketID=in.readCompressedInt();
-										String username=in.readUTF().trim();
-										String comments=in.readUTF().trim();
-										process.setCommand(Command.BOUNCE_TICKET);
-										TicketHandler.bounceTicket(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											username,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								case ADD_SYSTEM_GROUP :
-									{
-										int linuxServer = in.readCompressedInt();
-										Group.Name group = Group.Name.valueOf(in.readUTF());
-										int gid = in.readCompressedInt();
-										process.setCommand(
-											"add_system_group",
-											linuxServer,
-											group,
-											gid
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											LinuxAccountHandler.addSystemGroup(
-												conn,
-												source,
-												invalidateList,
-												linuxServer,
-												group,
-												gid
-											)
-										);
-										sendInvalidateList = true;
-									}
-									break;
-								case ADD_SYSTEM_USER:
-									{
-										int linuxServer = in.readCompressedInt();
-										com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-										int uid = in.readCompressedInt();
-										int gid = in.readCompressedInt();
-										Gecos fullName;
-										{
-											String s = in.readUTF();
-											fullName = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
-										Gecos officeLocation;
-										{
-											String s = in.readUTF();
-											officeLocation = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
-										Gecos officePhone;
-										{
-											String s = in.readUTF();
-											officePhone = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
-										Gecos homePhone;
-										{
-											String s = in.readUTF();
-											homePhone = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
-										PosixPath home = PosixPath.valueOf(in.readUTF());
-										PosixPath shell = PosixPath.valueOf(in.readUTF());
-										process.setCommand(
-											"add_system_user",
-											linuxServer,
-											user,
-											uid,
-											gid,
-											fullName,
-											officeLocation,
-											officePhone,
-											homePhone,
-											home,
-											shell
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											LinuxAccountHandler.addSystemUser(
-												conn,
-												source,
-												invalidateList,
-												linuxServer,
-												user,
-												uid,
-												gid,
-												fullName,
-												officeLocation,
-												officePhone,
-												homePhone,
-												home,
-												shell
-											)
-										);
-										sendInvalidateList = true;
-									}
-									break;
-								case CANCEL_BUSINESS :
-									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										String cancelReason = in.readNullUTF();
-										process.setCommand(Command.CANCEL_BUSINESS, account, cancelReason);
-										AccountHandler.cancelAccount(conn, source, invalidateList, account, cancelReason);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								/*case CHANGE_TICKET_ADMIN_PRIORITY :
-									{
-										int ticketID=in.readCompressedInt(); 
-										String priority=in.readUTF().trim();
-										if(priority.length() == 0) priority=null;
-										String username=in.readUTF().trim();
-										String comments=in.readUTF().trim();
-										process.setCommand(
-											Command.CHANGE_TICKET_ADMIN_PRIORITY,
-											ticketID,
-											priority,
-											username,
-											comments
-										);
-										TicketHandler.changeTicketAdminPriority(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											priority,
-											username,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								case CHANGE_TICKET_CLIENT_PRIORITY :
-									{
-										int ticketID = in.readCompressedInt();
-										String clientPriority = in.readUTF();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
-											String username = in.readUTF();
-											String comments = in.readUTF();
-										}
-										process.setCommand(
-											"change_ticket_client_priority",
-											ticketID,
-											clientPriority
-										);
-										TicketHandler.changeTicketClientPriority(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											clientPriority
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_TICKET_SUMMARY :
-									{
-										int ticketID = in.readCompressedInt();
-										String summary = in.readUTF();
-										process.setCommand(
-											"set_ticket_summary",
-											ticketID,
-											summary
-										);
-										TicketHandler.setTicketSummary(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											summary
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case ADD_TICKET_ANNOTATION :
-									{
-										int ticketID = in.readCompressedInt();
-										String summary = in.readUTF();
-										String details = in.readNullLongUTF();
-										process.setCommand(
-											"add_ticket_annotation",
-											ticketID,
-											summary,
-											Strings.firstLineOnly(details, 60)
-										);
-										TicketHandler.addTicketAnnotation(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											summary,
-											details
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case CHANGE_TICKET_TYPE :
-									{
-										int ticketID = in.readCompressedInt();
-										String oldType;
-										String newType;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)>=0) {
-											oldType = in.readUTF();
-											newType = in.readUTF();
-										} else {
-											oldType = null;
-											newType = in.readUTF();
-											String username = in.readUTF(); // Unused
-											String comments = in.readUTF(); // Unused
-										}
-										process.setCommand(
-											"change_ticket_type",
-											ticketID,
-											oldType,
-											newType
-										);
-										boolean updated = TicketHandler.setTicketType(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											oldType,
-											newType
-										);
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48) < 0) {
-											resp = Response.DONE;
-										} else {
-											resp = Response.of(
-												AoservProtocol.DONE,
-												updated
-											);
-										}
-										sendInvalidateList = true;
-										break;
-									}
-								/*case COMPLETE_TICKET :
-									{
-										int ticketID=in.readCompressedInt();
-										String username=in.readUTF().trim();
-										String comments=in.readUTF().trim();
-										process.setCommand(
-											Command.COMPLETE_TICKET,
-											ticketID,
-											username,
-											comments
-										);
-										TicketHandler.completeTicket(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											username,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								case CHECK_SSL_CERTIFICATE :
-									{
-										int sslCertificate = in.readCompressedInt();
-										boolean allowCached;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-											allowCached = true;
-										} else {
-											allowCached = in.readBoolean();
-										}
-										process.setCommand(
-											Command.PKI_CERTIFICATE_CHECK,
-											sslCertificate,
-											allowCached
-										);
-										List<Certificate.Check> results = PkiCertificateHandler.check(
-											conn,
-											source,
-											sslCertificate,
-											allowCached
-										);
-										conn.close(); // Don't hold database connection while writing response
-										out.writeByte(AoservProtocol.NEXT);
-										int size = results.size();
-										out.writeCompressedInt(size);
-										for(int c = 0; c < size; c++) {
-											Certificate.Check check = results.get(c);
-											out.writeUTF(check.getCheck());
-											out.writeUTF(check.getValue());
-											out.writeUTF(check.getAlertLevel().name());
-											out.writeNullUTF(check.getMessage());
-										}
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case COMPARE_LINUX_SERVER_ACCOUNT_PASSWORD :
-									{
-										int userServer = in.readCompressedInt();
-										String password = in.readUTF();
-										process.setCommand(
-											Command.COMPARE_LINUX_SERVER_ACCOUNT_PASSWORD,
-											userServer,
-											AoservProtocol.FILTERED
-										);
-										boolean result = LinuxAccountHandler.comparePassword(
-											conn,
-											source,
-											userServer,
-											password
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											result
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case COPY_HOME_DIRECTORY :
-									{
-										int from_lsa = in.readCompressedInt();
-										int to_server = in.readCompressedInt();
-										process.setCommand(
-											Command.COPY_HOME_DIRECTORY,
-											from_lsa,
-											to_server
-										);
-										long byteCount = LinuxAccountHandler.copyHomeDirectory(
-											conn,
-											source,
-											from_lsa,
-											to_server
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											byteCount
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case COPY_LINUX_SERVER_ACCOUNT_PASSWORD :
-									{
-										int from_lsa = in.readCompressedInt();
-										int to_lsa = in.readCompressedInt();
-										process.setCommand(
-											Command.COPY_LINUX_SERVER_ACCOUNT_PASSWORD,
-											from_lsa,
-											to_lsa
-										);
-										LinuxAccountHandler.copyUserServerPassword(
-											conn,
-											source,
-											invalidateList,
-											from_lsa,
-											to_lsa
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case COPY_PACKAGE_DEFINITION :
-									{
-										int packageDefinition = in.readCompressedInt();
-										process.setCommand(
-											"copy_package_definition",
-											packageDefinition
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											PackageHandler.copyPackageDefinition(
-												conn,
-												source,
-												invalidateList,
-												packageDefinition
-											)
-										);
-										sendInvalidateList = true;
-									}
-									break;
-								case CREDIT_CARD_DECLINED :
-									{
-										int transid = in.readCompressedInt();
-										String reason = in.readUTF().trim();
-										process.setCommand(
-											Command.DECLINE_CREDIT_CARD,
-											transid,
-											reason
-										);
-										PaymentHandler.creditCardDeclined(
-											conn,
-											source,
-											invalidateList,
-											transid,
-											reason
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case CREDIT_CARD_TRANSACTION_SALE_COMPLETED :
-									{
-										int payment = in.readCompressedInt();
-										String authorizationCommunicationResult = in.readNullUTF();
-										String authorizationProviderErrorCode = in.readNullUTF();
-										String authorizationErrorCode = in.readNullUTF();
-										String authorizationProviderErrorMessage = in.readNullUTF();
-										String authorizationProviderUniqueId = in.readNullUTF();
-										String authorizationResult_providerReplacementMaskedCardNumber;
-										String authorizationResult_replacementMaskedCardNumber;
-										String authorizationResult_providerReplacementExpiration;
-										Byte authorizationResult_replacementExpirationMonth;
-										Short authorizationResult_replacementExpirationYear;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-											authorizationResult_providerReplacementMaskedCardNumber = in.readNullUTF();
-											authorizationResult_replacementMaskedCardNumber = in.readNullUTF();
-											authorizationResult_providerReplacementExpiration = in.readNullUTF();
-											authorizationResult_replacementExpirationMonth = in.readNullByte();
-											authorizationResult_replacementExpirationYear = in.readNullShort();
-										} else {
-											authorizationResult_providerReplacementMaskedCardNumber = null;
-											authorizationResult_replacementMaskedCardNumber = null;
-											authorizationResult_providerReplacementExpiration = null;
-											authorizationResult_replacementExpirationMonth = null;
-											authorizationResult_replacementExpirationYear = null;
-										}
-										String providerApprovalResult = in.readNullUTF();
-										String approvalResult = in.readNullUTF();
-										String providerDeclineReason = in.readNullUTF();
-										String declineReason = in.readNullUTF();
-										String providerReviewReason = in.readNullUTF();
-										String reviewReason = in.readNullUTF();
-										String providerCvvResult = in.readNullUTF();
-										String cvvResult = in.readNullUTF();
-										String providerAvsResult = in.readNullUTF();
-										String avsResult = in.readNullUTF();
-										String approvalCode = in.readNullUTF();
-										Timestamp captureTime;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-											long l = in.readLong();
-											captureTime = l == -1 ? null : new Timestamp(l);
-										} else {
-											captureTime = SQLStreamables.readNullTimestamp(in);
-										}
-										String capturePrincipalName = in.readNullUTF();
-										String captureCommunicationResult = in.readNullUTF();
-										String captureProviderErrorCode = in.readNullUTF();
-										String captureErrorCode = in.readNullUTF();
-										String captureProviderErrorMessage = in.readNullUTF();
-										String captureProviderUniqueId = in.readNullUTF();
-										String status = in.readNullUTF();
-										process.setCommand(
-											"credit_card_transaction_sale_completed",
-											payment,
-											authorizationCommunicationResult,
-											authorizationProviderErrorCode,
-											authorizationErrorCode,
-											authorizationProviderErrorMessage,
-											authorizationProviderUniqueId,
-											authorizationResult_providerReplacementMaskedCardNumber,
-											authorizationResult_replacementMaskedCardNumber,
-											authorizationResult_providerReplacementExpiration==null ? null : AoservProtocol.FILTERED,
-											authorizationResult_replacementExpirationMonth==null ? null : AoservProtocol.FILTERED,
-											authorizationResult_replacementExpirationYear==null ? null : AoservProtocol.FILTERED,
-											providerApprovalResult,
-											approvalResult,
-											providerDeclineReason,
-											declineReason,
-											providerReviewReason,
-											reviewReason,
-											providerCvvResult,
-											cvvResult,
-											providerAvsResult,
-											avsResult,
-											approvalCode,
-											captureTime,
-											capturePrincipalName,
-											captureCommunicationResult,
-											captureProviderErrorCode,
-											captureErrorCode,
-											captureProviderErrorMessage,
-											captureProviderUniqueId,
-											status
-										);
-										PaymentHandler.paymentSaleCompleted(
-											conn,
-											source,
-											invalidateList,
-											payment,
-											authorizationCommunicationResult,
-											authorizationProviderErrorCode,
-											authorizationErrorCode,
-											authorizationProviderErrorMessage,
-											authorizationProviderUniqueId,
-											authorizationResult_providerReplacementMaskedCardNumber,
-											authorizationResult_replacementMaskedCardNumber,
-											authorizationResult_providerReplacementExpiration,
-											authorizationResult_replacementExpirationMonth,
-											authorizationResult_replacementExpirationYear,
-											providerApprovalResult,
-											approvalResult,
-											providerDeclineReason,
-											declineReason,
-											providerReviewReason,
-											reviewReason,
-											providerCvvResult,
-											cvvResult,
-											providerAvsResult,
-											avsResult,
-											approvalCode,
-											captureTime,
-											capturePrincipalName,
-											captureCommunicationResult,
-											captureProviderErrorCode,
-											captureErrorCode,
-											captureProviderErrorMessage,
-											captureProviderUniqueId,
-											status
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case CREDIT_CARD_TRANSACTION_AUTHORIZE_COMPLETED :
-									{
-										int payment = in.readCompressedInt();
-										String authorizationCommunicationResult = in.readNullUTF();
-										String authorizationProviderErrorCode = in.readNullUTF();
-										String authorizationErrorCode = in.readNullUTF();
-										String authorizationProviderErrorMessage = in.readNullUTF();
-										String authorizationProviderUniqueId = in.readNullUTF();
-										String authorizationResult_providerReplacementMaskedCardNumber;
-										String authorizationResult_replacementMaskedCardNumber;
-										String authorizationResult_providerReplacementExpiration;
-										Byte authorizationResult_replacementExpirationMonth;
-										Short authorizationResult_replacementExpirationYear;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-											authorizationResult_providerReplacementMaskedCardNumber = in.readNullUTF();
-											authorizationResult_replacementMaskedCardNumber = in.readNullUTF();
-											authorizationResult_providerReplacementExpiration = in.readNullUTF();
-											authorizationResult_replacementExpirationMonth = in.readNullByte();
-											authorizationResult_replacementExpirationYear = in.readNullShort();
-										} else {
-											authorizationResult_providerReplacementMaskedCardNumber = null;
-											authorizationResult_replacementMaskedCardNumber = null;
-											authorizationResult_providerReplacementExpiration = null;
-											authorizationResult_replacementExpirationMonth = null;
-											authorizationResult_replacementExpirationYear = null;
-										}
-										String providerApprovalResult = in.readNullUTF();
-										String approvalResult = in.readNullUTF();
-										String providerDeclineReason = in.readNullUTF();
-										String declineReason = in.readNullUTF();
-										String providerReviewReason = in.readNullUTF();
-										String reviewReason = in.readNullUTF();
-										String providerCvvResult = in.readNullUTF();
-										String cvvResult = in.readNullUTF();
-										String providerAvsResult = in.readNullUTF();
-										String avsResult = in.readNullUTF();
-										String approvalCode = in.readNullUTF();
-										String status = in.readNullUTF();
-										process.setCommand(
-											"credit_card_transaction_authorize_completed",
-											payment,
-											authorizationCommunicationResult,
-											authorizationProviderErrorCode,
-											authorizationErrorCode,
-											authorizationProviderErrorMessage,
-											authorizationProviderUniqueId,
-											authorizationResult_providerReplacementMaskedCardNumber,
-											authorizationResult_replacementMaskedCardNumber,
-											authorizationResult_providerReplacementExpiration==null ? null : AoservProtocol.FILTERED,
-											authorizationResult_replacementExpirationMonth==null ? null : AoservProtocol.FILTERED,
-											authorizationResult_replacementExpirationYear==null ? null : AoservProtocol.FILTERED,
-											providerApprovalResult,
-											approvalResult,
-											providerDeclineReason,
-											declineReason,
-											providerReviewReason,
-											reviewReason,
-											providerCvvResult,
-											cvvResult,
-											providerAvsResult,
-											avsResult,
-											approvalCode,
-											status
-										);
-										PaymentHandler.paymentAuthorizeCompleted(
-											conn,
-											source,
-											invalidateList,
-											payment,
-											authorizationCommunicationResult,
-											authorizationProviderErrorCode,
-											authorizationErrorCode,
-											authorizationProviderErrorMessage,
-											authorizationProviderUniqueId,
-											authorizationResult_providerReplacementMaskedCardNumber,
-											authorizationResult_replacementMaskedCardNumber,
-											authorizationResult_providerReplacementExpiration,
-											authorizationResult_replacementExpirationMonth,
-											authorizationResult_replacementExpirationYear,
-											providerApprovalResult,
-											approvalResult,
-											providerDeclineReason,
-											declineReason,
-											providerReviewReason,
-											reviewReason,
-											providerCvvResult,
-											cvvResult,
-											providerAvsResult,
-											avsResult,
-											approvalCode,
-											status
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case DISABLE :
-									{
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
-										int disableLog = in.readCompressedInt();
-										switch(tableID) {
-											case BUSINESSES :
-												{
-													Account.Name account = Account.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_BUSINESS,
-														disableLog,
-														account
-													);
-													AccountHandler.disableAccount(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														account
-													);
-												}
-												break;
-											case BUSINESS_ADMINISTRATORS :
-												{
-													com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_BUSINESS_ADMINISTRATOR,
-														disableLog,
-														administrator
-													);
-													AccountHandler.disableAdministrator(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														administrator
-													);
-												}
-												break;
-											case CVS_REPOSITORIES :
-												{
-													int cvsRepository = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_CVS_REPOSITORY,
-														disableLog,
-														cvsRepository
-													);
-													CvsHandler.disableCvsRepository(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														cvsRepository
-													);
-												}
-												break;
-											case EMAIL_LISTS :
-												{
-													int list = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_EMAIL_LIST,
-														disableLog,
-														list
-													);
-													EmailHandler.disableList(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														list
-													);
-												}
-												break;
-											case EMAIL_PIPES :
-												{
-													int pipe = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_EMAIL_PIPE,
-														disableLog,
-														pipe
-													);
-													EmailHandler.disablePipe(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														pipe
-													);
-												}
-												break;
-											case EMAIL_SMTP_RELAYS :
-												{
-													int smtpRelay = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_EMAIL_SMTP_RELAY,
-														disableLog,
-														smtpRelay
-													);
-													EmailHandler.disableSmtpRelay(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														smtpRelay
-													);
-												}
-												break;
-											case HTTPD_SHARED_TOMCATS :
-												{
-													int sharedTomcat = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_HTTPD_SHARED_TOMCAT,
-														disableLog,
-														sharedTomcat
-													);
-													WebHandler.disableSharedTomcat(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														sharedTomcat
-													);
-												}
-												break;
-											case HTTPD_SITES :
-												{
-													int site = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_HTTPD_SITE,
-														disableLog,
-														site
-													);
-													WebHandler.disableSite(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														site
-													);
-												}
-												break;
-											case HTTPD_SITE_BINDS :
-												{
-													int virtualHost = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_HTTPD_SITE_BIND,
-														disableLog,
-														virtualHost
-													);
-													WebHandler.disableVirtualHost(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														virtualHost
-													);
-												}
-												break;
-											case LINUX_ACCOUNTS :
-												{
-													com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_LINUX_ACCOUNT,
-														disableLog,
-														user
-													);
-													LinuxAccountHandler.disableUser(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														user
-													);
-												}
-												break;
-											case LINUX_SERVER_ACCOUNTS :
-												{
-													int userServer = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_LINUX_SERVER_ACCOUNT,
-														disableLog,
-														userServer
-													);
-													LinuxAccountHandler.disableUserServer(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														userServer
-													);
-												}
-												break;
-											case MYSQL_SERVER_USERS :
-												{
-													int userServer = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_MYSQL_SERVER_USER,
-														disableLog,
-														userServer
-													);
-													MysqlHandler.disableUserServer(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														userServer
-													);
-												}
-												break;
-											case MYSQL_USERS :
-												{
-													com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_MYSQL_USER,
-														disableLog,
-														user
-													);
-													MysqlHandler.disableUser(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														user
-													);
-												}
-												break;
-											case PACKAGES :
-												{
-													Account.Name name = Account.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_PACKAGE,
-														disableLog,
-														name
-													);
-													PackageHandler.disablePackage(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														name
-													);
-												}
-												break;
-											case POSTGRES_SERVER_USERS :
-												{
-													int userServer = in.readCompressedInt();
-													process.setCommand(
-														Command.DISABLE_POSTGRES_SERVER_USER,
-														disableLog,
-														userServer
-													);
-													PostgresqlHandler.disableUserServer(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														userServer
-													);
-												}
-												break;
-											case POSTGRES_USERS :
-												{
-													com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_POSTGRES_USER,
-														disableLog,
-														user
-													);
-													PostgresqlHandler.disableUser(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														user
-													);
-												}
-												break;
-											case USERNAMES :
-												{
-													com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.DISABLE_USERNAME,
-														disableLog,
-														user
-													);
-													AccountUserHandler.disableUser(
-														conn,
-														source,
-														invalidateList,
-														disableLog,
-														user
-													);
-												}
-												break;
-											default :
-												throw new IOException("Unknown table ID for disable: clientTableID="+clientTableID+", tableID="+tableID);
-										}
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case DUMP_MYSQL_DATABASE :
-									{
-										process.setPriority(Thread.NORM_PRIORITY-1);
-										currentThread.setPriority(Thread.NORM_PRIORITY-1);
-
-										int database = in.readCompressedInt();
-										boolean gzip;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) >= 0) {
-											gzip = in.readBoolean();
-										} else {
-											gzip = false;
-										}
-										process.setCommand(
-											Command.DUMP_MYSQL_DATABASE,
-											database,
-											gzip
-										);
-										MysqlHandler.dumpDatabase(
-											conn,
-											source,
-											out,
-											database,
-											gzip
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case DUMP_POSTGRES_DATABASE :
-									{
-										process.setPriority(Thread.NORM_PRIORITY-1);
-										currentThread.setPriority(Thread.NORM_PRIORITY-1);
-
-										int database = in.readCompressedInt();
-										boolean gzip;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) >= 0) {
-											gzip = in.readBoolean();
-										} else {
-											gzip = false;
-										}
-										process.setCommand(
-											Command.DUMP_POSTGRES_DATABASE,
-											database,
-											gzip
-										);
-										PostgresqlHandler.dumpDatabase(
-											conn,
-											source,
-											out,
-											database,
-											gzip
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case ENABLE :
-									{
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID=TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
-										switch(tableID) {
-											case BUSINESSES :
-												{
-													Account.Name account = Account.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_BUSINESS,
-														account
-													);
-													AccountHandler.enableAccount(
-														conn,
-														source,
-														invalidateList,
-														account
-													);
-												}
-												break;
-											case BUSINESS_ADMINISTRATORS :
-												{
-													com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_BUSINESS_ADMINISTRATOR,
-														administrator
-													);
-													AccountHandler.enableAdministrator(
-														conn,
-														source,
-														invalidateList,
-														administrator
-													);
-												}
-												break;
-											case CVS_REPOSITORIES :
-												{
-													int cvsRepository = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_CVS_REPOSITORY,
-														cvsRepository
-													);
-													CvsHandler.enableCvsRepository(
-														conn,
-														source,
-														invalidateList,
-														cvsRepository
-													);
-												}
-												break;
-											case EMAIL_LISTS :
-												{
-													int list = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_EMAIL_LIST,
-														list
-													);
-													EmailHandler.enableList(
-														conn,
-														source,
-														invalidateList,
-														list
-													);
-												}
-												break;
-											case EMAIL_PIPES :
-												{
-													int pipe = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_EMAIL_PIPE,
-														pipe
-													);
-													EmailHandler.enablePipe(
-														conn,
-														source,
-														invalidateList,
-														pipe
-													);
-												}
-												break;
-											case EMAIL_SMTP_RELAYS :
-												{
-													int smtpRelay = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_EMAIL_SMTP_RELAY,
-														smtpRelay
-													);
-													EmailHandler.enableSmtpRelay(
-														conn,
-														source,
-														invalidateList,
-														smtpRelay
-													);
-												}
-												break;
-											case HTTPD_SHARED_TOMCATS :
-												{
-													int sharedTomcat = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_HTTPD_SHARED_TOMCAT,
-														sharedTomcat
-													);
-													WebHandler.enableSharedTomcat(
-														conn,
-														source,
-														invalidateList,
-														sharedTomcat
-													);
-												}
-												break;
-											case HTTPD_SITES :
-												{
-													int site = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_HTTPD_SITE,
-														site
-													);
-													WebHandler.enableSite(
-														conn,
-														source,
-														invalidateList,
-														site
-													);
-												}
-												break;
-											case HTTPD_SITE_BINDS :
-												{
-													int virtualHost = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_HTTPD_SITE_BIND,
-														virtualHost
-													);
-													WebHandler.enableVirtualHost(
-														conn,
-														source,
-														invalidateList,
-														virtualHost
-													);
-												}
-												break;
-											case LINUX_ACCOUNTS :
-												{
-													com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_LINUX_ACCOUNT,
-														user
-													);
-													LinuxAccountHandler.enableUser(
-														conn,
-														source,
-														invalidateList,
-														user
-													);
-												}
-												break;
-											case LINUX_SERVER_ACCOUNTS :
-												{
-													int userServer = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_LINUX_SERVER_ACCOUNT,
-														userServer
-													);
-													LinuxAccountHandler.enableUserServer(
-														conn,
-														source,
-														invalidateList,
-														userServer
-													);
-												}
-												break;
-											case MYSQL_SERVER_USERS :
-												{
-													int userServer = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_MYSQL_SERVER_USER,
-														userServer
-													);
-													MysqlHandler.enableUserServer(
-														conn,
-														source,
-														invalidateList,
-														userServer
-													);
-												}
-												break;
-											case MYSQL_USERS :
-												{
-													com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_MYSQL_USER,
-														user
-													);
-													MysqlHandler.enableUser(
-														conn,
-														source,
-														invalidateList,
-														user
-													);
-												}
-												break;
-											case PACKAGES :
-												{
-													Account.Name name = Account.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_PACKAGE,
-														name
-													);
-													PackageHandler.enablePackage(
-														conn,
-														source,
-														invalidateList,
-														name
-													);
-												}
-												break;
-											case POSTGRES_SERVER_USERS :
-												{
-													int userServer = in.readCompressedInt();
-													process.setCommand(
-														Command.ENABLE_POSTGRES_SERVER_USER,
-														userServer
-													);
-													PostgresqlHandler.enableUserServer(
-														conn,
-														source,
-														invalidateList,
-														userServer
-													);
-												}
-												break;
-											case POSTGRES_USERS :
-												{
-													com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_POSTGRES_USER,
-														user
-													);
-													PostgresqlHandler.enableUser(
-														conn,
-														source,
-														invalidateList,
-														user
-													);
-												}
-												break;
-											case USERNAMES :
-												{
-													com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-													process.setCommand(
-														Command.ENABLE_USERNAME,
-														user
-													);
-													AccountUserHandler.enableUser(
-														conn,
-														source,
-														invalidateList,
-														user
-													);
-												}
-												break;
-											default :
-												throw new IOException("Unknown table ID for enable: clientTableID="+clientTableID+", tableID="+tableID);
-										}
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case GENERATE_ACCOUNTING_CODE :
-									{
-										Account.Name template = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.GENERATE_ACCOUNTING,
-											template
-										);
-										Account.Name account = AccountHandler.generateAccountName(
-											conn,
-											template
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											account
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GENERATE_MYSQL_DATABASE_NAME :
-									{
-										String template_base = in.readUTF().trim();
-										String template_added = in.readUTF().trim();
-										process.setCommand(
-											Command.GENERATE_MYSQL_DATABASE_NAME,
-											template_base,
-											template_added
-										);
-										Database.Name name = MysqlHandler.generateDatabaseName(
-											conn,
-											template_base,
-											template_added
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											name
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GENERATE_PACKAGE_NAME :
-									{
-										Account.Name template = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.GENERATE_PACKAGE_NAME,
-											template
-										);
-										Account.Name name = PackageHandler.generatePackageName(
-											conn,
-											template
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											name
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GENERATE_POSTGRES_DATABASE_NAME :
-									{
-										String template_base = in.readUTF().trim();
-										String template_added = in.readUTF().trim();
-										process.setCommand(
-											Command.GENERATE_POSTGRES_DATABASE_NAME,
-											template_base,
-											template_added
-										);
-										com.aoindustries.aoserv.client.postgresql.Database.Name name = PostgresqlHandler.generateDatabaseName(
-											conn,
-											template_base,
-											template_added
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											name
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GENERATE_SHARED_TOMCAT_NAME :
-									{
-										String template = in.readUTF().trim();
-										process.setCommand(
-											Command.GENERATE_SHARED_TOMCAT_NAME,
-											template
-										);
-										String name = WebHandler.generateSharedTomcatName(
-											conn,
-											template
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											name
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GENERATE_SITE_NAME :
-									{
-										String template = in.readUTF().trim();
-										process.setCommand(
-											Command.GENERATE_SITE_NAME,
-											template
-										);
-										String name = WebHandler.generateSiteName(
-											conn,
-											template
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											name
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_ACCOUNT_BALANCE :
-									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											"get_account_balance",
-											account
-										);
-										BillingTransactionHandler.getAccountBalance(
-											conn,
-											source,
-											out,
-											account
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_ACCOUNT_BALANCE_BEFORE :
-									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										long before = in.readLong();
-										process.setCommand(
-											"get_account_balance_before",
-											account,
-											new java.util.Date(before)
-										);
-										BillingTransactionHandler.getAccountBalanceBefore(
-											conn,
-											source,
-											out,
-											account,
-											before
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_BANK_TRANSACTIONS_ACCOUNT :
-									{
-										boolean provideProgress = in.readBoolean();
-										String account = in.readUTF().trim();
-										process.setCommand(
-											"get_bank_transactions_account",
-											provideProgress,
-											account
-										);
-										BankAccountHandler.getTransactionsForAccount(
-											conn,
-											source,
-											out,
-											provideProgress,
-											account
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_CONFIRMED_ACCOUNT_BALANCE :
-									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											"get_confirmed_account_balance",
-											account
-										);
-										BillingTransactionHandler.getConfirmedAccountBalance(
-											conn,
-											source,
-											out,
-											account
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_CONFIRMED_ACCOUNT_BALANCE_BEFORE :
-									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										long before = in.readLong();
-										process.setCommand(
-											"get_confirmed_account_balance_before",
-											account,
-											new java.util.Date(before)
-										);
-										BillingTransactionHandler.getConfirmedAccountBalanceBefore(
-											conn,
-											source,
-											out,
-											account,
-											before
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AUTORESPONDER_CONTENT :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_AUTORESPONDER_CONTENT,
-											userServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											LinuxAccountHandler.getAutoresponderContent(
-												conn,
-												source,
-												userServer
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AWSTATS_FILE :
-									{
-										int site = in.readCompressedInt();
-										String path = in.readUTF();
-										String queryString = in.readUTF();
-										process.setCommand(
-											Command.GET_AWSTATS_FILE,
-											site,
-											path,
-											queryString
-										);
-										WebHandler.getAWStatsFile(
-											conn,
-											source,
-											site,
-											path,
-											queryString,
-											out
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_BACKUP_PARTITION_DISK_TOTAL_SIZE :
-									{
-										int backupPartition = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_BACKUP_PARTITION_TOTAL_SIZE,
-											backupPartition
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											BackupHandler.getBackupPartitionTotalSize(
-												conn,
-												source,
-												backupPartition
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_BACKUP_PARTITION_DISK_USED_SIZE :
-									{
-										int backupPartition = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_BACKUP_PARTITION_USED_SIZE,
-											backupPartition
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											BackupHandler.getBackupPartitionUsedSize(
-												conn,
-												source,
-												backupPartition
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_CACHED_ROW_COUNT :
-									{
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
-										process.setCommand(
-											"get_cached_row_count",
-											TableHandler.getTableName(
-												conn,
-												tableID
-											)
-										);
-										int count = TableHandler.getCachedRowCount(
-											conn,
-											source,
-											tableID
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											count
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_CRON_TABLE :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_CRON_TABLE,
-											userServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											LinuxAccountHandler.getCronTable(
-												conn,
-												source,
-												userServer
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_EMAIL_LIST_ADDRESS_LIST :
-									{
-										int list = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_EMAIL_LIST,
-											list
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											EmailHandler.getListFile(
-												conn,
-												source,
-												list
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_FAILOVER_FILE_LOGS_FOR_REPLICATION :
-									{
-										int replication = in.readCompressedInt();
-										int maxRows = in.readCompressedInt();
-										FailoverHandler.getFileReplicationLogs(
-											conn,
-											source,
-											out,
-											replication,
-											maxRows
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_FAILOVER_FILE_REPLICATION_ACTIVITY :
-									{
-										int replication = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_FAILOVER_FILE_REPLICATION_ACTIVITY,
-											replication
-										);
-										Tuple2<Long, String> activity = FailoverHandler.getFileReplicationActivity(
-											conn,
-											source,
-											replication
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											activity.getElement1(),
-											activity.getElement2()
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_HTTPD_SERVER_CONCURRENCY :
-									{
-										int httpdServer = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_HTTPD_SERVER_CONCURRENCY,
-											httpdServer
-										);
-										int hsConcurrency = WebHandler.getHttpdServerConcurrency(
-											conn,
-											source,
-											httpdServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											hsConcurrency
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_IMAP_FOLDER_SIZES :
-									{
-										int userServer = in.readCompressedInt();
-										int numFolders = in.readCompressedInt();
-										String[] folderNames = new String[numFolders];
-										for(int c=0;c<numFolders;c++) {
-											folderNames[c] = in.readUTF();
-										}
-										process.setCommand(
-											Command.GET_IMAP_FOLDER_SIZES,
-											userServer,
-											numFolders,
-											folderNames
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											EmailHandler.getImapFolderSizes(
-												conn,
-												source,
-												userServer,
-												folderNames
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_INBOX_ATTRIBUTES :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_INBOX_ATTRIBUTES,
-											userServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											EmailHandler.getInboxAttributes(
-												conn,
-												source,
-												userServer
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MAJORDOMO_INFO_FILE :
-									{
-										int majordomoList = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_MAJORDOMO_INFO_FILE,
-											majordomoList
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											EmailHandler.getMajordomoInfoFile(
-												conn,
-												source,
-												majordomoList
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MAJORDOMO_INTRO_FILE :
-									{
-										int majordomoList = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_MAJORDOMO_INTRO_FILE,
-											majordomoList
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											EmailHandler.getMajordomoIntroFile(
-												conn,
-												source,
-												majordomoList
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MASTER_ENTROPY :
-									{
-										int numBytes = in.readCompressedInt();
-										process.setCommand(
-											"get_master_entropy",
-											numBytes
-										);
-										boolean useBufferManager = numBytes <= BufferManager.BUFFER_SIZE;
-										byte[] entropy = useBufferManager ? BufferManager.getBytes() : new byte[numBytes];
-										try {
-											numBytes = RandomHandler.getMasterEntropy(conn, source, entropy, numBytes);
-											conn.close(); // Don't hold database connection while writing response
-											out.writeByte(AoservProtocol.DONE);
-											out.writeCompressedInt(numBytes);
-											out.write(entropy, 0, numBytes);
-											resp = null;
-											sendInvalidateList = false;
-										} finally {
-											if(useBufferManager) BufferManager.release(entropy, true);
-										}
-									}
-									break;
-								case GET_MASTER_ENTROPY_NEEDED :
-									{
-										process.setCommand(
-											"get_master_entropy_needed"
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											RandomHandler.getMasterEntropyNeeded(conn, source)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MRTG_FILE :
-									{
-										int linuxServer = in.readCompressedInt();
-										String filename = in.readUTF().trim();
-										process.setCommand(
-											Command.GET_MRTG_FILE,
-											linuxServer,
-											filename
-										);
-										LinuxServerHandler.getMrtgFile(
-											conn,
-											source,
-											linuxServer,
-											filename,
-											out
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MYSQL_MASTER_STATUS :
-									{
-										int mysqlServer = in.readCompressedInt();
-										process.setCommand(
-											"get_mysql_master_status",
-											mysqlServer
-										);
-										MysqlHandler.getMasterStatus(
-											conn,
-											source,
-											mysqlServer,
-											out
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MYSQL_SLAVE_STATUS :
-									{
-										int failoverMySQLReplication = in.readCompressedInt();
-										process.setCommand(
-											"get_mysql_slave_status",
-											failoverMySQLReplication
-										);
-										MysqlHandler.getSlaveStatus(
-											conn,
-											source,
-											failoverMySQLReplication,
-											out
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_MYSQL_TABLE_STATUS :
-									{
-										int mysqlDatabase = in.readCompressedInt();
-										int mysqlSlave;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_60)>=0) {
-											mysqlSlave = in.readCompressedInt();
-										} else {
-											mysqlSlave = -1;
-										}
-										process.setCommand(
-											"get_mysql_table_status",
-											mysqlDatabase,
-											mysqlSlave==-1 ? null : mysqlSlave
-										);
-										MysqlHandler.getTableStatus(
-											conn,
-											source,
-											mysqlDatabase,
-											mysqlSlave,
-											out
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case CHECK_MYSQL_TABLES :
-									{
-										int mysqlDatabase = in.readCompressedInt();
-										int mysqlSlave;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_60)>=0) {
-											mysqlSlave = in.readCompressedInt();
-										} else {
-											mysqlSlave = -1;
-										}
-										int numTables = in.readCompressedInt();
-										List<Table_Name> tableNames = new ArrayList<>(numTables);
-										for(int c=0;c<numTables;c++) {
-											tableNames.add(Table_Name.valueOf(in.readUTF()));
-										}
-										process.setCommand(
-											"check_mysql_tables",
-											mysqlDatabase,
-											mysqlSlave==-1 ? null : mysqlSlave,
-											tableNames
-										);
-										logSQLException = false;
-										MysqlHandler.checkTables(
-											conn,
-											source,
-											mysqlDatabase,
-											mysqlSlave,
-											tableNames,
-											out
-										);
-										logSQLException = true;
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_NET_DEVICE_BONDING_REPORT :
-									{
-										int device = in.readCompressedInt();
-										process.setCommand(
-											"get_net_device_bonding_report",
-											device
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											NetDeviceHandler.getDeviceBondingReport(
-												conn,
-												source,
-												device
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_NET_DEVICE_STATISTICS_REPORT :
-									{
-										int device = in.readCompressedInt();
-										process.setCommand(
-											"get_net_device_statistics_report",
-											device
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											NetDeviceHandler.getDeviceStatisticsReport(
-												conn,
-												source,
-												device
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_3WARE_RAID_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_3ware_raid_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.get3wareRaidReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_MD_STAT_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_md_stat_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getMdStatReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_MD_MISMATCH_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_md_mismatch_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getMdMismatchReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_DRBD_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_drbd_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getDrbdReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_LVM_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_lvm_report",
-											linuxServer
-										);
-										String[] report = LinuxServerHandler.getLvmReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report[0],
-											report[1],
-											report[2]
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_HDD_TEMP_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_hdd_temp_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getHddTempReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_HDD_MODEL_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_hdd_model_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getHddModelReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_FILESYSTEMS_CSV_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_filesystems_csv_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getFilesystemsCsvReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_LOADAVG_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_loadavg_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getLoadAvgReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_MEMINFO_REPORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_meminfo_report",
-											linuxServer
-										);
-										String report = LinuxServerHandler.getMemInfoReport(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											report
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case AO_SERVER_CHECK_PORT :
-									{
-										int linuxServer = in.readCompressedInt();
-										InetAddress ipAddress = InetAddress.valueOf(in.readUTF());
-										Port port;
-										{
-											int portNum = in.readCompressedInt();
-											Protocol protocol;
-											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) < 0) {
-												protocol = Protocol.valueOf(in.readUTF().toUpperCase(Locale.ROOT));
-											} else {
-												protocol = in.readEnum(Protocol.class);
-											}
-											port = Port.valueOf(portNum, protocol);
-										}
-										String appProtocol = in.readUTF();
-										String monitoringParameters = in.readUTF();
-										process.setCommand(
-											"ao_server_check_port",
-											linuxServer,
-											ipAddress,
-											port,
-											appProtocol,
-											monitoringParameters
-										);
-										// Do not log any IO exception
-										logIOException = false;
-										String result = LinuxServerHandler.checkPort(
-											conn,
-											source,
-											linuxServer,
-											ipAddress,
-											port,
-											appProtocol,
-											monitoringParameters
-										);
-										logIOException = true;
-										resp = Response.of(
-											AoservProtocol.DONE,
-											result
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case AO_SERVER_CHECK_SMTP_BLACKLIST :
-									{
-										int linuxServer = in.readCompressedInt();
-										InetAddress sourceIp = InetAddress.valueOf(in.readUTF());
-										InetAddress connectIp = InetAddress.valueOf(in.readUTF());
-										process.setCommand(
-											"ao_server_check_smtp_blacklist",
-											linuxServer,
-											sourceIp,
-											connectIp
-										);
-										// Do not log any IO exception
-										logIOException = false;
-										String result = LinuxServerHandler.checkSmtpBlacklist(
-											conn,
-											source,
-											linuxServer,
-											sourceIp,
-											connectIp
-										);
-										logIOException = true;
-										resp = Response.of(
-											AoservProtocol.DONE,
-											result
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_AO_SERVER_SYSTEM_TIME_MILLIS :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											"get_ao_server_system_time_millis",
-											linuxServer
-										);
-										long systemTime = LinuxServerHandler.getSystemTimeMillis(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											systemTime
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_UPS_STATUS :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											Command.GET_UPS_STATUS,
-											linuxServer
-										);
-										String status = LinuxServerHandler.getUpsStatus(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											status
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_OBJECT :
-									{
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
-										process.setCommand(
-											"get_object",
-											TableHandler.getTableName(
-												conn,
-												tableID
-											)
-										);
-										TableHandler.getObject(
-											conn,
-											source,
-											in,
-											out,
-											tableID
-										);
-										resp = null;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_ROOT_BUSINESS :
-									{
-										process.setCommand(Command.GET_ROOT_BUSINESS);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											AccountHandler.getRootAccount()
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_ROW_COUNT :
-									{
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										int count;
-										if(tableID == null) {
-											logger.log(Level.WARNING, "Client table not supported: #{0}, returning 0 from get_row_count", clientTableID);
-											count = 0;
-										} else {
-											process.setCommand(
-												"get_row_count",
-												TableHandler.getTableName(
-													conn,
-													tableID
-												)
-											);
-											count = TableHandler.getRowCount(
-												conn,
-												source,
-												tableID
-											);
-										}
-										resp = Response.of(
-											AoservProtocol.DONE,
-											count
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_SPAM_EMAIL_MESSAGES_FOR_EMAIL_SMTP_RELAY :
-									{
-										boolean provideProgress = in.readBoolean();
-										int esr = in.readCompressedInt();
-										process.setCommand(
-											"get_spam_email_messages_for_email_smtp_relay",
-											provideProgress,
-											esr
-										);
-										EmailHandler.getSpamMessagesForSmtpRelay(
-											conn,
-											source,
-											out,
-											provideProgress,
-											esr
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TABLE :
-									{
-										boolean provideProgress = in.readBoolean();
-										int clientTableID = in.readCompressedInt();
-										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
-										if(tableID == null) {
-											// Get the table name, if possible
-											int dbTableId = TableHandler.convertClientTableIDToDBTableID(
-												conn,
-												source.getProtocolVersion(),
-												clientTableID
-											);
-											String tableName = dbTableId == -1
-												? null
-												: TableHandler.getTableNameForDBTableID(conn, dbTableId)
-											;
-											if(tableName != null) {
-												// Is a recognized table name, give a chance for backward compatibility
-												process.setCommand(
-													Command.SELECT,
-													"*",
-													"from",
-													tableName
-												);
-												TableHandler.getOldTable(
-													conn,
-													source,
-													out,
-													provideProgress,
-													tableName
-												);
-											} else {
-												// Not recognized table name, write empty response
-												process.setCommand(
-													Command.SELECT,
-													"*",
-													"from",
-													clientTableID
-												);
-												conn.close(); // Don't hold database connection while writing response
-												writeObjects(source, out, provideProgress, Collections.emptyList());
-											}
-										} else {
-											if(
-												tableID == Table.TableID.DISTRO_FILES
-											) {
-												process.setPriority(Thread.NORM_PRIORITY-1);
-												currentThread.setPriority(Thread.NORM_PRIORITY-1);
-											}
-											process.setCommand(
-												Command.SELECT,
-												"*",
-												"from",
-												TableHandler.getTableName(
-													conn,
-													tableID
-												)
-											);
-											TableHandler.getTable(
-												conn,
-												source,
-												out,
-												provideProgress,
-												tableID
-											);
-										}
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_DETAILS :
-									{
-										int ticket = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_details",
-											ticket
-										);
-										resp = Response.ofNullLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getTicketDetails(
-												conn,
-												source,
-												ticket
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_RAW_EMAIL :
-									{
-										int ticket = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_raw_email",
-											ticket
-										);
-										resp = Response.ofNullLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getTicketRawEmail(
-												conn,
-												source,
-												ticket
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_INTERNAL_NOTES :
-									{
-										int ticket = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_internal_notes",
-											ticket
-										);
-										resp = Response.ofLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getTicketInternalNotes(
-												conn,
-												source,
-												ticket
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_ACTION_OLD_VALUE :
-									{
-										int action = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_action_old_value",
-											action
-										);
-										resp = Response.ofNullLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getActionOldValue(
-												conn,
-												source,
-												action
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_ACTION_NEW_VALUE :
-									{
-										int action = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_action_new_value",
-											action
-										);
-										resp = Response.ofNullLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getActionNewValue(
-												conn,
-												source,
-												action
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_ACTION_DETAILS :
-									{
-										int action = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_action_details",
-											action
-										);
-										resp = Response.ofNullLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getActionDetails(
-												conn,
-												source,
-												action
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TICKET_ACTION_RAW_EMAIL :
-									{
-										int action = in.readCompressedInt();
-										process.setCommand(
-											"get_ticket_action_raw_email",
-											action
-										);
-										resp = Response.ofNullLongString(
-											AoservProtocol.DONE,
-											TicketHandler.getActionRawEmail(
-												conn,
-												source,
-												action
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TRANSACTIONS_BUSINESS :
-									{
-										boolean provideProgress = in.readBoolean();
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											"get_transactions_business",
-											provideProgress,
-											account
-										);
-										BillingTransactionHandler.getTransactionsForAccount(
-											conn,
-											source,
-											out,
-											provideProgress,
-											account
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TRANSACTIONS_BUSINESS_ADMINISTRATOR :
-									{
-										boolean provideProgress = in.readBoolean();
-										com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-										process.setCommand(
-											"get_transactions_business_administrator",
-											provideProgress,
-											administrator
-										);
-										BillingTransactionHandler.getTransactionsForAdministrator(
-											conn,
-											source,
-											out,
-											provideProgress,
-											administrator
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case GET_TRANSACTIONS_SEARCH :
-									{
-										boolean provideProgress = in.readBoolean();
-										TransactionSearchCriteria criteria = new TransactionSearchCriteria();
-										criteria.read(in, source.getProtocolVersion());
-										process.setCommand(
-											"get_transactions_search",
-											provideProgress,
-											"..."
-										);
-										BillingTransactionHandler.getTransactionsSearch(
-											conn,
-											source,
-											out,
-											provideProgress,
-											criteria
-										);
-										resp = Response.DONE;
-										sendInvalidateList=false;
-									}
-									break;
-								case GET_WHOIS_HISTORY_WHOIS_OUTPUT :
-									{
-										int whoisHistoryAccount = in.readCompressedInt();
-										process.setCommand(
-											"get_whois_history_whois_output",
-											whoisHistoryAccount
-										);
-										Tuple2<String, String> whoisOutput = MasterServer.getService(WhoisHistoryService.class).getWhoisHistoryOutput(
-											conn,
-											source,
-											whoisHistoryAccount
-										);
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_18) <= 0) {
-											String output = whoisOutput.getElement1();
-											String error = whoisOutput.getElement2();
-											resp = Response.of(
-												AoservProtocol.DONE,
-												output.isEmpty() ? error : output
-											);
-										} else {
-											resp = Response.of(
-												AoservProtocol.DONE,
-												whoisOutput.getElement1(),
-												whoisOutput.getElement2()
-											);
-										}
-										sendInvalidateList = false;
-									}
-									break;
-								/*case HOLD_TICKET :
-									{
-										int ticketID=in.readCompressedInt();
-										String comments=in.readUTF().trim();
-										process.setCommand(
-											Command.HOLD_TICKET,
-											ticketID,
-											comments
-										);
-										TicketHandler.holdTicket(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								/*case INITIALIZE_HTTPD_SITE_PASSWD_FILE :
-									{
-										int sitePKey=in.readCompressedInt();
-										String username=in.readUTF().trim();
-										String encPassword=in.readUTF();
-										process.setCommand(
-											Command.INITIALIZE_HTTPD_SITE_PASSWD_FILE,
-											sitePKey,
-											username,
-											encPassword
-										);
-										HttpdHandler.initializeHttpdSitePasswdFile(
-											conn,
-											source,
-											sitePKey,
-											username,
-											encPassword
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=false;
-									}
-									break;*/
-								case IS_ACCOUNTING_AVAILABLE :
-									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.IS_ACCOUNTING_AVAILABLE,
-											account
-										);
-										boolean isAvailable = AccountHandler.isAccountNameAvailable(
-											conn,
-											account
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_BUSINESS_ADMINISTRATOR_PASSWORD_SET :
-									{
-										com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.IS_BUSINESS_ADMINISTRATOR_PASSWORD_SET,
-											administrator
-										);
-										boolean isAvailable = AccountHandler.isAdministratorPasswordSet(
-											conn,
-											source,
-											administrator
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_DNS_ZONE_AVAILABLE :
-									{
-										String zone = in.readUTF().trim();
-										process.setCommand(
-											Command.IS_DNS_ZONE_AVAILABLE,
-											zone
-										);
-										boolean isAvailable = MasterServer.getService(DnsService.class).isDNSZoneAvailable(
-											conn,
-											zone
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_EMAIL_DOMAIN_AVAILABLE :
-									{
-										int linuxServer = in.readCompressedInt();
-										DomainName domain = DomainName.valueOf(in.readUTF());
-										process.setCommand(
-											Command.IS_EMAIL_DOMAIN_AVAILABLE,
-											linuxServer,
-											domain
-										);
-										boolean isAvailable = EmailHandler.isDomainAvailable(
-											conn,
-											source,
-											linuxServer,
-											domain
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_LINUX_GROUP_NAME_AVAILABLE :
-									{
-										Group.Name name = Group.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.IS_LINUX_GROUP_NAME_AVAILABLE,
-											name
-										);
-										boolean isAvailable = LinuxAccountHandler.isLinuxGroupAvailable(
-											conn,
-											name
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_LINUX_SERVER_ACCOUNT_PASSWORD_SET :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_LINUX_SERVER_ACCOUNT_PASSWORD_SET,
-											userServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											LinuxAccountHandler.isUserServerPasswordSet(
-												conn,
-												source,
-												userServer
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_LINUX_SERVER_ACCOUNT_PROCMAIL_MANUAL :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_LINUX_SERVER_ACCOUNT_PROCMAIL_MANUAL,
-											userServer
-										);
-										int isManual = LinuxAccountHandler.isUserServerProcmailManual(
-											conn,
-											source,
-											userServer
-										);
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_6)>=0) {
-											resp = Response.of(
-												AoservProtocol.DONE,
-												isManual
-											);
-										} else {
-											if(isManual==AoservProtocol.FALSE) {
-												resp = Response.of(
-													AoservProtocol.DONE,
-													false
-												);
-											} else if(isManual==AoservProtocol.TRUE) {
-												resp = Response.of(
-													AoservProtocol.DONE,
-													true
-												);
-											} else {
-												throw new IOException("Unsupported value for AOServClient protocol < "+AoservProtocol.Version.VERSION_1_6);
-											}
-										}
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_MYSQL_DATABASE_NAME_AVAILABLE :
-									{
-										Database.Name name = Database.Name.valueOf(in.readUTF());
-										int mysqlServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_MYSQL_DATABASE_NAME_AVAILABLE,
-											name,
-											mysqlServer
-										);
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4)<0) throw new IOException(Command.IS_MYSQL_DATABASE_NAME_AVAILABLE+" call not supported for AoservProtocol < "+AoservProtocol.Version.VERSION_1_4+", please upgrade AOServ Client.");
-										boolean isAvailable = MysqlHandler.isDatabaseNameAvailable(
-											conn,
-											source,
-											name,
-											mysqlServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_MYSQL_SERVER_USER_PASSWORD_SET :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_MYSQL_SERVER_USER_PASSWORD_SET,
-											userServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											MysqlHandler.isUserServerPasswordSet(
-												conn,
-												source,
-												userServer
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_PACKAGE_NAME_AVAILABLE :
-									{
-										Account.Name name = Account.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.IS_PACKAGE_NAME_AVAILABLE,
-											name
-										);
-										boolean isAvailable = PackageHandler.isPackageNameAvailable(
-											conn,
-											name
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_POSTGRES_DATABASE_NAME_AVAILABLE :
-									{
-										com.aoindustries.aoserv.client.postgresql.Database.Name name = com.aoindustries.aoserv.client.postgresql.Database.Name.valueOf(in.readUTF());
-										int postgresServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_POSTGRES_DATABASE_NAME_AVAILABLE,
-											name,
-											postgresServer
-										);
-										boolean isAvailable = PostgresqlHandler.isDatabaseNameAvailable(
-											conn,
-											source,
-											name,
-											postgresServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_POSTGRES_SERVER_USER_PASSWORD_SET :
-									{
-										int userServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_POSTGRES_SERVER_USER_PASSWORD_SET,
-											userServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											PostgresqlHandler.isUserServerPasswordSet(
-												conn,
-												source,
-												userServer
-											)
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_POSTGRES_SERVER_NAME_AVAILABLE :
-									{
-										com.aoindustries.aoserv.client.postgresql.Server.Name name = com.aoindustries.aoserv.client.postgresql.Server.Name.valueOf(in.readUTF());
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											Command.IS_POSTGRES_SERVER_NAME_AVAILABLE,
-											name,
-											linuxServer
-										);
-										boolean isAvailable = PostgresqlHandler.isServerNameAvailable(
-											conn,
-											source,
-											name,
-											linuxServer
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_SHARED_TOMCAT_NAME_AVAILABLE :
-									{
-										String name = in.readUTF().trim();
-										process.setCommand(
-											Command.IS_SHARED_TOMCAT_NAME_AVAILABLE,
-											name
-										);
-										boolean isAvailable = WebHandler.isSharedTomcatNameAvailable(
-											conn,
-											name
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_USERNAME_AVAILABLE :
-									{
-										com.aoindustries.aoserv.client.account.User.Name name = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-										process.setCommand(
-											Command.IS_USERNAME_AVAILABLE,
-											name
-										);
-										boolean isAvailable = AccountUserHandler.isUserNameAvailable(
-											conn,
-											name
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case IS_SITE_NAME_AVAILABLE :
-									{
-										String name = in.readUTF().trim();
-										process.setCommand(
-											Command.IS_SITE_NAME_AVAILABLE,
-											name
-										);
-										boolean isAvailable = WebHandler.isSiteNameAvailable(
-											conn,
-											name
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											isAvailable
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								/*case KILL_TICKET :
-									{
-										int ticketID=in.readCompressedInt();
-										String username=in.readUTF().trim();
-										String comments=in.readUTF().trim();
-										process.setCommand(
-											Command.KILL_TICKET,
-											username,
-											comments
-										);
-										TicketHandler.killTicket(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											username,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								case MOVE_IP_ADDRESS :
-									{
-										int ipAddress = in.readCompressedInt();
-										int toServer = in.readCompressedInt();
-										process.setCommand(
-											Command.MOVE_IP_ADDRESS,
-											ipAddress,
-											toServer
-										);
-										IpAddressHandler.moveIpAddress(
-											conn,
-											source,
-											invalidateList,
-											ipAddress,
-											toServer
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								/*case REACTIVATE_TICKET :
-									{
-										int ticketID=in.readCompressedInt();
-										String username=in.readUTF().trim();
-										String comments=in.readUTF().trim();
-										process.setCommand(
-											Command.REACTIVATE_TICKET,
-											ticketID,
-											username,
-											comments
-										);
-										TicketHandler.reactivateTicket(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											username,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								case REFRESH_EMAIL_SMTP_RELAY :
-									{
-										process.setPriority(Thread.NORM_PRIORITY + 1);
-										currentThread.setPriority(Thread.NORM_PRIORITY + 1);
-
-										int smtpRelay = in.readCompressedInt();
-										long minDuration = in.readLong();
-										process.setCommand(
-											Command.REFRESH_EMAIL_SMTP_RELAY,
-											smtpRelay,
-											minDuration
-										);
-										EmailHandler.refreshSmtpRelay(
-											conn,
-											source,
-											invalidateList,
-											smtpRelay,
-											minDuration
-
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case REMOVE : {
-									int clientTableID = in.readCompressedInt();
-									Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
-									if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
-									switch(tableID) {
-										case BLACKHOLE_EMAIL_ADDRESSES :
-											{
-												int address = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_BLACKHOLE_EMAIL_ADDRESS,
-													address
-												);
-												EmailHandler.removeBlackholeAddress(
-													conn,
-													source,
-													invalidateList,
-													address
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case BUSINESS_ADMINISTRATORS :
-											{
-												com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_BUSINESS_ADMINISTRATOR,
-													administrator
-												);
-												AccountHandler.removeAdministrator(
-													conn,
-													source,
-													invalidateList,
-													administrator
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case BUSINESS_SERVERS :
-											{
-												int accountHost = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_BUSINESS_SERVER,
-													accountHost
-												);
-												AccountHandler.removeAccountHost(
-													conn,
-													source,
-													invalidateList,
-													accountHost
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case CREDIT_CARDS :
-											{
-												int creditCard = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_CREDIT_CARD,
-													creditCard
-												);
-												PaymentHandler.removeCreditCard(
-													conn,
-													source,
-													invalidateList,
-													creditCard
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case CVS_REPOSITORIES :
-											{
-												int cvsRepository = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_CVS_REPOSITORY,
-													cvsRepository
-												);
-												CvsHandler.removeCvsRepository(
-													conn,
-													source,
-													invalidateList,
-													cvsRepository
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case DNS_RECORDS :
-											{
-												int record = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_DNS_RECORD,
-													record
-												);
-												MasterServer.getService(DnsService.class).removeRecord(
-													conn,
-													source,
-													invalidateList,
-													record
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case DNS_ZONES :
-											{
-												String zone = in.readUTF().trim();
-												process.setCommand(
-													Command.REMOVE_DNS_ZONE,
-													zone
-												);
-												MasterServer.getService(DnsService.class).removeDNSZone(
-													conn,
-													source,
-													invalidateList,
-													zone
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_ADDRESSES :
-											{
-												int address = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_ADDRESS,
-													address
-												);
-												EmailHandler.removeAddress(
-													conn,
-													source,
-													invalidateList,
-													address
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_DOMAINS :
-											{
-												int domain = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_DOMAIN,
-													domain
-												);
-												EmailHandler.removeDomain(
-													conn,
-													source,
-													invalidateList,
-													domain
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_FORWARDING :
-											{
-												int forwarding = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_FORWARDING,
-													forwarding
-												);
-												EmailHandler.removeForwarding(
-													conn,
-													source,
-													invalidateList,
-													forwarding
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_LIST_ADDRESSES :
-											{
-												int listAddress = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_LIST_ADDRESS,
-													listAddress
-												);
-												EmailHandler.removeListAddress(
-													conn,
-													source,
-													invalidateList,
-													listAddress
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_LISTS :
-											{
-												int list = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_LIST,
-													list
-												);
-												EmailHandler.removeList(
-													conn,
-													source,
-													invalidateList,
-													list
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_PIPE_ADDRESSES :
-											{
-												int pipeAddress = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_PIPE_ADDRESS,
-													pipeAddress
-												);
-												EmailHandler.removePipeAddress(
-													conn,
-													source,
-													invalidateList,
-													pipeAddress
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_PIPES :
-											{
-												int pipe = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_PIPE,
-													pipe
-												);
-												EmailHandler.removePipe(
-													conn,
-													source,
-													invalidateList,
-													pipe
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case EMAIL_SMTP_RELAYS :
-											{
-												process.setPriority(Thread.NORM_PRIORITY + 1);
-												currentThread.setPriority(Thread.NORM_PRIORITY + 1);
-
-												int smtpRelay = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_EMAIL_SMTP_RELAY,
-													smtpRelay
-												);
-												EmailHandler.removeSmtpRelay(
-													conn,
-													source,
-													invalidateList,
-													smtpRelay
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case FILE_BACKUP_SETTINGS :
-											{
-												int fileReplicationSetting = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_FILE_BACKUP_SETTING,
-													fileReplicationSetting
-												);
-												BackupHandler.removeFileReplicationSetting(
-													conn,
-													source,
-													invalidateList,
-													fileReplicationSetting
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case FTP_GUEST_USERS :
-											{
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_FTP_GUEST_USER,
-													user
-												);
-												FTPHandler.removeGuestUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_SHARED_TOMCATS :
-											{
-												int sharedTomcat = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_SHARED_TOMCAT,
-													sharedTomcat
-												);
-												WebHandler.removeSharedTomcat(
-													conn,
-													source,
-													invalidateList,
-													sharedTomcat
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_SITE_AUTHENTICATED_LOCATIONS :
-											{
-												int location = in.readCompressedInt();
-												process.setCommand(
-													"remove_httpd_site_authenticated_location",
-													location
-												);
-												WebHandler.removeLocation(
-													conn,
-													source,
-													invalidateList,
-													location
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_SITES :
-											{
-												int site = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_SITE,
-													site
-												);
-												WebHandler.removeSite(
-													conn,
-													source,
-													invalidateList,
-													site
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_SITE_URLS :
-											{
-												int virtualHostName = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_SITE_URL,
-													virtualHostName
-												);
-												WebHandler.removeVirtualHostName(
-													conn,
-													source,
-													invalidateList,
-													virtualHostName
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_TOMCAT_CONTEXTS :
-											{
-												int context = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_TOMCAT_CONTEXT,
-													context
-												);
-												WebHandler.removeContext(
-													conn,
-													source,
-													invalidateList,
-													context
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_TOMCAT_DATA_SOURCES :
-											{
-												int contextDataSource = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_TOMCAT_DATA_SOURCE,
-													contextDataSource
-												);
-												WebHandler.removeContextDataSource(
-													conn,
-													source,
-													invalidateList,
-													contextDataSource
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_TOMCAT_PARAMETERS :
-											{
-												int contextParameter = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_TOMCAT_PARAMETER,
-													contextParameter
-												);
-												WebHandler.removeContextParameter(
-													conn,
-													source,
-													invalidateList,
-													contextParameter
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case HTTPD_TOMCAT_SITE_JK_MOUNTS :
-											{
-												int jkMount = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_HTTPD_TOMCAT_SITE_JK_MOUNT,
-													jkMount
-												);
-												WebHandler.removeJkMount(
-													conn,
-													source,
-													invalidateList,
-													jkMount
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_ACC_ADDRESSES :
-											{
-												int inboxAddress = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_LINUX_ACC_ADDRESS,
-													inboxAddress
-												);
-												EmailHandler.removeInboxAddress(
-													conn,
-													source,
-													invalidateList,
-													inboxAddress
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_ACCOUNTS :
-											{
-												com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_LINUX_ACCOUNT,
-													user
-												);
-												LinuxAccountHandler.removeUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_GROUP_ACCOUNTS :
-											{
-												int groupUser = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_LINUX_GROUP_ACCOUNT,
-													groupUser
-												);
-												LinuxAccountHandler.removeGroupUser(
-													conn,
-													source,
-													invalidateList,
-													groupUser
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_GROUPS :
-											{
-												Group.Name name = Group.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_LINUX_GROUP,
-													name
-												);
-												LinuxAccountHandler.removeGroup(
-													conn,
-													source,
-													invalidateList,
-													name
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_SERVER_ACCOUNTS :
-											{
-												int userServer = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_LINUX_SERVER_ACCOUNT,
-													userServer
-												);
-												LinuxAccountHandler.removeUserServer(
-													conn,
-													source,
-													invalidateList,
-													userServer
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case LINUX_SERVER_GROUPS :
-											{
-												int groupServer = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_LINUX_SERVER_GROUP,
-													groupServer
-												);
-												LinuxAccountHandler.removeGroupServer(
-													conn,
-													source,
-													invalidateList,
-													groupServer
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case MAJORDOMO_SERVERS :
-											{
-												int domain = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_MAJORDOMO_SERVER,
-													domain
-												);
-												EmailHandler.removeMajordomoServer(
-													conn,
-													source,
-													invalidateList,
-													domain
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case MYSQL_DATABASES :
-											{
-												int database = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_MYSQL_DATABASE,
-													database
-												);
-												MysqlHandler.removeDatabase(
-													conn,
-													source,
-													invalidateList,
-													database
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case MYSQL_DB_USERS :
-											{
-												int databaseUser = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_MYSQL_DB_USER,
-													databaseUser
-												);
-												MysqlHandler.removeDatabaseUser(
-													conn,
-													source,
-													invalidateList,
-													databaseUser
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case MYSQL_SERVER_USERS :
-											{
-												int userServer = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_MYSQL_SERVER_USER,
-													userServer
-												);
-												MysqlHandler.removeUserServer(
-													conn,
-													source,
-													invalidateList,
-													userServer
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case MYSQL_USERS :
-											{
-												com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_MYSQL_USER,
-													user
-												);
-												MysqlHandler.removeUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case NET_BINDS :
-											{
-												int bind = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_NET_BIND,
-													bind
-												);
-												NetBindHandler.removeBind(
-													conn,
-													source,
-													invalidateList,
-													bind
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case PACKAGE_DEFINITIONS :
-											{
-												int packageDefinition = in.readCompressedInt();
-												process.setCommand(
-													"remove_package_definition",
-													packageDefinition
-												);
-												PackageHandler.removePackageDefinition(
-													conn,
-													source,
-													invalidateList,
-													packageDefinition
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case POSTGRES_DATABASES :
-											{
-												int database = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_POSTGRES_DATABASE,
-													database
-												);
-												PostgresqlHandler.removeDatabase(
-													conn,
-													source,
-													invalidateList,
-													database
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case POSTGRES_SERVER_USERS :
-											{
-												int userServer = in.readCompressedInt();
-												process.setCommand(
-													Command.REMOVE_POSTGRES_SERVER_USER,
-													userServer
-												);
-												PostgresqlHandler.removeUserServer(
-													conn,
-													source,
-													invalidateList,
-													userServer
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case POSTGRES_USERS :
-											{
-												com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_POSTGRES_USER,
-													user
-												);
-												PostgresqlHandler.removeUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										case USERNAMES :
-											{
-												com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-												process.setCommand(
-													Command.REMOVE_USERNAME,
-													user
-												);
-												AccountUserHandler.removeUser(
-													conn,
-													source,
-													invalidateList,
-													user
-												);
-												resp = Response.DONE;
-											}
-											break;
-										default :
-											throw new IOException("Unknown table ID for remove: clientTableID=" + clientTableID + ", tableID=" + tableID);
-									}
-									sendInvalidateList = true;
-									break;
-								}
-								case REQUEST_REPLICATION_DAEMON_ACCESS :
-									{
-										int fileReplication = in.readCompressedInt();
-										process.setCommand(
-											"request_replication_daemon_access",
-											fileReplication
-										);
-										Server.DaemonAccess daemonAccess = FailoverHandler.requestReplicationDaemonAccess(
-											conn,
-											source,
-											fileReplication
-										);
-										resp = Response.of(
-											AoservProtocol.DONE,
-											daemonAccess.getProtocol(),
-											daemonAccess.getHost(),
-											daemonAccess.getPort().getPort(),
-											daemonAccess.getKey()
-										);
-										sendInvalidateList = false;
-									}
-									break;
-								case RESTART_APACHE :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											Command.RESTART_APACHE,
-											linuxServer
-										);
-										WebHandler.restartApache(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case RESTART_CRON :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											Command.RESTART_CRON,
-											linuxServer
-										);
-										LinuxServerHandler.restartCron(
-											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case RESTART_MYSQL :
-									{
-										int mysqlServer = in.readCompressedInt();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4) < 0) {
-											throw new IOException(Command.RESTART_MYSQL + " call not supported for AOServ Client version < " + AoservProtocol.Version.VERSION_1_4 + ", please upgrade AOServ Client.");
+										int database = in.readCompressedInt();
+										boolean gzip;
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) >= 0) {
+											gzip = in.readBoolean();
+										} else {
+											gzip = false;
 										}
 										process.setCommand(
-											Command.RESTART_MYSQL,
-											mysqlServer
+											Command.DUMP_MYSQL_DATABASE,
+											database,
+											gzip
 										);
-										MysqlHandler.restartServer(
+										MysqlHandler.dumpDatabase(
 											conn,
 											source,
-											mysqlServer
+											out,
+											database,
+											gzip
 										);
 										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case RESTART_POSTGRESQL :
+								case DUMP_POSTGRES_DATABASE :
 									{
-										int postgresServer = in.readCompressedInt();
+										process.setPriority(Thread.NORM_PRIORITY-1);
+										currentThread.setPriority(Thread.NORM_PRIORITY-1);
+
+										int database = in.readCompressedInt();
+										boolean gzip;
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) >= 0) {
+											gzip = in.readBoolean();
+										} else {
+											gzip = false;
+										}
 										process.setCommand(
-											Command.RESTART_POSTGRESQL,
-											postgresServer
+											Command.DUMP_POSTGRES_DATABASE,
+											database,
+											gzip
 										);
-										PostgresqlHandler.restartServer(
+										PostgresqlHandler.dumpDatabase(
 											conn,
 											source,
-											postgresServer
+											out,
+											database,
+											gzip
 										);
 										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case RESTART_XFS :
+								case GENERATE_ACCOUNTING_CODE :
 									{
-										int linuxServer = in.readCompressedInt();
+										Account.Name template = Account.Name.valueOf(in.readUTF());
 										process.setCommand(
-											Command.RESTART_XFS,
-											linuxServer
+											Command.GENERATE_ACCOUNTING,
+											template
 										);
-										LinuxServerHandler.restartXfs(
+										Account.Name account = AccountHandler.generateAccountName(
 											conn,
-											source,
-											linuxServer
-										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
-									}
-									break;
-								case RESTART_XVFB :
-									{
-										int linuxServer = in.readCompressedInt();
-										process.setCommand(
-											Command.RESTART_XVFB,
-											linuxServer
+											template
 										);
-										LinuxServerHandler.restartXvfb(
-											conn,
-											source,
-											linuxServer
+										resp = Response.of(
+											AoservProtocol.DONE,
+											account
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_AUTORESPONDER :
-									{
-										int userServer = in.readCompressedInt();
-										int from = in.readCompressedInt();
-										String subject = in.readNullUTF();
-										String content = in.readNullUTF();
-										boolean enabled = in.readBoolean();
-										process.setCommand(
-											Command.SET_AUTORESPONDER,
-											userServer,
-											from==-1?null:from,
-											subject,
-											content,
-											enabled
-										);
-										LinuxAccountHandler.setAutoresponder(
-											conn,
-											source,
-											invalidateList,
-											userServer,
-											from,
-											subject,
-											content,
-											enabled
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_BUSINESS_ACCOUNTING :
+								case GENERATE_MYSQL_DATABASE_NAME :
 									{
-										Account.Name oldAccounting = Account.Name.valueOf(in.readUTF());
-										Account.Name newAccounting = Account.Name.valueOf(in.readUTF());
+										String template_base = in.readUTF().trim();
+										String template_added = in.readUTF().trim();
 										process.setCommand(
-											Command.SET_BUSINESS_ACCOUNTING,
-											oldAccounting,
-											newAccounting
-										);
-										AccountHandler.setAccountName(
-											conn,
-											source,
-											invalidateList,
-											oldAccounting,
-											newAccounting
+											Command.GENERATE_MYSQL_DATABASE_NAME,
+											template_base,
+											template_added
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_BUSINESS_ADMINISTRATOR_PASSWORD :
-									{
-										com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-										char[] chars = in.readUTF().toCharArray(); // TODO: Write as char[] so can be zeroed
-										try (UnprotectedPassword password = (chars.length == 0) ? null : new UnprotectedPassword(chars)) {
-											process.setCommand(
-												Command.SET_BUSINESS_ADMINISTRATOR_PASSWORD,
-												administrator,
-												Password.MASKED_PASSWORD
-											);
-											AccountHandler.setAdministratorPassword(
-												conn,
-												source,
-												invalidateList,
-												administrator,
-												password
-											);
-										}
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_BUSINESS_ADMINISTRATOR_PROFILE :
-									{
-										com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
-										String name=in.readUTF().trim();
-										String title=in.readNullUTF();
-										long birthdayLong=in.readLong();
-										Date birthday = birthdayLong==-1 ? null : new Date(birthdayLong);
-										boolean isPrivate=in.readBoolean();
-										String workPhone=in.readUTF().trim();
-										String homePhone=in.readNullUTF();
-										String cellPhone=in.readNullUTF();
-										String fax=in.readNullUTF();
-										String email=in.readUTF().trim();
-										String address1=in.readNullUTF();
-										String address2=in.readNullUTF();
-										String city=in.readNullUTF();
-										String state=in.readNullUTF();
-										String country=in.readNullUTF();
-										String zip=in.readNullUTF();
-										process.setCommand(
-											Command.SET_BUSINESS_ADMINISTRATOR_PROFILE,
-											administrator,
-											name,
-											title,
-											birthday,
-											isPrivate,
-											workPhone,
-											homePhone,
-											cellPhone,
-											fax,
-											email,
-											address1,
-											address2,
-											city,
-											state,
-											country,
-											zip
-										);
-										AccountHandler.setAdministratorProfile(
+										Database.Name name = MysqlHandler.generateDatabaseName(
 											conn,
-											source,
-											invalidateList,
-											administrator,
-											name,
-											title,
-											birthday,
-											isPrivate,
-											workPhone,
-											homePhone,
-											cellPhone,
-											fax,
-											email,
-											address1,
-											address2,
-											city,
-											state,
-											country,
-											zip
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_CRON_TABLE :
-									{
-										int userServer = in.readCompressedInt();
-										String crontab = in.readUTF();
-										process.setCommand(
-											Command.SET_CRON_TABLE,
-											userServer,
-											crontab
+											template_base,
+											template_added
 										);
-										LinuxAccountHandler.setCronTable(
-											conn,
-											source,
-											userServer,
-											crontab
+										resp = Response.of(
+											AoservProtocol.DONE,
+											name
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_CVS_REPOSITORY_MODE :
-									{
-										int cvsRepository = in.readCompressedInt();
-										long mode = in.readLong();
-										process.setCommand(
-											Command.SET_CVS_REPOSITORY_MODE,
-											cvsRepository,
-											Long.toOctalString(mode)
-										);
-										CvsHandler.setMode(
-											conn,
-											source,
-											invalidateList,
-											cvsRepository,
-											mode
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_DEFAULT_BUSINESS_SERVER :
-									{
-										int accountHost = in.readCompressedInt();
-										process.setCommand(
-											Command.SET_DEFAULT_BUSINESS_SERVER,
-											accountHost
-										);
-										AccountHandler.setDefaultAccountHost(
-											conn,
-											source,
-											invalidateList,
-											accountHost
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_DNS_ZONE_TTL :
+								case GENERATE_PACKAGE_NAME :
 									{
-										String zone = in.readUTF();
-										int ttl = in.readCompressedInt();
+										Account.Name template = Account.Name.valueOf(in.readUTF());
 										process.setCommand(
-											Command.SET_DNS_ZONE_TTL,
-											zone,
-											ttl
+											Command.GENERATE_PACKAGE_NAME,
+											template
 										);
-										MasterServer.getService(DnsService.class).setDNSZoneTTL(
+										Account.Name name = PackageHandler.generatePackageName(
 											conn,
-											source,
-											invalidateList,
-											zone,
-											ttl
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_EMAIL_LIST_ADDRESS_LIST :
-									{
-										int list = in.readCompressedInt();
-										String addresses = in.readUTF();
-										process.setCommand(
-											Command.SET_EMAIL_LIST,
-											list,
-											addresses
+											template
 										);
-										EmailHandler.setListFile(
-											conn,
-											source,
-											list,
-											addresses
+										resp = Response.of(
+											AoservProtocol.DONE,
+											name
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_FILE_BACKUP_SETTINGS :
-									{
-										int fileReplicationSetting = in.readCompressedInt();
-										String path = in.readUTF();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-											in.readCompressedInt(); // package
-										}
-										boolean backupEnabled;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_30)<=0) {
-											short backupLevel=in.readShort();
-											in.readShort(); // backup_retention
-											in.readBoolean(); // recurse
-											backupEnabled = backupLevel>0;
-										} else {
-											backupEnabled = in.readBoolean();
-										}
-										boolean required;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_62)>=0) {
-											required = in.readBoolean();
-										} else {
-											required = false;
-										}
-										process.setCommand(
-											Command.SET_FILE_BACKUP_SETTING,
-											fileReplicationSetting,
-											path,
-											backupEnabled,
-											required
-										);
-										BackupHandler.setFileReplicationSettings(
-											conn,
-											source,
-											invalidateList,
-											fileReplicationSetting,
-											path,
-											backupEnabled,
-											required
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_FILE_BACKUP_SETTINGS_ALL_AT_ONCE :
-									{
-										int replication = in.readCompressedInt();
-										int size = in.readCompressedInt();
-										List<String> paths = new ArrayList<>(size);
-										List<Boolean> backupEnableds = new ArrayList<>(size);
-										List<Boolean> requireds = new ArrayList<>(size);
-										for(int c=0;c<size;c++) {
-											paths.add(in.readUTF());
-											backupEnableds.add(in.readBoolean());
-											boolean required;
-											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_62)>=0) {
-												required = in.readBoolean();
-											} else {
-												required = false;
-											}
-											requireds.add(required);
-										}
-
-										process.setCommand(
-											"set_file_backup_settings_all_at_once",
-											replication,
-											size
-										);
-										FailoverHandler.setFileReplicationSettings(
-											conn,
-											source,
-											invalidateList,
-											replication,
-											paths,
-											backupEnableds,
-											requireds
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_HTTPD_SHARED_TOMCAT_IS_MANUAL :
-									{
-										int sharedTomcat = in.readCompressedInt();
-										boolean isManual = in.readBoolean();
-										process.setCommand(
-											Command.SET_HTTPD_SHARED_TOMCAT_IS_MANUAL,
-											sharedTomcat,
-											isManual
-										);
-										WebHandler.setSharedTomcatIsManual(
-											conn,
-											source,
-											invalidateList,
-											sharedTomcat,
-											isManual
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_HTTPD_SHARED_TOMCAT_MAX_POST_SIZE :
+								case GENERATE_POSTGRES_DATABASE_NAME :
 									{
-										int sharedTomcat = in.readCompressedInt();
-										int maxPostSize = in.readInt();
+										String template_base = in.readUTF().trim();
+										String template_added = in.readUTF().trim();
 										process.setCommand(
-											Command.SET_HTTPD_SHARED_TOMCAT_MAX_POST_SIZE,
-											sharedTomcat,
-											maxPostSize
+											Command.GENERATE_POSTGRES_DATABASE_NAME,
+											template_base,
+											template_added
 										);
-										WebHandler.setSharedTomcatMaxPostSize(
+										com.aoindustries.aoserv.client.postgresql.Database.Name name = PostgresqlHandler.generateDatabaseName(
 											conn,
-											source,
-											invalidateList,
-											sharedTomcat,
-											maxPostSize
-										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
-									}
-									break;
-								case SET_HTTPD_SHARED_TOMCAT_UNPACK_WARS :
-									{
-										int sharedTomcat = in.readCompressedInt();
-										boolean unpackWARs = in.readBoolean();
-										process.setCommand(
-											Command.SET_HTTPD_SHARED_TOMCAT_UNPACK_WARS,
-											sharedTomcat,
-											unpackWARs
+											template_base,
+											template_added
 										);
-										WebHandler.setSharedTomcatUnpackWARs(
-											conn,
-											source,
-											invalidateList,
-											sharedTomcat,
-											unpackWARs
+										resp = Response.of(
+											AoservProtocol.DONE,
+											name
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SHARED_TOMCAT_AUTO_DEPLOY :
+								case GENERATE_SHARED_TOMCAT_NAME :
 									{
-										int sharedTomcat = in.readCompressedInt();
-										boolean autoDeploy = in.readBoolean();
+										String template = in.readUTF().trim();
 										process.setCommand(
-											Command.SET_HTTPD_SHARED_TOMCAT_AUTO_DEPLOY,
-											sharedTomcat,
-											autoDeploy
+											Command.GENERATE_SHARED_TOMCAT_NAME,
+											template
 										);
-										WebHandler.setSharedTomcatAutoDeploy(
+										String name = WebHandler.generateSharedTomcatName(
 											conn,
-											source,
-											invalidateList,
-											sharedTomcat,
-											autoDeploy
+											template
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											name
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case web_tomcat_SharedTomcat_tomcatAuthentication_set :
+								case GENERATE_SITE_NAME :
 									{
-										int sharedTomcat = in.readCompressedInt();
-										boolean tomcatAuthentication = in.readBoolean();
+										String template = in.readUTF().trim();
 										process.setCommand(
-											Command.web_tomcat_SharedTomcat_tomcatAuthentication_set,
-											sharedTomcat,
-											tomcatAuthentication
+											Command.GENERATE_SITE_NAME,
+											template
 										);
-										WebHandler.setSharedTomcatTomcatAuthentication(
+										String name = WebHandler.generateSiteName(
 											conn,
-											source,
-											invalidateList,
-											sharedTomcat,
-											tomcatAuthentication
+											template
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											name
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SHARED_TOMCAT_VERSION :
+								case GET_ACCOUNT_BALANCE :
 									{
-										int sharedTomcat = in.readCompressedInt();
-										int version = in.readCompressedInt();
+										Account.Name account = Account.Name.valueOf(in.readUTF());
 										process.setCommand(
-											Command.SET_HTTPD_SHARED_TOMCAT_VERSION,
-											sharedTomcat,
-											version
+											"get_account_balance",
+											account
 										);
-										WebHandler.setSharedTomcatVersion(
+										BillingTransactionHandler.getAccountBalance(
 											conn,
 											source,
-											invalidateList,
-											sharedTomcat,
-											version
+											out,
+											account
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_AUTHENTICATED_LOCATION_ATTRIBUTES :
+								case GET_ACCOUNT_BALANCE_BEFORE :
 									{
-										int location = in.readCompressedInt();
-										String path = in.readUTF().trim();
-										boolean isRegularExpression = in.readBoolean();
-										String authName = in.readUTF().trim();
-										PosixPath authGroupFile;
-										{
-											String s = in.readUTF().trim();
-											authGroupFile = s.isEmpty() ? null : PosixPath.valueOf(s);
-										}
-										PosixPath authUserFile;
-										{
-											String s = in.readUTF().trim();
-											authUserFile = s.isEmpty() ? null : PosixPath.valueOf(s);
-										}
-										String require = in.readUTF().trim();
-										String handler;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_13) >= 0) {
-											String s = in.readUTF();
-											handler = s.isEmpty() ? null : s;
-										} else {
-											// Keep current value
-											handler = Location.Handler.CURRENT;
-										}
+										Account.Name account = Account.Name.valueOf(in.readUTF());
+										long before = in.readLong();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_AUTHENTICATED_LOCATION_ATTRIBUTES,
-											location,
-											path,
-											isRegularExpression,
-											authName,
-											authGroupFile,
-											authUserFile,
-											require,
-											handler
-										);
-										WebHandler.setLocationAttributes(
+											"get_account_balance_before",
+											account,
+											new java.util.Date(before)
+										);
+										BillingTransactionHandler.getAccountBalanceBefore(
 											conn,
 											source,
-											invalidateList,
-											location,
-											path,
-											isRegularExpression,
-											authName,
-											authGroupFile,
-											authUserFile,
-											require,
-											handler
+											out,
+											account,
+											before
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BIND_IS_MANUAL :
+								case GET_BANK_TRANSACTIONS_ACCOUNT :
 									{
-										int virtualHost = in.readCompressedInt();
-										boolean isManual = in.readBoolean();
+										boolean provideProgress = in.readBoolean();
+										String account = in.readUTF().trim();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_BIND_IS_MANUAL,
-											virtualHost,
-											isManual
+											"get_bank_transactions_account",
+											provideProgress,
+											account
 										);
-										WebHandler.setVirtualHostIsManual(
+										BankAccountHandler.getTransactionsForAccount(
 											conn,
 											source,
-											invalidateList,
-											virtualHost,
-											isManual
+											out,
+											provideProgress,
+											account
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BIND_REDIRECT_TO_PRIMARY_HOSTNAME :
+								case GET_CONFIRMED_ACCOUNT_BALANCE :
 									{
-										int virtualHost = in.readCompressedInt();
-										boolean redirectToPrimaryHostname = in.readBoolean();
+										Account.Name account = Account.Name.valueOf(in.readUTF());
 										process.setCommand(
-											Command.SET_HTTPD_SITE_BIND_REDIRECT_TO_PRIMARY_HOSTNAME,
-											virtualHost,
-											redirectToPrimaryHostname
+											"get_confirmed_account_balance",
+											account
 										);
-										WebHandler.setVirtualHostRedirectToPrimaryHostname(
+										BillingTransactionHandler.getConfirmedAccountBalance(
 											conn,
 											source,
-											invalidateList,
-											virtualHost,
-											redirectToPrimaryHostname
+											out,
+											account
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_IS_MANUAL :
+								case GET_CONFIRMED_ACCOUNT_BALANCE_BEFORE :
 									{
-										int site = in.readCompressedInt();
-										boolean isManual = in.readBoolean();
+										Account.Name account = Account.Name.valueOf(in.readUTF());
+										long before = in.readLong();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_IS_MANUAL,
-											site,
-											isManual
+											"get_confirmed_account_balance_before",
+											account,
+											new java.util.Date(before)
 										);
-										WebHandler.setSiteIsManual(
+										BillingTransactionHandler.getConfirmedAccountBalanceBefore(
 											conn,
 											source,
-											invalidateList,
-											site,
-											isManual
+											out,
+											account,
+											before
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_SERVER_ADMIN :
+								case GET_AUTORESPONDER_CONTENT :
 									{
-										int site = in.readCompressedInt();
-										Email emailAddress = Email.valueOf(in.readUTF());
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_SERVER_ADMIN,
-											site,
-											emailAddress
+											Command.GET_AUTORESPONDER_CONTENT,
+											userServer
 										);
-										WebHandler.setSiteServerAdmin(
-											conn,
-											source,
-											invalidateList,
-											site,
-											emailAddress
+										resp = Response.of(
+											AoservProtocol.DONE,
+											LinuxAccountHandler.getAutoresponderContent(
+												conn,
+												source,
+												userServer
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_PHP_VERSION :
+								case GET_AWSTATS_FILE :
 									{
 										int site = in.readCompressedInt();
-										int phpVersion = in.readCompressedInt();
+										String path = in.readUTF();
+										String queryString = in.readUTF();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_PHP_VERSION,
+											Command.GET_AWSTATS_FILE,
 											site,
-											phpVersion
+											path,
+											queryString
 										);
-										WebHandler.setSitePhpVersion(
+										WebHandler.getAWStatsFile(
 											conn,
 											source,
-											invalidateList,
 											site,
-											phpVersion
+											path,
+											queryString,
+											out
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_ENABLE_CGI :
+								case GET_BACKUP_PARTITION_DISK_TOTAL_SIZE :
 									{
-										int site = in.readCompressedInt();
-										boolean enableCgi = in.readBoolean();
+										int backupPartition = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_ENABLE_CGI,
-											site,
-											enableCgi
+											Command.GET_BACKUP_PARTITION_TOTAL_SIZE,
+											backupPartition
 										);
-										WebHandler.setSiteEnableCgi(
-											conn,
-											source,
-											invalidateList,
-											site,
-											enableCgi
+										resp = Response.of(
+											AoservProtocol.DONE,
+											BackupHandler.getBackupPartitionTotalSize(
+												conn,
+												source,
+												backupPartition
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_ENABLE_SSI :
+								case GET_BACKUP_PARTITION_DISK_USED_SIZE :
 									{
-										int site = in.readCompressedInt();
-										boolean enableSsi = in.readBoolean();
+										int backupPartition = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_ENABLE_SSI,
-											site,
-											enableSsi
+											Command.GET_BACKUP_PARTITION_USED_SIZE,
+											backupPartition
 										);
-										WebHandler.setSiteEnableSsi(
-											conn,
-											source,
-											invalidateList,
-											site,
-											enableSsi
+										resp = Response.of(
+											AoservProtocol.DONE,
+											BackupHandler.getBackupPartitionUsedSize(
+												conn,
+												source,
+												backupPartition
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_ENABLE_HTACCESS :
+								case GET_CACHED_ROW_COUNT :
 									{
-										int site = in.readCompressedInt();
-										boolean enableHtaccess = in.readBoolean();
+										int clientTableID = in.readCompressedInt();
+										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
+										if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
 										process.setCommand(
-											Command.SET_HTTPD_SITE_ENABLE_HTACCESS,
-											site,
-											enableHtaccess
+											"get_cached_row_count",
+											TableHandler.getTableName(
+												conn,
+												tableID
+											)
 										);
-										WebHandler.setSiteEnableHtaccess(
+										int count = TableHandler.getCachedRowCount(
 											conn,
 											source,
-											invalidateList,
-											site,
-											enableHtaccess
+											tableID
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											count
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_ENABLE_INDEXES :
+								case GET_CRON_TABLE :
 									{
-										int site = in.readCompressedInt();
-										boolean enableIndexes = in.readBoolean();
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_ENABLE_INDEXES,
-											site,
-											enableIndexes
+											Command.GET_CRON_TABLE,
+											userServer
 										);
-										WebHandler.setSiteEnableIndexes(
-											conn,
-											source,
-											invalidateList,
-											site,
-											enableIndexes
+										resp = Response.of(
+											AoservProtocol.DONE,
+											LinuxAccountHandler.getCronTable(
+												conn,
+												source,
+												userServer
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_ENABLE_FOLLOW_SYMLINKS :
+								case GET_EMAIL_LIST_ADDRESS_LIST :
 									{
-										int site = in.readCompressedInt();
-										boolean enableFollowSymlinks = in.readBoolean();
+										int list = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_ENABLE_FOLLOW_SYMLINKS,
-											site,
-											enableFollowSymlinks
+											Command.GET_EMAIL_LIST,
+											list
 										);
-										WebHandler.setSiteEnableFollowSymlinks(
-											conn,
-											source,
-											invalidateList,
-											site,
-											enableFollowSymlinks
+										resp = Response.of(
+											AoservProtocol.DONE,
+											EmailHandler.getListFile(
+												conn,
+												source,
+												list
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_ENABLE_ANONYMOUS_FTP :
+								case GET_FAILOVER_FILE_LOGS_FOR_REPLICATION :
 									{
-										int site = in.readCompressedInt();
-										boolean enableAnonymousFtp = in.readBoolean();
-										process.setCommand(
-											Command.SET_HTTPD_SITE_ENABLE_ANONYMOUS_FTP,
-											site,
-											enableAnonymousFtp
-										);
-										WebHandler.setSiteEnableAnonymousFtp(
+										int replication = in.readCompressedInt();
+										int maxRows = in.readCompressedInt();
+										FailoverHandler.getFileReplicationLogs(
 											conn,
 											source,
-											invalidateList,
-											site,
-											enableAnonymousFtp
+											out,
+											replication,
+											maxRows
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BLOCK_TRACE_TRACK :
+								case GET_FAILOVER_FILE_REPLICATION_ACTIVITY :
 									{
-										int site = in.readCompressedInt();
-										boolean blockTraceTrack = in.readBoolean();
+										int replication = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_BLOCK_TRACE_TRACK,
-											site,
-											blockTraceTrack
+											Command.GET_FAILOVER_FILE_REPLICATION_ACTIVITY,
+											replication
 										);
-										WebHandler.setSiteBlockTraceTrack(
+										Tuple2<Long, String> activity = FailoverHandler.getFileReplicationActivity(
 											conn,
 											source,
-											invalidateList,
-											site,
-											blockTraceTrack
+											replication
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											activity.getElement1(),
+											activity.getElement2()
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BLOCK_SCM :
+								case GET_HTTPD_SERVER_CONCURRENCY :
 									{
-										int site = in.readCompressedInt();
-										boolean blockScm = in.readBoolean();
+										int httpdServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_BLOCK_SCM,
-											site,
-											blockScm
+											Command.GET_HTTPD_SERVER_CONCURRENCY,
+											httpdServer
 										);
-										WebHandler.setSiteBlockScm(
+										int hsConcurrency = WebHandler.getHttpdServerConcurrency(
 											conn,
 											source,
-											invalidateList,
-											site,
-											blockScm
+											httpdServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											hsConcurrency
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BLOCK_CORE_DUMPS :
+								case GET_IMAP_FOLDER_SIZES :
 									{
-										int site = in.readCompressedInt();
-										boolean blockCoreDumps = in.readBoolean();
+										int userServer = in.readCompressedInt();
+										int numFolders = in.readCompressedInt();
+										String[] folderNames = new String[numFolders];
+										for(int c=0;c<numFolders;c++) {
+											folderNames[c] = in.readUTF();
+										}
 										process.setCommand(
-											Command.SET_HTTPD_SITE_BLOCK_CORE_DUMPS,
-											site,
-											blockCoreDumps
+											Command.GET_IMAP_FOLDER_SIZES,
+											userServer,
+											numFolders,
+											folderNames
 										);
-										WebHandler.setSiteBlockCoreDumps(
-											conn,
-											source,
-											invalidateList,
-											site,
-											blockCoreDumps
+										resp = Response.of(
+											AoservProtocol.DONE,
+											EmailHandler.getImapFolderSizes(
+												conn,
+												source,
+												userServer,
+												folderNames
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BLOCK_EDITOR_BACKUPS :
+								case GET_INBOX_ATTRIBUTES :
 									{
-										int site = in.readCompressedInt();
-										boolean blockEditorBackups = in.readBoolean();
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_SITE_BLOCK_EDITOR_BACKUPS,
-											site,
-											blockEditorBackups
+											Command.GET_INBOX_ATTRIBUTES,
+											userServer
 										);
-										WebHandler.setSiteBlockEditorBackups(
-											conn,
-											source,
-											invalidateList,
-											site,
-											blockEditorBackups
+										resp = Response.of(
+											AoservProtocol.DONE,
+											EmailHandler.getInboxAttributes(
+												conn,
+												source,
+												userServer
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_SITE_BIND_PREDISABLE_CONFIG :
+								case GET_MAJORDOMO_INFO_FILE :
 									{
-										int virtualHost = in.readCompressedInt();
-										String config = in.readNullUTF();
+										int majordomoList = in.readCompressedInt();
 										process.setCommand(
-											"set_httpd_site_bind_predisable_config",
-											virtualHost,
-											AoservProtocol.FILTERED
+											Command.GET_MAJORDOMO_INFO_FILE,
+											majordomoList
 										);
-										WebHandler.setVirtualHostPredisableConfig(
-											conn,
-											source,
-											invalidateList,
-											virtualHost,
-											config
+										resp = Response.of(
+											AoservProtocol.DONE,
+											EmailHandler.getMajordomoInfoFile(
+												conn,
+												source,
+												majordomoList
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_TOMCAT_CONTEXT_ATTRIBUTES :
+								case GET_MAJORDOMO_INTRO_FILE :
 									{
-										int context = in.readCompressedInt();
-										String className = in.readNullUTF();
-										boolean cookies = in.readBoolean();
-										boolean crossContext = in.readBoolean();
-										PosixPath docBase = PosixPath.valueOf(in.readUTF());
-										boolean override = in.readBoolean();
-										String path = in.readUTF().trim();
-										boolean privileged = in.readBoolean();
-										boolean reloadable = in.readBoolean();
-										boolean useNaming = in.readBoolean();
-										String wrapperClass = in.readNullUTF();
-										int debug = in.readCompressedInt();
-										PosixPath workDir = PosixPath.valueOf(in.readNullUTF());
-										boolean serverXmlConfigured;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_2) <= 0) {
-											serverXmlConfigured = Context.DEFAULT_SERVER_XML_CONFIGURED;
-										} else {
-											serverXmlConfigured = in.readBoolean();
-										}
+										int majordomoList = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_TOMCAT_CONTEXT_ATTRIBUTES,
-											context,
-											className,
-											cookies,
-											crossContext,
-											docBase,
-											override,
-											path,
-											privileged,
-											reloadable,
-											useNaming,
-											wrapperClass,
-											debug,
-											workDir,
-											serverXmlConfigured
-										);
-										WebHandler.setContextAttributes(
-											conn,
-											source,
-											invalidateList,
-											context,
-											className,
-											cookies,
-											crossContext,
-											docBase,
-											override,
-											path,
-											privileged,
-											reloadable,
-											useNaming,
-											wrapperClass,
-											debug,
-											workDir,
-											serverXmlConfigured
+											Command.GET_MAJORDOMO_INTRO_FILE,
+											majordomoList
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											EmailHandler.getMajordomoIntroFile(
+												conn,
+												source,
+												majordomoList
+											)
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_TOMCAT_SITE_BLOCK_WEBINF :
+								case GET_MASTER_ENTROPY :
 									{
-										int tomcatSite = in.readCompressedInt();
-										boolean blockWebinf = in.readBoolean();
+										int numBytes = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_TOMCAT_SITE_BLOCK_WEBINF,
-											tomcatSite,
-											blockWebinf
-										);
-										WebHandler.setTomcatSiteBlockWebinf(
-											conn,
-											source,
-											invalidateList,
-											tomcatSite,
-											blockWebinf
+											"get_master_entropy",
+											numBytes
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										boolean useBufferManager = numBytes <= BufferManager.BUFFER_SIZE;
+										byte[] entropy = useBufferManager ? BufferManager.getBytes() : new byte[numBytes];
+										try {
+											numBytes = RandomHandler.getMasterEntropy(conn, source, entropy, numBytes);
+											conn.close(); // Don't hold database connection while writing response
+											out.writeByte(AoservProtocol.DONE);
+											out.writeCompressedInt(numBytes);
+											out.write(entropy, 0, numBytes);
+											resp = null;
+											sendInvalidateList = false;
+										} finally {
+											if(useBufferManager) BufferManager.release(entropy, true);
+										}
 									}
 									break;
-								case SET_HTTPD_TOMCAT_STD_SITE_MAX_POST_SIZE :
+								case GET_MASTER_ENTROPY_NEEDED :
 									{
-										int privateTomcatSite = in.readCompressedInt();
-										int maxPostSize = in.readInt();
 										process.setCommand(
-											Command.SET_HTTPD_TOMCAT_STD_SITE_MAX_POST_SIZE,
-											privateTomcatSite,
-											maxPostSize
+											"get_master_entropy_needed"
 										);
-										WebHandler.setPrivateTomcatSiteMaxPostSize(
-											conn,
-											source,
-											invalidateList,
-											privateTomcatSite,
-											maxPostSize
+										resp = Response.of(
+											AoservProtocol.DONE,
+											RandomHandler.getMasterEntropyNeeded(conn, source)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_TOMCAT_STD_SITE_UNPACK_WARS :
+								case GET_MRTG_FILE :
 									{
-										int privateTomcatSite = in.readCompressedInt();
-										boolean unpackWARs = in.readBoolean();
+										int linuxServer = in.readCompressedInt();
+										String filename = in.readUTF().trim();
 										process.setCommand(
-											Command.SET_HTTPD_TOMCAT_STD_SITE_UNPACK_WARS,
-											privateTomcatSite,
-											unpackWARs
+											Command.GET_MRTG_FILE,
+											linuxServer,
+											filename
 										);
-										WebHandler.setPrivateTomcatSiteUnpackWARs(
+										LinuxServerHandler.getMrtgFile(
 											conn,
 											source,
-											invalidateList,
-											privateTomcatSite,
-											unpackWARs
+											linuxServer,
+											filename,
+											out
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_TOMCAT_STD_SITE_AUTO_DEPLOY :
+								case GET_MYSQL_MASTER_STATUS :
 									{
-										int privateTomcatSite = in.readCompressedInt();
-										boolean autoDeploy = in.readBoolean();
+										int mysqlServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_HTTPD_TOMCAT_STD_SITE_AUTO_DEPLOY,
-											privateTomcatSite,
-											autoDeploy
+											"get_mysql_master_status",
+											mysqlServer
 										);
-										WebHandler.setPrivateTomcatSiteAutoDeploy(
+										MysqlHandler.getMasterStatus(
 											conn,
 											source,
-											invalidateList,
-											privateTomcatSite,
-											autoDeploy
+											mysqlServer,
+											out
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case web_tomcat_PrivateTomcatSite_tomcatAuthentication_set :
+								case GET_MYSQL_SLAVE_STATUS :
 									{
-										int privateTomcatSite = in.readCompressedInt();
-										boolean tomcatAuthentication = in.readBoolean();
+										int failoverMySQLReplication = in.readCompressedInt();
 										process.setCommand(
-											Command.web_tomcat_PrivateTomcatSite_tomcatAuthentication_set,
-											privateTomcatSite,
-											tomcatAuthentication
+											"get_mysql_slave_status",
+											failoverMySQLReplication
 										);
-										WebHandler.setPrivateTomcatSiteTomcatAuthentication(
+										MysqlHandler.getSlaveStatus(
 											conn,
 											source,
-											invalidateList,
-											privateTomcatSite,
-											tomcatAuthentication
+											failoverMySQLReplication,
+											out
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_HTTPD_TOMCAT_STD_SITE_VERSION :
+								case GET_MYSQL_TABLE_STATUS :
 									{
-										int privateTomcatSite = in.readCompressedInt();
-										int version = in.readCompressedInt();
+										int mysqlDatabase = in.readCompressedInt();
+										int mysqlSlave;
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_60)>=0) {
+											mysqlSlave = in.readCompressedInt();
+										} else {
+											mysqlSlave = -1;
+										}
 										process.setCommand(
-											Command.SET_HTTPD_TOMCAT_STD_SITE_VERSION,
-											privateTomcatSite,
-											version
+											"get_mysql_table_status",
+											mysqlDatabase,
+											mysqlSlave==-1 ? null : mysqlSlave
 										);
-										WebHandler.setPrivateTomcatSiteVersion(
+										MysqlHandler.getTableStatus(
 											conn,
 											source,
-											invalidateList,
-											privateTomcatSite,
-											version
+											mysqlDatabase,
+											mysqlSlave,
+											out
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_IP_ADDRESS_DHCP_ADDRESS :
+								case CHECK_MYSQL_TABLES :
 									{
-										int ipAddress = in.readCompressedInt();
-										InetAddress dhcpAddress = InetAddress.valueOf(in.readUTF());
+										int mysqlDatabase = in.readCompressedInt();
+										int mysqlSlave;
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_60)>=0) {
+											mysqlSlave = in.readCompressedInt();
+										} else {
+											mysqlSlave = -1;
+										}
+										int numTables = in.readCompressedInt();
+										List<Table_Name> tableNames = new ArrayList<>(numTables);
+										for(int c=0;c<numTables;c++) {
+											tableNames.add(Table_Name.valueOf(in.readUTF()));
+										}
 										process.setCommand(
-											Command.SET_IP_ADDRESS_DHCP_ADDRESS,
-											ipAddress,
-											dhcpAddress
+											"check_mysql_tables",
+											mysqlDatabase,
+											mysqlSlave==-1 ? null : mysqlSlave,
+											tableNames
 										);
-										IpAddressHandler.setDhcpAddressDestination(
+										logSQLException = false;
+										MysqlHandler.checkTables(
 											conn,
 											source,
-											invalidateList,
-											ipAddress,
-											dhcpAddress
+											mysqlDatabase,
+											mysqlSlave,
+											tableNames,
+											out
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										logSQLException = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_IP_ADDRESS_HOSTNAME :
+								case GET_NET_DEVICE_BONDING_REPORT :
 									{
-										int ipAddress = in.readCompressedInt();
-										DomainName hostname = DomainName.valueOf(in.readUTF());
+										int device = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_IP_ADDRESS_HOSTNAME,
-											ipAddress,
-											hostname
+											"get_net_device_bonding_report",
+											device
 										);
-										IpAddressHandler.setIpAddressHostname(
-											conn,
-											source,
-											invalidateList,
-											ipAddress,
-											hostname
+										resp = Response.of(
+											AoservProtocol.DONE,
+											NetDeviceHandler.getDeviceBondingReport(
+												conn,
+												source,
+												device
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_IP_ADDRESS_MONITORING_ENABLED :
+								case GET_NET_DEVICE_STATISTICS_REPORT :
 									{
-										int ipAddress = in.readCompressedInt();
-										boolean enabled = in.readBoolean();
+										int device = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_IP_ADDRESS_MONITORING_ENABLED,
-											ipAddress,
-											enabled
+											"get_net_device_statistics_report",
+											device
 										);
-										IpAddressHandler.setIpAddressMonitoringEnabled(
-											conn,
-											source,
-											invalidateList,
-											ipAddress,
-											enabled
+										resp = Response.of(
+											AoservProtocol.DONE,
+											NetDeviceHandler.getDeviceStatisticsReport(
+												conn,
+												source,
+												device
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_IP_ADDRESS_PACKAGE :
+								case GET_AO_SERVER_3WARE_RAID_REPORT :
 									{
-										int ipAddress = in.readCompressedInt();
-										Account.Name packageName = Account.Name.valueOf(in.readUTF());
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_IP_ADDRESS_PACKAGE,
-											ipAddress,
-											packageName
+											"get_ao_server_3ware_raid_report",
+											linuxServer
 										);
-										IpAddressHandler.setIpAddressPackage(
+										String report = LinuxServerHandler.get3wareRaidReport(
 											conn,
 											source,
-											invalidateList,
-											ipAddress,
-											packageName
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case ADD_IP_REPUTATION :
+								case GET_AO_SERVER_MD_STAT_REPORT :
 									{
-										int ipReputationSet = in.readCompressedInt();
-										int size = in.readCompressedInt();
-										AddReputation[] addReputations = new AddReputation[size];
-										for(int i=0; i<size; i++) {
-											int            host           = in.readInt();
-											ConfidenceType confidence     = ConfidenceType.fromChar(in.readChar());
-											ReputationType reputationType = ReputationType.fromChar(in.readChar());
-											short          score          = in.readShort();
-											addReputations[i] = new AddReputation(
-												host,
-												confidence,
-												reputationType,
-												score
-											);
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.ADD_IP_REPUTATION,
-											ipReputationSet,
-											size
+											"get_ao_server_md_stat_report",
+											linuxServer
 										);
-										NetReputationSetHandler.addIpReputation(
+										String report = LinuxServerHandler.getMdStatReport(
 											conn,
 											source,
-											invalidateList,
-											ipReputationSet,
-											addReputations
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LAST_DISTRO_TIME :
+								case GET_AO_SERVER_MD_MISMATCH_REPORT :
 									{
-										process.setPriority(Thread.MIN_PRIORITY+1);
-										currentThread.setPriority(Thread.MIN_PRIORITY+1);
-
 										int linuxServer = in.readCompressedInt();
-										Timestamp time;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-											time = new Timestamp(in.readLong());
-										} else {
-											time = SQLStreamables.readTimestamp(in);
-										}
 										process.setCommand(
-											"set_last_distro_time",
-											linuxServer,
-											time
+											"get_ao_server_md_mismatch_report",
+											linuxServer
 										);
-										LinuxServerHandler.setLastDistroTime(
+										String report = LinuxServerHandler.getMdMismatchReport(
 											conn,
 											source,
-											invalidateList,
-											linuxServer,
-											time
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_ACCOUNT_HOME_PHONE :
+								case GET_AO_SERVER_DRBD_REPORT :
 									{
-										com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-										Gecos phone;
-										{
-											String s = in.readUTF();
-											phone = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_ACCOUNT_HOME_PHONE,
-											user,
-											phone
+											"get_ao_server_drbd_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserHomePhone(
+										String report = LinuxServerHandler.getDrbdReport(
 											conn,
 											source,
-											invalidateList,
-											user,
-											phone
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_ACCOUNT_NAME :
+								case GET_AO_SERVER_LVM_REPORT :
 									{
-										com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-										Gecos fullName;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_1) < 0) {
-											fullName = Gecos.valueOf(in.readUTF());
-										} else {
-											String s = in.readUTF();
-											fullName = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_ACCOUNT_NAME,
-											user,
-											fullName
+											"get_ao_server_lvm_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserFullName(
+										String[] report = LinuxServerHandler.getLvmReport(
 											conn,
 											source,
-											invalidateList,
-											user,
-											fullName
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report[0],
+											report[1],
+											report[2]
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_ACCOUNT_OFFICE_LOCATION :
+								case GET_AO_SERVER_HDD_TEMP_REPORT :
 									{
-										com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-										Gecos location;
-										{
-											String s = in.readUTF();
-											location = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_ACCOUNT_OFFICE_LOCATION,
-											user,
-											location
+											"get_ao_server_hdd_temp_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserOfficeLocation(
+										String report = LinuxServerHandler.getHddTempReport(
 											conn,
 											source,
-											invalidateList,
-											user,
-											location
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_ACCOUNT_OFFICE_PHONE :
+								case GET_AO_SERVER_HDD_MODEL_REPORT :
 									{
-										com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-										Gecos phone;
-										{
-											String s = in.readUTF();
-											phone = s.isEmpty() ? null : Gecos.valueOf(s);
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_ACCOUNT_OFFICE_PHONE,
-											user,
-											phone
+											"get_ao_server_hdd_model_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserOfficePhone(
+										String report = LinuxServerHandler.getHddModelReport(
 											conn,
 											source,
-											invalidateList,
-											user,
-											phone
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_ACCOUNT_SHELL :
+								case GET_AO_SERVER_FILESYSTEMS_CSV_REPORT :
 									{
-										com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
-										PosixPath shell = PosixPath.valueOf(in.readUTF());
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_ACCOUNT_SHELL,
-											user,
-											shell
+											"get_ao_server_filesystems_csv_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserShell(
+										String report = LinuxServerHandler.getFilesystemsCsvReport(
 											conn,
 											source,
-											invalidateList,
-											user,
-											shell
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_JUNK_EMAIL_RETENTION :
+								case GET_AO_SERVER_LOADAVG_REPORT :
 									{
-										int userServer = in.readCompressedInt();
-										int days = in.readCompressedInt();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_SERVER_ACCOUNT_JUNK_EMAIL_RETENTION,
-											userServer,
-											days
+											"get_ao_server_loadavg_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserServerJunkEmailRetention(
+										String report = LinuxServerHandler.getLoadAvgReport(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											days
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_PASSWORD :
+								case GET_AO_SERVER_MEMINFO_REPORT :
 									{
-										int userServer = in.readCompressedInt();
-										String password = in.readUTF();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_ACCOUNT_PASSWORD,
-											userServer,
-											AoservProtocol.FILTERED
+											"get_ao_server_meminfo_report",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserServerPassword(
+										String report = LinuxServerHandler.getMemInfoReport(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											password
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											report
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_PREDISABLE_PASSWORD :
+								case AO_SERVER_CHECK_PORT :
 									{
-										int userServer = in.readCompressedInt();
-										String password = in.readNullUTF();
+										int linuxServer = in.readCompressedInt();
+										InetAddress ipAddress = InetAddress.valueOf(in.readUTF());
+										Port port;
+										{
+											int portNum = in.readCompressedInt();
+											Protocol protocol;
+											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_80_0) < 0) {
+												protocol = Protocol.valueOf(in.readUTF().toUpperCase(Locale.ROOT));
+											} else {
+												protocol = in.readEnum(Protocol.class);
+											}
+											port = Port.valueOf(portNum, protocol);
+										}
+										String appProtocol = in.readUTF();
+										String monitoringParameters = in.readUTF();
 										process.setCommand(
-											"set_linux_server_account_predisable_password",
-											userServer,
-											AoservProtocol.FILTERED
+											"ao_server_check_port",
+											linuxServer,
+											ipAddress,
+											port,
+											appProtocol,
+											monitoringParameters
 										);
-										LinuxAccountHandler.setUserServerPredisablePassword(
+										// Do not log any IO exception
+										logIOException = false;
+										String result = LinuxServerHandler.checkPort(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											password
+											linuxServer,
+											ipAddress,
+											port,
+											appProtocol,
+											monitoringParameters
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										logIOException = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											result
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_EMAIL_SPAMASSASSIN_INTEGRATION_MODE:
+								case AO_SERVER_CHECK_SMTP_BLACKLIST :
 									{
-										int userServer = in.readCompressedInt();
-										String mode = in.readUTF();
+										int linuxServer = in.readCompressedInt();
+										InetAddress sourceIp = InetAddress.valueOf(in.readUTF());
+										InetAddress connectIp = InetAddress.valueOf(in.readUTF());
 										process.setCommand(
-											Command.SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_INTEGRATION_MODE,
-											userServer,
-											mode
+											"ao_server_check_smtp_blacklist",
+											linuxServer,
+											sourceIp,
+											connectIp
 										);
-										LinuxAccountHandler.setUserServerSpamAssassinIntegrationMode(
+										// Do not log any IO exception
+										logIOException = false;
+										String result = LinuxServerHandler.checkSmtpBlacklist(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											mode
+											linuxServer,
+											sourceIp,
+											connectIp
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										logIOException = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											result
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_REQUIRED_SCORE:
+								case GET_AO_SERVER_SYSTEM_TIME_MILLIS :
 									{
-										int userServer = in.readCompressedInt();
-										float required_score = in.readFloat();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_REQUIRED_SCORE,
-											userServer,
-											required_score
+											"get_ao_server_system_time_millis",
+											linuxServer
 										);
-										LinuxAccountHandler.setUserServerSpamAssassinRequiredScore(
+										long systemTime = LinuxServerHandler.getSystemTimeMillis(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											required_score
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											systemTime
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_SPAMASSASSIN_DISCARD_SCORE:
+								case GET_UPS_STATUS :
 									{
-										int userServer = in.readCompressedInt();
-										int discardScore = in.readCompressedInt();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											"set_linux_server_account_spamassassin_discard_score",
-											userServer,
-											discardScore==-1 ? "\"\"" : Integer.toString(discardScore)
+											Command.GET_UPS_STATUS,
+											linuxServer
 										);
-										LinuxAccountHandler.setUserServerSpamAssassinDiscardScore(
+										String status = LinuxServerHandler.getUpsStatus(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											discardScore
+											linuxServer
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											status
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_TRASH_EMAIL_RETENTION :
+								case GET_OBJECT :
 									{
-										int userServer = in.readCompressedInt();
-										int days = in.readCompressedInt();
+										int clientTableID = in.readCompressedInt();
+										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
+										if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
 										process.setCommand(
-											Command.SET_LINUX_SERVER_ACCOUNT_TRASH_EMAIL_RETENTION,
-											userServer,
-											days
+											"get_object",
+											TableHandler.getTableName(
+												conn,
+												tableID
+											)
 										);
-										LinuxAccountHandler.setUserServerTrashEmailRetention(
+										TableHandler.getObject(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											days
+											in,
+											out,
+											tableID
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = null;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_LINUX_SERVER_ACCOUNT_USE_INBOX :
+								case GET_ROOT_BUSINESS :
 									{
-										int userServer = in.readCompressedInt();
-										boolean useInbox = in.readBoolean();
-										process.setCommand(
-											Command.SET_LINUX_SERVER_ACCOUNT_USE_INBOX,
-											userServer,
-											useInbox
-										);
-										LinuxAccountHandler.setUserServerUseInbox(
-											conn,
-											source,
-											invalidateList,
-											userServer,
-											useInbox
+										process.setCommand(Command.GET_ROOT_BUSINESS);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											AccountHandler.getRootAccount()
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_MAJORDOMO_INFO_FILE :
+								case GET_ROW_COUNT :
 									{
-										int majordomoList = in.readCompressedInt();
-										String file = in.readUTF();
-										process.setCommand(
-											Command.SET_MAJORDOMO_INFO_FILE,
-											majordomoList,
-											file
-										);
-										EmailHandler.setMajordomoInfoFile(
-											conn,
-											source,
-											majordomoList,
-											file
+										int clientTableID = in.readCompressedInt();
+										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
+										int count;
+										if(tableID == null) {
+											logger.log(Level.WARNING, "Client table not supported: #{0}, returning 0 from get_row_count", clientTableID);
+											count = 0;
+										} else {
+											process.setCommand(
+												"get_row_count",
+												TableHandler.getTableName(
+													conn,
+													tableID
+												)
+											);
+											count = TableHandler.getRowCount(
+												conn,
+												source,
+												tableID
+											);
+										}
+										resp = Response.of(
+											AoservProtocol.DONE,
+											count
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_MAJORDOMO_INTRO_FILE :
+								case GET_SPAM_EMAIL_MESSAGES_FOR_EMAIL_SMTP_RELAY :
 									{
-										int majordomoList = in.readCompressedInt();
-										String file = in.readUTF();
+										boolean provideProgress = in.readBoolean();
+										int esr = in.readCompressedInt();
 										process.setCommand(
-											Command.SET_MAJORDOMO_INTRO_FILE,
-											majordomoList,
-											file
+											"get_spam_email_messages_for_email_smtp_relay",
+											provideProgress,
+											esr
 										);
-										EmailHandler.setMajordomoIntroFile(
+										EmailHandler.getSpamMessagesForSmtpRelay(
 											conn,
 											source,
-											majordomoList,
-											file
+											out,
+											provideProgress,
+											esr
 										);
 										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_MYSQL_SERVER_USER_PASSWORD :
+								case GET_TABLE :
 									{
-										int userServer = in.readCompressedInt();
-										String password = in.readNullUTF();
-										process.setCommand(
-											Command.SET_MYSQL_SERVER_USER_PASSWORD,
-											userServer,
-											AoservProtocol.FILTERED
-										);
-										MysqlHandler.setUserServerPassword(
-											conn,
-											source,
-											userServer,
-											password
-										);
+										boolean provideProgress = in.readBoolean();
+										int clientTableID = in.readCompressedInt();
+										Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
+										if(tableID == null) {
+											// Get the table name, if possible
+											int dbTableId = TableHandler.convertClientTableIDToDBTableID(
+												conn,
+												source.getProtocolVersion(),
+												clientTableID
+											);
+											String tableName = dbTableId == -1
+												? null
+												: TableHandler.getTableNameForDBTableID(conn, dbTableId)
+											;
+											if(tableName != null) {
+												// Is a recognized table name, give a chance for backward compatibility
+												process.setCommand(
+													Command.SELECT,
+													"*",
+													"from",
+													tableName
+												);
+												TableHandler.getOldTable(
+													conn,
+													source,
+													out,
+													provideProgress,
+													tableName
+												);
+											} else {
+												// Not recognized table name, write empty response
+												process.setCommand(
+													Command.SELECT,
+													"*",
+													"from",
+													clientTableID
+												);
+												conn.close(); // Don't hold database connection while writing response
+												writeObjects(source, out, provideProgress, Collections.emptyList());
+											}
+										} else {
+											if(
+												tableID == Table.TableID.DISTRO_FILES
+											) {
+												process.setPriority(Thread.NORM_PRIORITY-1);
+												currentThread.setPriority(Thread.NORM_PRIORITY-1);
+											}
+											process.setCommand(
+												Command.SELECT,
+												"*",
+												"from",
+												TableHandler.getTableName(
+													conn,
+													tableID
+												)
+											);
+											TableHandler.getTable(
+												conn,
+												source,
+												out,
+												provideProgress,
+												tableID
+											);
+										}
 										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_MYSQL_SERVER_USER_PREDISABLE_PASSWORD :
+								case GET_TRANSACTIONS_BUSINESS :
 									{
-										int userServer = in.readCompressedInt();
-										String password = in.readNullUTF();
+										boolean provideProgress = in.readBoolean();
+										Account.Name account = Account.Name.valueOf(in.readUTF());
 										process.setCommand(
-											"set_mysql_server_user_predisable_password",
-											userServer,
-											AoservProtocol.FILTERED
+											"get_transactions_business",
+											provideProgress,
+											account
 										);
-										MysqlHandler.setUserServerPredisablePassword(
+										BillingTransactionHandler.getTransactionsForAccount(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											password
+											out,
+											provideProgress,
+											account
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_NET_BIND_FIREWALLD_ZONES :
+								case GET_TRANSACTIONS_BUSINESS_ADMINISTRATOR :
 									{
-										int bind = in.readCompressedInt();
-										int numZones = in.readCompressedInt();
-										Set<FirewallZone.Name> firewalldZones = AoCollections.newLinkedHashSet(numZones);
-										for(int i = 0; i < numZones; i++) {
-											FirewallZone.Name name = FirewallZone.Name.valueOf(in.readUTF());
-											if(!firewalldZones.add(name)) {
-												throw new IOException("Duplicate firewalld name: " + name);
-											}
-										}
-										Object[] command = new Object[2 + numZones];
-										command[0] = Command.SET_NET_BIND_FIREWALLD_ZONES;
-										command[1] = bind;
-										System.arraycopy(
-											firewalldZones.toArray(new FirewallZone.Name[numZones]),
-											0,
-											command,
-											2,
-											numZones
-										);
-										process.setCommand(command);
-										NetBindHandler.setBindFirewalldZones(
+										boolean provideProgress = in.readBoolean();
+										com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+										process.setCommand(
+											"get_transactions_business_administrator",
+											provideProgress,
+											administrator
+										);
+										BillingTransactionHandler.getTransactionsForAdministrator(
 											conn,
 											source,
-											invalidateList,
-											bind,
-											firewalldZones
+											out,
+											provideProgress,
+											administrator
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_NET_BIND_MONITORING :
+								case GET_TRANSACTIONS_SEARCH :
 									{
-										int bind = in.readCompressedInt();
-										boolean enabled = in.readBoolean();
+										boolean provideProgress = in.readBoolean();
+										TransactionSearchCriteria criteria = new TransactionSearchCriteria();
+										criteria.read(in, source.getProtocolVersion());
 										process.setCommand(
-											Command.SET_NET_BIND_MONITORING_ENABLED,
-											bind,
-											enabled
+											"get_transactions_search",
+											provideProgress,
+											"..."
 										);
-										NetBindHandler.setBindMonitoringEnabled(
+										BillingTransactionHandler.getTransactionsSearch(
 											conn,
 											source,
-											invalidateList,
-											bind,
-											enabled
+											out,
+											provideProgress,
+											criteria
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList=false;
 									}
 									break;
-								// This exists for compatibility with older clients (versions &lt;= 1.80.2) only.
-								case UNUSED_SET_NET_BIND_OPEN_FIREWALL :
+								case GET_WHOIS_HISTORY_WHOIS_OUTPUT :
 									{
-										int bind = in.readCompressedInt();
-										boolean openFirewall = in.readBoolean();
+										int whoisHistoryAccount = in.readCompressedInt();
 										process.setCommand(
-											"set_net_bind_open_firewall",
-											bind,
-											openFirewall
+											"get_whois_history_whois_output",
+											whoisHistoryAccount
 										);
-										NetBindHandler.setBindOpenFirewall(
+										Tuple2<String, String> whoisOutput = MasterServer.getService(WhoisHistoryService.class).getWhoisHistoryOutput(
 											conn,
 											source,
-											invalidateList,
-											bind,
-											openFirewall
+											whoisHistoryAccount
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_18) <= 0) {
+											String output = whoisOutput.getElement1();
+											String error = whoisOutput.getElement2();
+											resp = Response.of(
+												AoservProtocol.DONE,
+												output.isEmpty() ? error : output
+											);
+										} else {
+											resp = Response.of(
+												AoservProtocol.DONE,
+												whoisOutput.getElement1(),
+												whoisOutput.getElement2()
+											);
+										}
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_PACKAGE_DEFINITION_ACTIVE :
+								/*case HOLD_TICKET :
 									{
-										int packageDefinition = in.readCompressedInt();
-										boolean isActive = in.readBoolean();
+										int ticketID=in.readCompressedInt();
+										String comments=in.readUTF().trim();
 										process.setCommand(
-											"set_package_definition_active",
-											packageDefinition,
-											isActive
+											Command.HOLD_TICKET,
+											ticketID,
+											comments
 										);
-										PackageHandler.setPackageDefinitionActive(
+										TicketHandler.holdTicket(
 											conn,
 											source,
 											invalidateList,
-											packageDefinition,
-											isActive
+											ticketID,
+											comments
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=true;
 									}
-									break;
-								case SET_PACKAGE_DEFINITION_LIMITS :
+									break;*/
+								/*case INITIALIZE_HTTPD_SITE_PASSWD_FILE :
 									{
-										int packageDefinition = in.readCompressedInt();
-										int count = in.readCompressedInt();
-										String[] resources = new String[count];
-										int[] soft_limits = new int[count];
-										int[] hard_limits = new int[count];
-										Money[] additionalRates = new Money[count];
-										String[] additional_transaction_types = new String[count];
-										for(int c = 0; c < count; c++) {
-											resources[c] = in.readUTF().trim();
-											soft_limits[c] = in.readCompressedInt();
-											hard_limits[c] = in.readCompressedInt();
-											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-												int pennies = in.readCompressedInt();
-												additionalRates[c] = pennies == -1 || pennies == 0 ? null : new Money(Currency.USD, pennies, 2);
-											} else {
-												additionalRates[c] = MoneyUtil.readNullMoney(in);
-											}
-											additional_transaction_types[c] = in.readNullUTF();
-										}
+										int sitePKey=in.readCompressedInt();
+										String username=in.readUTF().trim();
+										String encPassword=in.readUTF();
 										process.setCommand(
-											"set_package_definition_limits",
-											packageDefinition,
-											count,
-											resources,
-											soft_limits,
-											hard_limits,
-											additionalRates,
-											additional_transaction_types
-										);
-										PackageHandler.setPackageDefinitionLimits(
+											Command.INITIALIZE_HTTPD_SITE_PASSWD_FILE,
+											sitePKey,
+											username,
+											encPassword
+										);
+										HttpdHandler.initializeHttpdSitePasswdFile(
 											conn,
 											source,
-											invalidateList,
-											packageDefinition,
-											resources,
-											soft_limits,
-											hard_limits,
-											additionalRates,
-											additional_transaction_types
+											sitePKey,
+											username,
+											encPassword
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=false;
 									}
-									break;
-								case SET_POSTGRES_SERVER_USER_PASSWORD :
+									break;*/
+								case IS_ACCOUNTING_AVAILABLE :
 									{
-										int userServer = in.readCompressedInt();
-										String password = in.readNullUTF();
+										Account.Name account = Account.Name.valueOf(in.readUTF());
 										process.setCommand(
-											Command.SET_POSTGRES_SERVER_USER_PASSWORD,
-											userServer,
-											password
+											Command.IS_ACCOUNTING_AVAILABLE,
+											account
 										);
-										PostgresqlHandler.setUserServerPassword(
+										boolean isAvailable = AccountHandler.isAccountNameAvailable(
 											conn,
-											source,
-											userServer,
-											password
+											account
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case SET_POSTGRES_SERVER_USER_PREDISABLE_PASSWORD :
+								case IS_BUSINESS_ADMINISTRATOR_PASSWORD_SET :
 									{
-										int userServer = in.readCompressedInt();
-										String password = in.readNullUTF();
+										com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
 										process.setCommand(
-											"set_postgres_server_user_predisable_password",
-											userServer,
-											AoservProtocol.FILTERED
+											Command.IS_BUSINESS_ADMINISTRATOR_PASSWORD_SET,
+											administrator
 										);
-										PostgresqlHandler.setUserServerPredisablePassword(
+										boolean isAvailable = AccountHandler.isAdministratorPasswordSet(
 											conn,
 											source,
-											invalidateList,
-											userServer,
-											password
+											administrator
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_PRIMARY_HTTPD_SITE_URL :
+								case IS_DNS_ZONE_AVAILABLE :
 									{
-										int virtualHostName = in.readCompressedInt();
+										String zone = in.readUTF().trim();
 										process.setCommand(
-											Command.SET_PRIMARY_HTTPD_SITE_URL,
-											virtualHostName
+											Command.IS_DNS_ZONE_AVAILABLE,
+											zone
 										);
-										WebHandler.setPrimaryVirtualHostName(
+										boolean isAvailable = MasterServer.getService(DnsService.class).isDNSZoneAvailable(
 											conn,
-											source,
-											invalidateList,
-											virtualHostName
+											zone
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_PRIMARY_LINUX_GROUP_ACCOUNT :
+								case IS_EMAIL_DOMAIN_AVAILABLE :
 									{
-										int groupUser = in.readCompressedInt();
+										int linuxServer = in.readCompressedInt();
+										DomainName domain = DomainName.valueOf(in.readUTF());
 										process.setCommand(
-											Command.SET_PRIMARY_LINUX_GROUP_ACCOUNT,
-											groupUser
+											Command.IS_EMAIL_DOMAIN_AVAILABLE,
+											linuxServer,
+											domain
 										);
-										LinuxAccountHandler.setPrimaryGroupUser(
+										boolean isAvailable = EmailHandler.isDomainAvailable(
 											conn,
 											source,
-											invalidateList,
-											groupUser
+											linuxServer,
+											domain
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								/*case SET_TICKET_ASSIGNED_TO :
+								case IS_LINUX_GROUP_NAME_AVAILABLE :
 									{
-										int ticketID=in.readCompressedInt(); 
-										String assignedTo=in.readUTF().trim();
-										if(assignedTo.length() == 0) assignedTo=null;
-										String username=in.readUTF().trim();
-										String comments=in.readUTF().trim();
+										Group.Name name = Group.Name.valueOf(in.readUTF());
 										process.setCommand(
-											"set_ticket_assigned_to",
-											ticketID,
-											assignedTo,
-											username,
-											comments
+											Command.IS_LINUX_GROUP_NAME_AVAILABLE,
+											name
 										);
-										TicketHandler.setTicketAssignedTo(
+										boolean isAvailable = LinuxAccountHandler.isLinuxGroupAvailable(
 											conn,
-											source,
-											invalidateList,
-											ticketID,
-											assignedTo,
-											username,
-											comments
-										);
-										resp1=AoservProtocol.DONE;
-										sendInvalidateList=true;
-									}
-									break;*/
-								case SET_TICKET_CONTACT_EMAILS :
-									{
-										int ticketID = in.readCompressedInt();
-										Set<Email> contactEmails;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
-											int size = in.readCompressedInt();
-											contactEmails = AoCollections.newLinkedHashSet(size);
-											for(int i = 0; i < size; i++) {
-												contactEmails.add(Email.valueOf(in.readUTF()));
-											}
-										} else {
-											contactEmails = Profile.splitEmails(in.readUTF().trim());
-										}
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
-											String username=in.readUTF();
-											String comments=in.readUTF();
-										}
-										process.setCommand(
-											"set_ticket_contact_emails",
-											ticketID,
-											contactEmails
+											name
 										);
-										TicketHandler.setTicketContactEmails(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											contactEmails
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_TICKET_CONTACT_PHONE_NUMBERS :
+								case IS_LINUX_SERVER_ACCOUNT_PASSWORD_SET :
 									{
-										int ticketID = in.readCompressedInt(); 
-										String contactPhoneNumbers = in.readUTF();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
-											String username=in.readUTF();
-											String comments=in.readUTF();
-										}
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											"set_ticket_contact_phone_numbers",
-											ticketID,
-											contactPhoneNumbers
+											Command.IS_LINUX_SERVER_ACCOUNT_PASSWORD_SET,
+											userServer
 										);
-										TicketHandler.setTicketContactPhoneNumbers(
-											conn,
-											source,
-											invalidateList,
-											ticketID,
-											contactPhoneNumbers
+										resp = Response.of(
+											AoservProtocol.DONE,
+											LinuxAccountHandler.isUserServerPasswordSet(
+												conn,
+												source,
+												userServer
+											)
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_TICKET_BUSINESS :
+								case IS_LINUX_SERVER_ACCOUNT_PROCMAIL_MANUAL :
 									{
-										int ticketID = in.readCompressedInt();
-										Account.Name oldAccounting;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)>=0) {
-											// Added old accounting to behave like atomic variable
-											String oldAccountingS = in.readUTF();
-											oldAccounting = oldAccountingS.length() == 0 ? null : Account.Name.valueOf(oldAccountingS);
-										} else {
-											oldAccounting = null;
-										}
-										String newAccountingS = in.readUTF();
-										Account.Name newAccounting = newAccountingS.length() == 0 ? null : Account.Name.valueOf(newAccountingS);
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
-											String username = in.readUTF();
-											String comments = in.readUTF();
-										}
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											"set_ticket_business",
-											ticketID,
-											oldAccounting,
-											newAccounting
+											Command.IS_LINUX_SERVER_ACCOUNT_PROCMAIL_MANUAL,
+											userServer
 										);
-										boolean updated = TicketHandler.setTicketAccount(
+										int isManual = LinuxAccountHandler.isUserServerProcmailManual(
 											conn,
 											source,
-											invalidateList,
-											ticketID,
-											oldAccounting,
-											newAccounting
+											userServer
 										);
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)<0) {
-											resp = Response.DONE;
-										} else {
-											// Added boolean updated response
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_6)>=0) {
 											resp = Response.of(
 												AoservProtocol.DONE,
-												updated
+												isManual
 											);
+										} else {
+											if(isManual==AoservProtocol.FALSE) {
+												resp = Response.of(
+													AoservProtocol.DONE,
+													false
+												);
+											} else if(isManual==AoservProtocol.TRUE) {
+												resp = Response.of(
+													AoservProtocol.DONE,
+													true
+												);
+											} else {
+												throw new IOException("Unsupported value for AOServClient protocol < "+AoservProtocol.Version.VERSION_1_6);
+											}
 										}
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_TICKET_STATUS :
+								case IS_MYSQL_DATABASE_NAME_AVAILABLE :
 									{
-										int ticketID = in.readCompressedInt();
-										String oldStatus = in.readUTF();
-										String newStatus = in.readUTF();
-										long statusTimeout = in.readLong();
+										Database.Name name = Database.Name.valueOf(in.readUTF());
+										int mysqlServer = in.readCompressedInt();
 										process.setCommand(
-											"set_ticket_status",
-											ticketID,
-											oldStatus,
-											newStatus,
-											new java.util.Date(statusTimeout)
+											Command.IS_MYSQL_DATABASE_NAME_AVAILABLE,
+											name,
+											mysqlServer
 										);
-										boolean updated = TicketHandler.setTicketStatus(
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4)<0) throw new IOException(Command.IS_MYSQL_DATABASE_NAME_AVAILABLE+" call not supported for AoservProtocol < "+AoservProtocol.Version.VERSION_1_4+", please upgrade AOServ Client.");
+										boolean isAvailable = MysqlHandler.isDatabaseNameAvailable(
 											conn,
 											source,
-											invalidateList,
-											ticketID,
-											oldStatus,
-											newStatus,
-											statusTimeout
+											name,
+											mysqlServer
 										);
 										resp = Response.of(
 											AoservProtocol.DONE,
-											updated
+											isAvailable
 										);
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_TICKET_INTERNAL_NOTES :
+								case IS_MYSQL_SERVER_USER_PASSWORD_SET :
 									{
-										int ticketID = in.readCompressedInt();
-										String oldInternalNotes = in.readLongUTF();
-										String newInternalNotes = in.readLongUTF();
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											"set_ticket_internal_notes",
-											ticketID,
-											oldInternalNotes.length(),
-											newInternalNotes.length()
+											Command.IS_MYSQL_SERVER_USER_PASSWORD_SET,
+											userServer
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											MysqlHandler.isUserServerPasswordSet(
+												conn,
+												source,
+												userServer
+											)
+										);
+										sendInvalidateList = false;
+									}
+									break;
+								case IS_PACKAGE_NAME_AVAILABLE :
+									{
+										Account.Name name = Account.Name.valueOf(in.readUTF());
+										process.setCommand(
+											Command.IS_PACKAGE_NAME_AVAILABLE,
+											name
 										);
-										boolean updated = TicketHandler.setTicketInternalNotes(
+										boolean isAvailable = PackageHandler.isPackageNameAvailable(
 											conn,
-											source,
-											invalidateList,
-											ticketID,
-											oldInternalNotes,
-											newInternalNotes
+											name
 										);
 										resp = Response.of(
 											AoservProtocol.DONE,
-											updated
+											isAvailable
 										);
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case START_APACHE :
+								case IS_POSTGRES_DATABASE_NAME_AVAILABLE :
 									{
-										int linuxServer = in.readCompressedInt();
+										com.aoindustries.aoserv.client.postgresql.Database.Name name = com.aoindustries.aoserv.client.postgresql.Database.Name.valueOf(in.readUTF());
+										int postgresServer = in.readCompressedInt();
 										process.setCommand(
-											Command.START_APACHE,
-											linuxServer
+											Command.IS_POSTGRES_DATABASE_NAME_AVAILABLE,
+											name,
+											postgresServer
 										);
-										WebHandler.startApache(
+										boolean isAvailable = PostgresqlHandler.isDatabaseNameAvailable(
 											conn,
 											source,
-											linuxServer
+											name,
+											postgresServer
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case START_CRON :
+								case IS_POSTGRES_SERVER_USER_PASSWORD_SET :
 									{
-										int linuxServer = in.readCompressedInt();
+										int userServer = in.readCompressedInt();
 										process.setCommand(
-											Command.START_CRON,
-											linuxServer
+											Command.IS_POSTGRES_SERVER_USER_PASSWORD_SET,
+											userServer
 										);
-										LinuxServerHandler.startCron(
-											conn,
-											source,
-											linuxServer
+										resp = Response.of(
+											AoservProtocol.DONE,
+											PostgresqlHandler.isUserServerPasswordSet(
+												conn,
+												source,
+												userServer
+											)
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case START_DISTRO :
+								case IS_POSTGRES_SERVER_NAME_AVAILABLE :
 									{
-										process.setPriority(Thread.MIN_PRIORITY+1);
-										currentThread.setPriority(Thread.MIN_PRIORITY+1);
-
+										com.aoindustries.aoserv.client.postgresql.Server.Name name = com.aoindustries.aoserv.client.postgresql.Server.Name.valueOf(in.readUTF());
 										int linuxServer = in.readCompressedInt();
-										boolean includeUser = in.readBoolean();
 										process.setCommand(
-											Command.START_DISTRO,
-											linuxServer,
-											includeUser
+											Command.IS_POSTGRES_SERVER_NAME_AVAILABLE,
+											name,
+											linuxServer
 										);
-										LinuxServerHandler.startDistro(
+										boolean isAvailable = PostgresqlHandler.isServerNameAvailable(
 											conn,
 											source,
-											linuxServer,
-											includeUser
+											name,
+											linuxServer
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case START_JVM :
+								case IS_SHARED_TOMCAT_NAME_AVAILABLE :
 									{
-										int tomcatSite = in.readCompressedInt();
+										String name = in.readUTF().trim();
 										process.setCommand(
-											Command.START_JVM,
-											tomcatSite
+											Command.IS_SHARED_TOMCAT_NAME_AVAILABLE,
+											name
 										);
-										String message = WebHandler.startJVM(
+										boolean isAvailable = WebHandler.isSharedTomcatNameAvailable(
 											conn,
-											source,
-											tomcatSite
+											name
 										);
-										resp = Response.ofNullString(
+										resp = Response.of(
 											AoservProtocol.DONE,
-											message
+											isAvailable
 										);
 										sendInvalidateList = false;
 									}
 									break;
-								case START_MYSQL :
+								case IS_USERNAME_AVAILABLE :
 									{
-										int mysqlServer = in.readCompressedInt();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4) < 0) {
-											throw new IOException(Command.START_MYSQL + " call not supported for AOServ Client version < " + AoservProtocol.Version.VERSION_1_4 + ", please upgrade AOServ Client.");
-										}
+										com.aoindustries.aoserv.client.account.User.Name name = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
 										process.setCommand(
-											Command.START_MYSQL,
-											mysqlServer
+											Command.IS_USERNAME_AVAILABLE,
+											name
 										);
-										MysqlHandler.startServer(
+										boolean isAvailable = AccountUserHandler.isUserNameAvailable(
 											conn,
-											source,
-											mysqlServer
+											name
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case START_POSTGRESQL :
+								case IS_SITE_NAME_AVAILABLE :
 									{
-										int postgresServer = in.readCompressedInt();
+										String name = in.readUTF().trim();
 										process.setCommand(
-											Command.START_POSTGRESQL,
-											postgresServer
+											Command.IS_SITE_NAME_AVAILABLE,
+											name
 										);
-										PostgresqlHandler.startServer(
+										boolean isAvailable = WebHandler.isSiteNameAvailable(
 											conn,
-											source,
-											postgresServer
+											name
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											isAvailable
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case START_XFS :
+								/*case KILL_TICKET :
 									{
-										int linuxServer = in.readCompressedInt();
+										int ticketID=in.readCompressedInt();
+										String username=in.readUTF().trim();
+										String comments=in.readUTF().trim();
 										process.setCommand(
-											Command.START_XFS,
-											linuxServer
+											Command.KILL_TICKET,
+											username,
+											comments
 										);
-										LinuxServerHandler.startXfs(
+										TicketHandler.killTicket(
 											conn,
 											source,
-											linuxServer
+											invalidateList,
+											ticketID,
+											username,
+											comments
 										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=true;
 									}
-									break;
-								case START_XVFB :
+									break;*/
+								/*case REACTIVATE_TICKET :
 									{
-										int linuxServer = in.readCompressedInt();
+										int ticketID=in.readCompressedInt();
+										String username=in.readUTF().trim();
+										String comments=in.readUTF().trim();
 										process.setCommand(
-											Command.START_XVFB,
-											linuxServer
+											Command.REACTIVATE_TICKET,
+											ticketID,
+											username,
+											comments
 										);
-										LinuxServerHandler.startXvfb(
+										TicketHandler.reactivateTicket(
 											conn,
 											source,
-											linuxServer
+											invalidateList,
+											ticketID,
+											username,
+											comments
 										);
-										resp = Response.DONE;
-										sendInvalidateList = false;
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=true;
 									}
-									break;
-								case STOP_APACHE :
+									break;*/
+								case REQUEST_REPLICATION_DAEMON_ACCESS :
 									{
-										int linuxServer = in.readCompressedInt();
+										int fileReplication = in.readCompressedInt();
 										process.setCommand(
-											Command.STOP_APACHE,
-											linuxServer
+											"request_replication_daemon_access",
+											fileReplication
 										);
-										WebHandler.stopApache(
+										Server.DaemonAccess daemonAccess = FailoverHandler.requestReplicationDaemonAccess(
 											conn,
 											source,
-											linuxServer
+											fileReplication
+										);
+										resp = Response.of(
+											AoservProtocol.DONE,
+											daemonAccess.getProtocol(),
+											daemonAccess.getHost(),
+											daemonAccess.getPort().getPort(),
+											daemonAccess.getKey()
 										);
-										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case STOP_CRON :
+								case RESTART_APACHE :
 									{
 										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.STOP_CRON,
+											Command.RESTART_APACHE,
 											linuxServer
 										);
-										LinuxServerHandler.stopCron(
+										WebHandler.restartApache(
 											conn,
 											source,
 											linuxServer
@@ -9293,36 +2629,33 @@ public abstract class MasterServer {
 										sendInvalidateList = false;
 									}
 									break;
-								case STOP_JVM :
+								case RESTART_CRON :
 									{
-										int tomcatSite = in.readCompressedInt();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.STOP_JVM,
-											tomcatSite
+											Command.RESTART_CRON,
+											linuxServer
 										);
-										String message = WebHandler.stopJVM(
+										LinuxServerHandler.restartCron(
 											conn,
 											source,
-											tomcatSite
-										);
-										resp = Response.ofNullString(
-											AoservProtocol.DONE,
-											message
+											linuxServer
 										);
+										resp = Response.DONE;
 										sendInvalidateList = false;
 									}
 									break;
-								case STOP_MYSQL :
+								case RESTART_MYSQL :
 									{
 										int mysqlServer = in.readCompressedInt();
 										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4) < 0) {
-											throw new IOException(Command.STOP_MYSQL + " call not supported for AOServ Client version < " + AoservProtocol.Version.VERSION_1_4 + ", please upgrade AOServ Client.");
+											throw new IOException(Command.RESTART_MYSQL + " call not supported for AOServ Client version < " + AoservProtocol.Version.VERSION_1_4 + ", please upgrade AOServ Client.");
 										}
 										process.setCommand(
-											Command.STOP_MYSQL,
+											Command.RESTART_MYSQL,
 											mysqlServer
 										);
-										MysqlHandler.stopServer(
+										MysqlHandler.restartServer(
 											conn,
 											source,
 											mysqlServer
@@ -9331,14 +2664,14 @@ public abstract class MasterServer {
 										sendInvalidateList = false;
 									}
 									break;
-								case STOP_POSTGRESQL :
+								case RESTART_POSTGRESQL :
 									{
 										int postgresServer = in.readCompressedInt();
 										process.setCommand(
-											Command.STOP_POSTGRESQL,
+											Command.RESTART_POSTGRESQL,
 											postgresServer
 										);
-										PostgresqlHandler.stopServer(
+										PostgresqlHandler.restartServer(
 											conn,
 											source,
 											postgresServer
@@ -9347,14 +2680,14 @@ public abstract class MasterServer {
 										sendInvalidateList = false;
 									}
 									break;
-								case STOP_XFS :
+								case RESTART_XFS :
 									{
 										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.STOP_XFS,
+											Command.RESTART_XFS,
 											linuxServer
 										);
-										LinuxServerHandler.stopXfs(
+										LinuxServerHandler.restartXfs(
 											conn,
 											source,
 											linuxServer
@@ -9363,14 +2696,14 @@ public abstract class MasterServer {
 										sendInvalidateList = false;
 									}
 									break;
-								case STOP_XVFB :
+								case RESTART_XVFB :
 									{
 										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.STOP_XVFB,
+											Command.RESTART_XVFB,
 											linuxServer
 										);
-										LinuxServerHandler.stopXvfb(
+										LinuxServerHandler.restartXvfb(
 											conn,
 											source,
 											linuxServer
@@ -9379,22 +2712,26 @@ public abstract class MasterServer {
 										sendInvalidateList = false;
 									}
 									break;
-								/*case TICKET_WORK :
+								/*case SET_TICKET_ASSIGNED_TO :
 									{
-										int ticketID=in.readCompressedInt();
+										int ticketID=in.readCompressedInt(); 
+										String assignedTo=in.readUTF().trim();
+										if(assignedTo.length() == 0) assignedTo=null;
 										String username=in.readUTF().trim();
 										String comments=in.readUTF().trim();
 										process.setCommand(
-											Command.ADD_TICKET_WORK,
+											"set_ticket_assigned_to",
 											ticketID,
+											assignedTo,
 											username,
 											comments
 										);
-										TicketHandler.ticketWork(
+										TicketHandler.setTicketAssignedTo(
 											conn,
 											source,
 											invalidateList,
 											ticketID,
+											assignedTo,
 											username,
 											comments
 										);
@@ -9402,496 +2739,287 @@ public abstract class MasterServer {
 										sendInvalidateList=true;
 									}
 									break;*/
-								case TRANSACTION_APPROVED :
+								case START_APACHE :
 									{
-										int transid = in.readCompressedInt();
-										int creditCardTransaction;
-										String paymentInfo;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_28)<=0) {
-											String paymentType=in.readUTF();
-											paymentInfo = in.readNullUTF();
-											String merchant=in.readNullUTF();
-											String apr_num;
-											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_0_A_128)<0) apr_num=Integer.toString(in.readCompressedInt());
-											else apr_num=in.readUTF();
-											throw new SQLException("approve_transaction for protocol version "+AoservProtocol.Version.VERSION_1_28+" or older is no longer supported.");
-										} else {
-											creditCardTransaction = in.readCompressedInt();
-											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-												paymentInfo = in.readNullUTF();
-											} else {
-												paymentInfo = null;
-											}
-										}
+										int linuxServer = in.readCompressedInt();
+										process.setCommand(
+											Command.START_APACHE,
+											linuxServer
+										);
+										WebHandler.startApache(
+											conn,
+											source,
+											linuxServer
+										);
+										resp = Response.DONE;
+										sendInvalidateList = false;
+									}
+									break;
+								case START_CRON :
+									{
+										int linuxServer = in.readCompressedInt();
+										process.setCommand(
+											Command.START_CRON,
+											linuxServer
+										);
+										LinuxServerHandler.startCron(
+											conn,
+											source,
+											linuxServer
+										);
+										resp = Response.DONE;
+										sendInvalidateList = false;
+									}
+									break;
+								case START_DISTRO :
+									{
+										process.setPriority(Thread.MIN_PRIORITY+1);
+										currentThread.setPriority(Thread.MIN_PRIORITY+1);
+
+										int linuxServer = in.readCompressedInt();
+										boolean includeUser = in.readBoolean();
+										process.setCommand(
+											Command.START_DISTRO,
+											linuxServer,
+											includeUser
+										);
+										LinuxServerHandler.startDistro(
+											conn,
+											source,
+											linuxServer,
+											includeUser
+										);
+										resp = Response.DONE;
+										sendInvalidateList = false;
+									}
+									break;
+								case START_JVM :
+									{
+										int tomcatSite = in.readCompressedInt();
 										process.setCommand(
-											"approve_transaction",
-											transid,
-											creditCardTransaction,
-											paymentInfo
+											Command.START_JVM,
+											tomcatSite
 										);
-										BillingTransactionHandler.transactionApproved(
+										String message = WebHandler.startJVM(
 											conn,
 											source,
-											invalidateList,
-											transid,
-											creditCardTransaction,
-											paymentInfo
+											tomcatSite
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.ofNullString(
+											AoservProtocol.DONE,
+											message
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case TRANSACTION_DECLINED :
+								case START_MYSQL :
 									{
-										int transid = in.readCompressedInt();
-										int creditCardTransaction;
-										String paymentInfo;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_28)<=0) {
-											String paymentType=in.readUTF().trim();
-											paymentInfo = in.readNullUTF();
-											String merchant=in.readNullUTF();
-											throw new SQLException("decline_transaction for protocol version "+AoservProtocol.Version.VERSION_1_28+" or older is no longer supported.");
-										} else {
-											creditCardTransaction = in.readCompressedInt();
-											if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-												paymentInfo = in.readNullUTF();
-											} else {
-												paymentInfo = null;
-											}
+										int mysqlServer = in.readCompressedInt();
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4) < 0) {
+											throw new IOException(Command.START_MYSQL + " call not supported for AOServ Client version < " + AoservProtocol.Version.VERSION_1_4 + ", please upgrade AOServ Client.");
 										}
 										process.setCommand(
-											"decline_transaction",
-											transid,
-											creditCardTransaction,
-											paymentInfo
+											Command.START_MYSQL,
+											mysqlServer
 										);
-										BillingTransactionHandler.transactionDeclined(
+										MysqlHandler.startServer(
 											conn,
 											source,
-											invalidateList,
-											transid,
-											creditCardTransaction,
-											paymentInfo
+											mysqlServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case TRANSACTION_HELD :
+								case START_POSTGRESQL :
 									{
-										int transid = in.readCompressedInt();
-										int creditCardTransaction = in.readCompressedInt();
-										String paymentInfo;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-											paymentInfo = in.readNullUTF();
-										} else {
-											paymentInfo = null;
-										}
+										int postgresServer = in.readCompressedInt();
 										process.setCommand(
-											"hold_transaction",
-											transid,
-											creditCardTransaction,
-											paymentInfo
+											Command.START_POSTGRESQL,
+											postgresServer
 										);
-										BillingTransactionHandler.transactionHeld(
+										PostgresqlHandler.startServer(
 											conn,
 											source,
-											invalidateList,
-											transid,
-											creditCardTransaction,
-											paymentInfo
+											postgresServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case REACTIVATE_CREDIT_CARD :
+								case START_XFS :
 									{
-										int creditCard = in.readCompressedInt();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											"reactivate_credit_card",
-											creditCard
+											Command.START_XFS,
+											linuxServer
 										);
-										PaymentHandler.reactivateCreditCard(
+										LinuxServerHandler.startXfs(
 											conn,
 											source,
-											invalidateList,
-											creditCard
+											linuxServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_CREDIT_CARD_USE_MONTHLY :
+								case START_XVFB :
 									{
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										int creditCard = in.readCompressedInt();
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											"set_credit_card_use_monthly",
-											account,
-											creditCard
+											Command.START_XVFB,
+											linuxServer
 										);
-										PaymentHandler.setCreditCardUseMonthly(
+										LinuxServerHandler.startXvfb(
 											conn,
 											source,
-											invalidateList,
-											account,
-											creditCard
+											linuxServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_FAILOVER_FILE_REPLICATION_BIT_RATE :
+								case STOP_APACHE :
 									{
-										int fileReplication = in.readCompressedInt();
-										final Long bitRate;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_61)<=0) {
-											int bitRateInt = in.readCompressedInt();
-											bitRate = bitRateInt==-1 ? null : (long)bitRateInt;
-										} else {
-											long bitRateLong = in.readLong();
-											bitRate = bitRateLong==-1 ? null : bitRateLong;
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											"set_failover_file_replication_bit_rate",
-											fileReplication,
-											bitRate==null ? "unlimited" : bitRate.toString()
+											Command.STOP_APACHE,
+											linuxServer
 										);
-										FailoverHandler.setFileReplicationBitRate(
+										WebHandler.stopApache(
 											conn,
 											source,
-											invalidateList,
-											fileReplication,
-											bitRate
+											linuxServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case SET_FAILOVER_FILE_SCHEDULES :
+								case STOP_CRON :
 									{
-										int replication = in.readCompressedInt();
-										int size = in.readCompressedInt();
-										List<Short> hours = new ArrayList<>(size);
-										List<Short> minutes = new ArrayList<>(size);
-										for(int c=0;c<size;c++) {
-											hours.add(in.readShort());
-											minutes.add(in.readShort());
-										}
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											"set_failover_file_schedules",
-											replication,
-											size
+											Command.STOP_CRON,
+											linuxServer
 										);
-										FailoverHandler.setFileReplicationSchedules(
+										LinuxServerHandler.stopCron(
 											conn,
 											source,
-											invalidateList,
-											replication,
-											hours,
-											minutes
+											linuxServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								 case UPDATE_CREDIT_CARD :
+								case STOP_JVM :
 									{
-										int creditCard = in.readCompressedInt();
-										String cardInfo;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-											cardInfo = in.readUTF().trim();
-										} else {
-											cardInfo = null;
-										}
-										String firstName=in.readUTF().trim();
-										String lastName=in.readUTF().trim();
-										String companyName=in.readUTF().trim();
-										if(companyName.length() == 0) companyName=null;
-										String email=in.readUTF().trim();
-										if(email.length() == 0) email=null;
-										String phone=in.readUTF().trim();
-										if(phone.length() == 0) phone=null;
-										String fax=in.readUTF().trim();
-										if(fax.length() == 0) fax=null;
-										String customerId;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_1) >= 0) {
-											customerId = in.readUTF().trim();
-											if(customerId.length() == 0) customerId = null;
-										} else {
-											customerId = null;
-										}
-										String customerTaxId=in.readUTF().trim();
-										if(customerTaxId.length() == 0) customerTaxId=null;
-										String streetAddress1=in.readUTF().trim();
-										String streetAddress2=in.readUTF().trim();
-										if(streetAddress2.length() == 0) streetAddress2=null;
-										String city=in.readUTF().trim();
-										String state=in.readUTF().trim();
-										if(state.length() == 0) state=null;
-										String postalCode=in.readUTF().trim();
-										if(postalCode.length() == 0) postalCode=null;
-										String countryCode=in.readUTF().trim();
-										String description=in.readUTF().trim();
-										if(description.length() == 0) description=null;
+										int tomcatSite = in.readCompressedInt();
 										process.setCommand(
-											"update_credit_card",
-											creditCard,
-											cardInfo,
-											firstName,
-											lastName,
-											companyName,
-											email,
-											phone,
-											fax,
-											customerId,
-											customerTaxId,
-											streetAddress1,
-											streetAddress2,
-											city,
-											state,
-											postalCode,
-											countryCode,
-											description
-										);
-										PaymentHandler.updateCreditCard(
+											Command.STOP_JVM,
+											tomcatSite
+										);
+										String message = WebHandler.stopJVM(
 											conn,
 											source,
-											invalidateList,
-											creditCard,
-											cardInfo,
-											firstName,
-											lastName,
-											companyName,
-											email,
-											phone,
-											fax,
-											customerId,
-											customerTaxId,
-											streetAddress1,
-											streetAddress2,
-											city,
-											state,
-											postalCode,
-											countryCode,
-											description
+											tomcatSite
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp = Response.ofNullString(
+											AoservProtocol.DONE,
+											message
+										);
+										sendInvalidateList = false;
 									}
 									break;
-								case UPDATE_CREDIT_CARD_NUMBER_AND_EXPIRATION :
+								case STOP_MYSQL :
 									{
-										int creditCard = in.readCompressedInt();
-										String maskedCardNumber = in.readUTF();
-										Byte expirationMonth;
-										Short expirationYear;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-											expirationMonth = in.readByte();
-											expirationYear = in.readShort();
-										} else {
-											expirationMonth = null;
-											expirationYear = null;
-										}
-										String encryptedCardNumber = in.readNullUTF();
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) < 0) {
-											String encryptedExpiration = in.readNullUTF();
+										int mysqlServer = in.readCompressedInt();
+										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_4) < 0) {
+											throw new IOException(Command.STOP_MYSQL + " call not supported for AOServ Client version < " + AoservProtocol.Version.VERSION_1_4 + ", please upgrade AOServ Client.");
 										}
-										int encryptionFrom = in.readCompressedInt();
-										int encryptionRecipient = in.readCompressedInt();
 										process.setCommand(
-											"update_credit_card_number_and_expiration",
-											creditCard,
-											maskedCardNumber,
-											expirationMonth==null ? null : AoservProtocol.FILTERED,
-											expirationYear==null ? null : AoservProtocol.FILTERED,
-											encryptedCardNumber==null ? null : AoservProtocol.FILTERED,
-											encryptionFrom==-1 ? null : encryptionFrom,
-											encryptionRecipient==-1 ? null : encryptionRecipient
-										);
-										PaymentHandler.updateCreditCardNumberAndExpiration(
+											Command.STOP_MYSQL,
+											mysqlServer
+										);
+										MysqlHandler.stopServer(
 											conn,
 											source,
-											invalidateList,
-											creditCard,
-											maskedCardNumber,
-											expirationMonth,
-											expirationYear,
-											encryptedCardNumber,
-											encryptionFrom,
-											encryptionRecipient
+											mysqlServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case UPDATE_CREDIT_CARD_EXPIRATION :
+								case STOP_POSTGRESQL :
 									{
-										int creditCard = in.readCompressedInt();
-										Byte expirationMonth;
-										Short expirationYear;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_82_0) >= 0) {
-											expirationMonth = in.readByte();
-											expirationYear = in.readShort();
-										} else {
-											expirationMonth = null;
-											expirationYear = null;
-											String encryptedExpiration = in.readUTF();
-											int encryptionFrom = in.readCompressedInt();
-											int encryptionRecipient = in.readCompressedInt();
-										}
+										int postgresServer = in.readCompressedInt();
 										process.setCommand(
-											"update_credit_card_expiration",
-											creditCard,
-											expirationMonth==null ? null : AoservProtocol.FILTERED,
-											expirationYear==null ? null : AoservProtocol.FILTERED
+											Command.STOP_POSTGRESQL,
+											postgresServer
 										);
-										PaymentHandler.updateCreditCardExpiration(
+										PostgresqlHandler.stopServer(
 											conn,
 											source,
-											invalidateList,
-											creditCard,
-											expirationMonth,
-											expirationYear
+											postgresServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case UPDATE_HTTPD_TOMCAT_DATA_SOURCE:
+								case STOP_XFS :
 									{
-										int contextDataSource = in.readCompressedInt();
-										String name=in.readUTF();
-										String driverClassName=in.readUTF();
-										String url=in.readUTF();
-										String username=in.readUTF();
-										String password=in.readUTF();
-										int maxActive=in.readCompressedInt();
-										int maxIdle=in.readCompressedInt();
-										int maxWait=in.readCompressedInt();
-										String validationQuery=in.readUTF();
-										if(validationQuery.length() == 0) validationQuery=null;
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.UPDATE_HTTPD_TOMCAT_DATA_SOURCE,
-											contextDataSource,
-											name,
-											driverClassName,
-											url,
-											username,
-											AoservProtocol.FILTERED,
-											maxActive,
-											maxIdle,
-											maxWait,
-											validationQuery
+											Command.STOP_XFS,
+											linuxServer
 										);
-										WebHandler.updateContextDataSource(
+										LinuxServerHandler.stopXfs(
 											conn,
 											source,
-											invalidateList,
-											contextDataSource,
-											name,
-											driverClassName,
-											url,
-											username,
-											password,
-											maxActive,
-											maxIdle,
-											maxWait,
-											validationQuery
+											linuxServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case UPDATE_HTTPD_TOMCAT_PARAMETER :
+								case STOP_XVFB :
 									{
-										int contextParameter = in.readCompressedInt();
-										String name=in.readUTF();
-										String value=in.readUTF();
-										boolean override=in.readBoolean();
-										String description=in.readUTF();
-										if(description.length() == 0) description=null;
+										int linuxServer = in.readCompressedInt();
 										process.setCommand(
-											Command.UPDATE_HTTPD_TOMCAT_PARAMETER,
-											contextParameter,
-											name,
-											value,
-											override,
-											description
+											Command.STOP_XVFB,
+											linuxServer
 										);
-										WebHandler.updateContextParameter(
+										LinuxServerHandler.stopXvfb(
 											conn,
 											source,
-											invalidateList,
-											contextParameter,
-											name,
-											value,
-											override,
-											description
+											linuxServer
 										);
 										resp = Response.DONE;
-										sendInvalidateList = true;
+										sendInvalidateList = false;
 									}
 									break;
-								case UPDATE_PACKAGE_DEFINITION :
+								/*case TICKET_WORK :
 									{
-										int packageDefinition = in.readCompressedInt();
-										Account.Name account = Account.Name.valueOf(in.readUTF());
-										String category=in.readUTF();
-										String name=in.readUTF().trim();
-										String version=in.readUTF().trim();
-										String display=in.readUTF().trim();
-										String description=in.readUTF().trim();
-										Money setupFee;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-											int pennies = in.readCompressedInt();
-											setupFee = pennies == -1 || pennies == 0 ? null : new Money(Currency.USD, pennies, 2);
-										} else {
-											setupFee = MoneyUtil.readNullMoney(in);
-										}
-										String setupFeeTransactionType=in.readNullUTF();
-										Money monthlyRate;
-										if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
-											monthlyRate = new Money(Currency.USD, in.readCompressedInt(), 2);
-										} else {
-											monthlyRate = MoneyUtil.readMoney(in);
-										}
-										String monthlyRateTransactionType=in.readUTF();
+										int ticketID=in.readCompressedInt();
+										String username=in.readUTF().trim();
+										String comments=in.readUTF().trim();
 										process.setCommand(
-											"update_package_definition",
-											packageDefinition,
-											account,
-											category,
-											name,
-											version,
-											display,
-											description,
-											setupFee,
-											setupFeeTransactionType,
-											monthlyRate,
-											monthlyRateTransactionType
+											Command.ADD_TICKET_WORK,
+											ticketID,
+											username,
+											comments
 										);
-										PackageHandler.updatePackageDefinition(
+										TicketHandler.ticketWork(
 											conn,
 											source,
 											invalidateList,
-											packageDefinition,
-											account,
-											category,
-											name,
-											version,
-											display,
-											description,
-											setupFee,
-											setupFeeTransactionType,
-											monthlyRate,
-											monthlyRateTransactionType
+											ticketID,
+											username,
+											comments
 										);
-										resp = Response.DONE;
-										sendInvalidateList = true;
+										resp1=AoservProtocol.DONE;
+										sendInvalidateList=true;
 									}
-									break;
+									break;*/
 								case WAIT_FOR_REBUILD :
 									{
 										int clientTableID = in.readCompressedInt();
@@ -10244,6 +3372,7 @@ public abstract class MasterServer {
 							}
 							out.writeCompressedInt(-1);
 						}
+						commandSuccessful = true;
 					} catch(SQLException err) {
 						if(logSQLException) logger.log(Level.SEVERE, null, err);
 						String message=err.getMessage();
@@ -10268,6 +3397,7 @@ public abstract class MasterServer {
 						logger.log(Level.SEVERE, null, t);
 						keepOpen = false;
 					} finally {
+						RequestStatistics.recordCommand(taskCode, commandSuccessful, System.nanoTime() - commandStartNanos);
 						if(currentThread.getPriority()!=Thread.NORM_PRIORITY) {
 							currentThread.setPriority(Thread.NORM_PRIORITY);
 							process.setPriority(Thread.NORM_PRIORITY);
@@ -10305,6 +3435,10 @@ public abstract class MasterServer {
 		// Values used inside the loops
 		Identifier invalidateSourceConnectorId = invalidateSource == null ? null : invalidateSource.getConnectorId();
 
+		// Resolve the invalidated tables once for all listeners
+		List<InvalidationIndex.AffectedTable> affectedTables = InvalidationIndex.getAffectedTables(db, invalidateList);
+		if(affectedTables.isEmpty()) return;
+
 		IntList tableList = new IntArrayList();
 		// Grab a copy of cacheListeners to maximize concurrency
 		List<RequestSource> listenerCopy;
@@ -10327,65 +3461,8 @@ public abstract class MasterServer {
 					invalidateSourceConnectorId == null
 					|| !invalidateSourceConnectorId.equals(connectorId)
 				) {
-					tableList.clear();
 					// Build the list with a connection, but don't send until the connection is released
-					for(Table.TableID tableID : tableIDs) {
-						int clientTableID = TableHandler.convertToClientTableID(db, source, tableID);
-						if(clientTableID != -1) {
-							List<Account.Name> affectedBusinesses = invalidateList.getAffectedAccounts(tableID);
-							List<Integer> affectedHosts = invalidateList.getAffectedHosts(tableID);
-							if(
-								affectedBusinesses!=null
-								&& affectedHosts!=null
-							) {
-								boolean businessMatches;
-								int size=affectedBusinesses.size();
-								if(size == 0) businessMatches=true;
-								else {
-									businessMatches=false;
-									for(int c=0;c<size;c++) {
-										if(AccountHandler.canAccessAccount(db, source, affectedBusinesses.get(c))) {
-											businessMatches=true;
-											break;
-										}
-									}
-								}
-
-								// Filter by server
-								boolean serverMatches;
-								size=affectedHosts.size();
-								if(size == 0) serverMatches=true;
-								else {
-									serverMatches=false;
-									for(int c=0;c<size;c++) {
-										int host = affectedHosts.get(c);
-										if(NetHostHandler.canAccessHost(db, source, host)) {
-											serverMatches=true;
-											break;
-										}
-										if(
-											tableID==Table.TableID.AO_SERVERS
-											|| tableID==Table.TableID.IP_ADDRESSES
-											|| tableID==Table.TableID.LINUX_ACCOUNTS
-											|| tableID==Table.TableID.LINUX_SERVER_ACCOUNTS
-											|| tableID==Table.TableID.NET_DEVICES
-											|| tableID==Table.TableID.SERVERS
-											|| tableID==Table.TableID.USERNAMES
-										) {
-											// These tables invalidations are also sent to the servers failover parent
-											int failoverServer=NetHostHandler.getFailoverServer(db, host);
-											if(failoverServer!=-1 && NetHostHandler.canAccessHost(db, source, failoverServer)) {
-												serverMatches=true;
-												break;
-											}
-										}
-									}
-								}
-								// Send the invalidate through
-								if(businessMatches && serverMatches) tableList.add(clientTableID);
-							}
-						}
-					}
+					InvalidationIndex.getClientTableList(db, source, affectedTables, tableList);
 					source.cachesInvalidated(tableList);
 				}
 			} catch(IOException err) {
@@ -10498,12 +3575,18 @@ public abstract class MasterServer {
 
 			// TODO: Convert these to MasterService
 			AccountCleaner.start();
+			AoservProtocolHandler.start();
+			BillingTransactionHandler.start();
 			ClusterHandler.start();
 			PaymentHandler.start();
 			FailoverHandler.start();
+			NetReputationSetHandler.start();
 			SignupHandler.start();
 			TableHandler.start();
+			startCommandHandlers();
 			TicketHandler.start();
+			RequestStatistics.start();
+			DaemonHandler.start();
 
 			// TODO: A way to get the instance of a esrvice given its class
 			// TODO: A way to start services in dependency order
@@ -10535,12 +3618,23 @@ public abstract class MasterServer {
 				if(ports.isEmpty()) throw new IllegalArgumentException("ports is empty for protocol="+protocol);
 
 				for(String bind : binds) {
+					String engine = MasterConfiguration.getEngine(protocol, bind);
 					for(int port : ports) {
 						switch (protocol) {
 							case TCPServer.PROTOCOL_TCP:
-								new TCPServer(bind, port).start();
+								switch(engine) {
+									case TCPServer.ENGINE_THREAD:
+										new TCPServer(bind, port).start();
+										break;
+									case SelectorTCPServer.ENGINE_SELECTOR:
+										new SelectorTCPServer(bind, port).start();
+										break;
+									default:
+										throw new IllegalArgumentException("Unknown engine for protocol="+protocol+", bind="+bind+": "+engine);
+								}
 								break;
 							case SSLServer.PROTOCOL_SSL:
+								if(!TCPServer.ENGINE_THREAD.equals(engine)) throw new IllegalArgumentException("Only the "+TCPServer.ENGINE_THREAD+" engine is supported for protocol="+protocol+", bind="+bind+": "+engine);
 								new SSLServer(bind, port).start();
 								break;
 							default:
@@ -10607,6 +3701,20 @@ public abstract class MasterServer {
 					}
 					TableHandler.initGetTableHandlers(handlers.iterator(), out, true);
 				}
+				{
+					Iterable<CommandHandler> handlers = service.startCommandHandlers();
+					CommandHandler handler = service.startCommandHandler();
+					if(handler != null) {
+						// Combine into a single list
+						List<CommandHandler> merged = new ArrayList<>();
+						for(CommandHandler h : handlers) {
+							merged.add(h);
+						}
+						merged.add(handler);
+						handlers = merged;
+					}
+					initCommandHandlers(handlers.iterator(), out, true);
+				}
 				out.println(": Success");
 			} catch(Exception e) {
 				if(!started) failedServices.add(serviceAndState);
@@ -10642,14 +3750,77 @@ public abstract class MasterServer {
 				}
 				if(!otherSources.isEmpty()) {
 					// Add back since there is still a source
-					cacheListeners.put(connectorId, sources);
+					cacheListeners.put(connectorId, otherSources);
 				}
 			}
 		}
 	}
 
+	/**
+	 * The name of the column added by {@link #getProgressSql(java.lang.String)}.
+	 */
+	private static final String PROGRESS_COUNT_COLUMN = "aoserv_progress_count";
+
+	/**
+	 * Wraps a query to add the total number of rows as an additional, last
+	 * column of every row.  This allows progress information to be provided
+	 * in a single, forward-only pass.
+	 * <p>
+	 * The count is computed within the same statement, so it is always
+	 * consistent with the rows returned.  However, <code>count(*) over ()</code>
+	 * makes the server build the whole result before the first row is sent,
+	 * spilling to disk when large, as did the scrollable cursor this replaced.
+	 * Only wrap queries when the client has requested progress, which needs the
+	 * total before the first row anyway.
+	 * </p>
+	 * <p>
+	 * The outer query has no <code>ORDER BY</code>, so the order of the
+	 * wrapped query is not guaranteed to be kept.
+	 * </p>
+	 */
+	public static String getProgressSql(String sql) {
+		return
+			"select\n"
+			+ "  progress_rows.*,\n"
+			+ "  count(*) over () as " + PROGRESS_COUNT_COLUMN + "\n"
+			+ "from (\n"
+			+ sql + "\n"
+			+ ") progress_rows";
+	}
+
+	/**
+	 * Gets the total number of rows from the current row of a query wrapped
+	 * by {@link #getProgressSql(java.lang.String)}.
+	 */
+	private static long getProgressCount(ResultSet results) throws SQLException {
+		return results.getLong(results.getMetaData().getColumnCount());
+	}
+
+	/**
+	 * Writes the progress information that precedes the rows.
+	 */
+	private static void writeProgress(StreamableOutput out, AoservProtocol.Version version, long progressCount) throws IOException {
+		out.writeByte(AoservProtocol.NEXT);
+		if(version.compareTo(AoservProtocol.Version.VERSION_1_81_19) < 0) {
+			if(progressCount > StreamableOutput.MAX_COMPRESSED_INT_VALUE) {
+				throw new IOException(
+					"Too many rows to send via " + StreamableOutput.class.getSimpleName() + ".writeCompressedInt: "
+					+ progressCount + " > " + StreamableOutput.MAX_COMPRESSED_INT_VALUE
+					+ ", please upgrade to client " + AoservProtocol.Version.VERSION_1_81_19 + " or newer.");
+			}
+			out.writeCompressedInt((int)progressCount);
+		} else {
+			out.writeLong(progressCount);
+		}
+	}
+
 	/**
 	 * Writes all rows of a results set.
+	 * <p>
+	 * When providing progress with a {@link ResultSet#TYPE_FORWARD_ONLY} result,
+	 * the query must have been wrapped by {@link #getProgressSql(java.lang.String)}.
+	 * Otherwise, the result must be scrollable so the rows may be counted first.
+	 * </p>
 	 *
 	 * @return  The number of rows written
 	 */
@@ -10662,45 +3833,42 @@ public abstract class MasterServer {
 	) throws IOException, SQLException {
 		AoservProtocol.Version version = source.getProtocolVersion();
 
-		// Make one pass counting the rows if providing progress information
 		final long progressCount;
+		boolean hasRow;
 		if(provideProgress) {
-			//progressCount = 0;
-			//while (results.next()) progressCount++;
-			if(results.last()) {
-				progressCount = results.getRow();
-				results.beforeFirst();
+			if(results.getType() == ResultSet.TYPE_FORWARD_ONLY) {
+				// Total is provided on each row
+				hasRow = results.next();
+				progressCount = hasRow ? getProgressCount(results) : 0;
 			} else {
-				progressCount = 0;
-			}
-			out.writeByte(AoservProtocol.NEXT);
-			if(version.compareTo(AoservProtocol.Version.VERSION_1_81_19) < 0) {
-				if(progressCount > StreamableOutput.MAX_COMPRESSED_INT_VALUE) {
-					throw new IOException(
-						"Too many rows to send via " + StreamableOutput.class.getSimpleName() + ".writeCompressedInt: "
-						+ progressCount + " > " + StreamableOutput.MAX_COMPRESSED_INT_VALUE
-						+ ", please upgrade to client " + AoservProtocol.Version.VERSION_1_81_19 + " or newer.");
+				// Make one pass counting the rows
+				if(results.last()) {
+					progressCount = results.getRow();
+					results.beforeFirst();
+				} else {
+					progressCount = 0;
 				}
-				out.writeCompressedInt((int)progressCount);
-			} else {
-				out.writeLong(progressCount);
+				hasRow = results.next();
 			}
+			writeProgress(out, version, progressCount);
 		} else {
 			progressCount = -1;
+			hasRow = results.next();
 		}
 		long rowCount = 0;
-		while(results.next()) {
+		while(hasRow) {
 			obj.init(results);
 			out.writeByte(AoservProtocol.NEXT);
 			obj.write(out, version);
 			rowCount++;
+			hasRow = results.next();
 		}
 		if(rowCount > CursorMode.AUTO_CURSOR_ABOVE) {
 			logger.log(
 				Level.WARNING,
 				null,
 				new SQLWarning(
-					"Warning: provideProgress==true caused non-cursor select with more than "
+					"Warning: non-cursor select with more than "
 					+ CursorMode.class.getSimpleName()
 					+ ".AUTO_CURSOR_ABOVE ("
 					+ CursorMode.AUTO_CURSOR_ABOVE
@@ -10710,6 +3878,7 @@ public abstract class MasterServer {
 			);
 		}
 		if(provideProgress && progressCount != rowCount) throw new AssertionError("progressCount != rowCount: " + progressCount + " != " + rowCount);
+		RequestStatistics.addRows(rowCount);
 		return rowCount;
 	}
 
@@ -10739,6 +3908,7 @@ public abstract class MasterServer {
 			obj.write(out, version);
 		}
 		if(count < size) throw new ConcurrentModificationException("Too few objects during iteration: " + count + " < " + size);
+		RequestStatistics.addRows(count);
 		return count;
 	}
 
@@ -10770,6 +3940,7 @@ public abstract class MasterServer {
 			}
 		}
 		if(count < size) throw new ConcurrentModificationException("Too few objects during iteration: " + count + " < " + size);
+		RequestStatistics.addRows(count);
 		return count;
 	}
 
@@ -10798,15 +3969,20 @@ public abstract class MasterServer {
 			if(password == null) return "Connection attempted with empty password";
 
 			HashedPassword correctCrypted = AccountHandler.getAdministrator(db, authenticateAs).getPassword();
-			if(
-				correctCrypted == null
-				|| !correctCrypted.matches(password.clone())
-			) return "Connection attempted with invalid password";
-
-			if(correctCrypted.isRehashRecommended()) {
-				InvalidateList invalidateList = new InvalidateList();
-				AccountHandler.setAdministratorPassword(db, invalidateList, authenticateAs, password);
-				invalidateTables(db, invalidateList, null);
+			if(correctCrypted == null) return "Connection attempted with invalid password";
+
+			// Skip the password hash when recently verified
+			String cacheKey = AuthenticationCache.getKey(authenticateAs, remoteHost, password);
+			if(!AuthenticationCache.isVerified(cacheKey, correctCrypted)) {
+				if(!correctCrypted.matches(password.clone())) return "Connection attempted with invalid password";
+
+				if(correctCrypted.isRehashRecommended()) {
+					InvalidateList invalidateList = new InvalidateList();
+					AccountHandler.setAdministratorPassword(db, invalidateList, authenticateAs, password);
+					invalidateTables(db, invalidateList, null);
+				} else {
+					AuthenticationCache.setVerified(cacheKey, correctCrypted);
+				}
 			}
 		} finally {
 			if(password != null) password.destroy();
@@ -10824,10 +4000,10 @@ public abstract class MasterServer {
 	}
 
 	/**
-	 * @see  #checkAccessHostname(com.aoapps.dbc.DatabaseConnection, com.aoindustries.aoserv.master.RequestSource, java.lang.String, java.lang.String, java.util.List)
+	 * @see  #checkAccessHostname(com.aoapps.dbc.DatabaseConnection, com.aoindustries.aoserv.master.RequestSource, java.lang.String, java.lang.String, com.aoindustries.aoserv.master.dns.TldTrie)
 	 */
 	public static void checkAccessHostname(DatabaseConnection conn, RequestSource source, String action, String hostname) throws IOException, SQLException {
-		checkAccessHostname(conn, source, action, hostname, MasterServer.getService(DnsService.class).getDNSTLDs(conn));
+		checkAccessHostname(conn, source, action, hostname, MasterServer.getService(DnsService.class).getDNSTLDTrie(conn));
 	}
 
 	/**
@@ -10839,8 +4015,8 @@ public abstract class MasterServer {
 	 *
 	 * TODO: What about ending '.' on zones vs DomainName objects here?
 	 */
-	public static void checkAccessHostname(DatabaseConnection conn, RequestSource source, String action, String hostname, List<DomainName> tlds) throws IOException, SQLException {
-		String zone = ZoneTable.getDNSZoneForHostname(hostname, tlds);
+	public static void checkAccessHostname(DatabaseConnection conn, RequestSource source, String action, String hostname, TldTrie tlds) throws IOException, SQLException {
+		String zone = tlds.getDNSZoneForHostname(hostname);
 
 		if(conn.queryBoolean(
 			"select (select zone from dns.\"ForbiddenZone\" where zone=?) is not null",
@@ -10969,6 +4145,12 @@ public abstract class MasterServer {
 					},
 					"select mh.username, mh.host from master.\"UserAcl\" mh, master.\"User\" mu where mh.username=mu.username and mu.is_active"
 				);
+				// Resolve new hosts in the background, before they are needed
+				List<String> allHosts = new ArrayList<>();
+				for(List<HostAddress> hosts : myMasterHosts.values()) {
+					for(HostAddress hostAddress : hosts) allHosts.add(hostAddress.toString());
+				}
+				HostAddressCache.setHosts(allHosts);
 			}
 		}
 		if(getUser(db, user)!=null) {
@@ -10978,8 +4160,8 @@ public abstract class MasterServer {
 			String remoteHost=java.net.InetAddress.getByName(host).getHostAddress();
 			int size = hosts.size();
 			for (int c = 0; c < size; c++) {
-				String tempAddress = java.net.InetAddress.getByName(hosts.get(c).toString()).getHostAddress();
-				if (tempAddress.equals(remoteHost)) return true;
+				String tempAddress = HostAddressCache.getHostAddress(hosts.get(c).toString());
+				if (remoteHost.equals(tempAddress)) return true;
 			}
 			return false;
 		} else {
@@ -11043,15 +4225,14 @@ public abstract class MasterServer {
 	) throws IOException, SQLException {
 		AoservProtocol.Version version = source.getProtocolVersion();
 
-		long progressCount;
-		long rowCount;
+		long progressCount = -1;
+		long rowCount = 0;
 		Connection dbConn = conn.getConnection();
 		try (
 			PreparedStatement pstmt = dbConn.prepareStatement(
-				"DECLARE fetch_objects "
-				+ (provideProgress ? "SCROLL" : "NO SCROLL")
-				+ " CURSOR FOR\n"
-				+ sql
+				"DECLARE fetch_objects NO SCROLL CURSOR FOR\n"
+				// Progress is provided on each row, allowing a single pass through the cursor
+				+ (provideProgress ? getProgressSql(sql) : sql)
 			)
 		) {
 			try {
@@ -11066,46 +4247,14 @@ public abstract class MasterServer {
 		try (Statement stmt = dbConn.createStatement()) {
 			try {
 				final String fetchSql = "FETCH " + DatabaseConnection.FETCH_SIZE + " FROM fetch_objects";
-
-				// Make one pass counting the rows if providing progress information
-				if(provideProgress) {
-					progressCount = 0;
-					while(true) {
-						final int batchSize;
-						try (ResultSet results = stmt.executeQuery(currentSQL = fetchSql)) {
-							if(results.last()) {
-								batchSize = results.getRow();
-							} else {
-								batchSize = 0;
-							}
-						}
-						progressCount += batchSize;
-						if(batchSize < DatabaseConnection.FETCH_SIZE) break;
-					}
-					out.writeByte(AoservProtocol.NEXT);
-					if(version.compareTo(AoservProtocol.Version.VERSION_1_81_19) < 0) {
-						if(progressCount > StreamableOutput.MAX_COMPRESSED_INT_VALUE) {
-							throw new IOException(
-								"Too many rows to send via " + StreamableOutput.class.getSimpleName() + ".writeCompressedInt: "
-								+ progressCount + " > " + StreamableOutput.MAX_COMPRESSED_INT_VALUE
-								+ ", please upgrade to client " + AoservProtocol.Version.VERSION_1_81_19 + " or newer.");
-						}
-						out.writeCompressedInt((int)progressCount);
-					} else {
-						out.writeLong(progressCount);
-					}
-					// If progressCount is zero, no rows from query, short-cut here to avoid resetting and refetching empty results
-					if(progressCount == 0) return 0;
-					// Reset cursor
-					stmt.executeQuery(currentSQL = "FETCH ABSOLUTE 0 FROM fetch_objects");
-				} else {
-					progressCount = -1;
-				}
-				rowCount = 0;
 				while(true) {
 					int batchSize = 0;
 					try (ResultSet results = stmt.executeQuery(currentSQL = fetchSql)) {
 						while(results.next()) {
+							if(provideProgress && progressCount == -1) {
+								progressCount = getProgressCount(results);
+								writeProgress(out, version, progressCount);
+							}
 							obj.init(results);
 							out.writeByte(AoservProtocol.NEXT);
 							obj.write(out, version);
@@ -11115,6 +4264,11 @@ public abstract class MasterServer {
 					rowCount += batchSize;
 					if(batchSize < DatabaseConnection.FETCH_SIZE) break;
 				}
+				if(provideProgress && progressCount == -1) {
+					// No rows from query
+					progressCount = 0;
+					writeProgress(out, version, progressCount);
+				}
 			} finally {
 				stmt.executeUpdate(currentSQL = "CLOSE fetch_objects");
 			}
@@ -11123,6 +4277,7 @@ public abstract class MasterServer {
 			throw e;
 		}
 		if(provideProgress && progressCount != rowCount) throw new AssertionError("progressCount != rowCount: " + progressCount + " != " + rowCount);
+		RequestStatistics.addRows(rowCount);
 		return rowCount;
 	}
 
@@ -11145,8 +4300,9 @@ public abstract class MasterServer {
 		Connection dbConn = conn.getConnection(true);
 		try (
 			PreparedStatement pstmt = dbConn.prepareStatement(
-				sql,
-				provideProgress ? ResultSet.TYPE_SCROLL_SENSITIVE : ResultSet.TYPE_FORWARD_ONLY,
+				// Progress is provided on each row, allowing a forward-only result
+				provideProgress ? getProgressSql(sql) : sql,
+				ResultSet.TYPE_FORWARD_ONLY,
 				ResultSet.CONCUR_READ_ONLY
 			)
 		) {
@@ -11168,7 +4324,8 @@ public abstract class MasterServer {
 	 * or {@link #fetchObjects(com.aoapps.dbc.DatabaseConnection, com.aoindustries.aoserv.master.RequestSource, com.aoapps.hodgepodge.io.stream.StreamableOutput, boolean, com.aoindustries.aoserv.client.AOServObject, java.lang.String, java.lang.Object...) fetchObjects}
 	 * based on the {@link CursorMode}.
 	 * <p>
-	 * In particular, implements the {@link CursorMode#AUTO} mode for cursor selection.
+	 * In particular, implements the {@link CursorMode#AUTO} mode for cursor selection
+	 * by consulting the {@link CursorPlanner}.
 	 * </p>
 	 *
 	 * @return  The number of rows written
@@ -11192,12 +4349,16 @@ public abstract class MasterServer {
 		} else if(cursorMode == CursorMode.SELECT) {
 			return selectObjects(conn, source, out, provideProgress, obj, sql, params);
 		} else if(cursorMode == CursorMode.AUTO) {
-			// TODO: More crafty selection here per CursorMode.AUTO description.  This is old behavior
-			if(!provideProgress) {
-				return fetchObjects(conn, source, out, provideProgress, obj, sql, params);
+			Table.TableID tableID = obj.getTableID();
+			CursorMode planned = CursorPlanner.plan(conn, source, tableID);
+			long rowCount;
+			if(planned == CursorMode.FETCH) {
+				rowCount = fetchObjects(conn, source, out, provideProgress, obj, sql, params);
 			} else {
-				return selectObjects(conn, source, out, provideProgress, obj, sql, params);
+				rowCount = selectObjects(conn, source, out, provideProgress, obj, sql, params);
 			}
+			CursorPlanner.record(source, tableID, planned, rowCount);
+			return rowCount;
 		} else {
 			throw new AssertionError("Unexpected value for cursorMode: " + cursorMode);
 		}
@@ -11309,8 +4470,4 @@ public abstract class MasterServer {
 			}
 		}
 	}
-
-	public static void updateAOServProtocolLastUsed(DatabaseAccess db, AoservProtocol.Version protocolVersion) throws IOException, SQLException {
-		db.update("update schema.\"AoservProtocol\" set \"lastUsed\" = now()::date where version = ? and (\"lastUsed\" is null or \"lastUsed\" < now()::date)", protocolVersion.getVersion());
-	}
 }
@@ -102,5 +102,27 @@ public interface MasterService {
 		return null;
 	}
 
-	// TODO: Command handlers
+	/**
+	 * In order the reduce the number of services listed in /META-INF/services,
+	 * a handler may provide a set of {@link CommandHandler}.
+	 * These are registered only after the handler successfully
+	 * {@link #start() starts}.
+	 */
+	default Iterable<CommandHandler> startCommandHandlers() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * In order the reduce the number of services listed in /META-INF/services,
+	 * a handler may provide a {@link CommandHandler}.
+	 * This is registered only after the handler successfully
+	 * {@link #start() starts}.
+	 * <p>
+	 * When not null, this is combined into a single list, after the entries
+	 * from {@link #startCommandHandlers()}.
+	 * </p>
+	 */
+	default CommandHandler startCommandHandler() {
+		return null;
+	}
 }
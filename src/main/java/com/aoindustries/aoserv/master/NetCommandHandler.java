@@ -0,0 +1,308 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.AoCollections;
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.DomainName;
+import com.aoapps.net.InetAddress;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.net.FirewallZone;
+import com.aoindustries.aoserv.client.net.reputation.Set.AddReputation;
+import com.aoindustries.aoserv.client.net.reputation.Set.ConfidenceType;
+import com.aoindustries.aoserv.client.net.reputation.Set.ReputationType;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify IP addresses, binds, reputation, and DNS.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class NetCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.MOVE_IP_ADDRESS,
+			AoservProtocol.CommandID.SET_DNS_ZONE_TTL,
+			AoservProtocol.CommandID.SET_IP_ADDRESS_DHCP_ADDRESS,
+			AoservProtocol.CommandID.SET_IP_ADDRESS_HOSTNAME,
+			AoservProtocol.CommandID.SET_IP_ADDRESS_MONITORING_ENABLED,
+			AoservProtocol.CommandID.SET_IP_ADDRESS_PACKAGE,
+			AoservProtocol.CommandID.ADD_IP_REPUTATION,
+			AoservProtocol.CommandID.SET_NET_BIND_FIREWALLD_ZONES,
+			AoservProtocol.CommandID.SET_NET_BIND_MONITORING,
+			AoservProtocol.CommandID.UNUSED_SET_NET_BIND_OPEN_FIREWALL
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case MOVE_IP_ADDRESS :
+				{
+					int ipAddress = in.readCompressedInt();
+					int toServer = in.readCompressedInt();
+					process.setCommand(
+						Command.MOVE_IP_ADDRESS,
+						ipAddress,
+						toServer
+					);
+					IpAddressHandler.moveIpAddress(
+						conn,
+						source,
+						invalidateList,
+						ipAddress,
+						toServer
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_DNS_ZONE_TTL :
+				{
+					String zone = in.readUTF();
+					int ttl = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_DNS_ZONE_TTL,
+						zone,
+						ttl
+					);
+					MasterServer.getService(DnsService.class).setDNSZoneTTL(
+						conn,
+						source,
+						invalidateList,
+						zone,
+						ttl
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_IP_ADDRESS_DHCP_ADDRESS :
+				{
+					int ipAddress = in.readCompressedInt();
+					InetAddress dhcpAddress = InetAddress.valueOf(in.readUTF());
+					process.setCommand(
+						Command.SET_IP_ADDRESS_DHCP_ADDRESS,
+						ipAddress,
+						dhcpAddress
+					);
+					IpAddressHandler.setDhcpAddressDestination(
+						conn,
+						source,
+						invalidateList,
+						ipAddress,
+						dhcpAddress
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_IP_ADDRESS_HOSTNAME :
+				{
+					int ipAddress = in.readCompressedInt();
+					DomainName hostname = DomainName.valueOf(in.readUTF());
+					process.setCommand(
+						Command.SET_IP_ADDRESS_HOSTNAME,
+						ipAddress,
+						hostname
+					);
+					IpAddressHandler.setIpAddressHostname(
+						conn,
+						source,
+						invalidateList,
+						ipAddress,
+						hostname
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_IP_ADDRESS_MONITORING_ENABLED :
+				{
+					int ipAddress = in.readCompressedInt();
+					boolean enabled = in.readBoolean();
+					process.setCommand(
+						Command.SET_IP_ADDRESS_MONITORING_ENABLED,
+						ipAddress,
+						enabled
+					);
+					IpAddressHandler.setIpAddressMonitoringEnabled(
+						conn,
+						source,
+						invalidateList,
+						ipAddress,
+						enabled
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_IP_ADDRESS_PACKAGE :
+				{
+					int ipAddress = in.readCompressedInt();
+					Account.Name packageName = Account.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.SET_IP_ADDRESS_PACKAGE,
+						ipAddress,
+						packageName
+					);
+					IpAddressHandler.setIpAddressPackage(
+						conn,
+						source,
+						invalidateList,
+						ipAddress,
+						packageName
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case ADD_IP_REPUTATION :
+				{
+					int ipReputationSet = in.readCompressedInt();
+					int size = in.readCompressedInt();
+					AddReputation[] addReputations = new AddReputation[size];
+					for(int i=0; i<size; i++) {
+						int            host           = in.readInt();
+						ConfidenceType confidence     = ConfidenceType.fromChar(in.readChar());
+						ReputationType reputationType = ReputationType.fromChar(in.readChar());
+						short          score          = in.readShort();
+						addReputations[i] = new AddReputation(
+							host,
+							confidence,
+							reputationType,
+							score
+						);
+					}
+					process.setCommand(
+						Command.ADD_IP_REPUTATION,
+						ipReputationSet,
+						size
+					);
+					NetReputationSetHandler.addIpReputation(
+						conn,
+						source,
+						invalidateList,
+						ipReputationSet,
+						addReputations
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_NET_BIND_FIREWALLD_ZONES :
+				{
+					int bind = in.readCompressedInt();
+					int numZones = in.readCompressedInt();
+					Set<FirewallZone.Name> firewalldZones = AoCollections.newLinkedHashSet(numZones);
+					for(int i = 0; i < numZones; i++) {
+						FirewallZone.Name name = FirewallZone.Name.valueOf(in.readUTF());
+						if(!firewalldZones.add(name)) {
+							throw new IOException("Duplicate firewalld name: " + name);
+						}
+					}
+					Object[] command = new Object[2 + numZones];
+					command[0] = Command.SET_NET_BIND_FIREWALLD_ZONES;
+					command[1] = bind;
+					System.arraycopy(
+						firewalldZones.toArray(new FirewallZone.Name[numZones]),
+						0,
+						command,
+						2,
+						numZones
+					);
+					process.setCommand(command);
+					NetBindHandler.setBindFirewalldZones(
+						conn,
+						source,
+						invalidateList,
+						bind,
+						firewalldZones
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_NET_BIND_MONITORING :
+				{
+					int bind = in.readCompressedInt();
+					boolean enabled = in.readBoolean();
+					process.setCommand(
+						Command.SET_NET_BIND_MONITORING_ENABLED,
+						bind,
+						enabled
+					);
+					NetBindHandler.setBindMonitoringEnabled(
+						conn,
+						source,
+						invalidateList,
+						bind,
+						enabled
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			// This exists for compatibility with older clients (versions &lt;= 1.80.2) only.
+			case UNUSED_SET_NET_BIND_OPEN_FIREWALL :
+				{
+					int bind = in.readCompressedInt();
+					boolean openFirewall = in.readBoolean();
+					process.setCommand(
+						"set_net_bind_open_firewall",
+						bind,
+						openFirewall
+					);
+					NetBindHandler.setBindOpenFirewall(
+						conn,
+						source,
+						invalidateList,
+						bind,
+						openFirewall
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -203,7 +203,7 @@ final public class NetHostHandler {
 	}*/
 
 	public static boolean canAccessHost(DatabaseAccess db, RequestSource source, int host) throws IOException, SQLException {
-		return getAllowedHosts(db, source).contains(host);
+		return AccessIndex.canAccessHost(db, source, host);
 	}
 
 	/**
@@ -419,7 +419,7 @@ final public class NetHostHandler {
 			long id;
 			Long L=lastIDs.get(S);
 			if(L==null) id=0;
-			else id=L;
+			else id=L+1;
 			Long idLong=id;
 			lastIDs.put(S, idLong);
 
@@ -22,19 +22,29 @@
  */
 package com.aoindustries.aoserv.master;
 
+import com.aoapps.cron.CronDaemon;
+import com.aoapps.cron.CronJob;
+import com.aoapps.cron.Schedule;
 import com.aoapps.dbc.DatabaseConnection;
-import com.aoapps.sql.Connections;
 import com.aoindustries.aoserv.client.account.Account;
 import com.aoindustries.aoserv.client.master.User;
 import com.aoindustries.aoserv.client.master.UserHost;
-import com.aoindustries.aoserv.client.net.reputation.Host;
-import com.aoindustries.aoserv.client.net.reputation.Network;
 import com.aoindustries.aoserv.client.net.reputation.Set;
 import com.aoindustries.aoserv.client.schema.Table;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The <code>IpReputationSetHandler</code> handles all the accesses to the
@@ -44,6 +54,8 @@ import java.util.Map;
  */
 final public class NetReputationSetHandler {
 
+	private static final Logger logger = Logger.getLogger(NetReputationSetHandler.class.getName());
+
 	/**
 	 * Make no instances.
 	 */
@@ -121,82 +133,150 @@ final public class NetReputationSetHandler {
 			+ "IN EXCLUSIVE MODE");
 	}
 
-	/* TODO: Do in batches
-	private static void createTempTable(DatabaseConnection conn, String suffix) throws SQLException {
-		conn.update(
-			"CREATE TEMPORARY TABLE add_reputation_" + suffix + " (\n"
-			+ "  host INTEGER NOT NULL,\n"
-			+ "  network INTEGER NOT NULL,\n"
-			+ "  confidence CHAR(1) NOT NULL,\n"
-			+ "  score SMALLINT NOT NULL\n"
-			+ ")"
-		);
+	private static final AtomicLong batches = new AtomicLong();
+	private static final AtomicLong entries = new AtomicLong();
+	private static final AtomicLong batchTime = new AtomicLong();
+
+	/**
+	 * Gets the number of batches of IP reputation added.
+	 */
+	public static long getBatches() {
+		return batches.get();
 	}
 
-	private static void addTempRows(
-		DatabaseConnection conn,
-		short networkPrefix,
-		Set.AddReputation[] addReputations,
-		Set.ReputationType reputationType,
-		String suffix
-	) throws SQLException {
-		try (PreparedStatement pstmt = conn.getConnection().prepareStatement("INSERT INTO add_reputation_" + suffix + " VALUES (?,?,?,?)")) {
-			boolean hasRow = false;
-			for(Set.AddReputation addRep : addReputations) {
-				if(addRep.getReputationType()==reputationType) {
-					hasRow = true;
-					int host = addRep.getHost();
-					pstmt.setInt   (1, host);
-					pstmt.setInt   (2, getNetwork(host, networkPrefix));
-					pstmt.setString(3, Character.toString(addRep.getConfidence().toChar()));
-					pstmt.setShort (4, addRep.getScore());
-					pstmt.addBatch();
+	/**
+	 * Gets the number of IP reputation entries added.
+	 */
+	public static long getEntries() {
+		return entries.get();
+	}
+
+	/**
+	 * Gets the total time spent adding IP reputation, in milliseconds.
+	 */
+	public static long getBatchTime() {
+		return batchTime.get();
+	}
+
+	/**
+	 * Gets the existing reputations for the given hosts.
+	 *
+	 * @return  The good and bad reputations, by host
+	 */
+	private static Map<Integer, short[]> getHostReputations(DatabaseConnection conn, int ipReputationSet, Integer[] hosts) throws SQLException {
+		Map<Integer, short[]> reputations = new HashMap<>(hosts.length*4/3+1);
+		Connection dbConn = conn.getConnection();
+		try (PreparedStatement pstmt = dbConn.prepareStatement(
+			"select host, good_reputation, bad_reputation from \"net.reputation\".\"Host\" where \"set\"=? and host=any(?::int4[])"
+		)) {
+			try {
+				pstmt.setInt(1, ipReputationSet);
+				pstmt.setArray(2, dbConn.createArrayOf("int4", hosts));
+				try (ResultSet results = pstmt.executeQuery()) {
+					while(results.next()) {
+						reputations.put(results.getInt(1), new short[] {results.getShort(2), results.getShort(3)});
+					}
 				}
+			} catch(Error | RuntimeException | SQLException e) {
+				ErrorPrinter.addSQL(e, pstmt);
+				throw e;
 			}
-			if(hasRow) pstmt.executeBatch();
-		} catch(Error | RuntimeException | SQLException e) {
-			ErrorPrinter.addSQL(e, pstmt);
-			throw e;
 		}
+		return reputations;
 	}
-	 */
 
 	/**
-	 * Updates the host reputations for any that exist.
-	 * Adds the new hosts that did not exist.
-	 *
-	 * @return  true if any updated
+	 * Gets the existing counters for the given networks.
 	 */
-	/* TODO: Do in batches
-	private static boolean updateHosts(
-		DatabaseConnection conn,
-		String suffix,
-		short maxUncertainReputation,
-		short maxDefiniteReputation
-	) throws SQLException {
-		throw new SQLException("TODO: Implement method");
+	private static Map<Integer, Integer> getNetworkCounters(DatabaseConnection conn, int ipReputationSet, Integer[] networks) throws SQLException {
+		Map<Integer, Integer> counters = new HashMap<>(networks.length*4/3+1);
+		Connection dbConn = conn.getConnection();
+		try (PreparedStatement pstmt = dbConn.prepareStatement(
+			"select network, counter from \"net.reputation\".\"Network\" where \"set\"=? and network=any(?::int4[])"
+		)) {
+			try {
+				pstmt.setInt(1, ipReputationSet);
+				pstmt.setArray(2, dbConn.createArrayOf("int4", networks));
+				try (ResultSet results = pstmt.executeQuery()) {
+					while(results.next()) {
+						counters.put(results.getInt(1), results.getInt(2));
+					}
+				}
+			} catch(Error | RuntimeException | SQLException e) {
+				ErrorPrinter.addSQL(e, pstmt);
+				throw e;
+			}
+		}
+		return counters;
 	}
+
+	/**
+	 * Updates or inserts host reputations in a single statement.  The first
+	 * parameter is the set, followed by arrays of host, good reputation, and
+	 * bad reputation.
 	 */
+	private static void writeHosts(DatabaseConnection conn, String sql, int ipReputationSet, List<Integer> hosts, Map<Integer, short[]> reputations) throws SQLException {
+		int size = hosts.size();
+		Integer[] hostArray = new Integer[size];
+		Short[] goodArray = new Short[size];
+		Short[] badArray = new Short[size];
+		for(int i = 0; i < size; i++) {
+			Integer host = hosts.get(i);
+			short[] reputation = reputations.get(host);
+			hostArray[i] = host;
+			goodArray[i] = reputation[GOOD];
+			badArray[i] = reputation[BAD];
+		}
+		Connection dbConn = conn.getConnection();
+		try (PreparedStatement pstmt = dbConn.prepareStatement(sql)) {
+			try {
+				pstmt.setInt(1, ipReputationSet);
+				pstmt.setArray(2, dbConn.createArrayOf("int4", hostArray));
+				pstmt.setArray(3, dbConn.createArrayOf("int2", goodArray));
+				pstmt.setArray(4, dbConn.createArrayOf("int2", badArray));
+				int rowCount = pstmt.executeUpdate();
+				if(rowCount != size) throw new SQLException("Wrong number of rows updated: " + rowCount + " != " + size);
+			} catch(Error | RuntimeException | SQLException e) {
+				ErrorPrinter.addSQL(e, pstmt);
+				throw e;
+			}
+		}
+	}
 
 	/**
-	 * Updates the network reputations for any that exist.
-	 * Adds the new networks that did not exist.
-	 *
-	 * @return  true if any updated
+	 * Updates or inserts network counters in a single statement.  The first
+	 * parameter is the set, followed by arrays of network and counter.
 	 */
-	/* TODO: Do in batches
-	private static boolean updateNetworks(
-		DatabaseConnection conn,
-		String suffix,
-		short networkPrefix,
-		short maxNetworkReputation
-	) throws SQLException {
-		// Determine the maximum score that will result in maxNetworkReputation when divided by network size
-		final int maxScore = ((maxNetworkReputation + 1) << (32 - networkPrefix)) - 1;
-		conn.execute
-		throw new SQLException("TODO: Implement method");
+	private static void writeNetworks(DatabaseConnection conn, String sql, int ipReputationSet, List<Integer> networks, Map<Integer, Integer> counters) throws SQLException {
+		int size = networks.size();
+		Integer[] networkArray = new Integer[size];
+		Integer[] counterArray = new Integer[size];
+		for(int i = 0; i < size; i++) {
+			Integer network = networks.get(i);
+			networkArray[i] = network;
+			counterArray[i] = counters.get(network);
+		}
+		Connection dbConn = conn.getConnection();
+		try (PreparedStatement pstmt = dbConn.prepareStatement(sql)) {
+			try {
+				pstmt.setInt(1, ipReputationSet);
+				pstmt.setArray(2, dbConn.createArrayOf("int4", networkArray));
+				pstmt.setArray(3, dbConn.createArrayOf("int4", counterArray));
+				int rowCount = pstmt.executeUpdate();
+				if(rowCount != size) throw new SQLException("Wrong number of rows updated: " + rowCount + " != " + size);
+			} catch(Error | RuntimeException | SQLException e) {
+				ErrorPrinter.addSQL(e, pstmt);
+				throw e;
+			}
+		}
 	}
+
+	/**
+	 * The index of good and bad reputation in the reputations arrays.
 	 */
+	private static final int
+		GOOD = 0,
+		BAD = 1;
 
 	private static short constrainReputation(int newReputation, Set.ConfidenceType confidence, short maxUncertainReputation, short maxDefiniteReputation) {
 		if(confidence==Set.ConfidenceType.UNCERTAIN) {
@@ -229,11 +309,11 @@ final public class NetReputationSetHandler {
 			final short maxNetworkReputation   = conn.queryShort("SELECT max_network_reputation   FROM \"net.reputation\".\"Set\" WHERE id=?", ipReputationSet);
 			final int   maxNetworkCounter        = ((maxNetworkReputation + 1) << (32 - networkPrefix)) - 1;
 
-			// Will only send signals when changed
-			boolean hostsUpdated = false;
-			boolean networksUpdated = false;
+			long startNanos = System.nanoTime();
 
-			// <editor-fold desc="Non-batched">
+			// The distinct hosts, in order of first appearance
+			Map<Integer, Boolean> distinctHosts = new LinkedHashMap<>(addReputations.length*4/3+1);
+			for(Set.AddReputation addRep : addReputations) distinctHosts.put(addRep.getHost(), Boolean.TRUE);
 
 			// Lock for update
 			lockForUpdate(conn);
@@ -241,186 +321,174 @@ final public class NetReputationSetHandler {
 			// Flag as rep added
 			conn.update("UPDATE \"net.reputation\".\"Set\" SET last_reputation_added=now() WHERE id=?", ipReputationSet);
 
+			// Read all existing hosts in one query
+			Map<Integer, short[]> hostReputations = getHostReputations(conn, ipReputationSet, distinctHosts.keySet().toArray(new Integer[distinctHosts.size()]));
+			Map<Integer, Boolean> existingHosts = new HashMap<>(hostReputations.size()*4/3+1);
+			for(Integer host : hostReputations.keySet()) existingHosts.put(host, Boolean.TRUE);
+
+			// Apply each reputation in order, exactly as if applied to the database one at a time.
+			// A host that does not exist has zero good and bad reputation.
+			Map<Integer, Boolean> changedHosts = new LinkedHashMap<>();
+			Map<Integer, Long> networkChanges = new LinkedHashMap<>();
 			for(Set.AddReputation addRep : addReputations) {
-				int host = addRep.getHost();
-				Set.ConfidenceType confidence = addRep.getConfidence();
+				Integer host = addRep.getHost();
 				Set.ReputationType reputationType = addRep.getReputationType();
-				short score = addRep.getScore();
-				Host dbHost = conn.queryObject(
-					Connections.DEFAULT_TRANSACTION_ISOLATION, true, false,
-					(ResultSet result) -> {
-						Host obj = new Host();
-						obj.init(result);
-						return obj;
-					},
-					"select * from \"net.reputation\".\"Host\" where \"set\"=? and host=?",
-					ipReputationSet,
-					host
-				);
-				int positiveChange = 0;
-				if(dbHost==null) {
-					// Add new
-					short goodReputation = 0;
-					short badReputation = 0;
-					// Constraint score by confidence
-					short constrainedReputation = constrainReputation(score, confidence, maxUncertainReputation, maxDefiniteReputation);
-					// Resolve starting reputation
-					if(reputationType==Set.ReputationType.GOOD) {
-						goodReputation = constrainedReputation;
-						// Update positiveChange for network reputation
-						positiveChange = goodReputation;
-					} else if(reputationType==Set.ReputationType.BAD) {
-						badReputation = constrainedReputation;
-					} else {
-						throw new AssertionError("Unexpected value for reputationType: " + reputationType);
-					}
-					if(goodReputation!=0 || badReputation!=0) {
-						int rowCount = conn.update(
-							"INSERT INTO \"net.reputation\".\"Host\" (\"set\", host, good_reputation, bad_reputation) VALUES (?,?,?,?)",
-							ipReputationSet,
-							host,
-							goodReputation,
-							badReputation
-						);
-						if(rowCount!=1) throw new SQLException("Wrong number of rows updated: " + rowCount);
-						hostsUpdated = true;
-					}
+				int index;
+				if(reputationType==Set.ReputationType.GOOD) {
+					index = GOOD;
+				} else if(reputationType==Set.ReputationType.BAD) {
+					index = BAD;
 				} else {
-					if(reputationType==Set.ReputationType.GOOD) {
-						short oldGoodReputation = dbHost.getGoodReputation();
-						short newGoodReputation = constrainReputation(
-							(int)oldGoodReputation + (int)score,
-							confidence,
-							maxUncertainReputation,
-							maxDefiniteReputation
-						);
-						if(newGoodReputation!=oldGoodReputation) {
-							int rowCount = conn.update(
-								"UPDATE \"net.reputation\".\"Host\" SET good_reputation=? WHERE \"set\"=? AND host=?",
-								newGoodReputation,
-								ipReputationSet,
-								host
-							);
-							if(rowCount!=1) throw new SQLException("Wrong number of rows updated: " + rowCount);
-							hostsUpdated = true;
-							// Update positiveChange for network reputation
-							positiveChange = newGoodReputation - oldGoodReputation;
-						}
-					} else if(reputationType==Set.ReputationType.BAD) {
-						short oldBadReputation = dbHost.getBadReputation();
-						short newBadReputation = constrainReputation(
-							(int)oldBadReputation + (int)score,
-							confidence,
-							maxUncertainReputation,
-							maxDefiniteReputation
-						);
-						if(newBadReputation!=oldBadReputation) {
-							int rowCount = conn.update(
-								"UPDATE \"net.reputation\".\"Host\" SET bad_reputation=? WHERE \"set\"=? AND host=?",
-								newBadReputation,
-								ipReputationSet,
-								host
-							);
-							if(rowCount!=1) throw new SQLException("Wrong number of rows updated: " + rowCount);
-							hostsUpdated = true;
-						}
-					} else {
-						throw new AssertionError("Unexpected value for reputationType: " + reputationType);
-					}
+					throw new AssertionError("Unexpected value for reputationType: " + reputationType);
 				}
-				if(positiveChange>0) {
+				short[] reputation = hostReputations.get(host);
+				if(reputation == null) {
+					reputation = new short[2];
+					hostReputations.put(host, reputation);
+				}
+				short oldReputation = reputation[index];
+				short newReputation = constrainReputation(
+					(int)oldReputation + (int)addRep.getScore(),
+					addRep.getConfidence(),
+					maxUncertainReputation,
+					maxDefiniteReputation
+				);
+				if(newReputation!=oldReputation) {
+					reputation[index] = newReputation;
+					changedHosts.put(host, Boolean.TRUE);
 					// Update network when positive change applied
-					int network = getNetwork(host, networkPrefix);
-					Network dbNetwork = conn.queryObject(
-						Connections.DEFAULT_TRANSACTION_ISOLATION, true, false,
-						(ResultSet result) -> {
-							Network obj = new Network();
-							obj.init(result);
-							return obj;
-						},
-						"select * from \"net.reputation\".\"Network\" where \"set\"=? and network=?",
-						ipReputationSet,
-						network
-					);
-					if(dbNetwork==null) {
-						// Add new
-						int networkCounter = positiveChange;
-						if(networkCounter>maxNetworkCounter) networkCounter = maxNetworkCounter;
-						int rowCount = conn.update(
-							"INSERT INTO \"net.reputation\".\"Network\" (\"set\", network, counter) VALUES (?,?,?)",
-							ipReputationSet,
-							network,
-							networkCounter
-						);
-						if(rowCount!=1) throw new SQLException("Wrong number of rows updated: " + rowCount);
-						networksUpdated = true;
-					} else {
-						// Update existing
-						int oldCounter = dbNetwork.getCounter();
-						long newCounterLong = (long)oldCounter + (long)positiveChange;
-						int newCounter = newCounterLong <= maxNetworkCounter ? (int)newCounterLong : maxNetworkCounter;
-						if(newCounter!=oldCounter) {
-							int rowCount = conn.update(
-								"UPDATE \"net.reputation\".\"Network\" SET counter=? WHERE \"set\"=? AND network=?",
-								newCounter,
-								ipReputationSet,
-								network
-							);
-							if(rowCount!=1) throw new SQLException("Wrong number of rows updated: " + rowCount);
-							networksUpdated = true;
-						}
+					if(index==GOOD && newReputation>oldReputation) {
+						networkChanges.merge(getNetwork(host, networkPrefix), (long)(newReputation - oldReputation), Long::sum);
 					}
 				}
 			}
-			// </editor-fold>
 
-			// <editor-fold desc="Batched">
-			/* TODO: Do in batches
-			try {
-				// Populate temporary tables
-				createTempTable(conn, "good");
-				createTempTable(conn, "bad");
-
-				// Add all rows in big batches
-				addTempRows(conn, networkPrefix, addReputations, Set.ReputationType.GOOD, "good");
-				addTempRows(conn, networkPrefix, addReputations, Set.ReputationType.BAD,  "bad");
-
-				// Lock for update
-				lockForUpdate(conn);
-
-				// Update hosts
-				if(updateHosts(conn, "good", maxUncertainReputation, maxDefiniteReputation)) hostsUpdated = true;
-				if(updateHosts(conn, "bad" , maxUncertainReputation, maxDefiniteReputation)) hostsUpdated = true;
-
-				// Update networks (only good)
-				if(updateNetworks(conn, "good", networkPrefix, maxNetworkReputation)) networksUpdated = true;
-				//if(updateNetworks(conn, "bad" , networkPrefix, maxNetworkReputation)) networksUpdated = true;
-			} finally {
-				conn.update("DROP TABLE IF EXISTS add_reputation_good");
-				conn.update("DROP TABLE IF EXISTS add_reputation_bad");
+			// Write the changed hosts in one update and one insert
+			List<Integer> updateHosts = new ArrayList<>();
+			List<Integer> insertHosts = new ArrayList<>();
+			for(Integer host : changedHosts.keySet()) {
+				if(existingHosts.containsKey(host)) updateHosts.add(host);
+				else insertHosts.add(host);
 			}
-			 */
-			// </editor-fold>
-
-			// Notify all clients of the update
-			if(hostsUpdated) {
-				invalidateList.addTable(
+			if(!updateHosts.isEmpty()) {
+				writeHosts(
 					conn,
-					Table.TableID.IP_REPUTATION_SET_HOSTS,
-					account,
-					AccountHandler.getHostsForAccount(conn, account),
-					false
+					"UPDATE \"net.reputation\".\"Host\" h SET good_reputation=u.good, bad_reputation=u.bad\n"
+					+ "FROM (SELECT ?::integer AS \"set\", * FROM unnest(?::int4[], ?::int2[], ?::int2[]) AS t(host, good, bad)) u\n"
+					+ "WHERE h.\"set\"=u.\"set\" AND h.host=u.host",
+					ipReputationSet,
+					updateHosts,
+					hostReputations
 				);
 			}
-			if(networksUpdated) {
-				invalidateList.addTable(
+			if(!insertHosts.isEmpty()) {
+				writeHosts(
 					conn,
-					Table.TableID.IP_REPUTATION_SET_NETWORKS,
-					account,
-					AccountHandler.getHostsForAccount(conn, account),
-					false
+					"INSERT INTO \"net.reputation\".\"Host\" (\"set\", host, good_reputation, bad_reputation)\n"
+					+ "SELECT ?, host, good, bad FROM unnest(?::int4[], ?::int2[], ?::int2[]) AS t(host, good, bad)",
+					ipReputationSet,
+					insertHosts,
+					hostReputations
 				);
 			}
+			// Will only send signals when changed
+			boolean hostsUpdated = !changedHosts.isEmpty();
+
+			// Apply the positive changes to networks
+			boolean networksUpdated = false;
+			if(!networkChanges.isEmpty()) {
+				Map<Integer, Integer> networkCounters = getNetworkCounters(conn, ipReputationSet, networkChanges.keySet().toArray(new Integer[networkChanges.size()]));
+				List<Integer> updateNetworks = new ArrayList<>();
+				List<Integer> insertNetworks = new ArrayList<>();
+				for(Map.Entry<Integer, Long> entry : networkChanges.entrySet()) {
+					Integer network = entry.getKey();
+					Integer oldCounter = networkCounters.get(network);
+					long newCounterLong = (oldCounter == null ? 0 : oldCounter) + entry.getValue();
+					int newCounter = newCounterLong <= maxNetworkCounter ? (int)newCounterLong : maxNetworkCounter;
+					if(oldCounter == null) {
+						networkCounters.put(network, newCounter);
+						insertNetworks.add(network);
+					} else if(newCounter != oldCounter) {
+						networkCounters.put(network, newCounter);
+						updateNetworks.add(network);
+					}
+				}
+				if(!updateNetworks.isEmpty()) {
+					writeNetworks(
+						conn,
+						"UPDATE \"net.reputation\".\"Network\" n SET counter=u.counter\n"
+						+ "FROM (SELECT ?::integer AS \"set\", * FROM unnest(?::int4[], ?::int4[]) AS t(network, counter)) u\n"
+						+ "WHERE n.\"set\"=u.\"set\" AND n.network=u.network",
+						ipReputationSet,
+						updateNetworks,
+						networkCounters
+					);
+					networksUpdated = true;
+				}
+				if(!insertNetworks.isEmpty()) {
+					writeNetworks(
+						conn,
+						"INSERT INTO \"net.reputation\".\"Network\" (\"set\", network, counter)\n"
+						+ "SELECT ?, network, counter FROM unnest(?::int4[], ?::int4[]) AS t(network, counter)",
+						ipReputationSet,
+						insertNetworks,
+						networkCounters
+					);
+					networksUpdated = true;
+				}
+			}
+
+			long timeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+			batches.incrementAndGet();
+			entries.addAndGet(addReputations.length);
+			batchTime.addAndGet(timeMillis);
+			if(logger.isLoggable(Level.FINE)) {
+				logger.fine(
+					"ipReputationSet=" + ipReputationSet
+					+ ": " + addReputations.length + " entries"
+					+ ", " + updateHosts.size() + " hosts updated"
+					+ ", " + insertHosts.size() + " hosts added"
+					+ ", " + networkChanges.size() + " networks changed"
+					+ " in " + timeMillis + " ms"
+					+ (timeMillis > 0 ? " (" + (addReputations.length * 1000L / timeMillis) + " entries/second)" : "")
+				);
+			}
+
+			// Notify all clients of the update
+			invalidate(conn, invalidateList, account, hostsUpdated, networksUpdated);
+		}
+	}
+
+	/**
+	 * Notifies the clients of the set's account, as well as all routers, of
+	 * updated hosts and/or networks.
+	 */
+	private static void invalidate(
+		DatabaseConnection conn,
+		InvalidateList invalidateList,
+		Account.Name account,
+		boolean hostsUpdated,
+		boolean networksUpdated
+	) throws IOException, SQLException {
+		if(hostsUpdated) {
+			invalidateList.addTable(
+				conn,
+				Table.TableID.IP_REPUTATION_SET_HOSTS,
+				account,
+				AccountHandler.getHostsForAccount(conn, account),
+				false
+			);
+		}
+		if(networksUpdated) {
+			invalidateList.addTable(
+				conn,
+				Table.TableID.IP_REPUTATION_SET_NETWORKS,
+				account,
+				AccountHandler.getHostsForAccount(conn, account),
+				false
+			);
+		}
+		if(hostsUpdated || networksUpdated) {
 			// Also notify routers
 			for(Map.Entry<com.aoindustries.aoserv.client.account.User.Name, User> entry : MasterServer.getUsers(conn).entrySet()) {
 				com.aoindustries.aoserv.client.account.User.Name user = entry.getKey();
@@ -450,6 +518,255 @@ final public class NetReputationSetHandler {
 		}
 	}
 
-	// TODO: CronJob that decays and cleans reputation
+	/**
+	 * The maximum number of hosts or networks decayed per transaction.  Each
+	 * batch is committed separately so that adding reputation is not blocked
+	 * for the duration of an entire set.
+	 */
+	private static final int DECAY_BATCH_SIZE = 1000;
+
+	/**
+	 * A set that is due for decay.
+	 */
+	private static class DecaySet {
+
+		private final int id;
+		private final short networkPrefix;
+		private final long hostSteps;
+		private final long networkSteps;
+
+		private DecaySet(int id, short networkPrefix, long hostSteps, long networkSteps) {
+			this.id = id;
+			this.networkPrefix = networkPrefix;
+			this.hostSteps = hostSteps;
+			this.networkSteps = networkSteps;
+		}
+	}
+
+	/**
+	 * Decays the reputation of all sets that are due.  Each elapsed
+	 * <code>host_decay_interval</code> moves both the good and bad reputation of
+	 * every host one closer to zero, and each elapsed
+	 * <code>network_decay_interval</code> reduces every network by one point of
+	 * reputation.  Rows that decay to zero are deleted.
+	 * <p>
+	 * The last decay times are advanced by whole intervals before the rows are
+	 * decayed, so an interrupted run will under-decay instead of decaying twice.
+	 * </p>
+	 */
+	private static void decay() throws IOException, SQLException {
+		MasterDatabase database = MasterDatabase.getDatabase();
+		List<DecaySet> decaySets;
+		try (DatabaseConnection conn = database.connect()) {
+			decaySets = conn.queryCall(
+				results -> {
+					List<DecaySet> list = new ArrayList<>();
+					while(results.next()) {
+						list.add(
+							new DecaySet(
+								results.getInt("id"),
+								results.getShort("network_prefix"),
+								results.getLong("host_steps"),
+								results.getLong("network_steps")
+							)
+						);
+					}
+					return list;
+				},
+				"select * from (\n"
+				+ "  select\n"
+				+ "    id,\n"
+				+ "    network_prefix,\n"
+				+ "    coalesce(greatest(floor(extract(epoch from (now() - last_host_decay)) / nullif(host_decay_interval, 0)), 0), 0)::int8 as host_steps,\n"
+				+ "    coalesce(greatest(floor(extract(epoch from (now() - last_network_decay)) / nullif(network_decay_interval, 0)), 0), 0)::int8 as network_steps\n"
+				+ "  from\n"
+				+ "    \"net.reputation\".\"Set\"\n"
+				+ ") s where host_steps > 0 or network_steps > 0"
+			);
+			for(DecaySet decaySet : decaySets) {
+				conn.update(
+					"update \"net.reputation\".\"Set\" set\n"
+					+ "  last_host_decay = last_host_decay + (? * host_decay_interval) * interval '1 second',\n"
+					+ "  last_network_decay = last_network_decay + (? * network_decay_interval) * interval '1 second'\n"
+					+ "where id=?",
+					decaySet.hostSteps,
+					decaySet.networkSteps,
+					decaySet.id
+				);
+			}
+			conn.commit();
+		}
+		for(DecaySet decaySet : decaySets) {
+			long startNanos = System.nanoTime();
+			long[] hostCounts = new long[2];
+			long[] networkCounts = new long[2];
+			if(decaySet.hostSteps > 0) {
+				// Reputation is a smallint, so never need to subtract more than this
+				int steps = (int)Math.min(decaySet.hostSteps, Short.MAX_VALUE);
+				decayBatches(
+					database,
+					"with batch as (\n"
+					+ "  select host, good_reputation, bad_reputation from \"net.reputation\".\"Host\"\n"
+					+ "  where \"set\"=? and host > ? order by host limit ?\n"
+					+ "), deleted as (\n"
+					+ "  delete from \"net.reputation\".\"Host\" h using batch b\n"
+					+ "  where h.\"set\"=? and h.host=b.host and b.good_reputation <= ? and b.bad_reputation <= ?\n"
+					+ "  returning h.host\n"
+					+ "), updated as (\n"
+					+ "  update \"net.reputation\".\"Host\" h set\n"
+					+ "    good_reputation=greatest(b.good_reputation - ?, 0),\n"
+					+ "    bad_reputation=greatest(b.bad_reputation - ?, 0)\n"
+					+ "  from batch b\n"
+					+ "  where h.\"set\"=? and h.host=b.host and (b.good_reputation > ? or b.bad_reputation > ?)\n"
+					+ "  returning h.host\n"
+					+ ")\n"
+					+ "select\n"
+					+ "  (select max(host) from batch),\n"
+					+ "  (select count(*) from deleted),\n"
+					+ "  (select count(*) from updated)",
+					decaySet.id,
+					hostCounts,
+					decaySet.id, steps, steps,
+					steps, steps,
+					decaySet.id, steps, steps
+				);
+			}
+			if(decaySet.networkSteps > 0) {
+				// One point of network reputation, scaled to the counter
+				long decrement = decaySet.networkSteps << (32 - decaySet.networkPrefix);
+				if(decaySet.networkSteps >= (1L << decaySet.networkPrefix) || decrement > Integer.MAX_VALUE) decrement = Integer.MAX_VALUE;
+				decayBatches(
+					database,
+					"with batch as (\n"
+					+ "  select network, counter from \"net.reputation\".\"Network\"\n"
+					+ "  where \"set\"=? and network > ? order by network limit ?\n"
+					+ "), deleted as (\n"
+					+ "  delete from \"net.reputation\".\"Network\" n using batch b\n"
+					+ "  where n.\"set\"=? and n.network=b.network and b.counter <= ?\n"
+					+ "  returning n.network\n"
+					+ "), updated as (\n"
+					+ "  update \"net.reputation\".\"Network\" n set counter=b.counter - ?\n"
+					+ "  from batch b\n"
+					+ "  where n.\"set\"=? and n.network=b.network and b.counter > ?\n"
+					+ "  returning n.network\n"
+					+ ")\n"
+					+ "select\n"
+					+ "  (select max(network) from batch),\n"
+					+ "  (select count(*) from deleted),\n"
+					+ "  (select count(*) from updated)",
+					decaySet.id,
+					networkCounts,
+					decaySet.id, (int)decrement,
+					(int)decrement, decaySet.id, (int)decrement
+				);
+			}
+			boolean hostsUpdated = hostCounts[0] > 0 || hostCounts[1] > 0;
+			boolean networksUpdated = networkCounts[0] > 0 || networkCounts[1] > 0;
+			if(hostsUpdated || networksUpdated) {
+				InvalidateList invalidateList = new InvalidateList();
+				try (DatabaseConnection conn = database.connect()) {
+					invalidate(conn, invalidateList, getAccountForIpReputationSet(conn, decaySet.id), hostsUpdated, networksUpdated);
+					MasterServer.invalidateTables(conn, invalidateList, null);
+					conn.commit();
+				}
+			}
+			if(logger.isLoggable(Level.INFO)) {
+				logger.info(
+					"ipReputationSet=" + decaySet.id
+					+ ": decayed hosts by " + decaySet.hostSteps + ": " + hostCounts[1] + " updated, " + hostCounts[0] + " deleted"
+					+ "; decayed networks by " + decaySet.networkSteps + ": " + networkCounts[1] + " updated, " + networkCounts[0] + " deleted"
+					+ " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms"
+				);
+			}
+		}
+	}
+
+	/**
+	 * Runs a decay statement in batches, in key order, committing after each batch.
+	 *
+	 * @param  sql  The statement, starting with the parameters set, last key of previous batch, and
+	 *              batch size, followed by {@code params}.  It returns one row of the last key in the
+	 *              batch (or {@code null} when done), the number of rows deleted, and the number of rows
+	 *              updated.
+	 * @param  counts  The number of rows deleted and updated are added to indexes 0 and 1, respectively
+	 */
+	private static void decayBatches(MasterDatabase database, String sql, int ipReputationSet, long[] counts, Object ... params) throws IOException, SQLException {
+		Object[] batchParams = new Object[3 + params.length];
+		batchParams[0] = ipReputationSet;
+		batchParams[2] = DECAY_BATCH_SIZE;
+		System.arraycopy(params, 0, batchParams, 3, params.length);
+		// Starts before any int key
+		long lastKey = Integer.MIN_VALUE - 1L;
+		while(true) {
+			batchParams[1] = lastKey;
+			long[] batch;
+			try (DatabaseConnection conn = database.connect()) {
+				batch = conn.queryCall(
+					results -> {
+						if(!results.next()) throw new SQLException("No row returned");
+						int key = results.getInt(1);
+						return results.wasNull() ? null : new long[] {key, results.getLong(2), results.getLong(3)};
+					},
+					sql,
+					batchParams
+				);
+				conn.commit();
+			}
+			if(batch == null) break;
+			lastKey = batch[0];
+			counts[0] += batch[1];
+			counts[1] += batch[2];
+		}
+	}
+
+	private static boolean cronDaemonAdded = false;
+
+	/**
+	 * Runs every minute, decay itself is governed by the intervals of each set.
+	 */
+	private static final Schedule schedule = (minute, hour, dayOfMonth, month, dayOfWeek, year) -> true;
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void start() {
+		synchronized(System.out) {
+			if(!cronDaemonAdded) {
+				System.out.print("Starting " + NetReputationSetHandler.class.getSimpleName() + ": ");
+				CronDaemon.addCronJob(
+					new CronJob() {
+						@Override
+						public Schedule getSchedule() {
+							return schedule;
+						}
+
+						@Override
+						public String getName() {
+							return "Decay IP reputation";
+						}
+
+						@Override
+						@SuppressWarnings("UseSpecificCatch")
+						public void run(int minute, int hour, int dayOfMonth, int month, int dayOfWeek, int year) {
+							try {
+								decay();
+							} catch(ThreadDeath td) {
+								throw td;
+							} catch(Throwable t) {
+								logger.log(Level.SEVERE, null, t);
+							}
+						}
+
+						@Override
+						public int getThreadPriority() {
+							return Thread.NORM_PRIORITY-2;
+						}
+					},
+					logger
+				);
+				cronDaemonAdded = true;
+				System.out.println("Done");
+			}
+		}
+	}
+
 	// TODO: Enforce max_hosts here instead of when each batch of hosts is updated?
 }
@@ -62,10 +62,15 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Currency;
 import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -1484,6 +1489,290 @@ final public class PaymentHandler /*implements CronJob*/ {
 		}
 	}
 
+	/**
+	 * Processes the automatic payments concurrently, up to
+	 * {@link MasterConfiguration#getPaymentConcurrency()} at a time, and up to
+	 * {@link MasterConfiguration#getPaymentProcessorConcurrency(java.lang.String)}
+	 * at a time for each processor.  Waits for all payments to complete.
+	 * <p>
+	 * The payments are queued per processor, and each processor has only as many
+	 * workers as it allows concurrent payments.  A busy processor thus never holds
+	 * a thread waiting for its turn, and the payments of other processors proceed.
+	 * </p>
+	 */
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	private static void processAutomaticPayments(List<AutomaticPayment> automaticPayments, Timestamp lastMicrosecondOfMonth) throws IOException, InterruptedException {
+		if(automaticPayments.isEmpty()) return;
+		long startTime = System.currentTimeMillis();
+		// Queue the payments per processor
+		Map<String, Queue<AutomaticPayment>> processorQueues = new LinkedHashMap<>();
+		for(AutomaticPayment automaticPayment : automaticPayments) {
+			processorQueues.computeIfAbsent(automaticPayment.ccp_providerId, providerId -> new ConcurrentLinkedQueue<>()).add(automaticPayment);
+		}
+		// Threads are only started as workers are submitted
+		MasterExecutors.Pool paymentExecutor = MasterExecutors.newRunPool("payments", MasterConfiguration.getPaymentConcurrency());
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for(Map.Entry<String, Queue<AutomaticPayment>> entry : processorQueues.entrySet()) {
+				Queue<AutomaticPayment> queue = entry.getValue();
+				// Limit the concurrency per processor by its number of workers
+				int workers = Math.min(MasterConfiguration.getPaymentProcessorConcurrency(entry.getKey()), queue.size());
+				for(int i = 0; i < workers; i++) {
+					futures.add(
+						paymentExecutor.submit(() -> {
+							AutomaticPayment automaticPayment;
+							while((automaticPayment = queue.poll()) != null) {
+								String output;
+								try {
+									output = processAutomaticPayment(automaticPayment, lastMicrosecondOfMonth);
+								} catch(ThreadDeath td) {
+									throw td;
+								} catch(Throwable t) {
+									// One payment failing does not stop the others
+									logger.log(Level.SEVERE, "accounting=" + automaticPayment.account + ", amount=" + automaticPayment.amount, t);
+									continue;
+								}
+								synchronized(System.out) {
+									System.out.print(output);
+								}
+							}
+						})
+					);
+				}
+			}
+			for(Future<?> future : futures) {
+				try {
+					future.get();
+				} catch(ExecutionException e) {
+					logger.log(Level.SEVERE, null, e);
+				}
+			}
+		} finally {
+			paymentExecutor.shutdownNow();
+		}
+		synchronized(System.out) {
+			System.out.println("Processed " + automaticPayments.size() + " automatic payments in " + (System.currentTimeMillis() - startTime) + " ms");
+		}
+	}
+
+	/**
+	 * Processes one automatic payment using its own database connection.  The
+	 * pending transaction is committed before the card is charged, which removes
+	 * its amount from the balance of any later run, so the same balance is never
+	 * charged twice.  The result is then recorded against this pending
+	 * transaction only.
+	 *
+	 * @return  The output for the payment, so the output of concurrent payments is not interleaved
+	 */
+	private static String processAutomaticPayment(AutomaticPayment automaticPayment, Timestamp lastMicrosecondOfMonth) throws IOException, SQLException, ReflectiveOperationException {
+		StringWriter buffer = new StringWriter();
+		InvalidateList invalidateList = new InvalidateList();
+		try (
+			PrintWriter out = new PrintWriter(buffer);
+			DatabaseConnection conn = MasterDatabase.getDatabase().connect()
+		) {
+			MasterPersistenceMechanism masterPersistenceMechanism = new MasterPersistenceMechanism(conn, invalidateList);
+			out.println("accounting="+automaticPayment.account);
+			out.println("    amount="+automaticPayment.amount);
+			// Find the processor
+			CreditCardProcessor processor = new CreditCardProcessor(
+				MerchantServicesProviderFactory.getMerchantServicesProvider(
+					automaticPayment.ccp_providerId,
+					automaticPayment.ccp_className,
+					automaticPayment.ccp_param1,
+					automaticPayment.ccp_param2,
+					automaticPayment.ccp_param3,
+					automaticPayment.ccp_param4
+				),
+				masterPersistenceMechanism
+			);
+			out.println("    processor="+processor.getProviderId());
+
+			// Add as pending transaction
+			String paymentTypeName;
+			String cardInfo = automaticPayment.cardInfo;
+			// TODO: Use some sort of shared API for this
+			if(
+				cardInfo.startsWith("34")
+				|| cardInfo.startsWith("37")
+				|| cardInfo.startsWith("3" + CreditCard.UNKNOWN_DIGIT)
+			) {
+				paymentTypeName = PaymentType.AMEX;
+			} else if(cardInfo.startsWith("60")) {
+				paymentTypeName = PaymentType.DISCOVER;
+			} else if(
+				cardInfo.startsWith("51")
+				|| cardInfo.startsWith("52")
+				|| cardInfo.startsWith("53")
+				|| cardInfo.startsWith("54")
+				|| cardInfo.startsWith("55")
+				|| cardInfo.startsWith("5" + CreditCard.UNKNOWN_DIGIT)
+			) {
+				paymentTypeName = PaymentType.MASTERCARD;
+			} else if(cardInfo.startsWith("4")) {
+				paymentTypeName = PaymentType.VISA;
+			} else {
+				paymentTypeName = null;
+			}
+			int transID = BillingTransactionHandler.addTransaction(
+				conn,
+				invalidateList,
+				'T',
+				lastMicrosecondOfMonth,
+				automaticPayment.account,
+				automaticPayment.account,
+				MasterPersistenceMechanism.MASTER_BUSINESS_ADMINISTRATOR,
+				TransactionType.PAYMENT,
+				"Monthly automatic billing",
+				new BigDecimal("1.000"),
+				automaticPayment.amount.negate(),
+				paymentTypeName,
+				CreditCard.getCardNumberDisplay(cardInfo),
+				automaticPayment.ccp_providerId,
+				com.aoindustries.aoserv.client.billing.Transaction.WAITING_CONFIRMATION
+			);
+			conn.commit();
+
+			// Process payment
+			Transaction transaction = processor.sale(
+				null,
+				null,
+				new TransactionRequest(
+					false, // testMode
+					InetAddress.getLocalHost().getHostAddress(),
+					120, // duplicateWindow
+					Integer.toString(transID), // orderNumber
+					automaticPayment.amount.getCurrency(),
+					automaticPayment.amount.getValue(),
+					null, // taxAmount
+					false, // taxExempt
+					null, // shippingAmount
+					null, // dutyAmount
+					null, // shippingFirstName
+					null, // shippingLastName
+					null, // shippingCompanyName
+					null, // shippingStreetAddress1
+					null, // shippingStreetAddress2
+					null, // shippingCity
+					null, // shippingState
+					null, // shippingPostalCode
+					null, // shippingCountryCode
+					false, // emailCustomer
+					null, // merchantEmail
+					null, // invoiceNumber
+					null, // purchaseOrderNumber
+					"Monthly automatic billing"
+				),
+				new CreditCard(
+					Integer.toString(automaticPayment.cc_id),
+					automaticPayment.principalName,
+					automaticPayment.groupName,
+					automaticPayment.ccp_providerId,
+					automaticPayment.cc_providerUniqueId,
+					null, // cardNumber
+					automaticPayment.cardInfo,
+					automaticPayment.expirationMonth == null ? CreditCard.UNKNOWN_EXPIRATION_MONTH : automaticPayment.expirationMonth,
+					automaticPayment.expirationYear == null ? CreditCard.UNKNOWN_EXPIRATION_YEAR : automaticPayment.expirationYear,
+					null, // cardCode
+					automaticPayment.firstName,
+					automaticPayment.lastName,
+					automaticPayment.companyName,
+					automaticPayment.email,
+					automaticPayment.phone,
+					automaticPayment.fax,
+					automaticPayment.customerId,
+					automaticPayment.customerTaxId,
+					automaticPayment.streetAddress1,
+					automaticPayment.streetAddress2,
+					automaticPayment.city,
+					automaticPayment.state,
+					automaticPayment.postalCode,
+					automaticPayment.countryCode,
+					automaticPayment.description
+				)
+			);
+
+			AuthorizationResult authorizationResult = transaction.getAuthorizationResult();
+			TokenizedCreditCard tokenizedCreditCard = authorizationResult.getTokenizedCreditCard();
+			switch(authorizationResult.getCommunicationResult()) {
+				case LOCAL_ERROR :
+				case IO_ERROR :
+				case GATEWAY_ERROR :
+				{
+					// Update transaction as failed
+					//     TODO: Deactivate the card if this is the 3rd consecutive failure
+					//     TODO: Notify customer
+					BillingTransactionHandler.transactionDeclined(
+						conn,
+						invalidateList,
+						transID,
+						Integer.parseInt(transaction.getPersistenceUniqueId()),
+						tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
+					);
+					conn.commit();
+					out.println("    Result: Error");
+					break;
+				}
+				case SUCCESS :
+					// Check approval result
+					switch(authorizationResult.getApprovalResult()) {
+						case HOLD : {
+							// Update transaction
+							BillingTransactionHandler.transactionHeld(
+								conn,
+								invalidateList,
+								transID,
+								Integer.parseInt(transaction.getPersistenceUniqueId()),
+								tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
+							);
+							conn.commit();
+							out.println("    Result: Hold");
+							out.println("    Review Reason: "+authorizationResult.getReviewReason());
+							break;
+						}
+						case DECLINED : {
+							// Update transaction as declined
+							//     TODO: Deactivate the card if this is the 3rd consecutive failure
+							//     TODO: Notify customer
+							BillingTransactionHandler.transactionDeclined(
+								conn,
+								invalidateList,
+								transID,
+								Integer.parseInt(transaction.getPersistenceUniqueId()),
+								tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
+							);
+							conn.commit();
+							out.println("    Result: Declined");
+							out.println("    Decline Reason: "+authorizationResult.getDeclineReason());
+							break;
+						}
+						case APPROVED : {
+							// Update transaction as successful
+							BillingTransactionHandler.transactionApproved(
+								conn,
+								invalidateList,
+								transID,
+								Integer.parseInt(transaction.getPersistenceUniqueId()),
+								tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
+							);
+							out.println("    Result: Approved");
+							break;
+						}
+						default: {
+							throw new RuntimeException("Unexpected value for authorization approval result: "+authorizationResult.getApprovalResult());
+						}
+					}
+					break;
+				default:
+					throw new RuntimeException("Unexpected value for authorization communication result: "+authorizationResult.getCommunicationResult());
+			}
+
+			conn.commit();
+			MasterServer.invalidateTables(conn, invalidateList, null);
+		}
+		return buffer.toString();
+	}
+
 	// TODO: infoOut, warningOut, verboseOut here, too
 	private static void processAutomaticPayments(int month, int year) {
 		System.err.println("DEBUG: month=" + year + "-" + month);
@@ -1499,7 +1788,7 @@ final public class PaymentHandler /*implements CronJob*/ {
 					TIMER_REMINDER_INTERVAL
 				);
 			) {
-				MasterServer.executorService.submit(timer);
+				MasterExecutors.timers.submit(timer);
 
 				// Find the beginning of the next month (for transaction search)
 				GregorianCalendar beginningOfNextMonth = new GregorianCalendar(Type.DATE_TIME_ZONE);
@@ -1522,10 +1811,10 @@ final public class PaymentHandler /*implements CronJob*/ {
 				}
 
 				// Start the transaction
+				List<AutomaticPayment> automaticPayments;
 				try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
-					InvalidateList invalidateList = new InvalidateList();
 					// Find the accounting code, credit_card id, and account balances of all account.Account that have a credit card set for automatic payments (and is active)
-					List<AutomaticPayment> automaticPayments = conn.queryCall(
+					automaticPayments = conn.queryCall(
 						(ResultSet results) -> {
 							try {
 								List<AutomaticPayment> list = new ArrayList<>();
@@ -1667,23 +1956,13 @@ final public class PaymentHandler /*implements CronJob*/ {
 						+ "  ) AS endofmonth ON (bu.accounting, c.\"currencyCode\")=(endofmonth.accounting, endofmonth.currency)\n"
 						+ "  LEFT JOIN (\n"
 						+ "    SELECT\n"
-						+ "      bu.accounting,\n"
-						+ "      tr.\"rate.currency\" AS currency,\n"
-						+ "      sum(\n"
-						+ "        round(\n"
-						+ "          tr.quantity * tr.\"rate.value\",\n"
-						+ "          c2.\"fractionDigits\"\n"
-						+ "        )\n"
-						+ "      ) AS balance\n"
+						+ "      accounting,\n"
+						+ "      currency,\n"
+						+ "      confirmed + pending AS balance\n"
 						+ "    FROM\n"
-						+ "                account.\"Account\"     bu\n"
-						+ "      LEFT JOIN billing.\"Transaction\" tr ON bu.accounting = tr.accounting\n"
-						+ "      LEFT JOIN billing.\"Currency\"    c2 ON tr.\"rate.currency\" = c2.\"currencyCode\"\n"
+						+ "      billing.\"AccountBalance\"\n"
 						+ "    WHERE\n"
-						+ "      tr.payment_confirmed != 'N'\n"
-						+ "    GROUP BY\n"
-						+ "      bu.accounting,\n"
-						+ "      tr.\"rate.currency\"\n"
+						+ "      (confirmed, pending) != (0, 0)\n"
 						+ "  ) AS current ON (bu.accounting, c.\"currencyCode\")=(current.accounting, current.currency)\n"
 						+ "WHERE\n"
 						+ "  cc.use_monthly\n"
@@ -1698,207 +1977,9 @@ final public class PaymentHandler /*implements CronJob*/ {
 						+ "  c.\"currencyCode\"",
 						new Timestamp(beginningOfNextMonth.getTimeInMillis())
 					);
-					// Only need to create the persistence once per DB transaction
-					MasterPersistenceMechanism masterPersistenceMechanism = new MasterPersistenceMechanism(conn, invalidateList);
-					for(AutomaticPayment automaticPayment : automaticPayments) {
-						System.out.println("accounting="+automaticPayment.account);
-						System.out.println("    amount="+automaticPayment.amount);
-						// Find the processor
-						CreditCardProcessor processor = new CreditCardProcessor(
-							MerchantServicesProviderFactory.getMerchantServicesProvider(
-								automaticPayment.ccp_providerId,
-								automaticPayment.ccp_className,
-								automaticPayment.ccp_param1,
-								automaticPayment.ccp_param2,
-								automaticPayment.ccp_param3,
-								automaticPayment.ccp_param4
-							),
-							masterPersistenceMechanism
-						);
-						System.out.println("    processor="+processor.getProviderId());
-
-						// Add as pending transaction
-						String paymentTypeName;
-						String cardInfo = automaticPayment.cardInfo;
-						// TODO: Use some sort of shared API for this
-						if(
-							cardInfo.startsWith("34")
-							|| cardInfo.startsWith("37")
-							|| cardInfo.startsWith("3" + CreditCard.UNKNOWN_DIGIT)
-						) {
-							paymentTypeName = PaymentType.AMEX;
-						} else if(cardInfo.startsWith("60")) {
-							paymentTypeName = PaymentType.DISCOVER;
-						} else if(
-							cardInfo.startsWith("51")
-							|| cardInfo.startsWith("52")
-							|| cardInfo.startsWith("53")
-							|| cardInfo.startsWith("54")
-							|| cardInfo.startsWith("55")
-							|| cardInfo.startsWith("5" + CreditCard.UNKNOWN_DIGIT)
-						) {
-							paymentTypeName = PaymentType.MASTERCARD;
-						} else if(cardInfo.startsWith("4")) {
-							paymentTypeName = PaymentType.VISA;
-						} else {
-							paymentTypeName = null;
-						}
-						int transID = BillingTransactionHandler.addTransaction(
-							conn,
-							invalidateList,
-							'T',
-							lastMicrosecondOfMonth,
-							automaticPayment.account,
-							automaticPayment.account,
-							MasterPersistenceMechanism.MASTER_BUSINESS_ADMINISTRATOR,
-							TransactionType.PAYMENT,
-							"Monthly automatic billing",
-							new BigDecimal("1.000"),
-							automaticPayment.amount.negate(),
-							paymentTypeName,
-							CreditCard.getCardNumberDisplay(cardInfo),
-							automaticPayment.ccp_providerId,
-							com.aoindustries.aoserv.client.billing.Transaction.WAITING_CONFIRMATION
-						);
-						conn.commit();
-
-						// Process payment
-						Transaction transaction = processor.sale(
-							null,
-							null,
-							new TransactionRequest(
-								false, // testMode
-								InetAddress.getLocalHost().getHostAddress(),
-								120, // duplicateWindow
-								Integer.toString(transID), // orderNumber
-								automaticPayment.amount.getCurrency(),
-								automaticPayment.amount.getValue(),
-								null, // taxAmount
-								false, // taxExempt
-								null, // shippingAmount
-								null, // dutyAmount
-								null, // shippingFirstName
-								null, // shippingLastName
-								null, // shippingCompanyName
-								null, // shippingStreetAddress1
-								null, // shippingStreetAddress2
-								null, // shippingCity
-								null, // shippingState
-								null, // shippingPostalCode
-								null, // shippingCountryCode
-								false, // emailCustomer
-								null, // merchantEmail
-								null, // invoiceNumber
-								null, // purchaseOrderNumber
-								"Monthly automatic billing"
-							),
-							new CreditCard(
-								Integer.toString(automaticPayment.cc_id),
-								automaticPayment.principalName,
-								automaticPayment.groupName,
-								automaticPayment.ccp_providerId,
-								automaticPayment.cc_providerUniqueId,
-								null, // cardNumber
-								automaticPayment.cardInfo,
-								automaticPayment.expirationMonth == null ? CreditCard.UNKNOWN_EXPIRATION_MONTH : automaticPayment.expirationMonth,
-								automaticPayment.expirationYear == null ? CreditCard.UNKNOWN_EXPIRATION_YEAR : automaticPayment.expirationYear,
-								null, // cardCode
-								automaticPayment.firstName,
-								automaticPayment.lastName,
-								automaticPayment.companyName,
-								automaticPayment.email,
-								automaticPayment.phone,
-								automaticPayment.fax,
-								automaticPayment.customerId,
-								automaticPayment.customerTaxId,
-								automaticPayment.streetAddress1,
-								automaticPayment.streetAddress2,
-								automaticPayment.city,
-								automaticPayment.state,
-								automaticPayment.postalCode,
-								automaticPayment.countryCode,
-								automaticPayment.description
-							)
-						);
-
-						AuthorizationResult authorizationResult = transaction.getAuthorizationResult();
-						TokenizedCreditCard tokenizedCreditCard = authorizationResult.getTokenizedCreditCard();
-						switch(authorizationResult.getCommunicationResult()) {
-							case LOCAL_ERROR :
-							case IO_ERROR :
-							case GATEWAY_ERROR :
-							{
-								// Update transaction as failed
-								//     TODO: Deactivate the card if this is the 3rd consecutive failure
-								//     TODO: Notify customer
-								BillingTransactionHandler.transactionDeclined(
-									conn,
-									invalidateList,
-									transID,
-									Integer.parseInt(transaction.getPersistenceUniqueId()),
-									tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
-								);
-								conn.commit();
-								System.out.println("    Result: Error");
-								break;
-							}
-							case SUCCESS :
-								// Check approval result
-								switch(authorizationResult.getApprovalResult()) {
-									case HOLD : {
-										// Update transaction
-										BillingTransactionHandler.transactionHeld(
-											conn,
-											invalidateList,
-											transID,
-											Integer.parseInt(transaction.getPersistenceUniqueId()),
-											tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
-										);
-										conn.commit();
-										System.out.println("    Result: Hold");
-										System.out.println("    Review Reason: "+authorizationResult.getReviewReason());
-										break;
-									}
-									case DECLINED : {
-										// Update transaction as declined
-										//     TODO: Deactivate the card if this is the 3rd consecutive failure
-										//     TODO: Notify customer
-										BillingTransactionHandler.transactionDeclined(
-											conn,
-											invalidateList,
-											transID,
-											Integer.parseInt(transaction.getPersistenceUniqueId()),
-											tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
-										);
-										conn.commit();
-										System.out.println("    Result: Declined");
-										System.out.println("    Decline Reason: "+authorizationResult.getDeclineReason());
-										break;
-									}
-									case APPROVED : {
-										// Update transaction as successful
-										BillingTransactionHandler.transactionApproved(
-											conn,
-											invalidateList,
-											transID,
-											Integer.parseInt(transaction.getPersistenceUniqueId()),
-											tokenizedCreditCard == null ? null : CreditCard.getCardNumberDisplay(tokenizedCreditCard.getReplacementMaskedCardNumber())
-										);
-										System.out.println("    Result: Approved");
-										break;
-									}
-									default: {
-										throw new RuntimeException("Unexpected value for authorization approval result: "+authorizationResult.getApprovalResult());
-									}
-								}
-								break;
-							default:
-								throw new RuntimeException("Unexpected value for authorization communication result: "+authorizationResult.getCommunicationResult());
-						}
-					}
 					conn.commit();
-					MasterServer.invalidateTables(conn, invalidateList, null);
 				}
+				processAutomaticPayments(automaticPayments, lastMicrosecondOfMonth);
 			}
 		} catch(ThreadDeath TD) {
 			throw TD;
@@ -1920,7 +2001,7 @@ final public class PaymentHandler /*implements CronJob*/ {
 				TIMER_REMINDER_INTERVAL
 			);
 		) {
-			MasterServer.executorService.submit(timer);
+			MasterExecutors.timers.submit(timer);
 
 			// Start the transaction
 			try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
@@ -32,24 +32,239 @@ import com.aoindustries.aoserv.client.master.UserHost;
 import java.io.EOFException;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The <code>RandomHandler</code> stores obtains a pool of random data from servers that have excess and provides
  * this data to those servers that need more.
+ * <p>
+ * The pool is kept in memory by an {@link EntropyPool} and written to the
+ * entropy pool file every {@link MasterConfiguration#getEntropyPoolFlushInterval()}
+ * milliseconds when changed, and on shutdown.  The file always holds the last
+ * complete snapshot, and is only written by the flush thread.
+ * </p>
+ * <p>
+ * Bytes are provided from a separate reserve of up to {@link #RESERVE_SIZE}
+ * bytes.  When writing the file, the flush thread first withdraws bytes from
+ * the pool, then writes the pool without them, and only then moves them into
+ * the reserve.  A byte that has been provided is therefore never in the file,
+ * and is not provided again after a restart.  A crash loses at most the
+ * reserve and the bytes added since the last write.
+ * </p>
  *
  * @author  AO Industries, Inc.
  */
 public final class RandomHandler {
 
+	private static final Logger logger = Logger.getLogger(RandomHandler.class.getName());
+
+	/**
+	 * The maximum number of bytes withdrawn from the pool to be provided.
+	 */
+	private static final int RESERVE_SIZE = 64 * 1024;
+
 	private static FifoFile fifoFile;
+	private static EntropyPool entropyPool;
+	private static EntropyPool entropyReserve;
+
+	/**
+	 * The value of {@link EntropyPool#getModifications()} when last written,
+	 * only accessed while holding the lock on {@link #fifoFile}.
+	 */
+	private static long flushedModifications;
+
+	/**
+	 * Wakes the flush thread early when the reserve runs low.
+	 */
+	private static final Object refillLock = new Object();
+
+	/**
+	 * Set when the reserve is below half full, only accessed while holding {@link #refillLock}.
+	 */
+	private static boolean refillRequested;
+
+	/**
+	 * Gets the entropy pool, loading it from the entropy pool file on first use.
+	 */
+	public static EntropyPool getEntropyPool() throws IOException {
+		synchronized(RandomHandler.class) {
+			if(entropyPool == null) {
+				FifoFile fifo = new FifoFile(MasterConfiguration.getEntropyPoolFilePath(), AOServConnector.MASTER_ENTROPY_POOL_SIZE);
+				int numStripes = Runtime.getRuntime().availableProcessors() * 2;
+				EntropyPool pool = new EntropyPool(
+					Math.toIntExact(AOServConnector.MASTER_ENTROPY_POOL_SIZE),
+					numStripes
+				);
+				synchronized(fifo) {
+					// Copy the contents of the file into memory, writing each part back so
+					// the file keeps the same bytes until replaced by the next flush
+					FifoFileInputStream fifoIn = fifo.getInputStream();
+					FifoFileOutputStream fifoOut = fifo.getOutputStream();
+					long available = fifoIn.available();
+					byte[] buff = new byte[4096];
+					try {
+						long pos = 0;
+						while(pos < available) {
+							int ret = fifoIn.read(buff, 0, (int)Math.min(available - pos, buff.length));
+							if(ret == -1) throw new EOFException("Unexpected EOF");
+							pool.add(buff, 0, ret);
+							fifoOut.write(buff, 0, ret);
+							pos += ret;
+						}
+					} finally {
+						Arrays.fill(buff, (byte)0);
+					}
+					fifo.flush();
+					flushedModifications = pool.getModifications();
+				}
+				fifoFile = fifo;
+				entropyPool = pool;
+				entropyReserve = new EntropyPool(
+					(int)Math.min(RESERVE_SIZE, AOServConnector.MASTER_ENTROPY_POOL_SIZE),
+					numStripes
+				);
+				startFlushThread();
+			}
+			return entropyPool;
+		}
+	}
 
-	public static FifoFile getFifoFile() throws IOException {
+	/**
+	 * Gets the reserve of bytes that may be provided, loading the pool on first use.
+	 */
+	public static EntropyPool getEntropyReserve() throws IOException {
+		getEntropyPool();
 		synchronized(RandomHandler.class) {
-			if(fifoFile == null) fifoFile = new FifoFile(MasterConfiguration.getEntropyPoolFilePath(), AOServConnector.MASTER_ENTROPY_POOL_SIZE);
-			return fifoFile;
+			return entropyReserve;
 		}
 	}
 
+	private static void startFlushThread() throws IOException {
+		long flushInterval = MasterConfiguration.getEntropyPoolFlushInterval();
+		Thread flushThread = new Thread(() -> {
+			while(true) {
+				try {
+					flush(true);
+				} catch(ThreadDeath td) {
+					throw td;
+				} catch(Throwable t) {
+					logger.log(Level.SEVERE, null, t);
+				}
+				try {
+					synchronized(refillLock) {
+						if(!refillRequested) refillLock.wait(flushInterval);
+						refillRequested = false;
+					}
+				} catch(InterruptedException e) {
+					logger.log(Level.WARNING, null, e);
+					// Restore the interrupted status
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}, "Entropy pool flush");
+		flushThread.setDaemon(true);
+		flushThread.start();
+		Runtime.getRuntime().addShutdownHook(
+			new Thread(() -> {
+				try {
+					flush(false);
+				} catch(ThreadDeath td) {
+					throw td;
+				} catch(Throwable t) {
+					logger.log(Level.SEVERE, null, t);
+				}
+			}, "Entropy pool flush on shutdown")
+		);
+	}
+
+	/**
+	 * Replaces the contents of the entropy pool file with the current contents
+	 * of the pool, if changed since last written.
+	 *
+	 * @param  refill  withdraw bytes from the pool to fill the reserve, moving
+	 *                 them into the reserve once the file no longer contains them
+	 */
+	private static void flush(boolean refill) throws IOException {
+		FifoFile fifo;
+		EntropyPool pool;
+		EntropyPool reserve;
+		synchronized(RandomHandler.class) {
+			fifo = fifoFile;
+			pool = entropyPool;
+			reserve = entropyReserve;
+		}
+		if(fifo == null) return;
+		synchronized(fifo) {
+			byte[] withdrawn = null;
+			int count = 0;
+			try {
+				if(refill) {
+					// Only the flush thread adds to the reserve, so this space remains available
+					int space = (int)reserve.getAvailable();
+					if(space > 0) {
+						withdrawn = new byte[space];
+						count = pool.get(withdrawn, 0, space);
+					}
+				}
+				long modifications = pool.getModifications();
+				if(count == 0 && modifications == flushedModifications) return;
+				byte[] snapshot = pool.snapshot();
+				try {
+					skipAll(fifo);
+					fifo.getOutputStream().write(snapshot);
+					fifo.flush();
+				} finally {
+					Arrays.fill(snapshot, (byte)0);
+				}
+				flushedModifications = modifications;
+				if(count > 0) {
+					// No longer in the file, may now be provided
+					reserve.add(withdrawn, 0, count);
+					count = 0;
+				}
+			} finally {
+				if(count > 0) {
+					// The file may still contain them, return them to the pool to be written again
+					pool.add(withdrawn, 0, count);
+				}
+				if(withdrawn != null) Arrays.fill(withdrawn, (byte)0);
+			}
+		}
+	}
+
+	/**
+	 * Removes all bytes from the file, without writing it.
+	 */
+	private static void skipAll(FifoFile fifo) throws IOException {
+		FifoFileInputStream fifoIn = fifo.getInputStream();
+		long skip = fifoIn.available();
+		while(skip > 0) {
+			long skipped = fifoIn.skip(skip);
+			if(skipped <= 0) throw new EOFException("Unexpected EOF");
+			skip -= skipped;
+		}
+	}
+
+	/**
+	 * Gets bytes from the reserve, waking the flush thread to refill it when
+	 * below half full.  Provides fewer bytes than requested, possibly none,
+	 * while the reserve is being refilled.
+	 */
+	private static int getEntropy(byte[] entropy, int numBytes) throws IOException {
+		EntropyPool reserve = getEntropyReserve();
+		int count = reserve.get(entropy, 0, numBytes);
+		if(reserve.getLength() < reserve.getMaximumLength() / 2) {
+			synchronized(refillLock) {
+				refillRequested = true;
+				refillLock.notify();
+			}
+		}
+		return count;
+	}
+
 	private static void checkAccessEntropy(DatabaseConnection conn, RequestSource source, String action) throws IOException, SQLException {
 		boolean isAllowed = false;
 
@@ -86,18 +301,9 @@ public final class RandomHandler {
 	) throws IOException, SQLException {
 		checkAccessEntropy(conn, source, "addMasterEntropy");
 
-		FifoFile fifo = getFifoFile();
-		synchronized(fifo) {
-			FifoFileOutputStream fifoOut = fifo.getOutputStream();
-			long available = fifoOut.available();
-			int addCount = numBytes;
-			if(available < addCount) addCount = (int)available;
-			if(addCount > 0) {
-				fifoOut.write(entropy, 0, addCount);
-				fifo.flush();
-			}
-			return fifo.getOutputStream().available();
-		}
+		EntropyPool pool = getEntropyPool();
+		pool.add(entropy, 0, numBytes);
+		return pool.getAvailable();
 	}
 
 	public static int getMasterEntropy(
@@ -108,22 +314,7 @@ public final class RandomHandler {
 	) throws IOException, SQLException {
 		checkAccessEntropy(conn, source, "getMasterEntropy");
 
-		FifoFile fifo = getFifoFile();
-		synchronized(fifo) {
-			FifoFileInputStream fifoIn = fifo.getInputStream();
-			long available = fifoIn.available();
-			if(available < numBytes) numBytes = (int)available;
-			if(numBytes > 0) {
-				int pos = 0;
-				while(pos < numBytes) {
-					int ret = fifoIn.read(entropy, pos, numBytes - pos);
-					if(ret == -1) throw new EOFException("Unexpected EOF");
-					pos += ret;
-				}
-				fifo.flush();
-			}
-			return numBytes;
-		}
+		return getEntropy(entropy, numBytes);
 	}
 
 	public static long getMasterEntropyNeeded(
@@ -132,10 +323,7 @@ public final class RandomHandler {
 	) throws IOException, SQLException {
 		checkAccessEntropy(conn, source, "getMasterEntropyNeeded");
 
-		FifoFile fifo = getFifoFile();
-		synchronized(fifo) {
-			return fifo.getOutputStream().available();
-		}
+		return getEntropyPool().getAvailable();
 	}
 
 	private RandomHandler() {}
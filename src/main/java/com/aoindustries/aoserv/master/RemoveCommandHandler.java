@@ -0,0 +1,752 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.linux.Group;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles {@link AoservProtocol.CommandID#REMOVE}: removes a row from the table given by the client.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class RemoveCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(AoservProtocol.CommandID.REMOVE);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		int clientTableID = in.readCompressedInt();
+		Table.TableID tableID = TableHandler.convertFromClientTableID(conn, source, clientTableID);
+		if(tableID == null) throw new IOException("Client table not supported: #" + clientTableID);
+		switch(tableID) {
+			case BLACKHOLE_EMAIL_ADDRESSES :
+				{
+					int address = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_BLACKHOLE_EMAIL_ADDRESS,
+						address
+					);
+					EmailHandler.removeBlackholeAddress(
+						conn,
+						source,
+						invalidateList,
+						address
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case BUSINESS_ADMINISTRATORS :
+				{
+					com.aoindustries.aoserv.client.account.User.Name administrator = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_BUSINESS_ADMINISTRATOR,
+						administrator
+					);
+					AccountHandler.removeAdministrator(
+						conn,
+						source,
+						invalidateList,
+						administrator
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case BUSINESS_SERVERS :
+				{
+					int accountHost = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_BUSINESS_SERVER,
+						accountHost
+					);
+					AccountHandler.removeAccountHost(
+						conn,
+						source,
+						invalidateList,
+						accountHost
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case CREDIT_CARDS :
+				{
+					int creditCard = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_CREDIT_CARD,
+						creditCard
+					);
+					PaymentHandler.removeCreditCard(
+						conn,
+						source,
+						invalidateList,
+						creditCard
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case CVS_REPOSITORIES :
+				{
+					int cvsRepository = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_CVS_REPOSITORY,
+						cvsRepository
+					);
+					CvsHandler.removeCvsRepository(
+						conn,
+						source,
+						invalidateList,
+						cvsRepository
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case DNS_RECORDS :
+				{
+					int record = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_DNS_RECORD,
+						record
+					);
+					MasterServer.getService(DnsService.class).removeRecord(
+						conn,
+						source,
+						invalidateList,
+						record
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case DNS_ZONES :
+				{
+					String zone = in.readUTF().trim();
+					process.setCommand(
+						Command.REMOVE_DNS_ZONE,
+						zone
+					);
+					MasterServer.getService(DnsService.class).removeDNSZone(
+						conn,
+						source,
+						invalidateList,
+						zone
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_ADDRESSES :
+				{
+					int address = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_ADDRESS,
+						address
+					);
+					EmailHandler.removeAddress(
+						conn,
+						source,
+						invalidateList,
+						address
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_DOMAINS :
+				{
+					int domain = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_DOMAIN,
+						domain
+					);
+					EmailHandler.removeDomain(
+						conn,
+						source,
+						invalidateList,
+						domain
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_FORWARDING :
+				{
+					int forwarding = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_FORWARDING,
+						forwarding
+					);
+					EmailHandler.removeForwarding(
+						conn,
+						source,
+						invalidateList,
+						forwarding
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_LIST_ADDRESSES :
+				{
+					int listAddress = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_LIST_ADDRESS,
+						listAddress
+					);
+					EmailHandler.removeListAddress(
+						conn,
+						source,
+						invalidateList,
+						listAddress
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_LISTS :
+				{
+					int list = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_LIST,
+						list
+					);
+					EmailHandler.removeList(
+						conn,
+						source,
+						invalidateList,
+						list
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_PIPE_ADDRESSES :
+				{
+					int pipeAddress = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_PIPE_ADDRESS,
+						pipeAddress
+					);
+					EmailHandler.removePipeAddress(
+						conn,
+						source,
+						invalidateList,
+						pipeAddress
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_PIPES :
+				{
+					int pipe = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_PIPE,
+						pipe
+					);
+					EmailHandler.removePipe(
+						conn,
+						source,
+						invalidateList,
+						pipe
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case EMAIL_SMTP_RELAYS :
+				{
+					process.setPriority(Thread.NORM_PRIORITY + 1);
+					Thread.currentThread().setPriority(Thread.NORM_PRIORITY + 1);
+
+					int smtpRelay = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_EMAIL_SMTP_RELAY,
+						smtpRelay
+					);
+					EmailHandler.removeSmtpRelay(
+						conn,
+						source,
+						invalidateList,
+						smtpRelay
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case FILE_BACKUP_SETTINGS :
+				{
+					int fileReplicationSetting = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_FILE_BACKUP_SETTING,
+						fileReplicationSetting
+					);
+					BackupHandler.removeFileReplicationSetting(
+						conn,
+						source,
+						invalidateList,
+						fileReplicationSetting
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case FTP_GUEST_USERS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_FTP_GUEST_USER,
+						user
+					);
+					FTPHandler.removeGuestUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_SHARED_TOMCATS :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_SHARED_TOMCAT,
+						sharedTomcat
+					);
+					WebHandler.removeSharedTomcat(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_SITE_AUTHENTICATED_LOCATIONS :
+				{
+					int location = in.readCompressedInt();
+					process.setCommand(
+						"remove_httpd_site_authenticated_location",
+						location
+					);
+					WebHandler.removeLocation(
+						conn,
+						source,
+						invalidateList,
+						location
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_SITES :
+				{
+					int site = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_SITE,
+						site
+					);
+					WebHandler.removeSite(
+						conn,
+						source,
+						invalidateList,
+						site
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_SITE_URLS :
+				{
+					int virtualHostName = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_SITE_URL,
+						virtualHostName
+					);
+					WebHandler.removeVirtualHostName(
+						conn,
+						source,
+						invalidateList,
+						virtualHostName
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_TOMCAT_CONTEXTS :
+				{
+					int context = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_TOMCAT_CONTEXT,
+						context
+					);
+					WebHandler.removeContext(
+						conn,
+						source,
+						invalidateList,
+						context
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_TOMCAT_DATA_SOURCES :
+				{
+					int contextDataSource = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_TOMCAT_DATA_SOURCE,
+						contextDataSource
+					);
+					WebHandler.removeContextDataSource(
+						conn,
+						source,
+						invalidateList,
+						contextDataSource
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_TOMCAT_PARAMETERS :
+				{
+					int contextParameter = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_TOMCAT_PARAMETER,
+						contextParameter
+					);
+					WebHandler.removeContextParameter(
+						conn,
+						source,
+						invalidateList,
+						contextParameter
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case HTTPD_TOMCAT_SITE_JK_MOUNTS :
+				{
+					int jkMount = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_HTTPD_TOMCAT_SITE_JK_MOUNT,
+						jkMount
+					);
+					WebHandler.removeJkMount(
+						conn,
+						source,
+						invalidateList,
+						jkMount
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_ACC_ADDRESSES :
+				{
+					int inboxAddress = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_LINUX_ACC_ADDRESS,
+						inboxAddress
+					);
+					EmailHandler.removeInboxAddress(
+						conn,
+						source,
+						invalidateList,
+						inboxAddress
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_ACCOUNTS :
+				{
+					com.aoindustries.aoserv.client.linux.User.Name user = com.aoindustries.aoserv.client.linux.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_LINUX_ACCOUNT,
+						user
+					);
+					LinuxAccountHandler.removeUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_GROUP_ACCOUNTS :
+				{
+					int groupUser = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_LINUX_GROUP_ACCOUNT,
+						groupUser
+					);
+					LinuxAccountHandler.removeGroupUser(
+						conn,
+						source,
+						invalidateList,
+						groupUser
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_GROUPS :
+				{
+					Group.Name name = Group.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_LINUX_GROUP,
+						name
+					);
+					LinuxAccountHandler.removeGroup(
+						conn,
+						source,
+						invalidateList,
+						name
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_SERVER_ACCOUNTS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_LINUX_SERVER_ACCOUNT,
+						userServer
+					);
+					LinuxAccountHandler.removeUserServer(
+						conn,
+						source,
+						invalidateList,
+						userServer
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case LINUX_SERVER_GROUPS :
+				{
+					int groupServer = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_LINUX_SERVER_GROUP,
+						groupServer
+					);
+					LinuxAccountHandler.removeGroupServer(
+						conn,
+						source,
+						invalidateList,
+						groupServer
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case MAJORDOMO_SERVERS :
+				{
+					int domain = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_MAJORDOMO_SERVER,
+						domain
+					);
+					EmailHandler.removeMajordomoServer(
+						conn,
+						source,
+						invalidateList,
+						domain
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case MYSQL_DATABASES :
+				{
+					int database = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_MYSQL_DATABASE,
+						database
+					);
+					MysqlHandler.removeDatabase(
+						conn,
+						source,
+						invalidateList,
+						database
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case MYSQL_DB_USERS :
+				{
+					int databaseUser = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_MYSQL_DB_USER,
+						databaseUser
+					);
+					MysqlHandler.removeDatabaseUser(
+						conn,
+						source,
+						invalidateList,
+						databaseUser
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case MYSQL_SERVER_USERS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_MYSQL_SERVER_USER,
+						userServer
+					);
+					MysqlHandler.removeUserServer(
+						conn,
+						source,
+						invalidateList,
+						userServer
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case MYSQL_USERS :
+				{
+					com.aoindustries.aoserv.client.mysql.User.Name user = com.aoindustries.aoserv.client.mysql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_MYSQL_USER,
+						user
+					);
+					MysqlHandler.removeUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case NET_BINDS :
+				{
+					int bind = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_NET_BIND,
+						bind
+					);
+					NetBindHandler.removeBind(
+						conn,
+						source,
+						invalidateList,
+						bind
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case PACKAGE_DEFINITIONS :
+				{
+					int packageDefinition = in.readCompressedInt();
+					process.setCommand(
+						"remove_package_definition",
+						packageDefinition
+					);
+					PackageHandler.removePackageDefinition(
+						conn,
+						source,
+						invalidateList,
+						packageDefinition
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case POSTGRES_DATABASES :
+				{
+					int database = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_POSTGRES_DATABASE,
+						database
+					);
+					PostgresqlHandler.removeDatabase(
+						conn,
+						source,
+						invalidateList,
+						database
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case POSTGRES_SERVER_USERS :
+				{
+					int userServer = in.readCompressedInt();
+					process.setCommand(
+						Command.REMOVE_POSTGRES_SERVER_USER,
+						userServer
+					);
+					PostgresqlHandler.removeUserServer(
+						conn,
+						source,
+						invalidateList,
+						userServer
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case POSTGRES_USERS :
+				{
+					com.aoindustries.aoserv.client.postgresql.User.Name user = com.aoindustries.aoserv.client.postgresql.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_POSTGRES_USER,
+						user
+					);
+					PostgresqlHandler.removeUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case USERNAMES :
+				{
+					com.aoindustries.aoserv.client.account.User.Name user = com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF());
+					process.setCommand(
+						Command.REMOVE_USERNAME,
+						user
+					);
+					AccountUserHandler.removeUser(
+						conn,
+						source,
+						invalidateList,
+						user
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new IOException("Unknown table ID for remove: clientTableID=" + clientTableID + ", tableID=" + tableID);
+		}
+		return resp;
+	}
+}
@@ -117,7 +117,7 @@ final public class ReportGenerator implements CronJob {
 					TIMER_REMINDER_INTERVAL
 				)
 			) {
-				MasterServer.executorService.submit(timer);
+				MasterExecutors.timers.submit(timer);
 
 				// Start the transaction
 				try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
@@ -0,0 +1,498 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.cron.CronDaemon;
+import com.aoapps.cron.CronJob;
+import com.aoapps.cron.Schedule;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency and throughput statistics per command and per table.  All recording
+ * is lock-free, and the statistics for a command or table are only allocated
+ * once it is first used.
+ * <p>
+ * The statistics are provided as rows of
+ * {@link com.aoindustries.aoserv.client.schema.Table.TableID#MASTER_SERVER_STATS}
+ * and, when <code>aoserv.master.stats.file</code> is set, written to that file
+ * once per minute in the Prometheus text exposition format.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class RequestStatistics {
+
+	private static final Logger logger = Logger.getLogger(RequestStatistics.class.getName());
+
+	private RequestStatistics() {
+	}
+
+	/**
+	 * A lock-free histogram of values, with a precision of one part in sixteen.
+	 * Values below sixteen are exact.  Above that, each power of two is divided
+	 * into sixteen buckets.
+	 */
+	public static final class Histogram {
+
+		private static final int SUB_BITS = 4;
+		private static final int SUB_COUNT = 1 << SUB_BITS;
+
+		/**
+		 * Values of <code>2<sup>MAX_EXPONENT + 1</sup></code> and above are counted in the last bucket.
+		 * In microseconds, this is over twenty-five days.
+		 */
+		private static final int MAX_EXPONENT = 40;
+
+		private static final int NUM_BUCKETS = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+		private static int getBucket(long value) {
+			if(value < SUB_COUNT) return value < 0 ? 0 : (int)value;
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			if(exponent > MAX_EXPONENT) return NUM_BUCKETS - 1;
+			return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + ((int)(value >>> (exponent - SUB_BITS)) - SUB_COUNT);
+		}
+
+		/**
+		 * Gets the largest value counted in the given bucket.
+		 */
+		private static long getUpperBound(int bucket) {
+			if(bucket < SUB_COUNT) return bucket;
+			int exponent = (bucket - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+			long sub = SUB_COUNT + (bucket - SUB_COUNT) % SUB_COUNT;
+			return ((sub + 1) << (exponent - SUB_BITS)) - 1;
+		}
+
+		private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		private Histogram() {
+		}
+
+		public void record(long value) {
+			buckets.incrementAndGet(getBucket(value));
+			count.increment();
+			total.add(value);
+			max.accumulate(value);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getTotal() {
+			return total.sum();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * Gets the value at the given percentile.  The result is the upper bound
+		 * of the bucket containing the percentile, limited to the maximum value.
+		 *
+		 * @param  percentile  The percentile, between 0 and 100
+		 */
+		public long getPercentile(double percentile) {
+			long[] counts = new long[NUM_BUCKETS];
+			long sum = 0;
+			for(int i = 0; i < NUM_BUCKETS; i++) {
+				long c = buckets.get(i);
+				counts[i] = c;
+				sum += c;
+			}
+			if(sum == 0) return 0;
+			long target = Math.max(1, (long)Math.ceil(sum * percentile / 100));
+			long cumulative = 0;
+			for(int i = 0; i < NUM_BUCKETS; i++) {
+				cumulative += counts[i];
+				if(cumulative >= target) return Math.min(getUpperBound(i), getMax());
+			}
+			return getMax();
+		}
+	}
+
+	/**
+	 * The statistics for a single command.
+	 */
+	public static final class CommandStatistics {
+
+		private final LongAdder errors = new LongAdder();
+		private final Histogram latency = new Histogram();
+
+		private CommandStatistics() {
+		}
+
+		/**
+		 * The number of commands that did not complete successfully.
+		 */
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		/**
+		 * The time to process each command, in microseconds.
+		 */
+		public Histogram getLatency() {
+			return latency;
+		}
+	}
+
+	/**
+	 * The statistics for providing a single table.
+	 */
+	public static final class TableStatistics {
+
+		private final Histogram latency = new Histogram();
+		private final Histogram database = new Histogram();
+		private final Histogram write = new Histogram();
+		private final LongAdder rows = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+
+		private TableStatistics() {
+		}
+
+		/**
+		 * The total time to provide the table, in microseconds.
+		 */
+		public Histogram getLatency() {
+			return latency;
+		}
+
+		/**
+		 * The time the database connection was used, in microseconds.  Only
+		 * recorded for buffered responses, where the database connection is
+		 * released before writing to the client.
+		 */
+		public Histogram getDatabase() {
+			return database;
+		}
+
+		/**
+		 * The time copying the response to the client stream, in microseconds.
+		 * Only recorded for buffered and cached responses.  This does not wait
+		 * for the stream to be flushed, so it does not include sending any data
+		 * that remains buffered.
+		 */
+		public Histogram getWrite() {
+			return write;
+		}
+
+		/**
+		 * The total number of rows written.
+		 */
+		public long getRows() {
+			return rows.sum();
+		}
+
+		/**
+		 * The total number of bytes written.  Only recorded for buffered and
+		 * cached responses.
+		 */
+		public long getBytes() {
+			return bytes.sum();
+		}
+	}
+
+	/** Copies used to avoid multiple array copies on each access. */
+	private static final AoservProtocol.CommandID[] commandIDs = AoservProtocol.CommandID.values();
+	private static final Table.TableID[] tableIDs = Table.TableID.values();
+
+	private static final AtomicReferenceArray<CommandStatistics> commands = new AtomicReferenceArray<>(commandIDs.length);
+	private static final AtomicReferenceArray<TableStatistics> tables = new AtomicReferenceArray<>(tableIDs.length);
+
+	/**
+	 * The number of rows written by the current thread, used to attribute rows to tables.
+	 */
+	private static final ThreadLocal<long[]> currentRows = ThreadLocal.withInitial(() -> new long[1]);
+
+	private static CommandStatistics getOrCreate(AoservProtocol.CommandID commandID) {
+		int ordinal = commandID.ordinal();
+		CommandStatistics stats = commands.get(ordinal);
+		if(stats == null) {
+			stats = new CommandStatistics();
+			if(!commands.compareAndSet(ordinal, null, stats)) stats = commands.get(ordinal);
+		}
+		return stats;
+	}
+
+	private static TableStatistics getOrCreate(Table.TableID tableID) {
+		int ordinal = tableID.ordinal();
+		TableStatistics stats = tables.get(ordinal);
+		if(stats == null) {
+			stats = new TableStatistics();
+			if(!tables.compareAndSet(ordinal, null, stats)) stats = tables.get(ordinal);
+		}
+		return stats;
+	}
+
+	/**
+	 * Gets the statistics for a command.
+	 *
+	 * @return  The statistics or {@code null} when the command has not been used
+	 */
+	public static CommandStatistics getCommandStatistics(AoservProtocol.CommandID commandID) {
+		return commands.get(commandID.ordinal());
+	}
+
+	/**
+	 * Gets the statistics for a table.
+	 *
+	 * @return  The statistics or {@code null} when the table has not been provided
+	 */
+	public static TableStatistics getTableStatistics(Table.TableID tableID) {
+		return tables.get(tableID.ordinal());
+	}
+
+	/**
+	 * Records the completion of a command.
+	 */
+	static void recordCommand(AoservProtocol.CommandID commandID, boolean successful, long nanos) {
+		CommandStatistics stats = getOrCreate(commandID);
+		if(!successful) stats.errors.increment();
+		stats.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	/**
+	 * Records rows written by the current thread.
+	 */
+	static void addRows(long rows) {
+		currentRows.get()[0] += rows;
+	}
+
+	/**
+	 * Gets the total number of rows written by the current thread.
+	 */
+	static long getRows() {
+		return currentRows.get()[0];
+	}
+
+	/**
+	 * Records providing a table.
+	 *
+	 * @param  databaseNanos  The time the database connection was used or {@code -1} when unknown
+	 * @param  writeNanos  The time copying the response to the client stream or {@code -1} when unknown
+	 * @param  bytes  The number of bytes written or {@code -1} when unknown
+	 */
+	static void recordTable(Table.TableID tableID, long nanos, long databaseNanos, long writeNanos, long rows, long bytes) {
+		TableStatistics stats = getOrCreate(tableID);
+		stats.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+		if(databaseNanos != -1) stats.database.record(TimeUnit.NANOSECONDS.toMicros(databaseNanos));
+		if(writeNanos != -1) stats.write.record(TimeUnit.NANOSECONDS.toMicros(writeNanos));
+		stats.rows.add(rows);
+		if(bytes != -1) stats.bytes.add(bytes);
+	}
+
+	/**
+	 * Gets a one-line summary of a histogram of microseconds.
+	 */
+	public static String toString(Histogram histogram) {
+		return
+			"count=" + histogram.getCount()
+			+ " p50=" + histogram.getPercentile(50) + "us"
+			+ " p99=" + histogram.getPercentile(99) + "us"
+			+ " max=" + histogram.getMax() + "us"
+			+ " total=" + histogram.getTotal() + "us";
+	}
+
+	private static void dumpHeader(Appendable out, String name, String type, String help) throws IOException {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Writes a summary of histograms of microseconds, with one set of samples per
+	 * command or table.
+	 *
+	 * @param  getHistogram  Gets the histogram or {@code null} when not used
+	 */
+	private static <E extends Enum<E>> void dumpSummary(Appendable out, String name, String help, String labelName, E[] ids, Function<? super E, Histogram> getHistogram) throws IOException {
+		dumpHeader(out, name, "summary", help);
+		for(E id : ids) {
+			Histogram histogram = getHistogram.apply(id);
+			if(histogram != null) {
+				String labels = "{" + labelName + "=\"" + id.name() + "\"";
+				out.append(name).append(labels).append(",quantile=\"0.5\"} ").append(Long.toString(histogram.getPercentile(50))).append('\n');
+				out.append(name).append(labels).append(",quantile=\"0.99\"} ").append(Long.toString(histogram.getPercentile(99))).append('\n');
+				out.append(name).append(labels).append(",quantile=\"1\"} ").append(Long.toString(histogram.getMax())).append('\n');
+				out.append(name).append("_sum").append(labels).append("} ").append(Long.toString(histogram.getTotal())).append('\n');
+				out.append(name).append("_count").append(labels).append("} ").append(Long.toString(histogram.getCount())).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Writes a counter, with one sample per command or table.
+	 *
+	 * @param  getValue  Gets the value or {@code null} when not used
+	 */
+	private static <E extends Enum<E>> void dumpCounter(Appendable out, String name, String help, String labelName, E[] ids, Function<? super E, Long> getValue) throws IOException {
+		dumpHeader(out, name, "counter", help);
+		for(E id : ids) {
+			Long value = getValue.apply(id);
+			if(value != null) {
+				out.append(name).append('{').append(labelName).append("=\"").append(id.name()).append("\"} ").append(value.toString()).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Writes all statistics in the Prometheus text exposition format.  Each
+	 * latency is a summary, in microseconds, with the 0.5 and 0.99 quantiles,
+	 * the maximum as quantile 1, and the <code>_sum</code> and <code>_count</code>
+	 * samples.
+	 */
+	public static void dump(Appendable out) throws IOException {
+		dumpSummary(
+			out, "aoserv_master_command_latency_microseconds", "The time to process each command.", "command", commandIDs,
+			commandID -> {
+				CommandStatistics stats = getCommandStatistics(commandID);
+				return stats == null ? null : stats.latency;
+			}
+		);
+		dumpCounter(
+			out, "aoserv_master_command_errors_total", "The number of commands that did not complete successfully.", "command", commandIDs,
+			commandID -> {
+				CommandStatistics stats = getCommandStatistics(commandID);
+				return stats == null ? null : stats.getErrors();
+			}
+		);
+		dumpSummary(
+			out, "aoserv_master_table_latency_microseconds", "The total time to provide each table.", "table", tableIDs,
+			tableID -> {
+				TableStatistics stats = getTableStatistics(tableID);
+				return stats == null ? null : stats.latency;
+			}
+		);
+		dumpSummary(
+			out, "aoserv_master_table_database_microseconds", "The time the database connection was used, for buffered responses.", "table", tableIDs,
+			tableID -> {
+				TableStatistics stats = getTableStatistics(tableID);
+				return stats == null ? null : stats.database;
+			}
+		);
+		dumpSummary(
+			out, "aoserv_master_table_write_microseconds", "The time copying buffered and cached responses to the client stream, which may complete before the data is sent.", "table", tableIDs,
+			tableID -> {
+				TableStatistics stats = getTableStatistics(tableID);
+				return stats == null ? null : stats.write;
+			}
+		);
+		dumpCounter(
+			out, "aoserv_master_table_rows_total", "The number of rows written.", "table", tableIDs,
+			tableID -> {
+				TableStatistics stats = getTableStatistics(tableID);
+				return stats == null ? null : stats.getRows();
+			}
+		);
+		dumpCounter(
+			out, "aoserv_master_table_bytes_total", "The number of bytes written, for buffered and cached responses.", "table", tableIDs,
+			tableID -> {
+				TableStatistics stats = getTableStatistics(tableID);
+				return stats == null ? null : stats.getBytes();
+			}
+		);
+	}
+
+	/**
+	 * Writes the statistics to the given file, replacing it atomically.
+	 */
+	private static void dump(File file) throws IOException {
+		File newFile = new File(file.getPath() + ".new");
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(newFile), StandardCharsets.UTF_8)) {
+			dump(out);
+		}
+		Files.move(newFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static boolean cronDaemonAdded = false;
+
+	/**
+	 * Runs once per minute
+	 */
+	private static final Schedule schedule = (minute, hour, dayOfMonth, month, dayOfWeek, year) -> true;
+
+	@SuppressWarnings("UseOfSystemOutOrSystemErr")
+	public static void start() throws IOException {
+		synchronized(System.out) {
+			if(!cronDaemonAdded) {
+				String statsFile = MasterConfiguration.getStatsFile();
+				if(statsFile != null) {
+					System.out.print("Starting " + RequestStatistics.class.getSimpleName() + ": ");
+					File file = new File(statsFile);
+					CronDaemon.addCronJob(
+						new CronJob() {
+							@Override
+							public Schedule getSchedule() {
+								return schedule;
+							}
+
+							@Override
+							public String getName() {
+								return "Write " + statsFile;
+							}
+
+							@Override
+							public void run(int minute, int hour, int dayOfMonth, int month, int dayOfWeek, int year) {
+								try {
+									dump(file);
+								} catch(ThreadDeath TD) {
+									throw TD;
+								} catch(Throwable T) {
+									logger.log(Level.SEVERE, null, T);
+								}
+							}
+
+							@Override
+							public int getThreadPriority() {
+								return Thread.NORM_PRIORITY-2;
+							}
+						},
+						logger
+					);
+					System.out.println("Done");
+				}
+				cronDaemonAdded = true;
+			}
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.lang.util.BufferManager;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffers a response so the database connection may be released before the
+ * response is written to a possibly slow client.  The response is kept in
+ * memory, in {@link BufferManager} buffers, up to the configured limit.  The
+ * remainder of larger responses overflow to a temporary file.
+ *
+ * @see  MasterConfiguration#getResponseBufferMemory()
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class ResponseBuffer extends OutputStream {
+
+	private static final Logger logger = Logger.getLogger(ResponseBuffer.class.getName());
+
+	private static final AtomicLong responses = new AtomicLong();
+	private static final AtomicLong overflows = new AtomicLong();
+
+	private final long maxMemory;
+
+	/**
+	 * The in-memory buffers, each full except the last.
+	 */
+	private final List<byte[]> buffers = new ArrayList<>();
+	private int lastLength = BufferManager.BUFFER_SIZE;
+	private long memoryLength;
+	private long fileLength;
+
+	private File tempFile;
+	private OutputStream fileOut;
+
+	private boolean closed;
+
+	ResponseBuffer(long maxMemory) {
+		this.maxMemory = maxMemory;
+		responses.incrementAndGet();
+	}
+
+	/**
+	 * Gets the stream to write to, creating the temporary file on overflow.
+	 */
+	private OutputStream getFileOut() throws IOException {
+		if(fileOut == null) {
+			tempFile = File.createTempFile("aoserv-master-response-", null);
+			fileOut = new BufferedOutputStream(new FileOutputStream(tempFile));
+			overflows.incrementAndGet();
+		}
+		return fileOut;
+	}
+
+	private void checkClosed() throws IOException {
+		if(closed) throw new IOException("ResponseBuffer is closed");
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkClosed();
+		if(fileOut == null && memoryLength < maxMemory) {
+			if(lastLength == BufferManager.BUFFER_SIZE) {
+				buffers.add(BufferManager.getBytes());
+				lastLength = 0;
+			}
+			buffers.get(buffers.size() - 1)[lastLength++] = (byte)b;
+			memoryLength++;
+		} else {
+			getFileOut().write(b);
+			fileLength++;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkClosed();
+		while(len > 0 && fileOut == null && memoryLength < maxMemory) {
+			if(lastLength == BufferManager.BUFFER_SIZE) {
+				buffers.add(BufferManager.getBytes());
+				lastLength = 0;
+			}
+			int count = Math.min(len, BufferManager.BUFFER_SIZE - lastLength);
+			System.arraycopy(b, off, buffers.get(buffers.size() - 1), lastLength, count);
+			lastLength += count;
+			memoryLength += count;
+			off += count;
+			len -= count;
+		}
+		if(len > 0) {
+			getFileOut().write(b, off, len);
+			fileLength += len;
+		}
+	}
+
+	/**
+	 * Gets the total number of bytes written to this buffer.
+	 */
+	long getLength() {
+		return memoryLength + fileLength;
+	}
+
+	/**
+	 * Writes the entire buffered response to the given stream.
+	 */
+	void writeTo(OutputStream out) throws IOException {
+		checkClosed();
+		for(int i = 0, size = buffers.size(); i < size; i++) {
+			out.write(buffers.get(i), 0, i == (size - 1) ? lastLength : BufferManager.BUFFER_SIZE);
+		}
+		if(fileOut != null) {
+			fileOut.flush();
+			byte[] buff = BufferManager.getBytes();
+			try (InputStream fileIn = new FileInputStream(tempFile)) {
+				int numBytes;
+				while((numBytes = fileIn.read(buff, 0, BufferManager.BUFFER_SIZE)) != -1) {
+					out.write(buff, 0, numBytes);
+				}
+			} finally {
+				BufferManager.release(buff, false);
+			}
+		}
+	}
+
+	/**
+	 * Gets a copy of the buffered response.
+	 *
+	 * @return  The response or {@code null} when overflowed to a temporary file
+	 */
+	byte[] toByteArray() throws IOException {
+		checkClosed();
+		if(fileOut != null) return null;
+		byte[] bytes = new byte[(int)memoryLength];
+		int pos = 0;
+		for(int i = 0, size = buffers.size(); i < size; i++) {
+			int len = i == (size - 1) ? lastLength : BufferManager.BUFFER_SIZE;
+			System.arraycopy(buffers.get(i), 0, bytes, pos, len);
+			pos += len;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Releases the in-memory buffers and deletes any temporary file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!closed) {
+			closed = true;
+			for(byte[] buffer : buffers) BufferManager.release(buffer, false);
+			buffers.clear();
+			if(fileOut != null) {
+				try {
+					fileOut.close();
+				} finally {
+					if(!tempFile.delete()) logger.log(Level.WARNING, "Unable to delete temporary file: {0}", tempFile);
+				}
+			}
+		}
+	}
+
+	public static long getResponses() {
+		return responses.get();
+	}
+
+	public static long getOverflows() {
+		return overflows.get();
+	}
+}
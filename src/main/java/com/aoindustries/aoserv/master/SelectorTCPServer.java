@@ -0,0 +1,318 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.hodgepodge.io.AOPool;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The <code>SelectorTCPServer</code> accepts connections in the same way as
+ * {@link TCPServer}, but does not dedicate a thread to each connection.
+ * Idle connections are watched by a single {@link Selector}, and a thread from
+ * {@link MasterExecutors#requests} is only used while a request is being
+ * processed.  The number of threads thus grows with the number of active
+ * requests instead of the number of open connections.
+ * <p>
+ * New connections are also watched by the selector, and the handshake is only
+ * started once the client has sent data.  The handshake and each request are
+ * then processed with blocking I/O, exactly as done by {@link SocketServerThread},
+ * but with a read timeout of {@link #HANDSHAKE_TIMEOUT} or {@link #REQUEST_TIMEOUT}
+ * so a client that stops sending cannot hold a thread indefinitely.  The channel
+ * is only returned to non-blocking mode while waiting for the next request.
+ * </p>
+ * <p>
+ * A connection listening for cache invalidations
+ * ({@link com.aoindustries.aoserv.client.schema.AoservProtocol.CommandID#LISTEN_CACHES})
+ * occupies its thread for the lifetime of the connection, since it waits for
+ * invalidations within the request.  For this reason, this engine is not the
+ * default, and {@link MasterExecutors#requests} must allow more threads than the
+ * number of listening connections on the binds using this engine.
+ * </p>
+ * <p>
+ * When {@link MasterExecutors#requests} is full, new connections are closed
+ * before their handshake to shed load.  Requests from connections that have
+ * already completed their handshake are instead kept and retried by the selector
+ * every {@link #RETRY_INTERVAL} milliseconds until a thread is available.
+ * </p>
+ * <p>
+ * This engine is selected per bind with <code>aoserv.master.tcp.engine</code>
+ * or <code>aoserv.master.tcp.bind.&lt;bind&gt;.engine</code>.
+ * </p>
+ *
+ * @see  MasterConfiguration#getEngine(java.lang.String, java.lang.String)
+ *
+ * @author  AO Industries, Inc.
+ */
+public class SelectorTCPServer extends TCPServer {
+
+	private static final Logger logger = Logger.getLogger(SelectorTCPServer.class.getName());
+
+	/**
+	 * The engine name used in the configuration.
+	 */
+	static final String ENGINE_SELECTOR = "selector";
+
+	/**
+	 * The read timeout while performing the handshake.
+	 */
+	private static final int HANDSHAKE_TIMEOUT = 60 * 1000;
+
+	/**
+	 * The read timeout while processing a request.
+	 */
+	private static final int REQUEST_TIMEOUT = 5 * 60 * 1000;
+
+	/**
+	 * The interval between attempts to process the requests of established
+	 * connections while {@link MasterExecutors#requests} is full.
+	 */
+	private static final long RETRY_INTERVAL = 100;
+
+	/**
+	 * Attached to the selection key of a new connection, which has not yet
+	 * performed its handshake.
+	 */
+	private static final class NewConnection {
+
+		private final SocketConnection connection;
+
+		private NewConnection(SocketConnection connection) {
+			this.connection = connection;
+		}
+	}
+
+	/**
+	 * Connections that have completed their current request and are ready to
+	 * be returned to the selector.
+	 */
+	private final Queue<SocketConnection> idleConnections = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Established connections with a request waiting for a thread, only accessed
+	 * by the selector thread.
+	 */
+	private final List<SocketConnection> retryConnections = new ArrayList<>();
+
+	/**
+	 * The current selector, if running.
+	 */
+	private volatile Selector selector;
+
+	SelectorTCPServer(String serverBind, int serverPort) {
+		super(serverBind, serverPort);
+	}
+
+	/**
+	 * Queues a connection to be watched by the selector for its next request.
+	 */
+	private void idle(SocketConnection connection) {
+		Selector s = selector;
+		if(s == null) {
+			connection.close();
+		} else {
+			idleConnections.add(connection);
+			s.wakeup();
+		}
+	}
+
+	/**
+	 * Processes the handshake or the next request in a background thread.  Any
+	 * requests already buffered are also processed before returning the connection
+	 * to the selector.  Only called by the selector thread, once the channel is
+	 * readable.  When no thread is available, a new connection is closed, while
+	 * an established connection is queued to be retried.
+	 *
+	 * @param  isNew  When {@code true}, the handshake is performed instead of a request
+	 */
+	private void process(SocketConnection connection, boolean isNew) {
+		try {
+			MasterExecutors.requests.submit(() -> {
+				boolean keepOpen = false;
+				try {
+					connection.getSocket().getChannel().configureBlocking(true);
+					if(isNew) {
+						keepOpen = connection.handshake();
+						if(keepOpen) connection.getSocket().setSoTimeout(REQUEST_TIMEOUT);
+					} else {
+						keepOpen = connection.handleRequest();
+					}
+					while(keepOpen && connection.hasBufferedInput()) {
+						keepOpen = connection.handleRequest();
+					}
+				} catch(ThreadDeath td) {
+					connection.close();
+					throw td;
+				} catch(Throwable t) {
+					keepOpen = false;
+					SocketConnection.logException(t);
+				}
+				if(keepOpen) idle(connection);
+				else connection.close();
+			});
+		} catch(RejectedExecutionException e) {
+			if(isNew) {
+				// Shed load instead of blocking the selector
+				logger.log(Level.WARNING, null, e);
+				connection.close();
+			} else {
+				// Do not drop an authenticated session, retry once a thread is available
+				logger.log(Level.FINE, null, e);
+				retryConnections.add(connection);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			try {
+				InetAddress address=InetAddress.getByName(serverBind);
+				synchronized(System.out) {
+					System.out.println("Accepting TCP connections on " + address.getHostAddress() + ':' + serverPort + " using " + ENGINE_SELECTOR + " engine");
+				}
+				try (
+					Selector sel = Selector.open();
+					ServerSocketChannel ssc = ServerSocketChannel.open()
+				) {
+					ssc.socket().bind(new InetSocketAddress(address, serverPort), 50);
+					ssc.configureBlocking(false);
+					ssc.register(sel, SelectionKey.OP_ACCEPT);
+					selector = sel;
+					try {
+						List<Object> ready = new ArrayList<>();
+						List<SocketConnection> retry = new ArrayList<>();
+						while (true) {
+							if(retryConnections.isEmpty()) sel.select();
+							else sel.select(RETRY_INTERVAL);
+							// Register connections that have completed their requests
+							SocketConnection idle;
+							while((idle = idleConnections.poll()) != null) {
+								try {
+									SocketChannel channel = idle.getSocket().getChannel();
+									channel.configureBlocking(false);
+									channel.register(sel, SelectionKey.OP_READ, idle);
+								} catch(IOException err) {
+									logger.log(Level.FINE, null, err);
+									idle.close();
+								}
+							}
+							// Retry the requests waiting for a thread first, any still rejected are queued again
+							if(!retryConnections.isEmpty()) {
+								retry.addAll(retryConnections);
+								retryConnections.clear();
+								for(SocketConnection connection : retry) {
+									process(connection, false);
+								}
+								retry.clear();
+							}
+							Iterator<SelectionKey> keys = sel.selectedKeys().iterator();
+							while(keys.hasNext()) {
+								SelectionKey key = keys.next();
+								keys.remove();
+								if(!key.isValid()) continue;
+								if(key.isAcceptable()) {
+									SocketChannel channel = ssc.accept();
+									if(channel != null) {
+										incConnectionCount();
+										try {
+											Socket socket = channel.socket();
+											socket.setKeepAlive(true);
+											socket.setSoLinger(true, AOPool.DEFAULT_SOCKET_SO_LINGER);
+											//socket.setTcpNoDelay(true);
+											// The socket streams, unlike Channels.newInputStream, honor the read timeout while in blocking mode
+											socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+											SocketConnection connection = new SocketConnection(this, socket, socket.getInputStream(), socket.getOutputStream());
+											// Wait for the client to send its handshake
+											channel.configureBlocking(false);
+											channel.register(sel, SelectionKey.OP_READ, new NewConnection(connection));
+										} catch(ThreadDeath TD) {
+											throw TD;
+										} catch(Throwable T) {
+											logger.log(Level.SEVERE, "serverPort=" + serverPort + ". address=" + address, T);
+											channel.close();
+										}
+									}
+								} else if(key.isReadable()) {
+									key.cancel();
+									ready.add(key.attachment());
+								}
+							}
+							if(!ready.isEmpty()) {
+								// Deregister the cancelled keys so the channels may be returned to blocking mode
+								sel.selectNow();
+								for(Object attachment : ready) {
+									if(attachment instanceof NewConnection) {
+										process(((NewConnection)attachment).connection, true);
+									} else {
+										process((SocketConnection)attachment, false);
+									}
+								}
+								ready.clear();
+							}
+						}
+					} finally {
+						selector = null;
+						// Close any connections still waiting on this selector
+						for(SelectionKey key : sel.keys()) {
+							Object attachment = key.attachment();
+							if(attachment instanceof NewConnection) ((NewConnection)attachment).connection.close();
+							else if(attachment instanceof SocketConnection) ((SocketConnection)attachment).close();
+						}
+						SocketConnection idle;
+						while((idle = idleConnections.poll()) != null) {
+							idle.close();
+						}
+						for(SocketConnection connection : retryConnections) {
+							connection.close();
+						}
+						retryConnections.clear();
+					}
+				}
+			} catch (ThreadDeath TD) {
+				throw TD;
+			} catch (Throwable T) {
+				logger.log(Level.SEVERE, "serverPort=" + serverPort + ", serverBind=" + serverBind, T);
+			}
+			try {
+				Thread.sleep(15000);
+			} catch (InterruptedException err) {
+				logger.log(Level.WARNING, null, err);
+			}
+		}
+	}
+}
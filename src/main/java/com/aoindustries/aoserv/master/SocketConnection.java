@@ -0,0 +1,631 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2001-2013, 2014, 2015, 2016, 2017, 2018, 2019, 2020, 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.IntArrayList;
+import com.aoapps.collections.IntList;
+import com.aoapps.dbc.DatabaseAccess;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.Strings;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.DomainName;
+import com.aoapps.net.InetAddress;
+import com.aoapps.security.Identifier;
+import com.aoapps.security.SecurityStreamables;
+import com.aoapps.security.UnprotectedPassword;
+import com.aoindustries.aoserv.client.master.UserHost;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import com.aoindustries.aoserv.master.master.Process_Manager;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+
+/**
+ * The <code>SocketConnection</code> is the state of one accepted connection.
+ * It performs the handshake and then handles requests one at a time, without
+ * regard to which thread is calling it.  This allows the same connection
+ * handling to be used by both the thread-per-connection {@link SocketServerThread}
+ * and the {@link SelectorTCPServer selector-based} connection engines.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class SocketConnection implements RequestSource {
+
+	private static final Logger logger = Logger.getLogger(SocketConnection.class.getName());
+
+	/**
+	 * The <code>{@link TCPServer}</code> that accepted this connection.
+	 */
+	private final TCPServer server;
+
+	/**
+	 * The <code>{@link Socket}</code> that is connected.
+	 */
+	private final Socket socket;
+
+	/**
+	 * The <code>{@link StreamableInput}</code> that is being read from.
+	 */
+	private final StreamableInput in;
+
+	/**
+	 * The <code>{@link StreamableOutput}</code> that is being written to.
+	 */
+	private final StreamableOutput out;
+
+	/**
+	 * The version of the protocol the client is running.
+	 */
+	private AoservProtocol.Version protocolVersion;
+
+	/**
+	 * The master process.
+	 */
+	private final Process process;
+
+	/**
+	 * The sequence expected on the next request.
+	 */
+	private long seq;
+
+	private volatile boolean isClosed = true;
+
+	/**
+	 * Creates a new connection.
+	 *
+	 * @param  rawIn   The unbuffered stream read from the socket
+	 * @param  rawOut  The unbuffered stream written to the socket
+	 */
+	SocketConnection(TCPServer server, Socket socket, InputStream rawIn, OutputStream rawOut) throws IOException {
+		try {
+			this.server = server;
+			this.socket = socket;
+			this.in = new StreamableInput(new BufferedInputStream(rawIn));
+			this.out = new StreamableOutput(new BufferedOutputStream(rawOut));
+			InetAddress host = InetAddress.valueOf(socket.getInetAddress().getHostAddress());
+			process = Process_Manager.createProcess(
+				host,
+				server.getProtocol(),
+				server.isSecure()
+			);
+			isClosed = false;
+		} catch(ValidationException e) {
+			throw new IOException(e.getLocalizedMessage(), e);
+		}
+	}
+
+	Socket getSocket() {
+		return socket;
+	}
+
+	private final LinkedList<InvalidateCacheEntry> invalidateLists=new LinkedList<>();
+
+	/**
+	 * Invalidates the listed tables.  Also, if this connector represents a daemon,
+	 * this invalidate is registered with ServerHandler for invalidation synchronization.
+	 * <p>
+	 * Invalidations are combined while waiting to be sent: the tables are merged
+	 * into any queued entry for the same host, so a burst of invalidations
+	 * results in a single signal.  The queued entry keeps its synchronization ID.
+	 * Since it is older than any ID that would be assigned now, waiting for it
+	 * also waits for the merged tables, preserving the acknowledgement order.
+	 * </p>
+	 */
+	@Override
+	public void cachesInvalidated(IntList tableList) throws IOException {
+		if(tableList!=null && tableList.size()>0) {
+			synchronized(this) { // Must use "this" lock because wait is performed on this object externally
+				int daemonServer=getDaemonServer();
+				// Merge into a queued entry for the same host
+				ListIterator<InvalidateCacheEntry> iter = invalidateLists.listIterator(invalidateLists.size());
+				while(iter.hasPrevious()) {
+					InvalidateCacheEntry queued = iter.previous();
+					if(queued.getHost() == daemonServer) {
+						IntList merged = queued.getInvalidateList();
+						for(int c = 0, size = tableList.size(); c < size; c++) {
+							int clientTableID = tableList.getInt(c);
+							if(!merged.contains(clientTableID)) merged.add(clientTableID);
+						}
+						MasterServer.invalidationsMerged.incrementAndGet();
+						return;
+					}
+				}
+				// Register with ServerHandler for invalidation synchronization
+				IntList copy=new IntArrayList(tableList);
+				InvalidateCacheEntry ice=new InvalidateCacheEntry(
+					copy,
+					daemonServer,
+					daemonServer==-1?null:NetHostHandler.addInvalidateSyncEntry(daemonServer, this)
+				);
+				invalidateLists.addLast(ice);
+				notify();
+			}
+		}
+	}
+
+	@Override
+	public int getDaemonServer() {
+		return process.getDaemonServer();
+	}
+
+	@Override
+	public InvalidateCacheEntry getNextInvalidatedTables() {
+		synchronized(this) {
+			if(invalidateLists.isEmpty()) return null;
+			return invalidateLists.removeFirst();
+		}
+	}
+
+	@Override
+	public Identifier getConnectorId() {
+		return process.getConnectorId();
+	}
+
+	@Override
+	public AoservProtocol.Version getProtocolVersion() {
+		return protocolVersion;
+	}
+
+	/**
+	 * Logs a security message to <code>System.err</code>.
+	 * Also sends email messages to <code>aoserv.server</code>.
+	 */
+	@Override
+	public String getSecurityMessageHeader() {
+		return "IP="+socket.getInetAddress().getHostAddress()+" EffUsr="+process.getEffectiveAdministrator_username()+" AuthUsr="+process.getAuthenticatedAdministrator_username();
+	}
+
+	@Override
+	public com.aoindustries.aoserv.client.account.User.Name getCurrentAdministrator() {
+		return process.getEffectiveAdministrator_username();
+	}
+
+	@Override
+	public boolean isSecure() throws UnknownHostException {
+		return server.isSecure();
+	}
+
+	/**
+	 * Reads the client handshake, authenticates, and writes the response.
+	 *
+	 * @return  <code>true</code> when authenticated and ready for the first request, or
+	 *          <code>false</code> if this connection should be closed.
+	 */
+	boolean handshake() throws IOException, SQLException {
+		this.protocolVersion=AoservProtocol.Version.getVersion(in.readUTF());
+		process.setAOServProtocol(protocolVersion.getVersion());
+		if(in.readBoolean()) {
+			DomainName daemonServer;
+			try {
+				daemonServer = DomainName.valueOf(in.readUTF());
+			} catch(ValidationException e) {
+				out.writeBoolean(false);
+				out.writeUTF(e.getLocalizedMessage());
+				out.flush();
+				return false;
+			}
+			process.setDeamonServer(
+				NetHostHandler.getHostForLinuxServerHostname(
+					MasterDatabase.getDatabase(),
+					daemonServer
+				)
+			);
+		} else {
+			process.setDeamonServer(-1);
+		}
+		try {
+			process.setEffectiveUser(com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF()));
+			process.setAuthenticatedUser(com.aoindustries.aoserv.client.account.User.Name.valueOf(in.readUTF()));
+		} catch(ValidationException e) {
+			out.writeBoolean(false);
+			out.writeUTF(e.getLocalizedMessage());
+			out.flush();
+			return false;
+		}
+		char[] chars = in.readUTF().toCharArray(); // TODO: Write as char[] so can be zeroed
+		try (UnprotectedPassword password = (chars.length == 0) ? null : new UnprotectedPassword(chars)) {
+			Identifier existingId;
+			if(protocolVersion.compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+				long existingIdLong = in.readLong();
+				existingId = existingIdLong == -1 ? null : new Identifier(0, existingIdLong);
+			} else {
+				existingId = SecurityStreamables.readNullIdentifier(in);
+			}
+
+			switch(protocolVersion) {
+				case VERSION_1_84_13 :
+				case VERSION_1_83_2 :
+				case VERSION_1_83_1 :
+				case VERSION_1_83_0 :
+				case VERSION_1_82_1 :
+				case VERSION_1_82_0 :
+				case VERSION_1_81_22 :
+				case VERSION_1_81_21 :
+				case VERSION_1_81_20 :
+				case VERSION_1_81_19 :
+				case VERSION_1_81_18 :
+				case VERSION_1_81_17 :
+				case VERSION_1_81_16 :
+				case VERSION_1_81_15 :
+				case VERSION_1_81_14 :
+				case VERSION_1_81_13 :
+				case VERSION_1_81_12 :
+				case VERSION_1_81_11 :
+				case VERSION_1_81_10 :
+				case VERSION_1_81_9 :
+				case VERSION_1_81_8 :
+				case VERSION_1_81_7 :
+				case VERSION_1_81_6 :
+				case VERSION_1_81_5 :
+				case VERSION_1_81_4 :
+				case VERSION_1_81_3 :
+				case VERSION_1_81_2 :
+				case VERSION_1_81_1 :
+				case VERSION_1_81_0 :
+				case VERSION_1_80_2 :
+				case VERSION_1_80_1 :
+				case VERSION_1_80_0 :
+				case VERSION_1_80 :
+				case VERSION_1_79 :
+				case VERSION_1_78 :
+				case VERSION_1_77 :
+				case VERSION_1_76 :
+				case VERSION_1_75 :
+				case VERSION_1_74 :
+				case VERSION_1_73 :
+				case VERSION_1_72 :
+				case VERSION_1_71 :
+				case VERSION_1_70 :
+				case VERSION_1_69 :
+				case VERSION_1_68 :
+				case VERSION_1_67 :
+				case VERSION_1_66 :
+				case VERSION_1_65 :
+				case VERSION_1_64 :
+				case VERSION_1_63 :
+				case VERSION_1_62 :
+				case VERSION_1_61 :
+				case VERSION_1_60 :
+				case VERSION_1_59 :
+				case VERSION_1_58 :
+				case VERSION_1_57 :
+				case VERSION_1_56 :
+				case VERSION_1_55 :
+				case VERSION_1_54 :
+				case VERSION_1_53 :
+				case VERSION_1_52 :
+				case VERSION_1_51 :
+				case VERSION_1_50 :
+				case VERSION_1_49 :
+				case VERSION_1_48 :
+				case VERSION_1_47 :
+				case VERSION_1_46 :
+				case VERSION_1_45 :
+				case VERSION_1_44 :
+				case VERSION_1_43 :
+				case VERSION_1_42 :
+				case VERSION_1_41 :
+				case VERSION_1_40 :
+				case VERSION_1_39 :
+				case VERSION_1_38 :
+				case VERSION_1_37 :
+				case VERSION_1_36 :
+				case VERSION_1_35 :
+				case VERSION_1_34 :
+				case VERSION_1_33 :
+				case VERSION_1_32 :
+				case VERSION_1_31 :
+				case VERSION_1_30 :
+				case VERSION_1_29 :
+				case VERSION_1_28 :
+				case VERSION_1_27 :
+				case VERSION_1_26 :
+				case VERSION_1_25 :
+				case VERSION_1_24 :
+				case VERSION_1_23 :
+				case VERSION_1_22 :
+				case VERSION_1_21 :
+				case VERSION_1_20 :
+				case VERSION_1_19 :
+				case VERSION_1_18 :
+				case VERSION_1_17 :
+				case VERSION_1_16 :
+				case VERSION_1_15 :
+				case VERSION_1_14 :
+				case VERSION_1_13 :
+				case VERSION_1_12 :
+				case VERSION_1_11 :
+				case VERSION_1_10 :
+				case VERSION_1_9 :
+				case VERSION_1_8 :
+				case VERSION_1_7 :
+				case VERSION_1_6 :
+				case VERSION_1_5 :
+				case VERSION_1_4 :
+				case VERSION_1_3 :
+				case VERSION_1_2 :
+				case VERSION_1_1 :
+				case VERSION_1_0_A_130 :
+				case VERSION_1_0_A_129 :
+				case VERSION_1_0_A_128 :
+				case VERSION_1_0_A_127 :
+				case VERSION_1_0_A_126 :
+				case VERSION_1_0_A_125 :
+				case VERSION_1_0_A_124 :
+				case VERSION_1_0_A_123 :
+				case VERSION_1_0_A_122 :
+				case VERSION_1_0_A_121 :
+				case VERSION_1_0_A_120 :
+				case VERSION_1_0_A_119 :
+				case VERSION_1_0_A_118 :
+				case VERSION_1_0_A_117 :
+				case VERSION_1_0_A_116 :
+				case VERSION_1_0_A_115 :
+				case VERSION_1_0_A_114 :
+				case VERSION_1_0_A_113 :
+				case VERSION_1_0_A_112 :
+				case VERSION_1_0_A_111 :
+				case VERSION_1_0_A_110 :
+				case VERSION_1_0_A_109 :
+				case VERSION_1_0_A_108 :
+				case VERSION_1_0_A_107 :
+				case VERSION_1_0_A_106 :
+				case VERSION_1_0_A_105 :
+				case VERSION_1_0_A_104 :
+				case VERSION_1_0_A_103 :
+				case VERSION_1_0_A_102 :
+				case VERSION_1_0_A_101 :
+				case VERSION_1_0_A_100 :
+				{
+					DatabaseAccess db = MasterDatabase.getDatabase();
+					String message = MasterServer.authenticate(
+						db,
+						socket.getInetAddress().getHostAddress(),
+						process.getEffectiveAdministrator_username(),
+						process.getAuthenticatedAdministrator_username(),
+						password
+					);
+
+					if(message!=null) {
+						//UserHost.reportSecurityMessage(this, message, process.getEffectiveUser().length()>0 && password.length()>0);
+						out.writeBoolean(false);
+						out.writeUTF(message);
+						out.flush();
+						return false;
+					}
+					// Only master users may provide a daemon_server
+					int daemonServer=process.getDaemonServer();
+					if(daemonServer!=-1) {
+						if(MasterServer.getUser(db, process.getEffectiveAdministrator_username())==null) {
+							out.writeBoolean(false);
+							out.writeUTF("Only master users may register a daemon server.");
+							out.flush();
+							return false;
+						} else {
+							UserHost[] servers=MasterServer.getUserHosts(db, process.getEffectiveAdministrator_username());
+							if(servers.length!=0) {
+								boolean isOK=false;
+								for (UserHost server1 : servers) {
+									if (server1.getServerPKey() == daemonServer) {
+										isOK=true;
+										break;
+									}
+								}
+								if(!isOK) {
+									out.writeBoolean(false);
+									out.writeUTF("Master user ("+process.getEffectiveAdministrator_username()+") not allowed to access server: "+daemonServer);
+									out.flush();
+									return false;
+								}
+							}
+						}
+					}
+					out.writeBoolean(true);
+					if(existingId == null) {
+						Identifier connectorId = MasterServer.getNextConnectorId(protocolVersion);
+						process.setConnectorId(connectorId);
+						if(protocolVersion.compareTo(AoservProtocol.Version.VERSION_1_83_0) < 0) {
+							assert connectorId.getHi() == 0;
+							assert connectorId.getLo() != -1;
+							out.writeLong(connectorId.getLo());
+						} else {
+							SecurityStreamables.writeIdentifier(connectorId, out);
+						}
+					} else {
+						process.setConnectorId(existingId);
+					}
+					// Command sequence starts at a random value
+					if(protocolVersion.compareTo(AoservProtocol.Version.VERSION_1_80_0) >= 0) {
+						seq = MasterServer.getSecureRandom().nextLong();
+						out.writeLong(seq);
+					} else {
+						seq = 0;
+					}
+					out.flush();
+
+					AoservProtocolHandler.updateLastUsed(protocolVersion);
+					return true;
+				}
+				default :
+				{
+					out.writeBoolean(false);
+					out.writeUTF(
+						"Client ("+socket.getInetAddress().getHostAddress()+":"+socket.getPort()+") requesting AOServ Protocol version "
+						+protocolVersion
+						+", server ("+socket.getLocalAddress().getHostAddress()+":"+socket.getLocalPort()+") supporting versions "
+						+Strings.join(AoservProtocol.Version.values(), ", ")
+						+".  Please upgrade the client code to match the server."
+					);
+					out.flush();
+					return false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Handles a single request.  Must only be called after a successful {@link #handshake()}.
+	 *
+	 * @return  <code>true</code> if another request could be made on this connection, or
+	 *          <code>false</code> if this connection should be closed.
+	 *
+	 * @see  MasterServer#handleRequest(com.aoindustries.aoserv.master.RequestSource, long, com.aoapps.hodgepodge.io.stream.StreamableInput, com.aoapps.hodgepodge.io.stream.StreamableOutput, com.aoindustries.aoserv.master.master.Process)
+	 */
+	boolean handleRequest() throws IOException, SQLException {
+		return server.handleRequest(this, seq++, in, out, process);
+	}
+
+	/**
+	 * Determines if more input has already been buffered, such as when the
+	 * client has sent the next request before reading the response to the previous.
+	 */
+	boolean hasBufferedInput() throws IOException {
+		return in.available() > 0;
+	}
+
+	/**
+	 * Gets a description of this connection, suitable for use as a thread name.
+	 */
+	@Override
+	public String toString() {
+		return
+			socket.getInetAddress().getHostAddress()
+			+ ":"
+			+ socket.getPort()
+			+ "->"
+			+ socket.getLocalAddress().getHostAddress()
+			+ ":"
+			+ socket.getLocalPort()
+			+ " as "
+			+ process.getEffectiveAdministrator_username()
+			+ " ("
+			+ process.getAuthenticatedAdministrator_username()
+			+ ")";
+	}
+
+	/**
+	 * Closes the socket and removes the master process.
+	 */
+	void close() {
+		try {
+			// Close the socket
+			try {
+				isClosed = true;
+				socket.close();
+			} catch (IOException err) {
+				logger.log(Level.SEVERE, null, err);
+			}
+		} finally {
+			Process_Manager.removeProcess(process);
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Logs an exception that ended a connection.  Exceptions that are common
+	 * for abnormal client disconnects are logged at {@link Level#FINE}.
+	 */
+	static void logException(Throwable t) {
+		if(t instanceof ThreadDeath) throw (ThreadDeath)t;
+		if(t instanceof EOFException) {
+			// Normal when disconnecting
+		} else if(t instanceof SocketTimeoutException) {
+			// Idle client exceeded the request timeout
+			logger.log(Level.FINE, null, t);
+		} else if(t instanceof SSLHandshakeException) {
+			String message = t.getMessage();
+			if(
+				message == null
+				|| (
+					!message.equals("Remote host closed connection during handshake")
+					&& !message.equals("no cipher suites in common")
+				)
+			) {
+				logger.log(Level.SEVERE, null, t);
+			} else {
+				logger.log(Level.FINE, null, t);
+			}
+		} else if(t instanceof SSLException) {
+			String message = t.getMessage();
+			if(
+				message == null
+				|| (
+					!message.equals("Connection has been shutdown: javax.net.ssl.SSLException: java.net.SocketException: Connection reset")
+					&& !message.equals("Unrecognized SSL message, plaintext connection?")
+				)
+			) {
+				logger.log(Level.SEVERE, null, t);
+			} else {
+				logger.log(Level.FINE, null, t);
+			}
+		} else if(t instanceof SocketException) {
+			String message = t.getMessage();
+			if(
+				message == null
+				|| (
+					// Connection reset common for abnormal client disconnects
+					!message.startsWith("Broken pipe")
+					&& !message.equals("Connection reset")
+					&& !message.startsWith("Connection timed out")
+				)
+			) {
+				logger.log(Level.SEVERE, null, t);
+			} else {
+				logger.log(Level.FINE, null, t);
+			}
+		} else if(t instanceof IOException) {
+			String message = t.getMessage();
+			if(
+				message == null
+				// Broken pipe common for abnormal client disconnects
+				|| !message.startsWith("Broken pipe")
+			) {
+				logger.log(Level.SEVERE, null, t);
+			} else {
+				logger.log(Level.FINE, null, t);
+			}
+		} else {
+			logger.log(Level.SEVERE, null, t);
+		}
+	}
+}
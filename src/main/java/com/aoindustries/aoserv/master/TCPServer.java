@@ -48,6 +48,13 @@ public class TCPServer extends MasterServer implements Runnable {
 	 */
 	static final String PROTOCOL_TCP = "tcp";
 
+	/**
+	 * The default engine, which dedicates a {@link SocketServerThread} to each connection.
+	 *
+	 * @see  SelectorTCPServer#ENGINE_SELECTOR
+	 */
+	static final String ENGINE_THREAD = "thread";
+
 	/**
 	 * The thread that is listening.
 	 */
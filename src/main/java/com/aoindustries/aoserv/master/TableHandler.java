@@ -93,59 +93,49 @@ final public class TableHandler {
 	 */
 	public static final int BATCH_COMMIT_INTERVAL = 1000;
 
-	/*
-	 * TODO: Use WITH RECURSIVE and no longer limit business tree depth.
-	 *
-	 * Example query to get an account and all its parents:
-	 *
-	 * WITH RECURSIVE account_and_up(accounting) AS (
-	 *   VALUES ('LOG_NEWRANKS_NET')
-	 * UNION ALL
-	 *   SELECT a.parent FROM
-	 *     account_and_up
-	 *     INNER JOIN account."Account" a ON account_and_up.accounting = a.accounting
-	 *   WHERE
-	 *     a.parent IS NOT NULL
-	 * )
-	 * SELECT * FROM account_and_up;
-	 *
-	 * Example query to get an account and all its subaccounts:
-	 *
-	 * WITH RECURSIVE account_and_down(accounting) AS (
-	 *   VALUES ('WOOT_WHMCS')
-	 * UNION ALL
-	 *   SELECT a.accounting FROM
-	 *     account_and_down
-	 *     INNER JOIN account."Account" a ON account_and_down.accounting = a.parent
-	 * )
-	 * SELECT * FROM account_and_down;
+	/**
+	 * Every pair of ancestor and descendant in the business tree, including
+	 * each account as its own ancestor.  This is not correlated to the outer
+	 * query, so it is evaluated only once per query, and places no limit on the
+	 * depth of the business tree.
+	 * <p>
+	 * To check if <code>pk.accounting</code> is <code>bu1.accounting</code> or
+	 * any of its parents:
+	 * </p>
+	 * <pre>(pk.accounting, bu1.accounting) in ACCOUNT_TREE</pre>
 	 */
+	public static final String ACCOUNT_TREE =
+		  "(\n"
+		+ "      with recursive account_tree(ancestor, descendant) as (\n"
+		+ "        select accounting, accounting from account.\"Account\"\n"
+		+ "      union all\n"
+		+ "        select\n"
+		+ "          a.parent,\n"
+		+ "          t.descendant\n"
+		+ "        from\n"
+		+ "          account_tree t\n"
+		+ "          inner join account.\"Account\" a on t.ancestor=a.accounting\n"
+		+ "        where\n"
+		+ "          a.parent is not null\n"
+		+ "      )\n"
+		+ "      select ancestor, descendant from account_tree\n"
+		+ "    )";
 
 	/**
 	 * The joins used for the business tree.
+	 * <p>
+	 * These previously self-joined the business tree to a fixed depth.  They
+	 * are now a single table, with the ancestors found through {@link #ACCOUNT_TREE}
+	 * by the accompanying where clauses.
+	 * </p>
 	 */
 	public static final String
 		BU1_PARENTS_JOIN=
-			  "  account.\"Account\" bu1\n"
-			+ "  left join account.\"Account\" bu2 on bu1.parent=bu2.accounting\n"
-			+ "  left join account.\"Account\" bu3 on bu2.parent=bu3.accounting\n"
-			+ "  left join account.\"Account\" bu4 on bu3.parent=bu4.accounting\n"
-			+ "  left join account.\"Account\" bu5 on bu4.parent=bu5.accounting\n"
-			+ "  left join account.\"Account\" bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+" on bu5.parent=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".accounting,\n",
+			  "  account.\"Account\" bu1,\n",
 		BU1_PARENTS_JOIN_NO_COMMA=
-			  "  account.\"Account\" bu1\n"
-			+ "  left join account.\"Account\" bu2 on bu1.parent=bu2.accounting\n"
-			+ "  left join account.\"Account\" bu3 on bu2.parent=bu3.accounting\n"
-			+ "  left join account.\"Account\" bu4 on bu3.parent=bu4.accounting\n"
-			+ "  left join account.\"Account\" bu5 on bu4.parent=bu5.accounting\n"
-			+ "  left join account.\"Account\" bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+" on bu5.parent=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".accounting\n",
+			  "  account.\"Account\" bu1\n",
 		BU2_PARENTS_JOIN=
-			  "      account.\"Account\" bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+"\n"
-			+ "      left join account.\"Account\" bu8 on bu7.parent=bu8.accounting\n"
-			+ "      left join account.\"Account\" bu9 on bu8.parent=bu9.accounting\n"
-			+ "      left join account.\"Account\" bu10 on bu9.parent=bu10.accounting\n"
-			+ "      left join account.\"Account\" bu11 on bu10.parent=bu11.accounting\n"
-			+ "      left join account.\"Account\" bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH*2-2)+" on bu11.parent=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH*2-2)+".accounting,\n"
+			  "      account.\"Account\" bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+",\n"
 	;
 
 	/**
@@ -153,45 +143,15 @@ final public class TableHandler {
 	 */
 	public static final String
 		PK_BU1_PARENTS_WHERE=
-			  "    pk.accounting=bu1.accounting\n"
-			+ "    or pk.accounting=bu1.parent\n"
-			+ "    or pk.accounting=bu2.parent\n"
-			+ "    or pk.accounting=bu3.parent\n"
-			+ "    or pk.accounting=bu4.parent\n"
-			+ "    or pk.accounting=bu5.parent\n"
-			+ "    or pk.accounting=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".parent\n",
+			  "    (pk.accounting, bu1.accounting) in "+ACCOUNT_TREE+"\n",
 		PK1_BU1_PARENTS_OR_WHERE=
-			  "    or pk1.accounting=bu1.accounting\n"
-			+ "    or pk1.accounting=bu1.parent\n"
-			+ "    or pk1.accounting=bu2.parent\n"
-			+ "    or pk1.accounting=bu3.parent\n"
-			+ "    or pk1.accounting=bu4.parent\n"
-			+ "    or pk1.accounting=bu5.parent\n"
-			+ "    or pk1.accounting=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".parent\n",
+			  "    or (pk1.accounting, bu1.accounting) in "+ACCOUNT_TREE+"\n",
 		PK1_BU1_PARENTS_WHERE=
-			  "    pk1.accounting=bu1.accounting\n"
-			+ "    or pk1.accounting=bu1.parent\n"
-			+ "    or pk1.accounting=bu2.parent\n"
-			+ "    or pk1.accounting=bu3.parent\n"
-			+ "    or pk1.accounting=bu4.parent\n"
-			+ "    or pk1.accounting=bu5.parent\n"
-			+ "    or pk1.accounting=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH-1)+".parent\n",
+			  "    (pk1.accounting, bu1.accounting) in "+ACCOUNT_TREE+"\n",
 		PK3_BU2_PARENTS_OR_WHERE=
-			  "        or pk3.accounting=bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+".accounting\n"
-			+ "        or pk3.accounting=bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+".parent\n"
-			+ "        or pk3.accounting=bu8.parent\n"
-			+ "        or pk3.accounting=bu9.parent\n"
-			+ "        or pk3.accounting=bu10.parent\n"
-			+ "        or pk3.accounting=bu11.parent\n"
-			+ "        or pk3.accounting=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH*2-2)+".parent\n",
+			  "        or (pk3.accounting, bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+".accounting) in "+ACCOUNT_TREE+"\n",
 		PK3_BU2_PARENTS_WHERE=
-			  "        pk3.accounting=bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+".accounting\n"
-			+ "        or pk3.accounting=bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+".parent\n"
-			+ "        or pk3.accounting=bu8.parent\n"
-			+ "        or pk3.accounting=bu9.parent\n"
-			+ "        or pk3.accounting=bu10.parent\n"
-			+ "        or pk3.accounting=bu11.parent\n"
-			+ "        or pk3.accounting=bu"+(Account.MAXIMUM_BUSINESS_TREE_DEPTH*2-2)+".parent\n"
+			  "        (pk3.accounting, bu"+Account.MAXIMUM_BUSINESS_TREE_DEPTH+".accounting) in "+ACCOUNT_TREE+"\n"
 	;
 
 	public static interface GetObjectHandler {
@@ -303,8 +263,17 @@ final public class TableHandler {
 
 		GetObjectHandler handler = getObjectHandlers.get(tableID);
 		if(handler != null) {
-			// TODO: release conn before writing to out
-			handler.getObject(conn, source, in, out, tableID, masterUser, masterServers);
+			if(MasterConfiguration.getResponseBuffer()) {
+				try (ResponseBuffer buffer = new ResponseBuffer(MasterConfiguration.getResponseBufferMemory())) {
+					StreamableOutput bufferOut = new StreamableOutput(buffer);
+					handler.getObject(conn, source, in, bufferOut, tableID, masterUser, masterServers);
+					bufferOut.flush();
+					conn.close(); // Don't hold database connection while writing response
+					buffer.writeTo(out);
+				}
+			} else {
+				handler.getObject(conn, source, in, out, tableID, masterUser, masterServers);
+			}
 		} else {
 			throw new IOException("No " + GetObjectHandler.class.getSimpleName() + " registered for table ID: " + tableID);
 		}
@@ -568,6 +537,16 @@ final public class TableHandler {
 			getTablePublic(conn, source, out, provideProgress, tableID);
 		}
 
+		/**
+		 * Checks if the response for the given table may be cached.  Tables
+		 * that are not fully updated through invalidations must return {@code false}.
+		 *
+		 * @see  TableSnapshotCache
+		 */
+		protected boolean isSnapshotCacheable(Table.TableID tableID) {
+			return true;
+		}
+
 		/**
 		 * Handles the request for a public table.
 		 */
@@ -714,14 +693,67 @@ final public class TableHandler {
 		boolean provideProgress,
 		final Table.TableID tableID
 	) throws IOException, SQLException {
-		com.aoindustries.aoserv.client.account.User.Name currentAdministrator = source.getCurrentAdministrator();
-		User masterUser=MasterServer.getUser(conn, currentAdministrator);
-		UserHost[] masterServers=masterUser==null?null:MasterServer.getUserHosts(conn, currentAdministrator);
-
 		GetTableHandler handler = getTableHandlers.get(tableID);
 		if(handler != null) {
-			// TODO: release conn before writing to out
-			handler.getTable(conn, source, out, provideProgress, tableID, masterUser, masterServers);
+			long startNanos = System.nanoTime();
+			long startRows = RequestStatistics.getRows();
+			long databaseNanos = -1;
+			long writeNanos = -1;
+			long bytes = -1;
+			try {
+				AoservProtocol.Version version = source.getProtocolVersion();
+				boolean snapshotCacheable =
+					handler instanceof GetTableHandlerPublic
+					&& ((GetTableHandlerPublic)handler).isSnapshotCacheable(tableID)
+					&& MasterConfiguration.getTableSnapshotCache();
+				long tableVersion = -1;
+				if(snapshotCacheable) {
+					byte[] snapshot = TableSnapshotCache.get(tableID, version, provideProgress);
+					if(snapshot != null) {
+						conn.close(); // Don't hold database connection while writing response
+						long writeStartNanos = System.nanoTime();
+						databaseNanos = writeStartNanos - startNanos;
+						out.write(snapshot);
+						writeNanos = System.nanoTime() - writeStartNanos;
+						bytes = snapshot.length;
+						return;
+					}
+					tableVersion = TableSnapshotCache.getTableVersion(tableID);
+				}
+
+				com.aoindustries.aoserv.client.account.User.Name currentAdministrator = source.getCurrentAdministrator();
+				User masterUser=MasterServer.getUser(conn, currentAdministrator);
+				UserHost[] masterServers=masterUser==null?null:MasterServer.getUserHosts(conn, currentAdministrator);
+
+				if(snapshotCacheable || MasterConfiguration.getResponseBuffer()) {
+					try (ResponseBuffer buffer = new ResponseBuffer(MasterConfiguration.getResponseBufferMemory())) {
+						StreamableOutput bufferOut = new StreamableOutput(buffer);
+						handler.getTable(conn, source, bufferOut, provideProgress, tableID, masterUser, masterServers);
+						bufferOut.flush();
+						conn.close(); // Don't hold database connection while writing response
+						if(snapshotCacheable) {
+							byte[] snapshot = buffer.toByteArray();
+							if(snapshot != null) TableSnapshotCache.put(tableID, version, provideProgress, tableVersion, snapshot);
+						}
+						long writeStartNanos = System.nanoTime();
+						databaseNanos = writeStartNanos - startNanos;
+						buffer.writeTo(out);
+						writeNanos = System.nanoTime() - writeStartNanos;
+						bytes = buffer.getLength();
+					}
+				} else {
+					handler.getTable(conn, source, out, provideProgress, tableID, masterUser, masterServers);
+				}
+			} finally {
+				RequestStatistics.recordTable(
+					tableID,
+					System.nanoTime() - startNanos,
+					databaseNanos,
+					writeNanos,
+					RequestStatistics.getRows() - startRows,
+					bytes
+				);
+			}
 		} else {
 			throw new IOException("No " + GetTableHandler.class.getSimpleName() + " registered for table ID: " + tableID);
 		}
@@ -0,0 +1,178 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.schema.Table;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caches the serialized response of public tables, so repeated requests for
+ * mostly static tables are served from memory instead of the database.
+ * <p>
+ * Each table has a version that is incremented on every invalidation.  A
+ * snapshot is only used while its table is still at the version it was
+ * captured from, so a snapshot is never used after an invalidation, even when
+ * its query was still running during the invalidation.
+ * </p>
+ * <p>
+ * Only {@link TableHandler.GetTableHandlerPublic public tables} are cached.
+ * The filtered tables join other tables, and are not invalidated precisely
+ * enough to be cached.
+ * </p>
+ *
+ * @see  MasterConfiguration#getTableSnapshotCache()
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class TableSnapshotCache {
+
+	private TableSnapshotCache() {
+	}
+
+	/** Copy used to avoid multiple array copies on each access. */
+	private static final Table.TableID[] tableIDs = Table.TableID.values();
+
+	private static final class Key {
+
+		private final Table.TableID tableID;
+		private final AoservProtocol.Version version;
+		private final boolean provideProgress;
+
+		private Key(Table.TableID tableID, AoservProtocol.Version version, boolean provideProgress) {
+			this.tableID = tableID;
+			this.version = version;
+			this.provideProgress = provideProgress;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) return false;
+			Key other = (Key)obj;
+			return
+				tableID == other.tableID
+				&& version == other.version
+				&& provideProgress == other.provideProgress;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(tableID, version, provideProgress);
+		}
+	}
+
+	private static final class Snapshot {
+
+		private final long tableVersion;
+		private final byte[] bytes;
+
+		private Snapshot(long tableVersion, byte[] bytes) {
+			this.tableVersion = tableVersion;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * The current version of each table, indexed by ordinal.
+	 */
+	private static final AtomicLongArray tableVersions = new AtomicLongArray(tableIDs.length);
+
+	private static final ConcurrentMap<Key, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong stores = new AtomicLong();
+
+	/**
+	 * Gets the current version of a table.  This must be called before the
+	 * table is queried, and passed to {@link #put(com.aoindustries.aoserv.client.schema.Table.TableID, com.aoindustries.aoserv.client.schema.AoservProtocol.Version, boolean, long, byte[])}.
+	 */
+	static long getTableVersion(Table.TableID tableID) {
+		return tableVersions.get(tableID.ordinal());
+	}
+
+	/**
+	 * Gets the serialized response for the given table.
+	 *
+	 * @return  The response or {@code null} when not cached
+	 */
+	static byte[] get(Table.TableID tableID, AoservProtocol.Version version, boolean provideProgress) {
+		Snapshot snapshot = snapshots.get(new Key(tableID, version, provideProgress));
+		if(snapshot != null && snapshot.tableVersion == tableVersions.get(tableID.ordinal())) {
+			hits.incrementAndGet();
+			return snapshot.bytes;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Stores the serialized response for the given table.  The response is
+	 * not stored when the table has been invalidated since the query began.
+	 *
+	 * @param  tableVersion  The version from {@link #getTableVersion(com.aoindustries.aoserv.client.schema.Table.TableID)}
+	 *                       obtained before the table was queried.
+	 */
+	static void put(Table.TableID tableID, AoservProtocol.Version version, boolean provideProgress, long tableVersion, byte[] bytes) {
+		if(tableVersion == tableVersions.get(tableID.ordinal())) {
+			snapshots.put(new Key(tableID, version, provideProgress), new Snapshot(tableVersion, bytes));
+			stores.incrementAndGet();
+		}
+	}
+
+	public static long getHits() {
+		return hits.get();
+	}
+
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	public static long getStores() {
+		return stores.get();
+	}
+
+	public static int getSize() {
+		return snapshots.size();
+	}
+
+	public static void invalidateTable(Table.TableID tableID) {
+		if(
+			tableID == Table.TableID.SCHEMA_TABLES
+			|| tableID == Table.TableID.SCHEMA_COLUMNS
+			|| tableID == Table.TableID.SCHEMA_TYPES
+			|| tableID == Table.TableID.AOSERV_PROTOCOLS
+		) {
+			// Responses are filtered by protocol version through the schema
+			for(int i = 0; i < tableIDs.length; i++) tableVersions.incrementAndGet(i);
+			snapshots.clear();
+		} else {
+			tableVersions.incrementAndGet(tableID.ordinal());
+			snapshots.keySet().removeIf(key -> key.tableID == tableID);
+		}
+	}
+}
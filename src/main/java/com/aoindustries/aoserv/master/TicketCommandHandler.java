@@ -0,0 +1,337 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.collections.AoCollections;
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.Strings;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.Email;
+import com.aoindustries.aoserv.client.account.Account;
+import com.aoindustries.aoserv.client.account.Profile;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify tickets.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class TicketCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.CHANGE_TICKET_CLIENT_PRIORITY,
+			AoservProtocol.CommandID.SET_TICKET_SUMMARY,
+			AoservProtocol.CommandID.ADD_TICKET_ANNOTATION,
+			AoservProtocol.CommandID.CHANGE_TICKET_TYPE,
+			AoservProtocol.CommandID.SET_TICKET_CONTACT_EMAILS,
+			AoservProtocol.CommandID.SET_TICKET_CONTACT_PHONE_NUMBERS,
+			AoservProtocol.CommandID.SET_TICKET_BUSINESS,
+			AoservProtocol.CommandID.SET_TICKET_STATUS,
+			AoservProtocol.CommandID.SET_TICKET_INTERNAL_NOTES
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case CHANGE_TICKET_CLIENT_PRIORITY :
+				{
+					int ticketID = in.readCompressedInt();
+					String clientPriority = in.readUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
+						String username = in.readUTF();
+						String comments = in.readUTF();
+					}
+					process.setCommand(
+						"change_ticket_client_priority",
+						ticketID,
+						clientPriority
+					);
+					TicketHandler.changeTicketClientPriority(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						clientPriority
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_TICKET_SUMMARY :
+				{
+					int ticketID = in.readCompressedInt();
+					String summary = in.readUTF();
+					process.setCommand(
+						"set_ticket_summary",
+						ticketID,
+						summary
+					);
+					TicketHandler.setTicketSummary(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						summary
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case ADD_TICKET_ANNOTATION :
+				{
+					int ticketID = in.readCompressedInt();
+					String summary = in.readUTF();
+					String details = in.readNullLongUTF();
+					process.setCommand(
+						"add_ticket_annotation",
+						ticketID,
+						summary,
+						Strings.firstLineOnly(details, 60)
+					);
+					TicketHandler.addTicketAnnotation(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						summary,
+						details
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case CHANGE_TICKET_TYPE :
+				{
+					int ticketID = in.readCompressedInt();
+					String oldType;
+					String newType;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)>=0) {
+						oldType = in.readUTF();
+						newType = in.readUTF();
+					} else {
+						oldType = null;
+						newType = in.readUTF();
+						String username = in.readUTF(); // Unused
+						String comments = in.readUTF(); // Unused
+					}
+					process.setCommand(
+						"change_ticket_type",
+						ticketID,
+						oldType,
+						newType
+					);
+					boolean updated = TicketHandler.setTicketType(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						oldType,
+						newType
+					);
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48) < 0) {
+						resp = MasterServer.Response.DONE;
+					} else {
+						resp = MasterServer.Response.of(
+							AoservProtocol.DONE,
+							updated
+						);
+					}
+					break;
+				}
+			case SET_TICKET_CONTACT_EMAILS :
+				{
+					int ticketID = in.readCompressedInt();
+					Set<Email> contactEmails;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_22) >= 0) {
+						int size = in.readCompressedInt();
+						contactEmails = AoCollections.newLinkedHashSet(size);
+						for(int i = 0; i < size; i++) {
+							contactEmails.add(Email.valueOf(in.readUTF()));
+						}
+					} else {
+						contactEmails = Profile.splitEmails(in.readUTF().trim());
+					}
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
+						String username=in.readUTF();
+						String comments=in.readUTF();
+					}
+					process.setCommand(
+						"set_ticket_contact_emails",
+						ticketID,
+						contactEmails
+					);
+					TicketHandler.setTicketContactEmails(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						contactEmails
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_TICKET_CONTACT_PHONE_NUMBERS :
+				{
+					int ticketID = in.readCompressedInt(); 
+					String contactPhoneNumbers = in.readUTF();
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
+						String username=in.readUTF();
+						String comments=in.readUTF();
+					}
+					process.setCommand(
+						"set_ticket_contact_phone_numbers",
+						ticketID,
+						contactPhoneNumbers
+					);
+					TicketHandler.setTicketContactPhoneNumbers(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						contactPhoneNumbers
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_TICKET_BUSINESS :
+				{
+					int ticketID = in.readCompressedInt();
+					Account.Name oldAccounting;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)>=0) {
+						// Added old accounting to behave like atomic variable
+						String oldAccountingS = in.readUTF();
+						oldAccounting = oldAccountingS.length() == 0 ? null : Account.Name.valueOf(oldAccountingS);
+					} else {
+						oldAccounting = null;
+					}
+					String newAccountingS = in.readUTF();
+					Account.Name newAccounting = newAccountingS.length() == 0 ? null : Account.Name.valueOf(newAccountingS);
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_43)<=0) {
+						String username = in.readUTF();
+						String comments = in.readUTF();
+					}
+					process.setCommand(
+						"set_ticket_business",
+						ticketID,
+						oldAccounting,
+						newAccounting
+					);
+					boolean updated = TicketHandler.setTicketAccount(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						oldAccounting,
+						newAccounting
+					);
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_48)<0) {
+						resp = MasterServer.Response.DONE;
+					} else {
+						// Added boolean updated response
+						resp = MasterServer.Response.of(
+							AoservProtocol.DONE,
+							updated
+						);
+					}
+				}
+				break;
+			case SET_TICKET_STATUS :
+				{
+					int ticketID = in.readCompressedInt();
+					String oldStatus = in.readUTF();
+					String newStatus = in.readUTF();
+					long statusTimeout = in.readLong();
+					process.setCommand(
+						"set_ticket_status",
+						ticketID,
+						oldStatus,
+						newStatus,
+						new java.util.Date(statusTimeout)
+					);
+					boolean updated = TicketHandler.setTicketStatus(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						oldStatus,
+						newStatus,
+						statusTimeout
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						updated
+					);
+				}
+				break;
+			case SET_TICKET_INTERNAL_NOTES :
+				{
+					int ticketID = in.readCompressedInt();
+					String oldInternalNotes = in.readLongUTF();
+					String newInternalNotes = in.readLongUTF();
+					process.setCommand(
+						"set_ticket_internal_notes",
+						ticketID,
+						oldInternalNotes.length(),
+						newInternalNotes.length()
+					);
+					boolean updated = TicketHandler.setTicketInternalNotes(
+						conn,
+						source,
+						invalidateList,
+						ticketID,
+						oldInternalNotes,
+						newInternalNotes
+					);
+					resp = MasterServer.Response.of(
+						AoservProtocol.DONE,
+						updated
+					);
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -27,20 +27,30 @@ import com.aoapps.cron.CronJob;
 import com.aoapps.cron.Schedule;
 import com.aoapps.dbc.DatabaseAccess;
 import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
 import com.aoapps.lang.Strings;
+import com.aoapps.lang.util.ErrorPrinter;
 import com.aoapps.net.Email;
 import com.aoindustries.aoserv.client.AOServObject;
 import com.aoindustries.aoserv.client.account.Account;
 import com.aoindustries.aoserv.client.master.Permission;
 import com.aoindustries.aoserv.client.master.User;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
 import com.aoindustries.aoserv.client.schema.Table;
 import com.aoindustries.aoserv.client.ticket.ActionType;
 import com.aoindustries.aoserv.client.ticket.Status;
 import com.aoindustries.aoserv.client.ticket.TicketType;
+import com.aoindustries.aoserv.master.master.Process;
 import java.io.IOException;
 import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
@@ -362,6 +372,68 @@ final public class TicketHandler /*implements Runnable*/ {
 		checkAccessAction(conn, source, "getActionRawEmail", action);
 		return conn.queryString("select raw_email from ticket.\"Action\" where id=?", action);
 	}
+
+	/**
+	 * Handles the commands that access the delayed data of tickets and actions.
+	 */
+	public static class DelayedData implements CommandHandler {
+
+		@Override
+		public Set<AoservProtocol.CommandID> getCommandIDs() {
+			return EnumSet.of(
+				AoservProtocol.CommandID.GET_TICKET_DETAILS,
+				AoservProtocol.CommandID.GET_TICKET_RAW_EMAIL,
+				AoservProtocol.CommandID.GET_TICKET_INTERNAL_NOTES,
+				AoservProtocol.CommandID.GET_TICKET_ACTION_OLD_VALUE,
+				AoservProtocol.CommandID.GET_TICKET_ACTION_NEW_VALUE,
+				AoservProtocol.CommandID.GET_TICKET_ACTION_DETAILS,
+				AoservProtocol.CommandID.GET_TICKET_ACTION_RAW_EMAIL
+			);
+		}
+
+		@Override
+		public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+			return false;
+		}
+
+		@Override
+		public MasterServer.Response handleCommand(
+			DatabaseConnection conn,
+			RequestSource source,
+			StreamableInput in,
+			StreamableOutput out,
+			Process process,
+			AoservProtocol.CommandID commandID,
+			InvalidateList invalidateList
+		) throws IOException, SQLException {
+			int id = in.readCompressedInt();
+			switch(commandID) {
+				case GET_TICKET_DETAILS :
+					process.setCommand("get_ticket_details", id);
+					return MasterServer.Response.ofNullLongString(AoservProtocol.DONE, getTicketDetails(conn, source, id));
+				case GET_TICKET_RAW_EMAIL :
+					process.setCommand("get_ticket_raw_email", id);
+					return MasterServer.Response.ofNullLongString(AoservProtocol.DONE, getTicketRawEmail(conn, source, id));
+				case GET_TICKET_INTERNAL_NOTES :
+					process.setCommand("get_ticket_internal_notes", id);
+					return MasterServer.Response.ofLongString(AoservProtocol.DONE, getTicketInternalNotes(conn, source, id));
+				case GET_TICKET_ACTION_OLD_VALUE :
+					process.setCommand("get_ticket_action_old_value", id);
+					return MasterServer.Response.ofNullLongString(AoservProtocol.DONE, getActionOldValue(conn, source, id));
+				case GET_TICKET_ACTION_NEW_VALUE :
+					process.setCommand("get_ticket_action_new_value", id);
+					return MasterServer.Response.ofNullLongString(AoservProtocol.DONE, getActionNewValue(conn, source, id));
+				case GET_TICKET_ACTION_DETAILS :
+					process.setCommand("get_ticket_action_details", id);
+					return MasterServer.Response.ofNullLongString(AoservProtocol.DONE, getActionDetails(conn, source, id));
+				case GET_TICKET_ACTION_RAW_EMAIL :
+					process.setCommand("get_ticket_action_raw_email", id);
+					return MasterServer.Response.ofNullLongString(AoservProtocol.DONE, getActionRawEmail(conn, source, id));
+				default :
+					throw new AssertionError("Unexpected command: " + commandID);
+			}
+		}
+	}
 	// </editor-fold>
 	// <editor-fold desc="Ticket Actions">
 	/*
@@ -1170,14 +1242,56 @@ final public class TicketHandler /*implements Runnable*/ {
 		String summary,
 		String details
 	) throws IOException, SQLException {
-		conn.update(
-			"insert into ticket.\"Action\"(ticket, administrator, action_type, summary, details) values(?,?,?,?,?)",
-			ticket,
-			administrator,
-			ActionType.ADD_ANNOTATION,
-			summary,
-			details
-		);
+		addTicketAnnotations(conn, invalidateList, ticket, administrator, Collections.singletonList(summary), Collections.singletonList(details));
+	}
+
+	/**
+	 * Adds any number of annotations, in order, <b>without</b> security checks.
+	 * The annotations are inserted in a single statement, and the ticket is
+	 * looked-up, reopened, and invalidated only once.
+	 */
+	public static void addTicketAnnotations(
+		DatabaseConnection conn,
+		InvalidateList invalidateList,
+		int ticket,
+		com.aoindustries.aoserv.client.account.User.Name administrator,
+		List<String> summaries,
+		List<String> details
+	) throws IOException, SQLException {
+		int size = summaries.size();
+		if(details.size() != size) throw new IllegalArgumentException("Mismatched number of summaries and details: " + size + " != " + details.size());
+		if(size == 0) return;
+		if(size == 1) {
+			conn.update(
+				"insert into ticket.\"Action\"(ticket, administrator, action_type, summary, details) values(?,?,?,?,?)",
+				ticket,
+				administrator,
+				ActionType.ADD_ANNOTATION,
+				summaries.get(0),
+				details.get(0)
+			);
+		} else {
+			Connection dbConn = conn.getConnection();
+			try (PreparedStatement pstmt = dbConn.prepareStatement(
+				"insert into ticket.\"Action\"(ticket, administrator, action_type, summary, details)\n"
+				+ "select ?, ?, ?, a.summary, a.details\n"
+				+ "from unnest(?::text[], ?::text[]) with ordinality as a(summary, details, i)\n"
+				+ "order by a.i"
+			)) {
+				try {
+					pstmt.setInt(1, ticket);
+					pstmt.setString(2, Objects.toString(administrator, null));
+					pstmt.setString(3, ActionType.ADD_ANNOTATION);
+					pstmt.setArray(4, dbConn.createArrayOf("text", summaries.toArray()));
+					pstmt.setArray(5, dbConn.createArrayOf("text", details.toArray()));
+					int updateCount = pstmt.executeUpdate();
+					if(updateCount != size) throw new SQLException("Wrong number of rows inserted: " + updateCount + " != " + size);
+				} catch(Error | RuntimeException | SQLException e) {
+					ErrorPrinter.addSQL(e, pstmt);
+					throw e;
+				}
+			}
+		}
 		// By account
 		Account.Name account = getAccountForTicket(conn, ticket);
 		if(account!=null) {
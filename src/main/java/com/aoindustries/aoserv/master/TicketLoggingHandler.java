@@ -24,14 +24,21 @@ package com.aoindustries.aoserv.master;
 
 import com.aoapps.dbc.DatabaseConnection;
 import com.aoapps.hodgepodge.logging.QueuedHandler;
+import com.aoapps.lang.util.ErrorPrinter;
 import com.aoindustries.aoserv.client.account.Account;
 import com.aoindustries.aoserv.client.reseller.Category;
 import com.aoindustries.aoserv.client.ticket.Language;
 import com.aoindustries.aoserv.client.ticket.Status;
 import com.aoindustries.aoserv.client.ticket.TicketType;
-import java.io.IOException;
-import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -39,14 +46,83 @@ import java.util.logging.LogRecord;
 /**
  * The same as <code>com.aoindustries.aoserv.client.TicketLoggingHandler</code>
  * except with direct database access.
- * 
+ * <p>
+ * Records are collected for {@link #BATCH_WINDOW} milliseconds and grouped by
+ * summary.  The existing ticket is looked-up once per group, and all records of
+ * the group are added as annotations in a single statement.  At most
+ * {@link #MAX_QUEUE_SIZE} records wait to be written; any more are dropped and
+ * counted, so a storm of log records does not grow memory or database load
+ * without bound.
+ * </p>
+ *
  * @author  AO Industries, Inc.
  */
 public class TicketLoggingHandler extends QueuedHandler {
 
+	/**
+	 * The number of milliseconds records are collected before being written.
+	 */
+	private static final long BATCH_WINDOW = 5000;
+
+	/**
+	 * The maximum number of records waiting to be written.
+	 */
+	private static final int MAX_QUEUE_SIZE = 10000;
+
+	private static final AtomicLong published = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong batches = new AtomicLong();
+
+	/**
+	 * Gets the number of log records written to tickets.
+	 */
+	public static long getPublished() {
+		return published.get();
+	}
+
+	/**
+	 * Gets the number of log records dropped because the queue was full or
+	 * their group could not be written.
+	 */
+	public static long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Gets the number of batches of log records written.
+	 */
+	public static long getBatches() {
+		return batches.get();
+	}
+
+	/**
+	 * A record waiting to be written.
+	 */
+	private static class PendingRecord {
+
+		private final Level level;
+		private final String actionSummary;
+		private final String fullReport;
+
+		private PendingRecord(Level level, String actionSummary, String fullReport) {
+			this.level = level;
+			this.actionSummary = actionSummary;
+			this.fullReport = fullReport;
+		}
+	}
+
 	private final String summaryPrefix;
 	private final int category;
 
+	/**
+	 * The records waiting to be written, paired with their ticket summary.
+	 */
+	private final BlockingQueue<Map.Entry<String, PendingRecord>> queue = new ArrayBlockingQueue<>(MAX_QUEUE_SIZE);
+
+	private final Object batchThreadLock = new Object();
+	private Thread batchThread;
+	private boolean closed;
+
 	/**
 	 * Public constructor required so can be specified in <code>logging.properties</code>.
 	 */
@@ -61,8 +137,7 @@ public class TicketLoggingHandler extends QueuedHandler {
 	}
 
 	@Override
-	protected void backgroundPublish(Formatter formatter, LogRecord record, String fullReport) throws IOException, SQLException {
-		Account.Name rootAccounting = AccountHandler.getRootAccount();
+	protected void backgroundPublish(Formatter formatter, LogRecord record, String fullReport) {
 		Level level = record.getLevel();
 		// Generate the summary from level, prefix classname, method
 		StringBuilder tempSB = new StringBuilder();
@@ -71,79 +146,192 @@ public class TicketLoggingHandler extends QueuedHandler {
 		tempSB.append(" - ").append(record.getSourceClassName()).append(" - ").append(record.getSourceMethodName());
 		String summary = tempSB.toString();
 
-		// Start the transaction
-		try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
-			InvalidateList invalidateList = new InvalidateList();
-			// Look for an existing ticket to append
-			int existingTicket = conn.queryInt(
-				"select\n"
-				+ "  coalesce(\n"
-				+ "    (\n"
-				+ "      select\n"
-				+ "        id\n"
-				+ "      from\n"
-				+ "        ticket.\"Ticket\"\n"
-				+ "      where\n"
-				+ "        status in (?,?,?)\n"
-				+ "        and brand=?\n"
-				+ "        and accounting=?\n"
-				+ "        and language=?\n"
-				+ "        and ticket_type=?\n"
-				+ "        and summary=?\n"
-				+ "        and category=?\n"
-				+ "      order by\n"
-				+ "        open_date desc,\n"
-				+ "        id desc\n"
-				+ "      limit 1\n"
-				+ "    ), -1\n"
-				+ "  )",
-				Status.OPEN,
-				Status.HOLD,
-				Status.BOUNCED,
-				rootAccounting,
-				rootAccounting,
-				Language.EN,
-				TicketType.LOGS,
-				summary,
-				category
-			);
-			if(existingTicket != -1) {
-				TicketHandler.addTicketAnnotation(
-					conn,
-					invalidateList,
-					existingTicket,
-					null,
-					com.aoindustries.aoserv.client.ticket.TicketLoggingHandler.generateActionSummary(formatter, record),
-					fullReport
-				);
-			} else {
-				// The priority depends on the log level
-				String priorityName = com.aoindustries.aoserv.client.ticket.TicketLoggingHandler.getPriorityName(level);
-				TicketHandler.addTicket(
-					conn,
-					invalidateList,
-					rootAccounting,
-					rootAccounting,
-					rootAccounting,
-					Language.EN,
-					null,
-					category,
-					TicketType.LOGS,
-					null,
-					summary,
-					fullReport,
-					null,
-					priorityName,
-					null,
-					Status.OPEN,
-					-1,
-					Collections.emptySet(),
-					"",
-					""
-				);
-				conn.commit();
+		PendingRecord pending = new PendingRecord(
+			level,
+			com.aoindustries.aoserv.client.ticket.TicketLoggingHandler.generateActionSummary(formatter, record),
+			fullReport
+		);
+		if(queue.offer(new AbstractMap.SimpleImmutableEntry<>(summary, pending))) {
+			startBatchThread();
+		} else {
+			dropped.incrementAndGet();
+		}
+	}
+
+	private void startBatchThread() {
+		synchronized(batchThreadLock) {
+			if(batchThread == null && !closed) {
+				batchThread = new Thread(this::runBatches, "Ticket logger batches for " + summaryPrefix);
+				batchThread.setDaemon(true);
+				batchThread.start();
+			}
+		}
+	}
+
+	@SuppressWarnings({"SleepWhileInLoop", "UseOfSystemOutOrSystemErr"})
+	private void runBatches() {
+		List<Map.Entry<String, PendingRecord>> batch = new ArrayList<>();
+		boolean interrupted = false;
+		while(!interrupted) {
+			try {
+				// Wait for the first record, then collect for the window
+				batch.add(queue.take());
+				Thread.sleep(BATCH_WINDOW);
+			} catch(InterruptedException e) {
+				// Write any remaining records, then stop
+				interrupted = true;
+			}
+			queue.drainTo(batch);
+			if(!batch.isEmpty()) {
+				try {
+					writeBatch(batch);
+				} catch(ThreadDeath td) {
+					throw td;
+				} catch(Throwable t) {
+					// Cannot log through the logger this handler is attached to
+					ErrorPrinter.printStackTraces(t, System.err);
+				}
+				batch.clear();
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Writes one batch of records, with each group of records of the same
+	 * summary in its own database transaction.  When a group fails, its records
+	 * are counted as dropped and the remaining groups are still written.
+	 */
+	@SuppressWarnings({"UseOfSystemOutOrSystemErr", "UseSpecificCatch"})
+	private void writeBatch(List<Map.Entry<String, PendingRecord>> batch) {
+		batches.incrementAndGet();
+		Map<String, List<PendingRecord>> groups = new LinkedHashMap<>();
+		for(Map.Entry<String, PendingRecord> entry : batch) {
+			groups.computeIfAbsent(entry.getKey(), summary -> new ArrayList<>()).add(entry.getValue());
+		}
+		for(Map.Entry<String, List<PendingRecord>> group : groups.entrySet()) {
+			String summary = group.getKey();
+			List<PendingRecord> records = group.getValue();
+			try {
+				Account.Name rootAccounting = AccountHandler.getRootAccount();
+				// Start the transaction
+				try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
+					InvalidateList invalidateList = new InvalidateList();
+					// Look for an existing ticket to append
+					int existingTicket = conn.queryInt(
+						"select\n"
+						+ "  coalesce(\n"
+						+ "    (\n"
+						+ "      select\n"
+						+ "        id\n"
+						+ "      from\n"
+						+ "        ticket.\"Ticket\"\n"
+						+ "      where\n"
+						+ "        status in (?,?,?)\n"
+						+ "        and brand=?\n"
+						+ "        and accounting=?\n"
+						+ "        and language=?\n"
+						+ "        and ticket_type=?\n"
+						+ "        and summary=?\n"
+						+ "        and category=?\n"
+						+ "      order by\n"
+						+ "        open_date desc,\n"
+						+ "        id desc\n"
+						+ "      limit 1\n"
+						+ "    ), -1\n"
+						+ "  )",
+						Status.OPEN,
+						Status.HOLD,
+						Status.BOUNCED,
+						rootAccounting,
+						rootAccounting,
+						Language.EN,
+						TicketType.LOGS,
+						summary,
+						category
+					);
+					int annotateFrom;
+					if(existingTicket != -1) {
+						annotateFrom = 0;
+					} else {
+						// The first record opens the ticket, priority depends on the log level
+						PendingRecord first = records.get(0);
+						String priorityName = com.aoindustries.aoserv.client.ticket.TicketLoggingHandler.getPriorityName(first.level);
+						existingTicket = TicketHandler.addTicket(
+							conn,
+							invalidateList,
+							rootAccounting,
+							rootAccounting,
+							rootAccounting,
+							Language.EN,
+							null,
+							category,
+							TicketType.LOGS,
+							null,
+							summary,
+							first.fullReport,
+							null,
+							priorityName,
+							null,
+							Status.OPEN,
+							-1,
+							Collections.emptySet(),
+							"",
+							""
+						);
+						annotateFrom = 1;
+					}
+					int size = records.size();
+					if(annotateFrom < size) {
+						List<String> actionSummaries = new ArrayList<>(size - annotateFrom);
+						List<String> details = new ArrayList<>(size - annotateFrom);
+						for(int i = annotateFrom; i < size; i++) {
+							PendingRecord record = records.get(i);
+							actionSummaries.add(record.actionSummary);
+							details.add(record.fullReport);
+						}
+						TicketHandler.addTicketAnnotations(
+							conn,
+							invalidateList,
+							existingTicket,
+							null,
+							actionSummaries,
+							details
+						);
+					}
+					conn.commit();
+					MasterServer.invalidateTables(conn, invalidateList, null);
+				}
+				published.addAndGet(records.size());
+			} catch(ThreadDeath td) {
+				throw td;
+			} catch(Throwable t) {
+				// Cannot log through the logger this handler is attached to, continue with the other groups
+				ErrorPrinter.printStackTraces(t, System.err);
+				dropped.addAndGet(records.size());
+			}
+		}
+	}
+
+	/**
+	 * Stops the batch thread after writing any queued records.
+	 */
+	@Override
+	public void close() throws SecurityException {
+		super.close();
+		Thread thread;
+		synchronized(batchThreadLock) {
+			closed = true;
+			thread = batchThread;
+			batchThread = null;
+		}
+		if(thread != null) {
+			thread.interrupt();
+			try {
+				thread.join(BATCH_WINDOW * 2);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
-			MasterServer.invalidateTables(conn, invalidateList, null);
 		}
 	}
 }
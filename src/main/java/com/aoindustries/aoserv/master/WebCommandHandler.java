@@ -0,0 +1,840 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master;
+
+import com.aoapps.dbc.DatabaseConnection;
+import com.aoapps.hodgepodge.io.stream.StreamableInput;
+import com.aoapps.hodgepodge.io.stream.StreamableOutput;
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.Email;
+import com.aoindustries.aoserv.client.aosh.Command;
+import com.aoindustries.aoserv.client.linux.PosixPath;
+import com.aoindustries.aoserv.client.schema.AoservProtocol;
+import com.aoindustries.aoserv.client.web.Location;
+import com.aoindustries.aoserv.client.web.tomcat.Context;
+import com.aoindustries.aoserv.master.master.Process;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Handles the commands that modify web sites and Tomcat.
+ *
+ * @author  AO Industries, Inc.
+ */
+public class WebCommandHandler implements CommandHandler {
+
+	@Override
+	public Set<AoservProtocol.CommandID> getCommandIDs() {
+		return EnumSet.of(
+			AoservProtocol.CommandID.SET_HTTPD_SHARED_TOMCAT_IS_MANUAL,
+			AoservProtocol.CommandID.SET_HTTPD_SHARED_TOMCAT_MAX_POST_SIZE,
+			AoservProtocol.CommandID.SET_HTTPD_SHARED_TOMCAT_UNPACK_WARS,
+			AoservProtocol.CommandID.SET_HTTPD_SHARED_TOMCAT_AUTO_DEPLOY,
+			AoservProtocol.CommandID.SET_HTTPD_SHARED_TOMCAT_VERSION,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_AUTHENTICATED_LOCATION_ATTRIBUTES,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BIND_IS_MANUAL,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BIND_REDIRECT_TO_PRIMARY_HOSTNAME,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_IS_MANUAL,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_SERVER_ADMIN,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_PHP_VERSION,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_ENABLE_CGI,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_ENABLE_SSI,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_ENABLE_HTACCESS,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_ENABLE_INDEXES,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_ENABLE_FOLLOW_SYMLINKS,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_ENABLE_ANONYMOUS_FTP,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BLOCK_TRACE_TRACK,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BLOCK_SCM,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BLOCK_CORE_DUMPS,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BLOCK_EDITOR_BACKUPS,
+			AoservProtocol.CommandID.SET_HTTPD_SITE_BIND_PREDISABLE_CONFIG,
+			AoservProtocol.CommandID.SET_HTTPD_TOMCAT_CONTEXT_ATTRIBUTES,
+			AoservProtocol.CommandID.SET_HTTPD_TOMCAT_SITE_BLOCK_WEBINF,
+			AoservProtocol.CommandID.SET_HTTPD_TOMCAT_STD_SITE_MAX_POST_SIZE,
+			AoservProtocol.CommandID.SET_HTTPD_TOMCAT_STD_SITE_UNPACK_WARS,
+			AoservProtocol.CommandID.SET_HTTPD_TOMCAT_STD_SITE_AUTO_DEPLOY,
+			AoservProtocol.CommandID.SET_HTTPD_TOMCAT_STD_SITE_VERSION,
+			AoservProtocol.CommandID.SET_PRIMARY_HTTPD_SITE_URL,
+			AoservProtocol.CommandID.UPDATE_HTTPD_TOMCAT_DATA_SOURCE,
+			AoservProtocol.CommandID.UPDATE_HTTPD_TOMCAT_PARAMETER
+		);
+	}
+
+	@Override
+	public boolean isSendInvalidateList(AoservProtocol.CommandID commandID) {
+		return true;
+	}
+
+	@Override
+	public MasterServer.Response handleCommand(
+		DatabaseConnection conn,
+		RequestSource source,
+		StreamableInput in,
+		StreamableOutput out,
+		Process process,
+		AoservProtocol.CommandID commandID,
+		InvalidateList invalidateList
+	) throws IOException, SQLException, ValidationException {
+		final MasterServer.Response resp;
+		switch(commandID) {
+			case SET_HTTPD_SHARED_TOMCAT_IS_MANUAL :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					boolean isManual = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SHARED_TOMCAT_IS_MANUAL,
+						sharedTomcat,
+						isManual
+					);
+					WebHandler.setSharedTomcatIsManual(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat,
+						isManual
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SHARED_TOMCAT_MAX_POST_SIZE :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					int maxPostSize = in.readInt();
+					process.setCommand(
+						Command.SET_HTTPD_SHARED_TOMCAT_MAX_POST_SIZE,
+						sharedTomcat,
+						maxPostSize
+					);
+					WebHandler.setSharedTomcatMaxPostSize(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat,
+						maxPostSize
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SHARED_TOMCAT_UNPACK_WARS :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					boolean unpackWARs = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SHARED_TOMCAT_UNPACK_WARS,
+						sharedTomcat,
+						unpackWARs
+					);
+					WebHandler.setSharedTomcatUnpackWARs(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat,
+						unpackWARs
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SHARED_TOMCAT_AUTO_DEPLOY :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					boolean autoDeploy = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SHARED_TOMCAT_AUTO_DEPLOY,
+						sharedTomcat,
+						autoDeploy
+					);
+					WebHandler.setSharedTomcatAutoDeploy(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat,
+						autoDeploy
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case web_tomcat_SharedTomcat_tomcatAuthentication_set :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					boolean tomcatAuthentication = in.readBoolean();
+					process.setCommand(
+						Command.web_tomcat_SharedTomcat_tomcatAuthentication_set,
+						sharedTomcat,
+						tomcatAuthentication
+					);
+					WebHandler.setSharedTomcatTomcatAuthentication(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat,
+						tomcatAuthentication
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SHARED_TOMCAT_VERSION :
+				{
+					int sharedTomcat = in.readCompressedInt();
+					int version = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_HTTPD_SHARED_TOMCAT_VERSION,
+						sharedTomcat,
+						version
+					);
+					WebHandler.setSharedTomcatVersion(
+						conn,
+						source,
+						invalidateList,
+						sharedTomcat,
+						version
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_AUTHENTICATED_LOCATION_ATTRIBUTES :
+				{
+					int location = in.readCompressedInt();
+					String path = in.readUTF().trim();
+					boolean isRegularExpression = in.readBoolean();
+					String authName = in.readUTF().trim();
+					PosixPath authGroupFile;
+					{
+						String s = in.readUTF().trim();
+						authGroupFile = s.isEmpty() ? null : PosixPath.valueOf(s);
+					}
+					PosixPath authUserFile;
+					{
+						String s = in.readUTF().trim();
+						authUserFile = s.isEmpty() ? null : PosixPath.valueOf(s);
+					}
+					String require = in.readUTF().trim();
+					String handler;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_13) >= 0) {
+						String s = in.readUTF();
+						handler = s.isEmpty() ? null : s;
+					} else {
+						// Keep current value
+						handler = Location.Handler.CURRENT;
+					}
+					process.setCommand(
+						Command.SET_HTTPD_SITE_AUTHENTICATED_LOCATION_ATTRIBUTES,
+						location,
+						path,
+						isRegularExpression,
+						authName,
+						authGroupFile,
+						authUserFile,
+						require,
+						handler
+					);
+					WebHandler.setLocationAttributes(
+						conn,
+						source,
+						invalidateList,
+						location,
+						path,
+						isRegularExpression,
+						authName,
+						authGroupFile,
+						authUserFile,
+						require,
+						handler
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BIND_IS_MANUAL :
+				{
+					int virtualHost = in.readCompressedInt();
+					boolean isManual = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_BIND_IS_MANUAL,
+						virtualHost,
+						isManual
+					);
+					WebHandler.setVirtualHostIsManual(
+						conn,
+						source,
+						invalidateList,
+						virtualHost,
+						isManual
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BIND_REDIRECT_TO_PRIMARY_HOSTNAME :
+				{
+					int virtualHost = in.readCompressedInt();
+					boolean redirectToPrimaryHostname = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_BIND_REDIRECT_TO_PRIMARY_HOSTNAME,
+						virtualHost,
+						redirectToPrimaryHostname
+					);
+					WebHandler.setVirtualHostRedirectToPrimaryHostname(
+						conn,
+						source,
+						invalidateList,
+						virtualHost,
+						redirectToPrimaryHostname
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_IS_MANUAL :
+				{
+					int site = in.readCompressedInt();
+					boolean isManual = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_IS_MANUAL,
+						site,
+						isManual
+					);
+					WebHandler.setSiteIsManual(
+						conn,
+						source,
+						invalidateList,
+						site,
+						isManual
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_SERVER_ADMIN :
+				{
+					int site = in.readCompressedInt();
+					Email emailAddress = Email.valueOf(in.readUTF());
+					process.setCommand(
+						Command.SET_HTTPD_SITE_SERVER_ADMIN,
+						site,
+						emailAddress
+					);
+					WebHandler.setSiteServerAdmin(
+						conn,
+						source,
+						invalidateList,
+						site,
+						emailAddress
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_PHP_VERSION :
+				{
+					int site = in.readCompressedInt();
+					int phpVersion = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_PHP_VERSION,
+						site,
+						phpVersion
+					);
+					WebHandler.setSitePhpVersion(
+						conn,
+						source,
+						invalidateList,
+						site,
+						phpVersion
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_ENABLE_CGI :
+				{
+					int site = in.readCompressedInt();
+					boolean enableCgi = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_ENABLE_CGI,
+						site,
+						enableCgi
+					);
+					WebHandler.setSiteEnableCgi(
+						conn,
+						source,
+						invalidateList,
+						site,
+						enableCgi
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_ENABLE_SSI :
+				{
+					int site = in.readCompressedInt();
+					boolean enableSsi = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_ENABLE_SSI,
+						site,
+						enableSsi
+					);
+					WebHandler.setSiteEnableSsi(
+						conn,
+						source,
+						invalidateList,
+						site,
+						enableSsi
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_ENABLE_HTACCESS :
+				{
+					int site = in.readCompressedInt();
+					boolean enableHtaccess = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_ENABLE_HTACCESS,
+						site,
+						enableHtaccess
+					);
+					WebHandler.setSiteEnableHtaccess(
+						conn,
+						source,
+						invalidateList,
+						site,
+						enableHtaccess
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_ENABLE_INDEXES :
+				{
+					int site = in.readCompressedInt();
+					boolean enableIndexes = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_ENABLE_INDEXES,
+						site,
+						enableIndexes
+					);
+					WebHandler.setSiteEnableIndexes(
+						conn,
+						source,
+						invalidateList,
+						site,
+						enableIndexes
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_ENABLE_FOLLOW_SYMLINKS :
+				{
+					int site = in.readCompressedInt();
+					boolean enableFollowSymlinks = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_ENABLE_FOLLOW_SYMLINKS,
+						site,
+						enableFollowSymlinks
+					);
+					WebHandler.setSiteEnableFollowSymlinks(
+						conn,
+						source,
+						invalidateList,
+						site,
+						enableFollowSymlinks
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_ENABLE_ANONYMOUS_FTP :
+				{
+					int site = in.readCompressedInt();
+					boolean enableAnonymousFtp = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_ENABLE_ANONYMOUS_FTP,
+						site,
+						enableAnonymousFtp
+					);
+					WebHandler.setSiteEnableAnonymousFtp(
+						conn,
+						source,
+						invalidateList,
+						site,
+						enableAnonymousFtp
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BLOCK_TRACE_TRACK :
+				{
+					int site = in.readCompressedInt();
+					boolean blockTraceTrack = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_BLOCK_TRACE_TRACK,
+						site,
+						blockTraceTrack
+					);
+					WebHandler.setSiteBlockTraceTrack(
+						conn,
+						source,
+						invalidateList,
+						site,
+						blockTraceTrack
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BLOCK_SCM :
+				{
+					int site = in.readCompressedInt();
+					boolean blockScm = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_BLOCK_SCM,
+						site,
+						blockScm
+					);
+					WebHandler.setSiteBlockScm(
+						conn,
+						source,
+						invalidateList,
+						site,
+						blockScm
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BLOCK_CORE_DUMPS :
+				{
+					int site = in.readCompressedInt();
+					boolean blockCoreDumps = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_BLOCK_CORE_DUMPS,
+						site,
+						blockCoreDumps
+					);
+					WebHandler.setSiteBlockCoreDumps(
+						conn,
+						source,
+						invalidateList,
+						site,
+						blockCoreDumps
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BLOCK_EDITOR_BACKUPS :
+				{
+					int site = in.readCompressedInt();
+					boolean blockEditorBackups = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_SITE_BLOCK_EDITOR_BACKUPS,
+						site,
+						blockEditorBackups
+					);
+					WebHandler.setSiteBlockEditorBackups(
+						conn,
+						source,
+						invalidateList,
+						site,
+						blockEditorBackups
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_SITE_BIND_PREDISABLE_CONFIG :
+				{
+					int virtualHost = in.readCompressedInt();
+					String config = in.readNullUTF();
+					process.setCommand(
+						"set_httpd_site_bind_predisable_config",
+						virtualHost,
+						AoservProtocol.FILTERED
+					);
+					WebHandler.setVirtualHostPredisableConfig(
+						conn,
+						source,
+						invalidateList,
+						virtualHost,
+						config
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_TOMCAT_CONTEXT_ATTRIBUTES :
+				{
+					int context = in.readCompressedInt();
+					String className = in.readNullUTF();
+					boolean cookies = in.readBoolean();
+					boolean crossContext = in.readBoolean();
+					PosixPath docBase = PosixPath.valueOf(in.readUTF());
+					boolean override = in.readBoolean();
+					String path = in.readUTF().trim();
+					boolean privileged = in.readBoolean();
+					boolean reloadable = in.readBoolean();
+					boolean useNaming = in.readBoolean();
+					String wrapperClass = in.readNullUTF();
+					int debug = in.readCompressedInt();
+					PosixPath workDir = PosixPath.valueOf(in.readNullUTF());
+					boolean serverXmlConfigured;
+					if(source.getProtocolVersion().compareTo(AoservProtocol.Version.VERSION_1_81_2) <= 0) {
+						serverXmlConfigured = Context.DEFAULT_SERVER_XML_CONFIGURED;
+					} else {
+						serverXmlConfigured = in.readBoolean();
+					}
+					process.setCommand(
+						Command.SET_HTTPD_TOMCAT_CONTEXT_ATTRIBUTES,
+						context,
+						className,
+						cookies,
+						crossContext,
+						docBase,
+						override,
+						path,
+						privileged,
+						reloadable,
+						useNaming,
+						wrapperClass,
+						debug,
+						workDir,
+						serverXmlConfigured
+					);
+					WebHandler.setContextAttributes(
+						conn,
+						source,
+						invalidateList,
+						context,
+						className,
+						cookies,
+						crossContext,
+						docBase,
+						override,
+						path,
+						privileged,
+						reloadable,
+						useNaming,
+						wrapperClass,
+						debug,
+						workDir,
+						serverXmlConfigured
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_TOMCAT_SITE_BLOCK_WEBINF :
+				{
+					int tomcatSite = in.readCompressedInt();
+					boolean blockWebinf = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_TOMCAT_SITE_BLOCK_WEBINF,
+						tomcatSite,
+						blockWebinf
+					);
+					WebHandler.setTomcatSiteBlockWebinf(
+						conn,
+						source,
+						invalidateList,
+						tomcatSite,
+						blockWebinf
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_TOMCAT_STD_SITE_MAX_POST_SIZE :
+				{
+					int privateTomcatSite = in.readCompressedInt();
+					int maxPostSize = in.readInt();
+					process.setCommand(
+						Command.SET_HTTPD_TOMCAT_STD_SITE_MAX_POST_SIZE,
+						privateTomcatSite,
+						maxPostSize
+					);
+					WebHandler.setPrivateTomcatSiteMaxPostSize(
+						conn,
+						source,
+						invalidateList,
+						privateTomcatSite,
+						maxPostSize
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_TOMCAT_STD_SITE_UNPACK_WARS :
+				{
+					int privateTomcatSite = in.readCompressedInt();
+					boolean unpackWARs = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_TOMCAT_STD_SITE_UNPACK_WARS,
+						privateTomcatSite,
+						unpackWARs
+					);
+					WebHandler.setPrivateTomcatSiteUnpackWARs(
+						conn,
+						source,
+						invalidateList,
+						privateTomcatSite,
+						unpackWARs
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_TOMCAT_STD_SITE_AUTO_DEPLOY :
+				{
+					int privateTomcatSite = in.readCompressedInt();
+					boolean autoDeploy = in.readBoolean();
+					process.setCommand(
+						Command.SET_HTTPD_TOMCAT_STD_SITE_AUTO_DEPLOY,
+						privateTomcatSite,
+						autoDeploy
+					);
+					WebHandler.setPrivateTomcatSiteAutoDeploy(
+						conn,
+						source,
+						invalidateList,
+						privateTomcatSite,
+						autoDeploy
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case web_tomcat_PrivateTomcatSite_tomcatAuthentication_set :
+				{
+					int privateTomcatSite = in.readCompressedInt();
+					boolean tomcatAuthentication = in.readBoolean();
+					process.setCommand(
+						Command.web_tomcat_PrivateTomcatSite_tomcatAuthentication_set,
+						privateTomcatSite,
+						tomcatAuthentication
+					);
+					WebHandler.setPrivateTomcatSiteTomcatAuthentication(
+						conn,
+						source,
+						invalidateList,
+						privateTomcatSite,
+						tomcatAuthentication
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_HTTPD_TOMCAT_STD_SITE_VERSION :
+				{
+					int privateTomcatSite = in.readCompressedInt();
+					int version = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_HTTPD_TOMCAT_STD_SITE_VERSION,
+						privateTomcatSite,
+						version
+					);
+					WebHandler.setPrivateTomcatSiteVersion(
+						conn,
+						source,
+						invalidateList,
+						privateTomcatSite,
+						version
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case SET_PRIMARY_HTTPD_SITE_URL :
+				{
+					int virtualHostName = in.readCompressedInt();
+					process.setCommand(
+						Command.SET_PRIMARY_HTTPD_SITE_URL,
+						virtualHostName
+					);
+					WebHandler.setPrimaryVirtualHostName(
+						conn,
+						source,
+						invalidateList,
+						virtualHostName
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case UPDATE_HTTPD_TOMCAT_DATA_SOURCE:
+				{
+					int contextDataSource = in.readCompressedInt();
+					String name=in.readUTF();
+					String driverClassName=in.readUTF();
+					String url=in.readUTF();
+					String username=in.readUTF();
+					String password=in.readUTF();
+					int maxActive=in.readCompressedInt();
+					int maxIdle=in.readCompressedInt();
+					int maxWait=in.readCompressedInt();
+					String validationQuery=in.readUTF();
+					if(validationQuery.length() == 0) validationQuery=null;
+					process.setCommand(
+						Command.UPDATE_HTTPD_TOMCAT_DATA_SOURCE,
+						contextDataSource,
+						name,
+						driverClassName,
+						url,
+						username,
+						AoservProtocol.FILTERED,
+						maxActive,
+						maxIdle,
+						maxWait,
+						validationQuery
+					);
+					WebHandler.updateContextDataSource(
+						conn,
+						source,
+						invalidateList,
+						contextDataSource,
+						name,
+						driverClassName,
+						url,
+						username,
+						password,
+						maxActive,
+						maxIdle,
+						maxWait,
+						validationQuery
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			case UPDATE_HTTPD_TOMCAT_PARAMETER :
+				{
+					int contextParameter = in.readCompressedInt();
+					String name=in.readUTF();
+					String value=in.readUTF();
+					boolean override=in.readBoolean();
+					String description=in.readUTF();
+					if(description.length() == 0) description=null;
+					process.setCommand(
+						Command.UPDATE_HTTPD_TOMCAT_PARAMETER,
+						contextParameter,
+						name,
+						value,
+						override,
+						description
+					);
+					WebHandler.updateContextParameter(
+						conn,
+						source,
+						invalidateList,
+						contextParameter,
+						name,
+						value,
+						override,
+						description
+					);
+					resp = MasterServer.Response.DONE;
+				}
+				break;
+			default :
+				throw new AssertionError("Unexpected command: " + commandID);
+		}
+		return resp;
+	}
+}
@@ -54,6 +54,7 @@ import com.aoindustries.aoserv.client.web.tomcat.SharedTomcat;
 import com.aoindustries.aoserv.client.web.tomcat.Version;
 import com.aoindustries.aoserv.daemon.client.AOServDaemonConnector;
 import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.dns.TldTrie;
 import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -930,7 +931,7 @@ final public class WebHandler {
 			throw new SQLException(e);
 		}
 
-		List<DomainName> tlds = MasterServer.getService(DnsService.class).getDNSTLDs(conn);
+		TldTrie tlds = MasterServer.getService(DnsService.class).getDNSTLDTrie(conn);
 //		DomainName testURL;
 //		try {
 //			testURL = DomainName.valueOf(siteName + "." + ServerHandler.getHostnameForLinuxServer(conn, linuxServer));
@@ -2531,7 +2532,7 @@ final public class WebHandler {
 		IntList httpdSiteBinds=conn.queryIntList("select id from web.\"VirtualHost\" where httpd_site=?", site);
 		if(httpdSiteBinds.size() > 0) {
 			DnsService dnsService = MasterServer.getService(DnsService.class);
-			List<DomainName> tlds = dnsService.getDNSTLDs(conn);
+			TldTrie tlds = dnsService.getDNSTLDTrie(conn);
 			SortedIntArrayList httpdBinds=new SortedIntArrayList();
 			for(int c=0;c<httpdSiteBinds.size();c++) {
 				int httpdSiteBind=httpdSiteBinds.getInt(c);
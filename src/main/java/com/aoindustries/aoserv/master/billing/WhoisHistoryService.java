@@ -44,6 +44,7 @@ import com.aoindustries.aoserv.client.schema.Table;
 import com.aoindustries.aoserv.master.CursorMode;
 import com.aoindustries.aoserv.master.InvalidateList;
 import com.aoindustries.aoserv.master.MasterDatabase;
+import com.aoindustries.aoserv.master.MasterExecutors;
 import com.aoindustries.aoserv.master.MasterServer;
 import com.aoindustries.aoserv.master.MasterService;
 import com.aoindustries.aoserv.master.ObjectFactories;
@@ -250,7 +251,7 @@ final public class WhoisHistoryService implements MasterService {
 						TIMER_REMINDER_INTERVAL
 					)
 				) {
-					MasterServer.executorService.submit(timer);
+					MasterExecutors.timers.submit(timer);
 
 					// Start the transaction
 					try (DatabaseConnection conn = MasterDatabase.getDatabase().connect()) {
@@ -0,0 +1,778 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A parallel branch-and-bound search for mappings of virtual servers to hosts and disks.
+ * <p>
+ * The search is split into {@link RecursiveAction fork/join tasks} once the first
+ * {@link #forkDepth} virtual servers have been placed.  Each task works on its own copy of the
+ * allocations, so tasks share nothing but the counters, the memoized states, and the solution.
+ * </p>
+ * <p>
+ * The following placements are skipped because they cannot lead to a solution not found elsewhere:
+ * </p>
+ * <ul>
+ * <li>An unused host when an identical, earlier host is also unused.</li>
+ * <li>A disk with the same type, remaining extents, and allocated weight as an earlier disk on the same host.</li>
+ * <li>A virtual server placed before an identical virtual server sorted immediately before it.</li>
+ * <li>The remaining virtual servers when the same allocations have already been found to have no solution.
+ *     Up to {@link #memoLimit} of these states are remembered.</li>
+ * </ul>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ClusterSearch {
+
+	enum SkipType {
+		PRIMARY_MANUAL_SERVER_MISMATCH,
+		PRIMARY_PROCESSOR_MISMATCH,
+		PRIMARY_CORES_EXCEEDED,
+		PRIMARY_RAM_EXCEEDED,
+		PRIMARY_HOST_SYMMETRY,
+		PRIMARY_DISK_TYPE_MISMATCH,
+		PRIMARY_DISK_EXTENTS_EXCEEDED,
+		PRIMARY_DISK_WEIGHT_EXCEEDED,
+		PRIMARY_DISK_MATCHES_PREVIOUS,
+		SECONDARY_MANUAL_SERVER_MISMATCH,
+		SECONDARY_PROCESSOR_MISMATCH,
+		SECONDARY_CORES_EXCEEDED,
+		SECONDARY_RAM_EXCEEDED,
+		SECONDARY_HOST_SYMMETRY,
+		SECONDARY_DISK_TYPE_MISMATCH,
+		SECONDARY_DISK_EXTENTS_EXCEEDED,
+		SECONDARY_DISK_WEIGHT_EXCEEDED,
+		SECONDARY_DISK_MATCHES_PREVIOUS,
+		VIRTUAL_SERVER_SYMMETRY,
+		MEMOIZED_INFEASIBLE
+	}
+
+	private static final SkipType[] skipTypes = SkipType.values();
+
+	private final VirtualServer[] virtualServers;
+	private final Host[] hosts;
+	private final boolean terminateOnFirstMatch;
+	private final int parallelism;
+	private final int forkDepth;
+	private final int memoLimit;
+
+	/**
+	 * The index of the first disk of each host in the allocations.
+	 */
+	private final int[] diskOffsets;
+	private final int numDisks;
+
+	/**
+	 * The index of the first virtual disk of each virtual server in the selections.
+	 */
+	private final int[] virtualDiskOffsets;
+	private final int numVirtualDisks;
+
+	/**
+	 * The earlier hosts that are interchangeable with each host.
+	 */
+	private final int[][] equivalentHosts;
+
+	/**
+	 * Whether each virtual server is interchangeable with the virtual server before it.
+	 */
+	private final boolean[] symmetricWithPrevious;
+
+	private final LongAdder[] skipCounts = new LongAdder[skipTypes.length];
+	private final LongAdder mapped = new LongAdder();
+
+	private final Set<MemoKey> infeasible = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger infeasibleSize = new AtomicInteger();
+
+	private final AtomicReference<State> solution = new AtomicReference<>();
+
+	/**
+	 * @param  parallelism  The number of threads to search with
+	 * @param  forkDepth  The number of virtual servers placed before splitting into parallel tasks
+	 * @param  memoLimit  The maximum number of infeasible states remembered, {@code 0} to disable
+	 */
+	ClusterSearch(VirtualServer[] virtualServers, Host[] hosts, boolean terminateOnFirstMatch, int parallelism, int forkDepth, int memoLimit) {
+		this.virtualServers = virtualServers;
+		this.hosts = hosts;
+		this.terminateOnFirstMatch = terminateOnFirstMatch;
+		this.parallelism = parallelism;
+		this.forkDepth = forkDepth;
+		this.memoLimit = memoLimit;
+		for(int i = 0; i < skipCounts.length; i++) skipCounts[i] = new LongAdder();
+
+		diskOffsets = new int[hosts.length];
+		int disks = 0;
+		for(int h = 0; h < hosts.length; h++) {
+			diskOffsets[h] = disks;
+			disks += hosts[h].disks.length;
+		}
+		numDisks = disks;
+
+		virtualDiskOffsets = new int[virtualServers.length];
+		int virtualDisks = 0;
+		for(int v = 0; v < virtualServers.length; v++) {
+			virtualDiskOffsets[v] = virtualDisks;
+			virtualDisks += virtualServers[v].virtualDisks.length;
+		}
+		numVirtualDisks = virtualDisks;
+
+		equivalentHosts = new int[hosts.length][];
+		for(int h = 0; h < hosts.length; h++) {
+			List<Integer> equivalent = new ArrayList<>();
+			if(!isManuallyConfigured(hosts[h])) {
+				for(int other = 0; other < h; other++) {
+					if(!isManuallyConfigured(hosts[other]) && isInterchangeable(hosts[other], hosts[h])) equivalent.add(other);
+				}
+			}
+			equivalentHosts[h] = equivalent.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		symmetricWithPrevious = new boolean[virtualServers.length];
+		for(int v = 1; v < virtualServers.length; v++) {
+			symmetricWithPrevious[v] = isInterchangeable(virtualServers[v - 1], virtualServers[v]);
+		}
+	}
+
+	private boolean isManuallyConfigured(Host host) {
+		for(VirtualServer virtualServer : virtualServers) {
+			if(
+				host.hostname.equals(virtualServer.primaryServerHostname)
+				|| host.hostname.equals(virtualServer.secondaryServerHostname)
+			) return true;
+		}
+		return false;
+	}
+
+	private static boolean isInterchangeable(Host host1, Host host2) {
+		if(
+			host1.ram != host2.ram
+			|| host1.processorType != host2.processorType
+			|| host1.processorArchitecture != host2.processorArchitecture
+			|| host1.processorSpeed != host2.processorSpeed
+			|| host1.processorCores != host2.processorCores
+			|| host1.disks.length != host2.disks.length
+		) return false;
+		for(int i = 0; i < host1.disks.length; i++) {
+			Disk disk1 = host1.disks[i];
+			Disk disk2 = host2.disks[i];
+			if(disk1.diskType != disk2.diskType || disk1.extents != disk2.extents) return false;
+		}
+		return true;
+	}
+
+	private static boolean isInterchangeable(VirtualServer virtualServer1, VirtualServer virtualServer2) {
+		if(
+			!Objects.equals(virtualServer1.primaryServerHostname, virtualServer2.primaryServerHostname)
+			|| !Objects.equals(virtualServer1.secondaryServerHostname, virtualServer2.secondaryServerHostname)
+			|| virtualServer1.primaryRam != virtualServer2.primaryRam
+			|| virtualServer1.secondaryRam != virtualServer2.secondaryRam
+			|| virtualServer1.minimumProcessorType != virtualServer2.minimumProcessorType
+			|| virtualServer1.requiredProcessorArchitecture != virtualServer2.requiredProcessorArchitecture
+			|| virtualServer1.minimumProcessorSpeed != virtualServer2.minimumProcessorSpeed
+			|| virtualServer1.processorCores != virtualServer2.processorCores
+			|| virtualServer1.processorWeight != virtualServer2.processorWeight
+			|| virtualServer1.virtualDisks.length != virtualServer2.virtualDisks.length
+		) return false;
+		for(int i = 0; i < virtualServer1.virtualDisks.length; i++) {
+			VirtualDisk virtualDisk1 = virtualServer1.virtualDisks[i];
+			VirtualDisk virtualDisk2 = virtualServer2.virtualDisks[i];
+			if(
+				virtualDisk1.extents != virtualDisk2.extents
+				|| virtualDisk1.primaryDiskType != virtualDisk2.primaryDiskType
+				|| virtualDisk1.primaryWeight != virtualDisk2.primaryWeight
+				|| virtualDisk1.secondaryDiskType != virtualDisk2.secondaryDiskType
+				|| virtualDisk1.secondaryWeight != virtualDisk2.secondaryWeight
+			) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The allocations and selections of a single search task.
+	 */
+	private final class State {
+
+		private final int[] allocatedProcessorWeights;
+		private final int[] allocatedPrimaryRAMs;
+		private final int[] maximumAllocatedSecondaryRAMs;
+
+		/**
+		 * The allocated secondary RAM, indexed by <code>secondary * hosts.length + primary</code>.
+		 */
+		private final int[] allocatedSecondaryRAMs;
+
+		/**
+		 * The number of times each host is selected as primary or secondary.
+		 */
+		private final int[] hostUses;
+
+		private final int[] allocatedExtents;
+		private final int[] allocatedWeights;
+
+		private final int[] selectedPrimaryServers;
+		private final int[] selectedSecondaryServers;
+		private final int[] selectedPrimaryDisks;
+		private final int[] selectedSecondaryDisks;
+
+		private State() {
+			allocatedProcessorWeights = new int[hosts.length];
+			allocatedPrimaryRAMs = new int[hosts.length];
+			maximumAllocatedSecondaryRAMs = new int[hosts.length];
+			allocatedSecondaryRAMs = new int[hosts.length * hosts.length];
+			hostUses = new int[hosts.length];
+			allocatedExtents = new int[numDisks];
+			allocatedWeights = new int[numDisks];
+			selectedPrimaryServers = new int[virtualServers.length];
+			selectedSecondaryServers = new int[virtualServers.length];
+			selectedPrimaryDisks = new int[numVirtualDisks];
+			selectedSecondaryDisks = new int[numVirtualDisks];
+			Arrays.fill(selectedPrimaryServers, -1);
+			Arrays.fill(selectedSecondaryServers, -1);
+			Arrays.fill(selectedPrimaryDisks, -1);
+			Arrays.fill(selectedSecondaryDisks, -1);
+		}
+
+		private State(State other) {
+			allocatedProcessorWeights = other.allocatedProcessorWeights.clone();
+			allocatedPrimaryRAMs = other.allocatedPrimaryRAMs.clone();
+			maximumAllocatedSecondaryRAMs = other.maximumAllocatedSecondaryRAMs.clone();
+			allocatedSecondaryRAMs = other.allocatedSecondaryRAMs.clone();
+			hostUses = other.hostUses.clone();
+			allocatedExtents = other.allocatedExtents.clone();
+			allocatedWeights = other.allocatedWeights.clone();
+			selectedPrimaryServers = other.selectedPrimaryServers.clone();
+			selectedSecondaryServers = other.selectedSecondaryServers.clone();
+			selectedPrimaryDisks = other.selectedPrimaryDisks.clone();
+			selectedSecondaryDisks = other.selectedSecondaryDisks.clone();
+		}
+
+		/**
+		 * Gets the key for the remaining search from the given virtual server.  The
+		 * maximum secondary RAMs and host uses are not included, since they do not
+		 * change which mappings are possible.
+		 */
+		private MemoKey getMemoKey(int currentVirtualServer) {
+			boolean symmetric = symmetricWithPrevious[currentVirtualServer];
+			int[] key = new int[
+				1
+				+ allocatedProcessorWeights.length
+				+ allocatedPrimaryRAMs.length
+				+ allocatedSecondaryRAMs.length
+				+ allocatedExtents.length
+				+ allocatedWeights.length
+				+ (symmetric ? 2 : 0)
+			];
+			int pos = 0;
+			key[pos++] = currentVirtualServer;
+			System.arraycopy(allocatedProcessorWeights, 0, key, pos, allocatedProcessorWeights.length);
+			pos += allocatedProcessorWeights.length;
+			System.arraycopy(allocatedPrimaryRAMs, 0, key, pos, allocatedPrimaryRAMs.length);
+			pos += allocatedPrimaryRAMs.length;
+			System.arraycopy(allocatedSecondaryRAMs, 0, key, pos, allocatedSecondaryRAMs.length);
+			pos += allocatedSecondaryRAMs.length;
+			System.arraycopy(allocatedExtents, 0, key, pos, allocatedExtents.length);
+			pos += allocatedExtents.length;
+			System.arraycopy(allocatedWeights, 0, key, pos, allocatedWeights.length);
+			pos += allocatedWeights.length;
+			if(symmetric) {
+				// The placement of the previous virtual server limits the placement of this one
+				key[pos++] = selectedPrimaryServers[currentVirtualServer - 1];
+				key[pos++] = selectedSecondaryServers[currentVirtualServer - 1];
+			}
+			assert pos == key.length;
+			return new MemoKey(key);
+		}
+	}
+
+	private static final class MemoKey {
+
+		private final int[] key;
+		private final int hash;
+
+		private MemoKey(int[] key) {
+			this.key = key;
+			this.hash = Arrays.hashCode(key);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return
+				(obj instanceof MemoKey)
+				&& hash == ((MemoKey)obj).hash
+				&& Arrays.equals(key, ((MemoKey)obj).key);
+		}
+	}
+
+	private final class SearchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final State state;
+		private final int startVirtualServer;
+
+		private SearchTask(State state, int startVirtualServer) {
+			this.state = state;
+			this.startVirtualServer = startVirtualServer;
+		}
+
+		@Override
+		protected void compute() {
+			List<SearchTask> forks = new ArrayList<>();
+			mapVirtualServersToPrimaryServers(state, startVirtualServer, this, forks);
+			if(!forks.isEmpty() && !isCancelled()) invokeAll(forks);
+		}
+	}
+
+	private void skip(SkipType skipType) {
+		skipCounts[skipType.ordinal()].increment();
+	}
+
+	private boolean isCancelled() {
+		return terminateOnFirstMatch && solution.get() != null;
+	}
+
+	/**
+	 * Checks if an identical, earlier host is also unused.
+	 */
+	private boolean hasUnusedEquivalent(State state, int hostIndex) {
+		if(state.hostUses[hostIndex] == 0) {
+			for(int other : equivalentHosts[hostIndex]) {
+				if(state.hostUses[other] == 0) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if a disk has the same remaining capacity as an earlier disk, making it an equivalent choice.
+	 */
+	private boolean matchesPrevious(State state, Disk[] disks, int diskOffset, int diskIndex) {
+		final Disk disk = disks[diskIndex];
+		final int remainingExtents = disk.extents - state.allocatedExtents[diskOffset + diskIndex];
+		final int allocatedWeight = state.allocatedWeights[diskOffset + diskIndex];
+		for(int previousDiskIndex = 0; previousDiskIndex < diskIndex; previousDiskIndex++) {
+			final Disk previousDisk = disks[previousDiskIndex];
+			if(
+				previousDisk.diskType == disk.diskType
+				&& (previousDisk.extents - state.allocatedExtents[diskOffset + previousDiskIndex]) == remainingExtents
+				&& state.allocatedWeights[diskOffset + previousDiskIndex] == allocatedWeight
+			) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Places the given virtual server, and all following, on a primary server.
+	 *
+	 * @return  {@code true} when a mapping was found or the search of this subtree continues in other tasks
+	 */
+	private boolean mapVirtualServersToPrimaryServers(State state, int currentVirtualServer, SearchTask task, List<SearchTask> forks) {
+		if(currentVirtualServer == virtualServers.length) {
+			mapped.increment();
+			solution.compareAndSet(null, new State(state));
+			return true;
+		}
+		if(currentVirtualServer > task.startVirtualServer && currentVirtualServer <= forkDepth) {
+			forks.add(new SearchTask(new State(state), currentVirtualServer));
+			return true;
+		}
+		if(isCancelled()) return true;
+		MemoKey memoKey;
+		if(memoLimit > 0 && currentVirtualServer > forkDepth) {
+			memoKey = state.getMemoKey(currentVirtualServer);
+			if(infeasible.contains(memoKey)) {
+				skip(SkipType.MEMOIZED_INFEASIBLE);
+				return false;
+			}
+		} else {
+			memoKey = null;
+		}
+		final VirtualServer virtualServer = virtualServers[currentVirtualServer];
+		final boolean symmetric = symmetricWithPrevious[currentVirtualServer];
+		boolean found = false;
+		// Try each primary server
+		for(int primaryServerIndex = 0; primaryServerIndex < hosts.length; primaryServerIndex++) {
+			final Host primaryServer = hosts[primaryServerIndex];
+			// First allow manual configuration
+			if(virtualServer.primaryServerHostname != null && !virtualServer.primaryServerHostname.equals(primaryServer.hostname)) {
+				skip(SkipType.PRIMARY_MANUAL_SERVER_MISMATCH);
+				continue;
+			}
+			// Identical virtual servers are placed in order
+			if(symmetric && primaryServerIndex < state.selectedPrimaryServers[currentVirtualServer - 1]) {
+				skip(SkipType.VIRTUAL_SERVER_SYMMETRY);
+				continue;
+			}
+			// Only map the virtual server to the primary server if it matches any processor type, architecture, and speed constraints.
+			if(
+				!(
+					virtualServer.minimumProcessorType == null
+					|| primaryServer.processorType.compareTo(virtualServer.minimumProcessorType) >= 0
+				) || !(
+					virtualServer.requiredProcessorArchitecture == null
+					|| primaryServer.processorArchitecture == virtualServer.requiredProcessorArchitecture
+				) || !(
+					virtualServer.minimumProcessorSpeed == -1
+					|| primaryServer.processorSpeed >= virtualServer.minimumProcessorSpeed
+				)
+			) {
+				skip(SkipType.PRIMARY_PROCESSOR_MISMATCH);
+				continue;
+			}
+			// Stop processing if primaryServer past capacity on either processor cores or RAM
+			final int oldAllocatedProcessorWeight = state.allocatedProcessorWeights[primaryServerIndex];
+			final int newAllocatedProcessorWeight = oldAllocatedProcessorWeight + virtualServer.processorCores * virtualServer.processorWeight;
+			if((primaryServer.processorCores * 1000) < newAllocatedProcessorWeight) {
+				skip(SkipType.PRIMARY_CORES_EXCEEDED);
+				continue;
+			}
+			// Stop processing if primaryServer past capacity on RAM (primary + maximum of the secondaries)
+			final int oldAllocatedPrimaryRAM = state.allocatedPrimaryRAMs[primaryServerIndex];
+			final int newAllocatedPrimaryRAM = oldAllocatedPrimaryRAM + virtualServer.primaryRam;
+			if(primaryServer.ram < (newAllocatedPrimaryRAM + state.maximumAllocatedSecondaryRAMs[primaryServerIndex])) {
+				skip(SkipType.PRIMARY_RAM_EXCEEDED);
+				continue;
+			}
+			if(hasUnusedEquivalent(state, primaryServerIndex)) {
+				skip(SkipType.PRIMARY_HOST_SYMMETRY);
+				continue;
+			}
+			state.selectedPrimaryServers[currentVirtualServer] = primaryServerIndex;
+			state.allocatedProcessorWeights[primaryServerIndex] = newAllocatedProcessorWeight;
+			state.allocatedPrimaryRAMs[primaryServerIndex] = newAllocatedPrimaryRAM;
+			state.hostUses[primaryServerIndex]++;
+
+			// Try all the combinations of virtualDisk to disk mappings (recursively)
+			if(mapVirtualDisksToPrimaryDisks(state, currentVirtualServer, 0, task, forks)) found = true;
+
+			state.selectedPrimaryServers[currentVirtualServer] = -1;
+			state.allocatedProcessorWeights[primaryServerIndex] = oldAllocatedProcessorWeight;
+			state.allocatedPrimaryRAMs[primaryServerIndex] = oldAllocatedPrimaryRAM;
+			state.hostUses[primaryServerIndex]--;
+
+			if(isCancelled()) return true;
+		}
+		if(!found && memoKey != null && infeasibleSize.get() < memoLimit && infeasible.add(memoKey)) {
+			infeasibleSize.incrementAndGet();
+		}
+		return found;
+	}
+
+	private boolean mapVirtualDisksToPrimaryDisks(State state, int currentVirtualServer, int currentVirtualDisk, SearchTask task, List<SearchTask> forks) {
+		final VirtualServer virtualServer = virtualServers[currentVirtualServer];
+		if(currentVirtualDisk == virtualServer.virtualDisks.length) {
+			// All virtual disks are mapped to primary server now
+			return mapVirtualServersToSecondaryServers(state, currentVirtualServer, task, forks);
+		}
+		final VirtualDisk virtualDisk = virtualServer.virtualDisks[currentVirtualDisk];
+		final int primaryServerIndex = state.selectedPrimaryServers[currentVirtualServer];
+		final Disk[] primaryDisks = hosts[primaryServerIndex].disks;
+		final int diskOffset = diskOffsets[primaryServerIndex];
+		boolean found = false;
+		// Try each primary disk
+		for(int primaryDiskIndex = 0; primaryDiskIndex < primaryDisks.length; primaryDiskIndex++) {
+			final Disk primaryDisk = primaryDisks[primaryDiskIndex];
+			final int disk = diskOffset + primaryDiskIndex;
+			// Skip this primary disk if the type doesn't match
+			if(virtualDisk.primaryDiskType != primaryDisk.diskType) {
+				skip(SkipType.PRIMARY_DISK_TYPE_MISMATCH);
+				continue;
+			}
+			// Make sure has enough extents
+			final int oldAllocatedExtents = state.allocatedExtents[disk];
+			final int newAllocatedExtents = oldAllocatedExtents + virtualDisk.extents;
+			if(primaryDisk.extents < newAllocatedExtents) {
+				skip(SkipType.PRIMARY_DISK_EXTENTS_EXCEEDED);
+				continue;
+			}
+			final int oldAllocatedWeight = state.allocatedWeights[disk];
+			final int newAllocatedWeight = oldAllocatedWeight + virtualDisk.primaryWeight;
+			if(newAllocatedWeight > 1000) {
+				skip(SkipType.PRIMARY_DISK_WEIGHT_EXCEEDED);
+				continue;
+			}
+			// If remaining weight and extents exactly match a primary disk already checked, skip because there is no effective difference
+			if(matchesPrevious(state, primaryDisks, diskOffset, primaryDiskIndex)) {
+				skip(SkipType.PRIMARY_DISK_MATCHES_PREVIOUS);
+				continue;
+			}
+			state.selectedPrimaryDisks[virtualDiskOffsets[currentVirtualServer] + currentVirtualDisk] = disk;
+			state.allocatedExtents[disk] = newAllocatedExtents;
+			state.allocatedWeights[disk] = newAllocatedWeight;
+
+			if(mapVirtualDisksToPrimaryDisks(state, currentVirtualServer, currentVirtualDisk + 1, task, forks)) found = true;
+
+			state.selectedPrimaryDisks[virtualDiskOffsets[currentVirtualServer] + currentVirtualDisk] = -1;
+			state.allocatedExtents[disk] = oldAllocatedExtents;
+			state.allocatedWeights[disk] = oldAllocatedWeight;
+
+			if(isCancelled()) return true;
+		}
+		return found;
+	}
+
+	private boolean mapVirtualServersToSecondaryServers(State state, int currentVirtualServer, SearchTask task, List<SearchTask> forks) {
+		final VirtualServer virtualServer = virtualServers[currentVirtualServer];
+		final int primaryServerIndex = state.selectedPrimaryServers[currentVirtualServer];
+		final boolean symmetric =
+			symmetricWithPrevious[currentVirtualServer]
+			&& primaryServerIndex == state.selectedPrimaryServers[currentVirtualServer - 1];
+		boolean found = false;
+		// Now try each of the possible secondary mappings (to all servers except the primary)
+		for(int secondaryServerIndex = 0; secondaryServerIndex < hosts.length; secondaryServerIndex++) {
+			if(secondaryServerIndex == primaryServerIndex) continue;
+			final Host secondaryServer = hosts[secondaryServerIndex];
+			// Allow for manual configuration of secondary
+			if(virtualServer.secondaryServerHostname != null && !virtualServer.secondaryServerHostname.equals(secondaryServer.hostname)) {
+				skip(SkipType.SECONDARY_MANUAL_SERVER_MISMATCH);
+				continue;
+			}
+			// Identical virtual servers on the same primary are placed in order of secondary
+			if(symmetric && secondaryServerIndex < state.selectedSecondaryServers[currentVirtualServer - 1]) {
+				skip(SkipType.VIRTUAL_SERVER_SYMMETRY);
+				continue;
+			}
+			// Make sure the secondary processorType and architecture match any requirements
+			if(
+				!(
+					virtualServer.minimumProcessorType == null
+					|| secondaryServer.processorType.compareTo(virtualServer.minimumProcessorType) >= 0
+				) || !(
+					virtualServer.requiredProcessorArchitecture == null
+					|| secondaryServer.processorArchitecture == virtualServer.requiredProcessorArchitecture
+				)
+			) {
+				skip(SkipType.SECONDARY_PROCESSOR_MISMATCH);
+				continue;
+			}
+			// Make sure secondary has at least total number of cores matching secondary cores.
+			// Note: we don't care about weight here - just make it run somewhere when in failover.
+			if(secondaryServer.processorCores < virtualServer.processorCores) {
+				skip(SkipType.SECONDARY_CORES_EXCEEDED);
+				continue;
+			}
+			// Make sure that the combined primary mapping plus secondary RAM does not exceed the total of this possible secondary machine
+			// for any one primary failure.
+			final int secondaryRAMIndex = secondaryServerIndex * hosts.length + primaryServerIndex;
+			final int oldAllocatedSecondaryRAM = state.allocatedSecondaryRAMs[secondaryRAMIndex];
+			final int newAllocatedSecondaryRAM = oldAllocatedSecondaryRAM + virtualServer.secondaryRam;
+			if(secondaryServer.ram < (state.allocatedPrimaryRAMs[secondaryServerIndex] + newAllocatedSecondaryRAM)) {
+				skip(SkipType.SECONDARY_RAM_EXCEEDED);
+				continue;
+			}
+			if(hasUnusedEquivalent(state, secondaryServerIndex)) {
+				skip(SkipType.SECONDARY_HOST_SYMMETRY);
+				continue;
+			}
+			state.selectedSecondaryServers[currentVirtualServer] = secondaryServerIndex;
+			state.allocatedSecondaryRAMs[secondaryRAMIndex] = newAllocatedSecondaryRAM;
+			final int oldMaximumAllocatedSecondaryRAM = state.maximumAllocatedSecondaryRAMs[secondaryServerIndex];
+			if(newAllocatedSecondaryRAM > oldMaximumAllocatedSecondaryRAM) state.maximumAllocatedSecondaryRAMs[secondaryServerIndex] = newAllocatedSecondaryRAM;
+			state.hostUses[secondaryServerIndex]++;
+
+			// Try all the combinations of virtualDisk to disk mappings (recursively)
+			if(mapVirtualDisksToSecondaryDisks(state, currentVirtualServer, 0, task, forks)) found = true;
+
+			state.selectedSecondaryServers[currentVirtualServer] = -1;
+			state.allocatedSecondaryRAMs[secondaryRAMIndex] = oldAllocatedSecondaryRAM;
+			state.maximumAllocatedSecondaryRAMs[secondaryServerIndex] = oldMaximumAllocatedSecondaryRAM;
+			state.hostUses[secondaryServerIndex]--;
+
+			if(isCancelled()) return true;
+		}
+		return found;
+	}
+
+	private boolean mapVirtualDisksToSecondaryDisks(State state, int currentVirtualServer, int currentVirtualDisk, SearchTask task, List<SearchTask> forks) {
+		final VirtualServer virtualServer = virtualServers[currentVirtualServer];
+		if(currentVirtualDisk == virtualServer.virtualDisks.length) {
+			// All virtual disks are mapped to secondary server now
+			return mapVirtualServersToPrimaryServers(state, currentVirtualServer + 1, task, forks);
+		}
+		final VirtualDisk virtualDisk = virtualServer.virtualDisks[currentVirtualDisk];
+		final int secondaryServerIndex = state.selectedSecondaryServers[currentVirtualServer];
+		final Disk[] secondaryDisks = hosts[secondaryServerIndex].disks;
+		final int diskOffset = diskOffsets[secondaryServerIndex];
+		boolean found = false;
+		// Try each secondary disk
+		for(int secondaryDiskIndex = 0; secondaryDiskIndex < secondaryDisks.length; secondaryDiskIndex++) {
+			final Disk secondaryDisk = secondaryDisks[secondaryDiskIndex];
+			final int disk = diskOffset + secondaryDiskIndex;
+			// Skip this secondary disk if the type doesn't match
+			if(virtualDisk.secondaryDiskType != secondaryDisk.diskType) {
+				skip(SkipType.SECONDARY_DISK_TYPE_MISMATCH);
+				continue;
+			}
+			// Make sure has enough extents
+			final int oldAllocatedExtents = state.allocatedExtents[disk];
+			final int newAllocatedExtents = oldAllocatedExtents + virtualDisk.extents;
+			if(secondaryDisk.extents < newAllocatedExtents) {
+				skip(SkipType.SECONDARY_DISK_EXTENTS_EXCEEDED);
+				continue;
+			}
+			final int oldAllocatedWeight = state.allocatedWeights[disk];
+			final int newAllocatedWeight = oldAllocatedWeight + virtualDisk.secondaryWeight;
+			if(newAllocatedWeight > 1000) {
+				skip(SkipType.SECONDARY_DISK_WEIGHT_EXCEEDED);
+				continue;
+			}
+			// If remaining weight and extents exactly match a secondary disk already checked, skip because there is no effective difference
+			if(matchesPrevious(state, secondaryDisks, diskOffset, secondaryDiskIndex)) {
+				skip(SkipType.SECONDARY_DISK_MATCHES_PREVIOUS);
+				continue;
+			}
+			state.selectedSecondaryDisks[virtualDiskOffsets[currentVirtualServer] + currentVirtualDisk] = disk;
+			state.allocatedExtents[disk] = newAllocatedExtents;
+			state.allocatedWeights[disk] = newAllocatedWeight;
+
+			if(mapVirtualDisksToSecondaryDisks(state, currentVirtualServer, currentVirtualDisk + 1, task, forks)) found = true;
+
+			state.selectedSecondaryDisks[virtualDiskOffsets[currentVirtualServer] + currentVirtualDisk] = -1;
+			state.allocatedExtents[disk] = oldAllocatedExtents;
+			state.allocatedWeights[disk] = oldAllocatedWeight;
+
+			if(isCancelled()) return true;
+		}
+		return found;
+	}
+
+	/**
+	 * The outcome of a search.
+	 */
+	final class Result {
+
+		private final boolean found;
+		private final long mapped;
+		private final long[] skipCounts;
+		private final long elapsedMillis;
+
+		private Result(boolean found, long mapped, long[] skipCounts, long elapsedMillis) {
+			this.found = found;
+			this.mapped = mapped;
+			this.skipCounts = skipCounts;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		boolean isFound() {
+			return found;
+		}
+
+		/**
+		 * The number of complete mappings found.  Only mappings that differ by
+		 * more than the placement of interchangeable servers and disks are counted.
+		 */
+		long getMapped() {
+			return mapped;
+		}
+
+		long getSkipCount(SkipType skipType) {
+			return skipCounts[skipType.ordinal()];
+		}
+
+		long getSkipped() {
+			long total = 0;
+			for(long count : skipCounts) total += count;
+			return total;
+		}
+
+		long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * Sets the selected servers and disks of the virtual servers to the mapping found.
+		 */
+		void apply() {
+			State state = solution.get();
+			if(state == null) throw new IllegalStateException("No mapping found");
+			for(int v = 0; v < virtualServers.length; v++) {
+				VirtualServer virtualServer = virtualServers[v];
+				virtualServer.selectedPrimaryServerIndex = state.selectedPrimaryServers[v];
+				virtualServer.selectedSecondaryServerIndex = state.selectedSecondaryServers[v];
+				Disk[] primaryDisks = hosts[virtualServer.selectedPrimaryServerIndex].disks;
+				Disk[] secondaryDisks = hosts[virtualServer.selectedSecondaryServerIndex].disks;
+				for(int d = 0; d < virtualServer.virtualDisks.length; d++) {
+					VirtualDisk virtualDisk = virtualServer.virtualDisks[d];
+					virtualDisk.selectedPrimaryDisk = primaryDisks[state.selectedPrimaryDisks[virtualDiskOffsets[v] + d] - diskOffsets[virtualServer.selectedPrimaryServerIndex]];
+					virtualDisk.selectedSecondaryDisk = secondaryDisks[state.selectedSecondaryDisks[virtualDiskOffsets[v] + d] - diskOffsets[virtualServer.selectedSecondaryServerIndex]];
+				}
+			}
+		}
+	}
+
+	long getMapped() {
+		return mapped.sum();
+	}
+
+	long getSkipCount(SkipType skipType) {
+		return skipCounts[skipType.ordinal()].sum();
+	}
+
+	long getSkipped() {
+		long total = 0;
+		for(LongAdder count : skipCounts) total += count.sum();
+		return total;
+	}
+
+	int getMemoized() {
+		return infeasibleSize.get();
+	}
+
+	/**
+	 * Performs the search.  The counters may be read from other threads while searching.
+	 */
+	Result search() {
+		long startTime = System.currentTimeMillis();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new SearchTask(new State(), 0));
+		} finally {
+			pool.shutdown();
+		}
+		long[] counts = new long[skipTypes.length];
+		for(int i = 0; i < counts.length; i++) counts[i] = skipCounts[i].sum();
+		return new Result(
+			solution.get() != null,
+			mapped.sum(),
+			counts,
+			System.currentTimeMillis() - startTime
+		);
+	}
+}
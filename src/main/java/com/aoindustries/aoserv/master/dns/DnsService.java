@@ -431,6 +431,7 @@ final public class DnsService implements MasterService {
 
 	private static final Object dnstldLock=new Object();
 	private static List<DomainName> dnstldCache;
+	private static TldTrie dnstldTrieCache;
 	// TODO: Move to a TopLevelDomainService
 	/**
 	 * Gets the contents of the <code>dns.TopLevelDomain</code> table.  Please note
@@ -469,6 +470,19 @@ final public class DnsService implements MasterService {
 		}
 	}
 
+	/**
+	 * Gets the same top-level domains as {@link #getDNSTLDs(com.aoapps.dbc.DatabaseConnection)},
+	 * indexed for resolving the zone of a hostname by its labels.
+	 */
+	public TldTrie getDNSTLDTrie(DatabaseConnection conn) throws IOException, SQLException {
+		synchronized(dnstldLock) {
+			if(dnstldTrieCache==null) {
+				dnstldTrieCache = new TldTrie(getDNSTLDs(conn));
+			}
+			return dnstldTrieCache;
+		}
+	}
+
 	private static String getZoneForRecord(DatabaseConnection conn, int record) throws IOException, SQLException {
 		return conn.queryString("select \"zone\" from dns.\"Record\" where id=?", record);
 	}
@@ -498,6 +512,7 @@ final public class DnsService implements MasterService {
 			case DNS_TLDS :
 				synchronized(dnstldLock) {
 					dnstldCache=null;
+					dnstldTrieCache=null;
 				}
 				break;
 		}
@@ -508,10 +523,10 @@ final public class DnsService implements MasterService {
 		DatabaseConnection conn,
 		InvalidateList invalidateList,
 		DomainName hostname,
-		List<DomainName> tlds
+		TldTrie tlds
 	) throws IOException, SQLException {
 		if(conn.queryBoolean("select (select id from web.\"VirtualHostName\" where hostname=? limit 1) is null", hostname)) {
-			DomainName tld = ZoneTable.getHostTLD(hostname, tlds);
+			DomainName tld = tlds.getHostTLD(hostname);
 			String zone = tld + ".";
 			if(conn.queryBoolean("select (select zone from dns.\"Zone\" where zone=?) is not null", zone)) {
 				String preTld = getPreTld(hostname, tld);
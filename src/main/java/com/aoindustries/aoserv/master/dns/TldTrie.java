@@ -0,0 +1,150 @@
+/*
+ * aoserv-master - Master server for the AOServ Platform.
+ * Copyright (C) 2021  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-master.
+ *
+ * aoserv-master is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-master is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-master.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.aoindustries.aoserv.master.dns;
+
+import com.aoapps.lang.validation.ValidationException;
+import com.aoapps.net.DomainName;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves the zone of a hostname from the effective top-level domains in
+ * <code>dns.TopLevelDomain</code>, in time proportional to the number of labels
+ * in the hostname instead of the number of top-level domains.
+ * <p>
+ * The top-level domains are stored as a trie of their labels in reverse order,
+ * so <code>com.au</code> is found under <code>au</code>.  A hostname is
+ * walked from its last label, and the deepest top-level domain that still
+ * leaves at least one label is its effective top-level domain.  This is the
+ * longest matching suffix, as found by scanning the list with
+ * {@link com.aoindustries.aoserv.client.dns.ZoneTable#getHostTLD(com.aoapps.net.DomainName, java.util.List)}.
+ * </p>
+ * <p>
+ * Instances are immutable and are rebuilt by {@link DnsService#getDNSTLDTrie(com.aoapps.dbc.DatabaseConnection)}
+ * when the table is invalidated.
+ * </p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class TldTrie {
+
+	private static class Node {
+
+		private final Map<String, Node> children = new HashMap<>();
+
+		/**
+		 * Is a top-level domain ending at this node.
+		 */
+		private boolean isTld;
+	}
+
+	private final Node root = new Node();
+	private final int size;
+
+	public TldTrie(Collection<DomainName> tlds) {
+		int count = 0;
+		for(DomainName tld : tlds) {
+			String[] labels = tld.toLowerCase().split("\\.");
+			Node node = root;
+			for(int i = labels.length - 1; i >= 0; i--) {
+				node = node.children.computeIfAbsent(labels[i], label -> new Node());
+			}
+			if(!node.isTld) {
+				node.isTld = true;
+				count++;
+			}
+		}
+		size = count;
+	}
+
+	/**
+	 * Gets the number of distinct top-level domains.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of labels at the end of a hostname that form the
+	 * zone: the effective top-level domain plus one label.
+	 *
+	 * @param  labels  the labels of the hostname, in lower-case
+	 *
+	 * @throws  IllegalArgumentException  when no top-level domain matches
+	 */
+	private int getZoneLabelCount(String hostname, String[] labels) throws IllegalArgumentException {
+		int tldLabels = 0;
+		Node node = root;
+		// Must leave at least one label before the top-level domain
+		for(int depth = 1; depth < labels.length; depth++) {
+			node = node.children.get(labels[labels.length - depth]);
+			if(node == null) break;
+			if(node.isTld) tldLabels = depth;
+		}
+		if(tldLabels == 0) throw new IllegalArgumentException("Unable to determine top level domain for hostname: " + hostname);
+		return tldLabels + 1;
+	}
+
+	private static String[] getLabels(String hostname) {
+		String lower = hostname.toLowerCase(Locale.ROOT);
+		if(lower.endsWith(".")) lower = lower.substring(0, lower.length() - 1);
+		return lower.split("\\.");
+	}
+
+	private static String join(String[] labels, int count) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = labels.length - count; i < labels.length; i++) {
+			if(sb.length() > 0) sb.append('.');
+			sb.append(labels[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the zone for a hostname, including the trailing period.
+	 *
+	 * @see  com.aoindustries.aoserv.client.dns.ZoneTable#getDNSZoneForHostname(java.lang.String, java.util.List)
+	 */
+	public String getDNSZoneForHostname(String hostname) throws IllegalArgumentException {
+		String[] labels = getLabels(hostname);
+		return join(labels, getZoneLabelCount(hostname, labels)) + '.';
+	}
+
+	/**
+	 * Gets the zone for a hostname, without the trailing period.
+	 *
+	 * @see  com.aoindustries.aoserv.client.dns.ZoneTable#getHostTLD(com.aoapps.net.DomainName, java.util.List)
+	 */
+	public DomainName getHostTLD(DomainName hostname) throws IllegalArgumentException {
+		String[] labels = getLabels(hostname.toString());
+		int count = getZoneLabelCount(hostname.toString(), labels);
+		if(count == labels.length) return hostname;
+		try {
+			return DomainName.valueOf(join(labels, count));
+		} catch(ValidationException e) {
+			throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+		}
+	}
+}
@@ -27,7 +27,6 @@ import com.aoapps.hodgepodge.io.stream.StreamableOutput;
 import com.aoapps.lang.validation.ValidationException;
 import com.aoapps.net.DomainName;
 import com.aoindustries.aoserv.client.account.Account;
-import com.aoindustries.aoserv.client.dns.ZoneTable;
 import com.aoindustries.aoserv.client.email.Domain;
 import com.aoindustries.aoserv.client.master.User;
 import com.aoindustries.aoserv.client.master.UserHost;
@@ -39,13 +38,13 @@ import com.aoindustries.aoserv.master.RequestSource;
 import com.aoindustries.aoserv.master.TableHandler;
 import com.aoindustries.aoserv.master.billing.WhoisHistoryDomainLocator;
 import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.dns.TldTrie;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -136,7 +135,7 @@ public class DomainService implements MasterService, WhoisHistoryDomainLocator {
 	// <editor-fold desc="WhoisHistoryDomainLocator" defaultstate="collapsed">
 	@Override
 	public Map<DomainName, Set<Account.Name>> getWhoisHistoryDomains(DatabaseConnection conn) throws IOException, SQLException {
-		List<DomainName> tlds = MasterServer.getService(DnsService.class).getDNSTLDs(conn);
+		TldTrie tlds = MasterServer.getService(DnsService.class).getDNSTLDTrie(conn);
 		return conn.queryCall(
 			(ResultSet results) -> {
 				try {
@@ -146,7 +145,7 @@ public class DomainService implements MasterService, WhoisHistoryDomainLocator {
 						Account.Name account = Account.Name.valueOf(results.getString(2));
 						DomainName registrableDomain;
 						try {
-							registrableDomain = ZoneTable.getHostTLD(domain, tlds);
+							registrableDomain = tlds.getHostTLD(domain);
 						} catch(IllegalArgumentException err) {
 							logger.log(Level.WARNING, "Cannot find TLD, continuing verbatim", err);
 							registrableDomain = domain;
@@ -23,9 +23,6 @@
 package com.aoindustries.aoserv.master.master;
 
 import com.aoapps.dbc.DatabaseConnection;
-import com.aoapps.hodgepodge.io.FifoFile;
-import com.aoapps.hodgepodge.io.FifoFileInputStream;
-import com.aoapps.hodgepodge.io.FifoFileOutputStream;
 import com.aoapps.hodgepodge.io.stream.StreamableOutput;
 import com.aoapps.hodgepodge.util.ThreadUtility;
 import com.aoapps.lang.Strings;
@@ -34,8 +31,16 @@ import com.aoapps.sql.pool.AOConnectionPool;
 import com.aoindustries.aoserv.client.master.ServerStat;
 import com.aoindustries.aoserv.client.schema.AoservProtocol;
 import com.aoindustries.aoserv.client.schema.Table;
+import com.aoindustries.aoserv.master.AoservProtocolHandler;
+import com.aoindustries.aoserv.master.AuthenticationCache;
+import com.aoindustries.aoserv.master.CursorPlanner;
 import com.aoindustries.aoserv.master.DaemonHandler;
+import com.aoindustries.aoserv.master.EntropyPool;
+import com.aoindustries.aoserv.master.HostAddressCache;
 import com.aoindustries.aoserv.master.MasterDatabase;
+import com.aoindustries.aoserv.master.MasterExecutors;
+import static com.aoindustries.aoserv.master.MasterServer.getInvalidationsMerged;
+import static com.aoindustries.aoserv.master.MasterServer.getInvalidationsSent;
 import static com.aoindustries.aoserv.master.MasterServer.getRequestConcurrency;
 import static com.aoindustries.aoserv.master.MasterServer.getRequestConnections;
 import static com.aoindustries.aoserv.master.MasterServer.getRequestMaxConcurrency;
@@ -43,14 +48,20 @@ import static com.aoindustries.aoserv.master.MasterServer.getRequestTotalTime;
 import static com.aoindustries.aoserv.master.MasterServer.getRequestTransactions;
 import static com.aoindustries.aoserv.master.MasterServer.getStartTime;
 import static com.aoindustries.aoserv.master.MasterServer.writeObjects;
+import com.aoindustries.aoserv.master.NetReputationSetHandler;
 import com.aoindustries.aoserv.master.RandomHandler;
 import com.aoindustries.aoserv.master.RequestSource;
+import com.aoindustries.aoserv.master.RequestStatistics;
+import com.aoindustries.aoserv.master.ResponseBuffer;
 import com.aoindustries.aoserv.master.TableHandler;
+import com.aoindustries.aoserv.master.TableSnapshotCache;
+import com.aoindustries.aoserv.master.TicketLoggingHandler;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -86,6 +97,14 @@ public class ServerStat_GetTableHandler extends TableHandler.GetTableHandlerPubl
 		);
 	}
 
+	/**
+	 * The statistics change continuously, without invalidations.
+	 */
+	@Override
+	protected boolean isSnapshotCacheable(Table.TableID tableID) {
+		return false;
+	}
+
 	@Override
 	protected void getTablePublic(DatabaseConnection conn, RequestSource source, StreamableOutput out, boolean provideProgress, Table.TableID tableID) throws IOException, SQLException {
 		List<ServerStat> objs;
@@ -106,6 +125,18 @@ public class ServerStat_GetTableHandler extends TableHandler.GetTableHandlerPubl
 				addStat(objs, ServerStat.CHAR_ARRAY_CACHE_COLLECTED, Long.toString(BufferManager.getCharBuffersCollected()), "Total number of char[] buffers detected as garbage collected");
 			}
 
+			for(AoservProtocol.CommandID commandID : AoservProtocol.CommandID.values()) {
+				RequestStatistics.CommandStatistics stats = RequestStatistics.getCommandStatistics(commandID);
+				if(stats != null) {
+					addStat(
+						objs,
+						"command_" + commandID.name().toLowerCase(Locale.ROOT),
+						RequestStatistics.toString(stats.getLatency()) + " errors=" + stats.getErrors(),
+						"Latency of the " + commandID + " command"
+					);
+				}
+			}
+
 			addStat(objs, ServerStat.DAEMON_CONCURRENCY, Integer.toString(DaemonHandler.getDaemonConcurrency()), "Number of active daemon connections");
 			addStat(objs, ServerStat.DAEMON_CONNECTIONS, Integer.toString(DaemonHandler.getDaemonConnections()), "Current number of daemon connections");
 			addStat(objs, ServerStat.DAEMON_CONNECTS, Integer.toString(DaemonHandler.getDaemonConnects()), "Number of times connecting to daemons");
@@ -116,6 +147,18 @@ public class ServerStat_GetTableHandler extends TableHandler.GetTableHandlerPubl
 			addStat(objs, ServerStat.DAEMON_TOTAL_TIME, Strings.getDecimalTimeLengthString(DaemonHandler.getDaemonTotalTime()), "Total time spent accessing daemons");
 			addStat(objs, ServerStat.DAEMON_TRANSACTIONS, Long.toString(DaemonHandler.getDaemonTransactions()), "Number of transactions processed by daemons");
 
+			addStat(objs, "cursor_auto_selects", Long.toString(CursorPlanner.getSelects()), "Number of automatic cursor mode queries performed without a cursor");
+			addStat(objs, "cursor_auto_fetches", Long.toString(CursorPlanner.getFetches()), "Number of automatic cursor mode queries performed with a cursor");
+			addStat(objs, "cursor_auto_history_hits", Long.toString(CursorPlanner.getHistoryHits()), "Number of automatic cursor mode decisions based on the previous query for the same table and user");
+			addStat(objs, "cursor_auto_reltuples_hits", Long.toString(CursorPlanner.getReltuplesHits()), "Number of automatic cursor mode decisions based on PostgreSQL table statistics");
+			addStat(objs, "cursor_auto_mispredictions", Long.toString(CursorPlanner.getMispredictions()), "Number of automatic cursor mode decisions that did not match the actual number of rows");
+			addStat(objs, "response_buffers", Long.toString(ResponseBuffer.getResponses()), "Number of table and object responses buffered before releasing the database connection");
+			addStat(objs, "table_snapshot_hits", Long.toString(TableSnapshotCache.getHits()), "Number of public table requests served from the snapshot cache");
+			addStat(objs, "table_snapshot_misses", Long.toString(TableSnapshotCache.getMisses()), "Number of public table requests not in the snapshot cache");
+			addStat(objs, "table_snapshot_stores", Long.toString(TableSnapshotCache.getStores()), "Number of public table responses added to the snapshot cache");
+			addStat(objs, "table_snapshot_size", Integer.toString(TableSnapshotCache.getSize()), "Number of public table responses currently in the snapshot cache");
+			addStat(objs, "response_buffer_overflows", Long.toString(ResponseBuffer.getOverflows()), "Number of buffered responses that overflowed to a temporary file");
+
 			AOConnectionPool dbPool=MasterDatabase.getDatabase().getConnectionPool();
 			addStat(objs, ServerStat.DB_CONCURRENCY, Integer.toString(dbPool.getConcurrency()), "Number of active database connections");
 			addStat(objs, ServerStat.DB_CONNECTIONS, Integer.toString(dbPool.getConnectionCount()), "Current number of database connections");
@@ -125,15 +168,15 @@ public class ServerStat_GetTableHandler extends TableHandler.GetTableHandlerPubl
 			addStat(objs, ServerStat.DB_TOTAL_TIME, Strings.getDecimalTimeLengthString(dbPool.getTotalTime()), "Total time spent accessing the database");
 			addStat(objs, ServerStat.DB_TRANSACTIONS, Long.toString(dbPool.getTransactionCount()), "Number of transactions committed by the database");
 
-			FifoFile entropyFile=RandomHandler.getFifoFile();
-			addStat(objs, ServerStat.ENTROPY_AVAIL, Long.toString(entropyFile.getLength()), "Number of bytes of entropy currently available");
-			addStat(objs, ServerStat.ENTROPY_POOLSIZE, Long.toString(entropyFile.getMaximumFifoLength()), "Maximum number of bytes of entropy");
-			FifoFileInputStream entropyIn=entropyFile.getInputStream();
-			addStat(objs, ServerStat.ENTROPY_READ_BYTES, Long.toString(entropyIn.getReadBytes()), "Number of bytes read from the entropy pool");
-			addStat(objs, ServerStat.ENTROPY_READ_COUNT, Long.toString(entropyIn.getReadCount()), "Number of reads from the entropy pool");
-			FifoFileOutputStream entropyOut=entropyFile.getOutputStream();
-			addStat(objs, ServerStat.ENTROPY_WRITE_BYTES, Long.toString(entropyOut.getWriteBytes()), "Number of bytes written to the entropy pool");
-			addStat(objs, ServerStat.ENTROPY_WRITE_COUNT, Long.toString(entropyOut.getWriteCount()), "Number of writes to the entropy pool");
+			EntropyPool entropyPool=RandomHandler.getEntropyPool();
+			EntropyPool entropyReserve=RandomHandler.getEntropyReserve();
+			addStat(objs, ServerStat.ENTROPY_AVAIL, Long.toString(entropyPool.getLength() + entropyReserve.getLength()), "Number of bytes of entropy currently available");
+			addStat(objs, ServerStat.ENTROPY_POOLSIZE, Long.toString(entropyPool.getMaximumLength()), "Maximum number of bytes of entropy");
+			addStat(objs, ServerStat.ENTROPY_READ_BYTES, Long.toString(entropyReserve.getReadBytes()), "Number of bytes read from the entropy pool");
+			addStat(objs, ServerStat.ENTROPY_READ_COUNT, Long.toString(entropyReserve.getReadCount()), "Number of reads from the entropy pool");
+			addStat(objs, ServerStat.ENTROPY_WRITE_BYTES, Long.toString(entropyPool.getWriteBytes()), "Number of bytes written to the entropy pool");
+			addStat(objs, ServerStat.ENTROPY_WRITE_COUNT, Long.toString(entropyPool.getWriteCount()), "Number of writes to the entropy pool");
+			addStat(objs, "entropy_reserve", Long.toString(entropyReserve.getLength()), "Number of bytes of entropy withdrawn from the pool file and ready to be read");
 
 			addStat(objs, ServerStat.MEMORY_FREE, Long.toString(Runtime.getRuntime().freeMemory()), "Free virtual machine memory in bytes");
 			addStat(objs, ServerStat.MEMORY_TOTAL, Long.toString(Runtime.getRuntime().totalMemory()), "Total virtual machine memory in bytes");
@@ -146,6 +189,57 @@ public class ServerStat_GetTableHandler extends TableHandler.GetTableHandlerPubl
 			addStat(objs, ServerStat.REQUEST_TOTAL_TIME, Strings.getDecimalTimeLengthString(getRequestTotalTime()), "Total time spent processing client requests");
 			addStat(objs, ServerStat.REQUEST_TRANSACTIONS, Long.toString(getRequestTransactions()), "Number of client requests processed");
 
+			addStat(objs, "invalidations_merged", Long.toString(getInvalidationsMerged()), "Number of invalidations merged into a signal already queued for a cache listener");
+			addStat(objs, "invalidations_sent", Long.toString(getInvalidationsSent()), "Number of invalidation signals sent to cache listeners");
+
+			addStat(objs, "authentication_cache_size", Integer.toString(AuthenticationCache.getSize()), "Number of recently verified credentials remembered");
+			addStat(objs, "authentication_cache_hits", Long.toString(AuthenticationCache.getHits()), "Number of connections authenticated without verifying the password hash");
+			addStat(objs, "authentication_cache_misses", Long.toString(AuthenticationCache.getMisses()), "Number of connections that verified the password hash");
+
+			addStat(objs, "protocol_last_used_recorded", Long.toString(AoservProtocolHandler.getRecorded()), "Number of protocol version uses recorded");
+			addStat(objs, "protocol_last_used_pending", Integer.toString(AoservProtocolHandler.getPending()), "Number of protocol versions waiting to be written");
+			addStat(objs, "protocol_last_used_flushes", Long.toString(AoservProtocolHandler.getFlushes()), "Number of times protocol versions last used have been written");
+
+			addStat(objs, "host_address_cache_size", Integer.toString(HostAddressCache.getSize()), "Number of administrator hosts with cached addresses");
+			addStat(objs, "host_address_cache_hits", Long.toString(HostAddressCache.getHits()), "Number of administrator host lookups served from the cache");
+			addStat(objs, "host_address_cache_misses", Long.toString(HostAddressCache.getMisses()), "Number of administrator host lookups that waited for the resolver");
+			addStat(objs, "host_address_cache_refreshes", Long.toString(HostAddressCache.getRefreshes()), "Number of expired administrator host addresses refreshed in the background");
+			addStat(objs, "host_address_cache_failures", Long.toString(HostAddressCache.getFailures()), "Number of administrator hosts that could not be resolved");
+			addStat(objs, "host_address_cache_resolve_time", Long.toString(HostAddressCache.getResolveTime()), "Milliseconds spent resolving administrator hosts");
+
+			addStat(objs, "ip_reputation_batches", Long.toString(NetReputationSetHandler.getBatches()), "Number of batches of IP reputation added");
+			addStat(objs, "ip_reputation_entries", Long.toString(NetReputationSetHandler.getEntries()), "Number of IP reputation entries added");
+			addStat(objs, "ip_reputation_time", Long.toString(NetReputationSetHandler.getBatchTime()), "Milliseconds spent adding IP reputation");
+
+			addStat(objs, "ticket_logging_published", Long.toString(TicketLoggingHandler.getPublished()), "Number of log records written to tickets");
+			addStat(objs, "ticket_logging_dropped", Long.toString(TicketLoggingHandler.getDropped()), "Number of log records dropped because too many were waiting to be written to tickets");
+			addStat(objs, "ticket_logging_batches", Long.toString(TicketLoggingHandler.getBatches()), "Number of batches of log records written to tickets");
+
+			for(MasterExecutors.Pool pool : MasterExecutors.getPools()) {
+				String name = pool.getName();
+				addStat(objs, "executor_" + name + "_threads", Integer.toString(pool.getPoolSize()), "Current number of threads in the " + name + " executor");
+				addStat(objs, "executor_" + name + "_max_threads", Integer.toString(pool.getMaximumPoolSize()), "Maximum number of threads in the " + name + " executor");
+				addStat(objs, "executor_" + name + "_largest_threads", Integer.toString(pool.getLargestPoolSize()), "Peak number of threads in the " + name + " executor");
+				addStat(objs, "executor_" + name + "_active", Integer.toString(pool.getActiveCount()), "Number of tasks being run by the " + name + " executor");
+				addStat(objs, "executor_" + name + "_queue_depth", Integer.toString(pool.getQueueDepth()), "Number of tasks waiting for a thread in the " + name + " executor");
+				addStat(objs, "executor_" + name + "_completed", Long.toString(pool.getCompletedTaskCount()), "Number of tasks completed by the " + name + " executor");
+				addStat(objs, "executor_" + name + "_rejected", Long.toString(pool.getRejected()), "Number of tasks that could not be queued by the " + name + " executor");
+			}
+
+			for(Table.TableID tableID : Table.TableID.values()) {
+				RequestStatistics.TableStatistics stats = RequestStatistics.getTableStatistics(tableID);
+				if(stats != null) {
+					addStat(
+						objs,
+						"table_" + tableID.name().toLowerCase(Locale.ROOT),
+						RequestStatistics.toString(stats.getLatency()) + " rows=" + stats.getRows() + " bytes=" + stats.getBytes()
+							+ "\ndatabase: " + RequestStatistics.toString(stats.getDatabase())
+							+ "\nwrite: " + RequestStatistics.toString(stats.getWrite()),
+						"Latency of providing the " + tableID + " table, with the time using the database and writing to the client"
+					);
+				}
+			}
+
 			addStat(objs, ServerStat.THREAD_COUNT, Integer.toString(ThreadUtility.getThreadCount()), "Current number of virtual machine threads");
 
 			addStat(objs, ServerStat.UPTIME, Strings.getDecimalTimeLengthString(System.currentTimeMillis()-getStartTime()), "Amount of time the master server has been running");
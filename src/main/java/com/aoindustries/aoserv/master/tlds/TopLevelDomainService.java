@@ -30,7 +30,7 @@ import com.aoapps.hodgepodge.logging.ProcessTimer;
 import com.aoapps.lang.Strings;
 import com.aoapps.tlds.TopLevelDomain;
 import com.aoindustries.aoserv.master.MasterDatabase;
-import com.aoindustries.aoserv.master.MasterServer;
+import com.aoindustries.aoserv.master.MasterExecutors;
 import com.aoindustries.aoserv.master.MasterService;
 import java.sql.Timestamp;
 import java.text.DateFormat;
@@ -90,7 +90,7 @@ public class TopLevelDomainService implements MasterService {
 						24L * 60 * 60 * 1000 // 24 hours
 					)
 				) {
-					MasterServer.executorService.submit(timer);
+					MasterExecutors.timers.submit(timer);
 
 					// Get the current TopLevelDomains snapshot
 					TopLevelDomain.Snapshot snapshot = TopLevelDomain.getSnapshot();
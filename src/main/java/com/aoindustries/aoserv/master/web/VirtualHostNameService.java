@@ -27,7 +27,6 @@ import com.aoapps.hodgepodge.io.stream.StreamableOutput;
 import com.aoapps.lang.validation.ValidationException;
 import com.aoapps.net.DomainName;
 import com.aoindustries.aoserv.client.account.Account;
-import com.aoindustries.aoserv.client.dns.ZoneTable;
 import com.aoindustries.aoserv.client.master.User;
 import com.aoindustries.aoserv.client.master.UserHost;
 import com.aoindustries.aoserv.client.schema.Table;
@@ -39,13 +38,13 @@ import com.aoindustries.aoserv.master.RequestSource;
 import com.aoindustries.aoserv.master.TableHandler;
 import com.aoindustries.aoserv.master.billing.WhoisHistoryDomainLocator;
 import com.aoindustries.aoserv.master.dns.DnsService;
+import com.aoindustries.aoserv.master.dns.TldTrie;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -144,7 +143,7 @@ public class VirtualHostNameService implements MasterService, WhoisHistoryDomain
 	// <editor-fold desc="WhoisHistoryDomainLocator" defaultstate="collapsed">
 	@Override
 	public Map<DomainName, Set<Account.Name>> getWhoisHistoryDomains(DatabaseConnection conn) throws IOException, SQLException {
-		List<DomainName> tlds = MasterServer.getService(DnsService.class).getDNSTLDs(conn);
+		TldTrie tlds = MasterServer.getService(DnsService.class).getDNSTLDTrie(conn);
 		return conn.queryCall(
 			(ResultSet results) -> {
 				try {
@@ -154,7 +153,7 @@ public class VirtualHostNameService implements MasterService, WhoisHistoryDomain
 						Account.Name account = Account.Name.valueOf(results.getString(2));
 						DomainName registrableDomain;
 						try {
-							registrableDomain = ZoneTable.getHostTLD(hostname, tlds);
+							registrableDomain = tlds.getHostTLD(hostname);
 						} catch(IllegalArgumentException err) {
 							logger.log(Level.WARNING, "Cannot find TLD, continuing verbatim", err);
 							registrableDomain = hostname;
@@ -52,9 +52,26 @@ module com.aoindustries.aoserv.master {
 	exports com.aoindustries.aoserv.master.web;
 	exports com.aoindustries.aoserv.master.web.jboss;
 	exports com.aoindustries.aoserv.master.web.tomcat;
+	uses com.aoindustries.aoserv.master.CommandHandler;
 	uses com.aoindustries.aoserv.master.MasterService;
 	uses com.aoindustries.aoserv.master.TableHandler.GetObjectHandler;
 	uses com.aoindustries.aoserv.master.TableHandler.GetTableHandler;
+	provides com.aoindustries.aoserv.master.CommandHandler with
+		com.aoindustries.aoserv.master.AccountCommandHandler,
+		com.aoindustries.aoserv.master.AddCommandHandler,
+		com.aoindustries.aoserv.master.BackupCommandHandler,
+		com.aoindustries.aoserv.master.BillingCommandHandler,
+		com.aoindustries.aoserv.master.DatabaseCommandHandler,
+		com.aoindustries.aoserv.master.DisableCommandHandler,
+		com.aoindustries.aoserv.master.EmailCommandHandler,
+		com.aoindustries.aoserv.master.EnableCommandHandler,
+		com.aoindustries.aoserv.master.LinuxCommandHandler,
+		com.aoindustries.aoserv.master.MasterCommandHandler,
+		com.aoindustries.aoserv.master.NetCommandHandler,
+		com.aoindustries.aoserv.master.RemoveCommandHandler,
+		com.aoindustries.aoserv.master.TicketCommandHandler,
+		com.aoindustries.aoserv.master.TicketHandler.DelayedData,
+		com.aoindustries.aoserv.master.WebCommandHandler;
 	provides com.aoindustries.aoserv.master.MasterService with
 		com.aoindustries.aoserv.master.billing.WhoisHistoryService,
 		com.aoindustries.aoserv.master.dns.DnsService,